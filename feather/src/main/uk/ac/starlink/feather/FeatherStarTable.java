@@ -12,11 +12,13 @@ import uk.ac.bristol.star.feather.FeatherTable;
 import uk.ac.bristol.star.feather.FeatherType;
 import uk.ac.bristol.star.feather.Reader;
 import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.table.ValueInfo;
 
 /**
@@ -33,6 +35,7 @@ public class FeatherStarTable extends AbstractStarTable {
     private final String name_;
     private final FeatherColumn[] fcols_;
     private final ColumnInfo[] colInfos_;
+    private final boolean[] isNumeric_;
     private final RowReader randomReader_;
 
     /** JSON key used to store UCDs in column user metadata. */
@@ -70,9 +73,12 @@ public class FeatherStarTable extends AbstractStarTable {
         name_ = ftable.getDescription();
         fcols_ = new FeatherColumn[ ncol_ ];
         colInfos_ = new ColumnInfo[ ncol_ ];
+        isNumeric_ = new boolean[ ncol_ ];
         for ( int icol = 0; icol < ncol_; icol++ ) {
             fcols_[ icol ] = ftable.getColumn( icol );
             colInfos_[ icol ] = createColumnInfo( fcols_[ icol ] );
+            Class<?> clazz = colInfos_[ icol ].getContentClass();
+            isNumeric_[ icol ] = Number.class.isAssignableFrom( clazz );
         }
         randomReader_ = new RowReader();
     }
@@ -115,39 +121,7 @@ public class FeatherStarTable extends AbstractStarTable {
     }
 
     public RowSequence getRowSequence() {
-        final RowReader rowReader = new RowReader();
-        return new RowSequence() {
-            long irow_ = -1;
-            boolean hasData_ = false;
-            public boolean next() {
-                if ( irow_ < nrow_ - 1 ) {
-                    irow_++;
-                    hasData_ = true;
-                }
-                else {
-                    hasData_ = false;
-                }
-                return hasData_;
-            }
-            public Object getCell( int icol ) throws IOException {
-                if ( hasData_ ) {
-                    return rowReader.getCell( irow_, icol );
-                }
-                else {
-                    throw new IllegalStateException();
-                }
-            }
-            public Object[] getRow() throws IOException {
-                if ( hasData_ ) {
-                    return rowReader.getRow( irow_ );
-                }
-                else {
-                    throw new IllegalStateException();
-                }
-            }
-            public void close() {
-            }
-        };
+        return new FeatherRowSequence();
     }
 
     /**
@@ -269,5 +243,152 @@ public class FeatherStarTable extends AbstractStarTable {
             }
             return row;
         }
+
+        /**
+         * Indicates whether a cell is null.
+         *
+         * @param  irow  row index
+         * @param  icol  column index
+         * @return  true iff cell value is null
+         */
+        boolean isNull( long irow, int icol ) throws IOException {
+            return isNumeric_[ icol ] ? getReader( icol ).isNull( irow )
+                                      : getCell( irow, icol ) == null;
+        }
+
+        /**
+         * Returns a cell value as a double.
+         *
+         * @param  irow  row index
+         * @param  icol  column index
+         * @return  numeric value, or NaN for null or non-numeric values
+         */
+        double getDouble( long irow, int icol ) throws IOException {
+            if ( isNumeric_[ icol ] ) {
+                Reader<?> rdr = getReader( icol );
+                return rdr.isNull( irow ) ? Double.NaN : rdr.getDouble( irow );
+            }
+            else {
+                Object value = getCell( irow, icol );
+                return value instanceof Number
+                     ? ((Number) value).doubleValue()
+                     : Double.NaN;
+            }
+        }
+
+        /**
+         * Returns a cell value as a long integer.
+         *
+         * @param  irow  row index
+         * @param  icol  column index
+         * @return  integer value, or zero for null or non-numeric values
+         */
+        long getLong( long irow, int icol ) throws IOException {
+            if ( isNumeric_[ icol ] ) {
+                Reader<?> rdr = getReader( icol );
+                return rdr.isNull( irow ) ? 0L : rdr.getLong( irow );
+            }
+            else {
+                Object value = getCell( irow, icol );
+                return value instanceof Number ? ((Number) value).longValue()
+                                               : 0L;
+            }
+        }
+    }
+
+    /**
+     * Row sequence implementation for this table.
+     * As well as the basic row access, it provides typed and batch
+     * access that avoids creating objects for numeric columns.
+     */
+    private class FeatherRowSequence
+            implements TypedRowSequence, BatchRowSequence {
+
+        private final RowReader rowReader_;
+        private long irow_;
+        private long batchStart_;
+        private int batchSize_;
+        private boolean hasData_;
+
+        FeatherRowSequence() {
+            rowReader_ = new RowReader();
+            irow_ = -1;
+        }
+
+        public boolean next() {
+            if ( irow_ < nrow_ - 1 ) {
+                irow_++;
+                hasData_ = true;
+            }
+            else {
+                hasData_ = false;
+            }
+            return hasData_;
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            checkRow();
+            return rowReader_.getCell( irow_, icol );
+        }
+
+        public Object[] getRow() throws IOException {
+            checkRow();
+            return rowReader_.getRow( irow_ );
+        }
+
+        public boolean isNull( int icol ) throws IOException {
+            checkRow();
+            return rowReader_.isNull( irow_, icol );
+        }
+
+        public double getDouble( int icol ) throws IOException {
+            checkRow();
+            return rowReader_.getDouble( irow_, icol );
+        }
+
+        public long getLong( int icol ) throws IOException {
+            checkRow();
+            return rowReader_.getLong( irow_, icol );
+        }
+
+        public int nextBatch( int maxRows ) {
+            batchStart_ = irow_ + 1;
+            batchSize_ = (int) Math.min( (long) maxRows, nrow_ - batchStart_ );
+            irow_ += batchSize_;
+            hasData_ = false;
+            return batchSize_;
+        }
+
+        public void getDoubles( int icol, double[] buf ) throws IOException {
+            for ( int i = 0; i < batchSize_; i++ ) {
+                buf[ i ] = rowReader_.getDouble( batchStart_ + i, icol );
+            }
+        }
+
+        public void getLongs( int icol, long[] buf ) throws IOException {
+            for ( int i = 0; i < batchSize_; i++ ) {
+                buf[ i ] = rowReader_.getLong( batchStart_ + i, icol );
+            }
+        }
+
+        public void getNulls( int icol, boolean[] buf ) throws IOException {
+            for ( int i = 0; i < batchSize_; i++ ) {
+                buf[ i ] = rowReader_.isNull( batchStart_ + i, icol );
+            }
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Checks that there is a current row.
+         *
+         * @throws  IllegalStateException  if not
+         */
+        private void checkRow() {
+            if ( ! hasData_ ) {
+                throw new IllegalStateException();
+            }
+        }
     }
 }
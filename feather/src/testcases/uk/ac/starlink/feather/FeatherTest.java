@@ -2,6 +2,8 @@ package uk.ac.starlink.feather;
 
 import java.io.IOException;
 import java.net.URL;
+import uk.ac.starlink.table.BatchRowSequence;
+import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
@@ -24,6 +26,36 @@ public class FeatherTest extends TestCase {
         assertNull( dataTable.getCell( 1, 4 ) );
     }
 
+    public void testBatch() throws IOException {
+        StarTable table = readTable( "data.fea" );
+        int ncol = table.getColumnCount();
+        int nrow = (int) table.getRowCount();
+        RowSequence rseq = table.getRowSequence();
+        assertTrue( rseq instanceof BatchRowSequence );
+        BatchRowSequence bseq = (BatchRowSequence) rseq;
+        double[] dbuf = new double[ nrow ];
+        long[] lbuf = new long[ nrow ];
+        boolean[] nbuf = new boolean[ nrow ];
+        assertEquals( nrow, bseq.nextBatch( nrow + 1 ) );
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            bseq.getDoubles( icol, dbuf );
+            bseq.getLongs( icol, lbuf );
+            bseq.getNulls( icol, nbuf );
+            for ( int irow = 0; irow < nrow; irow++ ) {
+                Object cell = table.getCell( irow, icol );
+                boolean isNum = cell instanceof Number;
+                assertEquals( isNum ? ((Number) cell).doubleValue()
+                                    : Double.NaN, dbuf[ irow ] );
+                assertEquals( isNum ? ((Number) cell).longValue() : 0L,
+                              lbuf[ irow ] );
+                assertEquals( cell == null, nbuf[ irow ] );
+            }
+        }
+        assertEquals( 0, bseq.nextBatch( 10 ) );
+        assertFalse( bseq.next() );
+        bseq.close();
+    }
+
     private FeatherStarTable readTable( String name ) throws IOException {
         URL url = getClass().getResource( name );
         StarTable table = new FeatherTableBuilder()
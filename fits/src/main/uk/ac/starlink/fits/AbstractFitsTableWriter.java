@@ -1,10 +1,14 @@
 package uk.ac.starlink.fits;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -47,6 +51,10 @@ import uk.ac.starlink.util.IOUtils;
  *     strings on read.</li>
  * </ul>
  *
+ * <p>The defaults for tile compression and one-pass output
+ * may be set using the {@link #TILEROWS_PROPERTY} and
+ * {@link #ONEPASS_PROPERTY} system properties respectively.
+ *
  * @author   Mark Taylor
  * @since    27 Jun 2006
  */
@@ -54,9 +62,28 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
                                               implements MultiStarTableWriter {
 
     private String formatName_;
+    private int ztileRows_;
+    private boolean onePass_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.fits" );
 
+    /**
+     * Name of system property giving the default number of rows per tile
+     * for writing tile-compressed tables ({@value}).
+     * If unset or zero, tables are written uncompressed.
+     *
+     * @see  #setTileRows
+     */
+    public static final String TILEROWS_PROPERTY = "startable.fits.tilerows";
+
+    /**
+     * Name of system property which, if set "true", causes tables to be
+     * written in a single pass where possible by default ({@value}).
+     *
+     * @see  #setOnePass
+     */
+    public static final String ONEPASS_PROPERTY = "startable.fits.onepass";
+
     /**
      * Constructor.
      *
@@ -64,6 +91,8 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
      */
     protected AbstractFitsTableWriter( String formatName ) {
         setFormatName( formatName );
+        ztileRows_ = getDefaultTileRows();
+        onePass_ = isOnePassByDefault();
     }
 
     public String getFormatName() {
@@ -79,6 +108,121 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
         formatName_ = formatName;
     }
 
+    /**
+     * Configures whether table HDUs are written in tile-compressed form,
+     * following the
+     * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompression.html"
+     *    >Tiled Table Compression Convention</a>.
+     * Such tables can be considerably smaller than the uncompressed form,
+     * and can be read by this package (see {@link ZtableInputFactory})
+     * and by CFITSIO-based software.
+     * Tables with variable-length array columns cannot be written in
+     * this form.  The default is zero (no compression),
+     * unless the {@link #TILEROWS_PROPERTY} system property is set.
+     *
+     * <p>This setting is only respected by the implementation of
+     * {@link #writeTableHDU writeTableHDU} in this class.
+     *
+     * @param  tileRows  number of rows per compressed tile,
+     *                   or zero to write uncompressed tables
+     */
+    public void setTileRows( int tileRows ) {
+        ztileRows_ = tileRows;
+    }
+
+    /**
+     * Returns the number of rows per tile used for writing
+     * tile-compressed tables.
+     *
+     * @return  rows per tile, or zero for uncompressed output
+     */
+    public int getTileRows() {
+        return ztileRows_;
+    }
+
+    /**
+     * Configures whether tables are written in a single pass where possible.
+     *
+     * <p>Normally, writing a table may require reading its data twice,
+     * once to find out the row count and other characteristics of the
+     * data, and once to write it.
+     * If the input table can only supply its rows once, this means it has
+     * to be cached before it is written.
+     * If this flag is set, and the output is to a file,
+     * the data is instead streamed directly to the file with
+     * a provisional header, and the header is rewritten in place
+     * with the correct row count (and variable-array heap information)
+     * once all the rows have been written.
+     * Integer columns that may contain null values are in this case
+     * assumed to contain some.
+     * The default is false,
+     * unless the {@link #ONEPASS_PROPERTY} system property is set true.
+     *
+     * <p>One-pass output is only used for writing to a
+     * <code>FileOutputStream</code> whose channel can be repositioned,
+     * so not for instance a pipe or terminal, for uncompressed table HDUs
+     * from writers that support it
+     * (see {@link #createOnePassSerializer createOnePassSerializer}).
+     * Otherwise, output is written as normal.
+     *
+     * @param  onePass  true to write data in a single pass where possible
+     */
+    public void setOnePass( boolean onePass ) {
+        onePass_ = onePass;
+    }
+
+    /**
+     * Indicates whether tables are written in a single pass where possible.
+     *
+     * @return  true for one-pass output
+     */
+    public boolean isOnePass() {
+        return onePass_;
+    }
+
+    /**
+     * Returns the default number of rows per tile for tile compression,
+     * as determined by the {@link #TILEROWS_PROPERTY} system property.
+     *
+     * @return  default rows per tile, or zero for uncompressed output
+     */
+    static int getDefaultTileRows() {
+        String sval;
+        try {
+            sval = System.getProperty( TILEROWS_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            sval = null;
+        }
+        if ( sval == null || sval.trim().length() == 0 ) {
+            return 0;
+        }
+        try {
+            return Math.max( 0, Integer.parseInt( sval.trim() ) );
+        }
+        catch ( NumberFormatException e ) {
+            logger_.warning( "Bad value for " + TILEROWS_PROPERTY
+                           + ": \"" + sval + "\"" );
+            return 0;
+        }
+    }
+
+    /**
+     * Indicates whether one-pass output is used by default,
+     * as determined by the {@link #ONEPASS_PROPERTY} system property.
+     *
+     * @return  true iff one-pass output is the default
+     */
+    static boolean isOnePassByDefault() {
+        try {
+            return Boolean.valueOf( System.getProperty( ONEPASS_PROPERTY ) )
+                  .booleanValue();
+        }
+        catch ( SecurityException e ) {
+            return false;
+        }
+    }
+
     /**
      * Returns "application/fits".
      *
@@ -106,6 +250,10 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
      */
     public void writeStarTables( TableSequence tableSeq, OutputStream out )
             throws IOException {
+        if ( onePass_ && ztileRows_ <= 0 && isSeekableFile( out ) ) {
+            writeOnePass( tableSeq, (FileOutputStream) out );
+            return;
+        }
         DataOutputStream ostrm = new DataOutputStream( out );
         writePrimaryHDU( ostrm );
         for ( StarTable table; ( table = tableSeq.nextTable() ) != null; ) {
@@ -121,6 +269,15 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
     public void writeStarTables( TableSequence tableSeq, String location,
                                  StarTableOutput sto ) throws IOException {
         OutputStream out = sto.getOutputStream( location );
+        if ( usesFileChannel() && isSeekableFile( out ) ) {
+            try {
+                writeStarTables( tableSeq, out );
+            }
+            finally {
+                out.close();
+            }
+            return;
+        }
         try {
             out = new BufferedOutputStream( out );
             writeStarTables( tableSeq, out );
@@ -152,16 +309,22 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
      */
     public void writeTableHDU( StarTable table, FitsTableSerializer fitser,
                                DataOutput out ) throws IOException {
+        Header hdr;
         try {
-            Header hdr = fitser.getHeader();
+            hdr = fitser.getHeader();
             addMetadata( hdr );
-            FitsConstants.writeHeader( out, hdr );
         }
         catch ( FitsException e ) {
             throw (IOException) new IOException( e.getMessage() )
                                .initCause( e );
         }
-        fitser.writeData( out );
+        if ( ztileRows_ > 0 ) {
+            ZtableCompressor.writeTableHDU( hdr, fitser, ztileRows_, out );
+        }
+        else {
+            FitsConstants.writeHeader( out, hdr );
+            fitser.writeData( out );
+        }
     }
 
     /**
@@ -177,6 +340,138 @@ public abstract class AbstractFitsTableWriter extends StreamStarTableWriter
     protected abstract FitsTableSerializer createSerializer( StarTable table )
             throws IOException;
 
+    /**
+     * Provides a serializer for a given table which can write it in
+     * one-pass mode.  Such a serializer avoids reading the table data
+     * before {@link FitsTableSerializer#writeData writeData} is called,
+     * and following that call its
+     * {@link FitsTableSerializer#getHeader getHeader} method returns
+     * a header with the same number of cards as before,
+     * but reflecting the data that was actually written.
+     *
+     * <p>The default implementation returns null,
+     * indicating that one-pass output is not supported.
+     *
+     * @param   table  table to serialize
+     * @return  one-pass FITS serializer, or null
+     * @throws  IOException  if the table can't be written
+     */
+    protected FitsTableSerializer createOnePassSerializer( StarTable table )
+            throws IOException {
+        return null;
+    }
+
+    /**
+     * Indicates whether this writer's current configuration may write
+     * to a <code>FileOutputStream</code> using its file channel.
+     * That is only done if the stream's channel can be repositioned.
+     * If so, file output is supplied unbuffered to
+     * {@link #writeStarTables(uk.ac.starlink.table.TableSequence,
+     *                         java.io.OutputStream)},
+     * so that the stream's channel can be retrieved.
+     * This implementation returns true for uncompressed one-pass output.
+     *
+     * @return  true if file output may be written using the file channel
+     */
+    protected boolean usesFileChannel() {
+        return onePass_ && ztileRows_ <= 0;
+    }
+
+    /**
+     * Indicates whether an output stream is a <code>FileOutputStream</code>
+     * whose channel supports positioned writes.
+     * That is not the case for instance for a pipe or a terminal.
+     *
+     * @param  out  output stream
+     * @return  true iff <code>out</code> writes to a seekable file
+     */
+    static boolean isSeekableFile( OutputStream out ) {
+        if ( out instanceof FileOutputStream ) {
+            FileChannel chan = ((FileOutputStream) out).getChannel();
+            try {
+                return chan.position() >= 0 && chan.size() >= 0;
+            }
+            catch ( IOException e ) {
+                return false;
+            }
+        }
+        else {
+            return false;
+        }
+    }
+
+    /**
+     * Writes tables to a file, streaming the data directly and
+     * updating the table headers in place afterwards,
+     * where the serializers permit.
+     *
+     * @param  tableSeq  tables to write
+     * @param  fout   output stream positioned at the start of the file
+     */
+    private void writeOnePass( TableSequence tableSeq, FileOutputStream fout )
+            throws IOException {
+        FileChannel chan = fout.getChannel();
+        DataOutputStream ostrm =
+            new DataOutputStream( new BufferedOutputStream( fout ) );
+        writePrimaryHDU( ostrm );
+        for ( StarTable table; ( table = tableSeq.nextTable() ) != null; ) {
+            FitsTableSerializer fitser = createOnePassSerializer( table );
+            if ( fitser == null ) {
+                writeTableHDU( table, createSerializer( table ), ostrm );
+            }
+            else {
+
+                /* Write a provisional header followed by the data. */
+                ostrm.flush();
+                long hdrPos = chan.position();
+                byte[] hdr0 = getHeaderBytes( fitser );
+                ostrm.write( hdr0 );
+                fitser.writeData( ostrm );
+                ostrm.flush();
+
+                /* Overwrite the header, which now knows the row count
+                 * etc, in place. */
+                byte[] hdr1 = getHeaderBytes( fitser );
+                if ( hdr1.length != hdr0.length ) {
+                    throw new IOException( "Header length changed"
+                                         + " during one-pass write" );
+                }
+                ByteBuffer hbuf = ByteBuffer.wrap( hdr1 );
+                for ( long pos = hdrPos; hbuf.hasRemaining(); ) {
+                    pos += chan.write( hbuf, pos );
+                }
+                logger_.config( "Wrote " + fitser.getRowCount()
+                              + " rows in one pass" );
+            }
+        }
+        ostrm.flush();
+    }
+
+    /**
+     * Returns the serialized header for a table HDU,
+     * including the standard metadata.
+     *
+     * @param  fitser  serializer
+     * @return   header bytes, a multiple of the FITS block size
+     */
+    byte[] getHeaderBytes( FitsTableSerializer fitser )
+            throws IOException {
+        Header hdr;
+        try {
+            hdr = fitser.getHeader();
+            addMetadata( hdr );
+        }
+        catch ( FitsException e ) {
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream dout = new DataOutputStream( bout );
+        FitsConstants.writeHeader( dout, hdr );
+        dout.flush();
+        return bout.toByteArray();
+    }
+
     /**
      * Adds some standard metadata header cards to a FITS table header.
      * This includes date stamp, STIL version, etc.
@@ -37,7 +37,9 @@ public class BasicInputThreadLocal extends ThreadLocal<BasicInput>
     @Override
     protected BasicInput initialValue() {
         BasicInput bi = createBasicInput();
-        inputs_.add( bi );
+        synchronized ( this ) {
+            inputs_.add( bi );
+        }
         return bi;
     }
 
@@ -4,23 +4,35 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.fits.FitsException;
 import nom.tam.fits.Header;
 import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ArrayRowSequence;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.HealpixTableInfo;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.TableSink;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.util.ThreadUtils;
 
 /**
  * An implementation of the StarTable interface which uses a FITS BINTABLE
@@ -100,6 +112,23 @@ public abstract class BintableStarTable extends AbstractStarTable
         "Offset value added when turning 64-bit integer into string; " +
         "only present for stringified long values with non-zero offset" );
 
+    /**
+     * Name of system property giving the number of threads used to
+     * decode rows for sequential reads of random-access tables ({@value}).
+     * If unset or 1, rows are decoded by the reading thread.
+     * Values greater than one cause blocks of rows to be decoded
+     * ahead of the reader by that many worker threads,
+     * each using its own input.
+     * A value of zero uses the number of available processors.
+     * This only affects the {@link #getRowSequence} method;
+     * {@link #getRowSplittable} is not affected.
+     */
+    public static final String SCAN_THREADS_PROPERTY =
+        "startable.fits.scanthreads";
+
+    /** Target number of bytes per block for parallel scans. */
+    private static final int SCAN_BLOCK_BYTES = 1 << 20;
+
     /** Known aux data infos. */
     private static final ValueInfo[] AUX_DATA_INFOS = new ValueInfo[] {
         TNULL_INFO, TSCAL_INFO, TZERO_INFO, TDISP_INFO, TBCOL_INFO, TFORM_INFO,
@@ -436,6 +465,68 @@ public abstract class BintableStarTable extends AbstractStarTable
         return colReaders_[ icol ].readValue( stream );
     }
 
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a double precision value.
+     * The result is NaN for null or non-numeric values.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @see   TypedRowSequence#getDouble
+     */
+    protected double readDoubleCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readDouble( stream );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream as a long integer value.
+     * The result is zero for null or non-numeric values.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @see   TypedRowSequence#getLong
+     */
+    protected long readLongCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readLong( stream );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream to determine whether it is null.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @see   TypedRowSequence#isNull
+     */
+    protected boolean readNullCell( BasicInput stream, int icol )
+            throws IOException {
+        return colReaders_[ icol ].readNull( stream );
+    }
+
+    /**
+     * Reads a cell from a given column from the current position in
+     * a stream, copying its elements into a buffer as double precision
+     * values if it is a numeric array.
+     *
+     * @param  icol  the column index corresponding to the cell to be read
+     * @param  stream  a stream containing the byte data, positioned to
+     *                 the right place
+     * @param  buf   buffer to receive array elements
+     * @return  number of elements in the cell
+     * @see   ArrayRowSequence#getArrayDoubles
+     */
+    protected int readArrayDoublesCell( BasicInput stream, int icol,
+                                        double[] buf )
+            throws IOException {
+        return colReaders_[ icol ].readArrayDoubles( stream, buf );
+    }
+
     /**
      * Reads a whole row of the table from the current position in a stream,
      * returning a new Object[] array.
@@ -492,6 +583,17 @@ public abstract class BintableStarTable extends AbstractStarTable
              : new SequentialBintableStarTable( hdr, inputFact, wide );
     }
 
+    /**
+     * Returns the number of threads to use for decoding rows in
+     * sequential reads of random-access tables,
+     * as determined by the {@link #SCAN_THREADS_PROPERTY} system property.
+     *
+     * @return  scan thread count; 1 means no parallelism
+     */
+    static int getScanThreads() {
+        return ThreadUtils.getThreadCount( SCAN_THREADS_PROPERTY );
+    }
+
     /**
      * Reads a BINTABLE extension from a stream and writes the result to
      * a table sink.
@@ -765,42 +867,330 @@ public abstract class BintableStarTable extends AbstractStarTable
         }
 
         public RowSequence getRowSequence() throws IOException {
-            final BasicInput input = inputFact_.createInput( true );
-            assert input.isRandom();
-            final long endPos = getRowCount() * rowLength_;
-            return new RowSequence() {
-                long pos = -rowLength_;
-                public boolean next() {
+            long nrow = getRowCount();
+            int nthread = getScanThreads();
+            int blockRows = Math.max( 1, SCAN_BLOCK_BYTES
+                                       / Math.max( 1, rowLength_ ) );
+            return nthread > 1 && nrow > blockRows
+                 ? new ParallelScanRowSequence( nrow, blockRows, nthread )
+                 : new BintableRowSplittable( 0, nrow );
+        }
+
+        public RowSplittable getRowSplittable() throws IOException {
+            return new BintableRowSplittable( 0, getRowCount() );
+        }
+
+        public void close() throws IOException {
+            randomInputThreadLocal_.close();
+            inputFact_.close();
+        }
+
+        /**
+         * RowSplittable implementation for use with this table.
+         * Splitting is by row index range, and each instance
+         * acquires its own input object on first use, so that
+         * the parts may be read concurrently.
+         */
+        private class BintableRowSplittable
+                implements RowSplittable, TypedRowSequence, BatchRowSequence,
+                           ArrayRowSequence {
+
+            private final LongSupplier rowIndex_;
+            private BasicInput input_;
+            private long irow_;
+            private long end_;
+            private long batchStart_;
+            private int batchSize_;
+
+            /**
+             * Constructor.
+             *
+             * @param  start  index of first row covered
+             * @param  end   index after last row covered
+             */
+            BintableRowSplittable( long start, long end ) {
+                irow_ = start - 1;
+                end_ = end;
+                rowIndex_ = new LongSupplier() {
+                    public long getAsLong() {
+                        return irow_;
+                    }
+                };
+            }
+
+            public RowSplittable split() {
+                long start = irow_ + 1;
+                if ( input_ == null && end_ - start > 1 ) {
+                    long mid = start + ( end_ - start ) / 2;
+                    RowSplittable other =
+                        new BintableRowSplittable( mid, end_ );
+                    end_ = mid;
+                    return other;
+                }
+                else {
+                    return null;
+                }
+            }
+
+            public long splittableSize() {
+                return end_ - ( irow_ + 1 );
+            }
+
+            public LongSupplier rowIndex() {
+                return rowIndex_;
+            }
+
+            public boolean next() throws IOException {
+                if ( irow_ < end_ - 1 ) {
+                    irow_++;
+                    initInput();
+                    return true;
+                }
+                else {
+                    return false;
+                }
+            }
+
+            public int nextBatch( int maxRows ) throws IOException {
+                initInput();
+                batchStart_ = irow_ + 1;
+                batchSize_ =
+                    (int) Math.min( (long) maxRows, end_ - batchStart_ );
+                irow_ += batchSize_;
+                return batchSize_;
+            }
+
+            public void getDoubles( int icol, double[] buf )
+                    throws IOException {
+                long pos = batchStart_ * rowLength_ + colOffsets_[ icol ];
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    input_.seek( pos );
+                    buf[ i ] = readDoubleCell( input_, icol );
                     pos += rowLength_;
-                    return pos < endPos;
                 }
-                public Object getCell( int icol ) throws IOException {
-                    if ( pos >= 0 && pos < endPos ) {
-                        input.seek( pos + colOffsets_[ icol ] );
-                        return readCell( input, icol );
-                    }
-                    else {
-                        throw new IllegalStateException();
-                    }
+            }
+
+            public void getLongs( int icol, long[] buf ) throws IOException {
+                long pos = batchStart_ * rowLength_ + colOffsets_[ icol ];
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    input_.seek( pos );
+                    buf[ i ] = readLongCell( input_, icol );
+                    pos += rowLength_;
                 }
-                public Object[] getRow() throws IOException {
-                    if ( pos >= 0 && pos < endPos ) {
-                        input.seek( pos );
-                        return readRow( input );
-                    }
-                    else {
-                        throw new IllegalStateException();
-                    }
+            }
+
+            public void getNulls( int icol, boolean[] buf )
+                    throws IOException {
+                long pos = batchStart_ * rowLength_ + colOffsets_[ icol ];
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    input_.seek( pos );
+                    buf[ i ] = readNullCell( input_, icol );
+                    pos += rowLength_;
                 }
-                public void close() throws IOException {
-                    input.close();
+            }
+
+            public Object getCell( int icol ) throws IOException {
+                seekCell( icol );
+                return readCell( input_, icol );
+            }
+
+            public double getDouble( int icol ) throws IOException {
+                seekCell( icol );
+                return readDoubleCell( input_, icol );
+            }
+
+            public long getLong( int icol ) throws IOException {
+                seekCell( icol );
+                return readLongCell( input_, icol );
+            }
+
+            public boolean isNull( int icol ) throws IOException {
+                seekCell( icol );
+                return readNullCell( input_, icol );
+            }
+
+            public int getArrayDoubles( int icol, double[] buf )
+                    throws IOException {
+                seekCell( icol );
+                return readArrayDoublesCell( input_, icol, buf );
+            }
+
+            public Object[] getRow() throws IOException {
+                checkRow();
+                input_.seek( irow_ * rowLength_ );
+                return readRow( input_ );
+            }
+
+            public void close() throws IOException {
+                if ( input_ != null ) {
+                    input_.close();
                 }
-            };
+            }
+
+            /**
+             * Ensures that this object's input is available.
+             * It is created lazily so that splitting is cheap.
+             */
+            private void initInput() throws IOException {
+                if ( input_ == null ) {
+                    input_ = inputFact_.createInput( true );
+                }
+            }
+
+            /**
+             * Positions the input at the start of a given cell
+             * in the current row.
+             *
+             * @param  icol  column index
+             * @throws  IllegalStateException  if there is no current row
+             */
+            private void seekCell( int icol ) throws IOException {
+                checkRow();
+                input_.seek( irow_ * rowLength_ + colOffsets_[ icol ] );
+            }
+
+            /**
+             * Checks that there is a current row.
+             *
+             * @throws  IllegalStateException  if not
+             */
+            private void checkRow() {
+                if ( input_ == null || irow_ >= end_ ) {
+                    throw new IllegalStateException( "No current row" );
+                }
+            }
         }
 
-        public void close() throws IOException {
-            randomInputThreadLocal_.close();
-            inputFact_.close();
+        /**
+         * RowSequence implementation that decodes blocks of rows ahead
+         * of the reader using a pool of worker threads.
+         * Each worker thread reads from its own input,
+         * and the rows are delivered in order.
+         */
+        private class ParallelScanRowSequence implements RowSequence {
+
+            private final long nrow_;
+            private final int blockRows_;
+            private final int maxPending_;
+            private final BasicInputThreadLocal scanInputs_;
+            private final ExecutorService executor_;
+            private final Queue<Future<Object[][]>> pending_;
+            private long nextStart_;
+            private Object[][] block_;
+            private int iInBlock_;
+
+            /**
+             * Constructor.
+             *
+             * @param  nrow  number of rows in table
+             * @param  blockRows  number of rows decoded by each task
+             * @param  nthread  number of worker threads
+             */
+            ParallelScanRowSequence( long nrow, int blockRows, int nthread ) {
+                nrow_ = nrow;
+                blockRows_ = blockRows;
+                maxPending_ = 2 * nthread;
+                scanInputs_ = new BasicInputThreadLocal( inputFact_, false );
+                executor_ =
+                    ThreadUtils.createDaemonPool( nthread, "FITS scan" );
+                pending_ = new ArrayDeque<Future<Object[][]>>();
+                block_ = new Object[ 0 ][];
+                fillQueue();
+            }
+
+            public boolean next() throws IOException {
+                if ( iInBlock_ < block_.length - 1 ) {
+                    iInBlock_++;
+                    return true;
+                }
+                Future<Object[][]> future = pending_.poll();
+                if ( future == null ) {
+                    block_ = new Object[ 0 ][];
+                    iInBlock_ = 0;
+                    return false;
+                }
+                boolean ok = false;
+                try {
+                    block_ = ThreadUtils.getResult( future, "Read failed" );
+                    ok = true;
+                }
+                finally {
+                    if ( ! ok ) {
+                        close();
+                    }
+                }
+                iInBlock_ = 0;
+                fillQueue();
+                return block_.length > 0;
+            }
+
+            public Object getCell( int icol ) {
+                return getRow()[ icol ];
+            }
+
+            public Object[] getRow() {
+                if ( iInBlock_ < block_.length ) {
+                    return block_[ iInBlock_ ];
+                }
+                else {
+                    throw new IllegalStateException( "No current row" );
+                }
+            }
+
+            public void close() {
+                for ( Future<Object[][]> future : pending_ ) {
+                    future.cancel( false );
+                }
+                pending_.clear();
+                executor_.shutdown();
+                try {
+                    executor_.awaitTermination( 10, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+                scanInputs_.close();
+            }
+
+            /**
+             * Submits block decode tasks until the maximum number
+             * are pending or there are no rows left.
+             */
+            private void fillQueue() {
+                while ( pending_.size() < maxPending_ && nextStart_ < nrow_ ) {
+                    final long start = nextStart_;
+                    final int count =
+                        (int) Math.min( (long) blockRows_, nrow_ - start );
+                    nextStart_ += count;
+                    pending_.add( executor_.submit( new Callable<Object[][]>() {
+                        public Object[][] call() throws IOException {
+                            return readBlock( start, count );
+                        }
+                    } ) );
+                }
+                if ( nextStart_ >= nrow_ ) {
+                    executor_.shutdown();
+                }
+            }
+
+            /**
+             * Decodes a contiguous block of rows using an input private
+             * to the current thread.
+             *
+             * @param  start  index of first row
+             * @param  count  number of rows
+             * @return  count-element array of rows
+             */
+            private Object[][] readBlock( long start, int count )
+                    throws IOException {
+                BasicInput input = scanInputs_.get();
+                input.seek( start * rowLength_ );
+                Object[][] rows = new Object[ count ][];
+                for ( int i = 0; i < count; i++ ) {
+                    rows[ i ] = readRow( input );
+                }
+                return rows;
+            }
         }
     }
 }
@@ -4,7 +4,6 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
@@ -15,29 +14,29 @@ import java.util.logging.Logger;
  * what to do with less-recently used ones.  Concrete subclasses are
  * provided that either discard them automatically or keep them around
  * for a period of time before discarding them.
- * If and when a buffer is discarded, an attempt is made to unmap it.
+ * Blocks are obtained from a {@link MappedBlockManager},
+ * so that if several instances share a manager, each block is only
+ * mapped once, and it is unmapped when no instance is using it any more.
  *
- * <p><strong>Note:</strong> <strong>DO NOT</strong> use an instance
- * of this class from multiple threads - see {@link Unmapper}.
+ * <p>An instance of this class has its own position state,
+ * so should not be used from multiple threads concurrently,
+ * but different instances sharing the same manager may be used
+ * concurrently from different threads.
  *
  * @author   Mark Taylor
  * @since    2 Dec 2014
  */
 public abstract class BlockMappedInput implements BasicInput {
 
-    private final FileChannel channel_;
-    private final long pos_;
-    private final long size_;
-    private final String logName_;
+    private final MappedBlockManager manager_;
     private final long blockSize_;
     private final int nblock_;
-    private final Unmapper unmapper_;
 
     /** Most recently used block index: do not use outside this class! */
     int iblock_;
 
     /** Most recently used block buffer: DO NOT use outside this class! */
-    MappedByteBuffer buffer_;
+    ByteBuffer buffer_;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.fits" );
@@ -49,7 +48,7 @@ public abstract class BlockMappedInput implements BasicInput {
     public static final long DEFAULT_EXPIRYMILLIS = 20 * 1000;
 
     /**
-     * Constructor.
+     * Constructs an instance with its own private block mappings.
      *
      * @param   channel  file channel, preferably read-only
      * @param   pos   offset into file of stream start
@@ -60,22 +59,21 @@ public abstract class BlockMappedInput implements BasicInput {
     protected BlockMappedInput( FileChannel channel, long pos, long size,
                                 String logName, int blockSize )
             throws IOException {
-        channel_ = channel;
-        pos_ = pos;
-        size_ = size;
-        logName_ = logName;
-        blockSize_ = blockSize;
-        long nb = ( ( size - 1 ) / blockSize_ ) + 1;
-        nblock_ = (int) nb;
-        if ( nblock_ != nb ) {
-            throw new IllegalArgumentException( "Block count " + nb
-                                              + " too high" );
-        }
-        logger_.info( logName_ + " mapping as " + nblock_ + " blocks of "
-                    + blockSize_ + " bytes" );
+        this( createManager( channel, pos, size, logName, blockSize ) );
+    }
+
+    /**
+     * Constructs an instance using block mappings from a given manager,
+     * which may be shared with other instances.
+     *
+     * @param   manager  mapped block manager
+     */
+    protected BlockMappedInput( MappedBlockManager manager ) {
+        manager_ = manager;
+        blockSize_ = manager.getBlockSize();
+        nblock_ = manager.getBlockCount();
         iblock_ = -1;
-        buffer_ = channel.map( FileChannel.MapMode.READ_ONLY, pos, 0 );
-        unmapper_ = Unmapper.getInstance();
+        buffer_ = ByteBuffer.allocate( 0 );
     }
 
     public byte readByte() throws IOException {
@@ -233,39 +231,18 @@ public abstract class BlockMappedInput implements BasicInput {
      * @param  iblock   block index
      * @return   byte buffer for given block, positioned at start
      */
-    protected abstract MappedByteBuffer acquireBlock( int iblock )
+    protected abstract ByteBuffer acquireBlock( int iblock )
             throws IOException;
 
     /**
-     * Performs the actual file mapping to create a new mapped buffer.
+     * Acquires a reference to a shared mapped block from the manager.
+     * It must be released when no longer in use.
      *
      * @param  iblock  block index
-     * @return  newly mapped buffer
+     * @return  mapped block
      */
-    MappedByteBuffer mapBlock( int iblock ) throws IOException {
-        long offset = iblock * blockSize_;
-        long leng = Math.min( blockSize_, size_ - offset );
-        logger_.config( "Mapping file region " + ( iblock + 1 ) + "/"
-                      + nblock_ );
-        return channel_.map( FileChannel.MapMode.READ_ONLY,
-                             pos_ + offset, leng );
-    }
-
-    /**
-     * Unmaps a block.  The buffer must not be used following this call.
-     *
-     * @param   iblock  block index
-     * @param   buf  mapped buffer - must not be used subsequently
-     */
-    void unmapBlock( int iblock, MappedByteBuffer buf ) {
-        if ( iblock >= 0 ) {
-            boolean unmapped = unmapper_.unmap( buf );
-            logger_.config( "Expiring cached buffer "
-                          + ( iblock + 1 ) + "/" + nblock_
-                          + " of " + logName_
-                          + ( unmapped ? " (unmapped)"
-                                       : " (not unmapped)" ) );
-        }
+    MappedBlockManager.Block mapBlock( int iblock ) throws IOException {
+        return manager_.acquireBlock( iblock );
     }
 
     /**
@@ -313,7 +290,7 @@ public abstract class BlockMappedInput implements BasicInput {
      */
     private void setCurrentBlock( int iblock ) throws IOException {
         if ( iblock < nblock_ ) {
-            MappedByteBuffer buf = acquireBlock( iblock );
+            ByteBuffer buf = acquireBlock( iblock );
             assert buf.position() == 0;
             buffer_ = buf;
             iblock_ = iblock;
@@ -366,11 +343,52 @@ public abstract class BlockMappedInput implements BasicInput {
                                                 int blockSize,
                                                 long expiryMillis )
             throws IOException {
+        return createInput( createManager( channel, pos, size, logName,
+                                           blockSize ),
+                            expiryMillis );
+    }
+
+    /**
+     * Constructs an instance that gets its mapped blocks from a
+     * given manager, which may be shared between instances and threads.
+     * The <code>expiryMillis</code> parameter controls caching;
+     * if zero, the reference to the current block is released as soon
+     * as a different one is used, otherwise references are only
+     * released after blocks have been unused for a certain number of
+     * milliseconds.  In either case, a block is only unmapped when
+     * no instance holds a reference to it.
+     *
+     * @param   manager  mapped block manager
+     * @param   expiryMillis  buffer caching period in milliseconds
+     * @return  new instance
+     */
+    public static BlockMappedInput createInput( MappedBlockManager manager,
+                                                long expiryMillis ) {
         return expiryMillis > 0
-             ? new CachingBlockMappedInput( channel, pos, size, logName,
-                                            blockSize, expiryMillis )
-             : new UniqueBlockMappedInput( channel, pos, size, logName,
-                                           blockSize );
+             ? new CachingBlockMappedInput( manager, expiryMillis )
+             : new UniqueBlockMappedInput( manager );
+    }
+
+    /**
+     * Returns a new read-only block manager, logging the mapping
+     * configuration.
+     *
+     * @param   channel  file channel, preferably read-only
+     * @param   pos   offset into file of stream start
+     * @param   size  number of bytes in stream
+     * @param   logName  name for mapped region used in logging messages
+     * @param   blockSize   maximum number of bytes per block
+     * @return  new manager
+     */
+    static MappedBlockManager createManager( FileChannel channel, long pos,
+                                             long size, String logName,
+                                             int blockSize ) {
+        MappedBlockManager manager =
+            new MappedBlockManager( channel, FileChannel.MapMode.READ_ONLY,
+                                    pos, size, logName, blockSize );
+        logger_.info( logName + " mapping as " + manager.getBlockCount()
+                    + " blocks of " + blockSize + " bytes" );
+        return manager;
     }
 
     /**
@@ -378,38 +396,34 @@ public abstract class BlockMappedInput implements BasicInput {
      */
     private static class UniqueBlockMappedInput extends BlockMappedInput {
 
+        private MappedBlockManager.Block block_;
+
         /**
          * Constructor.
          *
-         * @param   channel  file channel, preferably read-only
-         * @param   pos   offset into file of stream start
-         * @param   size  number of bytes in stream
-         * @param   logName  name for mapped region used in logging messages
-         * @param   blockSize   maximum number of bytes per block
+         * @param   manager  mapped block manager
          */
-        public UniqueBlockMappedInput( FileChannel channel, long pos,
-                                       long size, String logName,
-                                       int blockSize ) throws IOException {
-            super( channel, pos, size, logName, blockSize );
+        UniqueBlockMappedInput( MappedBlockManager manager ) {
+            super( manager );
         }
 
-        protected MappedByteBuffer acquireBlock( int iblock )
-                throws IOException {
-            int oldIndex = iblock_;
-            MappedByteBuffer oldBuffer = buffer_;
-            if ( oldBuffer != null ) {
-                unmapBlock( oldIndex, oldBuffer );
+        protected ByteBuffer acquireBlock( int iblock ) throws IOException {
+            MappedBlockManager.Block oldBlock = block_;
+            block_ = null;
+            if ( oldBlock != null ) {
+                oldBlock.release();
             }
-            return mapBlock( iblock );
+            block_ = mapBlock( iblock );
+            return block_.createBuffer();
         }
 
         public void close() {
-            int oldIndex = iblock_;
-            MappedByteBuffer oldBuffer = buffer_;
-            if ( oldBuffer != null ) {
+            MappedBlockManager.Block oldBlock = block_;
+            if ( oldBlock != null ) {
                 iblock_ = -1;
-                buffer_ = null;
-                unmapBlock( oldIndex, oldBuffer );
+                buffer_ = ByteBuffer.allocate( 0 );
+                block_ = null;
+                oldBlock.release();
             }
         }
     }
@@ -422,43 +436,40 @@ public abstract class BlockMappedInput implements BasicInput {
         private final int nblock_;
         private final long expiryMillis_;
         private final long tidyMillis_;
-        private final MappedByteBuffer[] bufs_;
+        private final MappedBlockManager.Block[] blocks_;
+        private final ByteBuffer[] bufs_;
         private final long[] useEpochs_;
         private long lastTidy_;
 
         /**
          * Constructor.
          *
-         * @param   channel  file channel, preferably read-only
-         * @param   pos   offset into file of stream start
-         * @param   size  number of bytes in stream
-         * @param   logName  name for mapped region used in logging messages
-         * @param   blockSize   maximum number of bytes per block
+         * @param   manager  mapped block manager
          * @param   expiryMillis  buffer caching period in milliseconds
          */
-        public CachingBlockMappedInput( FileChannel channel, long pos,
-                                        long size, String logName,
-                                        int blockSize, long expiryMillis )
-                throws IOException {
-            super( channel, pos, size, logName, blockSize );
+        CachingBlockMappedInput( MappedBlockManager manager,
+                                 long expiryMillis ) {
+            super( manager );
             expiryMillis_ = expiryMillis;
             tidyMillis_ = expiryMillis / 4;
             nblock_ = getBlockCount();
-            bufs_ = new MappedByteBuffer[ nblock_ ];
+            blocks_ = new MappedBlockManager.Block[ nblock_ ];
+            bufs_ = new ByteBuffer[ nblock_ ];
             useEpochs_ = new long[ nblock_ ];
             lastTidy_ = System.currentTimeMillis();
         }
 
-        protected MappedByteBuffer acquireBlock( int iblock )
-                throws IOException {
-            MappedByteBuffer buf = bufs_[ iblock ];
+        protected ByteBuffer acquireBlock( int iblock ) throws IOException {
+            ByteBuffer buf = bufs_[ iblock ];
             if ( buf == null ) {
-                buf = mapBlock( iblock );
+                MappedBlockManager.Block block = mapBlock( iblock );
+                buf = block.createBuffer();
                 long now = System.currentTimeMillis();
                 if ( now - lastTidy_ > tidyMillis_ ) {
                     tidyCache( now - expiryMillis_ );
                     lastTidy_ = now;
                 }
+                blocks_[ iblock ] = block;
                 bufs_[ iblock ] = buf;
                 useEpochs_[ iblock ] = now;
             }
@@ -469,23 +480,26 @@ public abstract class BlockMappedInput implements BasicInput {
         }
 
         public void close() {
+            iblock_ = -1;
+            buffer_ = ByteBuffer.allocate( 0 );
             tidyCache( Long.MAX_VALUE );
         }
 
         /**
-         * Attempts to unmap buffers that have not been used more recently
-         * than a given epoch.
+         * Releases references to blocks that have not been used more
+         * recently than a given epoch.
          *
          * @param   lastOkUse  latest usage epoch at which a buffer will
          *                     not be discarded
          */
         private void tidyCache( long lastOkUse ) {
             for ( int i = 0; i < nblock_; i++ ) {
-                MappedByteBuffer buf = bufs_[ i ];
+                MappedBlockManager.Block block = blocks_[ i ];
                 long useEpoch = useEpochs_[ i ];
-                if ( buf != null && useEpoch < lastOkUse ) {
+                if ( block != null && useEpoch < lastOkUse ) {
+                    blocks_[ i ] = null;
                     bufs_[ i ] = null;
-                    unmapBlock( i, buf );
+                    block.release();
                 }
             }
         }
@@ -6,13 +6,17 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.function.LongSupplier;
 import java.util.logging.Logger;
 import nom.tam.fits.Header;
 import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.util.Compression;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.FileDataSource;
@@ -211,12 +215,18 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
             isRandom = true;
 
             /* Use a single file channel for all columns, though each will
-             * have its own InputFactory. */
+             * have its own InputFactory.  Inputs for the same column
+             * share mapped blocks. */
             File file = ((FileDataSource) datsrc).getFile();
             RandomAccessFile raf = new RandomAccessFile( file, "r" );
             final FileChannel chan = raf.getChannel();
+            final MappedBlockManager[] managers =
+                new MappedBlockManager[ ncol_ ];
             closer_ = new Closeable() {
                 public void close() throws IOException {
+                    for ( MappedBlockManager manager : managers ) {
+                        manager.close();
+                    }
                     chan.close();
                 }
             };
@@ -227,18 +237,27 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                 pos += leng;
                 final String logName =
                     file.getName() + ":col" + ( icol + 1 ) + "/" + ncol_;
+                final boolean isSingle =
+                    leng <= BlockMappedInput.DEFAULT_BLOCKSIZE;
+                final MappedBlockManager manager = isSingle
+                    ? SimpleMappedInput.createManager( chan, offset,
+                                                       (int) leng, logName )
+                    : BlockMappedInput
+                     .createManager( chan, offset, leng, logName,
+                                     BlockMappedInput.DEFAULT_BLOCKSIZE );
+                managers[ icol ] = manager;
                 inputFacts_[ icol ] = new InputFactory() {
                     public boolean isRandom() {
                         return true;
                     }
                     public BasicInput createInput( boolean isSeq )
                             throws IOException {
-                        return leng <= BlockMappedInput.DEFAULT_BLOCKSIZE
-                             ? new SimpleMappedInput( chan, offset, (int) leng,
-                                                      logName )
+                        return isSingle
+                             ? new SimpleMappedInput( manager )
                              : BlockMappedInput
-                              .createInput( chan, offset, leng, logName,
-                                            ! isSeq );
+                              .createInput( manager,
+                                            isSeq ? 0 : BlockMappedInput
+                                                       .DEFAULT_EXPIRYMILLIS );
                     }
                     public void close() {
                     }
@@ -344,6 +363,13 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
         return new ColFitsRowSequence();
     }
 
+    @Override
+    public RowSplittable getRowSplittable() throws IOException {
+        return randomColReaders_ != null
+             ? new ColFitsRowSplittable( 0, nrow_ )
+             : super.getRowSplittable();
+    }
+
     public void close() throws IOException {
         closer_.close();
     }
@@ -479,6 +505,22 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( (short) ( val & 0xff ) );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval )
+                             ? Double.NaN
+                             : val & 0xff;
+                    }
+                    long readLong( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval )
+                             ? 0L
+                             : val & 0xff;
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return hasBad && val == badval;
+                    }
                 };
             }
 
@@ -494,6 +536,22 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( (short) val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval )
+                             ? Double.NaN
+                             : val;
+                    }
+                    long readLong( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return ( hasBad && val == badval )
+                             ? 0L
+                             : val;
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        byte val = in.readByte();
+                        return hasBad && val == badval;
+                    }
                 };
             }
 
@@ -509,6 +567,22 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Short( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        short val = in.readShort();
+                        return ( hasBad && val == badval )
+                             ? Double.NaN
+                             : val;
+                    }
+                    long readLong( BasicInput in ) throws IOException {
+                        short val = in.readShort();
+                        return ( hasBad && val == badval )
+                             ? 0L
+                             : val;
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        short val = in.readShort();
+                        return hasBad && val == badval;
+                    }
                 };
             }
 
@@ -524,6 +598,22 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Integer( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        int val = in.readInt();
+                        return ( hasBad && val == badval )
+                             ? Double.NaN
+                             : val;
+                    }
+                    long readLong( BasicInput in ) throws IOException {
+                        int val = in.readInt();
+                        return ( hasBad && val == badval )
+                             ? 0L
+                             : val;
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        int val = in.readInt();
+                        return hasBad && val == badval;
+                    }
                 };
             }
 
@@ -539,6 +629,22 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                              ? null
                              : new Long( val );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        long val = in.readLong();
+                        return ( hasBad && val == badval )
+                             ? Double.NaN
+                             : val;
+                    }
+                    long readLong( BasicInput in ) throws IOException {
+                        long val = in.readLong();
+                        return ( hasBad && val == badval )
+                             ? 0L
+                             : val;
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        long val = in.readLong();
+                        return hasBad && val == badval;
+                    }
                 };
             }
 
@@ -548,6 +654,13 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                     Object readValue( BasicInput in ) throws IOException {
                         return new Float( in.readFloat() );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        return in.readFloat();
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        in.skip( 4 );
+                        return false;
+                    }
                 };
             }
 
@@ -557,6 +670,13 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
                     Object readValue( BasicInput in ) throws IOException {
                         return new Double( in.readDouble() );
                     }
+                    double readDouble( BasicInput in ) throws IOException {
+                        return in.readDouble();
+                    }
+                    boolean readNull( BasicInput in ) throws IOException {
+                        in.skip( 8 );
+                        return false;
+                    }
                 };
             }
         }
@@ -806,6 +926,135 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
         }
     }
 
+    /**
+     * RowSplittable implementation for use with this table if it is
+     * random access.  Splitting is by row index range.
+     * Typed and batch values are read directly from the column data,
+     * so that batches of a column are read contiguously.
+     */
+    private class ColFitsRowSplittable
+            implements RowSplittable, TypedRowSequence, BatchRowSequence {
+
+        private final LongSupplier rowIndex_;
+        private long irow_;
+        private long end_;
+        private long batchStart_;
+        private int batchSize_;
+
+        /**
+         * Constructor.
+         *
+         * @param  start  index of first row covered
+         * @param  end   index after last row covered
+         */
+        ColFitsRowSplittable( long start, long end ) {
+            irow_ = start - 1;
+            end_ = end;
+            rowIndex_ = new LongSupplier() {
+                public long getAsLong() {
+                    return irow_;
+                }
+            };
+        }
+
+        public RowSplittable split() {
+            long start = irow_ + 1;
+            if ( end_ - start > 1 ) {
+                long mid = start + ( end_ - start ) / 2;
+                RowSplittable other = new ColFitsRowSplittable( mid, end_ );
+                end_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return end_ - ( irow_ + 1 );
+        }
+
+        public LongSupplier rowIndex() {
+            return rowIndex_;
+        }
+
+        public boolean next() {
+            if ( irow_ < end_ - 1 ) {
+                irow_++;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            checkRow();
+            return randomColReaders_[ icol ].readIndexedCell( irow_ );
+        }
+
+        public Object[] getRow() throws IOException {
+            checkRow();
+            Object[] row = new Object[ ncol_ ];
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                row[ icol ] =
+                    randomColReaders_[ icol ].readIndexedCell( irow_ );
+            }
+            return row;
+        }
+
+        public boolean isNull( int icol ) throws IOException {
+            checkRow();
+            return randomColReaders_[ icol ].readIndexedNull( irow_ );
+        }
+
+        public double getDouble( int icol ) throws IOException {
+            checkRow();
+            return randomColReaders_[ icol ].readIndexedDouble( irow_ );
+        }
+
+        public long getLong( int icol ) throws IOException {
+            checkRow();
+            return randomColReaders_[ icol ].readIndexedLong( irow_ );
+        }
+
+        public int nextBatch( int maxRows ) {
+            batchStart_ = irow_ + 1;
+            batchSize_ = (int) Math.min( (long) maxRows, end_ - batchStart_ );
+            irow_ += batchSize_;
+            return batchSize_;
+        }
+
+        public void getDoubles( int icol, double[] buf ) throws IOException {
+            randomColReaders_[ icol ]
+                .readIndexedDoubles( batchStart_, buf, batchSize_ );
+        }
+
+        public void getLongs( int icol, long[] buf ) throws IOException {
+            randomColReaders_[ icol ]
+                .readIndexedLongs( batchStart_, buf, batchSize_ );
+        }
+
+        public void getNulls( int icol, boolean[] buf ) throws IOException {
+            randomColReaders_[ icol ]
+                .readIndexedNulls( batchStart_, buf, batchSize_ );
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Checks that there is a current row.
+         *
+         * @throws  IllegalStateException  if not
+         */
+        private void checkRow() {
+            if ( irow_ < 0 || irow_ >= end_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+        }
+    }
+
     /**
      * Knows how to read data items of a particular type from a byte store.
      */
@@ -839,6 +1088,48 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
          */
         abstract Object readValue( BasicInput in ) throws IOException;
 
+        /**
+         * Reads a double precision value from a byte buffer.
+         * The result is NaN for null or non-numeric values.
+         * The default implementation converts the result of
+         * {@link #readValue}.
+         *
+         * @param    in   input stream, positioned at read point
+         * @throws   IOException  in case of a read error
+         */
+        double readDouble( BasicInput in ) throws IOException {
+            Object value = readValue( in );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+
+        /**
+         * Reads a long integer value from a byte buffer.
+         * The result is zero for null or non-numeric values.
+         * The default implementation converts the result of
+         * {@link #readValue}.
+         *
+         * @param    in   input stream, positioned at read point
+         * @throws   IOException  in case of a read error
+         */
+        long readLong( BasicInput in ) throws IOException {
+            Object value = readValue( in );
+            return value instanceof Number ? ((Number) value).longValue()
+                                           : 0L;
+        }
+
+        /**
+         * Reads a value from a byte buffer and reports whether it is null.
+         * The default implementation tests the result of
+         * {@link #readValue}.
+         *
+         * @param    in   input stream, positioned at read point
+         * @throws   IOException  in case of a read error
+         */
+        boolean readNull( BasicInput in ) throws IOException {
+            return readValue( in ) == null;
+        }
+
         /**
          * Returns the number of bytes for a single cell of this type.
          *
@@ -906,5 +1197,89 @@ public class ColFitsStarTable extends AbstractStarTable implements Closeable {
         void skipCells( long nrow ) throws IOException {
             getInput().skip( itemBytes_ * nrow );
         }
+
+        /**
+         * Reads the value for a given row as a double.
+         *
+         * @param  irow  row index
+         * @return  numeric value, or NaN for null or non-numeric values
+         */
+        double readIndexedDouble( long irow ) throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            return valReader_.readDouble( input );
+        }
+
+        /**
+         * Reads the value for a given row as a long integer.
+         *
+         * @param  irow  row index
+         * @return  integer value, or zero for null or non-numeric values
+         */
+        long readIndexedLong( long irow ) throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            return valReader_.readLong( input );
+        }
+
+        /**
+         * Indicates whether the value for a given row is null.
+         *
+         * @param  irow  row index
+         * @return  true iff the value is null
+         */
+        boolean readIndexedNull( long irow ) throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            return valReader_.readNull( input );
+        }
+
+        /**
+         * Reads the values for a contiguous range of rows as doubles.
+         *
+         * @param  irow  index of first row
+         * @param  buf   buffer to receive values
+         * @param  n     number of rows
+         */
+        void readIndexedDoubles( long irow, double[] buf, int n )
+                throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = valReader_.readDouble( input );
+            }
+        }
+
+        /**
+         * Reads the values for a contiguous range of rows as long integers.
+         *
+         * @param  irow  index of first row
+         * @param  buf   buffer to receive values
+         * @param  n     number of rows
+         */
+        void readIndexedLongs( long irow, long[] buf, int n )
+                throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = valReader_.readLong( input );
+            }
+        }
+
+        /**
+         * Reads null flags for a contiguous range of rows.
+         *
+         * @param  irow  index of first row
+         * @param  buf   buffer to receive null flags
+         * @param  n     number of rows
+         */
+        void readIndexedNulls( long irow, boolean[] buf, int n )
+                throws IOException {
+            BasicInput input = getInput();
+            input.seek( irow * itemBytes_ );
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = valReader_.readNull( input );
+            }
+        }
     }
 }
@@ -2,8 +2,13 @@ package uk.ac.starlink.fits;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.fits.FitsException;
@@ -15,6 +20,7 @@ import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.ThreadUtils;
 
 /**
  * Object which can serialize a StarTable to a data stream as a one-row FITS
@@ -207,6 +213,82 @@ public class ColFitsTableSerializer implements FitsTableSerializer {
         }
     }
 
+    /**
+     * Writes the FITS data unit populated by this serializer directly
+     * to a given position in a file channel.
+     * Since the length of each column's data is known,
+     * each column can be written straight to its own region of the file
+     * using positional writes, and up to <code>nthread</code> columns
+     * are encoded and written concurrently.
+     * The channel's own position is not affected.
+     *
+     * @param  chan   destination channel
+     * @param  pos   file offset at which the data unit starts
+     * @param  nthread  maximum number of columns to write concurrently
+     * @return   number of bytes written, including padding
+     */
+    public long writeData( final FileChannel chan, long pos, int nthread )
+            throws IOException {
+
+        /* Work out where each column's data will go. */
+        long[] offsets = new long[ ncol_ ];
+        long size = 0L;
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            if ( colStores_[ icol ] != null ) {
+                offsets[ icol ] = pos + size;
+                size += colStores_[ icol ].getDataLength();
+            }
+        }
+
+        /* Write the padding (or, if there is none, the final data byte)
+         * first.  This extends the file to its final length,
+         * which is required for the columns' channel transfers. */
+        int over = (int) ( size % 2880L );
+        int padLeng = over > 0 ? 2880 - over : 0;
+        if ( size + padLeng > 0 ) {
+            ByteBuffer pad = ByteBuffer.allocate( Math.max( padLeng, 1 ) );
+            for ( long ppos = pos + size + padLeng - pad.capacity();
+                  pad.hasRemaining(); ) {
+                ppos += chan.write( pad, ppos );
+            }
+        }
+
+        /* Write each column into its slot. */
+        ExecutorService executor =
+            ThreadUtils.createDaemonPool( nthread, "Colfits writer" );
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            final ColumnStore colStore = colStores_[ icol ];
+            if ( colStore != null ) {
+                final String msg = "Writing column " + ( icol + 1 ) + "/"
+                                 + ncol_ + ": " + colids_[ icol ];
+                final long offset = offsets[ icol ];
+                futures.add( executor.submit( new Callable<Void>() {
+                    public Void call() throws IOException {
+                        logger_.info( msg );
+                        try {
+                            colStore.writeData( chan, offset );
+                        }
+                        finally {
+                            colStore.dispose();
+                        }
+                        return null;
+                    }
+                } ) );
+            }
+        }
+        executor.shutdown();
+        try {
+            for ( Future<Void> future : futures ) {
+                ThreadUtils.getResult( future, "Write failed" );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return size + padLeng;
+    }
+
     public long getRowCount() {
         return nrow_;
     }
@@ -1,7 +1,15 @@
 package uk.ac.starlink.fits;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.TableSequence;
+import uk.ac.starlink.util.ThreadUtils;
 
 /**
  * Handles writing of a <code>StarTable</code> in a column-oriented 
@@ -22,6 +30,21 @@ import uk.ac.starlink.table.StarTable;
 public class ColFitsTableWriter extends AbstractFitsTableWriter {
 
     private final WideFits wide_;
+    private int writeThreads_;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Name of system property giving the default number of threads
+     * used for writing column data ({@value}).
+     * A value of 0 means the number of available processors.
+     * If unset, the columns are written sequentially.
+     *
+     * @see  #setWriteThreads
+     */
+    public static final String WRITE_THREADS_PROPERTY =
+        "startable.colfits.threads";
 
     /**
      * Default constructor.
@@ -40,6 +63,39 @@ public class ColFitsTableWriter extends AbstractFitsTableWriter {
     public ColFitsTableWriter( String name, WideFits wide ) {
         super( name );
         wide_ = wide;
+        writeThreads_ = ThreadUtils.getThreadCount( WRITE_THREADS_PROPERTY );
+    }
+
+    /**
+     * Sets the number of threads used for writing column data.
+     *
+     * <p>By default (value 1, unless the {@link #WRITE_THREADS_PROPERTY}
+     * system property is set) the columns are accumulated in temporary
+     * files and then copied one after another to the output stream.
+     * If a different value is set, and the output is to a file
+     * that can be repositioned (not for instance a pipe),
+     * each column is instead written directly from its temporary file
+     * into its own pre-computed region of the output file using
+     * positioned channel writes, and the given number of columns
+     * is encoded and written concurrently.
+     * A value of zero means use the number of available processors.
+     * Uncompressed output is required for this mode.
+     *
+     * @param  writeThreads  number of column writing threads,
+     *                       or 0 for the number of available processors
+     */
+    public void setWriteThreads( int writeThreads ) {
+        writeThreads_ = writeThreads;
+    }
+
+    /**
+     * Returns the number of threads used for writing column data.
+     *
+     * @return  column writing thread count, or 0 for the number of
+     *          available processors
+     */
+    public int getWriteThreads() {
+        return writeThreads_;
     }
 
     public boolean looksLikeFile( String location ) {
@@ -50,4 +106,66 @@ public class ColFitsTableWriter extends AbstractFitsTableWriter {
             throws IOException {
         return new ColFitsTableSerializer( table, wide_ );
     }
+
+    @Override
+    public void writeStarTables( TableSequence tableSeq, OutputStream out )
+            throws IOException {
+        if ( isDirectWrite() && isSeekableFile( out ) ) {
+            writeDirect( tableSeq, (FileOutputStream) out );
+        }
+        else {
+            super.writeStarTables( tableSeq, out );
+        }
+    }
+
+    @Override
+    protected boolean usesFileChannel() {
+        return isDirectWrite() || super.usesFileChannel();
+    }
+
+    /**
+     * Indicates whether column data is to be written directly to
+     * positions in the output file.
+     *
+     * @return  true for direct concurrent writes
+     */
+    private boolean isDirectWrite() {
+        return writeThreads_ != 1 && getTileRows() <= 0;
+    }
+
+    /**
+     * Writes tables to a file, writing the column data of each one
+     * concurrently into its place in the file.
+     *
+     * @param  tableSeq  tables to write
+     * @param  fout   output stream positioned at the start of the file
+     */
+    private void writeDirect( TableSequence tableSeq, FileOutputStream fout )
+            throws IOException {
+        int nthread = ThreadUtils.getThreadCount( writeThreads_ );
+        FileChannel chan = fout.getChannel();
+        DataOutputStream ostrm =
+            new DataOutputStream( new BufferedOutputStream( fout ) );
+        writePrimaryHDU( ostrm );
+        for ( StarTable table; ( table = tableSeq.nextTable() ) != null; ) {
+            FitsTableSerializer fitser = createSerializer( table );
+            if ( fitser instanceof ColFitsTableSerializer ) {
+                ostrm.write( getHeaderBytes( fitser ) );
+                ostrm.flush();
+                long pos = chan.position();
+                long start = System.currentTimeMillis();
+                long leng = ((ColFitsTableSerializer) fitser)
+                           .writeData( chan, pos, nthread );
+                chan.position( pos + leng );
+                logger_.config( "Wrote " + leng + " bytes of column data"
+                              + " using " + nthread + " threads in "
+                              + ( System.currentTimeMillis() - start )
+                              + "ms" );
+            }
+            else {
+                writeTableHDU( table, fitser, ostrm );
+            }
+        }
+        ostrm.flush();
+    }
 }
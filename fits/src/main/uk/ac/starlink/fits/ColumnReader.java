@@ -71,6 +71,70 @@ abstract class ColumnReader {
      */
     abstract Object readValue( BasicInput stream ) throws IOException;
 
+    /**
+     * Reads bytes from a stream to return a double precision value.
+     * The result is the same as converting the result of
+     * {@link #readValue}, that is NaN for null or non-numeric values.
+     * The default implementation does exactly that, but readers for
+     * scalar numeric columns override it to avoid object creation.
+     *
+     * @param  stream containing bytes to read
+     * @return  numeric value or NaN
+     */
+    double readDouble( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Reads bytes from a stream to return a long integer value.
+     * The result is the same as converting the result of
+     * {@link #readValue}, that is zero for null or non-numeric values.
+     * The default implementation does exactly that, but readers for
+     * scalar integer columns override it to avoid object creation.
+     *
+     * @param  stream containing bytes to read
+     * @return  integer value or zero
+     */
+    long readLong( BasicInput stream ) throws IOException {
+        Object value = readValue( stream );
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Reads bytes from a stream to determine whether the value is null.
+     * The result is the same as testing whether the result of
+     * {@link #readValue} is null.
+     * The default implementation does exactly that, but readers for
+     * scalar numeric columns override it to avoid object creation.
+     *
+     * @param  stream containing bytes to read
+     * @return  true iff the value is null
+     */
+    boolean readNull( BasicInput stream ) throws IOException {
+        return readValue( stream ) == null;
+    }
+
+    /**
+     * Reads bytes from a stream to copy the elements of a numeric
+     * array value into a supplied buffer.
+     * The result is the same as converting the result of
+     * {@link #readValue}; non-numeric values have no elements.
+     * The default implementation does exactly that, but readers for
+     * numeric array columns override it to avoid object creation.
+     *
+     * @param  stream containing bytes to read
+     * @param  buf   buffer to receive elements
+     * @return  number of elements in the value, which may exceed
+     *          the number copied into <code>buf</code>
+     * @see   uk.ac.starlink.table.ArrayRowSequence#getArrayDoubles
+     */
+    int readArrayDoubles( BasicInput stream, double[] buf )
+            throws IOException {
+        return Tables.copyArrayDoubles( readValue( stream ), buf );
+    }
+
     /**
      * Returns the class which objects returned by <tt>readValue</tt>
      * will belong to.
@@ -236,6 +300,21 @@ abstract class ColumnReader {
                             return aReader.readArray( stream, 0 );
                         }
                     }
+                    int readArrayDoubles( BasicInput stream, double[] buf )
+                            throws IOException {
+                        int nel = stream.readInt();
+                        int heapOffset = stream.readInt();
+                        if ( nel > 0 ) {
+                            long point = stream.getOffset();
+                            stream.seek( heapStart + heapOffset );
+                            int n = aReader.readDoubles( stream, nel, buf );
+                            stream.seek( point );
+                            return n;
+                        }
+                        else {
+                            return 0;
+                        }
+                    }
                     int getElementSize() {
                         return aReader.getElementSize();
                     }
@@ -285,6 +364,22 @@ abstract class ColumnReader {
                             return aReader.readArray( stream, 0 );
                         }
                     }
+                    int readArrayDoubles( BasicInput stream, double[] buf )
+                            throws IOException {
+                        long lnel = stream.readLong();
+                        long heapOffset = stream.readLong();
+                        int nel = Tables.checkedLongToInt( lnel );
+                        if ( nel > 0 ) {
+                            long point = stream.getOffset();
+                            stream.seek( heapStart + heapOffset );
+                            int n = aReader.readDoubles( stream, nel, buf );
+                            stream.seek( point );
+                            return n;
+                        }
+                        else {
+                            return 0;
+                        }
+                    }
                     int getElementSize() {
                         return aReader.getElementSize();
                     }
@@ -341,6 +436,10 @@ abstract class ColumnReader {
                 Object readValue( BasicInput stream ) throws IOException {
                     return aReader.readArray( stream, primCount );
                 }
+                int readArrayDoubles( BasicInput stream, double[] buf )
+                        throws IOException {
+                    return aReader.readDoubles( stream, primCount, buf );
+                }
                 int getElementSize() {
                     return aReader.getElementSize();
                 }
@@ -478,6 +577,25 @@ abstract class ColumnReader {
                                         ? null
                                         : new Integer( (int) ( val + iZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? Double.NaN
+                                 : val + iZero;
+                        }
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? 0L
+                                 : val + iZero;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return hasBlank && val == (short) blank;
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -490,6 +608,18 @@ abstract class ColumnReader {
                                         : new Float( (float)
                                                    ( val * scale + dZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? Double.NaN
+                                 : (float) ( val * scale + dZero );
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return hasBlank && val == (short) blank;
+                        }
                     };
                 }
                 else {
@@ -501,6 +631,25 @@ abstract class ColumnReader {
                                         ? null
                                         : new Short( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? Double.NaN
+                                 : val;
+                        }
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return ( hasBlank && val == (short) blank )
+                                 ? 0L
+                                 : val;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            short val = stream.readShort();
+                            return hasBlank && val == (short) blank;
+                        }
                     };
                 }
                 return reader;
@@ -519,6 +668,25 @@ abstract class ColumnReader {
                                         ? null
                                         : new Long( (long) ( val + lZero ) );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                 ? Double.NaN
+                                 : val + lZero;
+                        }
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                 ? 0L
+                                 : val + lZero;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readInt();
+                            return hasBlank && val == (int) blank;
+                        }
                     };
                 }
                 else if ( isScaled ) {
@@ -531,6 +699,18 @@ abstract class ColumnReader {
                                         ? null
                                         : new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                 ? Double.NaN
+                                 : val * scale + dZero;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return hasBlank && val == (int) blank;
+                        }
                     };
                 }
                 else {
@@ -543,6 +723,25 @@ abstract class ColumnReader {
                                         ? null
                                         : new Integer( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                 ? Double.NaN
+                                 : val;
+                        }
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return ( hasBlank && val == (int) blank )
+                                 ? 0L
+                                 : val;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            int val = stream.readInt();
+                            return hasBlank && val == (int) blank;
+                        }
                     };
                 }
                 return reader;
@@ -628,6 +827,18 @@ abstract class ColumnReader {
                                         ? null
                                         : new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                 ? Double.NaN
+                                 : val * scale + dZero;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return hasBlank && val == (long) blank;
+                        }
                     };
                 }
                 else {
@@ -639,6 +850,25 @@ abstract class ColumnReader {
                                         ? null
                                         : new Long( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                 ? Double.NaN
+                                 : val;
+                        }
+                        long readLong( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return ( hasBlank && val == (long) blank )
+                                 ? 0L
+                                 : val;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            long val = stream.readLong();
+                            return hasBlank && val == (long) blank;
+                        }
                     };
                 }
                 return reader;
@@ -663,6 +893,16 @@ abstract class ColumnReader {
                             float val = stream.readFloat();
                             return new Float( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            float val = stream.readFloat();
+                            return (float) ( val * scale + dZero );
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 4 );
+                            return false;
+                        }
                     };
                 }
                 else {
@@ -672,6 +912,16 @@ abstract class ColumnReader {
                             float val = stream.readFloat();
                             return new Float( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            float val = stream.readFloat();
+                            return val;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 4 );
+                            return false;
+                        }
                     };
                 }
                 return reader;    
@@ -686,6 +936,16 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return new Double( val * scale + dZero );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            double val = stream.readDouble();
+                            return val * scale + dZero;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 8 );
+                            return false;
+                        }
                     };
                 }
                 else {
@@ -696,6 +956,16 @@ abstract class ColumnReader {
                             double val = stream.readDouble();
                             return new Double( val );
                         }
+                        double readDouble( BasicInput stream )
+                                throws IOException {
+                            double val = stream.readDouble();
+                            return val;
+                        }
+                        boolean readNull( BasicInput stream )
+                                throws IOException {
+                            stream.skip( 8 );
+                            return false;
+                        }
                     };
                 }
                 return reader;
@@ -915,6 +1185,15 @@ abstract class ColumnReader {
                             }
                             return value;
                         }
+                        int readDoubles( BasicInput stream, int count,
+                                         double[] buf )
+                                throws IOException {
+                            int n = Math.min( count, buf.length );
+                            for ( int i = 0; i < n; i++ ) {
+                                buf[ i ] = stream.readShort();
+                            }
+                            return count;
+                        }
                     };
                 }
                 return reader;
@@ -968,6 +1247,15 @@ abstract class ColumnReader {
                             }
                             return value;
                         }
+                        int readDoubles( BasicInput stream, int count,
+                                         double[] buf )
+                                throws IOException {
+                            int n = Math.min( count, buf.length );
+                            for ( int i = 0; i < n; i++ ) {
+                                buf[ i ] = stream.readInt();
+                            }
+                            return count;
+                        }
                     };
                 }
                 return reader;
@@ -1172,6 +1460,15 @@ abstract class ColumnReader {
                     }
                     return value;
                 }
+                int readDoubles( BasicInput stream, int count, double[] buf )
+                        throws IOException {
+                    int n = Math.min( count, buf.length );
+                    for ( int i = 0; i < n; i++ ) {
+                        float val = stream.readFloat();
+                        buf[ i ] = (float) ( val * scale + zero );
+                    }
+                    return count;
+                }
             };
         }
         else {
@@ -1184,6 +1481,14 @@ abstract class ColumnReader {
                     }
                     return value;
                 }
+                int readDoubles( BasicInput stream, int count, double[] buf )
+                        throws IOException {
+                    int n = Math.min( count, buf.length );
+                    for ( int i = 0; i < n; i++ ) {
+                        buf[ i ] = stream.readFloat();
+                    }
+                    return count;
+                }
             };
         }
     }
@@ -1212,6 +1517,14 @@ abstract class ColumnReader {
                     }
                     return value;
                 }
+                int readDoubles( BasicInput stream, int count, double[] buf )
+                        throws IOException {
+                    int n = Math.min( count, buf.length );
+                    for ( int i = 0; i < n; i++ ) {
+                        buf[ i ] = stream.readDouble() * scale + zero;
+                    }
+                    return count;
+                }
             };
         }
         else {
@@ -1224,6 +1537,14 @@ abstract class ColumnReader {
                     }
                     return value;
                 }
+                int readDoubles( BasicInput stream, int count, double[] buf )
+                        throws IOException {
+                    int n = Math.min( count, buf.length );
+                    for ( int i = 0; i < n; i++ ) {
+                        buf[ i ] = stream.readDouble();
+                    }
+                    return count;
+                }
             };
         }
     }
@@ -1396,6 +1717,25 @@ abstract class ColumnReader {
         abstract Object readArray( BasicInput stream, int count )
                 throws IOException;
 
+        /**
+         * Reads an array from the current position in a stream
+         * into a buffer as double precision values.
+         * The result is the same as converting the result of
+         * {@link #readArray}; the default implementation does exactly
+         * that, but readers of numeric arrays may override it
+         * to avoid object creation.
+         *
+         * @param  stream   stream to read from
+         * @param  count   number of items to read
+         * @param  buf   buffer to receive up to <code>count</code> elements
+         * @return  number of elements in the array,
+         *          which may exceed the length of <code>buf</code>
+         */
+        int readDoubles( BasicInput stream, int count, double[] buf )
+                throws IOException {
+            return Tables.copyArrayDoubles( readArray( stream, count ), buf );
+        }
+
         /** 
          * Returns the class of objects returned from readArray.
          *
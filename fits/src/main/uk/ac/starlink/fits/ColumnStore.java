@@ -2,6 +2,7 @@ package uk.ac.starlink.fits;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import nom.tam.fits.Header;
 import nom.tam.fits.HeaderCardException;
 
@@ -14,7 +15,8 @@ import nom.tam.fits.HeaderCardException;
  * <li>Zero or more calls to {@link #storeValue}</li>
  * <li>One call to {@link #endStores}</li>
  * <li>Zero or more calls to
- *     {@link #getDataLength}, {@link #streamData}, {@link #addHeaderInfo}</li>
+ *     {@link #getDataLength}, {@link #streamData}, {@link #writeData},
+ *     {@link #addHeaderInfo}</li>
  * <li>Optionally, a call to {@link #dispose}</li>
  * </ol>
  *
@@ -50,6 +52,19 @@ interface ColumnStore {
      */
     void streamData( DataOutput out ) throws IOException;
 
+    /**
+     * Writes out all the values which have been stored in this object
+     * to a given position in a file channel.
+     * The bytes written are the same as those written by
+     * {@link #streamData}; positional writes are used, so the channel's
+     * own position is not affected, and several stores may write
+     * to different regions of the same channel concurrently.
+     *
+     * @param  chan  destination channel
+     * @param  pos   offset in channel at which to start writing
+     */
+    void writeData( FileChannel chan, long pos ) throws IOException;
+
     /**
      * Modifies (typically, adds cards to) a FITS header in a way 
      * which describes the column data which is output by {@link #streamData}.
@@ -14,6 +14,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.logging.Logger;
 import nom.tam.fits.Header;
@@ -142,6 +144,38 @@ abstract class FileColumnStore implements ColumnStore {
         }
     }
 
+    public void writeData( FileChannel chan, long pos ) throws IOException {
+        long leng = getDataLength();
+        if ( dumpCopy_ ) {
+            FileInputStream in = new FileInputStream( file_ );
+            try {
+                FileChannel inChan = in.getChannel();
+                for ( long done = 0; done < leng; ) {
+                    long count =
+                        chan.transferFrom( inChan, pos + done, leng - done );
+                    if ( count <= 0 ) {
+                        throw new EOFException();
+                    }
+                    done += count;
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        else {
+            ChannelOutputStream cout = new ChannelOutputStream( chan, pos );
+            BufferedDataOutputStream out = new BufferedDataOutputStream( cout );
+            streamData( out );
+            out.flush();
+            if ( cout.pos_ - pos != leng ) {
+                throw new IOException( "Wrote " + ( cout.pos_ - pos )
+                                     + " bytes not " + leng + " for column "
+                                     + info_ );
+            }
+        }
+    }
+
     public void endStores() throws IOException {
         if ( out_ instanceof OutputStream ) {
             ((OutputStream) out_).close();
@@ -534,6 +568,38 @@ abstract class FileColumnStore implements ColumnStore {
              : (FileColumnStore) new VariableArrayColumnStore( info, handler );
     }
 
+    /**
+     * OutputStream which writes to a file channel using positional writes,
+     * starting at a given offset.
+     */
+    private static class ChannelOutputStream extends OutputStream {
+
+        private final FileChannel chan_;
+        private long pos_;
+
+        /**
+         * Constructor.
+         *
+         * @param  chan  destination channel
+         * @param  pos   offset at which to start writing
+         */
+        ChannelOutputStream( FileChannel chan, long pos ) {
+            chan_ = chan;
+            pos_ = pos;
+        }
+
+        public void write( int b ) throws IOException {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        public void write( byte[] buf, int off, int len ) throws IOException {
+            ByteBuffer bbuf = ByteBuffer.wrap( buf, off, len );
+            while ( bbuf.hasRemaining() ) {
+                pos_ += chan_.write( bbuf, pos_ );
+            }
+        }
+    }
+
     /**
      * ColumnStore concrete subclass which can store arrays of fixed shape.
      * Type-specific data handling is delegated to a component
@@ -301,7 +301,22 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
             throw new TableFormatException( "Can't read FITS header", e );
         }
         String xtension = hdr.getStringValue( "XTENSION" );
-        if ( "BINTABLE".equals( xtension ) ) {
+        if ( ZtableInputFactory.isZtable( hdr ) ) {
+            long datasize = FitsConstants.getDataSize( hdr );
+            if ( datasize > Integer.MAX_VALUE ) {
+                throw new TableFormatException( "Compressed table too large "
+                                              + "to stream" );
+            }
+            byte[] zdata = new byte[ (int) datasize ];
+            in.readFully( zdata );
+            StarTable table =
+                BintableStarTable
+               .createTable( ZtableInputFactory.createUncompressedHeader( hdr ),
+                             new ZtableInputFactory( hdr, zdata ), wide_ );
+            Tables.streamStarTable( table, sink );
+            return true;
+        }
+        else if ( "BINTABLE".equals( xtension ) ) {
             BasicInput input = InputFactory.createSequentialInput( in );
             BintableStarTable.streamStarTable( hdr, input, wide_, sink );
             return true;
@@ -455,12 +470,14 @@ public class FitsTableBuilder implements TableBuilder, MultiTableBuilder {
         long afterpos = datpos + datasize;
         String xtension = hdr.getStringValue( "XTENSION" );
 
-        /* If it's a BINTABLE HDU, make a BintableStarTable out of it. */
+        /* If it's a BINTABLE HDU, make a BintableStarTable out of it.
+         * Tile-compressed tables are presented in uncompressed form. */
         if ( "BINTABLE".equals( xtension ) ) {
             InputFactory inFact =
                 InputFactory.createFactory( datsrc, datpos, datasize );
-            StarTable table =
-                BintableStarTable.createTable( hdr, inFact, wide );
+            StarTable table = ZtableInputFactory.isZtable( hdr )
+                ? ZtableInputFactory.createTable( hdr, inFact, wide )
+                : BintableStarTable.createTable( hdr, inFact, wide );
             IOUtils.skipBytes( strm, datasize );
             return new TableResult( table, afterpos );
         }
@@ -93,4 +93,11 @@ public class FitsTableWriter extends AbstractFitsTableWriter {
         return new StandardFitsTableSerializer( table, allowSignedByte_,
                                                 wide_ );
     }
+
+    @Override
+    protected FitsTableSerializer createOnePassSerializer( StarTable table )
+            throws IOException {
+        return new StandardFitsTableSerializer( table, allowSignedByte_,
+                                                wide_, true );
+    }
 }
@@ -126,13 +126,16 @@ public abstract class InputFactory implements Closeable {
             final int ileng = (int) leng;
             RandomAccessFile raf = new RandomAccessFile( file, "r" );
             final FileChannel chan = raf.getChannel();
+            final MappedBlockManager manager =
+                SimpleMappedInput.createManager( chan, offset, ileng,
+                                                 logName );
             return new AbstractInputFactory( true ) {
                 public BasicInput createInput( boolean isSeq )
                         throws IOException {
-                    return new SimpleMappedInput( chan, offset, ileng,
-                                                  logName );
+                    return new SimpleMappedInput( manager );
                 }
                 public void close() throws IOException {
+                    manager.close();
                     chan.close();
                 }
             };
@@ -141,13 +144,19 @@ public abstract class InputFactory implements Closeable {
             logger_.info( "Will map as multiple blocks: " + file );
             RandomAccessFile raf = new RandomAccessFile( file, "r" );
             final FileChannel chan = raf.getChannel();
+            final MappedBlockManager manager =
+                BlockMappedInput
+               .createManager( chan, offset, leng, logName,
+                               BlockMappedInput.DEFAULT_BLOCKSIZE );
             return new AbstractInputFactory( true ) {
-                public BasicInput createInput( boolean isSeq )
-                        throws IOException {
+                public BasicInput createInput( boolean isSeq ) {
                     return BlockMappedInput
-                          .createInput( chan, offset, leng, logName, ! isSeq );
+                          .createInput( manager,
+                                        isSeq ? 0 : BlockMappedInput
+                                                   .DEFAULT_EXPIRYMILLIS );
                 }
                 public void close() throws IOException {
+                    manager.close();
                     chan.close();
                 }
             };
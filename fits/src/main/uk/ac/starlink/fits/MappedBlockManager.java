@@ -0,0 +1,245 @@
+package uk.ac.starlink.fits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/**
+ * Thread-safe manager for shared, reference-counted memory-mapped
+ * blocks of a file region.
+ *
+ * <p>The region is divided into a number of equal-sized blocks
+ * (the last one may be shorter).  A block is mapped on demand the
+ * first time it is {@link #acquireBlock acquired}, and the same
+ * mapping is shared by all clients that acquire it, from any thread.
+ * Each client gets its own buffer view of the shared mapping,
+ * so that position state is not shared.
+ * When the last reference to a block is {@link Block#release released},
+ * the block is unmapped immediately, using the {@link Unmapper}.
+ * Since a block is never unmapped while any client holds a reference
+ * to it, this avoids the danger of reading from an unmapped buffer
+ * that makes unmapping hazardous in multi-threaded contexts,
+ * and it means that a given part of the file is only mapped once
+ * however many concurrent readers there are.
+ *
+ * <p>Clients must release every block they acquire,
+ * and must not use the buffer view of a block after releasing it.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class MappedBlockManager implements Closeable {
+
+    private final FileChannel channel_;
+    private final FileChannel.MapMode mode_;
+    private final long pos_;
+    private final long size_;
+    private final String logName_;
+    private final long blockSize_;
+    private final int nblock_;
+    private final Block[] blocks_;
+    private final Unmapper unmapper_;
+    private boolean isClosed_;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructor.
+     *
+     * @param   channel  file channel
+     * @param   mode   mapping mode
+     * @param   pos   offset into file of region start
+     * @param   size  number of bytes in region
+     * @param   logName  name for mapped region used in logging messages
+     * @param   blockSize  (maximum) number of bytes per mapped block
+     */
+    public MappedBlockManager( FileChannel channel, FileChannel.MapMode mode,
+                               long pos, long size, String logName,
+                               int blockSize ) {
+        channel_ = channel;
+        mode_ = mode;
+        pos_ = pos;
+        size_ = size;
+        logName_ = logName;
+        blockSize_ = blockSize;
+        long nb = size == 0 ? 1 : ( ( size - 1 ) / blockSize_ ) + 1;
+        nblock_ = (int) nb;
+        if ( nblock_ != nb ) {
+            throw new IllegalArgumentException( "Block count " + nb
+                                              + " too high" );
+        }
+        blocks_ = new Block[ nblock_ ];
+        unmapper_ = Unmapper.getInstance();
+    }
+
+    /**
+     * Returns the number of blocks in the region.
+     *
+     * @return  block count
+     */
+    public int getBlockCount() {
+        return nblock_;
+    }
+
+    /**
+     * Returns the maximum number of bytes in each block.
+     *
+     * @return  block size
+     */
+    public long getBlockSize() {
+        return blockSize_;
+    }
+
+    /**
+     * Returns the number of bytes in the managed region.
+     *
+     * @return  region size
+     */
+    public long getSize() {
+        return size_;
+    }
+
+    /**
+     * Returns the name used for the mapped region in logging messages.
+     *
+     * @return  log name
+     */
+    public String getLogName() {
+        return logName_;
+    }
+
+    /**
+     * Acquires a reference to a given block, mapping it if it is not
+     * currently mapped.  The caller must call {@link Block#release}
+     * on the result when it is no longer required.
+     *
+     * @param  iblock  block index
+     * @return  block
+     * @throws  IOException  if mapping fails or this manager is closed
+     */
+    public synchronized Block acquireBlock( int iblock ) throws IOException {
+        if ( isClosed_ ) {
+            throw new IOException( "Mapped region closed: " + logName_ );
+        }
+        Block block = blocks_[ iblock ];
+        if ( block == null ) {
+            long offset = iblock * blockSize_;
+            long leng = Math.min( blockSize_, size_ - offset );
+            logger_.config( "Mapping file region " + ( iblock + 1 ) + "/"
+                          + nblock_ + " of " + logName_ );
+            MappedByteBuffer buf =
+                channel_.map( mode_, pos_ + offset, leng );
+            block = new Block( iblock, buf );
+            blocks_[ iblock ] = block;
+        }
+        block.refCount_++;
+        return block;
+    }
+
+    /**
+     * Returns the number of blocks that are currently mapped.
+     *
+     * @return  mapped block count
+     */
+    public synchronized int getMappedCount() {
+        int n = 0;
+        for ( Block block : blocks_ ) {
+            if ( block != null ) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Prevents further blocks from being acquired.
+     * Blocks which are still referenced remain mapped until they
+     * are released.
+     */
+    public synchronized void close() {
+        isClosed_ = true;
+    }
+
+    /**
+     * Releases a reference to a block, unmapping it if it is the last one.
+     *
+     * @param  block  block to release
+     */
+    private synchronized void release( Block block ) {
+        if ( block.refCount_ <= 0 ) {
+            throw new IllegalStateException( "Block "  + block.iblock_
+                                           + " not acquired" );
+        }
+        if ( --block.refCount_ == 0 ) {
+            blocks_[ block.iblock_ ] = null;
+            boolean unmapped = unmapper_.unmap( block.buf_ );
+            logger_.config( "Unmapping file region "
+                          + ( block.iblock_ + 1 ) + "/" + nblock_
+                          + " of " + logName_
+                          + ( unmapped ? " (unmapped)" : " (not unmapped)" ) );
+        }
+    }
+
+    /**
+     * Represents a shared mapped block of the region.
+     */
+    public class Block {
+        private final int iblock_;
+        private final MappedByteBuffer buf_;
+        private int refCount_;
+
+        /**
+         * Constructor.
+         *
+         * @param  iblock  block index
+         * @param  buf   mapped buffer
+         */
+        private Block( int iblock, MappedByteBuffer buf ) {
+            iblock_ = iblock;
+            buf_ = buf;
+        }
+
+        /**
+         * Returns the index of this block.
+         *
+         * @return  block index
+         */
+        public int getIndex() {
+            return iblock_;
+        }
+
+        /**
+         * Returns a new buffer view of this block's mapping,
+         * positioned at the start of the block.
+         * The returned buffer has its own position, so is suitable
+         * for use by a single thread.
+         * It must not be used after this block has been released.
+         *
+         * @return  new buffer view
+         */
+        public ByteBuffer createBuffer() {
+            return buf_.duplicate();
+        }
+
+        /**
+         * Forces any changes made to this block's content to be written
+         * to the storage device.
+         */
+        public void force() {
+            buf_.force();
+        }
+
+        /**
+         * Releases this reference to the block.
+         * Following this call, buffer views obtained from it must not
+         * be used.
+         */
+        public void release() {
+            MappedBlockManager.this.release( this );
+        }
+    }
+}
@@ -6,7 +6,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 import nom.tam.util.RandomAccess;
@@ -17,6 +17,15 @@ import nom.tam.util.RandomAccess;
  * necessary if it's larger than Integer.MAX_VALUE bytes, though note
  * that doing this is only going to be a good idea on a 64-bit OS.
  *
+ * <p>Mapped blocks are obtained from a {@link MappedBlockManager},
+ * which may be shared between instances, in which case each
+ * block is only mapped once however many instances are using it.
+ * Blocks are mapped lazily, and references to them are released
+ * when this object is closed, at which point they are unmapped
+ * unless still in use elsewhere.
+ * An instance of this class has its own position state,
+ * so should not be used from multiple threads concurrently.
+ *
  * @author   Mark Taylor
  * @since    9 Jan 2007
  */
@@ -24,10 +33,11 @@ public class MultiMappedFile extends AbstractArrayDataIO
                              implements RandomAccess {
 
     private final FileChannel channel_;
-    private final FileChannel.MapMode mode_;
+    private final MappedBlockManager manager_;
     private final long length_;
-    private final MappedByteBuffer[] niobufs_;
-    private final int blockBytes_;
+    private final MappedBlockManager.Block[] blocks_;
+    private final ByteBuffer[] niobufs_;
+    private final long blockBytes_;
     private final int nblock_;
     private int iblock_;
     private long markPos_;
@@ -46,19 +56,40 @@ public class MultiMappedFile extends AbstractArrayDataIO
     public MultiMappedFile( FileChannel chan, FileChannel.MapMode mode,
                             int blockBytes )
             throws IOException {
+        this( new MappedBlockManager( chan, mode, 0, chan.size(),
+                                      "FITS file", blockBytes ), chan );
+    }
+
+    /**
+     * Constructs a MultiMappedFile using blocks from a given manager,
+     * which may be shared with other instances.
+     * The mapped region of the manager is treated as the whole file.
+     * Closing this object does not close the manager or the
+     * underlying channel.
+     *
+     * @param   manager  mapped block manager
+     */
+    public MultiMappedFile( MappedBlockManager manager ) {
+        this( manager, null );
+    }
+
+    /**
+     * Constructs a MultiMappedFile from a block manager and an
+     * optional channel that will be closed when this object is closed.
+     *
+     * @param   manager  mapped block manager
+     * @param   chan   channel owned by this object, or null
+     */
+    private MultiMappedFile( MappedBlockManager manager, FileChannel chan ) {
+        manager_ = manager;
         channel_ = chan;
-        mode_ = mode;
-        blockBytes_ = blockBytes;
-        length_ = channel_.size();
-        long nb = ( ( length_ - 1 ) / (long) blockBytes ) + 1;
-        if ( nb > Integer.MAX_VALUE ) {
-            throw new IllegalArgumentException( "Block count " + nb
-                                              + " too high" );
-        }
-        nblock_ = toInt( nb );
-        niobufs_ = new MappedByteBuffer[ nblock_ ];
-        logger_.info( "FITS file mapped as " + nblock_ + " blocks of "
-                    + blockBytes_ + " bytes" );
+        blockBytes_ = manager.getBlockSize();
+        length_ = manager.getSize();
+        nblock_ = manager.getBlockCount();
+        blocks_ = new MappedBlockManager.Block[ nblock_ ];
+        niobufs_ = new ByteBuffer[ nblock_ ];
+        logger_.info( manager.getLogName() + " mapped as " + nblock_
+                    + " blocks of " + blockBytes_ + " bytes" );
     }
 
     /**
@@ -142,7 +173,7 @@ public class MultiMappedFile extends AbstractArrayDataIO
                 throw (IOException) new EOFException().initCause( e );
             }
             else {
-                MappedByteBuffer buf = getBuffer( ++iblock_ );
+                ByteBuffer buf = getBuffer( ++iblock_ );
                 buf.position( 0 );
                 return buf.get();
             }
@@ -152,7 +183,7 @@ public class MultiMappedFile extends AbstractArrayDataIO
     protected void get( byte[] buf, int offset, int length )
             throws IOException {
         while ( length > 0 ) {
-            MappedByteBuffer niobuf = getBuffer( iblock_ );
+            ByteBuffer niobuf = getBuffer( iblock_ );
             int nr = Math.min( length, niobuf.remaining() );
             niobuf.get( buf, offset, nr );
             length -= nr;
@@ -173,7 +204,7 @@ public class MultiMappedFile extends AbstractArrayDataIO
                 throw (IOException) new EOFException().initCause( e );
             }
             else {
-                MappedByteBuffer buf = getBuffer( ++iblock_ );
+                ByteBuffer buf = getBuffer( ++iblock_ );
                 buf.position( 0 );
                 buf.put( b );
             }
@@ -183,7 +214,7 @@ public class MultiMappedFile extends AbstractArrayDataIO
     protected void put( byte[] buf, int offset, int length )
             throws IOException {
         while ( length > 0 ) {
-            MappedByteBuffer niobuf = getBuffer( iblock_ );
+            ByteBuffer niobuf = getBuffer( iblock_ );
             int nw = Math.min( length, niobuf.remaining() );
             niobuf.put( buf, offset, nw );
             length -= nw;
@@ -210,13 +241,24 @@ public class MultiMappedFile extends AbstractArrayDataIO
     }
 
     public void close() throws IOException {
-        channel_.close();
+        for ( int ib = 0; ib < nblock_; ib++ ) {
+            MappedBlockManager.Block block = blocks_[ ib ];
+            if ( block != null ) {
+                blocks_[ ib ] = null;
+                niobufs_[ ib ] = null;
+                block.release();
+            }
+        }
+        if ( channel_ != null ) {
+            manager_.close();
+            channel_.close();
+        }
     }
 
     public void flush() {
         for ( int ib = 0; ib < nblock_; ib++ ) {
-            if ( niobufs_[ ib ] != null ) {
-                niobufs_[ ib ].force();
+            if ( blocks_[ ib ] != null ) {
+                blocks_[ ib ].force();
             }
         }
     }
@@ -229,15 +271,15 @@ public class MultiMappedFile extends AbstractArrayDataIO
      * @param  iblock   block index
      * @return   mapped buffer for block <code>iblock</code>
      */
-    private MappedByteBuffer getBuffer( int iblock ) throws IOException {
-        if ( niobufs_[ iblock ] == null ) {
-            long offset = iblock * (long) blockBytes_;
-            int leng = toInt( Math.min( length_ - offset, blockBytes_ ) );
-            niobufs_[ iblock ] = channel_.map( mode_, offset, leng );
-            logger_.config( "Mapping file region " + ( iblock + 1 ) + "/"
-                          + nblock_ );
+    private ByteBuffer getBuffer( int iblock ) throws IOException {
+        ByteBuffer buf = niobufs_[ iblock ];
+        if ( buf == null ) {
+            MappedBlockManager.Block block = manager_.acquireBlock( iblock );
+            buf = block.createBuffer();
+            blocks_[ iblock ] = block;
+            niobufs_[ iblock ] = buf;
         }
-        return niobufs_[ iblock ];
+        return buf;
     }
 
     /**
@@ -3,32 +3,36 @@ package uk.ac.starlink.fits;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.BufferUnderflowException;
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 /**
  * Random-access BasicInput implementation that maps a given region of a file
  * as a monolithic byte buffer.
- * On close, an attempt is made to unmap the buffer.
+ * The mapping is obtained from a {@link MappedBlockManager},
+ * and may be shared with other instances using the same manager.
+ * On close, the reference to the mapped block is released,
+ * which unmaps it if no other instance is using it.
  *
- * <p><strong>Note:</strong> <strong>DO NOT</strong> use an instance
- * of this class from multiple threads - see {@link Unmapper}.
+ * <p>An instance of this class has its own position state,
+ * so should not be used from multiple threads concurrently,
+ * but different instances sharing the same manager may be used
+ * concurrently from different threads.
  *
  * @author   Mark Taylor
  * @since    1 Dec 2014
  */
 public class SimpleMappedInput implements BasicInput {
 
-    private MappedByteBuffer niobuf_;
-    private final String logName_;
-    private final Unmapper unmapper_;
+    private MappedBlockManager.Block block_;
+    private ByteBuffer niobuf_;
 
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.fits" );
 
     /**
-     * Constructor.
+     * Constructs an instance with a private mapping.
      *
      * @param   chan  file channel, preferably read-only
      * @param   pos   offset into file of stream start
@@ -38,10 +42,22 @@ public class SimpleMappedInput implements BasicInput {
     public SimpleMappedInput( FileChannel chan, long pos, int size,
                               String logName )
             throws IOException {
-        niobuf_ = chan.map( FileChannel.MapMode.READ_ONLY, pos, size );
+        this( createManager( chan, pos, size, logName ) );
         logger_.info( "Mapping as single file: " + logName );
-        logName_ = logName;
-        unmapper_ = Unmapper.getInstance();
+    }
+
+    /**
+     * Constructs an instance using a shared mapping.
+     * The manager must be configured to have a single block.
+     *
+     * @param  manager  manager for a single-block mapped region
+     */
+    public SimpleMappedInput( MappedBlockManager manager ) throws IOException {
+        if ( manager.getBlockCount() != 1 ) {
+            throw new IllegalArgumentException( "Not single block" );
+        }
+        block_ = manager.acquireBlock( 0 );
+        niobuf_ = block_.createBuffer();
     }
 
     public boolean isRandom() {
@@ -140,12 +156,27 @@ public class SimpleMappedInput implements BasicInput {
     }
 
     public void close() {
-        MappedByteBuffer niobuf = niobuf_;
+        MappedBlockManager.Block block = block_;
+        block_ = null;
         niobuf_ = null;
-        if ( niobuf != null ) {
-            boolean success = unmapper_.unmap( niobuf );
-            logger_.config( "Attempt to unmap " + logName_ 
-                          + ": " + ( success ? "succeed" : "fail" ) );
+        if ( block != null ) {
+            block.release();
         }
     }
+
+    /**
+     * Returns a manager for a region mapped as a single block.
+     *
+     * @param   chan  file channel, preferably read-only
+     * @param   pos   offset into file of stream start
+     * @param   size  number of bytes in stream
+     * @param   logName  name for mapped region used in logging messages
+     * @return   new manager
+     */
+    static MappedBlockManager createManager( FileChannel chan, long pos,
+                                             int size, String logName ) {
+        return new MappedBlockManager( chan, FileChannel.MapMode.READ_ONLY,
+                                       pos, size, logName,
+                                       Math.max( size, 1 ) );
+    }
 }
@@ -49,6 +49,7 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
     private ColumnWriter[] colWriters;
     private ColumnInfo[] colInfos;
     private long rowCount;
+    private boolean onePass;
 
     /**
      * Package-private constructor intended for use by subclasses.
@@ -80,8 +81,42 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
     public StandardFitsTableSerializer( StarTable table,
                                         boolean allowSignedByte, WideFits wide )
             throws IOException {
+        this( table, allowSignedByte, wide, false );
+    }
+
+    /**
+     * Constructs a serializer to write a given StarTable, optionally
+     * in one-pass mode.
+     *
+     * <p>In one-pass mode, the table data is not read before it is
+     * written, so that the output can be generated from a table which
+     * can only be iterated over once.  In this case the row count
+     * may not be known until the data has been written;
+     * {@link #getRowCount} and {@link #getHeader} reflect the data written
+     * so far, so that the caller is expected to rewrite the header
+     * following the call to {@link #writeData writeData}.
+     * The rewritten header will have the same number of cards as the
+     * original one.
+     * Integer columns that may contain nulls are assumed to do so.
+     * If some column characteristics, such as maximum string lengths,
+     * cannot be determined without reading the data,
+     * a preliminary pass is made anyway.
+     *
+     * @param  table  the table to be written
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     * @param   onePass  true to avoid reading the data before writing it
+     *                   where possible
+     * @throws IOException if it won't be possible to write the given table
+     */
+    public StandardFitsTableSerializer( StarTable table,
+                                        boolean allowSignedByte, WideFits wide,
+                                        boolean onePass )
+            throws IOException {
         this( allowSignedByte, wide );
-        init( table );
+        init( table, onePass );
     }
 
     /**
@@ -95,10 +130,28 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
      *                       for instance if it has too many columns
      */
     final void init( StarTable table ) throws IOException {
+        init( table, false );
+    }
+
+    /**
+     * Configures this serializer for use with a given table and column writer
+     * factory, optionally in one-pass mode.
+     * Should be called before this object is ready for use;
+     * in a constructor would be a good place.
+     * Calls {@link #createColumnWriter}.
+     *
+     * @param  table  table to be written
+     * @param  onePass  true to avoid reading the data before writing it
+     *                  where possible
+     * @throws IOException if it won't be possible to write the given table,
+     *                       for instance if it has too many columns
+     */
+    final void init( StarTable table, boolean onePass ) throws IOException {
         if ( this.table != null ) {
             throw new IllegalStateException( "Table already initialised" );
         }
         this.table = table;
+        this.onePass = onePass;
 
         /* Get table dimensions (though we may need to calculate the row
          * count directly later. */
@@ -176,10 +229,41 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
             }
         }
 
+        /* In one-pass mode, avoid a first pass if possible.
+         * Assume nullable integer columns have nulls, write an initial
+         * row count of zero if it's not known, and leave it to the
+         * column writers to accumulate variable array sizes
+         * if they can. */
+        boolean needFirstPass =
+            hasVarShapes || checkForNullableInts || nrow < 0;
+        if ( onePass && needFirstPass ) {
+            boolean needSizes = false;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                needSizes = needSizes
+                         || varChars[ icol ]
+                         || varElementChars[ icol ]
+                         || ( varShapes[ icol ] &&
+                              ! isStreamableShape( colInfos[ icol ] ) );
+                if ( mayHaveNullableInts[ icol ] ) {
+                    hasNulls[ icol ] = true;
+                }
+            }
+            if ( needSizes ) {
+                logger.info( "Can't avoid first pass: "
+                           + "variable-length fixed-width columns" );
+            }
+            else {
+                needFirstPass = false;
+                if ( nrow < 0 ) {
+                    nrow = 0L;
+                }
+            }
+        }
+
         /* If necessary, make a first pass through the table data to
          * find out the maximum size of variable length fields and the length
          * of the table. */
-        if ( hasVarShapes || checkForNullableInts || nrow < 0 ) {
+        if ( needFirstPass ) {
             StringBuffer sbuf = new StringBuffer( "First pass needed: " );
             if ( hasVarShapes ) {
                 sbuf.append( "(variable array shapes) " );
@@ -309,6 +393,20 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         FitsConstants.checkColumnCount( wide, nUseCol );
     }
 
+    /**
+     * Indicates whether a column with variable array shape can be written
+     * without knowing its maximum size in advance.
+     * This is used in one-pass mode.
+     * The StandardFitsTableSerializer implementation returns false.
+     *
+     * @param  cinfo  column metadata
+     * @return   true iff the column's writer can accumulate size
+     *           information while writing
+     */
+    boolean isStreamableShape( ColumnInfo cinfo ) {
+        return false;
+    }
+
     /**
      * Returns the array of column writers used by this serializer.
      * The list is generated once by the sole call of the 
@@ -519,6 +617,7 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
         /* Write the data cells, delegating the item in each column to
          * the writer that knows how to handle it. */
         long nWritten = 0L;
+        long nrow = 0L;
         RowSequence rseq = table.getRowSequence();
         try {
             while ( rseq.next() ) {
@@ -530,12 +629,18 @@ public class StandardFitsTableSerializer implements FitsTableSerializer {
                     }
                 }
                 nWritten += rowBytes;
+                nrow++;
             }
         }
         finally {
             rseq.close();
         }
 
+        /* In one-pass mode, record the row count now we know it. */
+        if ( onePass ) {
+            rowCount = nrow;
+        }
+
         /* Write padding. */
         int extra = (int) ( nWritten % (long) 2880 );
         if ( extra > 0 ) {
@@ -0,0 +1,669 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression algorithm for the column data of a single tile in a
+ * tile-compressed binary table.
+ * Instances correspond to the values of the <code>ZCTYPn</code>
+ * header cards defined by the
+ * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompression.html"
+ *    >Tiled Table Compression Convention</a>.
+ *
+ * <p>The uncompressed data for a tile of a column is the values of that
+ * column for each row in the tile, one after the other, stored in the
+ * normal big-endian FITS binary table format.
+ * Some algorithms work in terms of elements, whose size in bytes
+ * depends on the data type of the column.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ * @see      ZtableInputFactory
+ */
+abstract class TileCompression {
+
+    private final String name_;
+
+    /** No compression. */
+    public static final TileCompression NOCOMPRESS = new TileCompression(
+            "NOCOMPRESS" ) {
+        public boolean isApplicable( char formatChar ) {
+            return true;
+        }
+        public byte[] compress( byte[] data, int elSize ) {
+            return data;
+        }
+        public void decompress( byte[] zdata, int elSize, byte[] data )
+                throws IOException {
+            if ( zdata.length != data.length ) {
+                throw new IOException( "Uncompressed tile length mismatch ("
+                                     + zdata.length + " != "
+                                     + data.length + ")" );
+            }
+            System.arraycopy( zdata, 0, data, 0, data.length );
+        }
+    };
+
+    /** Gzip compression of the data bytes. */
+    public static final TileCompression GZIP_1 = new TileCompression(
+            "GZIP_1" ) {
+        public boolean isApplicable( char formatChar ) {
+            return true;
+        }
+        public byte[] compress( byte[] data, int elSize ) throws IOException {
+            return gzip( data );
+        }
+        public void decompress( byte[] zdata, int elSize, byte[] data )
+                throws IOException {
+            gunzip( zdata, data );
+        }
+    };
+
+    /**
+     * Gzip compression following shuffling of the data bytes
+     * so that the most significant byte of every element comes first.
+     */
+    public static final TileCompression GZIP_2 = new TileCompression(
+            "GZIP_2" ) {
+        public boolean isApplicable( char formatChar ) {
+            return true;
+        }
+        public byte[] compress( byte[] data, int elSize ) throws IOException {
+            return gzip( elSize > 1 ? shuffle( data, elSize ) : data );
+        }
+        public void decompress( byte[] zdata, int elSize, byte[] data )
+                throws IOException {
+            if ( elSize > 1 ) {
+                byte[] sdata = new byte[ data.length ];
+                gunzip( zdata, sdata );
+                unshuffle( sdata, elSize, data );
+            }
+            else {
+                gunzip( zdata, data );
+            }
+        }
+    };
+
+    /**
+     * Rice compression of integer values, using a block size of 32.
+     * This is only applicable to 1-, 2- and 4-byte integer columns.
+     */
+    public static final TileCompression RICE_1 = new TileCompression(
+            "RICE_1" ) {
+        public boolean isApplicable( char formatChar ) {
+            return formatChar == 'B'
+                || formatChar == 'I'
+                || formatChar == 'J';
+        }
+        public byte[] compress( byte[] data, int elSize ) {
+            return new RiceCodec( elSize ).encode( data );
+        }
+        public void decompress( byte[] zdata, int elSize, byte[] data )
+                throws IOException {
+            new RiceCodec( elSize ).decode( zdata, data );
+        }
+    };
+
+    private static final TileCompression[] KNOWN_COMPRESSIONS = {
+        NOCOMPRESS, GZIP_1, GZIP_2, RICE_1,
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param  name  name as used in ZCTYPn header card values
+     */
+    protected TileCompression( String name ) {
+        name_ = name;
+    }
+
+    /**
+     * Returns the name of this algorithm, as used for the value of
+     * <code>ZCTYPn</code> headers.
+     *
+     * @return  name
+     */
+    public String getName() {
+        return name_;
+    }
+
+    /**
+     * Indicates whether this algorithm may be used for a column
+     * with a given data type.
+     *
+     * @param  formatChar  data type character from TFORMn
+     * @return  true iff this compression is permitted for the type
+     */
+    public abstract boolean isApplicable( char formatChar );
+
+    /**
+     * Compresses the data for a column tile.
+     *
+     * @param  data   uncompressed data
+     * @param  elSize  number of bytes per element
+     * @return  compressed data
+     */
+    public abstract byte[] compress( byte[] data, int elSize )
+            throws IOException;
+
+    /**
+     * Decompresses the data for a column tile.
+     *
+     * @param  zdata   compressed data
+     * @param  elSize  number of bytes per element
+     * @param  data    buffer to receive uncompressed data;
+     *                 it must be filled exactly
+     * @throws  IOException  if the compressed data is inconsistent
+     *                       with the output buffer
+     */
+    public abstract void decompress( byte[] zdata, int elSize, byte[] data )
+            throws IOException;
+
+    @Override
+    public String toString() {
+        return name_;
+    }
+
+    /**
+     * Returns the compression algorithm with a given name.
+     * The <code>RICE_ONE</code> synonym for <code>RICE_1</code>
+     * is recognised.
+     *
+     * @param  name  ZCTYPn header value
+     * @return  compression, or null if the name is not known
+     */
+    public static TileCompression getCompression( String name ) {
+        String uname = name.trim().toUpperCase();
+        if ( "RICE_ONE".equals( uname ) ) {
+            return RICE_1;
+        }
+        for ( TileCompression comp : KNOWN_COMPRESSIONS ) {
+            if ( comp.name_.equals( uname ) ) {
+                return comp;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the size in bytes of the elements used by compression
+     * algorithms for a column of a given data type.
+     * For complex types this is the size of each real/imaginary component.
+     *
+     * @param  formatChar  data type character from TFORMn
+     * @return  element size in bytes
+     */
+    public static int getElementSize( char formatChar ) {
+        switch ( formatChar ) {
+            case 'I':
+                return 2;
+            case 'J':
+            case 'E':
+            case 'C':
+                return 4;
+            case 'K':
+            case 'D':
+            case 'M':
+                return 8;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Compresses a byte array using gzip.
+     *
+     * @param  data  uncompressed bytes
+     * @return  gzip stream bytes
+     */
+    private static byte[] gzip( byte[] data ) throws IOException {
+        ByteArrayOutputStream bout =
+            new ByteArrayOutputStream( data.length / 2 + 64 );
+        OutputStream zout = new GZIPOutputStream( bout );
+        zout.write( data );
+        zout.close();
+        return bout.toByteArray();
+    }
+
+    /**
+     * Decompresses a byte array compressed using gzip.
+     * Plain zlib streams are also accepted.
+     *
+     * @param  zdata  compressed bytes
+     * @param  data   buffer to fill with uncompressed bytes
+     */
+    private static void gunzip( byte[] zdata, byte[] data )
+            throws IOException {
+        InputStream bin = new ByteArrayInputStream( zdata );
+        boolean isGzip = zdata.length > 2
+                      && zdata[ 0 ] == (byte) 0x1f
+                      && zdata[ 1 ] == (byte) 0x8b;
+        InputStream in = isGzip ? new GZIPInputStream( bin )
+                                : new InflaterInputStream( bin );
+        int pos = 0;
+        int leng = data.length;
+        while ( pos < leng ) {
+            int n = in.read( data, pos, leng - pos );
+            if ( n < 0 ) {
+                throw new EOFException( "Compressed tile too short" );
+            }
+            pos += n;
+        }
+        in.close();
+    }
+
+    /**
+     * Reorders the bytes of an array of elements so that all the first
+     * bytes of each element come first, followed by all the second
+     * bytes, etc.
+     *
+     * @param  data  input array
+     * @param  elSize  element size in bytes
+     * @return  shuffled array
+     */
+    private static byte[] shuffle( byte[] data, int elSize ) {
+        int nel = data.length / elSize;
+        byte[] sdata = new byte[ data.length ];
+        for ( int ib = 0; ib < elSize; ib++ ) {
+            int ioff = ib * nel;
+            for ( int iel = 0; iel < nel; iel++ ) {
+                sdata[ ioff + iel ] = data[ iel * elSize + ib ];
+            }
+        }
+        return sdata;
+    }
+
+    /**
+     * Reverses the effect of {@link #shuffle}.
+     *
+     * @param  sdata  shuffled input array
+     * @param  elSize  element size in bytes
+     * @param  data   buffer to receive unshuffled data
+     */
+    private static void unshuffle( byte[] sdata, int elSize, byte[] data ) {
+        int nel = data.length / elSize;
+        for ( int ib = 0; ib < elSize; ib++ ) {
+            int ioff = ib * nel;
+            for ( int iel = 0; iel < nel; iel++ ) {
+                data[ iel * elSize + ib ] = sdata[ ioff + iel ];
+            }
+        }
+    }
+
+    /**
+     * Implements Rice compression of 1-, 2- or 4-byte integers,
+     * compatible with the implementation in CFITSIO.
+     * The first value is written verbatim, and subsequent values are
+     * differenced and written in blocks of 32, each block using an
+     * adaptively chosen number of bits to split off.
+     */
+    private static class RiceCodec {
+
+        private final int nbyte_;
+        private final int fsbits_;
+        private final int fsmax_;
+        private final int bbits_;
+
+        private static final int NBLOCK = 32;
+
+        /**
+         * Constructor.
+         *
+         * @param  nbyte  number of bytes per integer value; 1, 2 or 4
+         */
+        RiceCodec( int nbyte ) {
+            nbyte_ = nbyte;
+            switch ( nbyte ) {
+                case 1:
+                    fsbits_ = 3;
+                    fsmax_ = 6;
+                    break;
+                case 2:
+                    fsbits_ = 4;
+                    fsmax_ = 14;
+                    break;
+                case 4:
+                    fsbits_ = 5;
+                    fsmax_ = 25;
+                    break;
+                default:
+                    throw new IllegalArgumentException( "Rice compression "
+                                                      + "not available for "
+                                                      + nbyte + "-byte ints" );
+            }
+            bbits_ = nbyte * 8;
+        }
+
+        /**
+         * Compresses an array of big-endian integers.
+         *
+         * @param  data  uncompressed bytes
+         * @return  compressed bytes
+         */
+        byte[] encode( byte[] data ) {
+            int nx = data.length / nbyte_;
+            BitWriter out = new BitWriter( data.length / 2 + 16 );
+            if ( nx == 0 ) {
+                return out.toByteArray();
+            }
+            int lastpix = readValue( data, 0 );
+            out.writeBits( lastpix, bbits_ );
+            int[] diff = new int[ NBLOCK ];
+            for ( int i = 0; i < nx; i += NBLOCK ) {
+                int nb = Math.min( NBLOCK, nx - i );
+
+                /* Map pixel differences to unsigned values, accumulating
+                 * their sum so that the split can be chosen. */
+                double pixelsum = 0;
+                for ( int j = 0; j < nb; j++ ) {
+                    int nextpix = readValue( data, i + j );
+                    int pdiff = truncate( nextpix - lastpix );
+                    int d = pdiff < 0 ? ~( pdiff << 1 ) : ( pdiff << 1 );
+                    d = d & mask( bbits_ );
+                    diff[ j ] = d;
+                    pixelsum += d & 0xffffffffL;
+                    lastpix = nextpix;
+                }
+                double dpsum = ( pixelsum - ( nb / 2 ) - 1 ) / nb;
+                long psum = dpsum < 0 ? 0 : ( ((long) dpsum) >> 1 );
+                int fs = 0;
+                for ( ; psum > 0; fs++ ) {
+                    psum >>= 1;
+                }
+
+                /* High entropy: write differences directly. */
+                if ( fs >= fsmax_ ) {
+                    out.writeBits( fsmax_ + 1, fsbits_ );
+                    for ( int j = 0; j < nb; j++ ) {
+                        out.writeBits( diff[ j ], bbits_ );
+                    }
+                }
+
+                /* Low entropy: all differences zero. */
+                else if ( fs == 0 && pixelsum == 0 ) {
+                    out.writeBits( 0, fsbits_ );
+                }
+
+                /* Normal case: Rice coding. */
+                else {
+                    out.writeBits( fs + 1, fsbits_ );
+                    int fsmask = ( 1 << fs ) - 1;
+                    for ( int j = 0; j < nb; j++ ) {
+                        int v = diff[ j ];
+                        out.writeZeros( v >>> fs );
+                        out.writeBits( 1, 1 );
+                        if ( fs > 0 ) {
+                            out.writeBits( v & fsmask, fs );
+                        }
+                    }
+                }
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Decompresses into an array of big-endian integers.
+         *
+         * @param  zdata  compressed bytes
+         * @param  data   buffer to fill with uncompressed bytes
+         */
+        void decode( byte[] zdata, byte[] data ) throws IOException {
+            int nx = data.length / nbyte_;
+            if ( nx == 0 ) {
+                return;
+            }
+            BitReader in = new BitReader( zdata );
+            int lastpix = truncate( in.readBits( bbits_ ) );
+            for ( int i = 0; i < nx; ) {
+                int fs = in.readBits( fsbits_ ) - 1;
+                int imax = Math.min( i + NBLOCK, nx );
+
+                /* Low entropy: all differences zero. */
+                if ( fs < 0 ) {
+                    for ( ; i < imax; i++ ) {
+                        writeValue( data, i, lastpix );
+                    }
+                }
+
+                /* High entropy: differences written directly. */
+                else if ( fs == fsmax_ ) {
+                    for ( ; i < imax; i++ ) {
+                        int d = in.readBits( bbits_ );
+                        lastpix = truncate( unmap( d ) + lastpix );
+                        writeValue( data, i, lastpix );
+                    }
+                }
+
+                /* Normal case: Rice coding. */
+                else {
+                    for ( ; i < imax; i++ ) {
+                        int nzero = in.countZeros();
+                        int d = ( nzero << fs ) | in.readBits( fs );
+                        lastpix = truncate( unmap( d ) + lastpix );
+                        writeValue( data, i, lastpix );
+                    }
+                }
+            }
+        }
+
+        /**
+         * Reverses the mapping of signed differences to unsigned values.
+         *
+         * @param  d  mapped value
+         * @return   signed difference
+         */
+        private static int unmap( int d ) {
+            return ( d & 1 ) == 0 ? ( d >>> 1 ) : ~( d >>> 1 );
+        }
+
+        /**
+         * Sign-extends the low bits of an int to this codec's integer size.
+         *
+         * @param  v  value
+         * @return  truncated value
+         */
+        private int truncate( int v ) {
+            switch ( nbyte_ ) {
+                case 1:
+                    return (byte) v;
+                case 2:
+                    return (short) v;
+                default:
+                    return v;
+            }
+        }
+
+        /**
+         * Returns a mask with a given number of low bits set.
+         *
+         * @param  nbit  number of bits, in the range 1..32
+         * @return  mask
+         */
+        private static int mask( int nbit ) {
+            return nbit == 32 ? -1 : ( 1 << nbit ) - 1;
+        }
+
+        /**
+         * Reads an integer value from a big-endian byte array.
+         *
+         * @param  data  byte array
+         * @param  i   element index
+         * @return  value
+         */
+        private int readValue( byte[] data, int i ) {
+            int ioff = i * nbyte_;
+            int v = data[ ioff ];
+            for ( int ib = 1; ib < nbyte_; ib++ ) {
+                v = ( v << 8 ) | ( data[ ioff + ib ] & 0xff );
+            }
+            return v;
+        }
+
+        /**
+         * Writes an integer value to a big-endian byte array.
+         *
+         * @param  data  byte array
+         * @param  i   element index
+         * @param  v   value
+         */
+        private void writeValue( byte[] data, int i, int v ) {
+            int ioff = i * nbyte_;
+            for ( int ib = nbyte_ - 1; ib >= 0; ib-- ) {
+                data[ ioff + ib ] = (byte) v;
+                v >>= 8;
+            }
+        }
+    }
+
+    /**
+     * Accumulates a stream of bits, most significant first, into bytes.
+     */
+    private static class BitWriter {
+        private final ByteArrayOutputStream out_;
+        private int buf_;
+        private int nbits_;
+
+        /**
+         * Constructor.
+         *
+         * @param  size  initial buffer size
+         */
+        BitWriter( int size ) {
+            out_ = new ByteArrayOutputStream( size );
+        }
+
+        /**
+         * Writes the low bits of a value.
+         *
+         * @param  value  value
+         * @param  nbit   number of bits to write, in the range 0..32
+         */
+        void writeBits( int value, int nbit ) {
+            while ( nbit > 0 ) {
+                int n = Math.min( nbit, 8 - nbits_ );
+                int bits = ( value >>> ( nbit - n ) ) & ( ( 1 << n ) - 1 );
+                buf_ = ( buf_ << n ) | bits;
+                nbits_ += n;
+                nbit -= n;
+                if ( nbits_ == 8 ) {
+                    out_.write( buf_ );
+                    buf_ = 0;
+                    nbits_ = 0;
+                }
+            }
+        }
+
+        /**
+         * Writes a given number of zero bits.
+         *
+         * @param  nzero  unsigned count of zero bits
+         */
+        void writeZeros( int nzero ) {
+            long n = nzero & 0xffffffffL;
+            while ( n > 0 ) {
+                int nb = (int) Math.min( n, 24 );
+                writeBits( 0, nb );
+                n -= nb;
+            }
+        }
+
+        /**
+         * Returns the bytes written so far, padding the last byte with
+         * zero bits if required.
+         *
+         * @return  byte array
+         */
+        byte[] toByteArray() {
+            if ( nbits_ > 0 ) {
+                out_.write( buf_ << ( 8 - nbits_ ) );
+                buf_ = 0;
+                nbits_ = 0;
+            }
+            return out_.toByteArray();
+        }
+    }
+
+    /**
+     * Reads a stream of bits, most significant first, from a byte array.
+     */
+    private static class BitReader {
+        private final byte[] buf_;
+        private int ipos_;
+        private int bits_;
+        private int nbits_;
+
+        /**
+         * Constructor.
+         *
+         * @param  buf  input bytes
+         */
+        BitReader( byte[] buf ) {
+            buf_ = buf;
+        }
+
+        /**
+         * Reads an unsigned value.
+         *
+         * @param  nbit  number of bits to read, in the range 0..32
+         * @return  value
+         */
+        int readBits( int nbit ) throws IOException {
+            int value = 0;
+            while ( nbit > 0 ) {
+                if ( nbits_ == 0 ) {
+                    bits_ = nextByte();
+                    nbits_ = 8;
+                }
+                int n = Math.min( nbit, nbits_ );
+                nbits_ -= n;
+                value = ( value << n ) | ( ( bits_ >>> nbits_ )
+                                         & ( ( 1 << n ) - 1 ) );
+                nbit -= n;
+            }
+            return value;
+        }
+
+        /**
+         * Reads zero bits up to and including the next one bit,
+         * and returns the number of zeros.
+         *
+         * @return  number of zero bits preceding the next one bit
+         */
+        int countZeros() throws IOException {
+            int nzero = 0;
+            while ( ( bits_ & ( ( 1 << nbits_ ) - 1 ) ) == 0 ) {
+                nzero += nbits_;
+                bits_ = nextByte();
+                nbits_ = 8;
+            }
+            int remain = bits_ & ( ( 1 << nbits_ ) - 1 );
+            int nsig = 32 - Integer.numberOfLeadingZeros( remain );
+            nzero += nbits_ - nsig;
+            nbits_ = nsig - 1;
+            return nzero;
+        }
+
+        /**
+         * Returns the next byte from the input.
+         *
+         * @return  unsigned byte value
+         */
+        private int nextByte() throws IOException {
+            if ( ipos_ < buf_.length ) {
+                return buf_[ ipos_++ ] & 0xff;
+            }
+            else {
+                throw new EOFException( "Rice decompression overran "
+                                      + "compressed data" );
+            }
+        }
+    }
+}
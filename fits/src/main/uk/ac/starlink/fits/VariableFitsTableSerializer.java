@@ -46,11 +46,39 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
                                         StoragePolicy storagePolicy,
                                         boolean allowSignedByte, WideFits wide )
             throws IOException {
+        this( table, storagePolicy, allowSignedByte, wide, false );
+    }
+
+    /**
+     * Constructor with optional one-pass mode.
+     * In one-pass mode, the row count, heap size and maximum
+     * variable array lengths are accumulated while the data is
+     * written, and the header should be rewritten afterwards;
+     * see {@link StandardFitsTableSerializer#StandardFitsTableSerializer
+     *            (StarTable,boolean,WideFits,boolean)}.
+     * Since the heap size is not known in advance, 64-bit
+     * descriptors are used by default in that case.
+     *
+     * @param  table  table to write
+     * @param  storagePolicy  policy for acquiring byte array scratch buffers
+     * @param  allowSignedByte  if true, bytes written as FITS signed bytes
+     *         (TZERO=-128), if false bytes written as signed shorts
+     * @param   wide   convention for representing over-wide tables;
+     *                 null to avoid this convention
+     * @param   onePass  true to avoid reading the data before writing it
+     *                   where possible
+     * @throws IOException if it won't be possible to write the given table
+     */
+    public VariableFitsTableSerializer( StarTable table,
+                                        StoragePolicy storagePolicy,
+                                        boolean allowSignedByte, WideFits wide,
+                                        boolean onePass )
+            throws IOException {
         super( allowSignedByte, wide );
         storagePolicy_ = storagePolicy;
         allowSignedByte_ = allowSignedByte;
-        init( table );
-        set64BitMode( getHeapSize() > Integer.MAX_VALUE );
+        init( table, onePass );
+        set64BitMode( onePass || getHeapSize() > Integer.MAX_VALUE );
     }
 
     /**
@@ -139,7 +167,8 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
         VariableArrayColumnWriter[] vcws = getVariableArrayColumnWriters();
         for ( int iv = 0; iv < vcws.length; iv++ ) {
             VariableArrayColumnWriter vcw = vcws[ iv ];
-            count += vcw.totalElements_ * vcw.arrayWriter_.getByteCount();
+            count += vcw.getTotalElements()
+                   * vcw.arrayWriter_.getByteCount();
         }
         return count;
     }
@@ -176,6 +205,12 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
         }
     }
 
+    @Override
+    boolean isStreamableShape( ColumnInfo cinfo ) {
+        Class<?> clazz = cinfo.getContentClass();
+        return clazz.isArray() && clazz != String[].class;
+    }
+
     ColumnWriter createColumnWriter( ColumnInfo cinfo, int[] shape,
                                      boolean varShape, int eSize,
                                      int maxEls, long totalEls,
@@ -228,6 +263,8 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
         private final ArrayWriter arrayWriter_;
         private final int maxElements_;
         private final long totalElements_;
+        private int maxWritten_;
+        private long totalWritten_;
         private PQMode pqMode_;
         private DataOutputStream dataOut_;
 
@@ -270,6 +307,19 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
             for ( int i = 0; i < leng; i++ ) {
                 arrayWriter_.writeElement( dataOut_, value, i );
             }
+            maxWritten_ = Math.max( maxWritten_, leng );
+            totalWritten_ += leng;
+        }
+
+        /**
+         * Returns the total number of array elements in this column.
+         * This is the value supplied at construction time, or the
+         * number written so far if that is larger.
+         *
+         * @return  total element count
+         */
+        long getTotalElements() {
+            return Math.max( totalElements_, totalWritten_ );
         }
 
         public char getFormatChar() {
@@ -281,7 +331,7 @@ public class VariableFitsTableSerializer extends StandardFitsTableSerializer {
                   .append( pqMode_.getFormatChar() )
                   .append( arrayWriter_.getFormatChar() )
                   .append( '(' )
-                  .append( maxElements_ )
+                  .append( Math.max( maxElements_, maxWritten_ ) )
                   .append( ')' )
                   .toString();
         }
@@ -85,4 +85,22 @@ public class VariableFitsTableWriter extends AbstractFitsTableWriter {
         }
         return fitser;
     }
+
+    /**
+     * Returns a one-pass serializer.
+     * Unless the indexing mode has been set explicitly,
+     * this uses 64-bit heap indexing, since the heap size
+     * is not known in advance.
+     */
+    @Override
+    protected FitsTableSerializer createOnePassSerializer( StarTable table )
+            throws IOException {
+        VariableFitsTableSerializer fitser =
+            new VariableFitsTableSerializer( table, storagePolicy_,
+                                             allowSignedByte_, wide_, true );
+        if ( longIndexing_ != null ) {
+            fitser.set64BitMode( longIndexing_.booleanValue() );
+        }
+        return fitser;
+    }
 }
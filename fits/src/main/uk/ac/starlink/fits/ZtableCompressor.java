@@ -0,0 +1,372 @@
+package uk.ac.starlink.fits;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.StoragePolicy;
+
+/**
+ * Writes BINTABLE HDUs in tile-compressed form, following the
+ * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompression.html"
+ *    >Tiled Table Compression Convention</a>.
+ *
+ * <p>The uncompressed row data is generated by a FitsTableSerializer
+ * as usual, and collected a tile at a time.
+ * Each column of each tile is compressed separately,
+ * using RICE_1 for 1-, 2- and 4-byte integer columns,
+ * GZIP_2 for other multi-byte numeric columns
+ * and GZIP_1 for everything else.
+ * Since the size of the compressed data is not known until it has
+ * all been generated, the heap is accumulated in temporary storage
+ * before the HDU is written.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ * @see      ZtableInputFactory
+ */
+class ZtableCompressor {
+
+    private static final Pattern TFORM_REGEX =
+        Pattern.compile( "([0-9]*)([LXBIJKAEDCM])" );
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private ZtableCompressor() {
+    }
+
+    /**
+     * Writes a tile-compressed table HDU.
+     *
+     * @param  hdr  header for the uncompressed form of the table
+     * @param  fitser   serializer which generates the uncompressed data
+     * @param  tileRows  number of rows per tile
+     * @param  out   destination stream
+     */
+    public static void writeTableHDU( Header hdr, FitsTableSerializer fitser,
+                                      int tileRows, DataOutput out )
+            throws IOException {
+        if ( hdr.getLongValue( "PCOUNT", 0 ) != 0 ) {
+            throw new IOException( "Can't tile-compress table with heap" );
+        }
+        long nrow = hdr.getLongValue( "NAXIS2" );
+        int rowLength = hdr.getIntValue( "NAXIS1" );
+        int ncol = hdr.getIntValue( "TFIELDS" );
+        if ( (long) tileRows * rowLength > Integer.MAX_VALUE ) {
+            throw new IOException( "Tiles too large" );
+        }
+
+        /* Work out column layout. */
+        int[] colBytes = new int[ ncol ];
+        int[] elSizes = new int[ ncol ];
+        TileCompression[] comps = new TileCompression[ ncol ];
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            String tform = hdr.getStringValue( "TFORM" + ( icol + 1 ) );
+            Matcher matcher = tform == null
+                            ? null
+                            : TFORM_REGEX.matcher( tform.trim() );
+            if ( matcher == null || ! matcher.lookingAt() ) {
+                throw new IOException( "Can't tile-compress column with "
+                                     + "TFORM" + ( icol + 1 ) + " = "
+                                     + tform );
+            }
+            String scount = matcher.group( 1 );
+            long count = scount.length() == 0 ? 1 : Long.parseLong( scount );
+            char type = matcher.group( 2 ).charAt( 0 );
+            colBytes[ icol ] =
+                (int) ZtableInputFactory.getByteCount( type, count );
+            elSizes[ icol ] = TileCompression.getElementSize( type );
+            comps[ icol ] = getDefaultCompression( type );
+        }
+
+        /* Generate and compress the data. */
+        ByteStore heapStore = StoragePolicy.getDefaultPolicy().makeByteStore();
+        try {
+            TileOutputStream tout =
+                new TileOutputStream( nrow, rowLength, tileRows, colBytes,
+                                      elSizes, comps,
+                                      heapStore.getOutputStream() );
+            DataOutputStream dout = new DataOutputStream( tout );
+            fitser.writeData( dout );
+            dout.flush();
+            tout.finish();
+            long[] descs = tout.descs_;
+            int ntile = tout.ntile_;
+            long heapSize = heapStore.getLength();
+            long[] maxNels = new long[ ncol ];
+            for ( int i = 0; i < descs.length; i += 2 ) {
+                int icol = ( i / 2 ) % ncol;
+                maxNels[ icol ] = Math.max( maxNels[ icol ], descs[ i ] );
+            }
+            boolean isQ = heapSize > Integer.MAX_VALUE;
+            int descBytes = isQ ? 16 : 8;
+
+            /* Write the header. */
+            Header zhdr;
+            try {
+                zhdr = createCompressedHeader( hdr, ncol * descBytes, ntile,
+                                               heapSize, tileRows, isQ,
+                                               maxNels, comps );
+            }
+            catch ( FitsException e ) {
+                throw (IOException) new IOException( e.getMessage() )
+                                   .initCause( e );
+            }
+            FitsConstants.writeHeader( out, zhdr );
+
+            /* Write the descriptor table followed by the heap. */
+            for ( int i = 0; i < descs.length; i += 2 ) {
+                if ( isQ ) {
+                    out.writeLong( descs[ i ] );
+                    out.writeLong( descs[ i + 1 ] );
+                }
+                else {
+                    out.writeInt( (int) descs[ i ] );
+                    out.writeInt( (int) descs[ i + 1 ] );
+                }
+            }
+            heapStore.copy( toOutputStream( out ) );
+            long nbyte = (long) ntile * ncol * descBytes + heapSize;
+            int over = (int) ( nbyte % FitsConstants.FITS_BLOCK );
+            if ( over > 0 ) {
+                out.write( new byte[ FitsConstants.FITS_BLOCK - over ] );
+            }
+        }
+        finally {
+            heapStore.close();
+        }
+    }
+
+    /**
+     * Returns the compression algorithm used by default for a given
+     * column data type.
+     *
+     * @param  type  TFORM data type character
+     * @return  compression
+     */
+    static TileCompression getDefaultCompression( char type ) {
+        if ( TileCompression.RICE_1.isApplicable( type ) ) {
+            return TileCompression.RICE_1;
+        }
+        else if ( TileCompression.getElementSize( type ) > 1 ) {
+            return TileCompression.GZIP_2;
+        }
+        else {
+            return TileCompression.GZIP_1;
+        }
+    }
+
+    /**
+     * Constructs the header for the compressed HDU.
+     *
+     * @param  hdr   uncompressed header
+     * @param  zrowLength  compressed row length in bytes
+     * @param  ntile   number of tiles
+     * @param  heapSize  heap size in bytes
+     * @param  tileRows   number of rows per tile
+     * @param  isQ   true for 64-bit descriptors, false for 32-bit
+     * @param  maxNels  per-column maximum compressed tile byte counts
+     * @param  comps   per-column compression algorithms
+     * @return  compressed header
+     */
+    private static Header createCompressedHeader( Header hdr, int zrowLength,
+                                                  int ntile, long heapSize,
+                                                  int tileRows, boolean isQ,
+                                                  long[] maxNels,
+                                                  TileCompression[] comps )
+            throws FitsException {
+        AddableHeader zhdr = new AddableHeader();
+        String descPrefix = "1" + ( isQ ? 'Q' : 'P' ) + "B(";
+        for ( HeaderCard card : FitsConstants.headerIterable( hdr ) ) {
+            String key = card.getKey();
+            if ( key == null || "END".equals( key ) ) {
+                // skip
+            }
+            else if ( "NAXIS1".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, zrowLength,
+                                              "width of table in bytes" ) );
+            }
+            else if ( "NAXIS2".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, ntile,
+                                              "number of tiles" ) );
+            }
+            else if ( "PCOUNT".equals( key ) ) {
+                zhdr.addLine( new HeaderCard( key, heapSize,
+                                              "size of heap" ) );
+            }
+            else if ( "TFIELDS".equals( key ) ) {
+                zhdr.addLine( card );
+                zhdr.addLine( new HeaderCard( "ZTABLE", true,
+                                              "tile-compressed table" ) );
+                zhdr.addLine( new HeaderCard( "ZTILELEN", tileRows,
+                                              "rows per tile" ) );
+                zhdr.addLine( new HeaderCard( "ZNAXIS1",
+                                              hdr.getLongValue( "NAXIS1" ),
+                                              "uncompressed row width" ) );
+                zhdr.addLine( new HeaderCard( "ZNAXIS2",
+                                              hdr.getLongValue( "NAXIS2" ),
+                                              "uncompressed row count" ) );
+                zhdr.addLine( new HeaderCard( "ZPCOUNT", 0,
+                                              "uncompressed heap size" ) );
+            }
+            else if ( key.startsWith( "TFORM" ) ) {
+                String jcol = key.substring( 5 );
+                int icol = Integer.parseInt( jcol ) - 1;
+                String descForm = descPrefix + maxNels[ icol ] + ")";
+                zhdr.addLine( new HeaderCard( key, descForm,
+                                              "compressed tile descriptor" ) );
+                zhdr.addLine( new HeaderCard( "ZFORM" + jcol, card.getValue(),
+                                              card.getComment() ) );
+                zhdr.addLine( new HeaderCard( "ZCTYP" + jcol,
+                                              comps[ icol ].getName(),
+                                              "compression algorithm" ) );
+            }
+            else {
+                zhdr.addLine( card );
+            }
+        }
+        return zhdr;
+    }
+
+    /**
+     * Adapts a DataOutput to an OutputStream.
+     *
+     * @param  out  data output
+     * @return  output stream writing to out
+     */
+    private static OutputStream toOutputStream( final DataOutput out ) {
+        return out instanceof OutputStream
+             ? (OutputStream) out
+             : new OutputStream() {
+                   public void write( int b ) throws IOException {
+                       out.write( b );
+                   }
+                   public void write( byte[] b, int off, int len )
+                           throws IOException {
+                       out.write( b, off, len );
+                   }
+               };
+    }
+
+    /**
+     * OutputStream which accepts uncompressed row data and writes
+     * compressed tile data to a heap stream, recording descriptors.
+     * Any bytes beyond the end of the last row (padding) are ignored.
+     */
+    private static class TileOutputStream extends OutputStream {
+
+        private final long nrow_;
+        private final int rowLength_;
+        private final int tileRows_;
+        private final int[] colBytes_;
+        private final int[] elSizes_;
+        private final TileCompression[] comps_;
+        private final OutputStream heapOut_;
+        private final int ncol_;
+        private final byte[] tile_;
+        private final long[] descs_;
+        private final long nbyte_;
+        private int tilePos_;
+        private long nwritten_;
+        private long heapPos_;
+        private int ntile_;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow  number of rows
+         * @param  rowLength  uncompressed row length in bytes
+         * @param  tileRows   number of rows per tile
+         * @param  colBytes   per-column field widths in bytes
+         * @param  elSizes    per-column element sizes in bytes
+         * @param  comps      per-column compression algorithms
+         * @param  heapOut    destination for compressed data
+         */
+        TileOutputStream( long nrow, int rowLength, int tileRows,
+                          int[] colBytes, int[] elSizes,
+                          TileCompression[] comps, OutputStream heapOut ) {
+            nrow_ = nrow;
+            rowLength_ = rowLength;
+            tileRows_ = tileRows;
+            colBytes_ = colBytes;
+            elSizes_ = elSizes;
+            comps_ = comps;
+            heapOut_ = heapOut;
+            ncol_ = colBytes.length;
+            long ntile = ( nrow + tileRows - 1 ) / tileRows;
+            tile_ = new byte[ (int) Math.min( nrow, tileRows ) * rowLength ];
+            descs_ = new long[ (int) ntile * ncol_ * 2 ];
+            nbyte_ = nrow * rowLength;
+        }
+
+        @Override
+        public void write( int b ) throws IOException {
+            write( new byte[] { (byte) b }, 0, 1 );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException {
+            while ( len > 0 && nwritten_ < nbyte_ ) {
+                int n = Math.min( len, tile_.length - tilePos_ );
+                n = (int) Math.min( (long) n, nbyte_ - nwritten_ );
+                System.arraycopy( b, off, tile_, tilePos_, n );
+                tilePos_ += n;
+                nwritten_ += n;
+                off += n;
+                len -= n;
+                if ( tilePos_ == tile_.length ) {
+                    flushTile();
+                }
+            }
+        }
+
+        /**
+         * Writes any partial tile.  Must be called after all the data
+         * has been written.
+         */
+        void finish() throws IOException {
+            if ( nwritten_ != nbyte_ ) {
+                throw new IOException( "Data length mismatch ("
+                                     + nwritten_ + " != " + nbyte_ + ")" );
+            }
+            if ( tilePos_ > 0 ) {
+                flushTile();
+            }
+            heapOut_.flush();
+        }
+
+        /**
+         * Compresses the current tile and writes it to the heap.
+         */
+        private void flushTile() throws IOException {
+            int nr = tilePos_ / rowLength_;
+            int coff = 0;
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                int cb = colBytes_[ icol ];
+                byte[] cbuf = new byte[ nr * cb ];
+                for ( int ir = 0; ir < nr; ir++ ) {
+                    System.arraycopy( tile_, ir * rowLength_ + coff,
+                                      cbuf, ir * cb, cb );
+                }
+                byte[] zbuf = cb > 0
+                            ? comps_[ icol ].compress( cbuf, elSizes_[ icol ] )
+                            : new byte[ 0 ];
+                heapOut_.write( zbuf );
+                int idesc = ( ntile_ * ncol_ + icol ) * 2;
+                descs_[ idesc ] = zbuf.length;
+                descs_[ idesc + 1 ] = heapPos_;
+                heapPos_ += zbuf.length;
+                coff += cb;
+            }
+            ntile_++;
+            tilePos_ = 0;
+        }
+    }
+}
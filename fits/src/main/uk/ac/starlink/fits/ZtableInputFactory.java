@@ -0,0 +1,796 @@
+package uk.ac.starlink.fits;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.fits.HeaderCard;
+import uk.ac.starlink.table.TableFormatException;
+
+/**
+ * InputFactory that presents the data of a tile-compressed binary table
+ * as the byte stream of the equivalent uncompressed BINTABLE.
+ * Tile-compressed tables are those following the
+ * <a href="https://fits.gsfc.nasa.gov/registry/tiletablecompression.html"
+ *    >Tiled Table Compression Convention</a>, signalled by the header
+ * <code>ZTABLE=T</code>.
+ * In combination with {@link #createUncompressedHeader},
+ * this allows the usual BINTABLE reading machinery to be used on
+ * such tables; see {@link #createTable}.
+ *
+ * <p>Tiles are decompressed lazily when their bytes are first read,
+ * and the results are held in a cache of bounded size shared between
+ * all the inputs created by this factory.
+ * Inputs in different threads can decompress different tiles
+ * at the same time, and an input that moves from one tile to the next
+ * requests asynchronous decompression of the one after,
+ * so that a sequential scan can overlap decompression with processing.
+ * Random access is efficient as long as the working set of tiles
+ * fits in the cache.
+ *
+ * <p>Supported compression algorithms (<code>ZCTYPn</code>) are
+ * NOCOMPRESS, GZIP_1, GZIP_2 and RICE_1.
+ * Tables whose uncompressed form contains variable-length array columns
+ * are not supported.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class ZtableInputFactory extends InputFactory {
+
+    private final InputFactory zfact_;
+    private final byte[] zdata_;
+    private final BasicInputThreadLocal zinputs_;
+    private final long nrow_;
+    private final int rowLength_;
+    private final int tileRows_;
+    private final int tileBytes_;
+    private final int ntile_;
+    private final int zrowLength_;
+    private final long heapOffset_;
+    private final int ncol_;
+    private final int[] colOffsets_;
+    private final int[] colBytes_;
+    private final int[] elSizes_;
+    private final TileCompression[] comps_;
+    private final int[] descOffsets_;
+    private final boolean[] isQ_;
+    private final long maxCacheBytes_;
+    private final Map<Integer,TileTask> tileMap_;
+    private long cacheBytes_;
+
+    /** Default maximum number of decompressed bytes cached per table. */
+    public static final long DEFAULT_CACHE_BYTES = 64 * 1024 * 1024;
+
+    private static final Pattern TFORM_REGEX =
+        Pattern.compile( "([0-9]*)([LXBIJKAEDCMPQ])(.*)" );
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.fits" );
+
+    /**
+     * Constructs a factory reading compressed data from an input factory.
+     * If the supplied factory does not provide random access,
+     * the compressed data is read into memory.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @param  zfact  input factory for the data part of the compressed HDU
+     */
+    public ZtableInputFactory( Header zhdr, InputFactory zfact )
+            throws IOException {
+        this( zhdr, zfact.isRandom() ? zfact : null,
+              zfact.isRandom() ? null : readData( zhdr, zfact ) );
+        if ( ! zfact.isRandom() ) {
+            zfact.close();
+        }
+    }
+
+    /**
+     * Constructs a factory reading compressed data from memory.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @param  zdata  bytes of the data part of the compressed HDU
+     */
+    public ZtableInputFactory( Header zhdr, byte[] zdata )
+            throws IOException {
+        this( zhdr, null, zdata );
+    }
+
+    /**
+     * Private constructor.  Exactly one of zfact and zdata must be non-null.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @param  zfact  random-access input factory for compressed data, or null
+     * @param  zdata   compressed data, or null
+     */
+    private ZtableInputFactory( Header zhdr, InputFactory zfact,
+                                byte[] zdata )
+            throws IOException {
+        if ( ! isZtable( zhdr ) ) {
+            throw new IllegalArgumentException( "Not a ZTABLE header" );
+        }
+        zfact_ = zfact;
+        zdata_ = zdata;
+        zinputs_ = zfact == null ? null
+                                 : new BasicInputThreadLocal( zfact, false );
+        HeaderCards cards = new HeaderCards( zhdr );
+        nrow_ = getRequiredLong( cards, "ZNAXIS2" );
+        rowLength_ = checkedInt( getRequiredLong( cards, "ZNAXIS1" ),
+                                 "ZNAXIS1" );
+        if ( cards.containsKey( "ZPCOUNT" ) &&
+             cards.getLongValue( "ZPCOUNT" ).longValue() > 0 ) {
+            throw new TableFormatException( "Tile-compressed tables with "
+                                          + "heap data not supported" );
+        }
+        long tileRows = cards.containsKey( "ZTILELEN" )
+                      ? cards.getLongValue( "ZTILELEN" ).longValue()
+                      : nrow_;
+        tileRows_ = (int) Math.max( 1, Math.min( tileRows, nrow_ ) );
+        long tileBytes = (long) tileRows_ * (long) rowLength_;
+        if ( tileBytes > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Tiles too large ("
+                                          + tileBytes + " bytes)" );
+        }
+        tileBytes_ = (int) tileBytes;
+        ntile_ = (int) ( ( nrow_ + tileRows_ - 1 ) / tileRows_ );
+        long zntile = getRequiredLong( cards, "NAXIS2" );
+        if ( zntile != ntile_ ) {
+            throw new TableFormatException( "Tile count mismatch: NAXIS2="
+                                          + zntile + ", expected "
+                                          + ntile_ );
+        }
+        zrowLength_ = checkedInt( getRequiredLong( cards, "NAXIS1" ),
+                                  "NAXIS1" );
+        heapOffset_ = cards.containsKey( "THEAP" )
+                    ? cards.getLongValue( "THEAP" ).longValue()
+                    : (long) zrowLength_ * ntile_;
+
+        /* Work out column layout in both compressed and uncompressed
+         * forms. */
+        ncol_ = (int) getRequiredLong( cards, "TFIELDS" );
+        colOffsets_ = new int[ ncol_ ];
+        colBytes_ = new int[ ncol_ ];
+        elSizes_ = new int[ ncol_ ];
+        comps_ = new TileCompression[ ncol_ ];
+        descOffsets_ = new int[ ncol_ ];
+        isQ_ = new boolean[ ncol_ ];
+        int coff = 0;
+        int doff = 0;
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            int jcol = icol + 1;
+            String zform = cards.getStringValue( "ZFORM" + jcol );
+            if ( zform == null ) {
+                throw new TableFormatException( "Missing ZFORM" + jcol );
+            }
+            Matcher zmatch = TFORM_REGEX.matcher( zform.trim() );
+            if ( ! zmatch.lookingAt() ) {
+                throw new TableFormatException( "Bad ZFORM" + jcol + " value "
+                                              + zform );
+            }
+            String zcount = zmatch.group( 1 );
+            long count = zcount.length() == 0 ? 1 : Long.parseLong( zcount );
+            char type = zmatch.group( 2 ).charAt( 0 );
+            if ( type == 'P' || type == 'Q' ) {
+                throw new TableFormatException( "Variable-length array "
+                                              + "columns not supported in "
+                                              + "tile-compressed tables" );
+            }
+            colOffsets_[ icol ] = coff;
+            colBytes_[ icol ] = (int) getByteCount( type, count );
+            elSizes_[ icol ] = TileCompression.getElementSize( type );
+            coff += colBytes_[ icol ];
+            String zctyp = cards.getStringValue( "ZCTYP" + jcol );
+            TileCompression comp = zctyp == null
+                                 ? TileCompression.NOCOMPRESS
+                                 : TileCompression.getCompression( zctyp );
+            if ( comp == null ) {
+                throw new TableFormatException( "Unsupported compression "
+                                              + "ZCTYP" + jcol + " = "
+                                              + zctyp );
+            }
+            comps_[ icol ] = comp;
+            String tform = cards.getStringValue( "TFORM" + jcol );
+            Matcher tmatch = tform == null
+                           ? null
+                           : TFORM_REGEX.matcher( tform.trim() );
+            char ztype = tmatch != null && tmatch.lookingAt()
+                       ? tmatch.group( 2 ).charAt( 0 )
+                       : ' ';
+            if ( ztype != 'P' && ztype != 'Q' ) {
+                throw new TableFormatException( "Compressed column TFORM"
+                                              + jcol + " = " + tform
+                                              + " is not a descriptor" );
+            }
+            isQ_[ icol ] = ztype == 'Q';
+            descOffsets_[ icol ] = doff;
+            doff += isQ_[ icol ] ? 16 : 8;
+        }
+        if ( coff != rowLength_ ) {
+            throw new TableFormatException( "Row length mismatch: ZNAXIS1="
+                                          + rowLength_ + ", columns sum to "
+                                          + coff );
+        }
+        maxCacheBytes_ = DEFAULT_CACHE_BYTES;
+        tileMap_ = new LinkedHashMap<Integer,TileTask>( 16, 0.75f, true );
+        logger_.info( "Tile-compressed table: " + nrow_ + " rows in "
+                    + ntile_ + " tiles" );
+    }
+
+    public boolean isRandom() {
+        return true;
+    }
+
+    public BasicInput createInput( boolean isSeq ) {
+        return new TileInput();
+    }
+
+    public void close() throws IOException {
+        synchronized ( tileMap_ ) {
+            tileMap_.clear();
+            cacheBytes_ = 0;
+        }
+        if ( zinputs_ != null ) {
+            zinputs_.close();
+        }
+        if ( zfact_ != null ) {
+            zfact_.close();
+        }
+    }
+
+    /**
+     * Returns the number of rows per tile.
+     *
+     * @return  tile height
+     */
+    public int getTileRows() {
+        return tileRows_;
+    }
+
+    /**
+     * Returns the number of tiles.
+     *
+     * @return  tile count
+     */
+    public int getTileCount() {
+        return ntile_;
+    }
+
+    /**
+     * Indicates whether a given header describes a tile-compressed
+     * binary table.
+     *
+     * @param  hdr  HDU header
+     * @return   true iff hdr is a BINTABLE header with ZTABLE=T
+     */
+    public static boolean isZtable( Header hdr ) {
+        return "BINTABLE".equals( hdr.getStringValue( "XTENSION" ) )
+            && hdr.getBooleanValue( "ZTABLE", false );
+    }
+
+    /**
+     * Creates a StarTable from a tile-compressed binary table HDU.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @param  zfact  input factory for the data part of the compressed HDU
+     * @param  wide  convention for representing extended columns;
+     *               use null to avoid use of extended columns
+     * @return  random-access table
+     */
+    public static BintableStarTable createTable( Header zhdr,
+                                                 InputFactory zfact,
+                                                 WideFits wide )
+            throws IOException, FitsException {
+        Header uhdr = createUncompressedHeader( zhdr );
+        return BintableStarTable
+              .createTable( uhdr, new ZtableInputFactory( zhdr, zfact ),
+                            wide );
+    }
+
+    /**
+     * Returns the header of the uncompressed BINTABLE corresponding
+     * to a compressed table header.
+     * Cards specific to the compression convention are removed,
+     * and the structural cards are replaced by the values they
+     * have in the uncompressed form.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @return   uncompressed equivalent header
+     */
+    public static Header createUncompressedHeader( Header zhdr )
+            throws FitsException {
+        AddableHeader uhdr = new AddableHeader();
+        for ( HeaderCard card : FitsConstants.headerIterable( zhdr ) ) {
+            String key = card.getKey();
+            String comment = card.getComment();
+            if ( key == null || "END".equals( key ) ) {
+                // skip
+            }
+            else if ( "NAXIS1".equals( key ) ) {
+                uhdr.addLine( new HeaderCard( key,
+                                              zhdr.getLongValue( "ZNAXIS1" ),
+                                              comment ) );
+            }
+            else if ( "NAXIS2".equals( key ) ) {
+                uhdr.addLine( new HeaderCard( key,
+                                              zhdr.getLongValue( "ZNAXIS2" ),
+                                              comment ) );
+            }
+            else if ( "PCOUNT".equals( key ) ) {
+                uhdr.addLine( new HeaderCard( key, 0L, comment ) );
+            }
+            else if ( key.startsWith( "TFORM" ) ) {
+                String zkey = "ZFORM" + key.substring( 5 );
+                String zform = zhdr.getStringValue( zkey );
+                if ( zform == null ) {
+                    throw new FitsException( "Missing " + zkey );
+                }
+                uhdr.addLine( new HeaderCard( key, zform, comment ) );
+            }
+            else if ( ! isCompressionKey( key ) ) {
+                uhdr.addLine( card );
+            }
+        }
+        return uhdr;
+    }
+
+    /**
+     * Indicates whether a header keyword is one which relates only
+     * to the compressed form of a table.
+     *
+     * @param  key  header keyword
+     * @return  true iff key should not appear in the uncompressed header
+     */
+    private static boolean isCompressionKey( String key ) {
+        return "ZTABLE".equals( key )
+            || "ZNAXIS1".equals( key )
+            || "ZNAXIS2".equals( key )
+            || "ZPCOUNT".equals( key )
+            || "ZTHEAP".equals( key )
+            || "ZTILELEN".equals( key )
+            || "ZHECKSUM".equals( key )
+            || "ZDATASUM".equals( key )
+            || "THEAP".equals( key )
+            || key.startsWith( "ZFORM" )
+            || key.startsWith( "ZCTYP" );
+    }
+
+    /**
+     * Returns the number of bytes in a BINTABLE field.
+     *
+     * @param  type  TFORM data type character
+     * @param  count  TFORM repeat count
+     * @return   field width in bytes
+     */
+    static long getByteCount( char type, long count ) {
+        switch ( type ) {
+            case 'X':
+                return ( count + 7 ) / 8;
+            case 'L':
+            case 'B':
+            case 'A':
+                return count;
+            case 'I':
+                return count * 2;
+            case 'J':
+            case 'E':
+                return count * 4;
+            case 'K':
+            case 'D':
+            case 'C':
+            case 'P':
+                return count * 8;
+            case 'M':
+            case 'Q':
+                return count * 16;
+            default:
+                throw new IllegalArgumentException( "Unknown type " + type );
+        }
+    }
+
+    /**
+     * Returns the number of rows in a given tile.
+     *
+     * @param  itile  tile index
+     * @return  row count
+     */
+    private int getTileRowCount( int itile ) {
+        return (int) Math.min( (long) tileRows_,
+                               nrow_ - (long) itile * tileRows_ );
+    }
+
+    /**
+     * Returns the uncompressed data for a tile, decompressing it in
+     * the current thread if necessary.
+     *
+     * @param  itile  tile index
+     * @return   row-major uncompressed bytes for the tile
+     */
+    private byte[] getTile( int itile ) throws IOException {
+        TileTask task;
+        synchronized ( tileMap_ ) {
+            task = tileMap_.get( new Integer( itile ) );
+            if ( task == null ) {
+                task = new TileTask( itile );
+                tileMap_.put( new Integer( itile ), task );
+            }
+        }
+
+        /* Run the task in this thread if nobody has started it yet;
+         * this is a no-op if it's already running or complete. */
+        task.run();
+        try {
+            return task.get();
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw (IOException)
+                  new IOException( "Interrupted" ).initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            synchronized ( tileMap_ ) {
+                tileMap_.remove( new Integer( itile ) );
+            }
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else {
+                throw (IOException)
+                      new IOException( "Tile decompression failed: " + cause )
+                     .initCause( cause );
+            }
+        }
+    }
+
+    /**
+     * Requests asynchronous decompression of a tile
+     * if it is not already present or in progress.
+     *
+     * @param  itile  tile index
+     */
+    private void prefetchTile( int itile ) {
+        if ( itile < ntile_ ) {
+            TileTask task = null;
+            synchronized ( tileMap_ ) {
+                Integer key = new Integer( itile );
+                if ( ! tileMap_.containsKey( key ) ) {
+                    task = new TileTask( itile );
+                    tileMap_.put( key, task );
+                }
+            }
+            if ( task != null ) {
+                ForkJoinPool.commonPool().execute( task );
+            }
+        }
+    }
+
+    /**
+     * Records the size of a newly decompressed tile,
+     * and discards least recently used tiles if the cache is
+     * over its size limit.
+     *
+     * @param  task  newly completed task
+     */
+    private void tileCompleted( TileTask task ) {
+        synchronized ( tileMap_ ) {
+            cacheBytes_ += task.nbyte_;
+            for ( Iterator<TileTask> it = tileMap_.values().iterator();
+                  it.hasNext() && cacheBytes_ > maxCacheBytes_; ) {
+                TileTask t = it.next();
+                if ( t != task && t.isDone() ) {
+                    cacheBytes_ -= t.nbyte_;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decompresses a tile.
+     *
+     * @param  itile  tile index
+     * @return   row-major uncompressed bytes for the tile
+     */
+    private byte[] decodeTile( int itile ) throws IOException {
+        int nr = getTileRowCount( itile );
+        byte[] tile = new byte[ nr * rowLength_ ];
+        byte[] descBuf = new byte[ zrowLength_ ];
+        readCompressed( (long) itile * zrowLength_, descBuf );
+        ByteBuffer descs = ByteBuffer.wrap( descBuf );
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            int colBytes = colBytes_[ icol ];
+            if ( colBytes > 0 ) {
+                int doff = descOffsets_[ icol ];
+                long nel;
+                long off;
+                if ( isQ_[ icol ] ) {
+                    nel = descs.getLong( doff );
+                    off = descs.getLong( doff + 8 );
+                }
+                else {
+                    nel = descs.getInt( doff ) & 0xffffffffL;
+                    off = descs.getInt( doff + 4 ) & 0xffffffffL;
+                }
+                if ( nel > Integer.MAX_VALUE ) {
+                    throw new TableFormatException( "Compressed tile too "
+                                                  + "large" );
+                }
+                byte[] zbuf = new byte[ (int) nel ];
+                readCompressed( heapOffset_ + off, zbuf );
+                byte[] cbuf = new byte[ nr * colBytes ];
+                comps_[ icol ].decompress( zbuf, elSizes_[ icol ], cbuf );
+                int coff = colOffsets_[ icol ];
+                for ( int ir = 0; ir < nr; ir++ ) {
+                    System.arraycopy( cbuf, ir * colBytes,
+                                      tile, ir * rowLength_ + coff, colBytes );
+                }
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Reads bytes from the data part of the compressed HDU.
+     *
+     * @param  pos  offset into HDU data
+     * @param  buf  buffer to fill
+     */
+    private void readCompressed( long pos, byte[] buf ) throws IOException {
+        if ( zdata_ != null ) {
+            if ( pos + buf.length > zdata_.length ) {
+                throw new EOFException( "Compressed data overrun" );
+            }
+            System.arraycopy( zdata_, (int) pos, buf, 0, buf.length );
+        }
+        else {
+            BasicInput in = zinputs_.get();
+            in.seek( pos );
+            in.readBytes( buf );
+        }
+    }
+
+    /**
+     * Reads all the data from the data part of a compressed HDU
+     * into memory.
+     *
+     * @param  zhdr  header of the compressed BINTABLE HDU
+     * @param  zfact  input factory for the data part of the compressed HDU
+     * @return  data bytes, excluding trailing padding
+     */
+    private static byte[] readData( Header zhdr, InputFactory zfact )
+            throws IOException {
+        long leng = zhdr.getLongValue( "NAXIS1" )
+                  * zhdr.getLongValue( "NAXIS2" )
+                  + zhdr.getLongValue( "PCOUNT", 0 );
+        if ( leng > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Compressed table too large "
+                                          + "for non-random access" );
+        }
+        logger_.info( "Reading " + leng + " bytes of compressed table "
+                    + "into memory" );
+        byte[] data = new byte[ (int) leng ];
+        BasicInput in = zfact.createInput( true );
+        try {
+            in.readBytes( data );
+        }
+        finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Returns the value of a header card that must be present.
+     *
+     * @param  cards  header
+     * @param  key   keyword
+     * @return   integer value
+     * @throws  TableFormatException  if absent
+     */
+    private static long getRequiredLong( HeaderCards cards, String key )
+            throws TableFormatException {
+        Long value = cards.getLongValue( key );
+        if ( value == null ) {
+            throw new TableFormatException( "Missing header " + key );
+        }
+        return value.longValue();
+    }
+
+    /**
+     * Converts a long to an int, throwing an exception if it's out of range.
+     *
+     * @param  value  long value
+     * @param  key   header keyword to which value applies
+     * @return   int value
+     */
+    private static int checkedInt( long value, String key )
+            throws TableFormatException {
+        if ( value < 0 || value > Integer.MAX_VALUE ) {
+            throw new TableFormatException( "Value out of range: "
+                                          + key + " = " + value );
+        }
+        return (int) value;
+    }
+
+    /**
+     * Task that decompresses a tile.
+     */
+    private class TileTask extends FutureTask<byte[]> {
+        volatile int nbyte_;
+
+        /**
+         * Constructor.
+         *
+         * @param  itile  tile index
+         */
+        TileTask( final int itile ) {
+            super( new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    return decodeTile( itile );
+                }
+            } );
+        }
+
+        @Override
+        protected void set( byte[] tile ) {
+            nbyte_ = tile.length;
+            super.set( tile );
+            tileCompleted( this );
+        }
+    }
+
+    /**
+     * Random-access BasicInput presenting the uncompressed table data.
+     */
+    private class TileInput implements BasicInput {
+
+        private int itile_;
+        private long tileStart_;
+        private ByteBuffer buf_;
+
+        /**
+         * Constructor.
+         */
+        TileInput() {
+            itile_ = -1;
+            tileStart_ = 0;
+            buf_ = ByteBuffer.allocate( 0 );
+        }
+
+        public byte readByte() throws IOException {
+            if ( ! buf_.hasRemaining() ) {
+                nextTile();
+            }
+            return buf_.get();
+        }
+
+        public short readShort() throws IOException {
+            if ( buf_.remaining() >= 2 ) {
+                return buf_.getShort();
+            }
+            else {
+                int b0 = readByte() & 0xff;
+                int b1 = readByte() & 0xff;
+                return (short) ( ( b0 << 8 ) | b1 );
+            }
+        }
+
+        public int readInt() throws IOException {
+            if ( buf_.remaining() >= 4 ) {
+                return buf_.getInt();
+            }
+            else {
+                int s0 = readShort() & 0xffff;
+                int s1 = readShort() & 0xffff;
+                return ( s0 << 16 ) | s1;
+            }
+        }
+
+        public long readLong() throws IOException {
+            if ( buf_.remaining() >= 8 ) {
+                return buf_.getLong();
+            }
+            else {
+                long i0 = readInt() & 0xffffffffL;
+                long i1 = readInt() & 0xffffffffL;
+                return ( i0 << 32 ) | i1;
+            }
+        }
+
+        public float readFloat() throws IOException {
+            return buf_.remaining() >= 4 ? buf_.getFloat()
+                                         : Float.intBitsToFloat( readInt() );
+        }
+
+        public double readDouble() throws IOException {
+            return buf_.remaining() >= 8
+                 ? buf_.getDouble()
+                 : Double.longBitsToDouble( readLong() );
+        }
+
+        public void readBytes( byte[] bbuf ) throws IOException {
+            int pos = 0;
+            while ( pos < bbuf.length ) {
+                if ( ! buf_.hasRemaining() ) {
+                    nextTile();
+                }
+                int n = Math.min( bbuf.length - pos, buf_.remaining() );
+                buf_.get( bbuf, pos, n );
+                pos += n;
+            }
+        }
+
+        public void skip( long nbyte ) throws IOException {
+            seek( getOffset() + nbyte );
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public void seek( long offset ) throws IOException {
+            long leng = nrow_ * rowLength_;
+            if ( offset < 0 || offset > leng ) {
+                throw new EOFException( "Seek out of range: " + offset );
+            }
+            if ( ntile_ > 0 ) {
+                int itile = (int) Math.min( offset / tileBytes_, ntile_ - 1 );
+                if ( itile != itile_ ) {
+                    loadTile( itile );
+                }
+                buf_.position( (int) ( offset - tileStart_ ) );
+            }
+        }
+
+        public long getOffset() {
+            return tileStart_ + buf_.position();
+        }
+
+        public void close() {
+            buf_ = ByteBuffer.allocate( 0 );
+            itile_ = -1;
+            tileStart_ = 0;
+        }
+
+        /**
+         * Positions this input at the start of the tile following
+         * the current one.
+         */
+        private void nextTile() throws IOException {
+            int itile = itile_ + 1;
+            if ( itile < ntile_ ) {
+                loadTile( itile );
+            }
+            else {
+                throw new EOFException();
+            }
+        }
+
+        /**
+         * Sets the current tile.  If it follows the previous one,
+         * decompression of the one after is requested in anticipation
+         * of sequential reading.
+         *
+         * @param  itile  tile index
+         */
+        private void loadTile( int itile ) throws IOException {
+            boolean isSequential = itile == itile_ + 1;
+            buf_ = ByteBuffer.wrap( getTile( itile ) );
+            tileStart_ = (long) itile * tileBytes_;
+            itile_ = itile;
+            if ( isSequential ) {
+                prefetchTile( itile + 1 );
+            }
+        }
+    }
+}
@@ -78,6 +78,36 @@ public class BasicInputTest extends TestCase {
         exerciseInput( BlockMappedInput
                       .createInput( chan, off1, leng1, "test", leng1*2, 0 ) );
 
+        /* Inputs sharing mapped blocks. */
+        MappedBlockManager manager1 =
+            SimpleMappedInput.createManager( chan, off1, leng1, "test" );
+        BasicInput sin1 = new SimpleMappedInput( manager1 );
+        BasicInput sin2 = new SimpleMappedInput( manager1 );
+        assertEquals( 1, manager1.getMappedCount() );
+        exerciseInput( sin1 );
+        assertEquals( 1, manager1.getMappedCount() );
+        exerciseInput( sin2 );
+        assertEquals( 0, manager1.getMappedCount() );
+        MappedBlockManager manager2 =
+            BlockMappedInput.createManager( chan, off1, leng1, "test",
+                                            isiz + 5 );
+        BasicInput bin1 = BlockMappedInput.createInput( manager2, 0 );
+        BasicInput bin2 = BlockMappedInput.createInput( manager2, 100 );
+        bin2.readByte();
+        bin2.seek( 0 );
+        exerciseInput( bin1 );
+        assertEquals( 1, manager2.getMappedCount() );
+        exerciseInput( bin2 );
+        assertEquals( 0, manager2.getMappedCount() );
+        manager2.close();
+        try {
+            BlockMappedInput.createInput( manager2, 0 ).readByte();
+            fail();
+        }
+        catch ( IOException e ) {
+            // ok
+        }
+
         // Note this one fails: the EOFException is not thrown at the
         // right place.  Hmm.
 //      exerciseInput( seqOffInput( off1,
@@ -0,0 +1,146 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class ColFitsWriterTest extends TestCase {
+
+    public ColFitsWriterTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testDirectWrite() throws IOException {
+        for ( int nrow : new int[] { 0, 1, 500 } ) {
+            StarTable t0 = createTable( nrow );
+            byte[] serialBytes = writeBytes( new ColFitsTableWriter(), t0 );
+            for ( int nthread : new int[] { 0, 2, 5 } ) {
+                ColFitsTableWriter writer = new ColFitsTableWriter();
+                writer.setWriteThreads( nthread );
+                assertEquals( nthread, writer.getWriteThreads() );
+                assertArrayEquals( serialBytes, writeBytes( writer, t0 ) );
+            }
+        }
+    }
+
+    public void testLocation() throws IOException {
+        StarTable t = createTable( 77 );
+        StarTableOutput sto = new StarTableOutput();
+        File f0 = File.createTempFile( "table", ".colfits" );
+        f0.deleteOnExit();
+        new ColFitsTableWriter().writeStarTable( t, f0.toString(), sto );
+        File f1 = File.createTempFile( "table", ".colfits" );
+        f1.deleteOnExit();
+        ColFitsTableWriter writer = new ColFitsTableWriter();
+        writer.setWriteThreads( 4 );
+        writer.writeStarTables( Tables.arrayTableSequence( new StarTable[] {
+                                    t, t,
+                                } ),
+                                f1.toString(), sto );
+        assertEquals( 0, f1.length() % 2880 );
+        StarTable t0 = readTable( f0, "1" );
+        for ( int ihdu = 1; ihdu <= 2; ihdu++ ) {
+            assertSameData( t0, readTable( f1, Integer.toString( ihdu ) ) );
+        }
+        f0.delete();
+        f1.delete();
+    }
+
+    private StarTable readTable( File f, String pos ) throws IOException {
+        return new ColFitsTableBuilder()
+              .makeStarTable( new FileDataSource( f, pos ), true,
+                              StoragePolicy.PREFER_MEMORY );
+    }
+
+    private byte[] writeBytes( ColFitsTableWriter writer, StarTable table )
+            throws IOException {
+        File f = File.createTempFile( "table", ".colfits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        writer.writeStarTable( table, out );
+        out.close();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream( f );
+        byte[] buf = new byte[ 8192 ];
+        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+            bout.write( buf, 0, n );
+        }
+        in.close();
+        f.delete();
+        return bout.toByteArray();
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        assertEquals( t0.getRowCount(), t1.getRowCount() );
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                Object v0 = rseq0.getCell( ic );
+                Object v1 = rseq1.getCell( ic );
+                if ( v0 != null && v0.getClass().isArray() ) {
+                    assertArrayEquals( v0, v1 );
+                }
+                else {
+                    assertEquals( v0, v1 );
+                }
+            }
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+
+    private static StarTable createTable( int nrow ) {
+        int[] ivals = new int[ nrow ];
+        Integer[] nivals = new Integer[ nrow ];
+        double[] dvals = new double[ nrow ];
+        String[] svals = new String[ nrow ];
+        float[][] fvals = new float[ nrow ][];
+        short[][] avals = new short[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            nivals[ i ] = i % 4 == 0 ? null : new Integer( -i );
+            dvals[ i ] = 0.5 * i;
+            svals[ i ] = "s" + i;
+            fvals[ i ] = new float[] { i, -i, 0.25f * i };
+            avals[ i ] = new short[ i % 5 ];
+            for ( int j = 0; j < avals[ i ].length; j++ ) {
+                avals[ i ][ j ] = (short) ( i + j );
+            }
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "ni", nivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        ColumnInfo finfo = new ColumnInfo( "f", float[].class, null );
+        finfo.setShape( new int[] { 3 } );
+        table.addColumn( ArrayColumn.makeColumn( finfo, fvals ) );
+        ColumnInfo ainfo = new ColumnInfo( "a", short[].class, null );
+        ainfo.setShape( new int[] { -1 } );
+        table.addColumn( ArrayColumn.makeColumn( ainfo, avals ) );
+        return table;
+    }
+}
@@ -13,15 +13,19 @@ import nom.tam.fits.Header;
 import nom.tam.fits.HeaderCardException;
 import nom.tam.util.BufferedDataOutputStream;
 import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ArrayRowSequence;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.DescribedValue;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.StarTableOutput;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.table.formats.TextTableWriter;
 import uk.ac.starlink.util.FileDataSource;
 import uk.ac.starlink.util.TestCase;
@@ -57,6 +61,45 @@ public class ColumnReaderTest extends TestCase {
         checkIntegersTable( inTable );
     }
 
+    /**
+     * Checks that typed cell access gives the same values as the
+     * corresponding value objects.
+     */
+    public void testTypedAccess() throws IOException, HeaderCardException {
+        File f = File.createTempFile( "table", ".fits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        writeIntegersBintable( 20, out );
+        out.close();
+        StarTable inTable = new FitsTableBuilder()
+                           .makeStarTable( new FileDataSource( f ), true,
+                                           StoragePolicy.PREFER_MEMORY );
+        assertTrue( inTable.isRandom() );
+        checkTypedAccess( inTable, inTable.getRowSequence() );
+        checkTypedAccess( inTable, inTable.getRowSplittable() );
+        long nrow = inTable.getRowCount();
+        checkBatchAccess( inTable, inTable.getRowSequence(), 7, 0, nrow );
+        checkBatchAccess( inTable, inTable.getRowSplittable(), 50, 0, nrow );
+
+        File cf = File.createTempFile( "table", ".colfits" );
+        cf.deleteOnExit();
+        OutputStream cout = new FileOutputStream( cf );
+        new ColFitsTableWriter().writeStarTable( inTable, cout );
+        cout.close();
+        StarTable colTable = new ColFitsTableBuilder()
+                            .makeStarTable( new FileDataSource( cf ), true,
+                                            StoragePolicy.PREFER_MEMORY );
+        assertTrue( colTable.isRandom() );
+        checkTypedAccess( colTable, colTable.getRowSplittable() );
+        RowSplittable csplit = colTable.getRowSplittable();
+        RowSplittable csplit2 = csplit.split();
+        long mid = csplit.splittableSize();
+        checkBatchAccess( colTable, csplit, 3, 0, mid );
+        checkBatchAccess( colTable, csplit2, 3, mid, nrow );
+        cf.delete();
+        f.delete();
+    }
+
     /**
      * Reads a table written by an earlier incarnation of this program,
      * and tests its contents.
@@ -126,6 +169,153 @@ public class ColumnReaderTest extends TestCase {
         rseq.close();
     }
 
+    /**
+     * Checks that parallel read-ahead scanning gives the same rows
+     * as serial reading.
+     */
+    public void testParallelScan() throws IOException {
+        int nrow = 150000;
+        int[] ivals = new int[ nrow ];
+        double[] dvals = new double[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            dvals[ i ] = i * 0.25;
+            svals[ i ] = i % 3 == 0 ? null : Integer.toString( i );
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        File f = File.createTempFile( "table", ".fits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        new FitsTableWriter().writeStarTable( t0, out );
+        out.close();
+        String prop = BintableStarTable.SCAN_THREADS_PROPERTY;
+        for ( String nthread : new String[] { "3", "0" } ) {
+            System.setProperty( prop, nthread );
+            try {
+                BintableStarTable t1 = (BintableStarTable)
+                    new FitsTableBuilder()
+                   .makeStarTable( new FileDataSource( f ), true,
+                                   StoragePolicy.PREFER_MEMORY );
+                RowSequence rseq = t1.getRowSequence();
+                long irow = 0;
+                while ( rseq.next() ) {
+                    assertEquals( new Integer( (int) irow ),
+                                  rseq.getCell( 0 ) );
+                    assertArrayEquals( t0.getRow( irow ), rseq.getRow() );
+                    irow++;
+                }
+                assertEquals( nrow, irow );
+                rseq.close();
+
+                /* Abandon a scan part way through. */
+                rseq = t1.getRowSequence();
+                assertTrue( rseq.next() );
+                assertArrayEquals( t0.getRow( 0 ), rseq.getRow() );
+                rseq.close();
+                t1.close();
+            }
+            finally {
+                System.clearProperty( prop );
+            }
+        }
+        f.delete();
+    }
+
+    /**
+     * Checks that array values read into reusable buffers are the same
+     * as the corresponding array objects.
+     */
+    public void testArrayDoubles() throws IOException {
+        int nrow = 60;
+        double[][] dvals = new double[ nrow ][];
+        float[][] fvals = new float[ nrow ][];
+        short[][] svals = new short[ nrow ][];
+        int[][] ivals = new int[ nrow ][];
+        float[][] fixvals = new float[ nrow ][];
+        String[] strvals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            int n = ( i * 7 ) % 23;
+            dvals[ i ] = new double[ n ];
+            fvals[ i ] = i % 5 == 0 ? null : new float[ n ];
+            svals[ i ] = new short[ n / 2 ];
+            ivals[ i ] = new int[ n ];
+            for ( int j = 0; j < n; j++ ) {
+                dvals[ i ][ j ] = i + 0.5 * j;
+                if ( fvals[ i ] != null ) {
+                    fvals[ i ][ j ] = -0.25f * j;
+                }
+                ivals[ i ][ j ] = i * 1000 - j;
+            }
+            for ( int j = 0; j < n / 2; j++ ) {
+                svals[ i ][ j ] = (short) ( j - i );
+            }
+            fixvals[ i ] = new float[] { i, 0.5f * i, -i };
+            strvals[ i ] = "s" + i;
+        }
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        t0.addColumn( ArrayColumn.makeColumn( varInfo( "d", double[].class ),
+                                              dvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( varInfo( "f", float[].class ),
+                                              fvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( varInfo( "s", short[].class ),
+                                              svals ) );
+        t0.addColumn( ArrayColumn.makeColumn( varInfo( "i", int[].class ),
+                                              ivals ) );
+        ColumnInfo fixInfo = new ColumnInfo( "fix", float[].class, null );
+        fixInfo.setShape( new int[] { 3 } );
+        t0.addColumn( ArrayColumn.makeColumn( fixInfo, fixvals ) );
+        t0.addColumn( ArrayColumn.makeColumn( "str", strvals ) );
+        VariableFitsTableWriter[] writers = {
+            new VariableFitsTableWriter( Boolean.FALSE, true, null ),
+            new VariableFitsTableWriter( Boolean.TRUE, true, null ),
+        };
+        for ( VariableFitsTableWriter writer : writers ) {
+            File f = File.createTempFile( "table", ".fits" );
+            f.deleteOnExit();
+            OutputStream out = new FileOutputStream( f );
+            writer.writeStarTable( t0, out );
+            out.close();
+            StarTable t1 = new FitsTableBuilder()
+                          .makeStarTable( new FileDataSource( f ), true,
+                                          StoragePolicy.PREFER_MEMORY );
+            RowSequence rseq = t1.getRowSequence();
+            assertTrue( rseq instanceof ArrayRowSequence );
+            double[] buf = new double[ 32 ];
+            double[] buf1 = new double[ 32 ];
+            double[] smallBuf = new double[ 4 ];
+            while ( rseq.next() ) {
+                for ( int ic = 0; ic < t0.getColumnCount(); ic++ ) {
+                    int n1 = Tables.copyArrayDoubles( rseq.getCell( ic ),
+                                                      buf1 );
+                    int n = ((ArrayRowSequence) rseq)
+                           .getArrayDoubles( ic, buf );
+                    assertEquals( n1, n );
+                    for ( int j = 0; j < n; j++ ) {
+                        assertEquals( buf1[ j ], buf[ j ] );
+                    }
+                    assertEquals( n, Tables.getArrayDoubles( rseq, ic,
+                                                             smallBuf ) );
+                    for ( int j = 0; j < Math.min( n, 4 ); j++ ) {
+                        assertEquals( buf1[ j ], smallBuf[ j ] );
+                    }
+                }
+                assertEquals( 0, Tables.getArrayDoubles( rseq, 5, buf ) );
+            }
+            rseq.close();
+            f.delete();
+        }
+    }
+
+    private static ColumnInfo varInfo( String name, Class<?> clazz ) {
+        ColumnInfo info = new ColumnInfo( name, clazz, null );
+        info.setShape( new int[] { -1 } );
+        return info;
+    }
+
     /**
      * Tests the contents of a table.
      * It succeeds only if every element in row I is either a Number with
@@ -167,6 +357,58 @@ public class ColumnReaderTest extends TestCase {
         }
     }
 
+    private void checkTypedAccess( StarTable table, RowSequence rseq )
+            throws IOException {
+        assertTrue( rseq instanceof TypedRowSequence );
+        int ncol = table.getColumnCount();
+        int nrow = 0;
+        while ( rseq.next() ) {
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Object cell = rseq.getCell( icol );
+                boolean isNum = cell instanceof Number;
+                assertEquals( isNum ? ((Number) cell).doubleValue()
+                                    : Double.NaN,
+                              Tables.getDouble( rseq, icol ) );
+                assertEquals( isNum ? ((Number) cell).longValue() : 0L,
+                              Tables.getLong( rseq, icol ) );
+                assertEquals( cell == null, Tables.isNull( rseq, icol ) );
+            }
+            nrow++;
+        }
+        rseq.close();
+        assertEquals( table.getRowCount(), nrow );
+    }
+
+    private void checkBatchAccess( StarTable table, RowSequence rseq,
+                                   int bsize, long start, long end )
+            throws IOException {
+        assertTrue( rseq instanceof BatchRowSequence );
+        BatchRowSequence bseq = (BatchRowSequence) rseq;
+        int ncol = table.getColumnCount();
+        double[] dbuf = new double[ bsize ];
+        long[] lbuf = new long[ bsize ];
+        boolean[] nbuf = new boolean[ bsize ];
+        long irow = start;
+        for ( int n; ( n = bseq.nextBatch( bsize ) ) > 0; irow += n ) {
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                bseq.getDoubles( icol, dbuf );
+                bseq.getLongs( icol, lbuf );
+                bseq.getNulls( icol, nbuf );
+                for ( int i = 0; i < n; i++ ) {
+                    Object cell = table.getCell( irow + i, icol );
+                    boolean isNum = cell instanceof Number;
+                    assertEquals( isNum ? ((Number) cell).doubleValue()
+                                        : Double.NaN, dbuf[ i ] );
+                    assertEquals( isNum ? ((Number) cell).longValue() : 0L,
+                                  lbuf[ i ] );
+                    assertEquals( cell == null, nbuf[ i ] );
+                }
+            }
+        }
+        bseq.close();
+        assertEquals( end, irow );
+    }
+
     private void assertEqualValue( int irow, Object oval, boolean isString ) {
         double num = isString ? Double.parseDouble( (String) oval )
                               : ((Number) oval).doubleValue();
@@ -0,0 +1,253 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StarTableOutput;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableSequence;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.ByteArrayDataSource;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class OnePassTest extends TestCase {
+
+    public OnePassTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+    }
+
+    public void testOnePass() throws IOException {
+        for ( int nrow : new int[] { 0, 1, 99, 2000 } ) {
+            FitsTableWriter fw = new FitsTableWriter();
+            fw.setOnePass( true );
+            assertTrue( fw.isOnePass() );
+            checkRoundTrip( fw, createTable( nrow, false ) );
+
+            StarTable vt = createTable( nrow, true );
+            VariableFitsTableWriter vw = new VariableFitsTableWriter();
+            vw.setOnePass( true );
+            checkRoundTrip( vw, vt );
+            VariableFitsTableWriter pw =
+                new VariableFitsTableWriter( Boolean.FALSE, true, null );
+            pw.setOnePass( true );
+            checkRoundTrip( pw, vt );
+        }
+    }
+
+    public void testProperties() {
+        String onePassProp = AbstractFitsTableWriter.ONEPASS_PROPERTY;
+        String tileProp = AbstractFitsTableWriter.TILEROWS_PROPERTY;
+        String threadProp = ColFitsTableWriter.WRITE_THREADS_PROPERTY;
+        assertFalse( new FitsTableWriter().isOnePass() );
+        assertEquals( 0, new FitsTableWriter().getTileRows() );
+        assertEquals( 1, new ColFitsTableWriter().getWriteThreads() );
+        try {
+            System.setProperty( onePassProp, "true" );
+            System.setProperty( tileProp, "1000" );
+            System.setProperty( threadProp, "3" );
+            assertTrue( new FitsTableWriter().isOnePass() );
+            assertTrue( new VariableFitsTableWriter().isOnePass() );
+            assertEquals( 1000, new FitsTableWriter().getTileRows() );
+            assertEquals( 3, new ColFitsTableWriter().getWriteThreads() );
+            System.setProperty( tileProp, "lots" );
+            assertEquals( 0, new FitsTableWriter().getTileRows() );
+        }
+        finally {
+            System.clearProperty( onePassProp );
+            System.clearProperty( tileProp );
+            System.clearProperty( threadProp );
+        }
+    }
+
+    public void testLocation() throws IOException {
+        StarTable t0 = createTable( 300, false );
+        File f = File.createTempFile( "onepass", ".fits" );
+        f.deleteOnExit();
+        FitsTableWriter writer = new FitsTableWriter();
+        writer.setOnePass( true );
+        TableSequence tseq =
+            Tables.arrayTableSequence( new StarTable[] {
+                new OnceTable( t0 ), new OnceTable( t0 ),
+            } );
+        writer.writeStarTables( tseq, f.toString(), new StarTableOutput() );
+        assertEquals( 0, f.length() % 2880 );
+        for ( int ihdu = 0; ihdu < 2; ihdu++ ) {
+            String pos = Integer.toString( ihdu + 1 );
+            StarTable t1 = new FitsTableBuilder()
+                          .makeStarTable( new FileDataSource( f, pos ),
+                                          true, StoragePolicy.PREFER_MEMORY );
+            assertSameData( t0, t1 );
+        }
+        f.delete();
+    }
+
+    public void testPipe() throws Exception {
+        final File fifo = new File( System.getProperty( "java.io.tmpdir" ),
+                                    "onepass-" + System.nanoTime() + ".fifo" );
+        try {
+            Process proc =
+                new ProcessBuilder( "mkfifo", fifo.toString() ).start();
+            if ( proc.waitFor() != 0 ) {
+                return;
+            }
+        }
+        catch ( IOException e ) {
+            return;
+        }
+        try {
+
+            /* Read the pipe in another thread. */
+            final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            final IOException[] readErr = new IOException[ 1 ];
+            Thread reader = new Thread( "FIFO reader" ) {
+                public void run() {
+                    try {
+                        InputStream in = new FileInputStream( fifo );
+                        byte[] buf = new byte[ 4096 ];
+                        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+                            bout.write( buf, 0, n );
+                        }
+                        in.close();
+                    }
+                    catch ( IOException e ) {
+                        readErr[ 0 ] = e;
+                    }
+                }
+            };
+            reader.start();
+
+            /* One-pass output can't rewrite headers in a pipe,
+             * so the table is written normally. */
+            StarTable t0 = createTable( 99, false );
+            FitsTableWriter fw = new FitsTableWriter();
+            fw.setOnePass( true );
+            OutputStream out = new FileOutputStream( fifo );
+            assertFalse( AbstractFitsTableWriter.isSeekableFile( out ) );
+            fw.writeStarTable( t0, out );
+            out.close();
+            reader.join();
+            assertNull( readErr[ 0 ] );
+            byte[] fits = bout.toByteArray();
+            assertEquals( 0, fits.length % 2880 );
+            StarTable t1 = new FitsTableBuilder()
+                          .makeStarTable( new ByteArrayDataSource( "pipe",
+                                                                   fits ),
+                                          true, StoragePolicy.PREFER_MEMORY );
+            assertSameData( t0, t1 );
+        }
+        finally {
+            fifo.delete();
+        }
+    }
+
+    private void checkRoundTrip( AbstractFitsTableWriter writer,
+                                 StarTable t0 )
+            throws IOException {
+        File f = File.createTempFile( "onepass", ".fits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        assertTrue( AbstractFitsTableWriter.isSeekableFile( out ) );
+        writer.writeStarTable( new OnceTable( t0 ), out );
+        out.close();
+        assertEquals( 0, f.length() % 2880 );
+        StarTable t1 = new FitsTableBuilder()
+                      .makeStarTable( new FileDataSource( f ), true,
+                                      StoragePolicy.PREFER_MEMORY );
+        assertSameData( t0, t1 );
+        f.delete();
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        assertEquals( t0.getRowCount(), t1.getRowCount() );
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                Object v0 = rseq0.getCell( ic );
+                Object v1 = rseq1.getCell( ic );
+                if ( v0 != null && v0.getClass().isArray() ) {
+                    assertArrayEquals( v0, v1 );
+                }
+                else {
+                    assertEquals( v0, v1 );
+                }
+            }
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+
+    private static StarTable createTable( int nrow, boolean hasVarArrays ) {
+        int[] ivals = new int[ nrow ];
+        Integer[] nivals = new Integer[ nrow ];
+        double[] dvals = new double[ nrow ];
+        String[] svals = new String[ nrow ];
+        short[][] avals = new short[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = i;
+            nivals[ i ] = i % 4 == 0 ? null : new Integer( -i );
+            dvals[ i ] = 0.5 * i;
+            svals[ i ] = "s" + ( i % 10 );
+            avals[ i ] = new short[ i % 5 ];
+            for ( int j = 0; j < avals[ i ].length; j++ ) {
+                avals[ i ][ j ] = (short) ( i + j );
+            }
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "ni", nivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        ColumnInfo sinfo = new ColumnInfo( "s", String.class, null );
+        sinfo.setElementSize( 2 );
+        table.addColumn( ArrayColumn.makeColumn( sinfo, svals ) );
+        if ( hasVarArrays ) {
+            ColumnInfo ainfo = new ColumnInfo( "a", short[].class, null );
+            ainfo.setShape( new int[] { -1 } );
+            table.addColumn( ArrayColumn.makeColumn( ainfo, avals ) );
+        }
+        return table;
+    }
+
+    /**
+     * Table with unknown row count which can only be read once.
+     */
+    private static class OnceTable extends WrapperStarTable {
+        private boolean isRead_;
+        OnceTable( StarTable base ) {
+            super( base );
+        }
+        @Override
+        public long getRowCount() {
+            return -1;
+        }
+        @Override
+        public boolean isRandom() {
+            return false;
+        }
+        @Override
+        public RowSequence getRowSequence() throws IOException {
+            assertFalse( isRead_ );
+            isRead_ = true;
+            return super.getRowSequence();
+        }
+    }
+}
@@ -84,6 +84,9 @@ public class WideTest extends TestCase {
                                new FitsTableBuilder( wide ) );
             exerciseReadWrite( new ColFitsTableWriter( "colfits", wide ),
                                new ColFitsTableBuilder( wide ) );
+            ColFitsTableWriter cw = new ColFitsTableWriter( "colfits", wide );
+            cw.setWriteThreads( 3 );
+            exerciseReadWrite( cw, new ColFitsTableBuilder( wide ) );
             exerciseReadWrite( new VariableFitsTableWriter( Boolean.FALSE,
                                                             true, wide ),
                                new FitsTableBuilder( wide ) );
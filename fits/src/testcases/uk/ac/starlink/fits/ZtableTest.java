@@ -0,0 +1,277 @@
+package uk.ac.starlink.fits;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class ZtableTest extends TestCase {
+
+    public ZtableTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.WARNING );
+        Logger.getLogger( "uk.ac.starlink.table" ).setLevel( Level.WARNING );
+    }
+
+    public void testRiceKnown() throws IOException {
+        byte[] data = new byte[ 4 * 32 ];
+        for ( int i = 0; i < 32; i++ ) {
+            data[ i * 4 + 3 ] = 1;
+        }
+        byte[] zdata = TileCompression.RICE_1.compress( data, 4 );
+        assertArrayEquals( new byte[] { 0, 0, 0, 1, 0 }, zdata );
+        byte[] data1 = new byte[ data.length ];
+        TileCompression.RICE_1.decompress( zdata, 4, data1 );
+        assertArrayEquals( data, data1 );
+    }
+
+    public void testCodecs() throws IOException {
+        Random rnd = new Random( 230001L );
+        TileCompression[] comps = {
+            TileCompression.NOCOMPRESS,
+            TileCompression.GZIP_1,
+            TileCompression.GZIP_2,
+            TileCompression.RICE_1,
+        };
+        for ( int elSize : new int[] { 1, 2, 4 } ) {
+            for ( int nel : new int[] { 0, 1, 31, 32, 33, 1000 } ) {
+                for ( int mode = 0; mode < 4; mode++ ) {
+                    byte[] data = createData( rnd, elSize, nel, mode );
+                    for ( TileCompression comp : comps ) {
+                        byte[] zdata = comp.compress( data, elSize );
+                        byte[] data1 = new byte[ data.length ];
+                        comp.decompress( zdata, elSize, data1 );
+                        assertArrayEquals( comp + " " + elSize + " " + nel,
+                                           data, data1 );
+                    }
+                }
+            }
+        }
+        assertEquals( TileCompression.RICE_1,
+                      TileCompression.getCompression( "RICE_ONE" ) );
+        assertNull( TileCompression.getCompression( "HCOMPRESS_1" ) );
+    }
+
+    public void testReadWrite() throws IOException {
+        StarTable t0 = createTable( 1000 );
+        for ( int tileRows : new int[] { 0, 1, 77, 1000, 5000 } ) {
+            FitsTableWriter writer = new FitsTableWriter();
+            writer.setTileRows( tileRows );
+            File f = writeTable( writer, t0 );
+
+            /* Random access from file. */
+            StarTable t1 = new FitsTableBuilder()
+                          .makeStarTable( new FileDataSource( f ), true,
+                                          StoragePolicy.PREFER_MEMORY );
+            assertTrue( t1.isRandom() );
+            assertSameData( t0, t1 );
+            Random rnd = new Random( tileRows );
+            int nrow = (int) t0.getRowCount();
+            for ( int i = 0; i < 200; i++ ) {
+                long irow = rnd.nextInt( nrow );
+                int icol = rnd.nextInt( t0.getColumnCount() );
+                assertCellEquals( t0.getCell( irow, icol ),
+                                  t1.getCell( irow, icol ) );
+            }
+
+            /* Parallel iteration. */
+            Map<Long,Object[]> rows =
+                RowRunner.PARTEST.collect( new RowGatherer(), t1 );
+            assertEquals( nrow, rows.size() );
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                Object[] row = rows.get( new Long( ir ) );
+                for ( int ic = 0; ic < t0.getColumnCount(); ic++ ) {
+                    assertCellEquals( t0.getCell( ir, ic ), row[ ic ] );
+                }
+            }
+            ((BintableStarTable) t1).close();
+
+            /* Streamed. */
+            StarTable t2 = new FitsTableBuilder()
+                          .makeStarTable( new FileDataSource( f ), false,
+                                          StoragePolicy.PREFER_MEMORY );
+            assertSameData( t0, t2 );
+            RowStore sink = StoragePolicy.PREFER_MEMORY.makeRowStore();
+            new FitsTableBuilder()
+               .streamStarTable( new ByteArrayInputStream( readBytes( f ) ),
+                                 sink, null );
+            assertSameData( t0, sink.getStarTable() );
+            f.delete();
+        }
+    }
+
+    public void testWide() throws IOException {
+        StarTable t0 = WideTest.createIntegerTable( 45 );
+        WideFits wide = AbstractWideFits.createHierarchWideFits( 6 );
+        FitsTableWriter writer = new FitsTableWriter( "fits", true, wide );
+        writer.setTileRows( 10 );
+        File f = writeTable( writer, t0 );
+        StarTable t1 = new FitsTableBuilder( wide )
+                      .makeStarTable( new FileDataSource( f ), true,
+                                      StoragePolicy.PREFER_MEMORY );
+        assertEquals( t0.getColumnCount(), t1.getColumnCount() );
+        assertSameData( t0, t1 );
+        f.delete();
+    }
+
+    private File writeTable( FitsTableWriter writer, StarTable table )
+            throws IOException {
+        File f = File.createTempFile( "ztable", ".fits" );
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream( f );
+        writer.writeStarTable( table, out );
+        out.close();
+        return f;
+    }
+
+    private static byte[] readBytes( File f ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream( f );
+        byte[] buf = new byte[ 8192 ];
+        for ( int n; ( n = in.read( buf ) ) >= 0; ) {
+            bout.write( buf, 0, n );
+        }
+        in.close();
+        return bout.toByteArray();
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        assertEquals( t0.getRowCount(), t1.getRowCount() );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            assertEquals( t0.getColumnInfo( ic ).getName(),
+                          t1.getColumnInfo( ic ).getName() );
+        }
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            for ( int ic = 0; ic < ncol; ic++ ) {
+                assertCellEquals( rseq0.getCell( ic ), rseq1.getCell( ic ) );
+            }
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+
+    private void assertCellEquals( Object v0, Object v1 ) {
+        if ( v0 != null && v0.getClass().isArray() ) {
+            assertArrayEquals( v0, v1 );
+        }
+        else {
+            assertEquals( v0, v1 );
+        }
+    }
+
+    private static byte[] createData( Random rnd, int elSize, int nel,
+                                      int mode ) {
+        byte[] data = new byte[ elSize * nel ];
+        long v = 0;
+        for ( int i = 0; i < nel; i++ ) {
+            switch ( mode ) {
+                case 0:
+                    v = 23;
+                    break;
+                case 1:
+                    v += rnd.nextInt( 7 ) - 3;
+                    break;
+                case 2:
+                    v = rnd.nextLong();
+                    break;
+                default:
+                    v = i % 64 < 32 ? 0 : rnd.nextInt( 1000 );
+            }
+            for ( int ib = 0; ib < elSize; ib++ ) {
+                data[ i * elSize + ib ] =
+                    (byte) ( v >> ( 8 * ( elSize - 1 - ib ) ) );
+            }
+        }
+        return data;
+    }
+
+    private static StarTable createTable( int nrow ) {
+        Random rnd = new Random( 99L );
+        byte[] bs = new byte[ nrow ];
+        short[] ss = new short[ nrow ];
+        int[] is = new int[ nrow ];
+        long[] ls = new long[ nrow ];
+        float[] fs = new float[ nrow ];
+        double[] ds = new double[ nrow ];
+        Integer[] nis = new Integer[ nrow ];
+        Boolean[] flags = new Boolean[ nrow ];
+        String[] strs = new String[ nrow ];
+        int[][] iarrs = new int[ nrow ][];
+        for ( int i = 0; i < nrow; i++ ) {
+            bs[ i ] = (byte) rnd.nextInt();
+            ss[ i ] = (short) ( i * 3 );
+            is[ i ] = rnd.nextInt();
+            ls[ i ] = rnd.nextLong();
+            fs[ i ] = i % 11 == 0 ? Float.NaN : (float) rnd.nextGaussian();
+            ds[ i ] = rnd.nextDouble() * i;
+            nis[ i ] = i % 5 == 0 ? null : new Integer( i - 500 );
+            flags[ i ] = i % 7 == 0 ? null : Boolean.valueOf( i % 2 == 0 );
+            strs[ i ] = i % 13 == 0 ? null : "row" + i;
+            iarrs[ i ] = new int[] { i, -i, rnd.nextInt( 100 ) };
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "b", bs ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", ss ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", is ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", ls ) );
+        table.addColumn( ArrayColumn.makeColumn( "f", fs ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", ds ) );
+        table.addColumn( ArrayColumn.makeColumn( "ni", nis ) );
+        table.addColumn( ArrayColumn.makeColumn( "flag", flags ) );
+        table.addColumn( ArrayColumn.makeColumn( "str", strs ) );
+        table.addColumn( ArrayColumn.makeColumn( "iarr", iarrs ) );
+        return table;
+    }
+
+    /**
+     * Collects rows from a table keyed by row index.
+     */
+    private static class RowGatherer
+            extends RowCollector<Map<Long,Object[]>> {
+        public Map<Long,Object[]> createAccumulator() {
+            return new TreeMap<Long,Object[]>();
+        }
+        public void accumulateRows( RowSplittable rseq,
+                                    Map<Long,Object[]> acc )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            while ( rseq.next() ) {
+                acc.put( new Long( rowIndex.getAsLong() ), rseq.getRow() );
+            }
+        }
+        public Map<Long,Object[]> combine( Map<Long,Object[]> acc1,
+                                           Map<Long,Object[]> acc2 ) {
+            acc1.putAll( acc2 );
+            return acc1;
+        }
+    }
+}
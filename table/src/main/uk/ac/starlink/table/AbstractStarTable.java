@@ -163,6 +163,18 @@ public abstract class AbstractStarTable implements StarTable {
         return row;
     }
 
+    /**
+     * The <tt>AbstractStarTable</tt> implementation of this method
+     * returns the result of
+     * {@link Tables#getDefaultRowSplittable Tables.getDefaultRowSplittable}.
+     * Subclasses which can provide more efficient splitting,
+     * for instance by making use of the details of the data storage,
+     * should override it.
+     */
+    public RowSplittable getRowSplittable() throws IOException {
+        return Tables.getDefaultRowSplittable( this );
+    }
+
     abstract public ColumnInfo getColumnInfo( int icol );
     abstract public int getColumnCount();
     abstract public long getRowCount();
@@ -0,0 +1,58 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * RowSequence subinterface that can supply the contents of
+ * numeric array-valued cells into a buffer supplied by the caller.
+ * Reading a column of large arrays, such as spectra, using
+ * {@link #getCell} creates a new array for every row;
+ * where the row sequence implements this interface the same buffer
+ * can be reused for each row, so that no garbage is generated.
+ *
+ * <p>Usage is like this:
+ * <pre>
+ *     double[] buf = new double[ 1024 ];
+ *     while ( rseq.next() ) {
+ *         int n = Tables.getArrayDoubles( rseq, icol, buf );
+ *         if ( n &gt; buf.length ) {
+ *             buf = new double[ n ];
+ *             Tables.getArrayDoubles( rseq, icol, buf );
+ *         }
+ *         for ( int i = 0; i &lt; n; i++ ) {
+ *             ... buf[ i ] ...
+ *         }
+ *     }
+ * </pre>
+ *
+ * <p>The values supplied are the same as those obtained by
+ * converting the elements of the array returned by
+ * <code>getCell</code>.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public interface ArrayRowSequence extends RowSequence {
+
+    /**
+     * Copies the elements of a numeric array-valued cell in the current
+     * row into a buffer as double precision values.
+     * If the cell is a primitive numeric array (<code>byte[]</code>,
+     * <code>short[]</code>, <code>int[]</code>, <code>long[]</code>,
+     * <code>float[]</code> or <code>double[]</code>) its elements
+     * are converted to double, otherwise (including if it is null)
+     * it is treated as having no elements.
+     *
+     * <p>The return value is the number of elements in the cell.
+     * If this is larger than the length of the supplied buffer,
+     * only the first <code>buf.length</code> elements are copied,
+     * and the caller may retry with a larger buffer.
+     *
+     * @param  icol  column index
+     * @param  buf   buffer to receive array elements
+     * @return  number of elements in the cell
+     * @throws IOException  if there is an error reading the data
+     * @throws IllegalStateException if there is no current row
+     */
+    int getArrayDoubles( int icol, double[] buf ) throws IOException;
+}
@@ -0,0 +1,93 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * RowSequence subinterface that can supply the values of a column
+ * for a block of rows at a time, into primitive arrays supplied
+ * by the caller.
+ * For narrow numeric tables, reading a row at a time through
+ * several layers of wrapper sequences can cost more than decoding
+ * the data itself; reading a batch of a few thousand rows at once
+ * amortises that overhead, and leaves the caller with arrays
+ * it can process in tight loops.
+ *
+ * <p>Usage is like this:
+ * <pre>
+ *     BatchRowSequence bseq = Tables.getBatchRowSequence( rseq );
+ *     double[] xs = new double[ 4096 ];
+ *     try {
+ *         for ( int n; ( n = bseq.nextBatch( xs.length ) ) &gt; 0; ) {
+ *             bseq.getDoubles( icol, xs );
+ *             for ( int i = 0; i &lt; n; i++ ) {
+ *                 ... xs[ i ] ...
+ *             }
+ *         }
+ *     }
+ *     finally {
+ *         bseq.close();
+ *     }
+ * </pre>
+ *
+ * <p>The values supplied are the same as those given by the
+ * corresponding {@link TypedRowSequence} methods for each row.
+ * Following a call to {@link #nextBatch}, the result of
+ * <code>getCell</code> and <code>getRow</code> is undefined
+ * until {@link #next} is called, which advances to the row
+ * following the batch.
+ * If the sequence is also a {@link RowSplittable},
+ * following a call to <code>nextBatch</code> that returns a positive
+ * value its row index refers to the last row in the batch.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public interface BatchRowSequence extends RowSequence {
+
+    /**
+     * Advances over a block of rows, which become the current batch.
+     * The batch starts at the row following the current one
+     * and is as large as possible up to the requested size,
+     * which it will only fall short of at the end of the sequence.
+     *
+     * @param  maxRows  maximum number of rows in the batch
+     * @return  number of rows in the batch; zero indicates the end of
+     *          the sequence
+     */
+    int nextBatch( int maxRows ) throws IOException;
+
+    /**
+     * Fills a buffer with the values of a column in the current batch
+     * as double precision numbers.
+     * Elements are NaN for null or non-numeric values.
+     *
+     * @param  icol  column index
+     * @param  buf   buffer with at least as many elements as there are
+     *               rows in the current batch
+     * @see   TypedRowSequence#getDouble
+     */
+    void getDoubles( int icol, double[] buf ) throws IOException;
+
+    /**
+     * Fills a buffer with the values of a column in the current batch
+     * as long integers.
+     * Elements are zero for null or non-numeric values.
+     *
+     * @param  icol  column index
+     * @param  buf   buffer with at least as many elements as there are
+     *               rows in the current batch
+     * @see   TypedRowSequence#getLong
+     */
+    void getLongs( int icol, long[] buf ) throws IOException;
+
+    /**
+     * Fills a buffer with flags indicating which values of a column
+     * in the current batch are null.
+     *
+     * @param  icol  column index
+     * @param  buf   buffer with at least as many elements as there are
+     *               rows in the current batch
+     * @see   TypedRowSequence#isNull
+     */
+    void getNulls( int icol, boolean[] buf ) throws IOException;
+}
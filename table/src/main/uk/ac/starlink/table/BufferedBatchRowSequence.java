@@ -0,0 +1,70 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * BatchRowSequence implementation which wraps a RowSequence that
+ * does not itself support batch access.
+ * Each batch is read a row at a time from the base sequence and
+ * the row arrays are retained, so it provides no efficiency gain
+ * over reading the base sequence directly, but it lets clients
+ * use the batch interface for any sequence.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ * @see      Tables#getBatchRowSequence
+ */
+class BufferedBatchRowSequence extends WrapperRowSequence
+                               implements BatchRowSequence {
+
+    private Object[][] rows_;
+    private int nrow_;
+
+    /**
+     * Constructor.
+     *
+     * @param  baseSeq  base row sequence
+     */
+    public BufferedBatchRowSequence( RowSequence baseSeq ) {
+        super( baseSeq );
+        rows_ = new Object[ 0 ][];
+    }
+
+    public int nextBatch( int maxRows ) throws IOException {
+        if ( rows_.length < maxRows ) {
+            rows_ = new Object[ maxRows ][];
+        }
+        int n = 0;
+        while ( n < maxRows && baseSeq.next() ) {
+            rows_[ n++ ] = baseSeq.getRow();
+        }
+        for ( int i = n; i < nrow_; i++ ) {
+            rows_[ i ] = null;
+        }
+        nrow_ = n;
+        return n;
+    }
+
+    public void getDoubles( int icol, double[] buf ) {
+        for ( int i = 0; i < nrow_; i++ ) {
+            Object value = rows_[ i ][ icol ];
+            buf[ i ] = value instanceof Number
+                     ? ((Number) value).doubleValue()
+                     : Double.NaN;
+        }
+    }
+
+    public void getLongs( int icol, long[] buf ) {
+        for ( int i = 0; i < nrow_; i++ ) {
+            Object value = rows_[ i ][ icol ];
+            buf[ i ] = value instanceof Number ? ((Number) value).longValue()
+                                               : 0L;
+        }
+    }
+
+    public void getNulls( int icol, boolean[] buf ) {
+        for ( int i = 0; i < nrow_; i++ ) {
+            buf[ i ] = rows_[ i ][ icol ] == null;
+        }
+    }
+}
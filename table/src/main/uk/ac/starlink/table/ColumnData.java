@@ -71,6 +71,114 @@ public abstract class ColumnData {
      */
     public abstract Object readValue( long irow ) throws IOException;
 
+    /**
+     * Indicates whether the value at a given row in this column is null.
+     * The implementation in the <tt>ColumnData</tt> class tests the
+     * result of {@link #readValue}; subclasses may override it
+     * to avoid object creation.
+     *
+     * @param   irow  the row to test
+     * @return  true iff <code>readValue(irow)</code> would return null
+     * @throws  IOException  if there is some problem reading
+     * @see   TypedRowSequence#isNull
+     */
+    public boolean isNull( long irow ) throws IOException {
+        return readValue( irow ) == null;
+    }
+
+    /**
+     * Returns the value at a given row in this column as a double.
+     * The implementation in the <tt>ColumnData</tt> class converts the
+     * result of {@link #readValue}; subclasses may override it
+     * to avoid object creation.
+     *
+     * @param   irow  the row from which to retrieve the value
+     * @return  numeric value, or NaN for null or non-numeric values
+     * @throws  IOException  if there is some problem reading
+     * @see   TypedRowSequence#getDouble
+     */
+    public double readDouble( long irow ) throws IOException {
+        Object value = readValue( irow );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Returns the value at a given row in this column as a long integer.
+     * The implementation in the <tt>ColumnData</tt> class converts the
+     * result of {@link #readValue}; subclasses may override it
+     * to avoid object creation.
+     *
+     * @param   irow  the row from which to retrieve the value
+     * @return  integer value, or zero for null or non-numeric values
+     * @throws  IOException  if there is some problem reading
+     * @see   TypedRowSequence#getLong
+     */
+    public long readLong( long irow ) throws IOException {
+        Object value = readValue( irow );
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * Reads the values from a contiguous range of rows in this column
+     * as doubles into a buffer.
+     * The implementation in the <tt>ColumnData</tt> class calls
+     * {@link #readDouble} for each row; subclasses may override it
+     * to do the work more efficiently.
+     *
+     * @param   irow  index of first row to read
+     * @param   buf   buffer to receive values
+     * @param   n     number of rows to read
+     * @throws  IOException  if there is some problem reading
+     * @see   BatchRowSequence#getDoubles
+     */
+    public void readDoubles( long irow, double[] buf, int n )
+            throws IOException {
+        for ( int i = 0; i < n; i++ ) {
+            buf[ i ] = readDouble( irow + i );
+        }
+    }
+
+    /**
+     * Reads the values from a contiguous range of rows in this column
+     * as long integers into a buffer.
+     * The implementation in the <tt>ColumnData</tt> class calls
+     * {@link #readLong} for each row; subclasses may override it
+     * to do the work more efficiently.
+     *
+     * @param   irow  index of first row to read
+     * @param   buf   buffer to receive values
+     * @param   n     number of rows to read
+     * @throws  IOException  if there is some problem reading
+     * @see   BatchRowSequence#getLongs
+     */
+    public void readLongs( long irow, long[] buf, int n )
+            throws IOException {
+        for ( int i = 0; i < n; i++ ) {
+            buf[ i ] = readLong( irow + i );
+        }
+    }
+
+    /**
+     * Reads null flags for a contiguous range of rows in this column
+     * into a buffer.
+     * The implementation in the <tt>ColumnData</tt> class calls
+     * {@link #isNull} for each row; subclasses may override it
+     * to do the work more efficiently.
+     *
+     * @param   irow  index of first row to read
+     * @param   buf   buffer to receive null flags
+     * @param   n     number of rows to read
+     * @throws  IOException  if there is some problem reading
+     * @see   BatchRowSequence#getNulls
+     */
+    public void readNulls( long irow, boolean[] buf, int n )
+            throws IOException {
+        for ( int i = 0; i < n; i++ ) {
+            buf[ i ] = isNull( irow + i );
+        }
+    }
+
     /**
      * Stores a given value in a given row for this column.
      * Will only work if the <tt>isWritable</tt> method returns true.
@@ -3,6 +3,7 @@ package uk.ac.starlink.table;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 /**
  * A random-access StarTable that manages its data in columns.
@@ -64,6 +65,26 @@ public abstract class ColumnStarTable extends RandomStarTable {
         return getColumnData( icol ).readValue( lrow );
     }
 
+    /**
+     * Returns a row sequence which implements {@link TypedRowSequence}
+     * and {@link BatchRowSequence},
+     * reading typed values directly from the ColumnData objects.
+     */
+    @Override
+    public RowSequence getRowSequence() {
+        return new ColumnRowSplittable( 0, getRowCount() );
+    }
+
+    /**
+     * Returns a row splittable which implements {@link TypedRowSequence}
+     * and {@link BatchRowSequence},
+     * reading typed values directly from the ColumnData objects.
+     */
+    @Override
+    public RowSplittable getRowSplittable() {
+        return new ColumnRowSplittable( 0, getRowCount() );
+    }
+
     /**
      * Stores an object in a given cell of the table.
      *
@@ -130,4 +151,122 @@ public abstract class ColumnStarTable extends RandomStarTable {
         };
     }
 
+    /**
+     * RowSplittable implementation for use with this table.
+     * Splitting is by row index range.
+     */
+    private class ColumnRowSplittable
+            implements RowSplittable, TypedRowSequence, BatchRowSequence {
+
+        private final LongSupplier rowIndex_;
+        private long irow_;
+        private long end_;
+        private long batchStart_;
+        private int batchSize_;
+
+        /**
+         * Constructor.
+         *
+         * @param  start  index of first row covered
+         * @param  end   index after last row covered
+         */
+        ColumnRowSplittable( long start, long end ) {
+            irow_ = start - 1;
+            end_ = end;
+            rowIndex_ = new LongSupplier() {
+                public long getAsLong() {
+                    return irow_;
+                }
+            };
+        }
+
+        public RowSplittable split() {
+            long start = irow_ + 1;
+            if ( end_ - start > 1 ) {
+                long mid = start + ( end_ - start ) / 2;
+                RowSplittable other = new ColumnRowSplittable( mid, end_ );
+                end_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return end_ - ( irow_ + 1 );
+        }
+
+        public LongSupplier rowIndex() {
+            return rowIndex_;
+        }
+
+        public boolean next() {
+            if ( irow_ < end_ - 1 ) {
+                irow_++;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            checkRow();
+            return ColumnStarTable.this.getCell( irow_, icol );
+        }
+
+        public Object[] getRow() throws IOException {
+            checkRow();
+            return ColumnStarTable.this.getRow( irow_ );
+        }
+
+        public boolean isNull( int icol ) throws IOException {
+            checkRow();
+            return getColumnData( icol ).isNull( irow_ );
+        }
+
+        public double getDouble( int icol ) throws IOException {
+            checkRow();
+            return getColumnData( icol ).readDouble( irow_ );
+        }
+
+        public long getLong( int icol ) throws IOException {
+            checkRow();
+            return getColumnData( icol ).readLong( irow_ );
+        }
+
+        public int nextBatch( int maxRows ) {
+            batchStart_ = irow_ + 1;
+            batchSize_ = (int) Math.min( (long) maxRows, end_ - batchStart_ );
+            irow_ += batchSize_;
+            return batchSize_;
+        }
+
+        public void getDoubles( int icol, double[] buf ) throws IOException {
+            getColumnData( icol ).readDoubles( batchStart_, buf, batchSize_ );
+        }
+
+        public void getLongs( int icol, long[] buf ) throws IOException {
+            getColumnData( icol ).readLongs( batchStart_, buf, batchSize_ );
+        }
+
+        public void getNulls( int icol, boolean[] buf ) throws IOException {
+            getColumnData( icol ).readNulls( batchStart_, buf, batchSize_ );
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Checks that there is a current row.
+         *
+         * @throws  IllegalStateException  if not
+         */
+        private void checkRow() {
+            if ( irow_ < 0 || irow_ >= end_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package uk.ac.starlink.table;
 
+import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -90,6 +91,10 @@ public class MetaCopyStarTable extends WrapperStarTable {
         paramList.add( dval );
     }
 
+    public RowSplittable getRowSplittable() throws IOException {
+        return baseTable.getRowSplittable();
+    }
+
     public ColumnInfo getColumnInfo( int icol ) {
         return colInfos_[ icol ];
     }
@@ -1,5 +1,6 @@
 package uk.ac.starlink.table;
 
+import java.util.Arrays;
 import java.util.BitSet;
 
 /**
@@ -41,6 +42,64 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
                                                       : readElement( irow );
     }
 
+    public boolean isNull( long lrow ) {
+        return flags.get( (int) lrow ) == trueMeansNull;
+    }
+
+    public double readDouble( long lrow ) {
+        int irow = (int) lrow;
+        return ( flags.get( irow ) == trueMeansNull )
+             ? Double.NaN
+             : readDoubleElement( irow );
+    }
+
+    public long readLong( long lrow ) {
+        int irow = (int) lrow;
+        return ( flags.get( irow ) == trueMeansNull )
+             ? 0L
+             : readLongElement( irow );
+    }
+
+    public void readDoubles( long lrow, double[] buf, int n ) {
+        int irow = (int) lrow;
+        readDoubleElements( irow, buf, n );
+        for ( int i = nextNull( irow, irow + n ); i >= 0;
+              i = nextNull( i + 1, irow + n ) ) {
+            buf[ i - irow ] = Double.NaN;
+        }
+    }
+
+    public void readLongs( long lrow, long[] buf, int n ) {
+        int irow = (int) lrow;
+        readLongElements( irow, buf, n );
+        for ( int i = nextNull( irow, irow + n ); i >= 0;
+              i = nextNull( i + 1, irow + n ) ) {
+            buf[ i - irow ] = 0L;
+        }
+    }
+
+    public void readNulls( long lrow, boolean[] buf, int n ) {
+        int irow = (int) lrow;
+        Arrays.fill( buf, 0, n, false );
+        for ( int i = nextNull( irow, irow + n ); i >= 0;
+              i = nextNull( i + 1, irow + n ) ) {
+            buf[ i - irow ] = true;
+        }
+    }
+
+    /**
+     * Returns the index of the first null element in a given range.
+     *
+     * @param  from  index of first row to test
+     * @param  to   index after last row to test
+     * @return  index of first null row in range, or -1 if none
+     */
+    private int nextNull( int from, int to ) {
+        int i = trueMeansNull ? flags.nextSetBit( from )
+                              : flags.nextClearBit( from );
+        return i >= 0 && i < to ? i : -1;
+    }
+
     /**
      * Sets all the elements in this column to <tt>null</tt>.
      * Each will remain <tt>null</tt> until it is explicitly set (to a
@@ -66,6 +125,10 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
 
     abstract void storeElement( int irow, Object val );
     abstract Object readElement( int irow );
+    abstract double readDoubleElement( int irow );
+    abstract long readLongElement( int irow );
+    abstract void readDoubleElements( int irow, double[] buf, int n );
+    abstract void readLongElements( int irow, long[] buf, int n );
 
     /**
      * Constructs a new PrimitiveArrayColumn based on a given data array.
@@ -206,6 +269,18 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return data[ irow ] ? Boolean.TRUE : Boolean.FALSE;
         }
+        double readDoubleElement( int irow ) {
+            return Double.NaN;
+        }
+        long readLongElement( int irow ) {
+            return 0L;
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            Arrays.fill( buf, 0, n, Double.NaN );
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            Arrays.fill( buf, 0, n, 0L );
+        }
     }
 
     private static class CharacterArrayColumn extends PrimitiveArrayColumn {
@@ -221,6 +296,18 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Character( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return Double.NaN;
+        }
+        long readLongElement( int irow ) {
+            return 0L;
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            Arrays.fill( buf, 0, n, Double.NaN );
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            Arrays.fill( buf, 0, n, 0L );
+        }
     }
 
     private static class ByteArrayColumn extends PrimitiveArrayColumn {
@@ -236,6 +323,22 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Byte( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
     }
     private static class ShortArrayColumn extends PrimitiveArrayColumn {
         short[] data;
@@ -250,6 +353,22 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Short( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
     }
 
     private static class IntegerArrayColumn extends PrimitiveArrayColumn {
@@ -265,6 +384,22 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Integer( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
     }
 
     private static class LongArrayColumn extends PrimitiveArrayColumn {
@@ -280,6 +415,20 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Long( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            System.arraycopy( data, irow, buf, 0, n );
+        }
     }
 
     private static class FloatArrayColumn extends PrimitiveArrayColumn {
@@ -295,6 +444,22 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Float( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return (long) data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = data[ irow + i ];
+            }
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = (long) data[ irow + i ];
+            }
+        }
     }
 
     private static class DoubleArrayColumn extends PrimitiveArrayColumn {
@@ -310,5 +475,19 @@ public abstract class PrimitiveArrayColumn extends ArrayColumn {
         Object readElement( int irow ) {
             return new Double( data[ irow ] );
         }
+        double readDoubleElement( int irow ) {
+            return data[ irow ];
+        }
+        long readLongElement( int irow ) {
+            return (long) data[ irow ];
+        }
+        void readDoubleElements( int irow, double[] buf, int n ) {
+            System.arraycopy( data, irow, buf, 0, n );
+        }
+        void readLongElements( int irow, long[] buf, int n ) {
+            for ( int i = 0; i < n; i++ ) {
+                buf[ i ] = (long) data[ irow + i ];
+            }
+        }
     }
 }
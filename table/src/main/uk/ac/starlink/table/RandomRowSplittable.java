@@ -0,0 +1,115 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * RowSplittable based on the random access methods of a StarTable.
+ * Splitting is done by dividing the row index range in half,
+ * so this is efficient as long as the table's random access methods are.
+ * The table's <code>getCell</code> and <code>getRow</code> methods
+ * are required to be safe for concurrent use, as stipulated by the
+ * {@link StarTable} contract.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class RandomRowSplittable implements RowSplittable {
+
+    private final StarTable table_;
+    private final LongSupplier rowIndex_;
+    private long irow_;
+    private long end_;
+
+    /**
+     * Constructs an instance covering all the rows of a table.
+     *
+     * @param  table  random access table with known row count
+     * @throws IllegalArgumentException if <tt>table.isRandom()==false</tt>
+     *                                  or <tt>table.getRowCount()&lt;0</tt>
+     */
+    public RandomRowSplittable( StarTable table ) {
+        this( table, 0, table.getRowCount() );
+        if ( ! table.isRandom() ) {
+            throw new IllegalArgumentException( "Table " + table
+                                              + " is not random access" );
+        }
+        if ( table.getRowCount() < 0 ) {
+            throw new IllegalArgumentException( "Table " + table
+                                              + " row count unknown" );
+        }
+    }
+
+    /**
+     * Constructs an instance covering a given range of rows of a table.
+     *
+     * @param  table  random access table
+     * @param  start  index of first row to cover
+     * @param  end    index after last row to cover
+     */
+    public RandomRowSplittable( StarTable table, long start, long end ) {
+        table_ = table;
+        irow_ = start - 1;
+        end_ = end;
+        rowIndex_ = new LongSupplier() {
+            public long getAsLong() {
+                return irow_;
+            }
+        };
+    }
+
+    public RowSplittable split() {
+        long start = irow_ + 1;
+        if ( end_ - start > 1 ) {
+            long mid = start + ( end_ - start ) / 2;
+            RowSplittable other = new RandomRowSplittable( table_, mid, end_ );
+            end_ = mid;
+            return other;
+        }
+        else {
+            return null;
+        }
+    }
+
+    public long splittableSize() {
+        return end_ - ( irow_ + 1 );
+    }
+
+    public LongSupplier rowIndex() {
+        return rowIndex_;
+    }
+
+    public boolean next() {
+        if ( irow_ < end_ - 1 ) {
+            irow_++;
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    public Object getCell( int icol ) throws IOException {
+        checkRow();
+        return table_.getCell( irow_, icol );
+    }
+
+    public Object[] getRow() throws IOException {
+        checkRow();
+        return table_.getRow( irow_ );
+    }
+
+    public void close() {
+    }
+
+    /**
+     * Checks that there is a current row.
+     *
+     * @throws  IllegalStateException  if not
+     */
+    private void checkRow() {
+        if ( irow_ < 0 || irow_ >= end_ ) {
+            throw new IllegalStateException( "No current row" );
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import uk.ac.starlink.util.SplitCollector;
+
+/**
+ * Partial SplitCollector implementation for collecting data from
+ * the rows of a table.
+ * Concrete subclasses implement {@link #accumulateRows}
+ * to consume the rows of a RowSplittable, and the other
+ * SplitCollector methods to create and combine accumulators.
+ * Instances are intended to be used with a {@link RowRunner}.
+ *
+ * <p>The {@link #accumulate accumulate} method of this class
+ * closes each RowSplittable once its rows have been consumed,
+ * and wraps any IOException thrown by <code>accumulateRows</code>
+ * in an {@link java.io.UncheckedIOException}, which is unwrapped again by
+ * {@link RowRunner#collect RowRunner.collect}.
+ * Implementations of <code>createAccumulator</code> and
+ * <code>combine</code> may signal I/O failures in the same way.
+ *
+ * @param   <A>  accumulator type
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public abstract class RowCollector<A>
+        implements SplitCollector<RowSplittable,A> {
+
+    /**
+     * Consumes the content of a RowSplittable, accumulating results
+     * into the supplied accumulator.
+     * The supplied RowSplittable should not be split by this method.
+     *
+     * @param  rseq  row sequence
+     * @param  acc  accumulator
+     */
+    public abstract void accumulateRows( RowSplittable rseq, A acc )
+            throws IOException;
+
+    /**
+     * Invokes {@link #accumulateRows} and then closes the row sequence.
+     */
+    public void accumulate( RowSplittable rseq, A acc ) {
+        try {
+            try {
+                accumulateRows( rseq, acc );
+            }
+            finally {
+                rseq.close();
+            }
+        }
+        catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import uk.ac.starlink.util.SplitPolicy;
+import uk.ac.starlink.util.SplitProcessor;
+
+/**
+ * Manages potentially parallel processing of StarTable row data.
+ * Each instance wraps a {@link uk.ac.starlink.util.SplitProcessor},
+ * and uses it to collect row data from a table's
+ * {@link StarTable#getRowSplittable RowSplittable}
+ * into mergeable accumulators defined by a {@link RowCollector}.
+ *
+ * <p>Whether the work is actually done in parallel depends both on
+ * the processor and on whether the table is able to split its rows;
+ * the result should in either case be the same, apart from
+ * differences in rounding errors that depend on accumulation order.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class RowRunner {
+
+    private final SplitProcessor<RowSplittable> processor_;
+
+    /** Instance for sequential processing. */
+    public static final RowRunner SEQUENTIAL =
+        new RowRunner( SplitProcessor
+                      .<RowSplittable>createSequentialProcessor() );
+
+    /** Default instance for parallel processing. */
+    public static final RowRunner DEFAULT =
+        new RowRunner( SplitProcessor
+                      .<RowSplittable>createBasicParallelProcessor( null ) );
+
+    /**
+     * Instance for parallel processing that splits into much smaller
+     * subtasks than the default.  Not efficient for production use,
+     * but may be useful for testing.
+     */
+    public static final RowRunner PARTEST =
+        new RowRunner( SplitProcessor
+                      .<RowSplittable>createBasicParallelProcessor(
+                           new SplitPolicy( (ForkJoinPool) null, 1,
+                                            (short) 0 ) ) );
+
+    /**
+     * Constructor.
+     *
+     * @param   processor   controls how processing is done
+     */
+    public RowRunner( SplitProcessor<RowSplittable> processor ) {
+        processor_ = processor;
+    }
+
+    /**
+     * Returns the SplitProcessor on which this RowRunner is based.
+     *
+     * @return  split processor
+     */
+    public SplitProcessor<RowSplittable> getSplitProcessor() {
+        return processor_;
+    }
+
+    /**
+     * Collects rows from a table using a given collector.
+     *
+     * @param  collector  collector
+     * @param  table   table whose rows are to be collected
+     * @return   accumulator containing the results of the collection
+     */
+    public <A> A collect( RowCollector<A> collector, StarTable table )
+            throws IOException {
+        return collect( collector, table.getRowSplittable() );
+    }
+
+    /**
+     * Collects rows from a supplied RowSplittable using a given collector.
+     *
+     * @param  collector  collector
+     * @param  rowSplit   row data source
+     * @return   accumulator containing the results of the collection
+     */
+    public <A> A collect( RowCollector<A> collector, RowSplittable rowSplit )
+            throws IOException {
+        try {
+            return processor_.collect( collector, rowSplit );
+        }
+        catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return processor_.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ac.starlink.table;
+
+import java.util.function.LongSupplier;
+import uk.ac.starlink.util.Splittable;
+
+/**
+ * RowSequence subinterface that is also suitable for parallel processing.
+ * A RowSplittable may be divided using the {@link #split} method into
+ * two parts, each of which covers a disjoint set of the rows covered
+ * by the original.  The two parts may then be iterated over
+ * in different threads.
+ *
+ * <p>A given instance is not expected to be usable from
+ * multiple threads, but instances obtained from it by splitting
+ * may be used concurrently with each other.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public interface RowSplittable
+        extends Splittable<RowSplittable>, RowSequence {
+
+    /**
+     * Returns an object that can report the row index of the current row,
+     * if available.  The value returned by its <code>getAsLong</code>
+     * method is the index of the row currently available from this
+     * sequence within the table from which it was obtained.
+     * Its value is only defined when this sequence has a current row,
+     * that is following a call to {@link #next} that returned true.
+     * If row indices are not available, this method returns null.
+     *
+     * @return  row index supplier, or null
+     */
+    LongSupplier rowIndex();
+}
@@ -0,0 +1,74 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * RowSplittable based on a table's RowSequence.
+ * It never splits, so provides no opportunity for parallel processing.
+ * This is the fallback implementation for tables which do not
+ * offer random access or some other native splitting capability.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class SequentialRowSplittable implements RowSplittable {
+
+    private final RowSequence rseq_;
+    private final long nrow_;
+    private final LongSupplier rowIndex_;
+    private long irow_;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  table
+     */
+    public SequentialRowSplittable( StarTable table ) throws IOException {
+        rseq_ = table.getRowSequence();
+        nrow_ = table.getRowCount();
+        irow_ = -1;
+        rowIndex_ = new LongSupplier() {
+            public long getAsLong() {
+                return irow_;
+            }
+        };
+    }
+
+    /**
+     * Returns null.
+     *
+     * @return  null
+     */
+    public RowSplittable split() {
+        return null;
+    }
+
+    public long splittableSize() {
+        return nrow_;
+    }
+
+    public LongSupplier rowIndex() {
+        return rowIndex_;
+    }
+
+    public boolean next() throws IOException {
+        boolean hasNext = rseq_.next();
+        if ( hasNext ) {
+            irow_++;
+        }
+        return hasNext;
+    }
+
+    public Object getCell( int icol ) throws IOException {
+        return rseq_.getCell( icol );
+    }
+
+    public Object[] getRow() throws IOException {
+        return rseq_.getRow();
+    }
+
+    public void close() throws IOException {
+        rseq_.close();
+    }
+}
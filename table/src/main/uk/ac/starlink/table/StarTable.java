@@ -26,6 +26,11 @@ import java.util.List;
  * should be thread-safe.  Separate <tt>RowSequence</tt> objects obtained
  * from the same table should be safely usable from different threads, 
  * but a given <tt>RowSequence</tt> in general will not.
+ * <p>
+ * For multi-threaded processing of the rows, the {@link #getRowSplittable}
+ * method provides a row iterator which may be recursively divided
+ * into parts covering disjoint row ranges, each of which may be
+ * iterated over in its own thread.
  *
  * @author   Mark Taylor (Starlink)
  */
@@ -151,6 +156,27 @@ public interface StarTable {
      */
     RowSequence getRowSequence() throws IOException;
 
+    /**
+     * Returns an object which can iterate over all the rows in the table,
+     * but which may also be requested to split recursively
+     * for potentially parallel processing.
+     *
+     * <p>The return value must be non-null, and may provide splitting
+     * arrangements specially appropriate for the implementation.
+     * If this table 'wraps' an upstream table, it is usually best to
+     * base the implementation on calls to the the upstream
+     * <code>getRowSplittable</code> method, so that upstream
+     * policy about how to divide up the table is respected.
+     * However, implementations without special requirements may return
+     * <code>{@link Tables#getDefaultRowSplittable
+     *                  Tables.getDefaultRowSplittable}(this)</code>.
+     *
+     * @return  new RowSplittable
+     * @throws  IOException   if there is an error providing access
+     * @see  java.util.Spliterator
+     */
+    RowSplittable getRowSplittable() throws IOException;
+
     /**
      * Indicates whether random access is provided by this table.
      * Only if the result is <tt>true</tt> may the {@link #getRow}
@@ -6,6 +6,7 @@ import java.util.logging.Logger;
 import uk.ac.starlink.table.jdbc.JDBCStarTable;
 import uk.ac.starlink.table.storage.AdaptiveByteStore;
 import uk.ac.starlink.table.storage.ByteStoreStoragePolicy;
+import uk.ac.starlink.table.storage.CompactRowStore;
 import uk.ac.starlink.table.storage.ListRowStore;
 import uk.ac.starlink.table.storage.DiscardByteStore;
 import uk.ac.starlink.table.storage.DiscardRowStore;
@@ -34,7 +35,8 @@ import uk.ac.starlink.util.Loader;
  *
  * <p>Code which wants to store data in a particular way may use one of
  * the predefined policies {@link #ADAPTIVE}, {@link #PREFER_MEMORY},
- * {@link #PREFER_DISK} {@link #SIDEWAYS} or {@link #DISCARD},
+ * {@link #PREFER_DISK}, {@link #SIDEWAYS}, {@link #COMPACT_MEMORY}
+ * or {@link #DISCARD},
  * or may implement their own policy by extending this class.
  * If you want more control, you can always create instances of the 
  * public {@link RowStore} implementations directly.
@@ -59,7 +61,7 @@ public abstract class StoragePolicy {
      * Name of the system property which can be set to indicate the
      * initial setting of the default storage policy ({@value}).
      * Currently recognised values are "adaptive", "memory", "disk",
-     * "sideways", and "discard".
+     * "sideways", "compact" and "discard".
      * Alternatively, the classname of a StoragePolicy implementation
      * with a no-arg constructor may be supplied.
      */
@@ -86,6 +88,9 @@ public abstract class StoragePolicy {
                 else if ( "sideways".equals( pref ) ) {
                     defaultInstance_ = SIDEWAYS;
                 }
+                else if ( "compact".equals( pref ) ) {
+                    defaultInstance_ = COMPACT_MEMORY;
+                }
                 else if ( "discard".equals( pref ) ) {
                     defaultInstance_ = DISCARD;
                 }
@@ -217,6 +222,33 @@ public abstract class StoragePolicy {
         }
     };
 
+    /**
+     * Storage policy which will always store table data in memory,
+     * but in a compact column-oriented form.
+     * Numeric and boolean values are stored as primitives, and strings
+     * with a moderate number of distinct values using a dictionary,
+     * with cell objects only created when they are read.
+     * This can hold several times as many rows as {@link #PREFER_MEMORY}
+     * in the same amount of memory, at the cost of somewhat slower
+     * cell access.
+     */
+    public static final StoragePolicy COMPACT_MEMORY = new StoragePolicy() {
+        public ByteStore makeByteStore() {
+            return new MemoryByteStore();
+        }
+        public RowStore makeRowStore() {
+            return new CompactRowStore();
+        }
+        public RowStore makeConfiguredRowStore( StarTable meta ) {
+            CompactRowStore store = new CompactRowStore();
+            store.acceptMetadata( meta );
+            return store;
+        }
+        public String toString() {
+            return "StoragePolicy.COMPACT_MEMORY";
+        }
+    };
+
     /**
      * Storage policy which will normally store table data in a scratch
      * disk file.  If it's impossible for some reason (I/O error,
@@ -243,6 +275,9 @@ public abstract class StoragePolicy {
      * files in such a way that cells from the same column are contiguous
      * on disk.  This may be more efficient for certain access patterns
      * for tables which are very large and, in particular, very wide.
+     * Since each column is memory-mapped separately, reading only a few
+     * columns of a wide table (for instance to plot or sort on them)
+     * touches only the parts of the files that hold those columns.
      * It's generally more expensive on system resources than 
      * {@link #PREFER_DISK} however, so it is only the best choice in
      * rather specialised circumstances.
@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.LongSupplier;
 import uk.ac.starlink.table.jdbc.JDBCStarTable;
 
 /**
@@ -101,6 +102,22 @@ public class Tables {
         return StoragePolicy.getDefaultPolicy().randomTable( startab );
     }
 
+    /**
+     * Returns a RowSplittable object with generic characteristics
+     * for a given table.
+     * For a random-access table the splitting will be based on
+     * the table's random access methods, otherwise it will not split.
+     *
+     * @param   table  table
+     * @return   splittable for potentially parallel iteration over rows
+     */
+    public static RowSplittable getDefaultRowSplittable( StarTable table )
+            throws IOException {
+        return table.isRandom() && table.getRowCount() >= 0
+             ? new RandomRowSplittable( table )
+             : new SequentialRowSplittable( table );
+    }
+
     /**
      * Convenience method to return an array of all the column headers
      * in a given table.  Modifying this array will not affect the table.
@@ -297,6 +314,35 @@ public class Tables {
         if ( nrow >= 0 ) {
             assertTrue( lrow == nrow );
         }
+
+        /* Check that splitting the table for parallel access covers
+         * all the rows exactly once. */
+        RowSplittable rsplit = table.getRowSplittable();
+        RowSplittable rsplit1 = rsplit.split();
+        long nsplit = 0;
+        for ( RowSplittable rs : new RowSplittable[] { rsplit, rsplit1 } ) {
+            if ( rs != null ) {
+                LongSupplier rowIndex = rs.rowIndex();
+                while ( rs.next() ) {
+                    Object[] row = rs.getRow();
+                    assertTrue( row.length == ncol );
+                    if ( isRandom && rowIndex != null && ncol > 0 ) {
+                        long ir = rowIndex.getAsLong();
+                        Object c0 = row[ 0 ];
+                        Object c1 = table.getCell( ir, 0 );
+                        assertTrue( c0 == null
+                                  ? c1 == null
+                                  : colinfos[ 0 ]
+                                   .formatValue( c0, formatChars )
+                                   .equals( colinfos[ 0 ]
+                                           .formatValue( c1, formatChars ) ) );
+                    }
+                    nsplit++;
+                }
+                rs.close();
+            }
+        }
+        assertTrue( nsplit == lrow );
     }
 
     /**
@@ -318,6 +364,157 @@ public class Tables {
             || false;
     }
 
+    /**
+     * Returns the value of a cell in the current row of a row sequence
+     * as a double precision number.
+     * If the sequence is a {@link TypedRowSequence} the value is
+     * obtained without object creation, otherwise the cell object
+     * is converted.  The result is NaN for null or non-numeric cells.
+     *
+     * @param  rseq  row sequence with a current row
+     * @param  icol  column index
+     * @return  numeric cell value, or NaN
+     * @see   TypedRowSequence#getDouble
+     */
+    public static double getDouble( RowSequence rseq, int icol )
+            throws IOException {
+        if ( rseq instanceof TypedRowSequence ) {
+            return ((TypedRowSequence) rseq).getDouble( icol );
+        }
+        else {
+            Object value = rseq.getCell( icol );
+            return value instanceof Number ? ((Number) value).doubleValue()
+                                           : Double.NaN;
+        }
+    }
+
+    /**
+     * Returns the value of a cell in the current row of a row sequence
+     * as a long integer.
+     * If the sequence is a {@link TypedRowSequence} the value is
+     * obtained without object creation, otherwise the cell object
+     * is converted.  The result is zero for null or non-numeric cells.
+     *
+     * @param  rseq  row sequence with a current row
+     * @param  icol  column index
+     * @return  integer cell value, or zero
+     * @see   TypedRowSequence#getLong
+     */
+    public static long getLong( RowSequence rseq, int icol )
+            throws IOException {
+        if ( rseq instanceof TypedRowSequence ) {
+            return ((TypedRowSequence) rseq).getLong( icol );
+        }
+        else {
+            Object value = rseq.getCell( icol );
+            return value instanceof Number ? ((Number) value).longValue()
+                                           : 0L;
+        }
+    }
+
+    /**
+     * Indicates whether a cell in the current row of a row sequence
+     * is null.
+     * If the sequence is a {@link TypedRowSequence} the answer is
+     * obtained without object creation, otherwise the cell object
+     * is examined.
+     * Note this tests only for a null reference,
+     * unlike {@link #isBlank}.
+     *
+     * @param  rseq  row sequence with a current row
+     * @param  icol  column index
+     * @return  true iff the cell value is null
+     * @see   TypedRowSequence#isNull
+     */
+    public static boolean isNull( RowSequence rseq, int icol )
+            throws IOException {
+        return rseq instanceof TypedRowSequence
+             ? ((TypedRowSequence) rseq).isNull( icol )
+             : rseq.getCell( icol ) == null;
+    }
+
+    /**
+     * Copies the elements of a numeric array-valued cell in the current
+     * row of a row sequence into a buffer as double precision values.
+     * If the sequence is an {@link ArrayRowSequence} this is done
+     * without object creation, otherwise the cell object is converted.
+     * Cells which are not primitive numeric arrays are treated as
+     * having no elements.
+     * If the return value exceeds the buffer length,
+     * only the first <code>buf.length</code> elements are copied.
+     *
+     * @param  rseq  row sequence with a current row
+     * @param  icol  column index
+     * @param  buf   buffer to receive array elements
+     * @return  number of elements in the cell
+     * @see   ArrayRowSequence#getArrayDoubles
+     */
+    public static int getArrayDoubles( RowSequence rseq, int icol,
+                                       double[] buf )
+            throws IOException {
+        if ( rseq instanceof ArrayRowSequence ) {
+            return ((ArrayRowSequence) rseq).getArrayDoubles( icol, buf );
+        }
+        else {
+            return copyArrayDoubles( rseq.getCell( icol ), buf );
+        }
+    }
+
+    /**
+     * Copies the elements of a numeric primitive array into a buffer
+     * as double precision values.
+     * Values which are not primitive numeric arrays
+     * are treated as having no elements.
+     * If the return value exceeds the buffer length,
+     * only the first <code>buf.length</code> elements are copied.
+     *
+     * @param  array  array value, may be null
+     * @param  buf   buffer to receive array elements
+     * @return  number of elements in the array
+     * @see   ArrayRowSequence#getArrayDoubles
+     */
+    public static int copyArrayDoubles( Object array, double[] buf ) {
+        if ( array instanceof double[] ) {
+            double[] da = (double[]) array;
+            System.arraycopy( da, 0, buf, 0, Math.min( da.length,
+                                                       buf.length ) );
+            return da.length;
+        }
+        else if ( array instanceof float[] ||
+                  array instanceof long[] ||
+                  array instanceof int[] ||
+                  array instanceof short[] ||
+                  array instanceof byte[] ) {
+            int n = Array.getLength( array );
+            int nc = Math.min( n, buf.length );
+            for ( int i = 0; i < nc; i++ ) {
+                buf[ i ] = Array.getDouble( array, i );
+            }
+            return n;
+        }
+        else {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns a BatchRowSequence that reads the same rows as a given
+     * row sequence.
+     * If the supplied sequence is already a {@link BatchRowSequence}
+     * it is returned unchanged; otherwise a wrapper is returned that
+     * assembles batches from the boxed row values.
+     * In either case the supplied sequence should not subsequently be
+     * used directly, and closing the returned sequence closes it.
+     *
+     * @param  rseq  row sequence
+     * @return  batch row sequence based on <code>rseq</code>
+     */
+    public static BatchRowSequence getBatchRowSequence( RowSequence rseq ) {
+        return rseq instanceof BatchRowSequence
+             ? (BatchRowSequence) rseq
+             : new BufferedBatchRowSequence( rseq );
+    }
+
     /**
      * Convenience method to consruct a TableSequence for a single table.
      *
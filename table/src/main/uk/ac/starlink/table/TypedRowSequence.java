@@ -0,0 +1,69 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+
+/**
+ * RowSequence subinterface that can supply cell values as
+ * primitives without creating wrapper objects.
+ * Code that reads numeric columns row by row, for instance to
+ * accumulate statistics, may generate one boxed value per cell
+ * if it uses {@link #getCell}; where the row sequence implements
+ * this interface that garbage can be avoided.
+ *
+ * <p>The methods here are defined so that their results are
+ * the same as those obtained by converting the result of
+ * <code>getCell</code>; implementations are free to work
+ * more efficiently, but must not give different answers.
+ * Client code will usually not test for this interface directly,
+ * but use the utility methods
+ * {@link Tables#getDouble Tables.getDouble},
+ * {@link Tables#getLong Tables.getLong} and
+ * {@link Tables#isNull Tables.isNull},
+ * which work with any RowSequence, falling back to
+ * the boxed value where necessary.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public interface TypedRowSequence extends RowSequence {
+
+    /**
+     * Indicates whether a cell in the current row is null.
+     * This returns true exactly when <code>getCell(icol)</code>
+     * would return null.  Note that a floating point NaN is
+     * not a null value in this sense.
+     *
+     * @param  icol  column index
+     * @return  true iff the cell is null
+     * @throws IOException  if there is an error reading the data
+     * @throws IllegalStateException if there is no current row
+     */
+    boolean isNull( int icol ) throws IOException;
+
+    /**
+     * Returns the value of a cell in the current row as
+     * a double precision number.
+     * If the cell is a {@link java.lang.Number} the result is its
+     * <code>doubleValue</code>, otherwise (including if it is null)
+     * the result is NaN.
+     *
+     * @param  icol  column index
+     * @return  numeric cell value, or NaN
+     * @throws IOException  if there is an error reading the data
+     * @throws IllegalStateException if there is no current row
+     */
+    double getDouble( int icol ) throws IOException;
+
+    /**
+     * Returns the value of a cell in the current row as a long integer.
+     * If the cell is a {@link java.lang.Number} the result is its
+     * <code>longValue</code>, otherwise (including if it is null)
+     * the result is zero; use {@link #isNull} to tell the difference.
+     *
+     * @param  icol  column index
+     * @return  integer cell value, or zero
+     * @throws IOException  if there is an error reading the data
+     * @throws IllegalStateException if there is no current row
+     */
+    long getLong( int icol ) throws IOException;
+}
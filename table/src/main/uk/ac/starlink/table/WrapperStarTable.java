@@ -103,6 +103,20 @@ public class WrapperStarTable implements StarTable {
         return baseTable.getRowSequence();
     }
 
+    /**
+     * The <tt>WrapperStarTable</tt> implementation of this method
+     * returns the result of
+     * {@link Tables#getDefaultRowSplittable Tables.getDefaultRowSplittable},
+     * which is based on this table's own random or sequential access
+     * methods.  It does not forward to the base table's implementation,
+     * since subclasses which modify the data view would otherwise be
+     * bypassed.  Subclasses which do not modify the row data may
+     * override it to call <code>baseTable.getRowSplittable()</code>.
+     */
+    public RowSplittable getRowSplittable() throws IOException {
+        return Tables.getDefaultRowSplittable( this );
+    }
+
     public boolean isRandom() {
         return baseTable.isRandom();
     }
@@ -1,6 +1,9 @@
 package uk.ac.starlink.table.jdbc;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -41,6 +44,41 @@ public class JDBCFormatter {
     private final Map<Integer,String> typeNameMap_;
     private final SqlSyntax sqlSyntax_;
     private final boolean upperCasePreferred_;
+    private int batchSize_;
+    private long commitInterval_;
+    private boolean useCopy_;
+
+    /**
+     * Name of the system property which can be used to set the
+     * default number of rows sent to the database in each batch
+     * of inserts ({@value}).
+     * A value of 1 or less means that rows are inserted individually.
+     * If not set, the default is {@link #DEFAULT_BATCH_SIZE}.
+     */
+    public static final String BATCH_PROPERTY = "startable.jdbc.batch";
+
+    /**
+     * Name of the system property which can be used to set the
+     * default number of rows inserted in each transaction
+     * ({@value}).
+     * A value of 0 means that the connection's auto-commit setting
+     * is left alone.
+     */
+    public static final String COMMIT_PROPERTY = "startable.jdbc.commit";
+
+    /**
+     * Name of the system property which can be set "false" to prevent
+     * use of bulk-load facilities such as PostgreSQL's COPY command
+     * where they are available ({@value}).
+     */
+    public static final String COPY_PROPERTY = "startable.jdbc.copy";
+
+    /** Default number of rows in each batch of inserts. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Name of the PostgreSQL driver's connection interface. */
+    private static final String PG_CONNECTION_CLASS =
+        "org.postgresql.PGConnection";
 
     private static Logger logger = 
         Logger.getLogger( "uk.ac.starlink.table.jdbc" );
@@ -61,6 +99,10 @@ public class JDBCFormatter {
         maxTableLeng_ = meta.getMaxTableNameLength();
         upperCasePreferred_ = meta.storesUpperCaseIdentifiers();
         sqlSyntax_ = getSqlSyntax( meta );
+        batchSize_ = (int) getLongProperty( BATCH_PROPERTY,
+                                            DEFAULT_BATCH_SIZE );
+        commitInterval_ = getLongProperty( COMMIT_PROPERTY, 0 );
+        useCopy_ = ! "false".equalsIgnoreCase( getProperty( COPY_PROPERTY ) );
 
         /* Work out column types and see if we need to work out maximum string
          * lengths. */
@@ -228,15 +270,36 @@ public class JDBCFormatter {
             stmt.executeUpdate( create );
         }
 
-        /* Prepare a statement for adding the data. */
+        /* Use a bulk load if possible. */
+        if ( useCopy_ ) {
+            long nrow = copyRows( tableName );
+            if ( nrow >= 0 ) {
+                logger.info( "Loaded " + nrow + " rows using COPY" );
+                return;
+            }
+        }
+
+        /* Otherwise, prepare a statement for adding the data. */
         String insert = getInsertStatement( tableName );
         logger.info( insert );
         PreparedStatement pstmt = conn_.prepareStatement( insert );
+        boolean isBatch = batchSize_ > 1
+                       && conn_.getMetaData().supportsBatchUpdates();
+
+        /* Take control of transactions if required. */
+        boolean autoCommit = conn_.getAutoCommit();
+        boolean isCommit = commitInterval_ > 0;
+        if ( isCommit && autoCommit ) {
+            conn_.setAutoCommit( false );
+        }
 
         /* Add the data. */
         int ncol = sqlCols_.length;
         RowSequence rseq = table_.getRowSequence();
+        boolean done = false;
         try {
+            long nrow = 0;
+            int nbatch = 0;
             while ( rseq.next() ) {
                 Object[] row = rseq.getRow();
                 int pix = 0;
@@ -253,8 +316,217 @@ public class JDBCFormatter {
                         }
                     }
                 }
-                pstmt.executeUpdate();
+                nrow++;
+                if ( isBatch ) {
+                    pstmt.addBatch();
+                    if ( ++nbatch >= batchSize_ ) {
+                        pstmt.executeBatch();
+                        nbatch = 0;
+                    }
+                }
+                else {
+                    pstmt.executeUpdate();
+                }
+                if ( isCommit && nrow % commitInterval_ == 0 ) {
+                    if ( nbatch > 0 ) {
+                        pstmt.executeBatch();
+                        nbatch = 0;
+                    }
+                    conn_.commit();
+                }
+            }
+            if ( nbatch > 0 ) {
+                pstmt.executeBatch();
+            }
+            if ( isCommit ) {
+                conn_.commit();
             }
+            done = true;
+        }
+        finally {
+            rseq.close();
+            pstmt.close();
+            if ( isCommit ) {
+
+                /* Discard any uncommitted rows on failure; restoring
+                 * auto-commit would otherwise commit them.
+                 * Don't let a rollback failure hide the original error. */
+                if ( ! done ) {
+                    try {
+                        conn_.rollback();
+                    }
+                    catch ( SQLException e ) {
+                        logger.warning( "Rollback failed: " + e );
+                    }
+                }
+                if ( autoCommit ) {
+                    conn_.setAutoCommit( true );
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the number of rows sent to the database in each batch of
+     * inserts.  A value of 1 or less means that rows are inserted
+     * individually.  Batching is only used if the driver supports it.
+     * The default is taken from the {@link #BATCH_PROPERTY} system property.
+     *
+     * @param  batchSize  rows per batch
+     */
+    public void setBatchSize( int batchSize ) {
+        batchSize_ = batchSize;
+    }
+
+    /**
+     * Returns the number of rows sent to the database in each batch
+     * of inserts.
+     *
+     * @return  rows per batch
+     */
+    public int getBatchSize() {
+        return batchSize_;
+    }
+
+    /**
+     * Sets the number of rows inserted in each transaction.
+     * If positive, auto-commit is turned off while the data is written
+     * and the connection is committed after every <code>nrow</code>
+     * rows and at the end.
+     * A value of 0 means that the connection's auto-commit setting
+     * is left alone.
+     * The default is taken from the {@link #COMMIT_PROPERTY}
+     * system property.
+     *
+     * @param  nrow  rows per transaction, or 0
+     */
+    public void setCommitInterval( long nrow ) {
+        commitInterval_ = nrow;
+    }
+
+    /**
+     * Returns the number of rows inserted in each transaction.
+     *
+     * @return  rows per transaction, or 0
+     */
+    public long getCommitInterval() {
+        return commitInterval_;
+    }
+
+    /**
+     * Sets whether bulk-load facilities will be used where available.
+     * Currently this means use of the COPY command when writing to
+     * PostgreSQL.  A bulk load is a single statement, so the batch size
+     * and commit interval do not apply to it.
+     * The default is true unless the {@link #COPY_PROPERTY} system
+     * property is set "false".
+     *
+     * @param  useCopy  true to use bulk loads where possible
+     */
+    public void setUseCopy( boolean useCopy ) {
+        useCopy_ = useCopy;
+    }
+
+    /**
+     * Indicates whether bulk-load facilities will be used where available.
+     *
+     * @return  true to use bulk loads where possible
+     */
+    public boolean getUseCopy() {
+        return useCopy_;
+    }
+
+    /**
+     * Attempts to write this formatter's data to an existing table
+     * using the PostgreSQL COPY command.
+     * This is only possible if the connection is from the PostgreSQL
+     * JDBC driver, which is accessed reflectively, and if all the
+     * columns have types that can be represented in COPY text format.
+     *
+     * @param  tableName  name of table to write to
+     * @return   number of rows written, or -1 if COPY is not available
+     */
+    private long copyRows( String tableName )
+            throws IOException, SQLException {
+
+        /* Check that all the columns can be written. */
+        int ncol = sqlCols_.length;
+        StringBuffer cols = new StringBuffer();
+        for ( int icol = 0; icol < ncol; icol++ ) {
+            SqlColumn sqlCol = sqlCols_[ icol ];
+            if ( sqlCol != null ) {
+                switch ( sqlCol.getSqlType() ) {
+                    case Types.TINYINT:
+                    case Types.SMALLINT:
+                    case Types.INTEGER:
+                    case Types.BIGINT:
+                    case Types.FLOAT:
+                    case Types.DOUBLE:
+                    case Types.BIT:
+                    case Types.CHAR:
+                    case Types.VARCHAR:
+                        break;
+                    default:
+                        return -1;
+                }
+                if ( cols.length() > 0 ) {
+                    cols.append( ", " );
+                }
+                cols.append( defensiveQuoteColumn( sqlCol.getColumnName() ) );
+            }
+        }
+
+        /* See if the driver's copy method is available. */
+        Object copyManager;
+        Method copyInMethod;
+        try {
+            Class<?> pgConnClazz =
+                Class.forName( PG_CONNECTION_CLASS, true,
+                               conn_.getClass().getClassLoader() );
+            if ( ! conn_.isWrapperFor( pgConnClazz ) ) {
+                return -1;
+            }
+            Object pgConn = conn_.unwrap( pgConnClazz );
+            copyManager = pgConnClazz.getMethod( "getCopyAPI" )
+                                     .invoke( pgConn );
+            copyInMethod = copyManager.getClass()
+                          .getMethod( "copyIn", String.class, Reader.class );
+        }
+        catch ( ClassNotFoundException e ) {
+            return -1;
+        }
+        catch ( Exception e ) {
+            logger.info( "PostgreSQL COPY not available: " + e );
+            return -1;
+        }
+
+        /* Stream the data to the database. */
+        String copy = "COPY " + defensiveQuoteTable( tableName )
+                    + " (" + cols + ") FROM STDIN";
+        logger.info( copy );
+        RowSequence rseq = table_.getRowSequence();
+        try {
+            Object count =
+                copyInMethod.invoke( copyManager, copy,
+                                     new CopyTextReader( rseq, sqlCols_ ) );
+            return ((Number) count).longValue();
+        }
+        catch ( InvocationTargetException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof SQLException ) {
+                throw (SQLException) cause;
+            }
+            else if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else {
+                throw (IOException) new IOException( "COPY failed" )
+                                   .initCause( cause );
+            }
+        }
+        catch ( IllegalAccessException e ) {
+            throw (IOException) new IOException( "COPY failed" )
+                               .initCause( e );
         }
         finally {
             rseq.close();
@@ -476,6 +748,43 @@ public class JDBCFormatter {
         return name;
     }
 
+    /**
+     * Returns the value of a system property, or null if it is not set
+     * or cannot be read.
+     *
+     * @param  name  property name
+     * @return  property value, or null
+     */
+    private static String getProperty( String name ) {
+        try {
+            return System.getProperty( name );
+        }
+        catch ( SecurityException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the integer value of a system property.
+     *
+     * @param  name  property name
+     * @param  dflt  value to use if the property is not set or is invalid
+     * @return  property value
+     */
+    private static long getLongProperty( String name, long dflt ) {
+        String txt = getProperty( name );
+        if ( txt == null || txt.trim().length() == 0 ) {
+            return dflt;
+        }
+        try {
+            return Long.parseLong( txt.trim() );
+        }
+        catch ( NumberFormatException e ) {
+            logger.warning( "Bad value for " + name + ": \"" + txt + "\"" );
+            return dflt;
+        }
+    }
+
     /**
      * Returns an SqlSyntax object for a given database connection.
      * If something goes wrong, it returns one with default characteristics.
@@ -607,4 +916,109 @@ public class JDBCFormatter {
             return typeSpec_;
         }
     }
+
+    /**
+     * Reader which supplies the rows of a table in PostgreSQL COPY
+     * text format.
+     */
+    static class CopyTextReader extends Reader {
+        private final RowSequence rseq_;
+        private final SqlColumn[] sqlCols_;
+        private final StringBuilder sbuf_;
+        private int ipos_;
+        private boolean done_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rseq  row sequence supplying data
+         * @param  sqlCols  column descriptions; columns with null entries
+         *                  are not written
+         */
+        CopyTextReader( RowSequence rseq, SqlColumn[] sqlCols ) {
+            rseq_ = rseq;
+            sqlCols_ = sqlCols;
+            sbuf_ = new StringBuilder();
+        }
+
+        public int read( char[] cbuf, int off, int len ) throws IOException {
+            if ( len == 0 ) {
+                return 0;
+            }
+            while ( ipos_ >= sbuf_.length() ) {
+                if ( done_ || ! rseq_.next() ) {
+                    done_ = true;
+                    return -1;
+                }
+                sbuf_.setLength( 0 );
+                ipos_ = 0;
+                appendRow( rseq_.getRow() );
+            }
+            int n = Math.min( len, sbuf_.length() - ipos_ );
+            sbuf_.getChars( ipos_, ipos_ + n, cbuf, off );
+            ipos_ += n;
+            return n;
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Appends a line of COPY text representing a row to the buffer.
+         *
+         * @param  row  row data
+         */
+        private void appendRow( Object[] row ) {
+            boolean first = true;
+            for ( int icol = 0; icol < sqlCols_.length; icol++ ) {
+                if ( sqlCols_[ icol ] != null ) {
+                    if ( ! first ) {
+                        sbuf_.append( '\t' );
+                    }
+                    first = false;
+                    Object val = row[ icol ];
+                    if ( Tables.isBlank( val ) ) {
+                        sbuf_.append( "\\N" );
+                    }
+                    else if ( val instanceof Boolean ) {
+                        sbuf_.append( ((Boolean) val).booleanValue() ? '1'
+                                                                     : '0' );
+                    }
+                    else {
+                        appendEscaped( val.toString() );
+                    }
+                }
+            }
+            sbuf_.append( '\n' );
+        }
+
+        /**
+         * Appends a string to the buffer with escaping of characters
+         * that are special in COPY text format.
+         *
+         * @param  txt  text to append
+         */
+        private void appendEscaped( String txt ) {
+            int leng = txt.length();
+            for ( int i = 0; i < leng; i++ ) {
+                char c = txt.charAt( i );
+                switch ( c ) {
+                    case '\\':
+                        sbuf_.append( "\\\\" );
+                        break;
+                    case '\t':
+                        sbuf_.append( "\\t" );
+                        break;
+                    case '\n':
+                        sbuf_.append( "\\n" );
+                        break;
+                    case '\r':
+                        sbuf_.append( "\\r" );
+                        break;
+                    default:
+                        sbuf_.append( c );
+                }
+            }
+        }
+    }
 }
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.ThreadUtils;
 
 public class JDBCHandler {
 
@@ -88,6 +89,15 @@ public class JDBCHandler {
                     }
                 }
             };
+
+            /* Use concurrent partition queries for sequential access
+             * if so configured. */
+            if ( ! wantRandom ) {
+                StarTable ptable = createPartitionedTable( connector, frag );
+                if ( ptable != null ) {
+                    return ptable;
+                }
+            }
             try {
                 return new JDBCStarTable( connector, frag, wantRandom );
             }
@@ -155,22 +165,67 @@ public class JDBCHandler {
         }
     }
 
-    private Connection getConnection( String url )
+    private synchronized Connection getConnection( String url )
             throws IOException, SQLException {
 
-        /* First attempt a connection without any authentication. */
-        try {
-            return DriverManager.getConnection( url );
+        /* First attempt a connection without any authentication,
+         * unless authentication details have already been acquired. */
+        if ( user == null ) {
+            try {
+                return DriverManager.getConnection( url );
+            }
+
+            /* If that fails for any reason, request authentication details
+             * so we can try again. */
+            catch ( SQLException e ) {
+                String[] authInfo = auth.authenticate();
+                user = authInfo[ 0 ];
+                passwd = authInfo[ 1 ];
+            }
         }
+        return DriverManager.getConnection( url, user, passwd );
+    }
 
-        /* If that fails for any reason, request authentication details
-         * so we can try again. */
+    /**
+     * Returns a table which reads the results of a query using
+     * concurrent partition queries, if the system properties
+     * {@link PartitionedJDBCStarTable#KEY_PROPERTY} and
+     * {@link PartitionedJDBCStarTable#PARTITIONS_PROPERTY} request it.
+     *
+     * @param  connector  supplies connections
+     * @param  sql   query text
+     * @return  partitioned table, or null if partitioning is not
+     *          configured or not possible
+     */
+    private static StarTable createPartitionedTable( Connector connector,
+                                                     String sql ) {
+        String keyProp = PartitionedJDBCStarTable.KEY_PROPERTY;
+        String npartProp = PartitionedJDBCStarTable.PARTITIONS_PROPERTY;
+        String keyCol;
+        try {
+            keyCol = System.getProperty( keyProp );
+        }
+        catch ( SecurityException e ) {
+            keyCol = null;
+        }
+        if ( keyCol == null || keyCol.trim().length() == 0 ) {
+            return null;
+        }
+        keyCol = keyCol.trim();
+        int npart = ThreadUtils.getThreadCount( npartProp );
+        if ( npart <= 1 ) {
+            return null;
+        }
+        int fetchSize = JDBCUtils.getDefaultFetchSize();
+        try {
+            return new PartitionedJDBCStarTable( connector, sql, keyCol,
+                                                 npart, fetchSize );
+        }
         catch ( SQLException e ) {
-            String[] authInfo = auth.authenticate();
-            user = authInfo[ 0 ];
-            passwd = authInfo[ 1 ];
+            logger_.warning( "Can't partition query on " + keyCol
+                           + ", reading normally: " + e );
+            return null;
         }
-        return DriverManager.getConnection( url, user, passwd );
     }
 
     /**
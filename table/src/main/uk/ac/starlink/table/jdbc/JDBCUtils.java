@@ -24,6 +24,17 @@ public class JDBCUtils {
     private static final Pattern SQLSERVER_DRIVER_REGEX =
         Pattern.compile( ".*SQL.?Server.*", Pattern.CASE_INSENSITIVE );
 
+    /**
+     * Name of the system property which can be used to set the
+     * number of rows fetched from the database at a time by
+     * streaming statements ({@value}).
+     * If not set, the default is {@link #DEFAULT_FETCH_SIZE}.
+     */
+    public static final String FETCH_PROPERTY = "startable.jdbc.fetch";
+
+    /** Default number of rows fetched at a time by streaming statements. */
+    public static final int DEFAULT_FETCH_SIZE = 1024;
+
     private static Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table.jdbc" );
 
@@ -43,6 +54,8 @@ public class JDBCUtils {
      * <p>Note that in some cases the supplied connection may have its
      * autocommit mode modified by this call.
      *
+     * <p>The fetch size is given by {@link #getDefaultFetchSize}.
+     *
      * @param   conn  connection
      * @param   update  true for an updatable set, false for read-only
      * @return  statement which (hopefully) streams results
@@ -50,6 +63,31 @@ public class JDBCUtils {
     public static Statement createStreamingStatement( Connection conn, 
                                                       boolean update )
             throws SQLException {
+        return createStreamingStatement( conn, update,
+                                         getDefaultFetchSize() );
+    }
+
+    /**
+     * Returns a statement which tries its best to stream data,
+     * with a given fetch size.
+     * The fetch size is a hint to the driver about how many rows
+     * to retrieve from the database at a time; larger values reduce
+     * the number of round trips at the expense of client memory.
+     * It may be ignored by drivers for which some other mechanism
+     * is required to stream results.
+     *
+     * <p>Note that in some cases the supplied connection may have its
+     * autocommit mode modified by this call.
+     *
+     * @param   conn  connection
+     * @param   update  true for an updatable set, false for read-only
+     * @param   fetchSize  number of rows to fetch at a time
+     * @return  statement which (hopefully) streams results
+     */
+    public static Statement createStreamingStatement( Connection conn,
+                                                      boolean update,
+                                                      int fetchSize )
+            throws SQLException {
         int concurrency = update ? ResultSet.CONCUR_UPDATABLE
                                  : ResultSet.CONCUR_READ_ONLY;
 
@@ -68,7 +106,7 @@ public class JDBCUtils {
             conn.setAutoCommit( false );
             Statement stmt = conn.createStatement( ResultSet.TYPE_FORWARD_ONLY,
                                                    concurrency );
-            stmt.setFetchSize( 1024 );
+            stmt.setFetchSize( fetchSize );
             return stmt;
         }
 
@@ -108,8 +146,40 @@ public class JDBCUtils {
         else {
             logger_.info( "No special steps to stream results - "
                        + "may run out of memory for large ResultSet?" );
-            return conn.createStatement( ResultSet.TYPE_FORWARD_ONLY,
-                                         concurrency );
+            Statement stmt = conn.createStatement( ResultSet.TYPE_FORWARD_ONLY,
+                                                   concurrency );
+            stmt.setFetchSize( fetchSize );
+            return stmt;
+        }
+    }
+
+    /**
+     * Returns the default fetch size for streaming statements.
+     * This is taken from the {@link #FETCH_PROPERTY} system property
+     * if it is set, otherwise {@link #DEFAULT_FETCH_SIZE}.
+     *
+     * @return  default number of rows fetched at a time
+     */
+    public static int getDefaultFetchSize() {
+        String txt;
+        try {
+            txt = System.getProperty( FETCH_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            txt = null;
+        }
+        if ( txt != null && txt.trim().length() > 0 ) {
+            try {
+                int fetchSize = Integer.parseInt( txt.trim() );
+                if ( fetchSize > 0 ) {
+                    return fetchSize;
+                }
+            }
+            catch ( NumberFormatException e ) {
+            }
+            logger_.warning( "Bad value for " + FETCH_PROPERTY + ": \""
+                           + txt + "\"" );
         }
+        return DEFAULT_FETCH_SIZE;
     }
 }
@@ -0,0 +1,700 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.ValueInfo;
+
+/**
+ * Sequential-access StarTable which reads the results of an SQL query
+ * using several concurrent queries, each covering a range of
+ * values of a numeric key column.
+ *
+ * <p>At construction time the range of the key column and the
+ * number of rows are determined by an aggregate query.
+ * The range is divided into a number of equal-width partitions,
+ * and each partition is read by a query of the form
+ * <pre>
+ *    SELECT * FROM (&lt;sql&gt;) q
+ *    WHERE &lt;key&gt; &gt;= lo AND &lt;key&gt; &lt; hi
+ * </pre>
+ * using its own connection from the supplied {@link Connector},
+ * which must therefore supply a new connection each time it is called.
+ * Rows with a null key value are read by an additional query.
+ *
+ * <p>A row sequence reads all the partitions concurrently,
+ * and delivers blocks of rows in the order that they arrive.
+ * The row order is therefore not defined, just as for an SQL query
+ * without an ORDER BY clause.
+ * The {@link #getRowSplittable} method provides splittables that
+ * divide the work between partitions, so that table processing
+ * can run in parallel alongside the database reads.
+ *
+ * <p>As for the other JDBC tables, rows may change between reads,
+ * so the row count is not reported.
+ *
+ * <p>{@link JDBCHandler} uses this class for sequential reads if the
+ * {@link #KEY_PROPERTY} and {@link #PARTITIONS_PROPERTY} system
+ * properties are set.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class PartitionedJDBCStarTable extends AbstractStarTable {
+
+    private final Connector connx_;
+    private final String sql_;
+    private final int fetchSize_;
+    private final ColumnInfo[] colInfos_;
+    private final String[] partitionSqls_;
+    private final long nrowEstimate_;
+
+    /**
+     * Name of the system property giving the name of the numeric column
+     * used to partition queries read by {@link JDBCHandler} ({@value}).
+     * Partitioning is only done if this is set, and
+     * {@link #PARTITIONS_PROPERTY} is set to a value other than 1.
+     */
+    public static final String KEY_PROPERTY = "startable.jdbc.partitionkey";
+
+    /**
+     * Name of the system property giving the number of concurrent
+     * partition queries used by {@link JDBCHandler} ({@value}).
+     * A value of 0 means the number of available processors.
+     * If unset or 1, queries are not partitioned.
+     */
+    public static final String PARTITIONS_PROPERTY =
+        "startable.jdbc.partitions";
+
+    /** Number of rows in each block passed between threads. */
+    private static final int BLOCK_SIZE = 1024;
+
+    /** Marker block indicating the end of a partition. */
+    private static final Block END_BLOCK = new Block( null, null );
+
+    private final static ValueInfo SQL_INFO =
+        new DefaultValueInfo( "SQL", String.class, "SQL query text" );
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.jdbc" );
+
+    /**
+     * Constructor.
+     *
+     * @param  connx  object which can supply new JDBC connections
+     * @param  sql   text of the SQL query
+     * @param  keyCol  name of a numeric column in the query results
+     *                 used to partition the rows; ideally an indexed column
+     * @param  npart   number of partitions, and hence of concurrent queries
+     * @param  fetchSize  number of rows fetched at a time by each query
+     */
+    public PartitionedJDBCStarTable( Connector connx, String sql,
+                                     String keyCol, int npart,
+                                     int fetchSize )
+            throws SQLException {
+        connx_ = connx;
+        sql_ = sql;
+        fetchSize_ = fetchSize;
+        String fromSql = "SELECT * FROM (" + sql + ") q";
+        Connection conn = connx.getConnection();
+        try {
+            setName( conn.getMetaData().getURL() + '#' + sql );
+
+            /* Get column metadata from an empty query. */
+            Statement stmt = conn.createStatement();
+            stmt.setMaxRows( 1 );
+            ResultSet rset = stmt.executeQuery( fromSql + " WHERE 1=0" );
+            colInfos_ = new StarResultSet( rset ).getColumnInfos();
+            rset.close();
+            stmt.close();
+
+            /* Get the range of the key column. */
+            stmt = conn.createStatement();
+            rset = stmt.executeQuery( "SELECT MIN(" + keyCol + "), "
+                                    + "MAX(" + keyCol + "), "
+                                    + "COUNT(*) "
+                                    + "FROM (" + sql + ") q" );
+            rset.next();
+            boolean isInt = isIntegerType( rset.getMetaData()
+                                               .getColumnType( 1 ) );
+            List<String> conds = new ArrayList<String>();
+            if ( isInt ) {
+                long min = rset.getLong( 1 );
+                boolean hasRange = ! rset.wasNull();
+                long max = rset.getLong( 2 );
+                if ( hasRange ) {
+                    conds.addAll( getIntConditions( keyCol, min, max,
+                                                    npart ) );
+                }
+            }
+            else {
+                double min = rset.getDouble( 1 );
+                boolean hasRange = ! rset.wasNull();
+                double max = rset.getDouble( 2 );
+                if ( hasRange ) {
+                    conds.addAll( getFloatConditions( keyCol, min, max,
+                                                      npart ) );
+                }
+            }
+            nrowEstimate_ = rset.getLong( 3 );
+            rset.close();
+            stmt.close();
+            conds.add( keyCol + " IS NULL" );
+            partitionSqls_ = new String[ conds.size() ];
+            for ( int ip = 0; ip < partitionSqls_.length; ip++ ) {
+                partitionSqls_[ ip ] = fromSql + " WHERE " + conds.get( ip );
+            }
+        }
+        finally {
+            conn.close();
+        }
+        logger_.info( "Reading " + sql + " in " + partitionSqls_.length
+                    + " partitions on " + keyCol );
+        getParameters().add( new DescribedValue( SQL_INFO, sql ) );
+    }
+
+    /**
+     * Returns the text of the SQL query used for this table.
+     *
+     * @return   the SQL query text
+     */
+    public String getSql() {
+        return sql_;
+    }
+
+    /**
+     * Returns the SQL text of the queries used for each partition.
+     *
+     * @return  partition query texts
+     */
+    public String[] getPartitionSqls() {
+        return partitionSqls_.clone();
+    }
+
+    public int getColumnCount() {
+        return colInfos_.length;
+    }
+
+    public ColumnInfo getColumnInfo( int icol ) {
+        return colInfos_[ icol ];
+    }
+
+    public List<ValueInfo> getColumnAuxDataInfos() {
+        return TypeMappers.STANDARD.getColumnAuxDataInfos();
+    }
+
+    public long getRowCount() {
+        return -1L;
+    }
+
+    public RowSequence getRowSequence() throws IOException {
+        return new ConcurrentRowSequence();
+    }
+
+    public RowSplittable getRowSplittable() throws IOException {
+        return new PartitionSplittable( 0, partitionSqls_.length );
+    }
+
+    /**
+     * Opens a partition query.
+     *
+     * @param  ip  partition index
+     * @return  reader for partition rows
+     */
+    private PartitionReader openPartition( int ip ) throws IOException {
+        Connection conn = null;
+        try {
+            conn = connx_.getConnection();
+            Statement stmt =
+                JDBCUtils.createStreamingStatement( conn, false, fetchSize_ );
+            ResultSet rset = stmt.executeQuery( partitionSqls_[ ip ] );
+            StarResultSet srset = new StarResultSet( rset );
+            if ( srset.getColumnInfos().length != colInfos_.length ) {
+                throw new IOException( "Partition column count mismatch" );
+            }
+            return new PartitionReader( conn, srset );
+        }
+        catch ( SQLException e ) {
+            closeQuietly( conn );
+            throw (IOException) new IOException( e.getMessage() )
+                               .initCause( e );
+        }
+        catch ( IOException e ) {
+            closeQuietly( conn );
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a list of SQL conditions partitioning the range of
+     * an integer key.
+     * The first and last conditions are open-ended, so that together
+     * the conditions cover all non-null values.
+     *
+     * @param  keyCol  key column name
+     * @param  min   minimum key value
+     * @param  max   maximum key value
+     * @param  npart  required number of partitions
+     * @return   list of conditions covering the range
+     */
+    static List<String> getIntConditions( String keyCol,
+                                          long min, long max, int npart ) {
+        List<String> bounds = new ArrayList<String>();
+        double width = ( (double) max - (double) min + 1 ) / npart;
+        long lo = min;
+        for ( int ip = 1; ip < npart; ip++ ) {
+            long hi = (long) Math.floor( min + ip * width );
+            if ( hi > lo && hi <= max ) {
+                bounds.add( Long.toString( hi ) );
+                lo = hi;
+            }
+        }
+        return toConditions( keyCol, bounds );
+    }
+
+    /**
+     * Returns a list of SQL conditions partitioning the range of
+     * a floating point key.
+     * The first and last conditions are open-ended, so that together
+     * the conditions cover all non-null values.
+     *
+     * @param  keyCol  key column name
+     * @param  min   minimum key value
+     * @param  max   maximum key value
+     * @param  npart  required number of partitions
+     * @return   list of conditions covering the range
+     */
+    static List<String> getFloatConditions( String keyCol,
+                                            double min, double max,
+                                            int npart ) {
+        List<String> bounds = new ArrayList<String>();
+        if ( max > min && ! Double.isInfinite( max - min ) ) {
+            double lo = min;
+            for ( int ip = 1; ip < npart; ip++ ) {
+                double hi = min + ( max - min ) * ip / npart;
+                if ( hi > lo && hi <= max ) {
+                    bounds.add( Double.toString( hi ) );
+                    lo = hi;
+                }
+            }
+        }
+        return toConditions( keyCol, bounds );
+    }
+
+    /**
+     * Returns a list of SQL conditions dividing a column's non-null
+     * values at a given list of boundaries.
+     *
+     * @param  keyCol  key column name
+     * @param  bounds  SQL representations of increasing boundary values
+     * @return  list of bounds.size()+1 conditions
+     */
+    static List<String> toConditions( String keyCol, List<String> bounds ) {
+        List<String> conds = new ArrayList<String>();
+        if ( bounds.isEmpty() ) {
+            conds.add( keyCol + " IS NOT NULL" );
+        }
+        else {
+            String lo = null;
+            for ( String hi : bounds ) {
+                conds.add( lo == null
+                         ? keyCol + " < " + hi
+                         : keyCol + " >= " + lo + " AND "
+                         + keyCol + " < " + hi );
+                lo = hi;
+            }
+            conds.add( keyCol + " >= " + lo );
+        }
+        return conds;
+    }
+
+    /**
+     * Indicates whether a JDBC type code represents an integer type.
+     *
+     * @param  sqlType  type code from {@link java.sql.Types}
+     * @return  true for integer types
+     */
+    private static boolean isIntegerType( int sqlType ) {
+        switch ( sqlType ) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Closes a connection, ignoring any errors.
+     *
+     * @param  conn  connection, may be null
+     */
+    private static void closeQuietly( Connection conn ) {
+        if ( conn != null ) {
+            try {
+                conn.close();
+            }
+            catch ( SQLException e ) {
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of a single partition query.
+     */
+    private static class PartitionReader {
+        private final Connection conn_;
+        private final StarResultSet srset_;
+        private final ResultSet rset_;
+
+        /**
+         * Constructor.
+         *
+         * @param  conn  connection owned by this reader
+         * @param  srset  result set positioned at start
+         */
+        PartitionReader( Connection conn, StarResultSet srset ) {
+            conn_ = conn;
+            srset_ = srset;
+            rset_ = srset.getResultSet();
+        }
+
+        /**
+         * Advances to the next row.
+         *
+         * @return  true iff there is a new current row
+         */
+        boolean next() throws IOException {
+            try {
+                return rset_.next();
+            }
+            catch ( SQLException e ) {
+                throw (IOException) new IOException( e.getMessage() )
+                                   .initCause( e );
+            }
+        }
+
+        /**
+         * Returns a cell of the current row.
+         *
+         * @param  icol  column index
+         * @return  cell value
+         */
+        Object getCell( int icol ) throws IOException {
+            return srset_.getCell( icol );
+        }
+
+        /**
+         * Returns the current row.
+         *
+         * @return  row data
+         */
+        Object[] getRow() throws IOException {
+            return srset_.getRow();
+        }
+
+        /**
+         * Releases resources.
+         */
+        void close() throws IOException {
+            try {
+                rset_.close();
+                if ( ! conn_.getAutoCommit() ) {
+                    conn_.commit();
+                }
+                conn_.close();
+            }
+            catch ( SQLException e ) {
+                throw (IOException) new IOException( e.getMessage() )
+                                   .initCause( e );
+            }
+        }
+    }
+
+    /**
+     * RowSplittable which reads a contiguous range of partitions
+     * one after another.
+     */
+    private class PartitionSplittable implements RowSplittable {
+        private int ipart_;
+        private int ihi_;
+        private PartitionReader reader_;
+        private boolean hasRow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ilo  index of first partition (inclusive)
+         * @param  ihi  index of last partition (exclusive)
+         */
+        PartitionSplittable( int ilo, int ihi ) {
+            ipart_ = ilo;
+            ihi_ = ihi;
+        }
+
+        public RowSplittable split() {
+            if ( reader_ == null && ihi_ - ipart_ > 1 ) {
+                int mid = ( ipart_ + ihi_ ) / 2;
+                RowSplittable other = new PartitionSplittable( mid, ihi_ );
+                ihi_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return reader_ == null
+                 ? nrowEstimate_ * ( ihi_ - ipart_ ) / partitionSqls_.length
+                 : -1;
+        }
+
+        public LongSupplier rowIndex() {
+            return null;
+        }
+
+        public boolean next() throws IOException {
+            while ( true ) {
+                if ( reader_ == null ) {
+                    if ( ipart_ >= ihi_ ) {
+                        hasRow_ = false;
+                        return false;
+                    }
+                    reader_ = openPartition( ipart_++ );
+                }
+                if ( reader_.next() ) {
+                    hasRow_ = true;
+                    return true;
+                }
+                reader_.close();
+                reader_ = null;
+            }
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            checkHasRow();
+            return reader_.getCell( icol );
+        }
+
+        public Object[] getRow() throws IOException {
+            checkHasRow();
+            return reader_.getRow();
+        }
+
+        public void close() throws IOException {
+            ipart_ = ihi_;
+            hasRow_ = false;
+            if ( reader_ != null ) {
+                PartitionReader reader = reader_;
+                reader_ = null;
+                reader.close();
+            }
+        }
+
+        /**
+         * Ensures that there is a current row.
+         *
+         * @throws NoSuchElementException  if there is no current row
+         */
+        private void checkHasRow() {
+            if ( ! hasRow_ ) {
+                throw new NoSuchElementException( "No current row" );
+            }
+        }
+    }
+
+    /**
+     * RowSequence which reads all partitions concurrently,
+     * each in its own thread.
+     */
+    private class ConcurrentRowSequence implements RowSequence {
+        private final BlockingQueue<Block> queue_;
+        private final Thread[] threads_;
+        private int nLive_;
+        private Object[][] rows_;
+        private int irow_;
+
+        /**
+         * Constructor.
+         */
+        ConcurrentRowSequence() {
+            int npart = partitionSqls_.length;
+            queue_ = new ArrayBlockingQueue<Block>( 2 * npart );
+            threads_ = new Thread[ npart ];
+            for ( int ip = 0; ip < npart; ip++ ) {
+                final int ip0 = ip;
+                Thread thread = new Thread( "JDBC partition " + ip ) {
+                    public void run() {
+                        Block lastBlock;
+                        try {
+                            readPartition( ip0 );
+                            lastBlock = END_BLOCK;
+                        }
+                        catch ( InterruptedException e ) {
+                            return;
+                        }
+                        catch ( IOException e ) {
+                            lastBlock = new Block( null, e );
+                        }
+
+                        /* Make sure the consumer gets to hear about any
+                         * other error, otherwise it would wait for ever. */
+                        catch ( Throwable e ) {
+                            lastBlock =
+                                new Block( null, (IOException)
+                                                 new IOException( e.toString() )
+                                                .initCause( e ) );
+                        }
+                        try {
+                            queue_.put( lastBlock );
+                        }
+                        catch ( InterruptedException e ) {
+                            // closed
+                        }
+                    }
+                };
+                thread.setDaemon( true );
+                threads_[ ip ] = thread;
+            }
+            nLive_ = npart;
+            rows_ = new Object[ 0 ][];
+            for ( Thread thread : threads_ ) {
+                thread.start();
+            }
+        }
+
+        public boolean next() throws IOException {
+            if ( irow_ < rows_.length - 1 ) {
+                irow_++;
+                return true;
+            }
+            while ( nLive_ > 0 ) {
+                Block block;
+                try {
+                    block = queue_.take();
+                }
+                catch ( InterruptedException e ) {
+                    throw (IOException)
+                          new InterruptedIOException( "Interrupted" )
+                         .initCause( e );
+                }
+                if ( block == END_BLOCK ) {
+                    nLive_--;
+                }
+                else if ( block.error_ != null ) {
+                    close();
+                    throw block.error_;
+                }
+                else {
+                    rows_ = block.rows_;
+                    irow_ = 0;
+                    return true;
+                }
+            }
+            rows_ = new Object[ 0 ][];
+            irow_ = 0;
+            return false;
+        }
+
+        public Object[] getRow() {
+            if ( irow_ < rows_.length ) {
+                return rows_[ irow_ ];
+            }
+            else {
+                throw new NoSuchElementException( "No current row" );
+            }
+        }
+
+        public Object getCell( int icol ) {
+            return getRow()[ icol ];
+        }
+
+        public void close() {
+            nLive_ = 0;
+            rows_ = new Object[ 0 ][];
+            for ( Thread thread : threads_ ) {
+                thread.interrupt();
+            }
+            queue_.clear();
+        }
+
+        /**
+         * Reads the rows of a partition and passes them to the consumer
+         * in blocks.  Called from a partition thread.
+         *
+         * @param  ip  partition index
+         */
+        private void readPartition( int ip )
+                throws IOException, InterruptedException {
+            PartitionReader reader = openPartition( ip );
+            try {
+                List<Object[]> rows = new ArrayList<Object[]>( BLOCK_SIZE );
+                while ( reader.next() ) {
+                    if ( Thread.interrupted() ) {
+                        throw new InterruptedException();
+                    }
+                    rows.add( reader.getRow() );
+                    if ( rows.size() >= BLOCK_SIZE ) {
+                        queue_.put( new Block( toArray( rows ), null ) );
+                        rows.clear();
+                    }
+                }
+                if ( rows.size() > 0 ) {
+                    queue_.put( new Block( toArray( rows ), null ) );
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Converts a list of rows to an array.
+     *
+     * @param  rows  row list
+     * @return  row array
+     */
+    private static Object[][] toArray( List<Object[]> rows ) {
+        return rows.toArray( new Object[ 0 ][] );
+    }
+
+    /**
+     * Unit of data passed from partition threads to the consumer.
+     */
+    private static class Block {
+        final Object[][] rows_;
+        final IOException error_;
+
+        /**
+         * Constructor.
+         *
+         * @param  rows  row data, or null
+         * @param  error  read error, or null
+         */
+        Block( Object[][] rows, IOException error ) {
+            rows_ = rows;
+            error_ = error;
+        }
+    }
+}
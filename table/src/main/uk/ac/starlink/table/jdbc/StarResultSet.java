@@ -31,6 +31,7 @@ public class StarResultSet {
     private final ResultSet rset_;
     private final TypeMapper typeMapper_;
     private final ValueHandler[] valueHandlers_;
+    private final CellReader[] cellReaders_;
     private final ColumnInfo[] colInfos_;
     private final boolean isRandom_;
     private long nrow_ = -1L;
@@ -63,10 +64,13 @@ public class StarResultSet {
         ResultSetMetaData meta = rset.getMetaData();
         int ncol = meta.getColumnCount();
         valueHandlers_ = new ValueHandler[ ncol ];
+        cellReaders_ = new CellReader[ ncol ];
         colInfos_ = new ColumnInfo[ ncol ];
         for ( int icol = 0; icol < ncol; icol++ ) {
             valueHandlers_[ icol ] =
                 typeMapper.createValueHandler( meta, icol + 1 );
+            cellReaders_[ icol ] =
+                CellReader.getReader( meta.getColumnClassName( icol + 1 ) );
             colInfos_[ icol ] = valueHandlers_[ icol ].getColumnInfo();
         }
 
@@ -199,7 +203,7 @@ public class StarResultSet {
     public Object getCell( int icol ) throws IOException {
         Object base;
         try {
-            base = rset_.getObject( icol + 1 );
+            base = cellReaders_[ icol ].readCell( rset_, icol + 1 );
         }
         catch ( SQLException e ) {
             throw (IOException) new IOException( "SQL read error" + e )
@@ -291,4 +295,121 @@ public class StarResultSet {
             }
         }
     }
+
+    /**
+     * Reads the value of a column from the current row of a ResultSet.
+     * Implementations for common column types use the typed getter
+     * methods rather than <code>getObject</code>, which avoids
+     * generic type dispatch and intermediate objects in many drivers.
+     * The result is the same as that of <code>getObject</code>.
+     */
+    private static abstract class CellReader {
+
+        /** Reader using getObject. */
+        static final CellReader OBJECT = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                return rset.getObject( jcol );
+            }
+        };
+
+        /** Reader for Integer columns. */
+        static final CellReader INT = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                int value = rset.getInt( jcol );
+                return rset.wasNull() ? null : Integer.valueOf( value );
+            }
+        };
+
+        /** Reader for Long columns. */
+        static final CellReader LONG = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                long value = rset.getLong( jcol );
+                return rset.wasNull() ? null : Long.valueOf( value );
+            }
+        };
+
+        /** Reader for Short columns. */
+        static final CellReader SHORT = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                short value = rset.getShort( jcol );
+                return rset.wasNull() ? null : Short.valueOf( value );
+            }
+        };
+
+        /** Reader for Double columns. */
+        static final CellReader DOUBLE = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                double value = rset.getDouble( jcol );
+                return rset.wasNull() ? null : Double.valueOf( value );
+            }
+        };
+
+        /** Reader for Float columns. */
+        static final CellReader FLOAT = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                float value = rset.getFloat( jcol );
+                return rset.wasNull() ? null : Float.valueOf( value );
+            }
+        };
+
+        /** Reader for Boolean columns. */
+        static final CellReader BOOLEAN = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                boolean value = rset.getBoolean( jcol );
+                return rset.wasNull() ? null : Boolean.valueOf( value );
+            }
+        };
+
+        /** Reader for String columns. */
+        static final CellReader STRING = new CellReader() {
+            Object readCell( ResultSet rset, int jcol ) throws SQLException {
+                return rset.getString( jcol );
+            }
+        };
+
+        /**
+         * Reads a value.
+         *
+         * @param  rset  result set positioned at the row of interest
+         * @param  jcol  JDBC column index (first column is 1)
+         * @return  value as returned by <code>getObject</code>
+         */
+        abstract Object readCell( ResultSet rset, int jcol )
+                throws SQLException;
+
+        /**
+         * Returns a reader suitable for a column whose
+         * <code>getObject</code> values are of a given class.
+         *
+         * @param  className  column class name as reported by
+         *                    ResultSetMetaData, may be null
+         * @return  reader
+         */
+        static CellReader getReader( String className ) {
+            if ( Integer.class.getName().equals( className ) ) {
+                return INT;
+            }
+            else if ( Long.class.getName().equals( className ) ) {
+                return LONG;
+            }
+            else if ( Short.class.getName().equals( className ) ) {
+                return SHORT;
+            }
+            else if ( Double.class.getName().equals( className ) ) {
+                return DOUBLE;
+            }
+            else if ( Float.class.getName().equals( className ) ) {
+                return FLOAT;
+            }
+            else if ( Boolean.class.getName().equals( className ) ) {
+                return BOOLEAN;
+            }
+            else if ( String.class.getName().equals( className ) ) {
+                return STRING;
+            }
+            else {
+                return OBJECT;
+            }
+        }
+    }
 }
@@ -7,6 +7,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.util.IntList;
 import uk.ac.starlink.util.LongList;
@@ -47,10 +48,51 @@ class Binners {
 
     /**
      * Returns a new binner for storing long integer values.
+     * Bins with <code>Long</code> keys, such as those used for sky pixels,
+     * are stored compactly in primitive arrays.
+     * If the default storage policy prefers disk storage,
+     * these arrays are memory-mapped from a temporary file
+     * rather than being held on the heap.
      *
+     * @param  nrow  maximum value to be stored, or -1 if not known
      * @return   new LongBinner
      */
     public static LongBinner createLongBinner( long nrow ) {
+        StoragePolicy policy = StoragePolicy.getDefaultPolicy();
+        boolean useDisk = policy == StoragePolicy.PREFER_DISK
+                       || policy == StoragePolicy.SIDEWAYS;
+        PrimitiveLongBinner.Allocator alloc =
+              useDisk ? PrimitiveLongBinner.Allocator.createMappedAllocator()
+                      : PrimitiveLongBinner.Allocator.HEAP;
+        return createLongBinner( nrow, alloc );
+    }
+
+    /**
+     * Returns a new binner for storing long integer values,
+     * using a given storage allocator for bins with
+     * <code>Long</code> keys.
+     *
+     * @param  nrow  maximum value to be stored, or -1 if not known
+     * @param  alloc   storage allocator
+     * @return   new LongBinner
+     */
+    static LongBinner createLongBinner( long nrow,
+                                        PrimitiveLongBinner.Allocator alloc ) {
+        boolean isInt = nrow >= 0 && nrow < Integer.MAX_VALUE;
+        return new PrimitiveLongBinner( isInt, alloc,
+                                        createMapLongBinner( nrow ) );
+    }
+
+    /**
+     * Returns a new hash map-based binner for storing long integer values.
+     * This is less compact than the binner returned by
+     * {@link #createLongBinner}, but can be more efficient for
+     * keys that are not <code>Long</code>s.
+     *
+     * @param  nrow  maximum value to be stored, or -1 if not known
+     * @return   new LongBinner
+     */
+    public static LongBinner createMapLongBinner( long nrow ) {
         return nrow >= 0 && nrow < Integer.MAX_VALUE
              ? (LongBinner) new CombinationIntLongBinner()
              : (LongBinner) new LongListLongBinner();
@@ -202,6 +244,18 @@ class Binners {
             return getLongsFromListable( map_.get( key ) );
         }
 
+        public void addContent( LongBinner other ) {
+            for ( Iterator<?> it = other.getKeyIterator(); it.hasNext(); ) {
+                Object key = it.next();
+                Object listable = map_.get( key );
+                for ( long item : other.getLongs( key ) ) {
+                    listable = addToListable( listable, item );
+                }
+                map_.put( key, listable );
+                it.remove();
+            }
+        }
+
         public Iterator<?> getKeyIterator() {
             return map_.keySet().iterator();
         }
@@ -55,6 +55,19 @@ public class CdsHealpixSkyPixellator extends HealpixSkyPixellator {
         return pixels;
     }
 
+    /**
+     * Returns the index of the single pixel containing a given point.
+     * The returned value has the same numeric value as the corresponding
+     * element of the result of {@link #getPixels getPixels}.
+     *
+     * @param  alpha  right ascension in radians
+     * @param  delta  declination in radians
+     * @return  nested pixel index at the current depth
+     */
+    public long getPixel( double alpha, double delta ) {
+        return Healpix.getNested( depth_ ).hash( alpha, delta );
+    }
+
     /**
      * Determines a default value to use for the HEALPix k parameter
      * based on a given scale.
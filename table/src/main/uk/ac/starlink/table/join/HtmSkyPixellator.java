@@ -80,11 +80,15 @@ public class HtmSkyPixellator implements SkyPixellator {
          * is flawed, since it can return pixel IDs which refer to
          * pixels at different HTM levels (i.e. of different sizes).
          * By doing it as below (on advice from Wil O'Mullane) we
-         * ensure that all the pixels are at the HTM's natural level. */
+         * ensure that all the pixels are at the HTM's natural level.
+         * The HTM library makes no claims about thread safety,
+         * so the index is not used concurrently. */
         Domain domain = zone.getDomain();
-        domain.setOlevel( htm_.maxlevel_ );
         HTMrange range = new HTMrange();
-        domain.intersect( htm_, range, false );
+        synchronized ( this ) {
+            domain.setOlevel( htm_.maxlevel_ );
+            domain.intersect( htm_, range, false );
+        }
 
         /* Accumulate a list of the pixel IDs. */
         List<Object> binList = new ArrayList<Object>();
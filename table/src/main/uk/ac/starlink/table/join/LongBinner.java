@@ -29,6 +29,16 @@ interface LongBinner {
      */
     long[] getLongs( Object key );
 
+    /**
+     * Adds all the items from another binner to this one.
+     * The other binner must be of a compatible type,
+     * for instance one created by the same factory method with the
+     * same arguments; its contents may be disrupted by this call.
+     *
+     * @param  other  binner whose contents are to be added
+     */
+    void addContent( LongBinner other );
+
     /**
      * Returns an iterator over the bin identifiers.
      * The <code>remove</code> method of this iterator may or may not
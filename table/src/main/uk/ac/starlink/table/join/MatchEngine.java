@@ -45,6 +45,14 @@ import uk.ac.starlink.table.ValueInfo;
  * These two efficiency requirements are usually conflicting to some extent.
  * <p>
  * It may help to think of all this as a sort of fuzzy hash.
+ * <p>
+ * The <tt>getBins</tt> and <tt>matchScore</tt> methods may be called
+ * concurrently from multiple threads if a parallel
+ * {@link uk.ac.starlink.table.RowRunner} is installed on the
+ * {@link RowMatcher} that uses them.
+ * The implementations in this package are thread-safe in that respect,
+ * but others need not be, so matching is sequential unless
+ * parallel processing is explicitly requested.
  * 
  * @author   Mark Taylor (Starlink)
  */
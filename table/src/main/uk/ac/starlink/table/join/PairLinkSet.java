@@ -0,0 +1,624 @@
+package uk.ac.starlink.table.join;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact LinkSet implementation for the results of pair matches.
+ * Links are stored in parallel primitive arrays giving the row index
+ * in table 0, the row index in table 1, and the score,
+ * rather than as RowLink objects, which makes it much cheaper in
+ * memory for large numbers of links.
+ * RowLink objects are created on demand during iteration;
+ * links with two entries are returned as {@link RowLink2}s
+ * with their scores.
+ *
+ * <p>Only links with one or two entries that refer to tables with
+ * indices 0 and 1 can be stored; attempting to add other links
+ * results in an IllegalArgumentException.
+ * Note that, as for RowLink2, the score is not considered when
+ * assessing link equality; if equal links with different scores are
+ * added, it is not defined which score is retained.
+ *
+ * <p>Sorting and duplicate elimination are done in place,
+ * lazily when required.  The set is always sorted on iteration.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class PairLinkSet implements LinkSet {
+
+    private long[] rows0_;
+    private long[] rows1_;
+    private double[] scores_;
+    private int nlink_;
+    private boolean isSorted_;
+    private BitSet removed_;
+    private int nremoved_;
+
+    /** Row index value indicating no entry for a table. */
+    private static final long NO_ROW = Long.MAX_VALUE;
+
+    /** Maximum array size. */
+    private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Constructs an empty set.
+     */
+    public PairLinkSet() {
+        rows0_ = new long[ 16 ];
+        rows1_ = new long[ 16 ];
+        scores_ = new double[ 16 ];
+        removed_ = new BitSet();
+        isSorted_ = true;
+    }
+
+    public void addLink( RowLink link ) {
+        long row0 = NO_ROW;
+        long row1 = NO_ROW;
+        int nref = link.size();
+        if ( nref < 1 || nref > 2 ) {
+            throw new IllegalArgumentException( "Not a pair link: " + link );
+        }
+        for ( int i = 0; i < nref; i++ ) {
+            RowRef ref = link.getRef( i );
+            int itable = ref.getTableIndex();
+            if ( itable == 0 && row0 == NO_ROW ) {
+                row0 = ref.getRowIndex();
+            }
+            else if ( itable == 1 && row1 == NO_ROW ) {
+                row1 = ref.getRowIndex();
+            }
+            else {
+                throw new IllegalArgumentException( "Not a pair link: "
+                                                  + link );
+            }
+        }
+        double score = link instanceof RowLink2
+                     ? ((RowLink2) link).getScore()
+                     : Double.NaN;
+        addEntry( row0, row1, score );
+    }
+
+    public boolean containsLink( RowLink link ) {
+        return indexOf( link ) >= 0;
+    }
+
+    public boolean removeLink( RowLink link ) {
+        int index = indexOf( link );
+        if ( index >= 0 ) {
+            remove( index );
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    public Iterator<RowLink> iterator() {
+        ensureSorted();
+        return new Iterator<RowLink>() {
+            int index_ = -1;
+            int next_ = nextIndex( 0 );
+            public boolean hasNext() {
+                return next_ < nlink_;
+            }
+            public RowLink next() {
+                if ( next_ >= nlink_ ) {
+                    throw new NoSuchElementException();
+                }
+                index_ = next_;
+                next_ = nextIndex( index_ + 1 );
+                return getLink( index_ );
+            }
+            public void remove() {
+                if ( index_ < 0 || removed_.get( index_ ) ) {
+                    throw new IllegalStateException();
+                }
+                PairLinkSet.this.remove( index_ );
+            }
+        };
+    }
+
+    public int size() {
+        ensureSorted();
+        return nlink_ - nremoved_;
+    }
+
+    public boolean sort() {
+        ensureSorted();
+        return true;
+    }
+
+    /**
+     * Returns the number of entries currently stored in this set,
+     * without first sorting it or eliminating duplicates.
+     * This is an upper bound for the result of {@link #size},
+     * and is cheap to evaluate.
+     *
+     * @return  number of stored entries, possibly including duplicates
+     */
+    int getEntryCount() {
+        return nlink_ - nremoved_;
+    }
+
+    /**
+     * Adds all the links from another PairLinkSet to this one.
+     * The other set is emptied by this operation.
+     *
+     * @param  other  set whose contents are to be transferred
+     */
+    public void addAll( PairLinkSet other ) {
+        other.compact();
+        int n = other.nlink_;
+        ensureCapacity( nlink_ + n );
+        System.arraycopy( other.rows0_, 0, rows0_, nlink_, n );
+        System.arraycopy( other.rows1_, 0, rows1_, nlink_, n );
+        System.arraycopy( other.scores_, 0, scores_, nlink_, n );
+        nlink_ += n;
+        isSorted_ = false;
+        other.clear();
+    }
+
+    /**
+     * Removes links from this set so that each row appears in at most
+     * one link, favouring links with smaller scores.
+     * Links are considered in order of ascending score,
+     * and each link is retained only if neither of its rows
+     * appears in a link retained earlier.
+     * All the links in this set must be pairs with non-negative scores.
+     * The sort and elimination are done in place.
+     *
+     * @param  indicator  progress indicator
+     */
+    public void eliminateMultipleRowEntries( ProgressIndicator indicator )
+            throws InterruptedException {
+        compact();
+        int n = nlink_;
+        for ( int i = 0; i < n; i++ ) {
+            double score = scores_[ i ];
+            if ( rows0_[ i ] == NO_ROW || rows1_[ i ] == NO_ROW ||
+                 Double.isNaN( score ) || score < 0.0 ) {
+                throw new IllegalArgumentException();
+            }
+        }
+        indicator.startStage( "Sorting pairs by score" );
+        quicksort( new ScoreOrder(), 0, n );
+        isSorted_ = false;
+        indicator.endStage();
+        RowSet seen0 = createRowSet( rows0_, n );
+        RowSet seen1 = createRowSet( rows1_, n );
+        indicator.startStage( "Eliminating multiple row references" );
+        double nl = n;
+        for ( int i = 0; i < n; i++ ) {
+            boolean isNew0 = seen0.add( rows0_[ i ] );
+            boolean isNew1 = seen1.add( rows1_[ i ] );
+            if ( ! isNew0 || ! isNew1 ) {
+                removed_.set( i );
+                nremoved_++;
+            }
+            if ( i % 10000 == 0 ) {
+                indicator.setLevel( i / nl );
+            }
+        }
+        indicator.endStage();
+        compact();
+    }
+
+    /**
+     * Appends an entry to the arrays.
+     *
+     * @param  row0  row index in table 0, or NO_ROW
+     * @param  row1  row index in table 1, or NO_ROW
+     * @param  score  score
+     */
+    private void addEntry( long row0, long row1, double score ) {
+        ensureCapacity( nlink_ + 1 );
+        int i = nlink_++;
+        rows0_[ i ] = row0;
+        rows1_[ i ] = row1;
+        scores_[ i ] = score;
+
+        /* If links are added in order, the set stays sorted. */
+        if ( isSorted_ && i > 0 && compareRows( i - 1, i ) >= 0 ) {
+            isSorted_ = false;
+        }
+    }
+
+    /**
+     * Returns a RowLink for a given entry.
+     *
+     * @param  index  entry index
+     * @return  new RowLink
+     */
+    private RowLink getLink( int index ) {
+        long row0 = rows0_[ index ];
+        long row1 = rows1_[ index ];
+        if ( row0 == NO_ROW ) {
+            return new RowLink( new RowRef( 1, row1 ) );
+        }
+        else if ( row1 == NO_ROW ) {
+            return new RowLink( new RowRef( 0, row0 ) );
+        }
+        else {
+            RowLink2 link = new RowLink2( new RowRef( 0, row0 ),
+                                          new RowRef( 1, row1 ) );
+            link.setScore( scores_[ index ] );
+            return link;
+        }
+    }
+
+    /**
+     * Returns the index of the entry equal to a given link.
+     *
+     * @param  link  link
+     * @return  index of live entry, or -1 if absent
+     */
+    private int indexOf( RowLink link ) {
+        long row0 = NO_ROW;
+        long row1 = NO_ROW;
+        int nref = link.size();
+        if ( nref > 2 ) {
+            return -1;
+        }
+        for ( int i = 0; i < nref; i++ ) {
+            RowRef ref = link.getRef( i );
+            int itable = ref.getTableIndex();
+            if ( itable == 0 && row0 == NO_ROW ) {
+                row0 = ref.getRowIndex();
+            }
+            else if ( itable == 1 && row1 == NO_ROW ) {
+                row1 = ref.getRowIndex();
+            }
+            else {
+                return -1;
+            }
+        }
+        ensureSorted();
+        int lo = 0;
+        int hi = nlink_ - 1;
+        while ( lo <= hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            int c = compareRows( rows0_[ mid ], rows1_[ mid ], row0, row1 );
+            if ( c < 0 ) {
+                lo = mid + 1;
+            }
+            else if ( c > 0 ) {
+                hi = mid - 1;
+            }
+            else {
+                return removed_.get( mid ) ? -1 : mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks an entry as removed.
+     *
+     * @param  index  entry index
+     */
+    private void remove( int index ) {
+        removed_.set( index );
+        nremoved_++;
+    }
+
+    /**
+     * Returns the index of the first live entry at or after a given index.
+     *
+     * @param  index  start index
+     * @return  next live index, or nlink_ if none
+     */
+    private int nextIndex( int index ) {
+        int next = removed_.nextClearBit( index );
+        return Math.min( next, nlink_ );
+    }
+
+    /**
+     * Ensures that the entries are sorted in natural RowLink order
+     * with no duplicates.
+     */
+    private void ensureSorted() {
+        if ( ! isSorted_ ) {
+            compact();
+            int n = nlink_;
+            quicksort( new RowOrder(), 0, n );
+
+            /* Eliminate duplicates.  Equal entries can differ only in
+             * score, and it is not defined which one is retained. */
+            int j = 0;
+            for ( int i = 0; i < n; i++ ) {
+                if ( i + 1 < n && compareRows( i, i + 1 ) == 0 ) {
+                    continue;
+                }
+                if ( j != i ) {
+                    rows0_[ j ] = rows0_[ i ];
+                    rows1_[ j ] = rows1_[ i ];
+                    scores_[ j ] = scores_[ i ];
+                }
+                j++;
+            }
+            nlink_ = j;
+            isSorted_ = true;
+        }
+    }
+
+    /**
+     * Discards removed entries from the arrays, retaining order.
+     */
+    private void compact() {
+        if ( nremoved_ > 0 ) {
+            int j = 0;
+            for ( int i = 0; i < nlink_; i++ ) {
+                if ( ! removed_.get( i ) ) {
+                    if ( j != i ) {
+                        rows0_[ j ] = rows0_[ i ];
+                        rows1_[ j ] = rows1_[ i ];
+                        scores_[ j ] = scores_[ i ];
+                    }
+                    j++;
+                }
+            }
+            assert j == nlink_ - nremoved_;
+            nlink_ = j;
+            removed_.clear();
+            nremoved_ = 0;
+        }
+    }
+
+    /**
+     * Empties this set.
+     */
+    private void clear() {
+        rows0_ = new long[ 16 ];
+        rows1_ = new long[ 16 ];
+        scores_ = new double[ 16 ];
+        removed_.clear();
+        nlink_ = 0;
+        nremoved_ = 0;
+        isSorted_ = true;
+    }
+
+    /**
+     * Ensures that the arrays can hold at least a given number of entries.
+     *
+     * @param  size  required capacity
+     */
+    private void ensureCapacity( int size ) {
+        if ( size < 0 || size > MAX_SIZE ) {
+            throw new IllegalStateException( "Too many links" );
+        }
+        int cap = rows0_.length;
+        if ( size > cap ) {
+            long newCap = Math.max( size, cap + ( cap >> 1 ) + 16L );
+            int ncap = (int) Math.min( newCap, MAX_SIZE );
+            long[] rows0 = new long[ ncap ];
+            System.arraycopy( rows0_, 0, rows0, 0, nlink_ );
+            rows0_ = rows0;
+            long[] rows1 = new long[ ncap ];
+            System.arraycopy( rows1_, 0, rows1, 0, nlink_ );
+            rows1_ = rows1;
+            double[] scores = new double[ ncap ];
+            System.arraycopy( scores_, 0, scores, 0, nlink_ );
+            scores_ = scores;
+        }
+    }
+
+    /**
+     * Compares two entries by row indices.
+     *
+     * @param  i  first entry index
+     * @param  j  second entry index
+     * @return  comparison result
+     */
+    private int compareRows( int i, int j ) {
+        return compareRows( rows0_[ i ], rows1_[ i ], rows0_[ j ], rows1_[ j ] );
+    }
+
+    /**
+     * Compares two links by row indices.  This is consistent with
+     * the natural ordering of RowLinks.
+     */
+    private static int compareRows( long a0, long a1, long b0, long b1 ) {
+        int c = Long.compare( a0, b0 );
+        return c != 0 ? c : Long.compare( a1, b1 );
+    }
+
+    /**
+     * Swaps two entries.
+     *
+     * @param  i  first entry index
+     * @param  j  second entry index
+     */
+    private void swap( int i, int j ) {
+        long r0 = rows0_[ i ];
+        rows0_[ i ] = rows0_[ j ];
+        rows0_[ j ] = r0;
+        long r1 = rows1_[ i ];
+        rows1_[ i ] = rows1_[ j ];
+        rows1_[ j ] = r1;
+        double s = scores_[ i ];
+        scores_[ i ] = scores_[ j ];
+        scores_[ j ] = s;
+    }
+
+    /**
+     * Sorts a range of entries in place.
+     * This is an introsort: quicksort with a heapsort fallback
+     * to avoid quadratic worst-case behaviour.
+     *
+     * @param  order  entry ordering
+     * @param  lo   first index, inclusive
+     * @param  hi   last index, exclusive
+     */
+    private void quicksort( EntryOrder order, int lo, int hi ) {
+        int depth = 2 * ( 32 - Integer.numberOfLeadingZeros( hi - lo ) );
+        introsort( order, lo, hi, depth );
+    }
+
+    private void introsort( EntryOrder order, int lo, int hi, int depth ) {
+        while ( hi - lo > 16 ) {
+            if ( depth-- == 0 ) {
+                heapsort( order, lo, hi );
+                return;
+            }
+            int mid = ( lo + hi ) >>> 1;
+            int last = hi - 1;
+            if ( order.compare( mid, lo ) < 0 ) {
+                swap( mid, lo );
+            }
+            if ( order.compare( last, lo ) < 0 ) {
+                swap( last, lo );
+            }
+            if ( order.compare( last, mid ) < 0 ) {
+                swap( last, mid );
+            }
+
+            /* Pivot is now at mid; move it out of the way to last - 1. */
+            swap( mid, last - 1 );
+            int pivot = last - 1;
+            int i = lo;
+            int j = pivot;
+            while ( true ) {
+                while ( order.compare( ++i, pivot ) < 0 );
+                while ( order.compare( pivot, --j ) < 0 );
+                if ( i >= j ) {
+                    break;
+                }
+                swap( i, j );
+            }
+            swap( i, pivot );
+
+            /* Recurse into the smaller part, loop on the larger. */
+            if ( i - lo < hi - i ) {
+                introsort( order, lo, i, depth );
+                lo = i + 1;
+            }
+            else {
+                introsort( order, i + 1, hi, depth );
+                hi = i;
+            }
+        }
+        for ( int i = lo + 1; i < hi; i++ ) {
+            for ( int j = i; j > lo && order.compare( j, j - 1 ) < 0; j-- ) {
+                swap( j, j - 1 );
+            }
+        }
+    }
+
+    private void heapsort( EntryOrder order, int lo, int hi ) {
+        int n = hi - lo;
+        for ( int i = n / 2 - 1; i >= 0; i-- ) {
+            siftDown( order, lo, i, n );
+        }
+        for ( int k = n - 1; k > 0; k-- ) {
+            swap( lo, lo + k );
+            siftDown( order, lo, 0, k );
+        }
+    }
+
+    private void siftDown( EntryOrder order, int lo, int i, int n ) {
+        while ( true ) {
+            int c = 2 * i + 1;
+            if ( c >= n ) {
+                return;
+            }
+            if ( c + 1 < n && order.compare( lo + c, lo + c + 1 ) < 0 ) {
+                c++;
+            }
+            if ( order.compare( lo + i, lo + c ) >= 0 ) {
+                return;
+            }
+            swap( lo + i, lo + c );
+            i = c;
+        }
+    }
+
+    /**
+     * Returns a set suitable for recording row indices from a given array.
+     *
+     * @param  rows  row indices
+     * @param  n   number of elements of interest
+     * @return  new empty set
+     */
+    private static RowSet createRowSet( long[] rows, int n ) {
+        long max = -1;
+        for ( int i = 0; i < n; i++ ) {
+            max = Math.max( max, rows[ i ] );
+        }
+        if ( max < Integer.MAX_VALUE ) {
+            final BitSet bits = new BitSet( (int) max + 1 );
+            return new RowSet() {
+                public boolean add( long row ) {
+                    int irow = (int) row;
+                    if ( bits.get( irow ) ) {
+                        return false;
+                    }
+                    else {
+                        bits.set( irow );
+                        return true;
+                    }
+                }
+            };
+        }
+        else {
+            final Set<Long> set = new HashSet<Long>();
+            return new RowSet() {
+                public boolean add( long row ) {
+                    return set.add( new Long( row ) );
+                }
+            };
+        }
+    }
+
+    /**
+     * Records which row indices have been seen.
+     */
+    private interface RowSet {
+
+        /**
+         * Adds a row index.
+         *
+         * @param  row  row index
+         * @return  true iff the row was not previously present
+         */
+        boolean add( long row );
+    }
+
+    /**
+     * Defines an ordering of entries.
+     */
+    private interface EntryOrder {
+
+        /**
+         * Compares two entries.
+         *
+         * @param  i  first entry index
+         * @param  j  second entry index
+         * @return  comparison result
+         */
+        int compare( int i, int j );
+    }
+
+    /**
+     * Natural RowLink ordering.
+     */
+    private class RowOrder implements EntryOrder {
+        public int compare( int i, int j ) {
+            return compareRows( i, j );
+        }
+    }
+
+    /**
+     * Ordering by ascending score, falling back to natural ordering.
+     */
+    private class ScoreOrder implements EntryOrder {
+        public int compare( int i, int j ) {
+            int c = Double.compare( scores_[ i ], scores_[ j ] );
+            return c != 0 ? c : compareRows( i, j );
+        }
+    }
+}
@@ -0,0 +1,1287 @@
+package uk.ac.starlink.table.join;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowListStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableFormatException;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.table.storage.ByteStoreAccess;
+import uk.ac.starlink.table.storage.Codec;
+import uk.ac.starlink.table.storage.NioByteStoreAccess;
+import uk.ac.starlink.util.IntList;
+import uk.ac.starlink.util.LongList;
+
+/**
+ * Performs a pair match on the sky between two tables that may be
+ * too large for the bins and links used by a {@link RowMatcher}
+ * to fit in memory.
+ *
+ * <p>Each input table is read once, sequentially, and its rows are
+ * partitioned by HEALPix tile into a temporary {@link ByteStore}
+ * obtained from a {@link StoragePolicy}.
+ * Rows of one of the tables are written only to the tile in which
+ * they fall, while rows of the other are written to every tile
+ * that comes within a given margin of them,
+ * so that each matched pair is found in exactly one tile.
+ * The tiles are then loaded into memory one at a time and matched
+ * using a RowMatcher, and the joined rows are streamed out as
+ * a sequential table.
+ * Memory usage is therefore determined by the size of the largest
+ * partition rather than by the size of the input tables;
+ * records are buffered per tile before being written,
+ * but the total size of those buffers is bounded.
+ * In {@link PairMode#BEST} mode the candidate pairs for the
+ * whole match are held in memory (in compact form) as well,
+ * since symmetric best-match selection cannot be done tile by tile;
+ * the tile-local details of those pairs are written to temporary
+ * storage so that the tiles do not need to be matched a second time
+ * when the output rows are read.
+ *
+ * <p>The match engine must work on the sky, with the first two elements
+ * of its tuples giving the right ascension and declination,
+ * and it must never match two points that are separated by more
+ * than the margin supplied at construction time.
+ * The output table contains only matched pairs,
+ * corresponding to the <code>1and2</code> join type.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class PartitionedSkyMatcher {
+
+    private final MatchEngine engine_;
+    private final StarTable[] tupleTables_;
+    private final double margin_;
+    private final double angleUnit_;
+    private ProgressIndicator indicator_;
+    private RowRunner runner_;
+    private StoragePolicy storage_;
+    private int partitionK_;
+    private int bufferLimit_;
+
+    /** HEALPix level used for partitioning if row counts are unknown. */
+    private static final int DEFAULT_K = 3;
+
+    /** Maximum HEALPix level chosen automatically for partitioning. */
+    private static final int MAX_AUTO_K = 5;
+
+    /** Target number of rows per partition for automatic level choice. */
+    private static final long PARTITION_ROWS = 1000000;
+
+    /** Number of bytes buffered per tile before writing. */
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    /** Default maximum total size of tile buffers for a table. */
+    private static final int MAX_BUFFER_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * Constructs a matcher for a sky match engine whose tuples
+     * start with right ascension and declination in radians.
+     * The tuple tables supply the tuples on which the match engine
+     * operates, as for the tables supplied to a RowMatcher.
+     *
+     * @param  engine  sky match engine
+     * @param  tupleTables  2-element array of tables providing match tuples
+     * @param  margin   maximum separation in radians of any two
+     *                  positions that may be matched by the engine
+     */
+    public PartitionedSkyMatcher( MatchEngine engine, StarTable[] tupleTables,
+                                  double margin ) {
+        this( checkSkyEngine( engine ), tupleTables, margin, 1.0 );
+    }
+
+    /**
+     * Constructs a matcher for an engine whose tuples start with
+     * right ascension and declination in a given angular unit.
+     * This can be used for instance with an engine that wraps
+     * a sky match engine to present its tuples in degrees.
+     *
+     * @param  engine  match engine operating on sky positions
+     * @param  tupleTables  2-element array of tables providing match tuples
+     * @param  margin   maximum separation in radians of any two
+     *                  positions that may be matched by the engine
+     * @param  angleUnit  size in radians of the unit in which the
+     *                    first two tuple elements are given,
+     *                    for instance 1 for radians or PI/180 for degrees
+     */
+    public PartitionedSkyMatcher( MatchEngine engine, StarTable[] tupleTables,
+                                  double margin, double angleUnit ) {
+        if ( tupleTables.length != 2 ) {
+            throw new IllegalArgumentException( "Pair match needs 2 tables" );
+        }
+        if ( ! ( margin >= 0 ) ) {
+            throw new IllegalArgumentException( "Bad margin " + margin );
+        }
+        if ( ! ( angleUnit > 0 ) ) {
+            throw new IllegalArgumentException( "Bad angle unit "
+                                              + angleUnit );
+        }
+        engine_ = engine;
+        tupleTables_ = tupleTables.clone();
+        margin_ = margin;
+        angleUnit_ = angleUnit;
+        indicator_ = new NullProgressIndicator();
+        runner_ = RowRunner.SEQUENTIAL;
+        storage_ = StoragePolicy.getDefaultPolicy();
+        partitionK_ = -1;
+        bufferLimit_ = MAX_BUFFER_BYTES;
+    }
+
+    /**
+     * Sets the progress indicator for this matcher.
+     *
+     * @param  indicator  new indicator
+     */
+    public void setIndicator( ProgressIndicator indicator ) {
+        indicator_ = indicator;
+    }
+
+    /**
+     * Returns the progress indicator for this matcher.
+     *
+     * @return  indicator
+     */
+    public ProgressIndicator getIndicator() {
+        return indicator_;
+    }
+
+    /**
+     * Sets the row runner used for matching within each partition.
+     * The default is {@link RowRunner#SEQUENTIAL};
+     * a parallel runner should only be set if this matcher's
+     * match engine is safe for concurrent use.
+     *
+     * @param  runner  row runner
+     */
+    public void setRowRunner( RowRunner runner ) {
+        runner_ = runner;
+    }
+
+    /**
+     * Returns the row runner used for matching within each partition.
+     *
+     * @return  row runner
+     */
+    public RowRunner getRowRunner() {
+        return runner_;
+    }
+
+    /**
+     * Sets the storage policy used to obtain the temporary byte stores
+     * into which partitioned rows are written.
+     * By default the default storage policy is used.
+     *
+     * @param  storage  storage policy
+     */
+    public void setStoragePolicy( StoragePolicy storage ) {
+        storage_ = storage;
+    }
+
+    /**
+     * Returns the storage policy used for partitioned rows.
+     *
+     * @return  storage policy
+     */
+    public StoragePolicy getStoragePolicy() {
+        return storage_;
+    }
+
+    /**
+     * Sets the HEALPix level which determines the partition size.
+     * There are 12*4^k partitions at level k.
+     * If set to -1 (the default), a value is chosen based on the
+     * input table row counts.
+     *
+     * @param  k  HEALPix level for partitions, or -1 for automatic
+     */
+    public void setPartitionK( int k ) {
+        if ( k < -1 || k > MAX_AUTO_K + 5 ) {
+            throw new IllegalArgumentException( "Partition k " + k
+                                              + " out of range" );
+        }
+        partitionK_ = k;
+    }
+
+    /**
+     * Returns the HEALPix level which determines the partition size.
+     *
+     * @return  HEALPix level for partitions, or -1 for automatic
+     */
+    public int getPartitionK() {
+        return partitionK_;
+    }
+
+    /**
+     * Sets the maximum total size of the per-tile buffers used
+     * when partitioning each table.  This does not affect the result.
+     * Intended for testing.
+     *
+     * @param  nbyte  buffer limit in bytes
+     */
+    void setBufferLimit( int nbyte ) {
+        bufferLimit_ = nbyte;
+    }
+
+    /**
+     * Performs the match and returns a sequential table containing
+     * the joined rows.
+     * The input tables are read and partitioned during this call,
+     * and for {@link PairMode#BEST} mode the candidate pairs are
+     * also located, but the match within each partition
+     * that produces the output rows is done only when the
+     * returned table's rows are read.
+     * Output row order follows the partitions and is not
+     * related to input row order.
+     *
+     * <p>The temporary storage holding the partitions is released
+     * when the first row sequence taken out on the returned table
+     * is closed or reaches the end of its rows,
+     * so that sequence should always be closed.
+     * Any later row sequence repeats the partitioning,
+     * reading the input tables again.
+     *
+     * <p>The <code>tables</code> array gives the tables whose columns
+     * will appear in the output; each must be row-aligned with the
+     * corresponding tuple table, and may be the same object as it.
+     * If an element is null, the corresponding columns do not appear
+     * in the output, as for
+     * {@link MatchStarTables#makeJoinTable(StarTable[],LinkSet,boolean,
+     *                                      JoinFixAction[],ValueInfo)
+     *        MatchStarTables.makeJoinTable}.
+     * If an output table and its tuple table are each either a
+     * {@link ColumnPermutedStarTable} view of the same base table
+     * or that base table itself, only the base table is read,
+     * so that tuple values and output values come from a single pass
+     * through the data.
+     * Otherwise the output table and tuple table are read in step.
+     *
+     * @param  tables  2-element array of tables supplying output columns
+     * @param  pairMode  matching mode
+     * @param  fixActs  actions to take for deduplicating column names
+     *                  (2-element array)
+     * @param  matchScoreInfo  if non-null, describes a match score column
+     *                         to be added to the output
+     * @return   sequential joined table
+     */
+    public StarTable makeJoinTable( final StarTable[] tables,
+                                    final PairMode pairMode,
+                                    JoinFixAction[] fixActs,
+                                    ValueInfo matchScoreInfo )
+            throws IOException, InterruptedException {
+        if ( tables.length != 2 ) {
+            throw new IllegalArgumentException( "Pair match needs 2 tables" );
+        }
+        final StarTable meta =
+            MatchStarTables.makeJoinTable( tables, new HashSetLinkSet(),
+                                           false, fixActs, matchScoreInfo );
+        final boolean hasScore = matchScoreInfo != null;
+        final PartitionJoin join0 =
+            new PartitionJoin( tables, pairMode, hasScore );
+        final long nrow = join0.getRowCount();
+        return new WrapperStarTable( meta ) {
+            private PartitionJoin join_ = join0;
+            public boolean isRandom() {
+                return false;
+            }
+            public long getRowCount() {
+                return nrow;
+            }
+            public synchronized RowSequence getRowSequence()
+                    throws IOException {
+                PartitionJoin join = join_;
+                join_ = null;
+                if ( join == null ) {
+                    try {
+                        join = new PartitionJoin( tables, pairMode, hasScore );
+                    }
+                    catch ( InterruptedException e ) {
+                        throw (IOException)
+                              new InterruptedIOException( "Interrupted" )
+                             .initCause( e );
+                    }
+                }
+                return join.createRowSequence();
+            }
+            public Object getCell( long irow, int icol ) {
+                throw new UnsupportedOperationException( "Not random" );
+            }
+            public Object[] getRow( long irow ) {
+                throw new UnsupportedOperationException( "Not random" );
+            }
+        };
+    }
+
+    /**
+     * Checks that an engine is a sky match engine.
+     *
+     * @param  engine  engine
+     * @return  engine
+     * @throws  IllegalArgumentException  if it's not a sky match engine
+     */
+    private static MatchEngine checkSkyEngine( MatchEngine engine ) {
+        if ( engine instanceof AbstractSkyMatchEngine ) {
+            return engine;
+        }
+        else {
+            throw new IllegalArgumentException( "Not a sky match engine: "
+                                              + engine );
+        }
+    }
+
+    /**
+     * Returns the HEALPix level to use for partitioning given
+     * the number of rows in the larger input table.
+     *
+     * @param   nrow  row count, or -1 if unknown
+     * @return  HEALPix level
+     */
+    static int getDefaultK( long nrow ) {
+        if ( nrow < 0 ) {
+            return DEFAULT_K;
+        }
+        int k = 0;
+        while ( k < MAX_AUTO_K &&
+                ( 12L << ( 2 * k ) ) * PARTITION_ROWS < nrow ) {
+            k++;
+        }
+        return k;
+    }
+
+    /**
+     * Holds the state of a partitioned match, and supplies its output rows.
+     */
+    private class PartitionJoin {
+
+        private final StarTable[] tables_;
+        private final boolean hasScore_;
+        private final PairMode localMode_;
+        private final int npix_;
+        private final Spill[] spills_;
+        private final PairLinkSet bestLinks_;
+        private final ByteStore pairStore_;
+        private final int[] pairCounts_;
+        private boolean closed_;
+
+        /**
+         * Constructor.  Does the partitioning, and any work required
+         * to identify pairs for BEST mode.
+         *
+         * @param  tables  tables supplying output columns
+         * @param  pairMode  matching mode
+         * @param  hasScore  whether a score column is required
+         */
+        PartitionJoin( StarTable[] tables, PairMode pairMode,
+                       boolean hasScore )
+                throws IOException, InterruptedException {
+            tables_ = tables;
+            hasScore_ = hasScore;
+            long nrow0 = tupleTables_[ 0 ].getRowCount();
+            long nrow1 = tupleTables_[ 1 ].getRowCount();
+
+            /* Work out which table will be written only to the tile in
+             * which its rows fall (S), and which will be replicated
+             * into the margins of neighbouring tiles (R).
+             * All the candidate partners for a given S row are found
+             * in a single partition, so per-row best matches must be
+             * for the S table.  Otherwise, replicate the smaller table. */
+            final int indexS;
+            if ( pairMode == PairMode.BEST1 ) {
+                indexS = 0;
+            }
+            else if ( pairMode == PairMode.BEST2 ) {
+                indexS = 1;
+            }
+            else {
+                indexS = nrow0 >= 0 && nrow1 > nrow0 ? 1 : 0;
+            }
+            localMode_ = pairMode == PairMode.ALL
+                       ? PairMode.ALL
+                       : ( indexS == 0 ? PairMode.BEST1 : PairMode.BEST2 );
+
+            /* Partition the input tables. */
+            int k = partitionK_ >= 0 ? partitionK_
+                                     : getDefaultK( Math.max( nrow0, nrow1 ) );
+            npix_ = Tables.checkedLongToInt( 12L << ( 2 * k ) );
+            indicator_.logMessage( "Partitioning on " + npix_
+                                 + " HEALPix tiles (k=" + k + ")" );
+            CdsHealpixSkyPixellator pixer = new CdsHealpixSkyPixellator();
+            pixer.setHealpixK( k );
+            spills_ = new Spill[ 2 ];
+            boolean ok = false;
+            try {
+                for ( int i = 0; i < 2; i++ ) {
+                    spills_[ i ] = partitionTable( i, tables[ i ],
+                                                   i != indexS, pixer, npix_ );
+                }
+
+                /* For symmetric best matches, gather the per-row best
+                 * candidates from all the partitions, and do the final
+                 * selection on the whole set.  The tile-local row indices
+                 * and scores of the candidates are written to scratch
+                 * storage so that the output rows can be assembled later
+                 * without matching the tiles again. */
+                if ( pairMode == PairMode.BEST ) {
+                    PairLinkSet links = new PairLinkSet();
+                    pairStore_ = storage_.makeByteStore();
+                    pairCounts_ = new int[ npix_ ];
+                    DataOutputStream pairOut =
+                        new DataOutputStream(
+                            new BufferedOutputStream( pairStore_
+                                                     .getOutputStream() ) );
+                    indicator_.startStage( "Matching partitions" );
+                    for ( int ipix = 0; ipix < npix_; ipix++ ) {
+                        TileMatch tmatch = matchTile( ipix );
+                        if ( tmatch != null ) {
+                            for ( RowLink link : tmatch.links_ ) {
+                                RowLink2 glink = tmatch.toGlobal( link );
+                                if ( glink != null ) {
+                                    links.addLink( glink );
+                                    writePair( pairOut, link, glink );
+                                    pairCounts_[ ipix ]++;
+                                }
+                            }
+                        }
+                        indicator_.setLevel( ( ipix + 1 ) / (double) npix_ );
+                    }
+                    indicator_.endStage();
+                    pairOut.close();
+                    links.eliminateMultipleRowEntries( indicator_ );
+                    bestLinks_ = links;
+                }
+                else {
+                    bestLinks_ = null;
+                    pairStore_ = null;
+                    pairCounts_ = null;
+                }
+                ok = true;
+            }
+            finally {
+                if ( ! ok ) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Releases the temporary storage used by this object.
+         * It may not be used following a call to this method.
+         * Calling it more than once has no further effect.
+         */
+        void close() {
+            if ( ! closed_ ) {
+                closed_ = true;
+                for ( Spill spill : spills_ ) {
+                    if ( spill != null ) {
+                        spill.close();
+                    }
+                }
+                if ( pairStore_ != null ) {
+                    pairStore_.close();
+                }
+            }
+        }
+
+        /**
+         * Returns the number of output rows if known.
+         *
+         * @return  row count, or -1
+         */
+        long getRowCount() {
+            return bestLinks_ == null ? -1L : bestLinks_.size();
+        }
+
+        /**
+         * Performs the match for a single tile.
+         *
+         * @param   ipix  tile index
+         * @return   match result, or null if there can be no matches
+         */
+        TileMatch matchTile( int ipix )
+                throws IOException, InterruptedException {
+            if ( spills_[ 0 ].getRowCount( ipix ) == 0 ||
+                 spills_[ 1 ].getRowCount( ipix ) == 0 ) {
+                return null;
+            }
+            StarTable[] tileTables = readTileTables( ipix );
+            StarTable[] tupleTables = new StarTable[ 2 ];
+            for ( int i = 0; i < 2; i++ ) {
+                tupleTables[ i ] =
+                    new ColumnPermutedStarTable( tileTables[ i ],
+                                                 spills_[ i ].getTupleMap() );
+            }
+            RowMatcher matcher = new RowMatcher( engine_, tupleTables );
+            matcher.setRowRunner( runner_ );
+            LinkSet links = matcher.findPairMatches( localMode_ );
+            return new TileMatch( tileTables, links );
+        }
+
+        /**
+         * Reads the partitioned records of both tables for a given tile.
+         *
+         * @param   ipix  tile index
+         * @return   2-element array of tile tables
+         */
+        private StarTable[] readTileTables( int ipix ) throws IOException {
+            StarTable[] tileTables = new StarTable[ 2 ];
+            for ( int i = 0; i < 2; i++ ) {
+                tileTables[ i ] = spills_[ i ].readTile( ipix );
+            }
+            return tileTables;
+        }
+
+        /**
+         * Returns a new sequence over the output rows.
+         * This object is closed when the sequence is closed or reaches
+         * the end of its rows, so this method may only be called once.
+         *
+         * @return  row sequence
+         */
+        RowSequence createRowSequence() throws IOException {
+            final ByteStoreAccess pairIn;
+            try {
+                pairIn = pairStore_ == null
+                       ? null
+                       : NioByteStoreAccess
+                        .createAccess( pairStore_.toByteBuffers() );
+            }
+            catch ( IOException e ) {
+                close();
+                throw e;
+            }
+            return new RowSequence() {
+                int ipix_ = -1;
+                TileMatch tmatch_;
+                Iterator<RowLink> linkIt_;
+                Object[] row_;
+                public boolean next() throws IOException {
+                    while ( true ) {
+                        if ( linkIt_ != null ) {
+                            while ( linkIt_.hasNext() ) {
+                                Object[] row = createRow( tmatch_,
+                                                          linkIt_.next() );
+                                if ( row != null ) {
+                                    row_ = row;
+                                    return true;
+                                }
+                            }
+                            linkIt_ = null;
+                            tmatch_ = null;
+                        }
+                        if ( ++ipix_ >= npix_ ) {
+                            ipix_ = npix_;
+                            row_ = null;
+                            close();
+                            return false;
+                        }
+                        boolean ok = false;
+                        try {
+                            tmatch_ = pairIn == null
+                                    ? matchTileIO( ipix_ )
+                                    : readBestTile( ipix_, pairIn );
+                            ok = true;
+                        }
+                        finally {
+                            if ( ! ok ) {
+                                close();
+                            }
+                        }
+                        if ( tmatch_ != null ) {
+                            linkIt_ = tmatch_.links_.iterator();
+                        }
+                    }
+                }
+                public Object getCell( int icol ) {
+                    return getRow()[ icol ];
+                }
+                public Object[] getRow() {
+                    if ( row_ != null ) {
+                        return row_;
+                    }
+                    else {
+                        throw new IllegalStateException( "No current row" );
+                    }
+                }
+                public void close() {
+                    tmatch_ = null;
+                    linkIt_ = null;
+                    PartitionJoin.this.close();
+                }
+            };
+        }
+
+        /**
+         * Performs the match for a single tile, signalling interruption
+         * as an I/O exception.
+         *
+         * @param   ipix  tile index
+         * @return   match result, or null if there can be no matches
+         */
+        private TileMatch matchTileIO( int ipix ) throws IOException {
+            try {
+                return matchTile( ipix );
+            }
+            catch ( InterruptedException e ) {
+                throw (IOException)
+                      new InterruptedIOException( "Interrupted" )
+                     .initCause( e );
+            }
+        }
+
+        /**
+         * Returns the selected best-match links for a tile,
+         * using the candidate pairs spilled during construction.
+         * The tile's records are only read if it contains any
+         * selected links.
+         *
+         * @param   ipix  tile index
+         * @param   pairIn  reader for spilled pairs, positioned at the
+         *                  start of the records for this tile
+         * @return   match result, or null if there are no selected links
+         */
+        private TileMatch readBestTile( int ipix, ByteStoreAccess pairIn )
+                throws IOException {
+            int npair = pairCounts_[ ipix ];
+            if ( npair == 0 ) {
+                return null;
+            }
+            List<RowLink> links = new ArrayList<RowLink>();
+            for ( int ip = 0; ip < npair; ip++ ) {
+                RowLink2 link = readPair( pairIn );
+                if ( link != null ) {
+                    links.add( link );
+                }
+            }
+            return links.isEmpty()
+                 ? null
+                 : new TileMatch( readTileTables( ipix ), links );
+        }
+
+        /**
+         * Writes a candidate pair to the pair store.
+         *
+         * @param  out  destination stream
+         * @param  link  tile-local link
+         * @param  glink  corresponding global link
+         */
+        private void writePair( DataOutputStream out, RowLink link,
+                                RowLink2 glink )
+                throws IOException {
+            for ( int i = 0; i < 2; i++ ) {
+                out.writeInt( (int) link.getRef( i ).getRowIndex() );
+            }
+            for ( int i = 0; i < 2; i++ ) {
+                out.writeLong( glink.getRef( i ).getRowIndex() );
+            }
+            out.writeDouble( glink.getScore() );
+        }
+
+        /**
+         * Reads a candidate pair from the pair store, and returns it
+         * as a tile-local link if it is one of the selected best links.
+         *
+         * @param  in  reader positioned at the start of a pair record
+         * @return  tile-local link, or null if the pair is not selected
+         */
+        private RowLink2 readPair( ByteStoreAccess in ) throws IOException {
+            int lrow0 = in.readInt();
+            int lrow1 = in.readInt();
+            long grow0 = in.readLong();
+            long grow1 = in.readLong();
+            double score = in.readDouble();
+            RowLink2 glink = new RowLink2( new RowRef( 0, grow0 ),
+                                           new RowRef( 1, grow1 ) );
+            if ( bestLinks_.containsLink( glink ) ) {
+                RowLink2 link = new RowLink2( new RowRef( 0, lrow0 ),
+                                              new RowRef( 1, lrow1 ) );
+                link.setScore( score );
+                return link;
+            }
+            else {
+                return null;
+            }
+        }
+
+        /**
+         * Assembles an output row from a link in a tile match.
+         *
+         * @param  tmatch  tile match result
+         * @param  link   link from tile match, with tile-local row indices
+         * @return   output row, or null if the link is not to be included
+         */
+        private Object[] createRow( TileMatch tmatch, RowLink link )
+                throws IOException {
+            if ( link.size() != 2 ) {
+                return null;
+            }
+            List<Object> cells = new ArrayList<Object>();
+            for ( int i = 0; i < 2; i++ ) {
+                if ( tables_[ i ] != null ) {
+                    long irow = link.getRef( i ).getRowIndex();
+                    Object[] tileRow = tmatch.tileTables_[ i ].getRow( irow );
+                    Spill spill = spills_[ i ];
+                    int icol0 = spill.outCol0_;
+                    for ( int ic = 0; ic < spill.nout_; ic++ ) {
+                        cells.add( tileRow[ icol0 + ic ] );
+                    }
+                }
+            }
+            if ( hasScore_ ) {
+                double score = link instanceof RowLink2
+                             ? ((RowLink2) link).getScore()
+                             : Double.NaN;
+                cells.add( new Double( score ) );
+            }
+            return cells.toArray();
+        }
+    }
+
+    /**
+     * Reads one of the input tables and writes its rows to tile partitions.
+     *
+     * @param  itable  index of tuple table
+     * @param  outTable  table supplying output columns, or null
+     * @param  isReplicated  true if rows are to be written to all tiles
+     *                       within the margin, false for only the
+     *                       tile containing the row
+     * @param  pixer   pixellator configured for the partition level
+     * @param  npix    number of partitions
+     * @return   spilled partition data
+     */
+    private Spill partitionTable( int itable, StarTable outTable,
+                                  boolean isReplicated,
+                                  CdsHealpixSkyPixellator pixer, int npix )
+            throws IOException, InterruptedException {
+        StarTable tupleTable = tupleTables_[ itable ];
+        boolean isSame = outTable == tupleTable;
+        int ntuple = tupleTable.getColumnCount();
+        int nout = outTable == null || isSame ? 0
+                                              : outTable.getColumnCount();
+
+        /* If the tuple and output columns are both taken from the same
+         * base table, read that table only, and pick the tuple and
+         * output values out of its rows.  Otherwise read the tuple
+         * and output tables alongside each other. */
+        StarTable seqTable = tupleTable;
+        int[] tupleCols = getIdentityMap( ntuple );
+        int[] outCols = getIdentityMap( nout );
+        boolean isShared = false;
+        if ( nout > 0 ) {
+            StarTable base = getPermutationBase( tupleTable );
+            if ( base == getPermutationBase( outTable ) ) {
+                seqTable = base;
+                tupleCols = getPermutationMap( tupleTable );
+                outCols = getPermutationMap( outTable );
+                isShared = true;
+            }
+        }
+
+        Spill spill = new Spill( tupleTable, isSame ? null : outTable,
+                                 isSame, storage_.makeByteStore(), npix,
+                                 Math.max( 1, bufferLimit_ / BLOCK_SIZE ) );
+        Object[] rec = new Object[ 1 + ntuple + nout ];
+        double unit = angleUnit_;
+        long nrec = 0;
+        boolean ok = false;
+        try {
+            ProgressRowSequence tseq =
+                new ProgressRowSequence( seqTable, indicator_,
+                                         "Partitioning rows for table "
+                                       + ( itable + 1 ) );
+            RowSequence oseq = nout > 0 && ! isShared
+                             ? outTable.getRowSequence()
+                             : null;
+            try {
+                for ( long irow = 0; tseq.nextProgress(); irow++ ) {
+                    if ( oseq != null && ! oseq.next() ) {
+                        throw new IOException( "Row count mismatch for table "
+                                             + ( itable + 1 ) );
+                    }
+                    Object[] trow = tseq.getRow();
+                    double alpha =
+                        getNumberValue( trow[ tupleCols[ 0 ] ] ) * unit;
+                    double delta =
+                        getNumberValue( trow[ tupleCols[ 1 ] ] ) * unit;
+                    if ( ! Double.isNaN( alpha ) &&
+                         Math.abs( delta ) <= 0.5 * Math.PI ) {
+                        rec[ 0 ] = new Long( irow );
+                        for ( int ic = 0; ic < ntuple; ic++ ) {
+                            rec[ 1 + ic ] = trow[ tupleCols[ ic ] ];
+                        }
+                        if ( nout > 0 ) {
+                            Object[] orow = isShared ? trow : oseq.getRow();
+                            for ( int ic = 0; ic < nout; ic++ ) {
+                                rec[ 1 + ntuple + ic ] = orow[ outCols[ ic ] ];
+                            }
+                        }
+                        if ( isReplicated ) {
+                            for ( Object pix :
+                                  pixer.getPixels( alpha, delta, margin_ ) ) {
+                                spill.writeRecord( rec,
+                                                   ((Long) pix).intValue() );
+                                nrec++;
+                            }
+                        }
+                        else {
+                            spill.writeRecord( rec,
+                                               (int) pixer.getPixel( alpha,
+                                                                     delta ) );
+                            nrec++;
+                        }
+                    }
+                }
+            }
+            finally {
+                tseq.close();
+                if ( oseq != null ) {
+                    oseq.close();
+                }
+            }
+            spill.finish();
+            ok = true;
+        }
+        finally {
+            if ( ! ok ) {
+                spill.close();
+            }
+        }
+        indicator_.logMessage( nrec + " partitioned rows for table "
+                             + ( itable + 1 ) + " in "
+                             + spill.store_.getLength() + " bytes" );
+        return spill;
+    }
+
+    /**
+     * Returns the table whose columns are presented by a given table.
+     * This is the base table for a {@link ColumnPermutedStarTable},
+     * and otherwise the table itself.
+     *
+     * @param  table  table
+     * @return   table supplying column data
+     */
+    private static StarTable getPermutationBase( StarTable table ) {
+        return table instanceof ColumnPermutedStarTable
+             ? ((ColumnPermutedStarTable) table).getBaseTable()
+             : table;
+    }
+
+    /**
+     * Returns the indices of the columns in the table returned by
+     * {@link #getPermutationBase} that supply the columns of a given table.
+     *
+     * @param  table  table
+     * @return   column map
+     */
+    private static int[] getPermutationMap( StarTable table ) {
+        return table instanceof ColumnPermutedStarTable
+             ? ((ColumnPermutedStarTable) table).getColumnMap()
+             : getIdentityMap( table.getColumnCount() );
+    }
+
+    /**
+     * Returns an array whose elements are equal to their indices.
+     *
+     * @param  n  array length
+     * @return  identity map
+     */
+    private static int[] getIdentityMap( int n ) {
+        int[] map = new int[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            map[ i ] = i;
+        }
+        return map;
+    }
+
+    /**
+     * Returns the numeric value of an object, or NaN if it is not numeric.
+     *
+     * @param  value  value
+     * @return  double value
+     */
+    private static double getNumberValue( Object value ) {
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    /**
+     * Result of a match within a single tile.
+     */
+    private static class TileMatch {
+        final StarTable[] tileTables_;
+        final Iterable<RowLink> links_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tileTables  2-element array of tables containing
+         *                     partition records
+         * @param  links   links between rows of the tile tables
+         */
+        TileMatch( StarTable[] tileTables, Iterable<RowLink> links ) {
+            tileTables_ = tileTables;
+            links_ = links;
+        }
+
+        /**
+         * Converts a link from tile-local to global row indices.
+         *
+         * @param  link  link referring to tile table rows
+         * @return   link referring to input table rows,
+         *           or null if it is not a pair link
+         */
+        RowLink2 toGlobal( RowLink link ) throws IOException {
+            if ( link.size() != 2 ) {
+                return null;
+            }
+            RowRef[] refs = new RowRef[ 2 ];
+            for ( int i = 0; i < 2; i++ ) {
+                RowRef ref = link.getRef( i );
+                int itable = ref.getTableIndex();
+                long grow = ((Number) tileTables_[ itable ]
+                                     .getCell( ref.getRowIndex(), 0 ))
+                           .longValue();
+                refs[ i ] = new RowRef( itable, grow );
+            }
+            RowLink2 glink = new RowLink2( refs[ 0 ], refs[ 1 ] );
+            if ( link instanceof RowLink2 ) {
+                glink.setScore( ((RowLink2) link).getScore() );
+            }
+            return glink;
+        }
+    }
+
+    /**
+     * Stores the partitioned rows for one input table.
+     * Each record consists of the input row index, the tuple values,
+     * and any output column values.
+     * Records are buffered per tile and written to a single byte store
+     * in blocks, so that the records for each tile can be read back
+     * from a list of block extents.
+     * Each tile buffer has a fixed size, and if the total size of the
+     * buffers would exceed a fixed limit they are all flushed and
+     * discarded, so that memory use is bounded however the
+     * records are distributed between tiles.
+     */
+    private static class Spill {
+
+        final ByteStore store_;
+        final int outCol0_;
+        final int nout_;
+        private final OutputStream out_;
+        private final Codec[] codecs_;
+        private final ColumnInfo[] colInfos_;
+        private final int[] tupleMap_;
+        private final Tile[] tiles_;
+        private final TileOutputStream tileOut_;
+        private final DataOutputStream recOut_;
+        private final int maxBuffers_;
+        private int nbuffer_;
+        private long nbyte_;
+        private ByteBuffer[] bufs_;
+        private long[] bufStarts_;
+
+        /**
+         * Constructor.
+         *
+         * @param  tupleTable  table supplying tuples
+         * @param  outTable   table supplying additional output columns,
+         *                    or null
+         * @param  tupleOut   true iff the tuple columns are themselves
+         *                    the output columns
+         * @param  store   byte store for serialized records
+         * @param  npix    number of tiles
+         * @param  maxBuffers  maximum number of tile buffers
+         *                     allocated at once
+         */
+        Spill( StarTable tupleTable, StarTable outTable, boolean tupleOut,
+               ByteStore store, int npix, int maxBuffers )
+                throws TableFormatException {
+            store_ = store;
+            out_ = store.getOutputStream();
+            tiles_ = new Tile[ npix ];
+            tileOut_ = new TileOutputStream();
+            recOut_ = new DataOutputStream( tileOut_ );
+            maxBuffers_ = maxBuffers;
+            int ntuple = tupleTable.getColumnCount();
+            int nextra = outTable == null ? 0 : outTable.getColumnCount();
+            List<ColumnInfo> infoList = new ArrayList<ColumnInfo>();
+            infoList.add( new ColumnInfo( "index", Long.class,
+                                          "Input row index" ) );
+            for ( int ic = 0; ic < ntuple; ic++ ) {
+                infoList.add( tupleTable.getColumnInfo( ic ) );
+            }
+            for ( int ic = 0; ic < nextra; ic++ ) {
+                infoList.add( outTable.getColumnInfo( ic ) );
+            }
+            colInfos_ = infoList.toArray( new ColumnInfo[ 0 ] );
+            int ncol = colInfos_.length;
+            codecs_ = new Codec[ ncol ];
+            codecs_[ 0 ] = Codec.LONG;
+            for ( int ic = 1; ic < ncol; ic++ ) {
+                Codec codec = Codec.getCodec( colInfos_[ ic ] );
+                if ( codec == null ) {
+                    throw new TableFormatException( "No codec available for "
+                                                  + colInfos_[ ic ] );
+                }
+                codecs_[ ic ] = codec;
+            }
+            tupleMap_ = new int[ ntuple ];
+            for ( int i = 0; i < ntuple; i++ ) {
+                tupleMap_[ i ] = 1 + i;
+            }
+            outCol0_ = tupleOut ? 1 : 1 + ntuple;
+            nout_ = tupleOut ? ntuple : nextra;
+        }
+
+        /**
+         * Returns the column map which selects the tuple columns
+         * from the tile tables.
+         *
+         * @return  column map
+         */
+        int[] getTupleMap() {
+            return tupleMap_;
+        }
+
+        /**
+         * Serializes a record to a given tile.
+         *
+         * @param  rec  record values
+         * @param  ipix  tile index
+         */
+        void writeRecord( Object[] rec, int ipix ) throws IOException {
+            Tile tile = tiles_[ ipix ];
+            if ( tile == null ) {
+                tile = new Tile();
+                tiles_[ ipix ] = tile;
+            }
+            tileOut_.tile_ = tile;
+            for ( int ic = 0; ic < rec.length; ic++ ) {
+                codecs_[ ic ].encode( rec[ ic ], recOut_ );
+            }
+            tileOut_.tile_ = null;
+            tile.nrec_++;
+        }
+
+        /**
+         * Must be called after all records have been written
+         * and before any tiles are read.
+         */
+        void finish() throws IOException {
+            releaseBuffers();
+            out_.close();
+            bufs_ = store_.toByteBuffers();
+            bufStarts_ = new long[ bufs_.length ];
+            long start = 0;
+            for ( int ib = 0; ib < bufs_.length; ib++ ) {
+                bufStarts_[ ib ] = start;
+                start += bufs_[ ib ].limit();
+            }
+            assert start == nbyte_;
+        }
+
+        /**
+         * Returns the number of records in a given tile.
+         *
+         * @param  ipix  tile index
+         * @return   record count
+         */
+        long getRowCount( int ipix ) {
+            Tile tile = tiles_[ ipix ];
+            return tile == null ? 0 : tile.nrec_;
+        }
+
+        /**
+         * Reads the records for a given tile into memory.
+         * The columns of the returned table are the input row index,
+         * followed by the tuple columns and any output columns.
+         *
+         * @param  ipix  tile index
+         * @return   random-access table containing records
+         */
+        StarTable readTile( int ipix ) throws IOException {
+            RowListStarTable table = new RowListStarTable( colInfos_ );
+            Tile tile = tiles_[ ipix ];
+            int nrec = tile == null ? 0
+                                    : Tables.checkedLongToInt( tile.nrec_ );
+            if ( nrec > 0 ) {
+                List<ByteBuffer> blockList = new ArrayList<ByteBuffer>();
+                int nblock = tile.offsets_.size();
+                for ( int ib = 0; ib < nblock; ib++ ) {
+                    addBlock( tile.offsets_.get( ib ), tile.lengths_.get( ib ),
+                              blockList );
+                }
+                ByteStoreAccess access =
+                    NioByteStoreAccess
+                   .createAccess( blockList.toArray( new ByteBuffer[ 0 ] ) );
+                int ncol = codecs_.length;
+                for ( int irec = 0; irec < nrec; irec++ ) {
+                    Object[] row = new Object[ ncol ];
+                    for ( int ic = 0; ic < ncol; ic++ ) {
+                        row[ ic ] = codecs_[ ic ].decodeObject( access );
+                    }
+                    table.addRow( row );
+                }
+            }
+            return table;
+        }
+
+        /**
+         * Allocates a buffer for a tile.  If the maximum number of
+         * buffers is already in use, all the tiles are flushed and
+         * their buffers discarded first.
+         *
+         * @param  tile  tile with no buffer
+         */
+        private void allocateBuffer( Tile tile ) throws IOException {
+            if ( nbuffer_ >= maxBuffers_ ) {
+                releaseBuffers();
+            }
+            tile.buf_ = new byte[ BLOCK_SIZE ];
+            tile.nbuf_ = 0;
+            nbuffer_++;
+        }
+
+        /**
+         * Writes the buffered content of all tiles to the byte store,
+         * and discards their buffers.
+         */
+        private void releaseBuffers() throws IOException {
+            for ( Tile tile : tiles_ ) {
+                if ( tile != null && tile.buf_ != null ) {
+                    flushTile( tile );
+                    tile.buf_ = null;
+                }
+            }
+            nbuffer_ = 0;
+        }
+
+        /**
+         * Writes the buffered content of a tile to the byte store.
+         * If the block immediately follows the tile's previous block
+         * in the store, the two extents are merged.
+         *
+         * @param  tile  tile
+         */
+        private void flushTile( Tile tile ) throws IOException {
+            int leng = tile.nbuf_;
+            if ( leng > 0 ) {
+                out_.write( tile.buf_, 0, leng );
+                int nb = tile.offsets_.size();
+                if ( nb > 0 &&
+                     tile.offsets_.get( nb - 1 ) + tile.lengths_.get( nb - 1 )
+                     == nbyte_ &&
+                     (long) tile.lengths_.get( nb - 1 ) + leng
+                     <= Integer.MAX_VALUE ) {
+                    tile.lengths_.set( nb - 1,
+                                       tile.lengths_.get( nb - 1 ) + leng );
+                }
+                else {
+                    tile.offsets_.add( nbyte_ );
+                    tile.lengths_.add( leng );
+                }
+                nbyte_ += leng;
+                tile.nbuf_ = 0;
+            }
+        }
+
+        /**
+         * Adds buffers covering a block of the stored bytes to a list.
+         *
+         * @param  offset  offset of block start in store
+         * @param  leng   block length in bytes
+         * @param  list   list to which buffers are appended
+         */
+        private void addBlock( long offset, int leng, List<ByteBuffer> list ) {
+            for ( int ib = 0; ib < bufs_.length && leng > 0; ib++ ) {
+                long start = bufStarts_[ ib ];
+                long end = start + bufs_[ ib ].limit();
+                if ( offset < end ) {
+                    int pos = (int) ( offset - start );
+                    int n = (int) Math.min( leng, end - offset );
+                    ByteBuffer buf = bufs_[ ib ].duplicate();
+                    buf.position( pos );
+                    buf.limit( pos + n );
+                    list.add( buf.slice() );
+                    offset += n;
+                    leng -= n;
+                }
+            }
+            assert leng == 0;
+        }
+
+        /**
+         * Releases the byte store used by this object.
+         * Tiles may not be read following a call to this method.
+         */
+        void close() {
+            bufs_ = null;
+            store_.close();
+        }
+
+        /**
+         * OutputStream that writes to the buffer of the current tile,
+         * flushing it to the byte store when it fills up.
+         * Records may therefore be split between blocks.
+         */
+        private class TileOutputStream extends OutputStream {
+            Tile tile_;
+
+            public void write( int b ) throws IOException {
+                Tile tile = tile_;
+                if ( tile.buf_ == null ) {
+                    allocateBuffer( tile );
+                }
+                else if ( tile.nbuf_ == BLOCK_SIZE ) {
+                    flushTile( tile );
+                }
+                tile.buf_[ tile.nbuf_++ ] = (byte) b;
+            }
+
+            public void write( byte[] b, int off, int len )
+                    throws IOException {
+                Tile tile = tile_;
+                while ( len > 0 ) {
+                    if ( tile.buf_ == null ) {
+                        allocateBuffer( tile );
+                    }
+                    else if ( tile.nbuf_ == BLOCK_SIZE ) {
+                        flushTile( tile );
+                    }
+                    int n = Math.min( len, BLOCK_SIZE - tile.nbuf_ );
+                    System.arraycopy( b, off, tile.buf_, tile.nbuf_, n );
+                    tile.nbuf_ += n;
+                    off += n;
+                    len -= n;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the partition data for a single tile.
+     */
+    private static class Tile {
+        byte[] buf_;
+        int nbuf_;
+        final LongList offsets_ = new LongList( 1 );
+        final IntList lengths_ = new IntList( 1 );
+        long nrec_;
+    }
+}
@@ -0,0 +1,630 @@
+package uk.ac.starlink.table.join;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+/**
+ * LongBinner implementation that stores bins with <code>Long</code>
+ * keys in primitive arrays.
+ * This is suitable for instance for sky pixel indices.
+ * Keys are held in an open-addressing hash table, and each bin's items
+ * are held as a chain of entries in a shared item array,
+ * so that no per-bin or per-item objects are required.
+ * Keys which are not <code>Long</code> instances are passed to
+ * a fallback binner.
+ *
+ * <p>The arrays may be stored either on the heap or in a
+ * memory-mapped temporary file.  In the latter case, the storage
+ * does not count against the JVM heap.
+ * Items may be removed (via the key iterator) but their storage
+ * is not reclaimed.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class PrimitiveLongBinner implements LongBinner {
+
+    private final Allocator alloc_;
+    private final LongBinner fallback_;
+    private final Values values_;
+    private final LongChunks nexts_;
+    private LongChunks keys_;
+    private LongChunks heads_;
+    private IntChunks counts_;
+    private long capacity_;
+    private long nslot_;
+    private long nbin_;
+    private long nitem_;
+
+    /** Maximum number of elements per storage chunk as a power of 2. */
+    private static final int CHUNK_SHIFT = 20;
+    private static final long INITIAL_CAPACITY = 64;
+    private static final double MAX_LOAD = 0.6;
+
+    /** Head value for a hash slot which has never been used. */
+    private static final long NO_SLOT = -2;
+
+    /** Item link value marking the end of a chain. */
+    private static final long NO_ITEM = -1;
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.table.join" );
+
+    /**
+     * Constructor.
+     *
+     * @param  intValues  if true, all items are known to be in the range
+     *                    of an <code>int</code>, which saves storage
+     * @param  alloc    storage allocator
+     * @param  fallback  binner for keys that are not <code>Long</code>s
+     */
+    public PrimitiveLongBinner( boolean intValues, Allocator alloc,
+                                LongBinner fallback ) {
+        alloc_ = alloc;
+        fallback_ = fallback;
+        values_ = intValues ? new IntValues( alloc ) : new LongValues( alloc );
+        nexts_ = new LongChunks( alloc, 0 );
+        initTable( INITIAL_CAPACITY );
+    }
+
+    public void addItem( Object key, long item ) {
+        if ( key instanceof Long ) {
+            addLongItem( ((Long) key).longValue(), item );
+        }
+        else {
+            fallback_.addItem( key, item );
+        }
+    }
+
+    public long[] getLongs( Object key ) {
+        if ( key instanceof Long ) {
+            long islot = findSlot( ((Long) key).longValue() );
+            return islot >= 0 ? getSlotItems( islot ) : null;
+        }
+        else {
+            return fallback_.getLongs( key );
+        }
+    }
+
+    public void addContent( LongBinner other ) {
+        if ( other instanceof PrimitiveLongBinner ) {
+            PrimitiveLongBinner pother = (PrimitiveLongBinner) other;
+            for ( long is = 0; is < pother.capacity_; is++ ) {
+                if ( pother.counts_.get( is ) > 0 ) {
+                    long key = pother.keys_.get( is );
+                    for ( long item : pother.getSlotItems( is ) ) {
+                        addLongItem( key, item );
+                    }
+                    pother.clearSlot( is );
+                }
+            }
+            fallback_.addContent( pother.fallback_ );
+        }
+        else {
+            for ( Iterator<?> it = other.getKeyIterator(); it.hasNext(); ) {
+                Object key = it.next();
+                for ( long item : other.getLongs( key ) ) {
+                    addItem( key, item );
+                }
+                it.remove();
+            }
+        }
+    }
+
+    public Iterator<?> getKeyIterator() {
+        final Iterator<?> fallbackIt = fallback_.getKeyIterator();
+        return new Iterator<Object>() {
+            long islot_ = -1;
+            long nextSlot_ = nextBinSlot( 0 );
+            boolean inFallback_;
+            public boolean hasNext() {
+                return nextSlot_ >= 0 || fallbackIt.hasNext();
+            }
+            public Object next() {
+                if ( nextSlot_ >= 0 ) {
+                    islot_ = nextSlot_;
+                    nextSlot_ = nextBinSlot( islot_ + 1 );
+                    return new Long( keys_.get( islot_ ) );
+                }
+                else {
+                    inFallback_ = true;
+                    islot_ = -1;
+                    return fallbackIt.next();
+                }
+            }
+            public void remove() {
+                if ( inFallback_ ) {
+                    fallbackIt.remove();
+                }
+                else if ( islot_ >= 0 ) {
+                    clearSlot( islot_ );
+                    islot_ = -1;
+                }
+                else {
+                    throw new IllegalStateException();
+                }
+            }
+        };
+    }
+
+    public long getBinCount() {
+        return nbin_ + fallback_.getBinCount();
+    }
+
+    /**
+     * Adds an item to the bin with a given primitive key.
+     *
+     * @param  key  bin key
+     * @param  item  value to add
+     */
+    private void addLongItem( long key, long item ) {
+        long islot = locateSlot( key );
+        long head = heads_.get( islot );
+        if ( head == NO_SLOT ) {
+            if ( nslot_ + 1 > capacity_ * MAX_LOAD ) {
+                rehash( capacity_ * 2 );
+                islot = locateSlot( key );
+            }
+            keys_.set( islot, key );
+            nslot_++;
+            head = NO_ITEM;
+        }
+        if ( counts_.get( islot ) == 0 ) {
+            nbin_++;
+        }
+        long iitem = nitem_++;
+        values_.set( iitem, item );
+        nexts_.set( iitem, head );
+        heads_.set( islot, iitem );
+        counts_.set( islot, counts_.get( islot ) + 1 );
+    }
+
+    /**
+     * Returns the items in a given occupied slot in order of insertion.
+     *
+     * @param  islot  slot index
+     * @return   bin contents, or null if empty
+     */
+    private long[] getSlotItems( long islot ) {
+        int n = counts_.get( islot );
+        if ( n == 0 ) {
+            return null;
+        }
+        long[] items = new long[ n ];
+        long iitem = heads_.get( islot );
+        for ( int i = n - 1; i >= 0; i-- ) {
+            items[ i ] = values_.get( iitem );
+            iitem = nexts_.get( iitem );
+        }
+        assert iitem == NO_ITEM;
+        return items;
+    }
+
+    /**
+     * Empties the bin in a given slot.  The slot retains its key,
+     * so that hash chains are not broken.
+     *
+     * @param  islot  slot index
+     */
+    private void clearSlot( long islot ) {
+        if ( counts_.get( islot ) > 0 ) {
+            nbin_--;
+            counts_.set( islot, 0 );
+            heads_.set( islot, NO_ITEM );
+        }
+    }
+
+    /**
+     * Returns the index of the first slot at or after a given one
+     * which contains a non-empty bin.
+     *
+     * @param  islot  start slot index
+     * @return   index of next occupied slot, or -1 if there are none
+     */
+    private long nextBinSlot( long islot ) {
+        for ( long is = islot; is < capacity_; is++ ) {
+            if ( counts_.get( is ) > 0 ) {
+                return is;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot index for an existing key.
+     *
+     * @param  key  key
+     * @return  slot index, or -1 if the key is absent
+     */
+    private long findSlot( long key ) {
+        long islot = locateSlot( key );
+        return heads_.get( islot ) == NO_SLOT ? -1 : islot;
+    }
+
+    /**
+     * Returns the slot index at which a given key is or would be stored.
+     *
+     * @param  key  key
+     * @return  slot index
+     */
+    private long locateSlot( long key ) {
+        long mask = capacity_ - 1;
+        for ( long islot = hash( key ) & mask; true;
+              islot = ( islot + 1 ) & mask ) {
+            if ( heads_.get( islot ) == NO_SLOT ||
+                 keys_.get( islot ) == key ) {
+                return islot;
+            }
+        }
+    }
+
+    /**
+     * Sets up empty hash table arrays with a given capacity.
+     *
+     * @param  capacity   number of slots, must be a power of 2
+     */
+    private void initTable( long capacity ) {
+        capacity_ = capacity;
+        keys_ = new LongChunks( alloc_, capacity );
+        heads_ = new LongChunks( alloc_, capacity );
+        counts_ = new IntChunks( alloc_, capacity );
+        for ( long is = 0; is < capacity; is++ ) {
+            heads_.set( is, NO_SLOT );
+        }
+    }
+
+    /**
+     * Reallocates the hash table arrays with a new capacity.
+     * The item arrays are unaffected.
+     *
+     * @param  capacity   new number of slots, must be a power of 2
+     */
+    private void rehash( long capacity ) {
+        long oldCapacity = capacity_;
+        LongChunks oldKeys = keys_;
+        LongChunks oldHeads = heads_;
+        IntChunks oldCounts = counts_;
+        initTable( capacity );
+        nslot_ = 0;
+        for ( long is = 0; is < oldCapacity; is++ ) {
+            int count = oldCounts.get( is );
+            if ( count > 0 ) {
+                long islot = locateSlot( oldKeys.get( is ) );
+                keys_.set( islot, oldKeys.get( is ) );
+                heads_.set( islot, oldHeads.get( is ) );
+                counts_.set( islot, count );
+                nslot_++;
+            }
+        }
+    }
+
+    /**
+     * Scrambles a key to give a well-distributed hash value.
+     * Keys such as pixel indices are typically clustered,
+     * so this matters for an open-addressing table.
+     *
+     * @param  key  key
+     * @return  hash value
+     */
+    private static long hash( long key ) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Supplies buffers for storage.
+     */
+    static abstract class Allocator {
+
+        /** Allocator that uses heap memory. */
+        public static final Allocator HEAP = new Allocator() {
+            LongBuffer allocateLongs( int n ) {
+                return LongBuffer.allocate( n );
+            }
+            IntBuffer allocateInts( int n ) {
+                return IntBuffer.allocate( n );
+            }
+        };
+
+        /**
+         * Allocates a new zero-filled long buffer.
+         *
+         * @param  n  number of elements
+         * @return  buffer
+         */
+        abstract LongBuffer allocateLongs( int n );
+
+        /**
+         * Allocates a new zero-filled int buffer.
+         *
+         * @param  n  number of elements
+         * @return  buffer
+         */
+        abstract IntBuffer allocateInts( int n );
+
+        /**
+         * Returns a new allocator that uses memory-mapped temporary files.
+         * Each allocated buffer is mapped from its own file,
+         * which is closed as soon as the mapping has been made,
+         * and deleted on exit, or earlier if the platform permits it.
+         * Failure to write to the file is reported as an
+         * {@link java.io.UncheckedIOException} at allocation time.
+         *
+         * @return   new allocator
+         */
+        public static Allocator createMappedAllocator() {
+            return new MappedAllocator();
+        }
+    }
+
+    /**
+     * Allocator implementation that maps scratch files.
+     */
+    private static class MappedAllocator extends Allocator {
+
+        LongBuffer allocateLongs( int n ) {
+            return map( n * 8L ).asLongBuffer();
+        }
+
+        IntBuffer allocateInts( int n ) {
+            return map( n * 4L ).asIntBuffer();
+        }
+
+        /**
+         * Maps a new temporary file.  The mapping remains valid after
+         * the file's channel has been closed, so no file descriptor
+         * is retained.
+         *
+         * @param  nbyte  region size
+         * @return   mapped buffer
+         */
+        private MappedByteBuffer map( long nbyte ) {
+            try {
+                File file =
+                    File.createTempFile( "PrimitiveLongBinner", ".bin" );
+                file.deleteOnExit();
+                logger_.config( "Mapping binner storage from temporary file "
+                              + file );
+                RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+                MappedByteBuffer buf;
+                try {
+                    buf = raf.getChannel()
+                             .map( FileChannel.MapMode.READ_WRITE, 0, nbyte );
+                }
+                finally {
+                    raf.close();
+                    file.delete();
+                }
+                buf.order( ByteOrder.nativeOrder() );
+                return buf;
+            }
+            catch ( IOException e ) {
+                throw new UncheckedIOException( e );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits used to index within a chunk
+     * for an array of a given size.
+     *
+     * @param  size  array size
+     * @return  chunk size as a power of 2
+     */
+    private static int chunkShift( long size ) {
+        int shift = 4;
+        while ( shift < CHUNK_SHIFT && ( 1L << shift ) < size ) {
+            shift++;
+        }
+        return shift;
+    }
+
+    /**
+     * Growable chunked array of long values.
+     * Small arrays occupy a single chunk, which is reallocated as it grows;
+     * beyond the maximum chunk size, further chunks are added.
+     * Chunks smaller than the maximum size are always stored on the heap.
+     */
+    private static class LongChunks {
+        private final Allocator alloc_;
+        private LongBuffer[] chunks_;
+        private int shift_;
+        private long mask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  alloc  allocator for full-sized chunks
+         * @param  size   initial size
+         */
+        LongChunks( Allocator alloc, long size ) {
+            alloc_ = alloc;
+            chunks_ = new LongBuffer[ 0 ];
+            setShift( chunkShift( size ) );
+            if ( size > 0 ) {
+                ensureSize( size );
+            }
+        }
+
+        long get( long index ) {
+            return chunks_[ (int) ( index >>> shift_ ) ]
+                  .get( (int) ( index & mask_ ) );
+        }
+
+        void set( long index, long value ) {
+            int ic = (int) ( index >>> shift_ );
+            if ( ic >= chunks_.length ) {
+                ensureSize( index + 1 );
+                ic = (int) ( index >>> shift_ );
+            }
+            chunks_[ ic ].put( (int) ( index & mask_ ), value );
+        }
+
+        private void ensureSize( long size ) {
+            if ( shift_ < CHUNK_SHIFT && size > ( 1L << shift_ ) ) {
+                LongBuffer buf = allocate( chunkShift( size ) );
+                if ( chunks_.length > 0 ) {
+                    LongBuffer src = chunks_[ 0 ].duplicate();
+                    src.clear();
+                    buf.put( src );
+                }
+                chunks_ = new LongBuffer[] { buf };
+            }
+            int nc = (int) ( ( size + mask_ ) >>> shift_ );
+            if ( nc > chunks_.length ) {
+                LongBuffer[] chunks = new LongBuffer[ nc ];
+                System.arraycopy( chunks_, 0, chunks, 0, chunks_.length );
+                for ( int ic = chunks_.length; ic < nc; ic++ ) {
+                    chunks[ ic ] = allocate( shift_ );
+                }
+                chunks_ = chunks;
+            }
+        }
+
+        private LongBuffer allocate( int shift ) {
+            setShift( shift );
+            int n = 1 << shift;
+            return shift < CHUNK_SHIFT ? Allocator.HEAP.allocateLongs( n )
+                                       : alloc_.allocateLongs( n );
+        }
+
+        private void setShift( int shift ) {
+            shift_ = shift;
+            mask_ = ( 1L << shift ) - 1;
+        }
+    }
+
+    /**
+     * Growable chunked array of int values.
+     * Small arrays occupy a single chunk, which is reallocated as it grows;
+     * beyond the maximum chunk size, further chunks are added.
+     * Chunks smaller than the maximum size are always stored on the heap.
+     */
+    private static class IntChunks {
+        private final Allocator alloc_;
+        private IntBuffer[] chunks_;
+        private int shift_;
+        private long mask_;
+
+        /**
+         * Constructor.
+         *
+         * @param  alloc  allocator for full-sized chunks
+         * @param  size   initial size
+         */
+        IntChunks( Allocator alloc, long size ) {
+            alloc_ = alloc;
+            chunks_ = new IntBuffer[ 0 ];
+            setShift( chunkShift( size ) );
+            if ( size > 0 ) {
+                ensureSize( size );
+            }
+        }
+
+        int get( long index ) {
+            return chunks_[ (int) ( index >>> shift_ ) ]
+                  .get( (int) ( index & mask_ ) );
+        }
+
+        void set( long index, int value ) {
+            int ic = (int) ( index >>> shift_ );
+            if ( ic >= chunks_.length ) {
+                ensureSize( index + 1 );
+                ic = (int) ( index >>> shift_ );
+            }
+            chunks_[ ic ].put( (int) ( index & mask_ ), value );
+        }
+
+        private void ensureSize( long size ) {
+            if ( shift_ < CHUNK_SHIFT && size > ( 1L << shift_ ) ) {
+                IntBuffer buf = allocate( chunkShift( size ) );
+                if ( chunks_.length > 0 ) {
+                    IntBuffer src = chunks_[ 0 ].duplicate();
+                    src.clear();
+                    buf.put( src );
+                }
+                chunks_ = new IntBuffer[] { buf };
+            }
+            int nc = (int) ( ( size + mask_ ) >>> shift_ );
+            if ( nc > chunks_.length ) {
+                IntBuffer[] chunks = new IntBuffer[ nc ];
+                System.arraycopy( chunks_, 0, chunks, 0, chunks_.length );
+                for ( int ic = chunks_.length; ic < nc; ic++ ) {
+                    chunks[ ic ] = allocate( shift_ );
+                }
+                chunks_ = chunks;
+            }
+        }
+
+        private IntBuffer allocate( int shift ) {
+            setShift( shift );
+            int n = 1 << shift;
+            return shift < CHUNK_SHIFT ? Allocator.HEAP.allocateInts( n )
+                                       : alloc_.allocateInts( n );
+        }
+
+        private void setShift( int shift ) {
+            shift_ = shift;
+            mask_ = ( 1L << shift ) - 1;
+        }
+    }
+
+    /**
+     * Storage for item values.
+     */
+    private interface Values {
+        long get( long index );
+        void set( long index, long value );
+    }
+
+    /**
+     * Values implementation for values in the int range.
+     */
+    private static class IntValues implements Values {
+        private final IntChunks chunks_;
+        IntValues( Allocator alloc ) {
+            chunks_ = new IntChunks( alloc, 0 );
+        }
+        public long get( long index ) {
+            return chunks_.get( index );
+        }
+        public void set( long index, long value ) {
+            int ival = (int) value;
+            if ( ival != value ) {
+                throw new IllegalArgumentException( "Out of int range: "
+                                                  + value );
+            }
+            chunks_.set( index, ival );
+        }
+    }
+
+    /**
+     * Values implementation for arbitrary long values.
+     */
+    private static class LongValues implements Values {
+        private final LongChunks chunks_;
+        LongValues( Allocator alloc ) {
+            chunks_ = new LongChunks( alloc, 0 );
+        }
+        public long get( long index ) {
+            return chunks_.get( index );
+        }
+        public void set( long index, long value ) {
+            chunks_.set( index, value );
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.function.LongSupplier;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.WrapperRowSequence;
+
+/**
+ * RowSplittable which logs progress to a {@link ProgressIndicator}.
+ * Progress from all the instances split from an original one is
+ * accumulated together, and the indicator is updated from whichever
+ * thread happens to be reading rows at the time; calls to the indicator
+ * are synchronized so that it does not need to be thread-safe itself.
+ *
+ * <p>The caller is responsible for calling the indicator's
+ * <code>startStage</code> and <code>endStage</code> methods
+ * before and after use.
+ * If the indicator requests interruption, an
+ * {@link java.io.InterruptedIOException} is thrown from <code>next</code>.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class ProgressRowSplittable extends WrapperRowSequence
+                            implements RowSplittable {
+
+    private final RowSplittable base_;
+    private final Progress progress_;
+    private long count_;
+
+    /** Number of rows read between indicator updates. */
+    private static final int STEP = 10000;
+
+    /**
+     * Constructor.
+     *
+     * @param  base  base splittable
+     * @param  indicator  indicator to be informed about progress
+     * @param  nrow   total number of rows expected, or -1 if unknown
+     */
+    public ProgressRowSplittable( RowSplittable base,
+                                  ProgressIndicator indicator, long nrow ) {
+        this( base, new Progress( indicator, nrow ) );
+    }
+
+    /**
+     * Constructor used for split instances.
+     *
+     * @param  base  base splittable
+     * @param  progress  progress tracker shared with other instances
+     */
+    private ProgressRowSplittable( RowSplittable base, Progress progress ) {
+        super( base );
+        base_ = base;
+        progress_ = progress;
+    }
+
+    public ProgressRowSplittable split() {
+        RowSplittable split = base_.split();
+        return split == null ? null
+                             : new ProgressRowSplittable( split, progress_ );
+    }
+
+    public long splittableSize() {
+        return base_.splittableSize();
+    }
+
+    public LongSupplier rowIndex() {
+        return base_.rowIndex();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        if ( ++count_ >= STEP ) {
+            progress_.addCount( count_ );
+            count_ = 0;
+        }
+        return base_.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        progress_.addCount( count_ );
+        count_ = 0;
+        base_.close();
+    }
+
+    /**
+     * Accumulates the row count for a family of split instances.
+     */
+    private static class Progress {
+        private final ProgressIndicator indicator_;
+        private final double nrow_;
+        private long count_;
+
+        /**
+         * Constructor.
+         *
+         * @param  indicator  indicator to be informed about progress
+         * @param  nrow   total number of rows expected, or -1 if unknown
+         */
+        Progress( ProgressIndicator indicator, long nrow ) {
+            indicator_ = indicator;
+            nrow_ = nrow;
+        }
+
+        /**
+         * Records that a given number of additional rows has been read.
+         *
+         * @param  n  number of rows
+         */
+        synchronized void addCount( long n ) throws IOException {
+            count_ += n;
+            if ( nrow_ > 0 ) {
+                try {
+                    indicator_.setLevel( Math.min( count_ / nrow_, 1.0 ) );
+                }
+                catch ( InterruptedException e ) {
+                    throw (IOException)
+                          new InterruptedIOException( "Interrupted" )
+                         .initCause( e );
+                }
+            }
+        }
+    }
+}
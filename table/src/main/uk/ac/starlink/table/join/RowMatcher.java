@@ -1,6 +1,7 @@
 package uk.ac.starlink.table.join;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
@@ -13,8 +14,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongSupplier;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.SequentialRowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
@@ -41,6 +47,7 @@ public class RowMatcher {
     private final StarTable[] tables;
     private final int nTable;
     private ProgressIndicator indicator = new NullProgressIndicator();
+    private RowRunner runner = RowRunner.SEQUENTIAL;
     private long startTime;
 
     /**
@@ -74,6 +81,31 @@ public class RowMatcher {
         return indicator;
     }
 
+    /**
+     * Sets the row runner which controls how rows are processed.
+     * Where possible, row data will be binned and scored in parallel
+     * according to the runner's policy.  Results do not depend on
+     * this setting.
+     * The default is {@link RowRunner#SEQUENTIAL};
+     * a parallel runner should only be set if this matcher's
+     * match engine is safe for concurrent use.
+     *
+     * @param  runner  new runner; {@link RowRunner#SEQUENTIAL} forces
+     *                 single-threaded processing
+     */
+    public void setRowRunner( RowRunner runner ) {
+        this.runner = runner;
+    }
+
+    /**
+     * Returns the row runner which controls how rows are processed.
+     *
+     * @return  row runner
+     */
+    public RowRunner getRowRunner() {
+        return runner;
+    }
+
     /**
      * Constructs a new empty LinkSet for use by this matcher.
      * The current implementation returns one based on a SortedSet,
@@ -86,6 +118,18 @@ public class RowMatcher {
         return new HashSetLinkSet();
     }
 
+    /**
+     * Constructs a new empty LinkSet suitable for storing the links
+     * resulting from a pair match between tables 0 and 1.
+     * This is more compact than the result of {@link #createLinkSet},
+     * but can only store links with one or two entries.
+     *
+     * @return  new LinkSet
+     */
+    LinkSet createPairLinkSet() {
+        return new PairLinkSet();
+    }
+
     /**
      * Returns a set of RowLink objects corresponding to a pairwise match
      * between this matcher's two tables performed with its match engine.
@@ -162,7 +206,7 @@ public class RowMatcher {
 
             /* No overlap means no matches. */
             if ( range == null ) {
-                return createLinkSet();
+                return createPairLinkSet();
             }
             else {
                 long inRangeCount1 = intersect.inRangeCounts_[ 0 ];
@@ -200,36 +244,17 @@ public class RowMatcher {
             throws IOException, InterruptedException {
 
         /* Bin the row indices for the random table. */
-        ProgressRowSequence rseq =
-            new ProgressRowSequence( tables[ indexR ], indicator,
-                                     "Binning rows for table "
-                                     + ( indexR + 1 ) );
-        LongBinner binner =
-            Binners.createLongBinner( tables[ indexR ].getRowCount() );
-        long nrow = 0;
-        long nref = 0;
-        long nexclude = 0;
-        try {
-            for ( long lrow = 0; rseq.nextProgress(); lrow++ ) {
-                Object[] row = rseq.getRow();
-                if ( range.isInside( row ) ) {
-                    Object[] keys = engine.getBins( row );
-                    int nkey = keys.length;
-                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                        binner.addItem( keys[ ikey ], lrow );
-                    }
-                    nref += nkey;
-                }
-                else {
-                    nexclude++;
-                }
-                nrow++;
-            }
-            assert nrow == tables[ indexR ].getRowCount();
-        }
-        finally {
-            rseq.close();
-        }
+        StarTable tableR = tables[ indexR ];
+        BinCollector binCollector =
+            new BinCollector( range, tableR.getRowCount() );
+        BinAccumulator binAcc =
+            collectRows( binCollector, tableR,
+                         "Binning rows for table " + ( indexR + 1 ) );
+        LongBinner binner = binAcc.binner_;
+        long nrow = binAcc.nrow_;
+        long nref = binAcc.nref_;
+        long nexclude = binAcc.nexclude_;
+        assert nrow == tableR.getRowCount();
         if ( nexclude > 0 ) {
             indicator.logMessage( nexclude + "/" + nrow + " rows excluded "
                                 + "(out of match region)" );
@@ -241,69 +266,21 @@ public class RowMatcher {
                               ( (float) nref / (float) nbin ) + ")" );
 
         /* Scan the rows for the sequential table. */
-        LinkSet linkSet = createLinkSet();
-        ProgressRowSequence sseq =
-            new ProgressRowSequence( tables[ indexS ], indicator,
-                                     "Scanning rows for table "
-                                   + ( indexS + 1 ) );
-        try {
-            for ( long isrow = 0; sseq.nextProgress(); isrow++ ) {
-                Object[] srowData = sseq.getRow();
-                if ( range.isInside( srowData ) ) {
-
-                    /* Identify rows from table R which may match table S. */
-                    Object[] keys = engine.getBins( srowData );
-                    int nkey = keys.length;
-                    Set<Long> rrowSet = new HashSet<Long>();
-                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
-                        long[] rrows = binner.getLongs( keys[ ikey ] );
-                        if ( rrows != null ) {
-                            for ( int ir = 0; ir < rrows.length; ir++ ) {
-                                rrowSet.add( new Long( rrows[ ir ] ) );
-                            }
-                        }
-                    }
-                    long[] rrows = new long[ rrowSet.size() ];
-                    int ir = 0;
-                    for ( Long rr : rrowSet ) {
-                        rrows[ ir++ ] = rr.longValue();
-                    }
-                    Arrays.sort( rrows );
-
-                    /* Score and accumulate matched links. */
-                    List<RowLink2> linkList = new ArrayList<RowLink2>( 1 );
-                    double bestScore = Double.MAX_VALUE;
-                    for ( ir = 0; ir < rrows.length; ir++ ) {
-                        long irrow = rrows[ ir ];
-                        Object[] rrowData = tables[ indexR ].getRow( irrow );
-                        double score = engine.matchScore( srowData, rrowData );
-                        if ( score >= 0 &&
-                             ( ! bestOnly || score < bestScore ) ) {
-                            RowRef rref = new RowRef( indexR, irrow );
-                            RowRef sref = new RowRef( indexS, isrow );
-                            RowLink2 pairLink = new RowLink2( rref, sref );
-                            pairLink.setScore( score );
-                            if ( bestOnly ) {
-                                bestScore = score;
-                                linkList.clear();
-                            }
-                            linkList.add( pairLink );
-                            assert ( ! bestOnly ) || ( linkList.size() == 1 );
-                        }
-                    }
-
-                    /* Add matched links to output set. */
-                    for ( RowLink2 pairLink : linkList ) {
-                        assert ! linkSet.containsLink( pairLink );
-                        linkSet.addLink( pairLink );
-                    }
-                }
-            }
-        }
-        finally {
-            sseq.close();
-        }
-        return linkSet;
+        ScanCollector scanCollector =
+            new ScanCollector( binner, range, indexR, indexS, bestOnly );
+        LinkSet links =
+            collectRows( scanCollector, tables[ indexS ],
+                         "Scanning rows for table " + ( indexS + 1 ) );
+
+        /* No pair may be found more than once, since each row of table S
+         * is scanned once and its candidate rows from table R are
+         * distinct.  The sort would silently merge duplicates, so check
+         * that it leaves the link count unchanged; this is cheaper than
+         * testing for each link as it is added. */
+        int nentry = ((PairLinkSet) links).getEntryCount();
+        links.sort();
+        assert links.size() == nentry;
+        return links;
     }
 
     /**
@@ -1053,6 +1030,12 @@ public class RowMatcher {
     LinkSet eliminateMultipleRowEntries( LinkSet pairs ) 
             throws InterruptedException {
 
+        /* A PairLinkSet can do the work in place. */
+        if ( pairs instanceof PairLinkSet ) {
+            ((PairLinkSet) pairs).eliminateMultipleRowEntries( indicator );
+            return pairs;
+        }
+
         /* Sort the input pairs in ascending score order.  In this way,
          * better links will be favoured (inserted into the output set)
          * over worse ones. */
@@ -1595,6 +1578,45 @@ public class RowMatcher {
         return Arrays.asList( links );
     }
 
+    /**
+     * Collects data from the rows of a table using this matcher's
+     * row runner, and logs progress to the current indicator.
+     * If the table's RowSplittable cannot report row indices,
+     * the rows are read sequentially.
+     *
+     * @param  collector  collector
+     * @param  table   table whose rows are to be collected
+     * @param  stage   description of this processing stage
+     * @return   accumulated result
+     */
+    private <A> A collectRows( RowCollector<A> collector, StarTable table,
+                               String stage )
+            throws IOException, InterruptedException {
+        RowSplittable rsplit = table.getRowSplittable();
+        if ( rsplit.rowIndex() == null ) {
+            rsplit.close();
+            rsplit = new SequentialRowSplittable( table );
+        }
+        indicator.startStage( stage );
+        try {
+            return runner
+                  .collect( collector,
+                            new ProgressRowSplittable( rsplit, indicator,
+                                                       table.getRowCount() ) );
+        }
+        catch ( InterruptedIOException e ) {
+            if ( e.getCause() instanceof InterruptedException ) {
+                throw (InterruptedException) e.getCause();
+            }
+            else {
+                throw e;
+            }
+        }
+        finally {
+            indicator.endStage();
+        }
+    }
+
     /**
      * Signals the start of a user-visible matching process.
      */
@@ -1675,4 +1697,199 @@ public class RowMatcher {
             inRangeCounts_ = inRangeCounts;
         }
     }
+
+    /**
+     * Accumulator for the row binning stage of a pair match.
+     */
+    private static class BinAccumulator {
+        final LongBinner binner_;
+        long nrow_;
+        long nref_;
+        long nexclude_;
+
+        /**
+         * Constructor.
+         *
+         * @param  binner  binner into which row indices are accumulated
+         */
+        BinAccumulator( LongBinner binner ) {
+            binner_ = binner;
+        }
+    }
+
+    /**
+     * Collector that bins the row indices of a table
+     * for the first stage of a pair match.
+     */
+    private class BinCollector extends RowCollector<BinAccumulator> {
+        private final NdRange range_;
+        private final long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  range  range outside which rows can be ignored
+         * @param  nrow   row count of table being binned, or -1 if unknown
+         */
+        BinCollector( NdRange range, long nrow ) {
+            range_ = range;
+            nrow_ = nrow;
+        }
+
+        public BinAccumulator createAccumulator() {
+            return new BinAccumulator( Binners.createLongBinner( nrow_ ) );
+        }
+
+        public BinAccumulator combine( BinAccumulator acc1,
+                                       BinAccumulator acc2 ) {
+            BinAccumulator big;
+            BinAccumulator small;
+            if ( acc1.binner_.getBinCount() >= acc2.binner_.getBinCount() ) {
+                big = acc1;
+                small = acc2;
+            }
+            else {
+                big = acc2;
+                small = acc1;
+            }
+            big.binner_.addContent( small.binner_ );
+            big.nrow_ += small.nrow_;
+            big.nref_ += small.nref_;
+            big.nexclude_ += small.nexclude_;
+            return big;
+        }
+
+        public void accumulateRows( RowSplittable rseq, BinAccumulator acc )
+                throws IOException {
+            LongSupplier rowIndex = rseq.rowIndex();
+            LongBinner binner = acc.binner_;
+            while ( rseq.next() ) {
+                Object[] row = rseq.getRow();
+                if ( range_.isInside( row ) ) {
+                    long lrow = rowIndex.getAsLong();
+                    Object[] keys = engine.getBins( row );
+                    int nkey = keys.length;
+                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
+                        binner.addItem( keys[ ikey ], lrow );
+                    }
+                    acc.nref_ += nkey;
+                }
+                else {
+                    acc.nexclude_++;
+                }
+                acc.nrow_++;
+            }
+        }
+    }
+
+    /**
+     * Collector that scans the rows of one table, scoring them against
+     * previously binned rows of another, for the second stage of a
+     * pair match.  Each accumulator is a PairLinkSet of RowLink2 objects.
+     */
+    private class ScanCollector extends RowCollector<LinkSet> {
+        private final LongBinner binner_;
+        private final NdRange range_;
+        private final int indexR_;
+        private final int indexS_;
+        private final boolean bestOnly_;
+
+        /**
+         * Constructor.
+         *
+         * @param  binner   binner containing row indices of table R
+         * @param  range   range outside which pairs can be ignored
+         * @param  indexR  index of table which will be accessed randomly
+         * @param  indexS  index of table which will be scanned
+         * @param  bestOnly  if true, only the best match in table R for
+         *                   each row in table S will be included
+         */
+        ScanCollector( LongBinner binner, NdRange range, int indexR,
+                       int indexS, boolean bestOnly ) {
+            binner_ = binner;
+            range_ = range;
+            indexR_ = indexR;
+            indexS_ = indexS;
+            bestOnly_ = bestOnly;
+        }
+
+        public LinkSet createAccumulator() {
+            return createPairLinkSet();
+        }
+
+        public LinkSet combine( LinkSet links1, LinkSet links2 ) {
+            PairLinkSet pairs1 = (PairLinkSet) links1;
+            PairLinkSet pairs2 = (PairLinkSet) links2;
+
+            /* Compare unsorted entry counts; size() would sort both sets
+             * at every merge level.  The merged result is sorted once,
+             * when all the accumulators have been combined. */
+            if ( pairs1.getEntryCount() >= pairs2.getEntryCount() ) {
+                pairs1.addAll( pairs2 );
+                return pairs1;
+            }
+            else {
+                pairs2.addAll( pairs1 );
+                return pairs2;
+            }
+        }
+
+        public void accumulateRows( RowSplittable sseq, LinkSet linkSet )
+                throws IOException {
+            StarTable tableR = tables[ indexR_ ];
+            LongSupplier rowIndex = sseq.rowIndex();
+            while ( sseq.next() ) {
+                Object[] srowData = sseq.getRow();
+                if ( range_.isInside( srowData ) ) {
+                    long isrow = rowIndex.getAsLong();
+
+                    /* Identify rows from table R which may match table S. */
+                    Object[] keys = engine.getBins( srowData );
+                    int nkey = keys.length;
+                    Set<Long> rrowSet = new HashSet<Long>();
+                    for ( int ikey = 0; ikey < nkey; ikey++ ) {
+                        long[] rrows = binner_.getLongs( keys[ ikey ] );
+                        if ( rrows != null ) {
+                            for ( int ir = 0; ir < rrows.length; ir++ ) {
+                                rrowSet.add( new Long( rrows[ ir ] ) );
+                            }
+                        }
+                    }
+                    long[] rrows = new long[ rrowSet.size() ];
+                    int ir = 0;
+                    for ( Long rr : rrowSet ) {
+                        rrows[ ir++ ] = rr.longValue();
+                    }
+                    Arrays.sort( rrows );
+
+                    /* Score and accumulate matched links. */
+                    List<RowLink2> linkList = new ArrayList<RowLink2>( 1 );
+                    double bestScore = Double.MAX_VALUE;
+                    for ( ir = 0; ir < rrows.length; ir++ ) {
+                        long irrow = rrows[ ir ];
+                        Object[] rrowData = tableR.getRow( irrow );
+                        double score = engine.matchScore( srowData, rrowData );
+                        if ( score >= 0 &&
+                             ( ! bestOnly_ || score < bestScore ) ) {
+                            RowRef rref = new RowRef( indexR_, irrow );
+                            RowRef sref = new RowRef( indexS_, isrow );
+                            RowLink2 pairLink = new RowLink2( rref, sref );
+                            pairLink.setScore( score );
+                            if ( bestOnly_ ) {
+                                bestScore = score;
+                                linkList.clear();
+                            }
+                            linkList.add( pairLink );
+                            assert ( ! bestOnly_ ) || ( linkList.size() == 1 );
+                        }
+                    }
+
+                    /* Add matched links to output set. */
+                    for ( RowLink2 pairLink : linkList ) {
+                        linkSet.addLink( pairLink );
+                    }
+                }
+            }
+        }
+    }
 }
@@ -46,6 +46,10 @@ abstract class ByteStoreColumnReader implements ColumnReader {
         return codec_.decodeObject( access_ );
     }
 
+    public boolean isNull( long ix ) throws IOException {
+        return getObjectValue( ix ) == null;
+    }
+
     public double getDoubleValue( long ix ) throws IOException {
         seek( ix );
         return codec_.decodeDouble( access_ );
@@ -47,6 +47,16 @@ public interface ColumnReader {
      */
     Object getObjectValue( long ix ) throws IOException;
 
+    /**
+     * Indicates whether the value at a given index is null.
+     * This returns true exactly when {@link #getObjectValue} would
+     * return null.
+     *
+     * @param   ix  value index
+     * @return   true iff value is null
+     */
+    boolean isNull( long ix ) throws IOException;
+
     /**
      * Retrieve the current value of this sequence as a floating point number.
      *
@@ -1,8 +1,12 @@
 package uk.ac.starlink.table.storage;
 
 import java.io.IOException;
+import java.util.function.LongSupplier;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.table.WrapperStarTable;
 
 /**
@@ -18,6 +22,7 @@ class ColumnStoreStarTable extends WrapperStarTable {
     private final int ncol_;
     private final ColumnStore[] colStores_;
     private final ThreadLocal<ColumnReader>[] colReaders_;
+    private final boolean[] isNumeric_;
 
     /**
      * Constructor.
@@ -33,6 +38,12 @@ class ColumnStoreStarTable extends WrapperStarTable {
         nrow_ = nrow;
         ncol_ = template.getColumnCount();
         colStores_ = colStores;
+        isNumeric_ = new boolean[ ncol_ ];
+        for ( int ic = 0; ic < ncol_; ic++ ) {
+            isNumeric_[ ic ] =
+                isPrimitiveNumber( template.getColumnInfo( ic )
+                                           .getContentClass() );
+        }
 
         /* Prepare ThreadLocals to service the thread-safe table
          * random access methods. */
@@ -72,37 +83,213 @@ class ColumnStoreStarTable extends WrapperStarTable {
     }
 
     public RowSequence getRowSequence() throws IOException {
-        final ColumnReader[] readers = new ColumnReader[ ncol_ ];
-        for ( int ic = 0; ic < ncol_; ic++ ) {
-            readers[ ic ] = colStores_[ ic ].createReader();
+        return new StoreRowSplittable( 0, nrow_ );
+    }
+
+    public RowSplittable getRowSplittable() throws IOException {
+        return new StoreRowSplittable( 0, nrow_ );
+    }
+
+    /**
+     * Indicates whether a given class is one of the wrapper classes
+     * for primitive numeric types.  Column readers for such columns
+     * can supply typed values directly.
+     *
+     * @param  clazz  content class
+     * @return  true iff clazz is Byte, Short, Integer, Long, Float or Double
+     */
+    private static boolean isPrimitiveNumber( Class<?> clazz ) {
+        return clazz == Byte.class
+            || clazz == Short.class
+            || clazz == Integer.class
+            || clazz == Long.class
+            || clazz == Float.class
+            || clazz == Double.class;
+    }
+
+    /**
+     * RowSplittable implementation for use with this table.
+     * Splitting is by row index range, and each instance uses its own
+     * set of column readers, so that instances may be used concurrently.
+     */
+    private class StoreRowSplittable
+            implements RowSplittable, TypedRowSequence, BatchRowSequence {
+
+        private final LongSupplier rowIndex_;
+        private ColumnReader[] readers_;
+        private long irow_;
+        private long end_;
+        private long batchStart_;
+        private int batchSize_;
+
+        /**
+         * Constructor.
+         *
+         * @param  start  index of first row covered
+         * @param  end   index after last row covered
+         */
+        StoreRowSplittable( long start, long end ) {
+            irow_ = start - 1;
+            end_ = end;
+            rowIndex_ = new LongSupplier() {
+                public long getAsLong() {
+                    return irow_;
+                }
+            };
+        }
+
+        public RowSplittable split() {
+            long start = irow_ + 1;
+            if ( readers_ == null && end_ - start > 1 ) {
+                long mid = start + ( end_ - start ) / 2;
+                RowSplittable other = new StoreRowSplittable( mid, end_ );
+                end_ = mid;
+                return other;
+            }
+            else {
+                return null;
+            }
+        }
+
+        public long splittableSize() {
+            return end_ - ( irow_ + 1 );
         }
-        return new RowSequence() {
-            long irow = -1;
-            public boolean next() {
-                return ++irow < nrow_;
+
+        public LongSupplier rowIndex() {
+            return rowIndex_;
+        }
+
+        public boolean next() {
+            if ( irow_ < end_ - 1 ) {
+                irow_++;
+                initReaders();
+                return true;
+            }
+            else {
+                return false;
             }
-            public Object getCell( int icol ) throws IOException {
-                if ( irow >= 0 ) {
-                    return readers[ icol ].getObjectValue( irow );
+        }
+
+        public int nextBatch( int maxRows ) {
+            initReaders();
+            batchStart_ = irow_ + 1;
+            batchSize_ = (int) Math.min( (long) maxRows, end_ - batchStart_ );
+            irow_ += batchSize_;
+            return batchSize_;
+        }
+
+        public void getDoubles( int icol, double[] buf ) throws IOException {
+            ColumnReader rdr = readers_[ icol ];
+            if ( isNumeric_[ icol ] ) {
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    buf[ i ] = rdr.getDoubleValue( batchStart_ + i );
                 }
-                else {
-                    throw new IllegalStateException();
+            }
+            else {
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    Object value = rdr.getObjectValue( batchStart_ + i );
+                    buf[ i ] = value instanceof Number
+                             ? ((Number) value).doubleValue()
+                             : Double.NaN;
                 }
             }
-            public Object[] getRow() throws IOException {
-                if ( irow >= 0 ) {
-                    Object[] row = new Object[ ncol_ ];
-                    for ( int ic = 0; ic < ncol_; ic++ ) {
-                        row[ ic ] = readers[ ic ].getObjectValue( irow );
-                    }
-                    return row;
+        }
+
+        public void getLongs( int icol, long[] buf ) throws IOException {
+            ColumnReader rdr = readers_[ icol ];
+            if ( isNumeric_[ icol ] ) {
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    buf[ i ] = rdr.getLongValue( batchStart_ + i );
                 }
-                else {
-                    throw new IllegalStateException();
+            }
+            else {
+                for ( int i = 0; i < batchSize_; i++ ) {
+                    Object value = rdr.getObjectValue( batchStart_ + i );
+                    buf[ i ] = value instanceof Number
+                             ? ((Number) value).longValue()
+                             : 0L;
                 }
             }
-            public void close() {
+        }
+
+        public void getNulls( int icol, boolean[] buf ) throws IOException {
+            ColumnReader rdr = readers_[ icol ];
+            for ( int i = 0; i < batchSize_; i++ ) {
+                buf[ i ] = rdr.isNull( batchStart_ + i );
+            }
+        }
+
+        public Object getCell( int icol ) throws IOException {
+            checkRow();
+            return readers_[ icol ].getObjectValue( irow_ );
+        }
+
+        public Object[] getRow() throws IOException {
+            checkRow();
+            Object[] row = new Object[ ncol_ ];
+            for ( int ic = 0; ic < ncol_; ic++ ) {
+                row[ ic ] = readers_[ ic ].getObjectValue( irow_ );
+            }
+            return row;
+        }
+
+        public boolean isNull( int icol ) throws IOException {
+            checkRow();
+            return readers_[ icol ].isNull( irow_ );
+        }
+
+        public double getDouble( int icol ) throws IOException {
+            checkRow();
+            ColumnReader rdr = readers_[ icol ];
+            if ( isNumeric_[ icol ] ) {
+                return rdr.getDoubleValue( irow_ );
             }
-        };
+            else {
+                Object value = rdr.getObjectValue( irow_ );
+                return value instanceof Number
+                     ? ((Number) value).doubleValue()
+                     : Double.NaN;
+            }
+        }
+
+        public long getLong( int icol ) throws IOException {
+            checkRow();
+            ColumnReader rdr = readers_[ icol ];
+            if ( isNumeric_[ icol ] ) {
+                return rdr.getLongValue( irow_ );
+            }
+            else {
+                Object value = rdr.getObjectValue( irow_ );
+                return value instanceof Number ? ((Number) value).longValue()
+                                               : 0L;
+            }
+        }
+
+        public void close() {
+        }
+
+        /**
+         * Ensures that this object's column readers are available.
+         * They are created lazily so that splitting is cheap.
+         */
+        private void initReaders() {
+            if ( readers_ == null ) {
+                readers_ = new ColumnReader[ ncol_ ];
+                for ( int ic = 0; ic < ncol_; ic++ ) {
+                    readers_[ ic ] = colStores_[ ic ].createReader();
+                }
+            }
+        }
+
+        /**
+         * Checks that there is a current row.
+         *
+         * @throws  IllegalStateException  if not
+         */
+        private void checkRow() {
+            if ( readers_ == null || irow_ >= end_ ) {
+                throw new IllegalStateException( "No current row" );
+            }
+        }
     }
 }
@@ -0,0 +1,534 @@
+package uk.ac.starlink.table.storage;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.util.ByteList;
+import uk.ac.starlink.util.DoubleList;
+import uk.ac.starlink.util.FloatList;
+import uk.ac.starlink.util.IntList;
+import uk.ac.starlink.util.LongList;
+import uk.ac.starlink.util.ShortList;
+
+/**
+ * ColumnStore implementation which holds column data in memory
+ * in a compact form.
+ * Scalar numeric values are stored in primitive arrays,
+ * booleans as bits, and strings as dictionary codes where the
+ * number of distinct values is not too large.
+ * Null values are recorded in a bit mask rather than as objects.
+ * Values are only turned into objects when they are read.
+ *
+ * <p>Instances of this class serve as their own reader;
+ * once {@link #endCells} has been called the data is immutable,
+ * so the reader methods are safe for concurrent use.
+ * The maximum number of rows is <code>Integer.MAX_VALUE</code>.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+abstract class CompactColumnStore implements ColumnStore, ColumnReader {
+
+    private BitSet nulls_;
+    private int nrow_;
+
+    /**
+     * Stores a non-null value.
+     *
+     * @param  value  non-null value
+     */
+    abstract void addValue( Object value );
+
+    /**
+     * Stores a placeholder for a null value.
+     */
+    abstract void addBlank();
+
+    /**
+     * Called when no more values will be added.
+     */
+    abstract void endValues();
+
+    /**
+     * Returns the value for a given row known not to be null.
+     *
+     * @param  irow  row index
+     * @return  value
+     */
+    abstract Object getValue( int irow );
+
+    /**
+     * Returns a new store suitable for a given column.
+     * Any type of data can be stored, but only certain types
+     * get a compact representation.
+     *
+     * @param  info  column metadata
+     * @return  new store
+     */
+    public static CompactColumnStore createStore( ValueInfo info ) {
+        Class<?> clazz = info.getContentClass();
+        if ( clazz == Byte.class ) {
+            return new ByteColumnStore();
+        }
+        else if ( clazz == Short.class ) {
+            return new ShortColumnStore();
+        }
+        else if ( clazz == Integer.class ) {
+            return new IntColumnStore();
+        }
+        else if ( clazz == Long.class ) {
+            return new LongColumnStore();
+        }
+        else if ( clazz == Float.class ) {
+            return new FloatColumnStore();
+        }
+        else if ( clazz == Double.class ) {
+            return new DoubleColumnStore();
+        }
+        else if ( clazz == Boolean.class ) {
+            return new BooleanColumnStore();
+        }
+        else if ( clazz == String.class ) {
+            return new StringColumnStore();
+        }
+        else {
+            return new ObjectColumnStore();
+        }
+    }
+
+    public void acceptCell( Object value ) {
+        if ( nrow_ == Integer.MAX_VALUE ) {
+            throw new IllegalStateException( "Too many rows" );
+        }
+        if ( value == null ) {
+            if ( nulls_ == null ) {
+                nulls_ = new BitSet();
+            }
+            nulls_.set( nrow_ );
+            addBlank();
+        }
+        else {
+            addValue( value );
+        }
+        nrow_++;
+    }
+
+    public void endCells() {
+        endValues();
+    }
+
+    public ColumnReader createReader() {
+        return this;
+    }
+
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    public Object getObjectValue( long ix ) {
+        int irow = (int) ix;
+        return isBlank( irow ) ? null : getValue( irow );
+    }
+
+    public boolean isNull( long ix ) {
+        return isBlank( (int) ix );
+    }
+
+    public double getDoubleValue( long ix ) {
+        Object value = getObjectValue( ix );
+        return value instanceof Number ? ((Number) value).doubleValue()
+                                       : Double.NaN;
+    }
+
+    public int getIntValue( long ix ) {
+        Object value = getObjectValue( ix );
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    public long getLongValue( long ix ) {
+        Object value = getObjectValue( ix );
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    public boolean getBooleanValue( long ix ) {
+        return Boolean.TRUE.equals( getObjectValue( ix ) );
+    }
+
+    /**
+     * Indicates whether the value at a given row is null.
+     *
+     * @param  irow  row index
+     * @return  true iff value is null
+     */
+    boolean isBlank( int irow ) {
+        return nulls_ != null && nulls_.get( irow );
+    }
+
+    /**
+     * Store for Byte values.
+     */
+    private static class ByteColumnStore extends CompactColumnStore {
+        private ByteList list_ = new ByteList();
+        private byte[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).byteValue() );
+        }
+        void addBlank() {
+            list_.add( (byte) 0 );
+        }
+        void endValues() {
+            data_ = list_.toByteArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Byte( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            int irow = (int) ix;
+            return isBlank( irow ) ? Double.NaN : data_[ irow ];
+        }
+        public int getIntValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Short values.
+     */
+    private static class ShortColumnStore extends CompactColumnStore {
+        private ShortList list_ = new ShortList();
+        private short[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).shortValue() );
+        }
+        void addBlank() {
+            list_.add( (short) 0 );
+        }
+        void endValues() {
+            data_ = list_.toShortArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Short( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            int irow = (int) ix;
+            return isBlank( irow ) ? Double.NaN : data_[ irow ];
+        }
+        public int getIntValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Integer values.
+     */
+    private static class IntColumnStore extends CompactColumnStore {
+        private IntList list_ = new IntList();
+        private int[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).intValue() );
+        }
+        void addBlank() {
+            list_.add( 0 );
+        }
+        void endValues() {
+            data_ = list_.toIntArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Integer( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            int irow = (int) ix;
+            return isBlank( irow ) ? Double.NaN : data_[ irow ];
+        }
+        public int getIntValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Long values.
+     */
+    private static class LongColumnStore extends CompactColumnStore {
+        private LongList list_ = new LongList();
+        private long[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).longValue() );
+        }
+        void addBlank() {
+            list_.add( 0L );
+        }
+        void endValues() {
+            data_ = list_.toLongArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Long( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            int irow = (int) ix;
+            return isBlank( irow ) ? Double.NaN : data_[ irow ];
+        }
+        public int getIntValue( long ix ) {
+            return (int) data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Float values.
+     */
+    private static class FloatColumnStore extends CompactColumnStore {
+        private FloatList list_ = new FloatList();
+        private float[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).floatValue() );
+        }
+        void addBlank() {
+            list_.add( Float.NaN );
+        }
+        void endValues() {
+            data_ = list_.toFloatArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Float( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+        public int getIntValue( long ix ) {
+            return (int) data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return (long) data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Double values.
+     */
+    private static class DoubleColumnStore extends CompactColumnStore {
+        private DoubleList list_ = new DoubleList();
+        private double[] data_;
+        void addValue( Object value ) {
+            list_.add( ((Number) value).doubleValue() );
+        }
+        void addBlank() {
+            list_.add( Double.NaN );
+        }
+        void endValues() {
+            data_ = list_.toDoubleArray();
+            list_ = null;
+        }
+        Object getValue( int irow ) {
+            return new Double( data_[ irow ] );
+        }
+        public double getDoubleValue( long ix ) {
+            return data_[ (int) ix ];
+        }
+        public int getIntValue( long ix ) {
+            return (int) data_[ (int) ix ];
+        }
+        public long getLongValue( long ix ) {
+            return (long) data_[ (int) ix ];
+        }
+    }
+
+    /**
+     * Store for Boolean values, one bit per value.
+     */
+    private static class BooleanColumnStore extends CompactColumnStore {
+        private final BitSet bits_ = new BitSet();
+        private int irow_;
+        void addValue( Object value ) {
+            if ( Boolean.TRUE.equals( value ) ) {
+                bits_.set( irow_ );
+            }
+            irow_++;
+        }
+        void addBlank() {
+            irow_++;
+        }
+        void endValues() {
+        }
+        Object getValue( int irow ) {
+            return Boolean.valueOf( bits_.get( irow ) );
+        }
+        public boolean getBooleanValue( long ix ) {
+            return bits_.get( (int) ix );
+        }
+    }
+
+    /**
+     * Store for String values.  While the number of distinct values
+     * is small, they are stored as one- or two-byte codes into a
+     * dictionary; if there are too many, it reverts to storing
+     * the values as objects.
+     */
+    private static class StringColumnStore extends CompactColumnStore {
+        private Map<String,Integer> dictMap_;
+        private List<String> dict_;
+        private ByteList bcodes_;
+        private ShortList scodes_;
+        private byte[] bdata_;
+        private short[] sdata_;
+        private String[] dictArray_;
+        private List<Object> objs_;
+
+        /** Maximum dictionary size for one-byte codes. */
+        private static final int MAX_BYTE_CODES = 1 << 8;
+
+        /** Maximum dictionary size for two-byte codes. */
+        private static final int MAX_SHORT_CODES = 1 << 16;
+
+        StringColumnStore() {
+            dictMap_ = new HashMap<String,Integer>();
+            dict_ = new ArrayList<String>();
+            bcodes_ = new ByteList();
+        }
+
+        void addValue( Object value ) {
+            if ( objs_ == null && value instanceof String ) {
+                String sval = (String) value;
+                Integer code = dictMap_.get( sval );
+                if ( code == null ) {
+                    int ncode = dict_.size();
+                    if ( ncode == MAX_BYTE_CODES ) {
+                        widenCodes();
+                    }
+                    else if ( ncode == MAX_SHORT_CODES ) {
+                        revertToObjects();
+                        objs_.add( value );
+                        return;
+                    }
+                    code = new Integer( ncode );
+                    dictMap_.put( sval, code );
+                    dict_.add( sval );
+                }
+                addCode( code.intValue() );
+            }
+            else {
+                if ( objs_ == null ) {
+                    revertToObjects();
+                }
+                objs_.add( value );
+            }
+        }
+
+        void addBlank() {
+            if ( objs_ == null ) {
+                addCode( 0 );
+            }
+            else {
+                objs_.add( null );
+            }
+        }
+
+        void endValues() {
+            if ( objs_ == null ) {
+                if ( bcodes_ != null ) {
+                    bdata_ = bcodes_.toByteArray();
+                    bcodes_ = null;
+                }
+                else {
+                    sdata_ = scodes_.toShortArray();
+                    scodes_ = null;
+                }
+                dictArray_ = dict_.toArray( new String[ 0 ] );
+                dict_ = null;
+                dictMap_ = null;
+            }
+        }
+
+        Object getValue( int irow ) {
+            if ( bdata_ != null ) {
+                return dictArray_[ bdata_[ irow ] & 0xff ];
+            }
+            else if ( sdata_ != null ) {
+                return dictArray_[ sdata_[ irow ] & 0xffff ];
+            }
+            else {
+                return objs_.get( irow );
+            }
+        }
+
+        /**
+         * Adds a dictionary code.
+         *
+         * @param  code  code value
+         */
+        private void addCode( int code ) {
+            if ( bcodes_ != null ) {
+                bcodes_.add( (byte) code );
+            }
+            else {
+                scodes_.add( (short) code );
+            }
+        }
+
+        /**
+         * Converts from one-byte to two-byte codes.
+         */
+        private void widenCodes() {
+            int n = bcodes_.size();
+            scodes_ = new ShortList( Math.max( n * 2, 16 ) );
+            for ( int i = 0; i < n; i++ ) {
+                scodes_.add( (short) ( bcodes_.get( i ) & 0xff ) );
+            }
+            bcodes_ = null;
+        }
+
+        /**
+         * Abandons dictionary encoding and stores values as objects.
+         */
+        private void revertToObjects() {
+            int n = bcodes_ != null ? bcodes_.size() : scodes_.size();
+            objs_ = new ArrayList<Object>( n * 2 );
+            for ( int i = 0; i < n; i++ ) {
+                int code = bcodes_ != null ? bcodes_.get( i ) & 0xff
+                                           : scodes_.get( i ) & 0xffff;
+                objs_.add( isBlank( i ) ? null : dict_.get( code ) );
+            }
+            bcodes_ = null;
+            scodes_ = null;
+            dict_ = null;
+            dictMap_ = null;
+        }
+    }
+
+    /**
+     * Store for arbitrary objects.
+     */
+    private static class ObjectColumnStore extends CompactColumnStore {
+        private final ArrayList<Object> list_ = new ArrayList<Object>();
+        void addValue( Object value ) {
+            list_.add( value );
+        }
+        void addBlank() {
+            list_.add( null );
+        }
+        void endValues() {
+            list_.trimToSize();
+        }
+        Object getValue( int irow ) {
+            return list_.get( irow );
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package uk.ac.starlink.table.storage;
+
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+
+/**
+ * Implementation of RowStore which stores data in memory in a compact,
+ * column-oriented form.
+ * Scalar numeric columns are held in primitive arrays, boolean columns
+ * as bits, and string columns with not too many distinct values
+ * as small integer codes referencing a dictionary;
+ * null values are recorded in bit masks.
+ * Cell objects are only created when the data is read.
+ * For tables whose columns are mostly of these types, this uses
+ * several times less memory than a {@link ListRowStore},
+ * though reading a cell is a little slower.
+ *
+ * <p>Columns of other types (such as arrays) are stored as lists of
+ * objects, so like ListRowStore, this can store any StarTable
+ * ({@link #acceptMetadata} will not throw a
+ * <code>TableFormatException</code>),
+ * but for large tables {@link #acceptRow} may throw an
+ * <code>OutOfMemoryError</code>.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class CompactRowStore implements RowStore {
+
+    private StarTable template_;
+    private CompactColumnStore[] colStores_;
+    private int ncol_;
+    private long nrow_;
+    private StarTable storedTable_;
+
+    public void acceptMetadata( StarTable meta ) {
+        if ( template_ != null ) {
+            throw new IllegalStateException( "Metadata already submitted" );
+        }
+        template_ = meta;
+        ncol_ = meta.getColumnCount();
+        colStores_ = new CompactColumnStore[ ncol_ ];
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ] =
+                CompactColumnStore.createStore( meta.getColumnInfo( icol ) );
+        }
+    }
+
+    /**
+     * Accepts a row.
+     *
+     * @throws   OutOfMemoryError  if it's run out of memory
+     */
+    public void acceptRow( Object[] row ) {
+        if ( template_ == null ) {
+            throw new IllegalStateException( "acceptMetadata not called" );
+        }
+        if ( storedTable_ != null ) {
+            throw new IllegalStateException( "endRows already called" );
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ].acceptCell( row[ icol ] );
+        }
+        nrow_++;
+    }
+
+    public void endRows() {
+        if ( template_ == null ) {
+            throw new IllegalStateException( "acceptMetadata not called" );
+        }
+        if ( storedTable_ != null ) {
+            throw new IllegalStateException( "endRows already called" );
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            colStores_[ icol ].endCells();
+        }
+        storedTable_ = new ColumnStoreStarTable( template_, nrow_, colStores_ );
+    }
+
+    public StarTable getStarTable() {
+        if ( storedTable_ == null ) {
+            throw new IllegalStateException( "endRows not called" );
+        }
+        return storedTable_;
+    }
+}
@@ -5,6 +5,7 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 /**
@@ -26,6 +27,9 @@ class IndexedStreamColumnStore implements ColumnStore {
     private ByteBuffer[] dataBufs_;
     private ByteBuffer[] indexBufs_;
 
+    /** Buffer size for each of the data and index output files. */
+    private static final int BUFSIZ = 16 * 1024;
+
     /**
      * Constructor.
      *
@@ -35,18 +39,19 @@ class IndexedStreamColumnStore implements ColumnStore {
      *                   it is the caller's responsibility to clear this up
      * @param  indexFile filename used for storing offset values;
      *                   it is the caller's responsibility to clear this up
+     * @param  reopen  if true, the files are only held open while a
+     *                 buffer's worth of data is written to them;
+     *                 this is slower, but avoids using up file descriptors
+     *                 if there are very many columns
      */
     public IndexedStreamColumnStore( Codec codec, File dataFile,
-                                     File indexFile ) throws IOException {
+                                     File indexFile, boolean reopen )
+            throws IOException {
         codec_ = codec;
         dataFile_ = dataFile;
         indexFile_ = indexFile;
-        dataOut_ = new DataOutputStream(
-                       new BufferedOutputStream(
-                           new FileOutputStream( dataFile ) ) );
-        indexOut_ = new DataOutputStream(
-                        new BufferedOutputStream(
-                            new FileOutputStream( indexFile ) ) );
+        dataOut_ = new DataOutputStream( openOutput( dataFile, reopen ) );
+        indexOut_ = new DataOutputStream( openOutput( indexFile, reopen ) );
     }
 
     public void acceptCell( Object value ) throws IOException {
@@ -62,6 +67,21 @@ class IndexedStreamColumnStore implements ColumnStore {
         indexBufs_ = FileByteStore.toByteBuffers( indexFile_ );
     }
 
+    /**
+     * Returns a buffered output stream writing to a given file.
+     *
+     * @param  file  destination file
+     * @param  reopen  whether to reopen the file for each buffer written
+     * @return  output stream
+     */
+    private static OutputStream openOutput( File file, boolean reopen )
+            throws IOException {
+        return reopen
+             ? new ReopeningFileOutputStream( file, BUFSIZ )
+             : new BufferedOutputStream( new FileOutputStream( file ),
+                                         BUFSIZ );
+    }
+
     public ColumnReader createReader() {
         final ByteStoreAccess dataAccess =
             NioByteStoreAccess
@@ -0,0 +1,101 @@
+package uk.ac.starlink.table.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Buffered output stream which writes to a file, but only holds the
+ * file open while a buffer's worth of data is being written to it.
+ * This means that very many instances can be in use at once,
+ * for instance one for each column of a very wide table,
+ * without exhausting the available file descriptors.
+ * The cost is that the file is reopened (in append mode) every time
+ * the buffer fills up.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class ReopeningFileOutputStream extends OutputStream {
+
+    private final File file_;
+    private final byte[] buf_;
+    private int count_;
+    private boolean closed_;
+
+    /**
+     * Constructor.  Any existing content of the file is discarded.
+     *
+     * @param  file  destination file
+     * @param  bufsiz  buffer size in bytes
+     */
+    public ReopeningFileOutputStream( File file, int bufsiz )
+            throws IOException {
+        file_ = file;
+        buf_ = new byte[ bufsiz ];
+        new FileOutputStream( file ).close();
+    }
+
+    public void write( int b ) throws IOException {
+        if ( count_ >= buf_.length ) {
+            flushBuffer();
+        }
+        buf_[ count_++ ] = (byte) b;
+    }
+
+    public void write( byte[] b, int off, int len ) throws IOException {
+        if ( len >= buf_.length ) {
+            flushBuffer();
+            writeFile( b, off, len );
+        }
+        else {
+            if ( len > buf_.length - count_ ) {
+                flushBuffer();
+            }
+            System.arraycopy( b, off, buf_, count_, len );
+            count_ += len;
+        }
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    public void close() throws IOException {
+        if ( ! closed_ ) {
+            flushBuffer();
+            closed_ = true;
+        }
+    }
+
+    /**
+     * Writes any buffered bytes to the file.
+     */
+    private void flushBuffer() throws IOException {
+        if ( count_ > 0 ) {
+            writeFile( buf_, 0, count_ );
+            count_ = 0;
+        }
+    }
+
+    /**
+     * Appends bytes to the file.
+     *
+     * @param  b  byte buffer
+     * @param  off  offset into buffer of first byte to write
+     * @param  len  number of bytes to write
+     */
+    private void writeFile( byte[] b, int off, int len ) throws IOException {
+        if ( closed_ ) {
+            throw new IOException( "Stream closed" );
+        }
+        OutputStream out = new FileOutputStream( file_, true );
+        try {
+            out.write( b, off, len );
+        }
+        finally {
+            out.close();
+        }
+    }
+}
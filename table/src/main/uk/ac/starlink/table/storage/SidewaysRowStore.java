@@ -18,6 +18,16 @@ import uk.ac.starlink.table.TableFormatException;
  * RowStore implementation which stores data cell data in a column-oriented
  * fashion, so that members of the same column, rather than of the same row, 
  * are stored contiguously on disk.
+ * The data for each column is accessed using its own memory-mapped
+ * buffer, so that reading the cells of a single column only
+ * touches the parts of the disk files that hold that column.
+ *
+ * <p>If the row count is not known in advance, each column is streamed
+ * to its own file (two for variable-length items).  If that would
+ * require more than {@link #MAX_OPEN_FILES} files, the files are
+ * only held open while a block of data is written to them,
+ * so tables with very many columns can be stored without running out
+ * of file descriptors.
  *
  * @author   Mark Taylor
  * @since    21 Jun 2006
@@ -31,6 +41,14 @@ public class SidewaysRowStore implements RowStore {
     private long lrow_;
     private ColumnStore[] colStores_;
     private StarTable storedTable_;
+
+    /**
+     * Maximum number of column files held open at once while streaming
+     * a table of unknown length.  Above this, files are reopened
+     * for each block written.
+     */
+    public static final int MAX_OPEN_FILES = 256;
+
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.table.storage" );
 
@@ -147,6 +165,15 @@ public class SidewaysRowStore implements RowStore {
          * file for each column.  For items of variable size, two files are
          * required, one for the offsets and one for the data. */
         else {
+            int nfile = 0;
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                nfile += codecs[ icol ].getItemSize() >= 0 ? 1 : 2;
+            }
+            boolean reopen = nfile > MAX_OPEN_FILES;
+            if ( reopen ) {
+                logger_.info( "Streaming " + nfile + " column files "
+                            + "without holding them open" );
+            }
             for ( int icol = 0; icol < ncol_; icol++ ) {
                 Codec codec = codecs[ icol ];
                 int itemSize = codec.getItemSize();
@@ -156,14 +183,16 @@ public class SidewaysRowStore implements RowStore {
                 tempFiles_.add( dataFile );
                 ColumnStore colStore;
                 if ( fixedSize ) {
-                    colStore = new StreamColumnStore( codec, dataFile );
+                    colStore =
+                        new StreamColumnStore( codec, dataFile, reopen );
                 }
                 else {
                     File indexFile = new File( dataFile + "_ix" );
                     indexFile.deleteOnExit();
                     tempFiles_.add( indexFile );
                     colStore = new IndexedStreamColumnStore( codec, dataFile,
-                                                             indexFile );
+                                                             indexFile,
+                                                             reopen );
                 }
                 colStores_[ icol ] = colStore;
             }
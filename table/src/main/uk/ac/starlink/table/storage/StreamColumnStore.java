@@ -5,6 +5,7 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 
 /**
@@ -23,6 +24,9 @@ class StreamColumnStore implements ColumnStore {
     private long nrow_;
     private ByteBuffer[] bbufs_;
 
+    /** Output buffer size per file. */
+    private static final int BUFSIZ = 16 * 1024;
+
     /**
      * Constructor.
      *
@@ -30,17 +34,24 @@ class StreamColumnStore implements ColumnStore {
      *                column
      * @param  dataFile  filename used for storing the data;
      *                   it is the caller's responsibility to clear this up
+     * @param  reopen  if true, the file is only held open while a buffer's
+     *                 worth of data is written to it; this is slower,
+     *                 but avoids using up file descriptors if there are
+     *                 very many columns
      */
-    public StreamColumnStore( Codec codec, File dataFile ) throws IOException {
+    public StreamColumnStore( Codec codec, File dataFile, boolean reopen )
+            throws IOException {
         codec_ = codec;
         dataFile_ = dataFile;
         itemSize_ = codec.getItemSize();
         if ( itemSize_ < 0 ) {
             throw new IllegalArgumentException( "Must have fixed size codec" );
         }
-        dataOut_ = new DataOutputStream(
-                       new BufferedOutputStream(
-                           new FileOutputStream( dataFile ) ) );
+        OutputStream out = reopen
+                         ? new ReopeningFileOutputStream( dataFile, BUFSIZ )
+                         : new BufferedOutputStream(
+                               new FileOutputStream( dataFile ), BUFSIZ );
+        dataOut_ = new DataOutputStream( out );
     }
 
     public void acceptCell( Object value ) throws IOException {
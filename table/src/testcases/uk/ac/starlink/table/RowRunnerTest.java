@@ -0,0 +1,75 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import uk.ac.starlink.util.TestCase;
+
+public class RowRunnerTest extends TestCase {
+
+    private static final RowRunner[] RUNNERS = new RowRunner[] {
+        RowRunner.SEQUENTIAL, RowRunner.DEFAULT, RowRunner.PARTEST,
+    };
+
+    public RowRunnerTest( String name ) {
+        super( name );
+    }
+
+    public void testCollect() throws IOException {
+        int nrow = 23456;
+        int[] data = new int[ nrow ];
+        long tot = 0;
+        for ( int i = 0; i < nrow; i++ ) {
+            data[ i ] = i % 101;
+            tot += data[ i ] * (long) i;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "x", data ) );
+        for ( RowRunner runner : RUNNERS ) {
+            long[] result = runner.collect( new SumCollector(), table );
+            assertEquals( nrow, result[ 0 ] );
+            assertEquals( tot, result[ 1 ] );
+        }
+    }
+
+    public void testError() throws IOException {
+        StarTable table = new ConstantStarTable( new ColumnInfo[] {
+            new ColumnInfo( "x", Integer.class, null ),
+        }, new Object[] { new Integer( 1 ) }, 1000 );
+        for ( RowRunner runner : RUNNERS ) {
+            try {
+                runner.collect( new SumCollector() {
+                    public void accumulateRows( RowSplittable rseq,
+                                                long[] acc )
+                            throws IOException {
+                        throw new IOException( "no" );
+                    }
+                }, table );
+                fail();
+            }
+            catch ( IOException e ) {
+                assertEquals( "no", e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Accumulates row count and sum of row index times column 0 value.
+     */
+    private static class SumCollector extends RowCollector<long[]> {
+        public long[] createAccumulator() {
+            return new long[ 2 ];
+        }
+        public long[] combine( long[] acc1, long[] acc2 ) {
+            acc1[ 0 ] += acc2[ 0 ];
+            acc1[ 1 ] += acc2[ 1 ];
+            return acc1;
+        }
+        public void accumulateRows( RowSplittable rseq, long[] acc )
+                throws IOException {
+            while ( rseq.next() ) {
+                long irow = rseq.rowIndex().getAsLong();
+                acc[ 0 ]++;
+                acc[ 1 ] += irow * ((Number) rseq.getCell( 0 )).intValue();
+            }
+        }
+    }
+}
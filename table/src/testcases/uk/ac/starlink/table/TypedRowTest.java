@@ -0,0 +1,178 @@
+package uk.ac.starlink.table;
+
+import java.io.IOException;
+import uk.ac.starlink.util.TestCase;
+
+public class TypedRowTest extends TestCase {
+
+    private static final int NROW = 200;
+
+    public TypedRowTest( String name ) {
+        super( name );
+    }
+
+    public void testColumnTable() throws IOException {
+        StarTable table = createTable();
+        RowSequence rseq = table.getRowSequence();
+        assertTrue( rseq instanceof TypedRowSequence );
+        checkTypedAccess( table.getColumnCount(), rseq );
+        RowSplittable rsplit = table.getRowSplittable();
+        assertTrue( rsplit instanceof TypedRowSequence );
+        checkTypedAccess( table.getColumnCount(), rsplit.split() );
+        checkTypedAccess( table.getColumnCount(), rsplit );
+    }
+
+    public void testStorage() throws IOException {
+        StarTable table = createTable();
+        StoragePolicy[] policies = new StoragePolicy[] {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.PREFER_DISK,
+            StoragePolicy.SIDEWAYS,
+            StoragePolicy.COMPACT_MEMORY,
+        };
+        for ( StoragePolicy policy : policies ) {
+            StarTable stored = policy.copyTable( table );
+            checkTypedAccess( table.getColumnCount(),
+                              stored.getRowSequence() );
+            checkTypedAccess( table.getColumnCount(),
+                              stored.getRowSplittable() );
+        }
+        StarTable compact = StoragePolicy.COMPACT_MEMORY.copyTable( table );
+        assertTrue( compact.getRowSequence() instanceof TypedRowSequence );
+    }
+
+    public void testBatch() throws IOException {
+        StarTable table = createTable();
+        assertTrue( table.getRowSequence() instanceof BatchRowSequence );
+        assertTrue( table.getRowSplittable() instanceof BatchRowSequence );
+        StoragePolicy[] policies = new StoragePolicy[] {
+            StoragePolicy.PREFER_MEMORY,
+            StoragePolicy.PREFER_DISK,
+            StoragePolicy.SIDEWAYS,
+            StoragePolicy.COMPACT_MEMORY,
+        };
+        for ( int bsize : new int[] { 1, 13, NROW + 5 } ) {
+            checkBatchAccess( table, table.getRowSequence(), bsize );
+            checkBatchAccess( table,
+                              new WrapperRowSequence( table.getRowSequence() ),
+                              bsize );
+            for ( StoragePolicy policy : policies ) {
+                StarTable stored = policy.copyTable( table );
+                checkBatchAccess( stored, stored.getRowSequence(), bsize );
+            }
+        }
+        RowSequence wrapped = new WrapperRowSequence( table.getRowSequence() );
+        assertTrue( Tables.getBatchRowSequence( wrapped )
+                    instanceof BufferedBatchRowSequence );
+    }
+
+    /**
+     * Checks that the batch accessor methods give the same results as
+     * the cell values of a random access table, interleaving batch
+     * reads with single row reads.
+     *
+     * @param  table   random access table
+     * @param  rseq   row sequence over table, which will be consumed
+     *                and closed
+     * @param  bsize   batch size
+     */
+    private void checkBatchAccess( StarTable table, RowSequence rseq,
+                                   int bsize )
+            throws IOException {
+        int ncol = table.getColumnCount();
+        BatchRowSequence bseq = Tables.getBatchRowSequence( rseq );
+        double[] dbuf = new double[ bsize ];
+        long[] lbuf = new long[ bsize ];
+        boolean[] nbuf = new boolean[ bsize ];
+        long irow = 0;
+        for ( int n; ( n = bseq.nextBatch( bsize ) ) > 0; ) {
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                bseq.getDoubles( icol, dbuf );
+                bseq.getLongs( icol, lbuf );
+                bseq.getNulls( icol, nbuf );
+                for ( int i = 0; i < n; i++ ) {
+                    Object cell = table.getCell( irow + i, icol );
+                    boolean isNum = cell instanceof Number;
+                    assertEquals( isNum ? ((Number) cell).doubleValue()
+                                        : Double.NaN, dbuf[ i ] );
+                    assertEquals( isNum ? ((Number) cell).longValue() : 0L,
+                                  lbuf[ i ] );
+                    assertEquals( cell == null, nbuf[ i ] );
+                }
+            }
+            irow += n;
+            if ( bseq.next() ) {
+                assertArrayEquals( table.getRow( irow ), bseq.getRow() );
+                irow++;
+            }
+        }
+        assertFalse( bseq.next() );
+        bseq.close();
+        assertEquals( table.getRowCount(), irow );
+    }
+
+    /**
+     * Checks that the typed accessor methods give the same results as
+     * the boxed values for every cell of a row sequence.
+     *
+     * @param  ncol  column count
+     * @param  rseq  row sequence, which will be consumed and closed
+     */
+    private void checkTypedAccess( int ncol, RowSequence rseq )
+            throws IOException {
+        long nrow = 0;
+        while ( rseq.next() ) {
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Object cell = rseq.getCell( icol );
+                boolean isNum = cell instanceof Number;
+                double dval = isNum ? ((Number) cell).doubleValue()
+                                    : Double.NaN;
+                long lval = isNum ? ((Number) cell).longValue() : 0L;
+                assertEquals( cell == null, Tables.isNull( rseq, icol ) );
+                assertEquals( dval, Tables.getDouble( rseq, icol ) );
+                assertEquals( lval, Tables.getLong( rseq, icol ) );
+            }
+            nrow++;
+        }
+        rseq.close();
+        assertTrue( nrow > 0 );
+    }
+
+    private StarTable createTable() {
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( NROW );
+        Object[] arrays = new Object[] {
+            new byte[ NROW ], new short[ NROW ], new int[ NROW ],
+            new long[ NROW ], new float[ NROW ], new double[ NROW ],
+            new boolean[ NROW ],
+        };
+        for ( int ia = 0; ia < arrays.length; ia++ ) {
+            Object array = arrays[ ia ];
+            if ( array instanceof boolean[] ) {
+                boolean[] flags = (boolean[]) array;
+                for ( int i = 0; i < NROW; i++ ) {
+                    flags[ i ] = i % 3 == 0;
+                }
+            }
+            else {
+                fillCycle( array, -50, 50 );
+            }
+            String cname = "c" + ia;
+            PrimitiveArrayColumn col =
+                (PrimitiveArrayColumn) ArrayColumn.makeColumn( cname, array );
+            col.getColumnInfo().setNullable( true );
+            for ( int i = 0; i < NROW; i += 7 ) {
+                col.storeValue( i, null );
+            }
+            table.addColumn( col );
+        }
+        String[] strs = new String[ NROW ];
+        Integer[] ints = new Integer[ NROW ];
+        for ( int i = 0; i < NROW; i++ ) {
+            strs[ i ] = i % 5 == 0 ? null : Integer.toString( i );
+            ints[ i ] = i % 4 == 0 ? null : new Integer( i * 1000 );
+        }
+        table.addColumn( ArrayColumn.makeColumn( "strs", strs ) );
+        table.addColumn( ArrayColumn.makeColumn( "ints", ints ) );
+        return table;
+    }
+}
@@ -0,0 +1,343 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.StarTable;
+
+public class JDBCFormatterTest extends TestCase {
+
+    public JDBCFormatterTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.table.jdbc" )
+              .setLevel( Level.SEVERE );
+    }
+
+    public void testCopyText() throws Exception {
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( 3 );
+        table.addColumn( ArrayColumn.makeColumn( "i", new Integer[] {
+            new Integer( 1 ), null, new Integer( -3 ),
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "b", new Boolean[] {
+            Boolean.TRUE, Boolean.FALSE, null,
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", new String[] {
+            "a\\b", "t\tu\r\nv", null,
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "skip", new String[] {
+            "x", "y", "z",
+        } ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", new Double[] {
+            new Double( 1.5 ), new Double( Double.NaN ), null,
+        } ) );
+        JDBCFormatter.SqlColumn[] sqlCols = new JDBCFormatter.SqlColumn[] {
+            new JDBCFormatter.SqlColumn( Types.INTEGER, "i", "INTEGER" ),
+            new JDBCFormatter.SqlColumn( Types.BIT, "b", "BOOLEAN" ),
+            new JDBCFormatter.SqlColumn( Types.VARCHAR, "s", "VARCHAR(8)" ),
+            null,
+            new JDBCFormatter.SqlColumn( Types.DOUBLE, "d", "DOUBLE" ),
+        };
+        String expected = "1\t1\ta\\\\b\t1.5\n"
+                        + "\\N\t0\tt\\tu\\r\\nv\t\\N\n"
+                        + "-3\t\\N\t\\N\t\\N\n";
+
+        /* Read in small chunks to exercise partial reads. */
+        Reader rdr = new JDBCFormatter
+                        .CopyTextReader( table.getRowSequence(), sqlCols );
+        StringBuffer sbuf = new StringBuffer();
+        char[] cbuf = new char[ 3 ];
+        assertEquals( 0, rdr.read( cbuf, 0, 0 ) );
+        for ( int n; ( n = rdr.read( cbuf, 0, cbuf.length ) ) >= 0; ) {
+            assertTrue( n > 0 );
+            sbuf.append( cbuf, 0, n );
+        }
+        assertEquals( -1, rdr.read( cbuf, 0, cbuf.length ) );
+        rdr.close();
+        assertEquals( expected, sbuf.toString() );
+    }
+
+    public void testBatch() throws Exception {
+        StarTable table = createTable( 10 );
+
+        /* Individual inserts. */
+        assertEquals( repeat( "update", 10 ),
+                      write( table, 1, 0, true, true, -1, false ) );
+        assertEquals( repeat( "update", 10 ),
+                      write( table, 4, 0, false, true, -1, false ) );
+
+        /* Batches, including a final partial one. */
+        assertEquals( Arrays.asList( new String[] {
+                          "batch 4", "batch 4", "batch 2",
+                      } ),
+                      write( table, 4, 0, true, true, -1, false ) );
+        assertEquals( Arrays.asList( new String[] {
+                          "batch 5", "batch 5",
+                      } ),
+                      write( table, 5, 0, true, true, -1, false ) );
+
+        /* Commits; pending batches are flushed before each commit,
+         * and auto-commit is restored at the end. */
+        assertEquals( Arrays.asList( new String[] {
+                          "autocommit false",
+                          "batch 2", "batch 2", "batch 1", "commit",
+                          "batch 2", "batch 2", "batch 1", "commit",
+                          "commit",
+                          "autocommit true",
+                      } ),
+                      write( table, 2, 5, true, true, -1, false ) );
+        List<String> events = new ArrayList<String>();
+        events.add( "autocommit false" );
+        for ( int i = 0; i < 3; i++ ) {
+            events.addAll( repeat( "update", 3 ) );
+            events.add( "commit" );
+        }
+        events.add( "update" );
+        events.add( "commit" );
+        events.add( "autocommit true" );
+        assertEquals( events, write( table, 1, 3, true, true, -1, false ) );
+
+        /* Auto-commit is left alone if it was already off. */
+        assertEquals( Arrays.asList( new String[] {
+                          "batch 4", "batch 4", "batch 2", "commit",
+                      } ),
+                      write( table, 4, 20, true, false, -1, false ) );
+    }
+
+    public void testRollback() throws Exception {
+        StarTable table = createTable( 10 );
+        List<String> okEvents = Arrays.asList( new String[] {
+            "autocommit false",
+            "batch 2", "batch 1", "commit",
+            "batch 2", "batch 1", "commit",
+        } );
+
+        /* Failure part way through rolls back and restores auto-commit. */
+        List<String> events = new ArrayList<String>( okEvents );
+        events.add( "rollback" );
+        events.add( "autocommit true" );
+        try {
+            write( table, 2, 3, true, true, 7, false );
+            fail();
+        }
+        catch ( SQLException e ) {
+            assertEquals( "Bad row 7", e.getMessage() );
+        }
+        assertEquals( events, write( table, 2, 3, true, true, 7, false,
+                                     true ) );
+
+        /* If the rollback fails, the original error is still reported
+         * and auto-commit is still restored. */
+        try {
+            write( table, 2, 3, true, true, 7, true );
+            fail();
+        }
+        catch ( SQLException e ) {
+            assertEquals( "Bad row 7", e.getMessage() );
+        }
+        assertEquals( events, write( table, 2, 3, true, true, 7, true,
+                                     true ) );
+
+        /* Without a commit interval, no transaction control is done. */
+        assertEquals( repeat( "batch 2", 3 ),
+                      write( table, 2, 0, true, true, 7, false, true ) );
+    }
+
+    /**
+     * Writes a table to a stub connection and returns a list of the
+     * events which were recorded.
+     *
+     * @param  table  table to write
+     * @param  batchSize   formatter batch size
+     * @param  commitInterval  formatter commit interval
+     * @param  supportsBatch   whether the connection supports batches
+     * @param  autoCommit   initial auto-commit state of the connection
+     * @param  badValue   value of the first column at which inserts fail,
+     *                    or -1 for no failure
+     * @param  badRollback  whether rollback fails
+     * @return  recorded events
+     */
+    private static List<String> write( StarTable table, int batchSize,
+                                       long commitInterval,
+                                       boolean supportsBatch,
+                                       boolean autoCommit, int badValue,
+                                       boolean badRollback )
+            throws Exception {
+        return write( table, batchSize, commitInterval, supportsBatch,
+                      autoCommit, badValue, badRollback, false );
+    }
+
+    /**
+     * Writes a table to a stub connection and returns a list of the
+     * events which were recorded, optionally ignoring errors.
+     */
+    private static List<String> write( StarTable table, int batchSize,
+                                       long commitInterval,
+                                       boolean supportsBatch,
+                                       boolean autoCommit, int badValue,
+                                       boolean badRollback,
+                                       boolean ignoreError )
+            throws Exception {
+        List<String> events = new ArrayList<String>();
+        Connection conn = createConnection( events, supportsBatch, autoCommit,
+                                            badValue, badRollback );
+        JDBCFormatter formatter = new JDBCFormatter( conn, table );
+        formatter.setBatchSize( batchSize );
+        formatter.setCommitInterval( commitInterval );
+        formatter.setUseCopy( false );
+        try {
+            formatter.createJDBCTable( "t", WriteMode.APPEND );
+        }
+        catch ( SQLException e ) {
+            if ( ! ignoreError ) {
+                throw e;
+            }
+        }
+        assertEquals( autoCommit, conn.getAutoCommit() );
+        return events;
+    }
+
+    /**
+     * Returns a connection stub which records write events.
+     */
+    private static Connection createConnection( final List<String> events,
+                                                final boolean supportsBatch,
+                                                final boolean autoCommit,
+                                                final int badValue,
+                                                final boolean badRollback ) {
+        final DatabaseMetaData meta = new JdbcStub() {
+            Object call( String name, Object[] args ) {
+                if ( "getTypeInfo".equals( name ) ) {
+                    List<Object[]> rows = new ArrayList<Object[]>();
+                    rows.add( new Object[] {
+                        "INTEGER", new Short( (short) Types.INTEGER ),
+                    } );
+                    rows.add( new Object[] {
+                        "DOUBLE", new Short( (short) Types.DOUBLE ),
+                    } );
+                    return createResultSet(
+                               new String[] { "TYPE_NAME", "DATA_TYPE" },
+                               new Class<?>[] { String.class, Short.class },
+                               rows );
+                }
+                else if ( "getIdentifierQuoteString".equals( name ) ) {
+                    return "\"";
+                }
+                else if ( "getSQLKeywords".equals( name ) ) {
+                    return "";
+                }
+                else if ( "supportsBatchUpdates".equals( name ) ) {
+                    return Boolean.valueOf( supportsBatch );
+                }
+                else {
+                    return DEFAULT;
+                }
+            }
+        }.create( DatabaseMetaData.class );
+        final PreparedStatement pstmt = new JdbcStub() {
+            int nbatch_;
+            Object call( String name, Object[] args ) throws SQLException {
+                if ( "setObject".equals( name ) ) {
+                    if ( new Integer( badValue ).equals( args[ 1 ] ) ) {
+                        throw new SQLException( "Bad row " + badValue );
+                    }
+                    return null;
+                }
+                else if ( "addBatch".equals( name ) ) {
+                    nbatch_++;
+                    return null;
+                }
+                else if ( "executeBatch".equals( name ) ) {
+                    events.add( "batch " + nbatch_ );
+                    int[] counts = new int[ nbatch_ ];
+                    Arrays.fill( counts, 1 );
+                    nbatch_ = 0;
+                    return counts;
+                }
+                else if ( "executeUpdate".equals( name ) ) {
+                    events.add( "update" );
+                    return new Integer( 1 );
+                }
+                else {
+                    return DEFAULT;
+                }
+            }
+        }.create( PreparedStatement.class );
+        return new JdbcStub() {
+            boolean autoCommit_ = autoCommit;
+            Object call( String name, Object[] args ) throws SQLException {
+                if ( "getMetaData".equals( name ) ) {
+                    return meta;
+                }
+                else if ( "createStatement".equals( name ) ) {
+                    return new JdbcStub() {
+                        Object call( String name, Object[] args ) {
+                            return DEFAULT;
+                        }
+                    }.create( Statement.class );
+                }
+                else if ( "prepareStatement".equals( name ) ) {
+                    return pstmt;
+                }
+                else if ( "getAutoCommit".equals( name ) ) {
+                    return Boolean.valueOf( autoCommit_ );
+                }
+                else if ( "setAutoCommit".equals( name ) ) {
+                    autoCommit_ = ((Boolean) args[ 0 ]).booleanValue();
+                    events.add( "autocommit " + autoCommit_ );
+                    return null;
+                }
+                else if ( "commit".equals( name ) ) {
+                    events.add( "commit" );
+                    return null;
+                }
+                else if ( "rollback".equals( name ) ) {
+                    events.add( "rollback" );
+                    if ( badRollback ) {
+                        throw new SQLException( "Bad rollback" );
+                    }
+                    return null;
+                }
+                else {
+                    return DEFAULT;
+                }
+            }
+        }.create( Connection.class );
+    }
+
+    /**
+     * Returns a table with an integer column containing the row index
+     * and a double column.
+     */
+    private static StarTable createTable( int nrow ) {
+        Integer[] ivals = new Integer[ nrow ];
+        Double[] dvals = new Double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ivals[ i ] = new Integer( i + 1 );
+            dvals[ i ] = new Double( i * 0.5 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        return table;
+    }
+
+    private static List<String> repeat( String txt, int n ) {
+        List<String> list = new ArrayList<String>();
+        for ( int i = 0; i < n; i++ ) {
+            list.add( txt );
+        }
+        return list;
+    }
+}
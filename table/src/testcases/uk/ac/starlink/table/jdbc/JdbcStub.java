@@ -0,0 +1,274 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Invocation handler for dynamic proxies which provide stub
+ * implementations of JDBC interfaces for testing.
+ * Methods not handled by the {@link #call call} method return
+ * null, zero or false as appropriate.
+ */
+abstract class JdbcStub implements InvocationHandler {
+
+    /** Return value from <code>call</code> indicating default behaviour. */
+    static final Object DEFAULT = new Object();
+
+    /**
+     * Handles a method invocation on the stub.
+     *
+     * @param  name  method name
+     * @param  args  method arguments, not null
+     * @return  method return value, or DEFAULT
+     */
+    abstract Object call( String name, Object[] args ) throws Exception;
+
+    /**
+     * Returns a proxy instance of a given interface which uses this
+     * handler.
+     *
+     * @param  clazz  interface
+     * @return  stub implementation
+     */
+    <T> T create( Class<T> clazz ) {
+        return clazz.cast( Proxy.newProxyInstance( clazz.getClassLoader(),
+                                                   new Class<?>[] { clazz },
+                                                   this ) );
+    }
+
+    public Object invoke( Object proxy, Method method, Object[] args )
+            throws Throwable {
+        String name = method.getName();
+        if ( args == null ) {
+            args = new Object[ 0 ];
+        }
+        if ( "equals".equals( name ) && args.length == 1 ) {
+            return Boolean.valueOf( proxy == args[ 0 ] );
+        }
+        else if ( "hashCode".equals( name ) && args.length == 0 ) {
+            return new Integer( System.identityHashCode( proxy ) );
+        }
+        else if ( "toString".equals( name ) && args.length == 0 ) {
+            return "Stub " + method.getDeclaringClass().getName();
+        }
+        Object result = call( name, args );
+        return result == DEFAULT ? getDefaultValue( method.getReturnType() )
+                                 : result;
+    }
+
+    /**
+     * Returns a forward-only result set stub supplying a given list of rows.
+     * Columns may be referenced by index or by name.
+     *
+     * @param  names  column names
+     * @param  clazzes  column content classes
+     * @param  rows   row data
+     * @return  new result set
+     */
+    static ResultSet createResultSet( final String[] names,
+                                      final Class<?>[] clazzes,
+                                      final List<Object[]> rows ) {
+        final ResultSetMetaData meta = new JdbcStub() {
+            Object call( String name, Object[] args ) {
+                if ( "getColumnCount".equals( name ) ) {
+                    return new Integer( names.length );
+                }
+                int jcol = args.length > 0 && args[ 0 ] instanceof Integer
+                         ? ((Integer) args[ 0 ]).intValue() - 1
+                         : -1;
+                if ( "getColumnName".equals( name ) ||
+                     "getColumnLabel".equals( name ) ) {
+                    return names[ jcol ];
+                }
+                else if ( "getColumnClassName".equals( name ) ) {
+                    return clazzes[ jcol ].getName();
+                }
+                else if ( "getColumnType".equals( name ) ) {
+                    return new Integer( getSqlType( clazzes[ jcol ] ) );
+                }
+                else if ( "isNullable".equals( name ) ) {
+                    return new Integer( ResultSetMetaData.columnNullable );
+                }
+                else {
+                    return DEFAULT;
+                }
+            }
+        }.create( ResultSetMetaData.class );
+        return new JdbcStub() {
+            int irow_ = -1;
+            boolean wasNull_;
+            boolean closed_;
+            Object call( String name, Object[] args ) throws SQLException {
+                if ( "getMetaData".equals( name ) ) {
+                    return meta;
+                }
+                else if ( "getType".equals( name ) ) {
+                    return new Integer( ResultSet.TYPE_FORWARD_ONLY );
+                }
+                else if ( "close".equals( name ) ) {
+                    closed_ = true;
+                    return null;
+                }
+                else if ( "isClosed".equals( name ) ) {
+                    return Boolean.valueOf( closed_ );
+                }
+                if ( closed_ ) {
+                    throw new SQLException( "Closed" );
+                }
+                if ( "next".equals( name ) ) {
+                    irow_ = Math.min( irow_ + 1, rows.size() );
+                    return Boolean.valueOf( irow_ < rows.size() );
+                }
+                else if ( "wasNull".equals( name ) ) {
+                    return Boolean.valueOf( wasNull_ );
+                }
+                else if ( name.startsWith( "get" ) && args.length == 1 ) {
+                    if ( irow_ < 0 || irow_ >= rows.size() ) {
+                        throw new SQLException( "No current row" );
+                    }
+                    int icol = args[ 0 ] instanceof Integer
+                             ? ((Integer) args[ 0 ]).intValue() - 1
+                             : getColumnIndex( names, (String) args[ 0 ] );
+                    Object value = rows.get( irow_ )[ icol ];
+                    wasNull_ = value == null;
+                    return convertValue( value, name.substring( 3 ) );
+                }
+                else {
+                    return DEFAULT;
+                }
+            }
+        }.create( ResultSet.class );
+    }
+
+    /**
+     * Returns the JDBC type code corresponding to a given class.
+     *
+     * @param  clazz  content class
+     * @return  {@link java.sql.Types} code
+     */
+    static int getSqlType( Class<?> clazz ) {
+        if ( clazz.equals( Short.class ) ) {
+            return Types.SMALLINT;
+        }
+        else if ( clazz.equals( Integer.class ) ) {
+            return Types.INTEGER;
+        }
+        else if ( clazz.equals( Long.class ) ) {
+            return Types.BIGINT;
+        }
+        else if ( clazz.equals( Float.class ) ) {
+            return Types.REAL;
+        }
+        else if ( clazz.equals( Double.class ) ) {
+            return Types.DOUBLE;
+        }
+        else if ( clazz.equals( Boolean.class ) ) {
+            return Types.BIT;
+        }
+        else if ( clazz.equals( String.class ) ) {
+            return Types.VARCHAR;
+        }
+        else {
+            return Types.OTHER;
+        }
+    }
+
+    /**
+     * Returns the index of a named column.
+     *
+     * @param  names  column names
+     * @param  name   required name, case-insensitive
+     * @return  column index
+     */
+    private static int getColumnIndex( String[] names, String name )
+            throws SQLException {
+        for ( int i = 0; i < names.length; i++ ) {
+            if ( names[ i ].equalsIgnoreCase( name ) ) {
+                return i;
+            }
+        }
+        throw new SQLException( "No column " + name );
+    }
+
+    /**
+     * Converts a cell value to the type implied by a ResultSet
+     * getter method name.
+     *
+     * @param  value  cell value, may be null
+     * @param  type   getter name without the "get" prefix
+     * @return  converted value
+     */
+    private static Object convertValue( Object value, String type ) {
+        if ( "Object".equals( type ) ) {
+            return value;
+        }
+        else if ( "String".equals( type ) ) {
+            return value == null ? null : value.toString();
+        }
+        else if ( "Boolean".equals( type ) ) {
+            return Boolean.valueOf( Boolean.TRUE.equals( value ) );
+        }
+        Number num = value == null ? new Integer( 0 ) : (Number) value;
+        if ( "Short".equals( type ) ) {
+            return new Short( num.shortValue() );
+        }
+        else if ( "Int".equals( type ) ) {
+            return new Integer( num.intValue() );
+        }
+        else if ( "Long".equals( type ) ) {
+            return new Long( num.longValue() );
+        }
+        else if ( "Float".equals( type ) ) {
+            return new Float( num.floatValue() );
+        }
+        else if ( "Double".equals( type ) ) {
+            return new Double( num.doubleValue() );
+        }
+        else {
+            throw new UnsupportedOperationException( "get" + type );
+        }
+    }
+
+    /**
+     * Returns the value returned by a stub method for which no
+     * behaviour has been defined.
+     *
+     * @param  clazz  method return type
+     * @return  null, zero or false
+     */
+    private static Object getDefaultValue( Class<?> clazz ) {
+        if ( clazz == boolean.class ) {
+            return Boolean.FALSE;
+        }
+        else if ( clazz == byte.class ) {
+            return new Byte( (byte) 0 );
+        }
+        else if ( clazz == short.class ) {
+            return new Short( (short) 0 );
+        }
+        else if ( clazz == int.class ) {
+            return new Integer( 0 );
+        }
+        else if ( clazz == long.class ) {
+            return new Long( 0L );
+        }
+        else if ( clazz == float.class ) {
+            return new Float( 0f );
+        }
+        else if ( clazz == double.class ) {
+            return new Double( 0.0 );
+        }
+        else if ( clazz == char.class ) {
+            return new Character( (char) 0 );
+        }
+        else {
+            return null;
+        }
+    }
+}
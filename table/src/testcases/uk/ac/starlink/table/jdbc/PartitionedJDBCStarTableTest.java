@@ -0,0 +1,652 @@
+package uk.ac.starlink.table.jdbc;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+
+public class PartitionedJDBCStarTableTest extends TestCase {
+
+    private static final String SQL = "SELECT * FROM t";
+
+    public PartitionedJDBCStarTableTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.table.jdbc" )
+              .setLevel( Level.SEVERE );
+    }
+
+    public void testConditions() {
+
+        /* Explicit boundaries. */
+        assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                      PartitionedJDBCStarTable
+                     .toConditions( "k", new ArrayList<String>() ) );
+        assertEquals( Arrays.asList( new String[] {
+                          "k < 1", "k >= 1 AND k < 2", "k >= 2",
+                      } ),
+                      PartitionedJDBCStarTable
+                     .toConditions( "k", Arrays.asList( new String[] {
+                          "1", "2",
+                      } ) ) );
+
+        /* Degenerate ranges. */
+        for ( int npart : new int[] { 1, 2, 5 } ) {
+            assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                          PartitionedJDBCStarTable
+                         .getIntConditions( "k", 5, 5, npart ) );
+            assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                          PartitionedJDBCStarTable
+                         .getFloatConditions( "k", 2.5, 2.5, npart ) );
+            assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                          PartitionedJDBCStarTable
+                         .getFloatConditions( "k", 0, Double.NaN, npart ) );
+            assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                          PartitionedJDBCStarTable
+                         .getFloatConditions( "k", Double.NaN, 1, npart ) );
+            assertEquals( Arrays.asList( new String[] { "k IS NOT NULL" } ),
+                          PartitionedJDBCStarTable
+                         .getFloatConditions( "k", -Double.MAX_VALUE,
+                                              Double.MAX_VALUE, npart ) );
+        }
+
+        /* Normal ranges; each boundary value goes in the upper partition. */
+        assertEquals( Arrays.asList( new String[] {
+                          "k < 25", "k >= 25 AND k < 50",
+                          "k >= 50 AND k < 75", "k >= 75",
+                      } ),
+                      PartitionedJDBCStarTable
+                     .getIntConditions( "k", 0, 99, 4 ) );
+        assertEquals( Arrays.asList( new String[] {
+                          "k < 0.25", "k >= 0.25 AND k < 0.5",
+                          "k >= 0.5 AND k < 0.75", "k >= 0.75",
+                      } ),
+                      PartitionedJDBCStarTable
+                     .getFloatConditions( "k", 0, 1, 4 ) );
+
+        /* Check that every value, including boundary values and values
+         * outside the range, is covered by exactly one condition. */
+        long[][] intRanges = new long[][] {
+            { 0, 99 },
+            { 0, 2 },
+            { -3, 3 },
+            { Long.MIN_VALUE, Long.MAX_VALUE },
+            { Long.MAX_VALUE - 1, Long.MAX_VALUE },
+            { Long.MIN_VALUE, Long.MIN_VALUE + 3 },
+            { 1000000000000000000L, 1000000000000000010L },
+        };
+        for ( long[] range : intRanges ) {
+            long min = range[ 0 ];
+            long max = range[ 1 ];
+            for ( int npart : new int[] { 1, 2, 3, 7, 100 } ) {
+                List<String> conds =
+                    PartitionedJDBCStarTable
+                   .getIntConditions( "k", min, max, npart );
+                assertTrue( conds.size() <= npart );
+                List<Long> values = new ArrayList<Long>();
+                for ( long v : new long[] { min, max, 0, -1, 1 } ) {
+                    for ( long d = -2; d <= 2; d++ ) {
+                        if ( ( d < 0 && v + d < v ) ||
+                             ( d >= 0 && v + d >= v ) ) {
+                            values.add( new Long( v + d ) );
+                        }
+                    }
+                }
+                for ( String cond : conds ) {
+                    Matcher m = Pattern.compile( "k >= (-?[0-9]+).*" )
+                                       .matcher( cond );
+                    if ( m.matches() ) {
+                        long bound = Long.parseLong( m.group( 1 ) );
+                        assertTrue( bound > min && bound <= max );
+                        values.add( new Long( bound - 1 ) );
+                        values.add( new Long( bound ) );
+                    }
+                }
+                for ( Long v : values ) {
+                    assertOnePartition( conds, v );
+                }
+            }
+        }
+        double[][] floatRanges = new double[][] {
+            { 0, 1 },
+            { -1e300, 1e300 },
+            { 0.1, 0.3 },
+            { 1, Math.nextUp( 1.0 ) },
+        };
+        for ( double[] range : floatRanges ) {
+            double min = range[ 0 ];
+            double max = range[ 1 ];
+            for ( int npart : new int[] { 1, 2, 3, 7, 100 } ) {
+                List<String> conds =
+                    PartitionedJDBCStarTable
+                   .getFloatConditions( "k", min, max, npart );
+                assertTrue( conds.size() <= npart );
+                List<Double> values = new ArrayList<Double>();
+                for ( double v : new double[] { min, max, 0 } ) {
+                    values.add( new Double( v ) );
+                    values.add( new Double( Math.nextUp( v ) ) );
+                    values.add( new Double( Math.nextDown( v ) ) );
+                }
+                for ( String cond : conds ) {
+                    Matcher m = Pattern.compile( "k >= ([^ ]+).*" )
+                                       .matcher( cond );
+                    if ( m.matches() ) {
+                        double bound = Double.parseDouble( m.group( 1 ) );
+                        assertTrue( bound > min && bound <= max );
+                        values.add( new Double( Math.nextDown( bound ) ) );
+                        values.add( new Double( bound ) );
+                    }
+                }
+                for ( Double v : values ) {
+                    assertOnePartition( conds, v );
+                }
+            }
+        }
+    }
+
+    public void testRead() throws Exception {
+        FakeDb db = new FakeDb( 3000, 23L );
+        for ( String keyCol : new String[] { "id", "x" } ) {
+            for ( int npart : new int[] { 1, 3, 8 } ) {
+                PartitionedJDBCStarTable table =
+                    new PartitionedJDBCStarTable( db.createConnector(), SQL,
+                                                  keyCol, npart, 100 );
+                assertEquals( 0, db.nOpen_.get() );
+                assertEquals( npart + 1, table.getPartitionSqls().length );
+                assertEquals( 3, table.getColumnCount() );
+                assertEquals( "id", table.getColumnInfo( 0 ).getName() );
+                assertEquals( Double.class,
+                              table.getColumnInfo( 1 ).getContentClass() );
+                assertEquals( -1, table.getRowCount() );
+                assertFalse( table.isRandom() );
+
+                /* Concurrent row sequence. */
+                RowSequence rseq = table.getRowSequence();
+                List<String> rows = new ArrayList<String>();
+                while ( rseq.next() ) {
+                    assertEquals( rseq.getRow()[ 2 ], rseq.getCell( 2 ) );
+                    rows.add( Arrays.asList( rseq.getRow() ).toString() );
+                }
+                assertFalse( rseq.next() );
+                rseq.close();
+                assertEquals( db.getSortedRows(), sort( rows ) );
+                assertEquals( 0, db.nOpen_.get() );
+
+                /* Split row sequences. */
+                List<RowSplittable> splits = new ArrayList<RowSplittable>();
+                splits.add( table.getRowSplittable() );
+                for ( int i = 0; i < splits.size(); i++ ) {
+                    RowSplittable other;
+                    while ( ( other = splits.get( i ).split() ) != null ) {
+                        splits.add( other );
+                    }
+                }
+                assertEquals( npart + 1, splits.size() );
+                rows = new ArrayList<String>();
+                for ( RowSplittable split : splits ) {
+                    while ( split.next() ) {
+                        rows.add( Arrays.asList( split.getRow() ).toString() );
+                    }
+                    split.close();
+                }
+                assertEquals( db.getSortedRows(), sort( rows ) );
+                assertEquals( 0, db.nOpen_.get() );
+            }
+        }
+    }
+
+    public void testError() throws Exception {
+        FakeDb db = new FakeDb( 20000, 5L );
+        PartitionedJDBCStarTable table =
+            new PartitionedJDBCStarTable( db.createConnector(), SQL,
+                                          "id", 4, 100 );
+        String failSql = table.getPartitionSqls()[ 2 ];
+        db.failCond_ = failSql.substring( failSql.indexOf( " WHERE " ) + 7 );
+
+        /* SQL failure.  The concurrent sequence is closed following
+         * the error. */
+        db.failError_ = new SQLException( "Read failure" );
+        RowSequence rseq = table.getRowSequence();
+        IOException err = readError( rseq );
+        assertSame( db.failError_, err.getCause() );
+        assertFalse( rseq.next() );
+        waitForClose( db );
+        err = readError( table.getRowSplittable() );
+        assertSame( db.failError_, err.getCause() );
+        assertEquals( 0, db.nOpen_.get() );
+
+        /* Unchecked failure. */
+        db.failError_ = new IllegalStateException( "Unexpected failure" );
+        err = readError( table.getRowSequence() );
+        assertSame( db.failError_, err.getCause() );
+        waitForClose( db );
+
+        /* Connection failure. */
+        db.failError_ = null;
+        db.failCond_ = null;
+        db.nConnectFail_ = 1;
+        err = readError( table.getRowSequence() );
+        assertEquals( "Connection failure", err.getMessage() );
+        waitForClose( db );
+    }
+
+    public void testClose() throws Exception {
+        FakeDb db = new FakeDb( 50000, 99L );
+        PartitionedJDBCStarTable table =
+            new PartitionedJDBCStarTable( db.createConnector(), SQL,
+                                          "id", 4, 100 );
+
+        /* Partition threads will be blocked waiting for the consumer. */
+        RowSequence rseq = table.getRowSequence();
+        assertTrue( rseq.next() );
+        assertEquals( 3, rseq.getRow().length );
+        Thread.sleep( 100 );
+        assertTrue( db.nOpen_.get() > 0 );
+        rseq.close();
+        assertFalse( rseq.next() );
+        try {
+            rseq.getRow();
+            fail();
+        }
+        catch ( NoSuchElementException e ) {
+        }
+        waitForClose( db );
+
+        RowSplittable split = table.getRowSplittable();
+        assertTrue( split.next() );
+        assertEquals( 1, db.nOpen_.get() );
+        split.close();
+        assertFalse( split.next() );
+        assertEquals( 0, db.nOpen_.get() );
+    }
+
+    public void testHandler() throws Exception {
+        FakeDb db = new FakeDb( 1000, 44L );
+        Driver driver = new FakeDriver( db );
+        DriverManager.registerDriver( driver );
+        String url = FakeDriver.URL_PREFIX + "db#" + SQL;
+        String keyProp = PartitionedJDBCStarTable.KEY_PROPERTY;
+        String npartProp = PartitionedJDBCStarTable.PARTITIONS_PROPERTY;
+        try {
+            JDBCHandler handler = new JDBCHandler();
+            assertTrue( handler.makeStarTable( url, false )
+                        instanceof JDBCStarTable );
+            System.setProperty( keyProp, "id" );
+            assertTrue( handler.makeStarTable( url, false )
+                        instanceof JDBCStarTable );
+            System.setProperty( npartProp, "3" );
+            StarTable table = handler.makeStarTable( url, false );
+            assertTrue( table instanceof PartitionedJDBCStarTable );
+            assertEquals( 4, ((PartitionedJDBCStarTable) table)
+                            .getPartitionSqls().length );
+            RowSequence rseq = table.getRowSequence();
+            List<String> rows = new ArrayList<String>();
+            while ( rseq.next() ) {
+                rows.add( Arrays.asList( rseq.getRow() ).toString() );
+            }
+            rseq.close();
+            assertEquals( db.getSortedRows(), sort( rows ) );
+
+            /* Fall back to a normal table if partitioning is not possible
+             * or not appropriate. */
+            assertFalse( handler.makeStarTable( url, true )
+                         instanceof PartitionedJDBCStarTable );
+            System.setProperty( keyProp, "no_such_column" );
+            assertTrue( handler.makeStarTable( url, false )
+                        instanceof JDBCStarTable );
+        }
+        finally {
+            System.clearProperty( keyProp );
+            System.clearProperty( npartProp );
+            DriverManager.deregisterDriver( driver );
+        }
+    }
+
+    /**
+     * Asserts that a given value satisfies exactly one of a list of
+     * partition conditions.
+     */
+    private static void assertOnePartition( List<String> conds,
+                                            Number value ) {
+        int nmatch = 0;
+        for ( String cond : conds ) {
+            if ( FakeDb.matches( cond, "k", value ) ) {
+                nmatch++;
+            }
+        }
+        assertEquals( value + " in " + conds, 1, nmatch );
+    }
+
+    /**
+     * Reads a row sequence to the end, expecting it to fail,
+     * closes it, and returns the resulting exception.
+     */
+    private static IOException readError( RowSequence rseq )
+            throws IOException {
+        try {
+            while ( rseq.next() ) {
+                rseq.getRow();
+            }
+            fail();
+            return null;
+        }
+        catch ( IOException e ) {
+            rseq.close();
+            return e;
+        }
+    }
+
+    /**
+     * Waits for all the connections of a fake database to be closed,
+     * failing if it takes too long.
+     */
+    private static void waitForClose( FakeDb db )
+            throws InterruptedException {
+        for ( int i = 0; i < 1000 && db.nOpen_.get() > 0; i++ ) {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 0, db.nOpen_.get() );
+    }
+
+    private static List<String> sort( List<String> list ) {
+        Collections.sort( list );
+        return list;
+    }
+
+    /**
+     * Minimal in-memory database which serves the queries made by
+     * PartitionedJDBCStarTable for a single table with columns
+     * id (Long), x (Double) and name (String).
+     */
+    private static class FakeDb {
+        final List<Object[]> rows_;
+        final AtomicInteger nOpen_;
+        volatile String failCond_;
+        volatile Throwable failError_;
+        volatile int nConnectFail_;
+        static final String[] NAMES = new String[] { "id", "x", "name" };
+        static final Class<?>[] CLAZZES =
+            new Class<?>[] { Long.class, Double.class, String.class };
+        static final int FAIL_ROW = 10;
+
+        FakeDb( int nrow, long seed ) {
+            Random rnd = new Random( seed );
+            rows_ = new ArrayList<Object[]>();
+            for ( int i = 0; i < nrow; i++ ) {
+                Long id = rnd.nextInt( 20 ) == 0 ? null : new Long( i );
+                Double x = rnd.nextInt( 20 ) == 0
+                         ? null
+                         : new Double( rnd.nextInt( 1000 ) * 0.25 - 100 );
+                rows_.add( new Object[] { id, x, "row" + i } );
+            }
+            nOpen_ = new AtomicInteger();
+        }
+
+        List<String> getSortedRows() {
+            List<String> list = new ArrayList<String>();
+            for ( Object[] row : rows_ ) {
+                list.add( Arrays.asList( row ).toString() );
+            }
+            return sort( list );
+        }
+
+        Connector createConnector() {
+            return new Connector() {
+                public Connection getConnection() throws SQLException {
+                    return createConnection();
+                }
+            };
+        }
+
+        Connection createConnection() throws SQLException {
+            if ( nConnectFail_ > 0 ) {
+                nConnectFail_--;
+                throw new SQLException( "Connection failure" );
+            }
+            nOpen_.incrementAndGet();
+            final DatabaseMetaData meta = new JdbcStub() {
+                Object call( String name, Object[] args ) {
+                    if ( "getURL".equals( name ) ) {
+                        return "jdbc:fake";
+                    }
+                    else if ( "getDriverName".equals( name ) ) {
+                        return "Fake";
+                    }
+                    else {
+                        return DEFAULT;
+                    }
+                }
+            }.create( DatabaseMetaData.class );
+            final Statement stmt = new JdbcStub() {
+                Object call( String name, Object[] args )
+                        throws SQLException {
+                    return "executeQuery".equals( name )
+                         ? executeQuery( (String) args[ 0 ] )
+                         : DEFAULT;
+                }
+            }.create( Statement.class );
+            return new JdbcStub() {
+                boolean closed_;
+                Object call( String name, Object[] args ) {
+                    if ( "getMetaData".equals( name ) ) {
+                        return meta;
+                    }
+                    else if ( "createStatement".equals( name ) ) {
+                        return stmt;
+                    }
+                    else if ( "getAutoCommit".equals( name ) ) {
+                        return Boolean.TRUE;
+                    }
+                    else if ( "close".equals( name ) ) {
+                        if ( ! closed_ ) {
+                            closed_ = true;
+                            nOpen_.decrementAndGet();
+                        }
+                        return null;
+                    }
+                    else {
+                        return DEFAULT;
+                    }
+                }
+            }.create( Connection.class );
+        }
+
+        ResultSet executeQuery( String sql ) throws SQLException {
+            Matcher aggMatcher =
+                Pattern.compile( "SELECT MIN\\((.*)\\), MAX\\((.*)\\), "
+                               + "COUNT\\(\\*\\) FROM \\((.*)\\) q" )
+                       .matcher( sql );
+            Matcher selMatcher =
+                Pattern.compile( "SELECT \\* FROM \\((.*)\\) q WHERE (.*)" )
+                       .matcher( sql );
+            if ( SQL.equals( sql ) ) {
+                return JdbcStub.createResultSet( NAMES, CLAZZES, rows_ );
+            }
+            else if ( aggMatcher.matches() ) {
+                assertEquals( SQL, aggMatcher.group( 3 ) );
+                int icol = getColumnIndex( aggMatcher.group( 1 ) );
+                Comparable<Object> min = null;
+                Comparable<Object> max = null;
+                for ( Object[] row : rows_ ) {
+                    @SuppressWarnings("unchecked")
+                    Comparable<Object> value = (Comparable<Object>) row[ icol ];
+                    if ( value != null ) {
+                        if ( min == null || value.compareTo( min ) < 0 ) {
+                            min = value;
+                        }
+                        if ( max == null || value.compareTo( max ) > 0 ) {
+                            max = value;
+                        }
+                    }
+                }
+                List<Object[]> aggRows = new ArrayList<Object[]>();
+                aggRows.add( new Object[] {
+                    min, max, new Long( rows_.size() ),
+                } );
+                return JdbcStub.createResultSet(
+                    new String[] { "min", "max", "count" },
+                    new Class<?>[] { CLAZZES[ icol ], CLAZZES[ icol ],
+                                     Long.class },
+                    aggRows );
+            }
+            else if ( selMatcher.matches() ) {
+                assertEquals( SQL, selMatcher.group( 1 ) );
+                String cond = selMatcher.group( 2 );
+                List<Object[]> selRows = new ArrayList<Object[]>();
+                if ( ! "1=0".equals( cond ) ) {
+                    String keyCol = cond.substring( 0, cond.indexOf( ' ' ) );
+                    int icol = getColumnIndex( keyCol );
+                    for ( Object[] row : rows_ ) {
+                        if ( matches( cond, keyCol, row[ icol ] ) ) {
+                            selRows.add( row );
+                        }
+                    }
+                }
+                ResultSet rset =
+                    JdbcStub.createResultSet( NAMES, CLAZZES, selRows );
+                return cond.equals( failCond_ ) && failError_ != null
+                     ? createFailingResultSet( rset, failError_ )
+                     : rset;
+            }
+            else {
+                throw new SQLException( "Unsupported query: " + sql );
+            }
+        }
+
+        static int getColumnIndex( String name ) throws SQLException {
+            int icol = Arrays.asList( NAMES ).indexOf( name );
+            if ( icol < 0 ) {
+                throw new SQLException( "No column " + name );
+            }
+            return icol;
+        }
+
+        /**
+         * Evaluates an SQL condition of the form produced by
+         * PartitionedJDBCStarTable for a given value.
+         */
+        static boolean matches( String cond, String keyCol, Object value ) {
+            if ( cond.equals( keyCol + " IS NULL" ) ) {
+                return value == null;
+            }
+            else if ( cond.equals( keyCol + " IS NOT NULL" ) ) {
+                return value != null;
+            }
+            else if ( value == null ) {
+                return false;
+            }
+            Pattern termRegex =
+                Pattern.compile( Pattern.quote( keyCol ) + " (<|>=) (.*)" );
+            for ( String term : cond.split( " AND " ) ) {
+                Matcher m = termRegex.matcher( term );
+                assertTrue( term, m.matches() );
+                String bound = m.group( 2 );
+                int c = value instanceof Long
+                      ? Long.compare( ((Long) value).longValue(),
+                                      Long.parseLong( bound ) )
+                      : Double.compare( ((Number) value).doubleValue(),
+                                        Double.parseDouble( bound ) );
+                if ( "<".equals( m.group( 1 ) ) ? c >= 0 : c < 0 ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns a result set which fails with a given error after
+         * a few rows.
+         */
+        static ResultSet createFailingResultSet( final ResultSet base,
+                                                 final Throwable error ) {
+            InvocationHandler handler = new InvocationHandler() {
+                int nrow_;
+                public Object invoke( Object proxy, Method method,
+                                      Object[] args ) throws Throwable {
+                    if ( "next".equals( method.getName() ) &&
+                         ++nrow_ > FAIL_ROW ) {
+                        throw error;
+                    }
+                    try {
+                        return method.invoke( base, args );
+                    }
+                    catch ( InvocationTargetException e ) {
+                        throw e.getCause();
+                    }
+                }
+            };
+            return (ResultSet)
+                   Proxy.newProxyInstance( ResultSet.class.getClassLoader(),
+                                           new Class<?>[] { ResultSet.class },
+                                           handler );
+        }
+    }
+
+    /**
+     * JDBC driver which supplies connections to a fake database.
+     */
+    private static class FakeDriver implements Driver {
+        final FakeDb db_;
+        static final String URL_PREFIX = "jdbc:partfake:";
+
+        FakeDriver( FakeDb db ) {
+            db_ = db;
+        }
+
+        public boolean acceptsURL( String url ) {
+            return url.startsWith( URL_PREFIX );
+        }
+
+        public Connection connect( String url, Properties info )
+                throws SQLException {
+            return acceptsURL( url ) ? db_.createConnection() : null;
+        }
+
+        public DriverPropertyInfo[] getPropertyInfo( String url,
+                                                     Properties info ) {
+            return new DriverPropertyInfo[ 0 ];
+        }
+
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        public Logger getParentLogger()
+                throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
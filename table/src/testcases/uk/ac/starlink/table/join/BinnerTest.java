@@ -1,5 +1,8 @@
 package uk.ac.starlink.table.join;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -23,6 +26,103 @@ public class BinnerTest extends TestCase {
         }
     }
 
+    public void testPrimitiveLongBinner() throws IOException {
+        exercisePrimitive( PrimitiveLongBinner.Allocator.HEAP, 50000, 1000 );
+        exercisePrimitive( PrimitiveLongBinner.Allocator.HEAP, 1200000,
+                           600000 );
+        exercisePrimitive( PrimitiveLongBinner.Allocator
+                                              .createMappedAllocator(),
+                           1200000, 600000 );
+
+        /* Check that mapped storage does not hold file descriptors open. */
+        assertEquals( 0, countOpenFiles( "PrimitiveLongBinner" ) );
+    }
+
+    /**
+     * Returns the number of file descriptors open by this process
+     * on files whose names contain a given string.
+     * If it can't be determined on this platform, zero is returned.
+     */
+    private static int countOpenFiles( String txt ) throws IOException {
+        File[] fds = new File( "/proc/self/fd" ).listFiles();
+        int n = 0;
+        if ( fds != null ) {
+            for ( File fd : fds ) {
+                try {
+                    if ( Files.readSymbolicLink( fd.toPath() ).toString()
+                        .indexOf( txt ) >= 0 ) {
+                        n++;
+                    }
+                }
+                catch ( IOException e ) {
+                    // descriptor closed while listing
+                }
+            }
+        }
+        return n;
+    }
+
+    private void exercisePrimitive( PrimitiveLongBinner.Allocator alloc,
+                                    int nitem, int nkey ) {
+        LongBinner pBinner = Binners.createLongBinner( nitem, alloc );
+        LongBinner mBinner = Binners.createMapLongBinner( nitem );
+        for ( int i = 0; i < nitem; i++ ) {
+            Object key = i % 1000 == 0
+                       ? (Object) ( "K" + rnd_.nextInt( 10 ) )
+                       : (Object) new Long( rnd_.nextInt( nkey ) * 12345L );
+            pBinner.addItem( key, i );
+            mBinner.addItem( key, i );
+        }
+        assertEquals( mBinner.getBinCount(), pBinner.getBinCount() );
+        for ( Iterator it = mBinner.getKeyIterator(); it.hasNext(); ) {
+            Object key = it.next();
+            assertArrayEquals( mBinner.getLongs( key ),
+                               pBinner.getLongs( key ) );
+        }
+        assertNull( pBinner.getLongs( new Long( -1 ) ) );
+        long nb = pBinner.getBinCount();
+        int nrem = 0;
+        for ( Iterator it = pBinner.getKeyIterator(); it.hasNext(); ) {
+            Object key = it.next();
+            assertNotNull( pBinner.getLongs( key ) );
+            if ( nrem % 3 == 0 ) {
+                it.remove();
+                assertNull( pBinner.getLongs( key ) );
+            }
+            nrem++;
+        }
+        assertEquals( nb, nrem );
+        assertEquals( nb - ( nb + 2 ) / 3, pBinner.getBinCount() );
+    }
+
+    public void testAddContent() {
+        for ( int i = 1; i < 100; i++ ) {
+            exerciseAddContent( i, -1 );
+            exerciseAddContent( i, i * 3 );
+        }
+    }
+
+    private void exerciseAddContent( int count, long nrow ) {
+        LongBinner b0 = Binners.createLongBinner( nrow );
+        LongBinner b1 = Binners.createLongBinner( nrow );
+        LongBinner b2 = Binners.createLongBinner( nrow );
+        for ( int i = 0; i < count; i++ ) {
+            Integer key = new Integer( rnd_.nextInt( 10 ) );
+            long ltem = (long) i;
+            b0.addItem( key, ltem );
+            ( i % 2 == 0 ? b1 : b2 ).addItem( key, ltem );
+        }
+        b1.addContent( b2 );
+        assertEquals( b0.getBinCount(), b1.getBinCount() );
+        for ( Iterator it = b0.getKeyIterator(); it.hasNext(); ) {
+            Object key = it.next();
+            long[] items0 = b0.getLongs( key );
+            long[] items1 = b1.getLongs( key );
+            Arrays.sort( items1 );
+            assertArrayEquals( items0, items1 );
+        }
+    }
+
     private void exerciseLongBinner( LongBinner binner, int count ) {
         String[] keys = new String[] { "A", "B", };
         long[] a1 = new long[ count * 2 ];
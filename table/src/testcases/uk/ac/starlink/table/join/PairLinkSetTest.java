@@ -0,0 +1,130 @@
+package uk.ac.starlink.table.join;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class PairLinkSetTest extends TestCase {
+
+    private final Random rnd_;
+
+    public PairLinkSetTest( String name ) {
+        super( name );
+        rnd_ = new Random( 558822L );
+    }
+
+    public void testOperations() {
+        LinkSet hset = new HashSetLinkSet();
+        LinkSet pset = new PairLinkSet();
+        for ( int i = 0; i < 5000; i++ ) {
+            RowLink link = createLink( 300 );
+            hset.addLink( link );
+            pset.addLink( link );
+            if ( i % 7 == 0 ) {
+                RowLink other = createLink( 300 );
+                assertEquals( hset.containsLink( other ),
+                              pset.containsLink( other ) );
+                assertEquals( hset.removeLink( other ),
+                              pset.removeLink( other ) );
+            }
+        }
+        assertEquals( hset.size(), pset.size() );
+        assertSameLinks( hset, pset );
+        int ir = 0;
+        for ( Iterator<RowLink> it = pset.iterator(); it.hasNext(); ) {
+            RowLink link = it.next();
+            if ( ir++ % 3 == 0 ) {
+                it.remove();
+                assertTrue( hset.removeLink( link ) );
+                assertFalse( pset.containsLink( link ) );
+            }
+        }
+        assertSameLinks( hset, pset );
+
+        PairLinkSet pset2 = new PairLinkSet();
+        for ( int i = 0; i < 1000; i++ ) {
+            RowLink link = createLink( 300 );
+            hset.addLink( link );
+            pset2.addLink( link );
+        }
+        int nent = ((PairLinkSet) pset).getEntryCount()
+                 + pset2.getEntryCount();
+        ((PairLinkSet) pset).addAll( pset2 );
+        assertEquals( 0, pset2.size() );
+        assertEquals( nent, ((PairLinkSet) pset).getEntryCount() );
+        assertTrue( pset.size() <= nent );
+        assertSameLinks( hset, pset );
+
+        try {
+            pset.addLink( new RowLink( new RowRef[] {
+                new RowRef( 0, 1 ), new RowRef( 2, 1 ),
+            } ) );
+            fail();
+        }
+        catch ( IllegalArgumentException e ) {
+        }
+    }
+
+    public void testEliminate() throws InterruptedException {
+        RowMatcher matcher = new RowMatcher( null, new StarTable[ 0 ] );
+        LinkSet hset = new HashSetLinkSet();
+        LinkSet pset = new PairLinkSet();
+        for ( int i = 0; i < 10000; i++ ) {
+            long r0 = rnd_.nextInt( 800 );
+            long r1 = rnd_.nextInt( 800 );
+            RowLink2 link = new RowLink2( new RowRef( 0, r0 ),
+                                          new RowRef( 1, r1 ) );
+            link.setScore( ( ( r0 * 31 + r1 ) % 50 ) * 0.25 );
+            hset.addLink( link );
+            pset.addLink( link );
+        }
+        hset = matcher.eliminateMultipleRowEntries( hset );
+        pset = matcher.eliminateMultipleRowEntries( pset );
+        assertTrue( pset instanceof PairLinkSet );
+        assertTrue( hset.size() > 100 );
+        assertSameLinks( hset, pset );
+    }
+
+    private RowLink createLink( int nrow ) {
+        int type = rnd_.nextInt( 4 );
+        if ( type == 0 ) {
+            return new RowLink( new RowRef( 0, rnd_.nextInt( nrow ) ) );
+        }
+        else if ( type == 1 ) {
+            return new RowLink( new RowRef( 1, rnd_.nextInt( nrow ) ) );
+        }
+        else {
+            long r0 = rnd_.nextInt( nrow );
+            long r1 = rnd_.nextInt( nrow );
+            RowLink2 link = new RowLink2( new RowRef( 0, r0 ),
+                                          new RowRef( 1, r1 ) );
+            link.setScore( ( r0 + r1 ) * 0.5 );
+            return link;
+        }
+    }
+
+    private void assertSameLinks( LinkSet hset, LinkSet pset ) {
+        assertTrue( pset.sort() );
+        assertTrue( hset.sort() );
+        List<RowLink> hlist = new ArrayList<RowLink>();
+        for ( RowLink link : hset ) {
+            hlist.add( link );
+        }
+        List<RowLink> plist = new ArrayList<RowLink>();
+        for ( RowLink link : pset ) {
+            plist.add( link );
+        }
+        assertEquals( hlist, plist );
+        for ( int i = 0; i < hlist.size(); i++ ) {
+            RowLink hlink = hlist.get( i );
+            RowLink plink = plist.get( i );
+            if ( hlink instanceof RowLink2 ) {
+                assertEquals( ((RowLink2) hlink).getScore(),
+                              ((RowLink2) plink).getScore() );
+            }
+        }
+    }
+}
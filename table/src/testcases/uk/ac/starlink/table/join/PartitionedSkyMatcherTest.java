@@ -0,0 +1,151 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.JoinFixAction;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.WrapperStarTable;
+
+public class PartitionedSkyMatcherTest extends TestCase {
+
+    public void testMatch() throws IOException, InterruptedException {
+        double sep = 0.0005;
+        StarTable t0 = createTable( 3000, 23L );
+        StarTable t1 = createTable( 2500, 99L );
+        StarTable[] tables = new StarTable[] { t0, t1 };
+        StarTable[] tupleTables = new StarTable[] {
+            new ColumnPermutedStarTable( t0, new int[] { 1, 2 } ),
+            new ColumnPermutedStarTable( t1, new int[] { 1, 2 } ),
+        };
+        MatchEngine engine =
+            new FixedSkyMatchEngine( new CdsHealpixSkyPixellator(), sep );
+        JoinFixAction[] fixActs = new JoinFixAction[] {
+            JoinFixAction.makeRenameDuplicatesAction( "_1" ),
+            JoinFixAction.makeRenameDuplicatesAction( "_2" ),
+        };
+        for ( PairMode mode : PairMode.values() ) {
+            RowMatcher matcher = new RowMatcher( engine, tupleTables );
+            Set<String> expected = new HashSet<String>();
+            for ( RowLink link : matcher.findPairMatches( mode ) ) {
+                expected.add( link.getRef( 0 ).getRowIndex() + ":"
+                            + link.getRef( 1 ).getRowIndex() );
+            }
+            assertTrue( expected.size() > 100 );
+            for ( int k : new int[] { 2, 5 } ) {
+                for ( StoragePolicy policy :
+                      new StoragePolicy[] { StoragePolicy.PREFER_MEMORY,
+                                            StoragePolicy.PREFER_DISK } ) {
+                    PartitionedSkyMatcher pmatcher =
+                        new PartitionedSkyMatcher( engine, tupleTables, sep );
+                    pmatcher.setPartitionK( k );
+                    pmatcher.setStoragePolicy( policy );
+                    if ( policy == StoragePolicy.PREFER_DISK ) {
+                        pmatcher.setBufferLimit( 0 );
+                    }
+                    pmatcher.setRowRunner( RowRunner.SEQUENTIAL );
+                    StarTable joined =
+                        pmatcher.makeJoinTable( tables, mode, fixActs,
+                                                engine.getMatchScoreInfo() );
+                    assertEquals( 7, joined.getColumnCount() );
+                    assertEquals( "id_1", joined.getColumnInfo( 0 ).getName() );
+                    for ( int iread = 0; iread < 2; iread++ ) {
+                        Set<String> got = new HashSet<String>();
+                        long nrow = 0;
+                        RowSequence rseq = joined.getRowSequence();
+                        while ( rseq.next() ) {
+                            Object[] row = rseq.getRow();
+                            assertTrue( ((Double) row[ 6 ]).doubleValue()
+                                        >= 0 );
+                            got.add( row[ 0 ] + ":" + row[ 3 ] );
+                            nrow++;
+                        }
+                        rseq.close();
+                        assertEquals( expected, got );
+                        assertEquals( expected.size(), nrow );
+                        if ( mode == PairMode.BEST ) {
+                            assertEquals( nrow, joined.getRowCount() );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSinglePass() throws IOException, InterruptedException {
+        double sep = 0.0005;
+        CountingTable t0 = new CountingTable( createTable( 1000, 5L ) );
+        CountingTable t1 = new CountingTable( createTable( 800, 6L ) );
+        StarTable[] tables = new StarTable[] { t0, t1 };
+        StarTable[] tupleTables = new StarTable[] {
+            new ColumnPermutedStarTable( t0, new int[] { 1, 2 } ),
+            new ColumnPermutedStarTable( t1, new int[] { 1, 2 } ),
+        };
+        MatchEngine engine =
+            new FixedSkyMatchEngine( new CdsHealpixSkyPixellator(), sep );
+        PartitionedSkyMatcher pmatcher =
+            new PartitionedSkyMatcher( engine, tupleTables, sep );
+        pmatcher.setStoragePolicy( StoragePolicy.PREFER_DISK );
+        pmatcher.setBufferLimit( 0 );
+        JoinFixAction[] fixActs = new JoinFixAction[] {
+            JoinFixAction.NO_ACTION, JoinFixAction.NO_ACTION,
+        };
+        StarTable joined =
+            pmatcher.makeJoinTable( tables, PairMode.ALL, fixActs, null );
+        assertEquals( 1, t0.nseq_ );
+        assertEquals( 1, t1.nseq_ );
+        RowSequence rseq = joined.getRowSequence();
+        assertTrue( rseq.next() );
+        rseq.close();
+        assertEquals( 1, t0.nseq_ );
+        rseq = joined.getRowSequence();
+        while ( rseq.next() ) {
+        }
+        rseq.close();
+        assertEquals( 2, t0.nseq_ );
+        assertEquals( 2, t1.nseq_ );
+    }
+
+    /**
+     * Table wrapper that counts the row sequences taken out on it.
+     */
+    private static class CountingTable extends WrapperStarTable {
+        int nseq_;
+        CountingTable( StarTable base ) {
+            super( base );
+        }
+        public RowSequence getRowSequence() throws IOException {
+            nseq_++;
+            return super.getRowSequence();
+        }
+    }
+
+    /**
+     * Returns a table with columns id, ra, dec, positions in radians
+     * lying in a patch of sky that straddles several tiles.
+     */
+    private static StarTable createTable( int nrow, long seed ) {
+        Random rnd = new Random( seed );
+        int[] ids = new int[ nrow ];
+        double[] ras = new double[ nrow ];
+        double[] decs = new double[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ids[ i ] = i;
+            ras[ i ] = 0.7 + rnd.nextDouble() * 0.15;
+            decs[ i ] = -0.05 + rnd.nextDouble() * 0.15;
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "id", ids ) );
+        table.addColumn( ArrayColumn.makeColumn( "ra", ras ) );
+        table.addColumn( ArrayColumn.makeColumn( "dec", decs ) );
+        return table;
+    }
+}
@@ -0,0 +1,135 @@
+package uk.ac.starlink.table.join;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.StarTable;
+
+public class RowMatcherTest extends TestCase {
+
+    public RowMatcherTest( String name ) {
+        super( name );
+    }
+
+    public void testParallelSky() throws IOException, InterruptedException {
+        StarTable[] tables = new StarTable[] {
+            createTable( 6000, 23L ),
+            createTable( 5000, 99L ),
+        };
+        StarTable[] skyTables = new StarTable[] {
+            new ColumnPermutedStarTable( tables[ 0 ], new int[] { 1, 2 } ),
+            new ColumnPermutedStarTable( tables[ 1 ], new int[] { 1, 2 } ),
+        };
+        MatchEngine engine =
+            new FixedSkyMatchEngine( new CdsHealpixSkyPixellator(), 0.0005 );
+        assertParallelEquivalent( engine, skyTables );
+    }
+
+    public void testParallelCartesian()
+            throws IOException, InterruptedException {
+        StarTable[] tables = new StarTable[] {
+            createTable( 4000, 5L ),
+            createTable( 7000, 6L ),
+        };
+        StarTable[] xyTables = new StarTable[] {
+            new ColumnPermutedStarTable( tables[ 0 ], new int[] { 1, 2 } ),
+            new ColumnPermutedStarTable( tables[ 1 ], new int[] { 1, 2 } ),
+        };
+        MatchEngine engine =
+            new IsotropicCartesianMatchEngine( 2, 0.001, false );
+        assertParallelEquivalent( engine, xyTables );
+    }
+
+    public void testParallelEquals() throws IOException, InterruptedException {
+        StarTable[] tables = new StarTable[] {
+            createTable( 3000, 11L ),
+            createTable( 3000, 12L ),
+        };
+        StarTable[] keyTables = new StarTable[] {
+            new ColumnPermutedStarTable( tables[ 0 ], new int[] { 3 } ),
+            new ColumnPermutedStarTable( tables[ 1 ], new int[] { 3 } ),
+        };
+        assertParallelEquivalent( new EqualsMatchEngine(), keyTables );
+    }
+
+    /**
+     * Checks that pair matches found using parallel row runners
+     * are the same as those found sequentially, for all pair modes.
+     */
+    private void assertParallelEquivalent( MatchEngine engine,
+                                           StarTable[] tables )
+            throws IOException, InterruptedException {
+        for ( PairMode mode : PairMode.values() ) {
+            List<String> seqLinks =
+                getLinks( engine, tables, mode, RowRunner.SEQUENTIAL );
+            assertTrue( seqLinks.size() > 20 );
+            for ( RowRunner runner :
+                  new RowRunner[] { RowRunner.DEFAULT, RowRunner.PARTEST } ) {
+                assertEquals( mode + " " + runner, seqLinks,
+                              getLinks( engine, tables, mode, runner ) );
+            }
+        }
+    }
+
+    /**
+     * Returns a sorted list of string representations of the links
+     * found by a pair match, including the match scores.
+     */
+    private static List<String> getLinks( MatchEngine engine,
+                                          StarTable[] tables, PairMode mode,
+                                          RowRunner runner )
+            throws IOException, InterruptedException {
+        RowMatcher matcher = new RowMatcher( engine, tables );
+        assertSame( RowRunner.SEQUENTIAL, matcher.getRowRunner() );
+        matcher.setRowRunner( runner );
+        LinkSet linkSet = matcher.findPairMatches( mode );
+        linkSet.sort();
+        List<String> links = new ArrayList<String>();
+        for ( RowLink link : linkSet ) {
+            StringBuffer sbuf = new StringBuffer();
+            for ( int i = 0; i < link.size(); i++ ) {
+                RowRef ref = link.getRef( i );
+                sbuf.append( ref.getTableIndex() )
+                    .append( ':' )
+                    .append( ref.getRowIndex() )
+                    .append( ' ' );
+            }
+            if ( link instanceof RowLink2 ) {
+                sbuf.append( ((RowLink2) link).getScore() );
+            }
+            links.add( sbuf.toString() );
+        }
+        return links;
+    }
+
+    /**
+     * Returns a table with columns id, x, y, key.
+     * The x and y values are small enough to be used as
+     * sky positions in radians, and key is a small integer.
+     */
+    private static StarTable createTable( int nrow, long seed ) {
+        Random rnd = new Random( seed );
+        int[] ids = new int[ nrow ];
+        double[] xs = new double[ nrow ];
+        double[] ys = new double[ nrow ];
+        int[] keys = new int[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            ids[ i ] = i;
+            xs[ i ] = 0.7 + rnd.nextDouble() * 0.1;
+            ys[ i ] = -0.05 + rnd.nextDouble() * 0.1;
+            keys[ i ] = rnd.nextInt( 5000 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "id", ids ) );
+        table.addColumn( ArrayColumn.makeColumn( "x", xs ) );
+        table.addColumn( ArrayColumn.makeColumn( "y", ys ) );
+        table.addColumn( ArrayColumn.makeColumn( "key", keys ) );
+        return table;
+    }
+}
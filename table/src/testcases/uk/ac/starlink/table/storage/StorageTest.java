@@ -3,7 +3,11 @@ package uk.ac.starlink.table.storage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+import com.sun.management.UnixOperatingSystemMXBean;
 import junit.framework.AssertionFailedError;
 import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ByteStore;
@@ -16,6 +20,7 @@ import uk.ac.starlink.table.RowStore;
 import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.table.TableFormatException;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.util.TestCase;
 
 /*
@@ -38,6 +43,7 @@ public class StorageTest extends TestCase {
         assertEquals( StoragePolicy.PREFER_MEMORY, getPolicy( "memory" ) );
         assertEquals( StoragePolicy.PREFER_DISK, getPolicy( "disk" ) );
         assertEquals( StoragePolicy.SIDEWAYS, getPolicy( "sideways" ) );
+        assertEquals( StoragePolicy.COMPACT_MEMORY, getPolicy( "compact" ) );
         assertEquals( StoragePolicy.DISCARD, getPolicy( "discard" ) );
         assertEquals( StoragePolicy.ADAPTIVE, getPolicy( "adaptive" ) );
 
@@ -47,6 +53,8 @@ public class StorageTest extends TestCase {
                        StoragePolicy.PREFER_DISK.toString() );
         assertEquals( "StoragePolicy.SIDEWAYS",
                        StoragePolicy.SIDEWAYS.toString() );
+        assertEquals( "StoragePolicy.COMPACT_MEMORY",
+                       StoragePolicy.COMPACT_MEMORY.toString() );
         assertEquals( "StoragePolicy.DISCARD",
                        StoragePolicy.DISCARD.toString() );
         assertEquals( "StoragePolicy.ADAPTIVE",
@@ -58,6 +66,8 @@ public class StorageTest extends TestCase {
                     instanceof DiskRowStore );
         assertTrue( StoragePolicy.SIDEWAYS.makeRowStore()
                     instanceof SidewaysRowStore );
+        assertTrue( StoragePolicy.COMPACT_MEMORY.makeRowStore()
+                    instanceof CompactRowStore );
         assertTrue( StoragePolicy.DISCARD.makeRowStore()
                     instanceof DiscardRowStore );
         assertTrue( StoragePolicy.ADAPTIVE.makeRowStore()
@@ -166,6 +176,155 @@ public class StorageTest extends TestCase {
         assertTrue( err.indexOf( "sky-blue" ) > 0 );
     }
 
+    public void testCompactStorage() throws IOException {
+        int nrow = 70000;
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        Object[] numData = {
+            new byte[ nrow ],
+            new short[ nrow ],
+            new int[ nrow ],
+            new long[ nrow ],
+            new float[ nrow ],
+            new double[ nrow ],
+        };
+        for ( int i = 0; i < numData.length; i++ ) {
+            fillRandom( numData[ i ], -100, 100 );
+            t0.addColumn( ArrayColumn.makeColumn( "num" + i, numData[ i ] ) );
+        }
+        Integer[] nullInts = new Integer[ nrow ];
+        Boolean[] flags = new Boolean[ nrow ];
+        String[] fewStrs = new String[ nrow ];
+        String[] someStrs = new String[ nrow ];
+        String[] manyStrs = new String[ nrow ];
+        Object[] arrays = new Object[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            nullInts[ i ] = i % 7 == 0 ? null : new Integer( i );
+            flags[ i ] = i % 5 == 0 ? null : Boolean.valueOf( i % 3 == 0 );
+            fewStrs[ i ] = i % 11 == 0 ? null : "s" + ( i % 17 );
+            someStrs[ i ] = "t" + ( i % 1000 );
+            manyStrs[ i ] = i % 13 == 0 ? null : "u" + i;
+            arrays[ i ] = new double[] { i, -i };
+        }
+        t0.addColumn( ArrayColumn.makeColumn( "nullInts", nullInts ) );
+        t0.addColumn( ArrayColumn.makeColumn( "flags", flags ) );
+        t0.addColumn( ArrayColumn.makeColumn( "fewStrs", fewStrs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "someStrs", someStrs ) );
+        t0.addColumn( ArrayColumn.makeColumn( "manyStrs", manyStrs ) );
+        ColumnInfo arrayInfo =
+            new ColumnInfo( "arrays", double[].class, null );
+        arrayInfo.setShape( new int[] { 2 } );
+        t0.addColumn( ArrayColumn.makeColumn( arrayInfo, arrays ) );
+        StarTable ct = fillStore( new CompactRowStore(), t0 ).getStarTable();
+        assertTrue( ct.isRandom() );
+        assertEquals( nrow, ct.getRowCount() );
+        fTest_.checkStarTable( ct );
+        fTest_.assertTableEquals( t0, ct );
+        int ncol = t0.getColumnCount();
+        for ( int irow = 0; irow < nrow; irow += 997 ) {
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Object v0 = t0.getCell( irow, icol );
+                Object v1 = ct.getCell( irow, icol );
+                if ( v0 instanceof double[] ) {
+                    assertArrayEquals( v0, v1 );
+                }
+                else {
+                    assertEquals( v0, v1 );
+                }
+            }
+        }
+    }
+
+    public void testUnknownLengthSideways() throws IOException {
+        int nrow = 5000;
+        int ncol = 60;
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            Object array;
+            switch ( ic % 3 ) {
+                case 0:
+                    array = new double[ nrow ];
+                    fillRandom( array, -1e6, 1e6 );
+                    break;
+                case 1:
+                    array = new int[ nrow ];
+                    fillRandom( array, -1000, 1000 );
+                    break;
+                default:
+                    String[] sdata = new String[ nrow ];
+                    fillCycle( sdata, new String[] { "x", null, "",
+                                                     "long string" + ic } );
+                    array = sdata;
+            }
+            t0.addColumn( ArrayColumn.makeColumn( "c" + ic, array ) );
+        }
+        StarTable t1 = new WrapperStarTable( t0 ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public long getRowCount() {
+                return -1;
+            }
+        };
+        StarTable st = fillStore( new SidewaysRowStore(), t1 ).getStarTable();
+        assertTrue( st.isRandom() );
+        assertEquals( nrow, st.getRowCount() );
+        fTest_.assertTableEquals( t0, st );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            assertEquals( t0.getCell( nrow - 1, ic ),
+                          st.getCell( nrow - 1, ic ) );
+        }
+    }
+
+    public void testFileDescriptorLimit() throws IOException {
+        OperatingSystemMXBean osBean =
+            ManagementFactory.getOperatingSystemMXBean();
+        if ( ! ( osBean instanceof UnixOperatingSystemMXBean ) ) {
+            return;
+        }
+        long maxFd = ((UnixOperatingSystemMXBean) osBean)
+                    .getMaxFileDescriptorCount();
+        if ( maxFd > 100000 ) {
+            Logger.getLogger( "uk.ac.starlink.table.storage" )
+                  .warning( "File descriptor limit " + maxFd
+                          + " too high to test" );
+            return;
+        }
+
+        /* Prepare a table of unknown length that needs more column files
+         * than there are file descriptors available. */
+        int nrow = 3;
+        int ncol = (int) maxFd + 100;
+        assertTrue( ncol > SidewaysRowStore.MAX_OPEN_FILES );
+        ColumnStarTable t0 = ColumnStarTable.makeTableWithRows( nrow );
+        for ( int ic = 0; ic < ncol; ic++ ) {
+            Object array;
+            if ( ic % 100 == 0 ) {
+                array = new String[] { "a" + ic, null, "b" };
+            }
+            else {
+                array = new int[] { ic, -ic, 0 };
+            }
+            t0.addColumn( ArrayColumn.makeColumn( "c" + ic, array ) );
+        }
+        StarTable t1 = new WrapperStarTable( t0 ) {
+            public boolean isRandom() {
+                return false;
+            }
+            public long getRowCount() {
+                return -1;
+            }
+        };
+        StarTable st = fillStore( new SidewaysRowStore(), t1 ).getStarTable();
+        assertEquals( nrow, st.getRowCount() );
+        for ( int ic = 0; ic < ncol; ic += 37 ) {
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                assertEquals( t0.getCell( ir, ic ), st.getCell( ir, ic ) );
+            }
+        }
+        assertEquals( "a0", st.getCell( 0, 0 ) );
+        assertEquals( new Integer( 1 - ncol ), st.getCell( 1, ncol - 1 ) );
+    }
+
     public void testByteStorage() throws IOException {
         testByteStore( StoragePolicy.PREFER_MEMORY.makeByteStore() );
         testByteStore( StoragePolicy.PREFER_DISK.makeByteStore() );
@@ -0,0 +1,691 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.storage.ByteStoreAccess;
+import uk.ac.starlink.table.storage.NioByteStoreAccess;
+
+/**
+ * RowSequence which returns only the first occurrence of each distinct
+ * row in a table, where rows are compared using the values in
+ * selected columns.
+ *
+ * <p>Each row is identified by a 128-bit fingerprint of its compared
+ * values, and the fingerprints of rows seen so far are held in a
+ * {@link FingerprintSet}.  Rows with equal fingerprints are considered
+ * to be duplicates; the chance of two distinct rows colliding is
+ * negligible.
+ * Output rows are delivered as they are read, as long as the number
+ * of distinct rows does not exceed a given limit.
+ *
+ * <p>If the limit is exceeded, the fingerprints seen so far and those
+ * of the remaining input rows, along with their row indices,
+ * are spilled to scratch disk storage in partitions determined by
+ * fingerprint bits.  Each partition is deduplicated separately in memory,
+ * being split further if it is itself too large, to give sorted lists of
+ * the indices of rows still to be output.
+ * The table is then read a second time, and the rows at those indices
+ * are returned.  The output is the same, and in the same order,
+ * as if no limit applied.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class DistinctRowSequence implements RowSequence {
+
+    private final StarTable table_;
+    private final int[] icols_;
+    private final int maxEntries_;
+    private final Hasher hasher_;
+    private final long[] fp_;
+    private RowSequence baseSeq_;
+    private long irow_;
+    private FingerprintSet seen_;
+    private IndexMerger keeps_;
+    private long nextKeep_;
+    private Object[] row_;
+
+    /** Default maximum number of fingerprints held in memory. */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 22;
+
+    /** Number of fingerprint bits used to select a partition. */
+    private static final int PART_BITS = 6;
+    private static final int NPART = 1 << PART_BITS;
+
+    /** Maximum depth of partition splitting. */
+    private static final int MAX_DEPTH = 64 / PART_BITS - 1;
+
+    /* Type tags for fingerprinting values. */
+    private static final long TAG_BLANK = 0x100;
+    private static final long TAG_STRING = 0x101;
+    private static final long TAG_DOUBLE = 0x102;
+    private static final long TAG_FLOAT = 0x103;
+    private static final long TAG_LONG = 0x104;
+    private static final long TAG_INT = 0x105;
+    private static final long TAG_SHORT = 0x106;
+    private static final long TAG_BYTE = 0x107;
+    private static final long TAG_BOOLEAN = 0x108;
+    private static final long TAG_CHAR = 0x109;
+    private static final long TAG_ARRAY = 0x10a;
+    private static final long TAG_OTHER = 0x10b;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  input table
+     * @param  icols  indices of the columns whose values are compared
+     * @param  maxEntries  maximum number of fingerprints held in memory
+     */
+    public DistinctRowSequence( StarTable table, int[] icols,
+                                int maxEntries )
+            throws IOException {
+        table_ = table;
+        icols_ = icols;
+        maxEntries_ = Math.max( 1, maxEntries );
+        hasher_ = new Hasher();
+        fp_ = new long[ 2 ];
+        seen_ = new FingerprintSet();
+        baseSeq_ = table.getRowSequence();
+    }
+
+    public boolean next() throws IOException {
+        row_ = null;
+
+        /* Until the limit is reached, return new rows as they are read. */
+        if ( keeps_ == null ) {
+            while ( baseSeq_.next() ) {
+                long irow = irow_++;
+                Object[] row = baseSeq_.getRow();
+                fingerprint( row );
+                long hi = fp_[ 0 ];
+                long lo = fp_[ 1 ];
+                if ( ! seen_.contains( hi, lo ) ) {
+                    if ( seen_.size() < maxEntries_ ) {
+                        seen_.add( hi, lo );
+                        row_ = row.clone();
+                        return true;
+                    }
+                    else {
+                        spill( hi, lo, irow );
+                        break;
+                    }
+                }
+            }
+            if ( keeps_ == null ) {
+                return false;
+            }
+        }
+
+        /* After spilling, return the rows at the listed indices. */
+        if ( nextKeep_ < 0 ) {
+            return false;
+        }
+        long target = nextKeep_;
+        nextKeep_ = keeps_.next();
+        while ( irow_ <= target ) {
+            if ( ! baseSeq_.next() ) {
+                throw new IOException( "Table rows changed between reads" );
+            }
+            irow_++;
+        }
+        row_ = baseSeq_.getRow().clone();
+        return true;
+    }
+
+    public Object[] getRow() {
+        if ( row_ != null ) {
+            return row_;
+        }
+        else {
+            throw new IllegalStateException( "No current row" );
+        }
+    }
+
+    public Object getCell( int icol ) {
+        return getRow()[ icol ];
+    }
+
+    public void close() throws IOException {
+        row_ = null;
+        nextKeep_ = -1;
+        if ( keeps_ != null ) {
+            keeps_.close();
+        }
+        baseSeq_.close();
+    }
+
+    /**
+     * Spills fingerprints to disk and works out which of the remaining
+     * rows must be output.  On exit the base sequence has been reopened
+     * ready for a second read.
+     *
+     * @param  hi  high part of fingerprint of first unplaced row
+     * @param  lo  low part of fingerprint of first unplaced row
+     * @param  irow  index of first unplaced row
+     */
+    private void spill( long hi, long lo, long irow ) throws IOException {
+
+        /* Write fingerprints of rows already output, with a negative index,
+         * followed by those of the remaining rows.  Rows known to be
+         * duplicates of ones already output can be skipped. */
+        Partitioner parts = new Partitioner( 0 );
+        FingerprintSet seen = seen_;
+        seen_ = null;
+        for ( int is = seen.nextSlot( 0 ); is >= 0;
+              is = seen.nextSlot( is + 1 ) ) {
+            parts.write( seen.getHigh( is ), seen.getLow( is ), -1 );
+        }
+        parts.write( hi, lo, irow );
+        while ( baseSeq_.next() ) {
+            long jrow = irow_++;
+            fingerprint( baseSeq_.getRow() );
+            if ( ! seen.contains( fp_[ 0 ], fp_[ 1 ] ) ) {
+                parts.write( fp_[ 0 ], fp_[ 1 ], jrow );
+            }
+        }
+        baseSeq_.close();
+        seen = null;
+
+        /* Deduplicate each partition, and prepare to merge the results. */
+        List<Run> keepRuns = new ArrayList<Run>();
+        for ( Run part : parts.close() ) {
+            dedupPartition( part, 0, keepRuns );
+        }
+        keeps_ = new IndexMerger( keepRuns );
+        nextKeep_ = keeps_.next();
+
+        /* Reopen the input for a second pass. */
+        baseSeq_ = table_.getRowSequence();
+        irow_ = 0;
+    }
+
+    /**
+     * Deduplicates the entries in a partition, writing the row indices
+     * of new first occurrences to one or more sorted runs.
+     * If the partition has too many distinct entries, it is split
+     * and its sub-partitions processed recursively.
+     * The partition storage is discarded.
+     *
+     * @param  part  partition containing (hi, lo, index) entries
+     * @param  depth  partitioning depth of <code>part</code>
+     * @param  keepRuns  list to which runs of sorted row indices are added
+     */
+    private void dedupPartition( Run part, int depth, List<Run> keepRuns )
+            throws IOException {
+        FingerprintSet set = new FingerprintSet();
+        ByteStoreAccess in = getAccess( part.store_ );
+        ByteStore keepStore = null;
+        DataOutputStream keepOut = null;
+        long nkeep = 0;
+        boolean overflow = false;
+        for ( long ie = 0; ie < part.count_ && ! overflow; ie++ ) {
+            long hi = in.readLong();
+            long lo = in.readLong();
+            long irow = in.readLong();
+            if ( ! set.contains( hi, lo ) ) {
+                if ( set.size() >= maxEntries_ && depth < MAX_DEPTH ) {
+                    overflow = true;
+                }
+                else {
+                    set.add( hi, lo );
+                    if ( irow >= 0 ) {
+                        if ( keepOut == null ) {
+                            keepStore = createStore();
+                            keepOut = createOutput( keepStore );
+                        }
+                        keepOut.writeLong( irow );
+                        nkeep++;
+                    }
+                }
+            }
+        }
+        set = null;
+        if ( keepOut != null ) {
+            keepOut.close();
+        }
+
+        /* Too big; split into sub-partitions using the next bits. */
+        if ( overflow ) {
+            if ( keepStore != null ) {
+                keepStore.close();
+            }
+            Partitioner subParts = new Partitioner( depth + 1 );
+            in = getAccess( part.store_ );
+            for ( long ie = 0; ie < part.count_; ie++ ) {
+                long hi = in.readLong();
+                long lo = in.readLong();
+                long irow = in.readLong();
+                subParts.write( hi, lo, irow );
+            }
+            part.store_.close();
+            for ( Run subPart : subParts.close() ) {
+                dedupPartition( subPart, depth + 1, keepRuns );
+            }
+        }
+        else {
+            part.store_.close();
+            if ( keepStore != null ) {
+                keepRuns.add( new Run( keepStore, nkeep ) );
+            }
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the compared values in a row,
+     * and stores it in the <code>fp_</code> array.
+     *
+     * @param  row  row data
+     */
+    private void fingerprint( Object[] row ) {
+        hasher_.reset();
+        for ( int icol : icols_ ) {
+            addValue( hasher_, row[ icol ] );
+        }
+        hasher_.finish( fp_ );
+
+        /* Avoid the reserved value. */
+        if ( fp_[ 0 ] == 0 && fp_[ 1 ] == 0 ) {
+            fp_[ 1 ] = 1;
+        }
+    }
+
+    /**
+     * Feeds a cell value to a hasher.
+     * All blank values are treated as equivalent,
+     * and other values are distinguished by type as well as content.
+     *
+     * @param  hasher  hasher
+     * @param  value   cell value
+     */
+    private static void addValue( Hasher hasher, Object value ) {
+        if ( Tables.isBlank( value ) ) {
+            hasher.addLong( TAG_BLANK );
+        }
+        else if ( value instanceof String ) {
+            hasher.addLong( TAG_STRING );
+            hasher.addString( (String) value );
+        }
+        else if ( value instanceof Double ) {
+            hasher.addLong( TAG_DOUBLE );
+            hasher.addLong( Double.doubleToLongBits( ((Double) value)
+                                                    .doubleValue() ) );
+        }
+        else if ( value instanceof Float ) {
+            hasher.addLong( TAG_FLOAT );
+            hasher.addLong( Float.floatToIntBits( ((Float) value)
+                                                 .floatValue() ) );
+        }
+        else if ( value instanceof Long ) {
+            hasher.addLong( TAG_LONG );
+            hasher.addLong( ((Long) value).longValue() );
+        }
+        else if ( value instanceof Integer ) {
+            hasher.addLong( TAG_INT );
+            hasher.addLong( ((Integer) value).longValue() );
+        }
+        else if ( value instanceof Short ) {
+            hasher.addLong( TAG_SHORT );
+            hasher.addLong( ((Short) value).longValue() );
+        }
+        else if ( value instanceof Byte ) {
+            hasher.addLong( TAG_BYTE );
+            hasher.addLong( ((Byte) value).longValue() );
+        }
+        else if ( value instanceof Boolean ) {
+            hasher.addLong( TAG_BOOLEAN );
+            hasher.addLong( ((Boolean) value).booleanValue() ? 1 : 0 );
+        }
+        else if ( value instanceof Character ) {
+            hasher.addLong( TAG_CHAR );
+            hasher.addLong( ((Character) value).charValue() );
+        }
+        else if ( value.getClass().isArray() ) {
+            int n = Array.getLength( value );
+            hasher.addLong( TAG_ARRAY );
+            hasher.addString( value.getClass().getName() );
+            hasher.addLong( n );
+            for ( int i = 0; i < n; i++ ) {
+                addValue( hasher, Array.get( value, i ) );
+            }
+        }
+        else {
+            hasher.addLong( TAG_OTHER );
+            hasher.addString( value.getClass().getName() );
+            hasher.addLong( value.hashCode() );
+            hasher.addString( value.toString() );
+        }
+    }
+
+    /**
+     * Returns new scratch storage.
+     *
+     * @return  byte store
+     */
+    private static ByteStore createStore() {
+        return StoragePolicy.PREFER_DISK.makeByteStore();
+    }
+
+    /**
+     * Returns an output stream for writing to a byte store.
+     *
+     * @param  store  byte store
+     * @return  output stream
+     */
+    private static DataOutputStream createOutput( ByteStore store ) {
+        return new DataOutputStream(
+                   new BufferedOutputStream( store.getOutputStream() ) );
+    }
+
+    /**
+     * Returns an object for reading the content of a byte store
+     * from the start.
+     *
+     * @param  store  byte store
+     * @return  reader
+     */
+    private static ByteStoreAccess getAccess( ByteStore store )
+            throws IOException {
+        return NioByteStoreAccess.createAccess( store.toByteBuffers() );
+    }
+
+    /**
+     * Fixed-length sequence of items in scratch storage.
+     */
+    private static class Run {
+        final ByteStore store_;
+        final long count_;
+
+        /**
+         * Constructor.
+         *
+         * @param  store  storage
+         * @param  count  number of items
+         */
+        Run( ByteStore store, long count ) {
+            store_ = store;
+            count_ = count;
+        }
+    }
+
+    /**
+     * Distributes (hi, lo, index) entries between partitions according
+     * to fingerprint bits at a given depth.
+     */
+    private static class Partitioner {
+        private final int shift_;
+        private final ByteStore[] stores_;
+        private final DataOutputStream[] outs_;
+        private final long[] counts_;
+
+        /**
+         * Constructor.
+         *
+         * @param  depth  partitioning depth, determining which bits are used
+         */
+        Partitioner( int depth ) {
+            shift_ = 64 - PART_BITS * ( depth + 1 );
+            stores_ = new ByteStore[ NPART ];
+            outs_ = new DataOutputStream[ NPART ];
+            counts_ = new long[ NPART ];
+        }
+
+        /**
+         * Writes an entry to the appropriate partition.
+         *
+         * @param  hi  high part of fingerprint
+         * @param  lo  low part of fingerprint
+         * @param  irow  row index, or -1 for a row already output
+         */
+        void write( long hi, long lo, long irow ) throws IOException {
+            int ip = (int) ( hi >>> shift_ ) & ( NPART - 1 );
+            DataOutputStream out = outs_[ ip ];
+            if ( out == null ) {
+                stores_[ ip ] = createStore();
+                out = createOutput( stores_[ ip ] );
+                outs_[ ip ] = out;
+            }
+            out.writeLong( hi );
+            out.writeLong( lo );
+            out.writeLong( irow );
+            counts_[ ip ]++;
+        }
+
+        /**
+         * Finishes writing and returns the non-empty partitions.
+         *
+         * @return  partitions
+         */
+        List<Run> close() throws IOException {
+            List<Run> runs = new ArrayList<Run>();
+            for ( int ip = 0; ip < NPART; ip++ ) {
+                if ( outs_[ ip ] != null ) {
+                    outs_[ ip ].close();
+                    runs.add( new Run( stores_[ ip ], counts_[ ip ] ) );
+                }
+            }
+            return runs;
+        }
+    }
+
+    /**
+     * Merges a number of disjoint sorted runs of row indices.
+     */
+    private static class IndexMerger {
+        private final List<Run> runs_;
+        private final PriorityQueue<IndexReader> queue_;
+
+        /**
+         * Constructor.
+         *
+         * @param  runs  runs of sorted long values
+         */
+        IndexMerger( List<Run> runs ) throws IOException {
+            runs_ = runs;
+            queue_ = new PriorityQueue<IndexReader>(
+                         Math.max( 1, runs.size() ),
+                         new Comparator<IndexReader>() {
+                public int compare( IndexReader r1, IndexReader r2 ) {
+                    return Long.compare( r1.value_, r2.value_ );
+                }
+            } );
+            for ( Run run : runs ) {
+                IndexReader rdr = new IndexReader( run );
+                if ( rdr.next() ) {
+                    queue_.add( rdr );
+                }
+            }
+        }
+
+        /**
+         * Returns the next index in sequence.
+         *
+         * @return  next index, or -1 if there are no more
+         */
+        long next() throws IOException {
+            IndexReader rdr = queue_.poll();
+            if ( rdr == null ) {
+                return -1;
+            }
+            long value = rdr.value_;
+            if ( rdr.next() ) {
+                queue_.add( rdr );
+            }
+            return value;
+        }
+
+        /**
+         * Discards storage.
+         */
+        void close() {
+            queue_.clear();
+            for ( Run run : runs_ ) {
+                run.store_.close();
+            }
+            runs_.clear();
+        }
+    }
+
+    /**
+     * Reads the values of a run of longs sequentially.
+     */
+    private static class IndexReader {
+        private final ByteStoreAccess in_;
+        private long nleft_;
+        long value_;
+
+        /**
+         * Constructor.
+         *
+         * @param  run  run of long values
+         */
+        IndexReader( Run run ) throws IOException {
+            in_ = getAccess( run.store_ );
+            nleft_ = run.count_;
+        }
+
+        /**
+         * Reads the next value into <code>value_</code>.
+         *
+         * @return  true iff a value was read
+         */
+        boolean next() throws IOException {
+            if ( nleft_-- > 0 ) {
+                value_ = in_.readLong();
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Calculates 128-bit hashes of sequences of long values,
+     * using the MurmurHash3 x64 128-bit mixing functions.
+     */
+    private static class Hasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+        private long h1_;
+        private long h2_;
+        private long pending_;
+        private boolean hasPending_;
+        private long count_;
+
+        /**
+         * Resets this hasher to its initial state.
+         */
+        void reset() {
+            h1_ = 0;
+            h2_ = 0;
+            hasPending_ = false;
+            count_ = 0;
+        }
+
+        /**
+         * Adds a value to the hashed sequence.
+         *
+         * @param  value  value
+         */
+        void addLong( long value ) {
+            count_++;
+            if ( hasPending_ ) {
+                mixBlock( pending_, value );
+                hasPending_ = false;
+            }
+            else {
+                pending_ = value;
+                hasPending_ = true;
+            }
+        }
+
+        /**
+         * Adds the length and characters of a string to the hashed
+         * sequence.
+         *
+         * @param  txt  string
+         */
+        void addString( String txt ) {
+            int leng = txt.length();
+            addLong( leng );
+            for ( int i = 0; i < leng; i += 4 ) {
+                long word = 0;
+                for ( int j = i; j < Math.min( i + 4, leng ); j++ ) {
+                    word = ( word << 16 ) | txt.charAt( j );
+                }
+                addLong( word );
+            }
+        }
+
+        /**
+         * Completes the hash calculation.
+         *
+         * @param  fp  2-element array into which the result is written
+         */
+        void finish( long[] fp ) {
+            if ( hasPending_ ) {
+                mixBlock( pending_, 0 );
+                hasPending_ = false;
+            }
+            long h1 = h1_ ^ count_;
+            long h2 = h2_ ^ count_;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix( h1 );
+            h2 = fmix( h2 );
+            h1 += h2;
+            h2 += h1;
+            fp[ 0 ] = h1;
+            fp[ 1 ] = h2;
+        }
+
+        /**
+         * Mixes a 128-bit block into the hash state.
+         *
+         * @param  k1  first half of block
+         * @param  k2  second half of block
+         */
+        private void mixBlock( long k1, long k2 ) {
+            k1 *= C1;
+            k1 = Long.rotateLeft( k1, 31 );
+            k1 *= C2;
+            h1_ ^= k1;
+            h1_ = Long.rotateLeft( h1_, 27 );
+            h1_ += h2_;
+            h1_ = h1_ * 5 + 0x52dce729;
+            k2 *= C2;
+            k2 = Long.rotateLeft( k2, 33 );
+            k2 *= C1;
+            h2_ ^= k2;
+            h2_ = Long.rotateLeft( h2_, 31 );
+            h2_ += h1_;
+            h2_ = h2_ * 5 + 0x38495ab5;
+        }
+
+        /**
+         * Final avalanche mixing of a 64-bit value.
+         *
+         * @param  k  input value
+         * @return  mixed value
+         */
+        private static long fmix( long k ) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
@@ -0,0 +1,700 @@
+package uk.ac.starlink.ttools.filter;
+
+import gnu.jel.CompilationException;
+import gnu.jel.CompiledExpression;
+import gnu.jel.Library;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import uk.ac.starlink.table.ByteStore;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.DefaultValueInfo;
+import uk.ac.starlink.table.RandomRowSequence;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.table.storage.ByteStoreAccess;
+import uk.ac.starlink.table.storage.Codec;
+import uk.ac.starlink.table.storage.NioByteStoreAccess;
+import uk.ac.starlink.ttools.jel.DummyJELRowReader;
+import uk.ac.starlink.ttools.jel.JELUtils;
+import uk.ac.starlink.ttools.jel.SequentialJELRowReader;
+
+/**
+ * Sorts a table's rows according to the values of one or more JEL
+ * expressions without requiring random access to the table or
+ * holding all its rows in memory.
+ *
+ * <p>The input table is read once, sequentially.
+ * Rows are accumulated in memory along with their evaluated key values
+ * in runs of bounded size; each run is sorted in memory and
+ * serialized to scratch disk storage.
+ * The sorted output is then generated by a k-way merge of the runs,
+ * each of which is read sequentially.
+ * If there are too many runs to merge at once, consecutive groups of
+ * runs are first merged into larger ones.
+ * If the whole table fits in a single run, no scratch storage is used.
+ *
+ * <p>The sorted table may be read more than once, and concurrently;
+ * its scratch storage is released when it is garbage collected.
+ *
+ * <p>As for {@link RowSorter}, the sort is stable.
+ * Row data and key values must be of types that can be serialized
+ * by {@link uk.ac.starlink.table.storage.Codec}.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class ExternalSorter {
+
+    private final StarTable table_;
+    private final String[] exprs_;
+    private final boolean up_;
+    private final boolean nullsLast_;
+    private final int runRows_;
+    private final int nk_;
+    private final int ncol_;
+    private final ValueInfo[] infos_;
+    private final Codec[] codecs_;
+    private final Comparator<Object[]> entryComparator_;
+
+    /** Maximum number of runs merged in a single pass. */
+    static final int MAX_MERGE = 64;
+
+    /** Approximate number of cells held in memory for each run. */
+    private static final int RUN_CELLS = 4 * 1024 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  table whose rows are to be sorted; it is only
+     *                accessed sequentially
+     * @param  exprs  JEL expressions giving sort keys; first is most
+     *                significant for ordering, second next, etc
+     * @param  up  true for sorting into ascending order, false for
+     *             descending order
+     * @param  nullsLast  true if blank values should be considered
+     *                    last in the collation order, false if they
+     *                    should be considered first
+     * @param  runRows  maximum number of rows held in memory at once
+     * @throws  CompilationException  if any of the expressions is bad
+     * @throws  IOException  if the keys or columns cannot be serialized
+     */
+    public ExternalSorter( StarTable table, String[] exprs, boolean up,
+                           boolean nullsLast, int runRows )
+            throws CompilationException, IOException {
+        table_ = table;
+        exprs_ = exprs;
+        up_ = up;
+        nullsLast_ = nullsLast;
+        runRows_ = Math.max( 1, runRows );
+        nk_ = exprs.length;
+        ncol_ = table.getColumnCount();
+
+        /* Entries are serialized as the key values followed by the
+         * row cells, so get codecs for all of them.  These codecs are
+         * used for writing; each run reader gets its own for decoding,
+         * since some codecs are not thread-safe. */
+        infos_ = new ValueInfo[ nk_ + ncol_ ];
+        codecs_ = new Codec[ nk_ + ncol_ ];
+        Library lib = JELUtils.getLibrary( new DummyJELRowReader( table ) );
+        for ( int ik = 0; ik < nk_; ik++ ) {
+            Class<?> clazz =
+                JELUtils.getWrapperType( JELUtils.compile( lib, table,
+                                                           exprs[ ik ] )
+                                                 .getTypeC() );
+            ValueInfo info = new DefaultValueInfo( exprs[ ik ], clazz );
+            Codec codec = Codec.getCodec( info );
+            if ( codec == null ) {
+                throw new IOException( "Can't sort on expression "
+                                     + exprs[ ik ] + " of type "
+                                     + clazz.getName() );
+            }
+            infos_[ ik ] = info;
+            codecs_[ ik ] = codec;
+        }
+        for ( int icol = 0; icol < ncol_; icol++ ) {
+            ColumnInfo cinfo = table.getColumnInfo( icol );
+            Codec codec = Codec.getCodec( cinfo );
+            if ( codec == null ) {
+                throw new IOException( "No codec available for " + cinfo );
+            }
+            infos_[ nk_ + icol ] = cinfo;
+            codecs_[ nk_ + icol ] = codec;
+        }
+        entryComparator_ = new Comparator<Object[]>() {
+            public int compare( Object[] entry1, Object[] entry2 ) {
+                return compareEntries( entry1, entry2 );
+            }
+        };
+    }
+
+    /**
+     * Returns a suitable default number of rows per run for a table.
+     *
+     * @param  table  table to be sorted
+     * @param  nkey   number of sort keys
+     * @return   rows per run
+     */
+    public static int getDefaultRunRows( StarTable table, int nkey ) {
+        int ncell = Math.max( 1, table.getColumnCount() + nkey );
+        return Math.max( 1024, RUN_CELLS / ncell );
+    }
+
+    /**
+     * Reads the input table and returns a table containing its rows
+     * in sorted order.
+     * Unless the input is small enough to fit in a single run,
+     * the result is not random-access and its rows are generated
+     * by merging sorted runs from scratch storage.
+     * The scratch storage is released when no row sequence is
+     * using it, that is when every row sequence acquired on the
+     * result has been closed or has reached the end of its rows.
+     * A row sequence acquired after that repeats the sort,
+     * reading the input table again.
+     *
+     * @return  sorted table
+     */
+    public StarTable sort() throws IOException {
+        List<Object[]> buf = new ArrayList<Object[]>();
+        Run[] runs = createRuns( buf );
+        return runs == null
+             ? new EntryStarTable( table_, sortEntries( buf ) )
+             : new MergedStarTable( table_, runs );
+    }
+
+    /**
+     * Reads the input table and writes its rows as sorted runs
+     * to scratch storage, ready for merging.
+     * If the input is small enough to fit in a single run,
+     * nothing is written, the unsorted entries are left in the
+     * supplied list, and null is returned.
+     *
+     * @param  buf  empty list used as a buffer for entries
+     * @return   sorted runs, in input order, or null if the input
+     *           fitted in memory
+     */
+    private Run[] createRuns( List<Object[]> buf ) throws IOException {
+
+        /* Compile the key expressions for sequential evaluation. */
+        SequentialJELRowReader reader = new SequentialJELRowReader( table_ );
+        Library lib = JELUtils.getLibrary( reader );
+        CompiledExpression[] compExs = new CompiledExpression[ nk_ ];
+        for ( int ik = 0; ik < nk_; ik++ ) {
+            try {
+                compExs[ ik ] = JELUtils.compile( lib, table_, exprs_[ ik ] );
+            }
+            catch ( CompilationException e ) {
+                reader.close();
+                throw (AssertionError)
+                      new AssertionError( "Well it compiled OK last time" )
+                     .initCause( e );
+            }
+        }
+
+        /* Read rows into runs, writing each one to scratch storage
+         * as it fills up.  If anything goes wrong, discard the runs
+         * written so far. */
+        List<Run> runs = new ArrayList<Run>();
+        boolean ok = false;
+        try {
+            try {
+                while ( reader.next() ) {
+                    Object[] entry = new Object[ nk_ + ncol_ ];
+                    for ( int ik = 0; ik < nk_; ik++ ) {
+                        Object key;
+                        try {
+                            key = reader.evaluate( compExs[ ik ] );
+                        }
+                        catch ( IOException e ) {
+                            throw e;
+                        }
+                        catch ( Error e ) {
+                            throw e;
+                        }
+                        catch ( Throwable e ) {
+                            throw (IOException)
+                                  new IOException( "Sort error" )
+                                 .initCause( e );
+                        }
+                        entry[ ik ] = Tables.isBlank( key ) ? null : key;
+                    }
+                    System.arraycopy( reader.getRow(), 0, entry, nk_, ncol_ );
+                    buf.add( entry );
+                    if ( buf.size() >= runRows_ ) {
+                        runs.add( writeRun( sortEntries( buf ) ) );
+                        buf.clear();
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+
+            /* If it all fitted in memory, leave the entries in the
+             * buffer. */
+            if ( runs.isEmpty() ) {
+                ok = true;
+                return null;
+            }
+
+            /* Otherwise write the last run and reduce the number of runs
+             * until they can all be merged at once.  Groups of adjacent
+             * runs are merged so that stability is preserved. */
+            if ( buf.size() > 0 ) {
+                runs.add( writeRun( sortEntries( buf ) ) );
+                buf.clear();
+            }
+            while ( runs.size() > MAX_MERGE ) {
+                List<Run> mergedRuns = new ArrayList<Run>();
+                for ( int ir = 0; ir < runs.size(); ir += MAX_MERGE ) {
+                    List<Run> group =
+                        runs.subList( ir, Math.min( ir + MAX_MERGE,
+                                                    runs.size() ) );
+                    mergedRuns.add( group.size() == 1 ? group.get( 0 )
+                                                      : mergeRuns( group ) );
+                }
+                runs = mergedRuns;
+            }
+            ok = true;
+            return runs.toArray( new Run[ 0 ] );
+        }
+        finally {
+            if ( ! ok ) {
+                closeRuns( runs );
+            }
+        }
+    }
+
+    /**
+     * Sorts a list of entries in memory.
+     *
+     * @param  entries  unsorted entry list
+     * @return   sorted array of entries
+     */
+    private Object[][] sortEntries( List<Object[]> entries )
+            throws IOException {
+        Object[][] array = entries.toArray( new Object[ 0 ][] );
+        try {
+            Arrays.sort( array, entryComparator_ );
+        }
+        catch ( ClassCastException e ) {
+            throw toComparisonException( e );
+        }
+        return array;
+    }
+
+    /**
+     * Writes an array of sorted entries to scratch storage.
+     *
+     * @param  entries  sorted entries
+     * @return   run containing the entries
+     */
+    private Run writeRun( Object[][] entries ) throws IOException {
+        ByteStore store = StoragePolicy.PREFER_DISK.makeByteStore();
+        DataOutputStream out =
+            new DataOutputStream(
+                new BufferedOutputStream( store.getOutputStream() ) );
+        for ( Object[] entry : entries ) {
+            writeEntry( entry, out );
+        }
+        out.close();
+        return new Run( store, entries.length );
+    }
+
+    /**
+     * Merges a group of runs into a single new run.
+     * The input runs are discarded.
+     *
+     * @param  runs  runs to merge, in input order
+     * @return   merged run
+     */
+    private Run mergeRuns( List<Run> runs ) throws IOException {
+        ByteStore store = StoragePolicy.PREFER_DISK.makeByteStore();
+        DataOutputStream out =
+            new DataOutputStream(
+                new BufferedOutputStream( store.getOutputStream() ) );
+        Merger merger = new Merger( runs.toArray( new Run[ 0 ] ) );
+        long nrow = 0;
+        for ( Object[] entry; ( entry = merger.nextEntry() ) != null; ) {
+            writeEntry( entry, out );
+            nrow++;
+        }
+        out.close();
+        closeRuns( runs );
+        return new Run( store, nrow );
+    }
+
+    /**
+     * Discards the scratch storage holding some runs.
+     *
+     * @param  runs  runs to discard
+     */
+    private static void closeRuns( Iterable<Run> runs ) {
+        for ( Run run : runs ) {
+            run.store_.close();
+        }
+    }
+
+    /**
+     * Serializes a single entry.
+     *
+     * @param  entry  key values followed by row cells
+     * @param  out   destination stream
+     */
+    private void writeEntry( Object[] entry, DataOutputStream out )
+            throws IOException {
+        for ( int i = 0; i < codecs_.length; i++ ) {
+            codecs_[ i ].encode( entry[ i ], out );
+        }
+    }
+
+    /**
+     * Returns a new set of codecs for decoding entries.
+     *
+     * @return  codecs for key values followed by row cells
+     */
+    private Codec[] createCodecs() {
+        Codec[] codecs = new Codec[ infos_.length ];
+        for ( int i = 0; i < infos_.length; i++ ) {
+            codecs[ i ] = Codec.getCodec( infos_[ i ] );
+        }
+        return codecs;
+    }
+
+    /**
+     * Compares two entries according to their key values.
+     *
+     * @param  entry1  first entry
+     * @param  entry2  second entry
+     * @return  negative, zero or positive according to whether the first
+     *          entry sorts before, with, or after the second
+     * @throws  ClassCastException  if key values are not comparable
+     */
+    @SuppressWarnings("unchecked")
+    private int compareEntries( Object[] entry1, Object[] entry2 ) {
+        for ( int ik = 0; ik < nk_; ik++ ) {
+            Object v1 = entry1[ ik ];
+            Object v2 = entry2[ ik ];
+            boolean null1 = Tables.isBlank( v1 );
+            boolean null2 = Tables.isBlank( v2 );
+            int c;
+            if ( null1 && null2 ) {
+                c = 0;
+            }
+            else if ( null1 ) {
+                c = nullsLast_ ? +1 : -1;
+            }
+            else if ( null2 ) {
+                c = nullsLast_ ? -1 : +1;
+            }
+            else {
+                c = ((Comparable<Object>) v1).compareTo( v2 );
+            }
+            if ( c != 0 ) {
+                return up_ ? c : -c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns an exception suitable for reporting a comparison failure.
+     *
+     * @param  e  comparison exception
+     * @return  IOException
+     */
+    private static IOException toComparisonException( ClassCastException e ) {
+        return (IOException)
+               new IOException( "Expression comparison error during sorting" )
+              .initCause( e );
+    }
+
+    /**
+     * Sequence of sorted entries held in scratch storage.
+     */
+    private static class Run {
+        final ByteStore store_;
+        final long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  store  storage containing serialized entries
+         * @param  nrow   number of entries
+         */
+        Run( ByteStore store, long nrow ) {
+            store_ = store;
+            nrow_ = nrow;
+        }
+    }
+
+    /**
+     * Reads the entries of a run sequentially.
+     */
+    private class RunReader {
+        final int irun_;
+        final ByteStoreAccess in_;
+        final Codec[] decoders_;
+        long nleft_;
+        Object[] entry_;
+
+        /**
+         * Constructor.
+         *
+         * @param  run  run to read
+         * @param  irun  index of run in input order
+         */
+        RunReader( Run run, int irun ) throws IOException {
+            irun_ = irun;
+            in_ = NioByteStoreAccess.createAccess( run.store_
+                                                  .toByteBuffers() );
+            decoders_ = createCodecs();
+            nleft_ = run.nrow_;
+        }
+
+        /**
+         * Advances to the next entry.
+         *
+         * @return  true iff a new entry is available as <code>entry_</code>
+         */
+        boolean next() throws IOException {
+            if ( nleft_-- > 0 ) {
+                Object[] entry = new Object[ decoders_.length ];
+                for ( int i = 0; i < decoders_.length; i++ ) {
+                    entry[ i ] = decoders_[ i ].decodeObject( in_ );
+                }
+                entry_ = entry;
+                return true;
+            }
+            else {
+                entry_ = null;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Performs a k-way merge of a number of runs.
+     */
+    private class Merger {
+        private final PriorityQueue<RunReader> queue_;
+
+        /**
+         * Constructor.
+         *
+         * @param  runs  runs to merge, in input order
+         */
+        Merger( Run[] runs ) throws IOException {
+            queue_ = new PriorityQueue<RunReader>(
+                         Math.max( 1, runs.length ),
+                         new Comparator<RunReader>() {
+                public int compare( RunReader r1, RunReader r2 ) {
+                    int c = compareEntries( r1.entry_, r2.entry_ );
+                    return c != 0 ? c : Integer.compare( r1.irun_, r2.irun_ );
+                }
+            } );
+            try {
+                for ( int ir = 0; ir < runs.length; ir++ ) {
+                    RunReader rdr = new RunReader( runs[ ir ], ir );
+                    if ( rdr.next() ) {
+                        queue_.add( rdr );
+                    }
+                }
+            }
+            catch ( ClassCastException e ) {
+                throw toComparisonException( e );
+            }
+        }
+
+        /**
+         * Returns the next entry in sorted order.
+         *
+         * @return  next entry, or null if there are no more
+         */
+        Object[] nextEntry() throws IOException {
+            try {
+                RunReader rdr = queue_.poll();
+                if ( rdr == null ) {
+                    return null;
+                }
+                Object[] entry = rdr.entry_;
+                if ( rdr.next() ) {
+                    queue_.add( rdr );
+                }
+                return entry;
+            }
+            catch ( ClassCastException e ) {
+                throw toComparisonException( e );
+            }
+        }
+    }
+
+    /**
+     * Random-access table whose rows are taken from an array of
+     * sorted entries held in memory.
+     */
+    private class EntryStarTable extends WrapperStarTable {
+        private final Object[][] entries_;
+
+        /**
+         * Constructor.
+         *
+         * @param  template  table providing metadata
+         * @param  entries   sorted entries
+         */
+        EntryStarTable( StarTable template, Object[][] entries ) {
+            super( template );
+            entries_ = entries;
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public long getRowCount() {
+            return entries_.length;
+        }
+
+        public RowSequence getRowSequence() {
+            return new RandomRowSequence( this );
+        }
+
+        public Object getCell( long irow, int icol ) {
+            return entries_[ checkedLongToInt( irow ) ][ nk_ + icol ];
+        }
+
+        public Object[] getRow( long irow ) {
+            Object[] row = new Object[ ncol_ ];
+            System.arraycopy( entries_[ checkedLongToInt( irow ) ], nk_,
+                              row, 0, ncol_ );
+            return row;
+        }
+    }
+
+    /**
+     * Sequential-only table whose rows are generated by merging
+     * sorted runs.
+     */
+    private class MergedStarTable extends WrapperStarTable {
+        private final long nrow_;
+        private Run[] runs_;
+        private int nactive_;
+
+        /**
+         * Constructor.
+         *
+         * @param  template  table providing metadata
+         * @param  runs   sorted runs, in input order
+         */
+        MergedStarTable( StarTable template, Run[] runs ) {
+            super( template );
+            runs_ = runs;
+            long nrow = 0;
+            for ( Run run : runs ) {
+                nrow += run.nrow_;
+            }
+            nrow_ = nrow;
+        }
+
+        public boolean isRandom() {
+            return false;
+        }
+
+        public long getRowCount() {
+            return nrow_;
+        }
+
+        public Object getCell( long irow, int icol ) {
+            throw new UnsupportedOperationException( "No random access" );
+        }
+
+        public Object[] getRow( long irow ) {
+            throw new UnsupportedOperationException( "No random access" );
+        }
+
+        public RowSequence getRowSequence() throws IOException {
+            Run[] runs = acquireRuns();
+            final Merger merger;
+            try {
+                merger = new Merger( runs );
+            }
+            catch ( IOException e ) {
+                releaseRuns();
+                throw e;
+            }
+            return new RowSequence() {
+                Merger merger_ = merger;
+                Object[] entry_;
+                public boolean next() throws IOException {
+                    entry_ = merger_ == null ? null : merger_.nextEntry();
+                    if ( entry_ == null ) {
+                        close();
+                    }
+                    return entry_ != null;
+                }
+                public Object getCell( int icol ) {
+                    checkHasRow();
+                    return entry_[ nk_ + icol ];
+                }
+                public Object[] getRow() {
+                    checkHasRow();
+                    Object[] row = new Object[ ncol_ ];
+                    System.arraycopy( entry_, nk_, row, 0, ncol_ );
+                    return row;
+                }
+                public void close() {
+                    entry_ = null;
+                    if ( merger_ != null ) {
+                        merger_ = null;
+                        releaseRuns();
+                    }
+                }
+                private void checkHasRow() {
+                    if ( entry_ == null ) {
+                        throw new IllegalStateException( "No current row" );
+                    }
+                }
+            };
+        }
+
+        /**
+         * Returns the runs for use by a new row sequence,
+         * repeating the sort if they have been discarded.
+         * Each call must be matched by a call to {@link #releaseRuns}.
+         *
+         * @return  sorted runs, in input order
+         */
+        private synchronized Run[] acquireRuns() throws IOException {
+            if ( runs_ == null ) {
+                List<Object[]> buf = new ArrayList<Object[]>();
+                Run[] runs = createRuns( buf );
+                runs_ = runs == null
+                      ? new Run[] { writeRun( sortEntries( buf ) ) }
+                      : runs;
+            }
+            nactive_++;
+            return runs_;
+        }
+
+        /**
+         * Signals that a row sequence has finished with the runs,
+         * and discards their scratch storage if no other sequence
+         * is using them.
+         */
+        private synchronized void releaseRuns() {
+            if ( --nactive_ == 0 ) {
+                closeRuns( Arrays.asList( runs_ ) );
+                runs_ = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package uk.ac.starlink.ttools.filter;
+
+/**
+ * Set of 128-bit values stored in a primitive open-addressing hash table.
+ * Each value is represented as a pair of longs, and the storage cost
+ * is between 32 and 64 bytes per element depending on occupancy.
+ *
+ * <p>The value (0,0) is used internally to mark empty slots, and cannot
+ * be stored; callers should make sure it does not occur,
+ * for instance by substituting some other value.
+ * The low part of each value is used to locate its slot,
+ * so it should be well mixed.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class FingerprintSet {
+
+    private long[] his_;
+    private long[] los_;
+    private int mask_;
+    private int size_;
+
+    /** Initial number of slots. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Maximum number of slots. */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Constructs an empty set.
+     */
+    public FingerprintSet() {
+        allocate( INITIAL_CAPACITY );
+    }
+
+    /**
+     * Returns the number of elements in this set.
+     *
+     * @return  element count
+     */
+    public int size() {
+        return size_;
+    }
+
+    /**
+     * Indicates whether a value is present in this set.
+     *
+     * @param  hi  high part of value
+     * @param  lo  low part of value
+     * @return  true iff value is present
+     */
+    public boolean contains( long hi, long lo ) {
+        for ( int is = ( (int) lo ) & mask_; ; is = ( is + 1 ) & mask_ ) {
+            long h = his_[ is ];
+            long l = los_[ is ];
+            if ( h == hi && l == lo ) {
+                return true;
+            }
+            else if ( h == 0 && l == 0 ) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds a value to this set if it is not already present.
+     *
+     * @param  hi  high part of value
+     * @param  lo  low part of value
+     * @return  true iff the value was not previously present
+     */
+    public boolean add( long hi, long lo ) {
+        assert hi != 0 || lo != 0;
+        for ( int is = ( (int) lo ) & mask_; ; is = ( is + 1 ) & mask_ ) {
+            long h = his_[ is ];
+            long l = los_[ is ];
+            if ( h == hi && l == lo ) {
+                return false;
+            }
+            else if ( h == 0 && l == 0 ) {
+                his_[ is ] = hi;
+                los_[ is ] = lo;
+                if ( ++size_ * 2L > his_.length &&
+                     his_.length < MAX_CAPACITY ) {
+                    rehash( his_.length * 2 );
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first occupied slot at or after a given
+     * slot index.  This can be used to iterate over the elements.
+     *
+     * @param  islot  slot index at which to start
+     * @return  index of occupied slot, or -1 if there are no more
+     */
+    public int nextSlot( int islot ) {
+        for ( int is = islot; is < his_.length; is++ ) {
+            if ( his_[ is ] != 0 || los_[ is ] != 0 ) {
+                return is;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the high part of the value in an occupied slot.
+     *
+     * @param  islot  slot index
+     * @return  high part of value
+     */
+    public long getHigh( int islot ) {
+        return his_[ islot ];
+    }
+
+    /**
+     * Returns the low part of the value in an occupied slot.
+     *
+     * @param  islot  slot index
+     * @return  low part of value
+     */
+    public long getLow( int islot ) {
+        return los_[ islot ];
+    }
+
+    /**
+     * Allocates empty storage.
+     *
+     * @param  capacity  number of slots, a power of two
+     */
+    private void allocate( int capacity ) {
+        his_ = new long[ capacity ];
+        los_ = new long[ capacity ];
+        mask_ = capacity - 1;
+        size_ = 0;
+    }
+
+    /**
+     * Moves the content to storage with a different capacity.
+     *
+     * @param  capacity  new number of slots, a power of two
+     */
+    private void rehash( int capacity ) {
+        long[] his = his_;
+        long[] los = los_;
+        allocate( capacity );
+        for ( int is = 0; is < his.length; is++ ) {
+            long hi = his[ is ];
+            long lo = los[ is ];
+            if ( hi != 0 || lo != 0 ) {
+                int js = ( (int) lo ) & mask_;
+                while ( his_[ js ] != 0 || los_[ js ] != 0 ) {
+                    js = ( js + 1 ) & mask_;
+                }
+                his_[ js ] = hi;
+                los_[ js ] = lo;
+                size_++;
+            }
+        }
+    }
+}
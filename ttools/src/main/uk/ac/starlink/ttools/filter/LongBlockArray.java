@@ -0,0 +1,91 @@
+package uk.ac.starlink.ttools.filter;
+
+/**
+ * Fixed-length array of long integers which may have more than
+ * 2<sup>31</sup> elements.
+ * The storage is split into blocks each of which is an ordinary
+ * <code>long[]</code> array.
+ *
+ * <p>Distinct elements may be written concurrently from different
+ * threads without synchronization, as for a normal array.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class LongBlockArray {
+
+    private final long size_;
+    private final long[][] blocks_;
+
+    /** Log<sub>2</sub> of the number of elements in each block. */
+    private static final int BLOCK_BITS = 20;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * Constructor.  All elements are initially zero.
+     *
+     * @param  size  number of elements
+     */
+    public LongBlockArray( long size ) {
+        size_ = size;
+        int nblock = (int) ( ( size + BLOCK_SIZE - 1 ) >>> BLOCK_BITS );
+        blocks_ = new long[ nblock ][];
+        for ( int ib = 0; ib < nblock; ib++ ) {
+            long start = ( (long) ib ) << BLOCK_BITS;
+            blocks_[ ib ] = new long[ (int) Math.min( BLOCK_SIZE,
+                                                      size - start ) ];
+        }
+    }
+
+    /**
+     * Returns the number of elements in this array.
+     *
+     * @return  size
+     */
+    public long getSize() {
+        return size_;
+    }
+
+    /**
+     * Returns the value of an element.
+     *
+     * @param  index  element index
+     * @return  element value
+     */
+    public long get( long index ) {
+        return blocks_[ (int) ( index >>> BLOCK_BITS ) ]
+                      [ ( (int) index ) & BLOCK_MASK ];
+    }
+
+    /**
+     * Sets the value of an element.
+     *
+     * @param  index  element index
+     * @param  value  new value
+     */
+    public void set( long index, long value ) {
+        blocks_[ (int) ( index >>> BLOCK_BITS ) ]
+               [ ( (int) index ) & BLOCK_MASK ] = value;
+    }
+
+    /**
+     * Returns the content of this array as an ordinary array,
+     * if it is small enough.
+     *
+     * @return  new array containing a copy of the data,
+     *          or null if there are too many elements
+     */
+    public long[] toArray() {
+        if ( size_ > Integer.MAX_VALUE - 8 ) {
+            return null;
+        }
+        long[] array = new long[ (int) size_ ];
+        int ioff = 0;
+        for ( long[] block : blocks_ ) {
+            System.arraycopy( block, 0, array, ioff, block.length );
+            ioff += block.length;
+        }
+        return array;
+    }
+}
@@ -45,6 +45,15 @@ public abstract class QuantCalc {
      */
     public abstract void acceptDatum( Object obj );
 
+    /**
+     * Merges the values accumulated by another calculator into this one.
+     * The other calculator must be of the same type as this one,
+     * and neither should yet have been made {@link #ready}.
+     *
+     * @param  other  compatible calculator
+     */
+    public abstract void add( QuantCalc other );
+
     /**
      * Call this method after all {@link #acceptDatum} calls have been made
      * and before any call to {@link #getQuantile}.
@@ -164,6 +173,10 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            dlist_.addAll( ((DoubleListQuantCalc) other).dlist_ );
+        }
+
         public void ready() {
             darray_ = dlist_.toDoubleArray();
             Arrays.sort( darray_ );
@@ -224,7 +237,7 @@ public abstract class QuantCalc {
      */
     static class FloatArrayQuantCalc extends QuantCalc {
 
-        final float[] array_;
+        float[] array_;
         final Class<?> clazz_;
         int irow_;
 
@@ -243,6 +256,16 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            FloatArrayQuantCalc fother = (FloatArrayQuantCalc) other;
+            int n = fother.irow_;
+            if ( irow_ + n > array_.length ) {
+                array_ = Arrays.copyOf( array_, irow_ + n );
+            }
+            System.arraycopy( fother.array_, 0, array_, irow_, n );
+            irow_ += n;
+        }
+
         public void ready() {
             Arrays.sort( array_, 0, irow_ );
         }
@@ -315,6 +338,14 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            ByteSlotQuantCalc sother = (ByteSlotQuantCalc) other;
+            for ( int is = 0; is < slots_.length; is++ ) {
+                slots_[ is ] += sother.slots_[ is ];
+            }
+            count_ += sother.count_;
+        }
+
         public void ready() {
         }
 
@@ -384,6 +415,14 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            ShortSlotQuantCalc sother = (ShortSlotQuantCalc) other;
+            for ( int is = 0; is < slots_.length; is++ ) {
+                slots_[ is ] += sother.slots_[ is ];
+            }
+            count_ += sother.count_;
+        }
+
         public void ready() {
         }
 
@@ -462,6 +501,21 @@ public abstract class QuantCalc {
             }
         }
 
+        public void add( QuantCalc other ) {
+            CountMapQuantCalc cother = (CountMapQuantCalc) other;
+            for ( Map.Entry<Number,Integer> entry :
+                  cother.countMap_.entrySet() ) {
+                Number num = entry.getKey();
+                Integer value = countMap_.get( num );
+                countMap_.put( num, value == null
+                                  ? entry.getValue()
+                                  : new Integer( value.intValue() +
+                                                 entry.getValue()
+                                                      .intValue() ) );
+            }
+            count_ += cother.count_;
+        }
+
         public void ready() {
             countMap_ = new TreeMap<Number,Integer>( countMap_ );
         }
@@ -0,0 +1,914 @@
+package uk.ac.starlink.ttools.filter;
+
+import gnu.jel.CompilationException;
+import gnu.jel.CompiledExpression;
+import gnu.jel.Library;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongSupplier;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowSplittable;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.ttools.jel.JELUtils;
+import uk.ac.starlink.ttools.jel.StarTableJELRowReader;
+
+/**
+ * Determines the sorted order of a table's rows according to the values
+ * of one or more JEL expressions.
+ *
+ * <p>The key expressions are evaluated exactly once for each row,
+ * in parallel if the table's rows can be split, and the results
+ * are stored in memory.  Numeric keys are stored as primitive values
+ * encoded so that their signed integer ordering matches the required
+ * collation order; other keys are stored as objects.
+ * The row order is then determined without further reference to the
+ * table: a single numeric key is sorted using a parallel radix sort,
+ * and other cases using a parallel merge sort with a comparator
+ * that works on the stored key values.
+ *
+ * <p>The sort is stable, so rows with equal keys retain their
+ * original relative order.  Tables with more than
+ * 2<sup>31</sup> rows are supported.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class RowSorter {
+
+    private final StarTable table_;
+    private final String[] exprs_;
+    private final boolean up_;
+    private final boolean nullsLast_;
+    private final Class<?>[] keyClazzes_;
+    private final ForkJoinPool fjPool_;
+    private final long nrow_;
+
+    /** Number of rows below which sorting is done in a single thread. */
+    private static final int LEAF_SIZE = 16 * 1024;
+
+    /** Number of bits in each radix sort digit. */
+    private static final int RADIX_BITS = 8;
+    private static final int NBUCKET = 1 << RADIX_BITS;
+
+    /**
+     * Constructor.
+     *
+     * @param  table  random-access table whose rows are to be sorted
+     * @param  exprs  JEL expressions giving sort keys; first is most
+     *                significant for ordering, second next, etc
+     * @param  up  true for sorting into ascending order, false for
+     *             descending order
+     * @param  nullsLast  true if blank values should be considered
+     *                    last in the collation order, false if they
+     *                    should be considered first
+     * @throws  CompilationException  if any of the expressions is bad
+     */
+    public RowSorter( StarTable table, String[] exprs, boolean up,
+                      boolean nullsLast )
+            throws CompilationException {
+        table_ = table;
+        exprs_ = exprs;
+        up_ = up;
+        nullsLast_ = nullsLast;
+        nrow_ = table.getRowCount();
+        keyClazzes_ = new Class<?>[ exprs.length ];
+        KeyReader reader = new KeyReader( table );
+        Library lib = JELUtils.getLibrary( reader );
+        for ( int ik = 0; ik < exprs.length; ik++ ) {
+            keyClazzes_[ ik ] =
+                JELUtils.compile( lib, table, exprs[ ik ] ).getTypeC();
+        }
+        fjPool_ = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Returns an array mapping the rows of the sorted table to the
+     * rows of the input table.
+     *
+     * @param  runner  controls parallel evaluation of key values
+     * @return  array giving the input row index of each sorted row
+     */
+    public LongBlockArray getSortedOrder( RowRunner runner )
+            throws IOException {
+        if ( nrow_ < 0 ) {
+            throw new IOException( "Table does not have random access" );
+        }
+        final SortKey[] keys = readKeys( runner );
+        if ( keys.length == 1 && keys[ 0 ] instanceof NumericKey ) {
+            return radixSort( (NumericKey) keys[ 0 ] );
+        }
+        else {
+            final LongBlockArray order = new LongBlockArray( nrow_ );
+            fjPool_.invoke( new Action( 0, nrow_ ) {
+                void run( long ilo, long ihi ) {
+                    for ( long i = ilo; i < ihi; i++ ) {
+                        order.set( i, i );
+                    }
+                }
+            } );
+            try {
+                fjPool_.invoke( new MergeSortTask( keys, order,
+                                                   new LongBlockArray( nrow_ ),
+                                                   0, nrow_ ) );
+            }
+            catch ( ClassCastException e ) {
+                throw (IOException)
+                      new IOException( "Expression comparison error "
+                                     + "during sorting" )
+                     .initCause( e );
+            }
+            return order;
+        }
+    }
+
+    /**
+     * Evaluates the key expressions for every row of the table.
+     *
+     * @param  runner  controls parallel evaluation
+     * @return  array of populated keys, one for each expression
+     */
+    private SortKey[] readKeys( RowRunner runner ) throws IOException {
+        int nk = exprs_.length;
+        final SortKey[] keys = new SortKey[ nk ];
+        for ( int ik = 0; ik < nk; ik++ ) {
+            keys[ ik ] = createKey( keyClazzes_[ ik ] );
+        }
+        RowSplittable rowSplit = table_.getRowSplittable();
+
+        /* If the row sequence can't report row indices, we have to
+         * evaluate the keys sequentially so we can count them ourselves. */
+        if ( rowSplit.rowIndex() == null ) {
+            runner = RowRunner.SEQUENTIAL;
+        }
+        long[] count = runner.collect( new RowCollector<long[]>() {
+            public long[] createAccumulator() {
+                return new long[ 1 ];
+            }
+            public long[] combine( long[] acc1, long[] acc2 ) {
+                acc1[ 0 ] += acc2[ 0 ];
+                return acc1;
+            }
+            public void accumulateRows( RowSplittable rseq, long[] acc )
+                    throws IOException {
+                readKeyRows( rseq, keys, acc );
+            }
+        }, rowSplit );
+        if ( count[ 0 ] != nrow_ ) {
+            throw new IOException( "Row count mismatch (" + count[ 0 ]
+                                 + " != " + nrow_ + ")" );
+        }
+        return keys;
+    }
+
+    /**
+     * Evaluates key values for the rows of a row sequence.
+     *
+     * @param  rseq  row sequence
+     * @param  keys  keys to populate
+     * @param  acc   1-element array containing the number of rows read,
+     *               updated on exit
+     */
+    private void readKeyRows( RowSplittable rseq, SortKey[] keys, long[] acc )
+            throws IOException {
+        KeyReader reader = new KeyReader( table_ );
+        Library lib = JELUtils.getLibrary( reader );
+        int nk = keys.length;
+        CompiledExpression[] compExs = new CompiledExpression[ nk ];
+        for ( int ik = 0; ik < nk; ik++ ) {
+            Class<?> clazz = keys[ ik ].getExpressionType();
+            try {
+                compExs[ ik ] = clazz == null
+                              ? JELUtils.compile( lib, table_, exprs_[ ik ] )
+                              : JELUtils.compile( lib, table_, exprs_[ ik ],
+                                                  clazz );
+            }
+            catch ( CompilationException e ) {
+                throw (AssertionError)
+                      new AssertionError( "Well it compiled OK last time" )
+                     .initCause( e );
+            }
+        }
+        LongSupplier rowIndex = rseq.rowIndex();
+        long irow = acc[ 0 ];
+        while ( rseq.next() ) {
+            if ( rowIndex != null ) {
+                irow = rowIndex.getAsLong();
+            }
+            reader.setRow( rseq, irow );
+            for ( int ik = 0; ik < nk; ik++ ) {
+                keys[ ik ].readValue( reader, compExs[ ik ], irow );
+            }
+            irow++;
+            acc[ 0 ]++;
+        }
+    }
+
+    /**
+     * Returns a key object suitable for storing values of a given type.
+     *
+     * @param  clazz  expression result type
+     * @return  new key object sized for this table
+     */
+    private SortKey createKey( Class<?> clazz ) {
+        Class<?> wclazz = JELUtils.getWrapperType( clazz );
+        if ( wclazz == Long.class ) {
+            return new NumericKey( nrow_, false );
+        }
+        else if ( wclazz == Double.class || wclazz == Float.class ||
+                  wclazz == Integer.class || wclazz == Short.class ||
+                  wclazz == Byte.class ) {
+            return new NumericKey( nrow_, true );
+        }
+        else {
+            return new ObjectKey( nrow_ );
+        }
+    }
+
+    /**
+     * Compares two rows according to their stored key values.
+     *
+     * @param  keys  populated keys
+     * @param  irow1  index of first row
+     * @param  irow2  index of second row
+     * @return  negative, zero or positive according to whether the first
+     *          row sorts before, with, or after the second
+     */
+    private int compareRows( SortKey[] keys, long irow1, long irow2 ) {
+        for ( SortKey key : keys ) {
+            int c = key.compare( irow1, irow2, nullsLast_ );
+            if ( c != 0 ) {
+                return up_ ? c : -c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts on a single numeric key using a least significant digit
+     * radix sort.
+     *
+     * @param  key  populated key
+     * @return  sorted row order
+     */
+    private LongBlockArray radixSort( final NumericKey key ) {
+        final long n = nrow_;
+        LongBlockArray codesA = new LongBlockArray( n );
+        LongBlockArray orderA = new LongBlockArray( n );
+        LongBlockArray codesB = new LongBlockArray( n );
+        LongBlockArray orderB = new LongBlockArray( n );
+
+        /* Prepare codes whose unsigned ordering gives the required order.
+         * Blank values all get the same code, and are placed at the
+         * start or end by a final pass. */
+        final LongBlockArray codes0 = codesA;
+        final LongBlockArray order0 = orderA;
+        fjPool_.invoke( new Action( 0, n ) {
+            void run( long ilo, long ihi ) {
+                for ( long i = ilo; i < ihi; i++ ) {
+                    order0.set( i, i );
+                    if ( ! key.isBlank( i ) ) {
+                        long code = key.getCode( i );
+                        codes0.set( i, ( up_ ? code : ~code )
+                                       ^ Long.MIN_VALUE );
+                    }
+                }
+            }
+        } );
+        for ( int shift = 0; shift < 64; shift += RADIX_BITS ) {
+            if ( radixPass( codesA, orderA, codesB, orderB, shift, null ) ) {
+                LongBlockArray codesT = codesA;
+                LongBlockArray orderT = orderA;
+                codesA = codesB;
+                orderA = orderB;
+                codesB = codesT;
+                orderB = orderT;
+            }
+        }
+        if ( key.hasBlanks() &&
+             radixPass( codesA, orderA, codesB, orderB, 0, key ) ) {
+            orderA = orderB;
+        }
+        return orderA;
+    }
+
+    /**
+     * Performs a single stable counting sort pass of a radix sort.
+     * If all the elements fall in the same bucket, nothing is done.
+     *
+     * @param  codesIn  input sort codes
+     * @param  orderIn  input row indices
+     * @param  codesOut  output sort codes
+     * @param  orderOut  output row indices
+     * @param  shift   bit offset of the digit to sort on
+     * @param  blankKey  if non-null, the sort is not on the code digit
+     *                   but on whether the key is blank for each row
+     * @return  true iff the output arrays have been written
+     */
+    private boolean radixPass( final LongBlockArray codesIn,
+                               final LongBlockArray orderIn,
+                               final LongBlockArray codesOut,
+                               final LongBlockArray orderOut,
+                               final int shift, final NumericKey blankKey ) {
+        long n = codesIn.getSize();
+        int nseg = (int) Math.max( 1, Math.min( fjPool_.getParallelism() * 4,
+                                                n / LEAF_SIZE ) );
+        final long[] segStarts = new long[ nseg + 1 ];
+        for ( int is = 0; is <= nseg; is++ ) {
+            segStarts[ is ] = n * is / nseg;
+        }
+        final boolean blanksAfter = nullsLast_ == up_;
+
+        /* Count bucket occupancy in each segment. */
+        final long[][] counts = new long[ nseg ][ NBUCKET ];
+        List<RecursiveAction> countTasks = new ArrayList<RecursiveAction>();
+        for ( int is = 0; is < nseg; is++ ) {
+            final int is0 = is;
+            countTasks.add( new RecursiveAction() {
+                protected void compute() {
+                    long[] segCounts = counts[ is0 ];
+                    for ( long i = segStarts[ is0 ];
+                          i < segStarts[ is0 + 1 ]; i++ ) {
+                        segCounts[ getDigit( codesIn, orderIn, i, shift,
+                                             blankKey, blanksAfter ) ]++;
+                    }
+                }
+            } );
+        }
+        invokeAll( countTasks );
+
+        /* Turn the counts into output offsets. */
+        long[] totals = new long[ NBUCKET ];
+        for ( int is = 0; is < nseg; is++ ) {
+            for ( int ib = 0; ib < NBUCKET; ib++ ) {
+                totals[ ib ] += counts[ is ][ ib ];
+            }
+        }
+        for ( int ib = 0; ib < NBUCKET; ib++ ) {
+            if ( totals[ ib ] == n ) {
+                return false;
+            }
+        }
+        long off = 0;
+        for ( int ib = 0; ib < NBUCKET; ib++ ) {
+            for ( int is = 0; is < nseg; is++ ) {
+                long c = counts[ is ][ ib ];
+                counts[ is ][ ib ] = off;
+                off += c;
+            }
+        }
+
+        /* Scatter the elements to their output positions. */
+        List<RecursiveAction> scatterTasks = new ArrayList<RecursiveAction>();
+        for ( int is = 0; is < nseg; is++ ) {
+            final int is0 = is;
+            scatterTasks.add( new RecursiveAction() {
+                protected void compute() {
+                    long[] offs = counts[ is0 ];
+                    for ( long i = segStarts[ is0 ];
+                          i < segStarts[ is0 + 1 ]; i++ ) {
+                        long o = offs[ getDigit( codesIn, orderIn, i, shift,
+                                                 blankKey, blanksAfter ) ]++;
+                        codesOut.set( o, codesIn.get( i ) );
+                        orderOut.set( o, orderIn.get( i ) );
+                    }
+                }
+            } );
+        }
+        invokeAll( scatterTasks );
+        return true;
+    }
+
+    /**
+     * Returns the bucket index of an element for a radix sort pass.
+     *
+     * @param  codes  sort codes
+     * @param  order  row indices
+     * @param  i   element index
+     * @param  shift  bit offset of digit
+     * @param  blankKey  if non-null, the digit is determined by blankness
+     * @param  blanksAfter  whether blank values sort after others
+     * @return  bucket index
+     */
+    private static int getDigit( LongBlockArray codes, LongBlockArray order,
+                                 long i, int shift, NumericKey blankKey,
+                                 boolean blanksAfter ) {
+        if ( blankKey == null ) {
+            return (int) ( codes.get( i ) >>> shift ) & ( NBUCKET - 1 );
+        }
+        else {
+            return blankKey.isBlank( order.get( i ) ) == blanksAfter ? 1 : 0;
+        }
+    }
+
+    /**
+     * Invokes a list of tasks in this sorter's pool and waits for
+     * them to complete.
+     *
+     * @param  tasks  tasks
+     */
+    private void invokeAll( final List<RecursiveAction> tasks ) {
+        if ( tasks.size() == 1 ) {
+            tasks.get( 0 ).invoke();
+        }
+        else {
+            fjPool_.invoke( new RecursiveAction() {
+                protected void compute() {
+                    invokeAll( tasks );
+                }
+            } );
+        }
+    }
+
+    /**
+     * Recursive task that runs a loop over a range of indices,
+     * splitting it into parallel subranges if it is large.
+     */
+    private static abstract class Action extends RecursiveAction {
+        private final long ilo_;
+        private final long ihi_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ilo  lower bound of range (inclusive)
+         * @param  ihi  upper bound of range (exclusive)
+         */
+        Action( long ilo, long ihi ) {
+            ilo_ = ilo;
+            ihi_ = ihi;
+        }
+
+        /**
+         * Processes a subrange.
+         *
+         * @param  ilo  lower bound of range (inclusive)
+         * @param  ihi  upper bound of range (exclusive)
+         */
+        abstract void run( long ilo, long ihi );
+
+        protected void compute() {
+            if ( ihi_ - ilo_ <= LEAF_SIZE * 16 ) {
+                run( ilo_, ihi_ );
+            }
+            else {
+                final Action parent = this;
+                long imid = ( ilo_ + ihi_ ) >>> 1;
+                invokeAll( new Action( ilo_, imid ) {
+                    void run( long ilo, long ihi ) {
+                        parent.run( ilo, ihi );
+                    }
+                }, new Action( imid, ihi_ ) {
+                    void run( long ilo, long ihi ) {
+                        parent.run( ilo, ihi );
+                    }
+                } );
+            }
+        }
+    }
+
+    /**
+     * Recursive task performing a stable merge sort of part of a
+     * row order array.
+     */
+    private class MergeSortTask extends RecursiveAction {
+        private final SortKey[] keys_;
+        private final LongBlockArray order_;
+        private final LongBlockArray work_;
+        private final long ilo_;
+        private final long ihi_;
+
+        /**
+         * Constructor.
+         *
+         * @param  keys  populated keys
+         * @param  order  array of row indices to sort in place
+         * @param  work  workspace array of the same size as
+         *               <code>order</code>
+         * @param  ilo  lower bound of range to sort (inclusive)
+         * @param  ihi  upper bound of range to sort (exclusive)
+         */
+        MergeSortTask( SortKey[] keys, LongBlockArray order,
+                       LongBlockArray work, long ilo, long ihi ) {
+            keys_ = keys;
+            order_ = order;
+            work_ = work;
+            ilo_ = ilo;
+            ihi_ = ihi;
+        }
+
+        protected void compute() {
+            int n = (int) Math.min( ihi_ - ilo_, LEAF_SIZE + 1 );
+            if ( n <= LEAF_SIZE ) {
+                long[] rows = new long[ n ];
+                for ( int i = 0; i < n; i++ ) {
+                    rows[ i ] = order_.get( ilo_ + i );
+                }
+                sortLeaf( rows.clone(), rows, 0, n );
+                for ( int i = 0; i < n; i++ ) {
+                    order_.set( ilo_ + i, rows[ i ] );
+                }
+            }
+            else {
+                long imid = ( ilo_ + ihi_ ) >>> 1;
+                invokeAll( new MergeSortTask( keys_, order_, work_,
+                                              ilo_, imid ),
+                           new MergeSortTask( keys_, order_, work_,
+                                              imid, ihi_ ) );
+                merge( imid );
+            }
+        }
+
+        /**
+         * Merges the two sorted halves of this task's range.
+         *
+         * @param  imid  index of the start of the second half
+         */
+        private void merge( long imid ) {
+            if ( compareRows( keys_, order_.get( imid - 1 ),
+                              order_.get( imid ) ) <= 0 ) {
+                return;
+            }
+            long i1 = ilo_;
+            long i2 = imid;
+            long io = ilo_;
+            while ( i1 < imid && i2 < ihi_ ) {
+                long r1 = order_.get( i1 );
+                long r2 = order_.get( i2 );
+                if ( compareRows( keys_, r1, r2 ) <= 0 ) {
+                    work_.set( io++, r1 );
+                    i1++;
+                }
+                else {
+                    work_.set( io++, r2 );
+                    i2++;
+                }
+            }
+            while ( i1 < imid ) {
+                work_.set( io++, order_.get( i1++ ) );
+            }
+            for ( long i = ilo_; i < i2; i++ ) {
+                order_.set( i, work_.get( i ) );
+            }
+        }
+
+        /**
+         * Performs a stable merge sort of part of an ordinary array.
+         * On entry, <code>src</code> and <code>dst</code> must have the
+         * same content in the given range; on exit <code>dst</code>
+         * is sorted in that range.
+         *
+         * @param  src  source array
+         * @param  dst  destination array
+         * @param  ilo  lower bound of range (inclusive)
+         * @param  ihi  upper bound of range (exclusive)
+         */
+        private void sortLeaf( long[] src, long[] dst, int ilo, int ihi ) {
+            if ( ihi - ilo < 8 ) {
+                for ( int i = ilo + 1; i < ihi; i++ ) {
+                    long r = dst[ i ];
+                    int j = i;
+                    for ( ; j > ilo &&
+                            compareRows( keys_, dst[ j - 1 ], r ) > 0; j-- ) {
+                        dst[ j ] = dst[ j - 1 ];
+                    }
+                    dst[ j ] = r;
+                }
+                return;
+            }
+            int imid = ( ilo + ihi ) >>> 1;
+            sortLeaf( dst, src, ilo, imid );
+            sortLeaf( dst, src, imid, ihi );
+            int i1 = ilo;
+            int i2 = imid;
+            for ( int io = ilo; io < ihi; io++ ) {
+                if ( i2 >= ihi ||
+                     i1 < imid &&
+                     compareRows( keys_, src[ i1 ], src[ i2 ] ) <= 0 ) {
+                    dst[ io ] = src[ i1++ ];
+                }
+                else {
+                    dst[ io ] = src[ i2++ ];
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the values of a sort key for every row.
+     */
+    private static abstract class SortKey {
+
+        /**
+         * Returns the type to which key expressions should be compiled.
+         *
+         * @return  required expression type, or null for no conversion
+         */
+        abstract Class<?> getExpressionType();
+
+        /**
+         * Evaluates and stores the key value for a row.
+         *
+         * @param  reader  row reader positioned at the row
+         * @param  compEx  key expression compiled for <code>reader</code>
+         * @param  irow   row index
+         */
+        abstract void readValue( KeyReader reader, CompiledExpression compEx,
+                                 long irow )
+                throws IOException;
+
+        /**
+         * Compares the stored values for two rows in ascending order.
+         *
+         * @param  irow1  first row index
+         * @param  irow2  second row index
+         * @param  nullsLast  whether blank values come last
+         * @return  comparison result
+         */
+        abstract int compare( long irow1, long irow2, boolean nullsLast );
+
+        /**
+         * Compares two values taking account of blankness.
+         *
+         * @param  blank1  whether the first value is blank
+         * @param  blank2  whether the second value is blank
+         * @param  nullsLast  whether blank values come last
+         * @return  comparison result, or 2 if neither value is blank
+         */
+        static int compareBlanks( boolean blank1, boolean blank2,
+                                  boolean nullsLast ) {
+            if ( blank1 && blank2 ) {
+                return 0;
+            }
+            else if ( blank1 ) {
+                return nullsLast ? +1 : -1;
+            }
+            else if ( blank2 ) {
+                return nullsLast ? -1 : +1;
+            }
+            else {
+                return 2;
+            }
+        }
+    }
+
+    /**
+     * SortKey implementation for numeric values.
+     * Values are stored as long integer codes whose signed ordering
+     * matches the ordering of the values.
+     * For floating point values the code is derived from the IEEE 754
+     * bit pattern, and for integer values it is the value itself.
+     * Blank values are recorded in a separate bit set.
+     */
+    private static class NumericKey extends SortKey {
+        private final boolean isFloating_;
+        private final LongBlockArray codes_;
+        private final LongBlockArray blankBits_;
+        private boolean hasBlanks_;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow  number of rows
+         * @param  isFloating  true for values that can be represented
+         *                     exactly as doubles, false for long integers
+         */
+        NumericKey( long nrow, boolean isFloating ) {
+            isFloating_ = isFloating;
+            codes_ = new LongBlockArray( nrow );
+            blankBits_ = new LongBlockArray( ( nrow + 63 ) / 64 );
+        }
+
+        Class<?> getExpressionType() {
+            return isFloating_ ? double.class : null;
+        }
+
+        void readValue( KeyReader reader, CompiledExpression compEx,
+                        long irow )
+                throws IOException {
+            if ( isFloating_ ) {
+                double dval = reader.evaluateKeyDouble( compEx );
+                if ( Double.isNaN( dval ) ) {
+                    setBlank( irow );
+                }
+                else {
+                    long bits = Double.doubleToLongBits( dval );
+                    codes_.set( irow, bits ^ ( ( bits >> 63 )
+                                               & Long.MAX_VALUE ) );
+                }
+            }
+            else {
+                Object val = reader.evaluateObject( compEx );
+                if ( val instanceof Number ) {
+                    codes_.set( irow, ((Number) val).longValue() );
+                }
+                else {
+                    setBlank( irow );
+                }
+            }
+        }
+
+        int compare( long irow1, long irow2, boolean nullsLast ) {
+            int c = compareBlanks( isBlank( irow1 ), isBlank( irow2 ),
+                                   nullsLast );
+            return c == 2 ? Long.compare( codes_.get( irow1 ),
+                                          codes_.get( irow2 ) )
+                          : c;
+        }
+
+        /**
+         * Returns the code for a non-blank row.
+         *
+         * @param  irow  row index
+         * @return  code whose signed ordering matches value ordering
+         */
+        long getCode( long irow ) {
+            return codes_.get( irow );
+        }
+
+        /**
+         * Indicates whether the value for a row is blank.
+         *
+         * @param  irow  row index
+         * @return  true for a blank value
+         */
+        boolean isBlank( long irow ) {
+            return hasBlanks_
+                && ( blankBits_.get( irow >>> 6 ) & ( 1L << irow ) ) != 0;
+        }
+
+        /**
+         * Indicates whether any values are blank.
+         *
+         * @return  true iff any value is blank
+         */
+        boolean hasBlanks() {
+            return hasBlanks_;
+        }
+
+        /**
+         * Records that a row has a blank value.
+         * Since bit set words may be shared between rows processed by
+         * different threads, this is synchronized.
+         *
+         * @param  irow  row index
+         */
+        private synchronized void setBlank( long irow ) {
+            long iw = irow >>> 6;
+            blankBits_.set( iw, blankBits_.get( iw ) | ( 1L << irow ) );
+            hasBlanks_ = true;
+        }
+    }
+
+    /**
+     * SortKey implementation for non-numeric values.
+     */
+    private static class ObjectKey extends SortKey {
+        private final Object[][] blocks_;
+
+        private static final int BLOCK_BITS = 20;
+        private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+        private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+        /**
+         * Constructor.
+         *
+         * @param  nrow  number of rows
+         */
+        ObjectKey( long nrow ) {
+            int nblock = (int) ( ( nrow + BLOCK_SIZE - 1 ) >>> BLOCK_BITS );
+            blocks_ = new Object[ nblock ][];
+            for ( int ib = 0; ib < nblock; ib++ ) {
+                long start = ( (long) ib ) << BLOCK_BITS;
+                blocks_[ ib ] = new Object[ (int) Math.min( BLOCK_SIZE,
+                                                            nrow - start ) ];
+            }
+        }
+
+        Class<?> getExpressionType() {
+            return null;
+        }
+
+        void readValue( KeyReader reader, CompiledExpression compEx,
+                        long irow )
+                throws IOException {
+            Object val = reader.evaluateObject( compEx );
+            if ( ! Tables.isBlank( val ) ) {
+                if ( ! ( val instanceof Comparable ) ) {
+                    throw new IOException( "Sort key value not comparable: "
+                                         + val.getClass().getName() );
+                }
+                blocks_[ (int) ( irow >>> BLOCK_BITS ) ]
+                       [ ( (int) irow ) & BLOCK_MASK ] = val;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        int compare( long irow1, long irow2, boolean nullsLast ) {
+            Object v1 = getValue( irow1 );
+            Object v2 = getValue( irow2 );
+            int c = compareBlanks( v1 == null, v2 == null, nullsLast );
+            return c == 2 ? ((Comparable<Object>) v1).compareTo( v2 )
+                          : c;
+        }
+
+        /**
+         * Returns the stored value for a row.
+         *
+         * @param  irow  row index
+         * @return  non-blank value, or null
+         */
+        private Object getValue( long irow ) {
+            return blocks_[ (int) ( irow >>> BLOCK_BITS ) ]
+                          [ ( (int) irow ) & BLOCK_MASK ];
+        }
+    }
+
+    /**
+     * JEL row reader that evaluates expressions at the current row of
+     * a row sequence.
+     */
+    private static class KeyReader extends StarTableJELRowReader {
+        private RowSequence rseq_;
+        private long irow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table providing evaluation context
+         */
+        KeyReader( StarTable table ) {
+            super( table );
+        }
+
+        /**
+         * Sets the current row.
+         *
+         * @param  rseq  row sequence positioned at the row of interest
+         * @param  irow  index of the row of interest
+         */
+        void setRow( RowSequence rseq, long irow ) {
+            rseq_ = rseq;
+            irow_ = irow;
+        }
+
+        public long getCurrentRow() {
+            return irow_;
+        }
+
+        protected Object getCell( int icol ) throws IOException {
+            return rseq_.getCell( icol );
+        }
+
+        /**
+         * Evaluates an expression at the current row as an object.
+         *
+         * @param  compEx  compiled expression
+         * @return  value
+         */
+        Object evaluateObject( CompiledExpression compEx )
+                throws IOException {
+            try {
+                return evaluate( compEx );
+            }
+            catch ( IOException e ) {
+                throw e;
+            }
+            catch ( Error e ) {
+                throw e;
+            }
+            catch ( Throwable e ) {
+                throw (IOException) new IOException( "Sort error" )
+                                   .initCause( e );
+            }
+        }
+
+        /**
+         * Evaluates a numeric expression at the current row as a double.
+         *
+         * @param  compEx  compiled expression
+         * @return  value, NaN for blank
+         */
+        double evaluateKeyDouble( CompiledExpression compEx )
+                throws IOException {
+            try {
+                return evaluateDouble( compEx );
+            }
+            catch ( IOException e ) {
+                throw e;
+            }
+            catch ( Error e ) {
+                throw e;
+            }
+            catch ( Throwable e ) {
+                throw (IOException) new IOException( "Sort error" )
+                                   .initCause( e );
+            }
+        }
+    }
+}
@@ -1,21 +1,17 @@
 package uk.ac.starlink.ttools.filter;
 
 import gnu.jel.CompilationException;
-import gnu.jel.CompiledExpression;
-import gnu.jel.Library;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import uk.ac.starlink.table.RandomRowSequence;
 import uk.ac.starlink.table.RowPermutedStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.Tokenizer;
-import uk.ac.starlink.ttools.jel.JELUtils;
-import uk.ac.starlink.ttools.jel.RandomJELRowReader;
 
 /**
  * Processing filter which sorts on one or more JEL expressions.
@@ -27,7 +23,7 @@ public class SortFilter extends BasicFilter {
 
     public SortFilter() {
         super( "sort",
-               "[-down] [-nullsfirst] " 
+               "[-down] [-nullsfirst] [-external] " 
              + "<key-list>" );
     }
 
@@ -51,6 +47,16 @@ public class SortFilter extends BasicFilter {
             "flag is given then they are considered to come at the start",
             "instead.",
             "</p>",
+            "<p>By default the whole table is made available for",
+            "random access before sorting.",
+            "If the <code>-external</code> flag is given, the rows are",
+            "instead read once sequentially and sorted in batches",
+            "which are written to temporary files,",
+            "and the output rows are streamed from a merge of those files.",
+            "This requires only a bounded amount of memory",
+            "and is suitable for very large tables,",
+            "but the output is not random-access.",
+            "</p>",
             explainSyntax( new String[] { "key-list", } ),
         };
     }
@@ -59,6 +65,7 @@ public class SortFilter extends BasicFilter {
             throws ArgException {
         boolean up = true;
         boolean nullsLast = true;
+        boolean external = false;
         String exprs = null;
         while ( argIt.hasNext() && exprs == null ) {
             String arg = argIt.next();
@@ -70,6 +77,10 @@ public class SortFilter extends BasicFilter {
                 argIt.remove();
                 nullsLast = false;
             }
+            else if ( arg.equals( "-external" ) ) {
+                argIt.remove();
+                external = true;
+            }
             else if ( exprs == null ) {
                 argIt.remove();
                 exprs = arg;
@@ -92,7 +103,8 @@ public class SortFilter extends BasicFilter {
         }
 
         /* Return the appropriate step implementation. */
-        return new SortStep( keys, up, nullsLast );
+        return external ? new ExternalSortStep( keys, up, nullsLast )
+                        : new SortStep( keys, up, nullsLast );
     }
 
     /**
@@ -111,142 +123,90 @@ public class SortFilter extends BasicFilter {
 
         public StarTable wrap( StarTable baseTable ) throws IOException {
             baseTable = Tables.randomTable( baseTable );
-            long lnrow = baseTable.getRowCount();
-            if ( lnrow > Integer.MAX_VALUE ) {
-                throw new UnsupportedOperationException( 
-                    "Sorry, can't sort tables with >2^31 rows" );
-            }
-            int nrow = (int) lnrow;
-            Number[] rowMap = new Number[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rowMap[ i ] = new Integer( i );
-            }
-            Comparator<Number> keyComparator;
+            RowSorter sorter;
             try {
-                keyComparator = new RowComparator( baseTable, keys_, up_,
-                                                   nullsLast_ );
+                sorter = new RowSorter( baseTable, keys_, up_, nullsLast_ );
             }
             catch ( CompilationException e ) {
                 throw (IOException) new IOException( "Bad sort key(s)" )
                                    .initCause( e );
             }
+            LongBlockArray order = sorter.getSortedOrder( RowRunner.DEFAULT );
+            long[] rmap = order.toArray();
+            return rmap != null
+                 ? new RowPermutedStarTable( baseTable, rmap )
+                 : new BlockPermutedStarTable( baseTable, order );
+        }
+    }
+
+    /**
+     * Step implementation which sorts rows using sequential access
+     * and scratch storage.
+     */
+    private static class ExternalSortStep implements ProcessingStep {
+        final String[] keys_;
+        final boolean up_;
+        final boolean nullsLast_;
+
+        ExternalSortStep( String[] keys, boolean up, boolean nullsLast ) {
+            keys_ = keys;
+            up_ = up;
+            nullsLast_ = nullsLast;
+        }
+
+        public StarTable wrap( StarTable baseTable ) throws IOException {
+            int runRows =
+                ExternalSorter.getDefaultRunRows( baseTable, keys_.length );
+            ExternalSorter sorter;
             try {
-                Arrays.sort( rowMap, keyComparator );
-            }
-            catch ( SortException e ) {
-                throw e.asIOException();
+                sorter = new ExternalSorter( baseTable, keys_, up_,
+                                             nullsLast_, runRows );
             }
-            long[] rmap = new long[ nrow ];
-            for ( int i = 0; i < nrow; i++ ) {
-                rmap[ i ] = rowMap[ i ].longValue();
+            catch ( CompilationException e ) {
+                throw (IOException) new IOException( "Bad sort key(s)" )
+                                   .initCause( e );
             }
-            return new RowPermutedStarTable( baseTable, rmap );
+            return sorter.sort();
         }
     }
 
-    /** 
-     * Comparator which will compare two objects which are Numbers 
-     * representing row indices of a given table.
+    /**
+     * Permuted table for use when the row map is too large for
+     * a RowPermutedStarTable.
      */
-    private static class RowComparator implements Comparator<Number> {
-
-        final CompiledExpression[] compExs_;
-        final int nexpr_;
-        final RandomJELRowReader rowReader_;
-        boolean up_;
-        boolean nullsLast_;
+    private static class BlockPermutedStarTable extends WrapperStarTable {
+        private final LongBlockArray rowMap_;
 
         /**
          * Constructor.
          *
-         * @param  table  table whose rows are to be examined
-         * @param  keys   array of column identifiers; first is most
-         *                significant for ordering, second next, etc
-         * @param   up  true for sorting into ascending order, false for
-         *          descending order
-         * @param   nullsLast  true if blank values should be considered
-         *          last in the collation order, false if they should
-         *          be considered first
+         * @param  baseTable  random-access base table
+         * @param  rowMap   array mapping rows in this table to rows in
+         *                  the base table
          */
-        public RowComparator( StarTable table, String[] keys, boolean up,
-                              boolean nullsLast )
-                throws CompilationException {
-            nexpr_ = keys.length;
-            up_ = up;
-            nullsLast_ = nullsLast;
+        BlockPermutedStarTable( StarTable baseTable, LongBlockArray rowMap ) {
+            super( baseTable );
+            rowMap_ = rowMap;
+        }
 
-            /* Prepare compiled expressions for reading the data from 
-             * table rows. */
-            rowReader_ = new RandomJELRowReader( table );
-            Library lib = JELUtils.getLibrary( rowReader_ );
-            compExs_ = new CompiledExpression[ nexpr_ ];
-            for ( int i = 0; i < nexpr_; i++ ) {
-                compExs_[ i ] = JELUtils.compile( lib, table, keys[ i ] );
-            }
+        public long getRowCount() {
+            return rowMap_.getSize();
         }
 
-        public int compare( Number o1, Number o2 ) {
-            long row1 = o1.longValue();
-            long row2 = o2.longValue();
-            int c = 0;
-            for ( int i = 0; i < nexpr_ && c == 0; i++ ) { 
-                CompiledExpression compEx = compExs_[ i ];
-                Object val1;
-                Object val2;
-                try {
-                    val1 = rowReader_.evaluateAtRow( compEx, row1 );
-                    val2 = rowReader_.evaluateAtRow( compEx, row2 );
-                }
-                catch ( Throwable e ) {
-                    throw new SortException( "Sort error", e );
-                }
-                try {
-                    c = compareValues( val1, val2 );
-                }
-                catch ( ClassCastException e ) {
-                    throw new SortException( 
-                        "Expression comparison error during sorting", e );
-                }
-            }
-            return up_ ? c : -c;
+        public boolean isRandom() {
+            return true;
         }
 
-        /**
-         * Compares the actual cell values.
-         */
-        @SuppressWarnings("unchecked")
-        private int compareValues( Object o1, Object o2 ) {
-            boolean null1 = Tables.isBlank( o1 );
-            boolean null2 = Tables.isBlank( o2 );
-            if ( null1 && null2 ) {
-                return 0;
-            }
-            else if ( null1 ) {
-                return nullsLast_ ? +1 : -1;
-            }
-            else if ( null2 ) {
-                return nullsLast_ ? -1 : +1;
-            }
-            else {
-                return ((Comparable<Object>) o1).compareTo( (Comparable) o2 );
-            }
+        public RowSequence getRowSequence() {
+            return new RandomRowSequence( this );
         }
-    }
 
-    /**
-     * Helper class defining private exception type.
-     * Used to smuggle a checked exception out of a sort comparison.
-     */
-    private static class SortException extends RuntimeException {
-        SortException( String msg, Throwable e ) {
-            super( msg, e );
+        public Object getCell( long irow, int icol ) throws IOException {
+            return baseTable.getCell( rowMap_.get( irow ), icol );
         }
-        IOException asIOException() {
-            Throwable error = getCause();
-            return error instanceof IOException
-                 ? (IOException) error
-                 : (IOException) new IOException( error.getMessage() )
-                                .initCause( error );
+
+        public Object[] getRow( long irow ) throws IOException {
+            return baseTable.getRow( rowMap_.get( irow ) );
         }
     }
 }
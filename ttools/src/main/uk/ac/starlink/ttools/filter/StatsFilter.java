@@ -1,6 +1,7 @@
 package uk.ac.starlink.ttools.filter;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,16 +11,21 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.xml.sax.SAXException;
 import uk.ac.starlink.table.AbstractStarTable;
+import uk.ac.starlink.table.BatchRowSequence;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.RandomStarTable;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.TypedRowSequence;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.ttools.DocUtils;
 import uk.ac.starlink.ttools.Formatter;
@@ -36,6 +42,9 @@ public class StatsFilter extends BasicFilter {
     /** Maximum value for cardinality counters. */
     private static final int MAX_CARDINALITY = 100;
 
+    /** Number of rows read at a time from batch row sequences. */
+    private static final int BATCH_SIZE = 1024;
+
     /*
      * Metadata for calculated quantities.
      */
@@ -269,148 +278,138 @@ public class StatsFilter extends BasicFilter {
             ? quantInfoList.toArray( new QuantileInfo[ 0 ] )
             : null;
 
-        long nrow = table.getRowCount();
-
-        /* Prepare statistical accumulators for each column of the table. */
+        /* Work out if we need to record the positions of extrema. */
+        boolean doPos = Arrays.asList( infos ).contains( MINPOS_INFO )
+                     || Arrays.asList( infos ).contains( MAXPOS_INFO );
+
+        /* Accumulate statistics from the table data.  Quantile calculators
+         * may be presized to hold every row, so if they are required
+         * the accumulation is done sequentially to avoid allocating
+         * that storage once per parallel subtask.  Extremum positions
+         * need row indices; if the table cannot supply them, the
+         * accumulation is done sequentially too, so that rows can be
+         * counted instead.  Otherwise it may be done in parallel. */
+        RowSplittable rsplit = table.getRowSplittable();
+        boolean countIndex = doPos && rsplit.rowIndex() == null;
+        RowRunner runner = doQuant || countIndex ? RowRunner.SEQUENTIAL
+                                                 : RowRunner.DEFAULT;
+        StatsCollector collector =
+            new StatsCollector( table, doCard, doQuant, countIndex );
+        StatsAccumulator acc;
+        try {
+            acc = runner.collect( collector, rsplit );
+        }
+        catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        long nrow = acc.nrow_;
         int ncol = table.getColumnCount();
-        UnivariateStats[] colStats = new UnivariateStats[ ncol ];
-        CardinalityChecker[] cardCheckers =
-            doCard ? new CardinalityChecker[ ncol ] : null;
-        QuantCalc[] quantCalcs = new QuantCalc[ ncol ];
+        UnivariateStats[] colStats = acc.colStats_;
+        CardinalityChecker[] cardCheckers = acc.cardCheckers_;
+        QuantCalc[] quantCalcs = acc.quantCalcs_;
+
+        /* Get a MapGroup representing column metadata (the option is 
+         * provided to output this alongside the statistical results). */
+        MapGroup<ValueInfo,Object> group =
+            MetadataFilter.metadataMapGroup( table );
+
+        /* Augment the metadata with the relevant statistical results for
+         * each column. */
         for ( int icol = 0; icol < ncol; icol++ ) {
-            Class<?> clazz = table.getColumnInfo( icol ).getContentClass();
-            colStats[ icol ] = UnivariateStats.createStats( clazz );
-            if ( doCard ) {
-                cardCheckers[ icol ] =
-                    new CardinalityChecker( MAX_CARDINALITY );
+
+            /* Gather statistical results. */
+            UnivariateStats stats = colStats[ icol ];
+            long count = stats.getCount();
+            double dcount = (double) count;
+            double sum0 = dcount;
+            double sum1 = stats.getSum();
+            double sum2 = stats.getSum2();
+            double sum3 = stats.getSum3();
+            double sum4 = stats.getSum4();
+            double mean = sum1 / dcount;
+            double nvar = ( sum2 - sum1 * sum1 / dcount );
+            double popvar = nvar / dcount;
+            double sampvar = nvar / ( dcount - 1 );
+          
+            double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
+                        * ( + 1 * sum3
+                            - 3 * mean * sum2
+                            + 3 * mean * mean * sum1
+                            - 1 * mean * mean * mean * sum0 );
+            double kurtosis = ( dcount / ( nvar * nvar ) )
+                            * ( + 1 * sum4 
+                                - 4 * mean * sum3 
+                                + 6 * mean * mean * sum2
+                                - 4 * mean * mean * mean * sum1
+                                + 1 * mean * mean * mean * mean * sum0 )
+                            - 3.0;
+            Number min = stats.getMinimum();
+            Number max = stats.getMaximum();
+
+            /* Add statistical quantities to the column's
+             * info->values map. */
+            Map<ValueInfo,Object> map = group.getMaps().get( icol );
+            map.put( NGOOD_INFO, new Long( count ) );
+            map.put( NBAD_INFO, new Long( nrow - count ) );
+            map.put( SUM_INFO, new Double( sum1 ) );
+            if ( isFinite( mean ) ) {
+                map.put( MEAN_INFO, new Float( (float) mean ) );
             }
-            if ( doQuant && Number.class.isAssignableFrom( clazz ) ) {
-                @SuppressWarnings("unchecked")
-                Class<? extends Number> nclazz =
-                    (Class<? extends Number>) clazz;
-                quantCalcs[ icol ] = QuantCalc.createInstance( nclazz, nrow );
+            if ( isFinite( popvar ) ) {
+                map.put( POPSD_INFO,
+                         new Float( (float) Math.sqrt( popvar ) ) );
+                map.put( POPVAR_INFO, new Float( (float) popvar ) );
             }
-        }
-
-        /* Populate them with the the data read from the table. */
-        RowSequence rseq = table.getRowSequence();
-        long irow = 0L;
-        try {
-            while ( rseq.next() ) {
-                Object[] row = rseq.getRow();
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    Object datum = row[ icol ];
-                    colStats[ icol ].acceptDatum( datum );
-                    if ( doCard ) {
-                        cardCheckers[ icol ].acceptDatum( datum );
-                    }
-                    if ( quantCalcs[ icol ] != null ) {
-                        quantCalcs[ icol ].acceptDatum( datum );
-                    }
-                }
-                irow++;
+            if ( isFinite( sampvar ) ) {
+                map.put( SAMPSD_INFO,
+                         new Float( (float) Math.sqrt( sampvar ) ) );
+                map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
             }
-
-            /* Get a MapGroup representing column metadata (the option is 
-             * provided to output this alongside the statistical results). */
-            MapGroup<ValueInfo,Object> group =
-                MetadataFilter.metadataMapGroup( table );
-
-            /* Augment the metadata with the relevant statistical results for
-             * each column. */
-            for ( int icol = 0; icol < ncol; icol++ ) {
-
-                /* Gather statistical results. */
-                UnivariateStats stats = colStats[ icol ];
-                long count = stats.getCount();
-                double dcount = (double) count;
-                double sum0 = dcount;
-                double sum1 = stats.getSum();
-                double sum2 = stats.getSum2();
-                double sum3 = stats.getSum3();
-                double sum4 = stats.getSum4();
-                double mean = sum1 / dcount;
-                double nvar = ( sum2 - sum1 * sum1 / dcount );
-                double popvar = nvar / dcount;
-                double sampvar = nvar / ( dcount - 1 );
-              
-                double skew = Math.sqrt( dcount ) / Math.pow( nvar, 1.5 )
-                            * ( + 1 * sum3
-                                - 3 * mean * sum2
-                                + 3 * mean * mean * sum1
-                                - 1 * mean * mean * mean * sum0 );
-                double kurtosis = ( dcount / ( nvar * nvar ) )
-                                * ( + 1 * sum4 
-                                    - 4 * mean * sum3 
-                                    + 6 * mean * mean * sum2
-                                    - 4 * mean * mean * mean * sum1
-                                    + 1 * mean * mean * mean * mean * sum0 )
-                                - 3.0;
-                Number min = stats.getMinimum();
-                Number max = stats.getMaximum();
-
-                /* Add statistical quantities to the column's
-                 * info->values map. */
-                Map<ValueInfo,Object> map = group.getMaps().get( icol );
-                map.put( NGOOD_INFO, new Long( count ) );
-                map.put( NBAD_INFO, new Long( irow - count ) );
-                map.put( SUM_INFO, new Double( sum1 ) );
-                if ( isFinite( mean ) ) {
-                    map.put( MEAN_INFO, new Float( (float) mean ) );
-                }
-                if ( isFinite( popvar ) ) {
-                    map.put( POPSD_INFO,
-                             new Float( (float) Math.sqrt( popvar ) ) );
-                    map.put( POPVAR_INFO, new Float( (float) popvar ) );
-                }
-                if ( isFinite( sampvar ) ) {
-                    map.put( SAMPSD_INFO,
-                             new Float( (float) Math.sqrt( sampvar ) ) );
-                    map.put( SAMPVAR_INFO, new Float( (float) sampvar ) );
-                }
-                if ( isFinite( skew ) ) {
-                    map.put( SKEW_INFO, new Float( (float) skew ) );
-                }
-                if ( isFinite( kurtosis ) ) {
-                    map.put( KURT_INFO, new Float( (float) kurtosis ) );
+            if ( isFinite( skew ) ) {
+                map.put( SKEW_INFO, new Float( (float) skew ) );
+            }
+            if ( isFinite( kurtosis ) ) {
+                map.put( KURT_INFO, new Float( (float) kurtosis ) );
+            }
+            if ( min != null && isFinite( min.doubleValue() ) ) {
+                map.put( MIN_INFO, min );
+                if ( stats.getMinPos() >= 0 ) {
+                    map.put( MINPOS_INFO,
+                             new Long( stats.getMinPos() + 1 ) );
                 }
-                if ( min != null && isFinite( min.doubleValue() ) ) {
-                    map.put( MIN_INFO, min );
-                    map.put( MINPOS_INFO, new Long( stats.getMinPos() + 1 ) );
+            }
+            if ( max != null && isFinite( max.doubleValue() ) ) {
+                map.put( MAX_INFO, max );
+                if ( stats.getMaxPos() >= 0 ) {
+                    map.put( MAXPOS_INFO,
+                             new Long( stats.getMaxPos() + 1 ) );
                 }
-                if ( max != null && isFinite( max.doubleValue() ) ) {
-                    map.put( MAX_INFO, max );
-                    map.put( MAXPOS_INFO, new Long( stats.getMaxPos() + 1 ) );
+            }
+            if ( doCard ) {
+                int ncard = cardCheckers[ icol ].getCardinality();
+                if ( ncard > 0 ) {
+                    map.put( CARDINALITY_INFO, new Integer( ncard ) );
                 }
-                if ( doCard ) {
-                    int ncard = cardCheckers[ icol ].getCardinality();
-                    if ( ncard > 0 ) {
-                        map.put( CARDINALITY_INFO, new Integer( ncard ) );
-                    }
+            }
+            if ( quantCalcs[ icol ] != null ) {
+                quantCalcs[ icol ].ready();
+                for ( int iq = 0; iq < quantInfos.length; iq++ ) {
+                    QuantileInfo quantInfo = quantInfos[ iq ];
+                    Number quantile = quantCalcs[ icol ]
+                                     .getQuantile( quantInfo.getQuant() );
+                    map.put( quantInfo, quantile );
                 }
-                if ( quantCalcs[ icol ] != null ) {
-                    quantCalcs[ icol ].ready();
-                    for ( int iq = 0; iq < quantInfos.length; iq++ ) {
-                        QuantileInfo quantInfo = quantInfos[ iq ];
-                        Number quantile = quantCalcs[ icol ]
-                                         .getQuantile( quantInfo.getQuant() );
-                        map.put( quantInfo, quantile );
-                    }
-                    if ( doMad ) {
-                        Number mad =
-                            QuantCalc.calculateMedianAbsoluteDeviation(
-                                           quantCalcs[ icol ] );
-                        map.put( MAD_INFO, mad );
-                        map.put( SMAD_INFO, new Float( mad.floatValue() *
-                                                       QuantCalc.MAD_SCALE ) );
-                    }
+                if ( doMad ) {
+                    Number mad =
+                        QuantCalc.calculateMedianAbsoluteDeviation(
+                                       quantCalcs[ icol ] );
+                    map.put( MAD_INFO, mad );
+                    map.put( SMAD_INFO, new Float( mad.floatValue() *
+                                                   QuantCalc.MAD_SCALE ) );
                 }
             }
-            return group;
-        }
-        finally {
-            rseq.close();
         }
+        return group;
     }
 
     /**
@@ -486,6 +485,182 @@ public class StatsFilter extends BasicFilter {
         }
     }
 
+    /**
+     * RowCollector that accumulates per-column statistics.
+     */
+    private static class StatsCollector
+            extends RowCollector<StatsAccumulator> {
+
+        private final Class<?>[] clazzes_;
+        private final long nrow_;
+        private final boolean doCard_;
+        private final boolean doQuant_;
+        private final boolean countIndex_;
+
+        /**
+         * Constructor.
+         * If <code>countIndex</code> is set, row indices not supplied
+         * by the row sequence are obtained by counting rows,
+         * which is only correct if all the rows are accumulated
+         * in a single sequential pass.
+         *
+         * @param  table  table whose rows will be collected
+         * @param  doCard  whether to calculate cardinalities
+         * @param  doQuant  whether to calculate quantiles
+         * @param  countIndex  whether to count rows if the row sequence
+         *                     does not supply row indices
+         */
+        StatsCollector( StarTable table, boolean doCard, boolean doQuant,
+                        boolean countIndex ) {
+            int ncol = table.getColumnCount();
+            clazzes_ = new Class<?>[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                clazzes_[ icol ] =
+                    table.getColumnInfo( icol ).getContentClass();
+            }
+            nrow_ = table.getRowCount();
+            doCard_ = doCard;
+            doQuant_ = doQuant;
+            countIndex_ = countIndex;
+        }
+
+        public StatsAccumulator createAccumulator() {
+            int ncol = clazzes_.length;
+            StatsAccumulator acc = new StatsAccumulator( ncol, doCard_ );
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Class<?> clazz = clazzes_[ icol ];
+                acc.colStats_[ icol ] = UnivariateStats.createStats( clazz );
+                if ( doCard_ ) {
+                    acc.cardCheckers_[ icol ] =
+                        new CardinalityChecker( MAX_CARDINALITY );
+                }
+                if ( doQuant_ && Number.class.isAssignableFrom( clazz ) ) {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Number> nclazz =
+                        (Class<? extends Number>) clazz;
+                    try {
+                        acc.quantCalcs_[ icol ] =
+                            QuantCalc.createInstance( nclazz, nrow_ );
+                    }
+                    catch ( IOException e ) {
+                        throw new UncheckedIOException( e );
+                    }
+                }
+            }
+            return acc;
+        }
+
+        public void accumulateRows( RowSplittable rseq, StatsAccumulator acc )
+                throws IOException {
+            int ncol = clazzes_.length;
+            LongSupplier rowIndex = rseq.rowIndex();
+            UnivariateStats[] colStats = acc.colStats_;
+            CardinalityChecker[] cardCheckers = acc.cardCheckers_;
+            QuantCalc[] quantCalcs = acc.quantCalcs_;
+            long nrow = 0;
+            boolean isBatchable = ! doCard_ && ! doQuant_ &&
+                                  rseq instanceof BatchRowSequence;
+            for ( int icol = 0; icol < ncol && isBatchable; icol++ ) {
+                isBatchable = colStats[ icol ].isBatchable();
+            }
+
+            /* If only the basic statistics are required for numeric
+             * columns and the sequence can supply them in bulk,
+             * submit them a column at a time for blocks of rows. */
+            if ( isBatchable ) {
+                BatchRowSequence bseq = (BatchRowSequence) rseq;
+                double[] dbuf = new double[ BATCH_SIZE ];
+                long[] lbuf = new long[ BATCH_SIZE ];
+                for ( int n; ( n = bseq.nextBatch( BATCH_SIZE ) ) > 0; ) {
+
+                    /* Following a batch read, the row index refers to
+                     * the last row of the batch. */
+                    long irow0 = rowIndex != null
+                               ? rowIndex.getAsLong() - n + 1
+                               : countIndex_ ? nrow : -1;
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        colStats[ icol ]
+                       .acceptBatch( bseq, icol, n, irow0, dbuf, lbuf );
+                    }
+                    nrow += n;
+                }
+            }
+
+            /* If only the basic statistics are required and the sequence
+             * can supply primitive values, submit them cell by cell,
+             * which allows the accumulators to avoid creating objects. */
+            else if ( ! doCard_ && ! doQuant_ &&
+                      rseq instanceof TypedRowSequence ) {
+                while ( rseq.next() ) {
+                    long irow = rowIndex != null ? rowIndex.getAsLong()
+                                                 : countIndex_ ? nrow : -1;
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        colStats[ icol ].acceptCell( rseq, icol, irow );
+                    }
+                    nrow++;
+                }
+            }
+            else {
+                while ( rseq.next() ) {
+                    long irow = rowIndex != null ? rowIndex.getAsLong()
+                                                 : countIndex_ ? nrow : -1;
+                    Object[] row = rseq.getRow();
+                    for ( int icol = 0; icol < ncol; icol++ ) {
+                        Object datum = row[ icol ];
+                        colStats[ icol ].acceptDatum( datum, irow );
+                        if ( doCard_ ) {
+                            cardCheckers[ icol ].acceptDatum( datum );
+                        }
+                        if ( quantCalcs[ icol ] != null ) {
+                            quantCalcs[ icol ].acceptDatum( datum );
+                        }
+                    }
+                    nrow++;
+                }
+            }
+            acc.nrow_ += nrow;
+        }
+
+        public StatsAccumulator combine( StatsAccumulator acc1,
+                                         StatsAccumulator acc2 ) {
+            int ncol = clazzes_.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                acc1.colStats_[ icol ].add( acc2.colStats_[ icol ] );
+                if ( doCard_ ) {
+                    acc1.cardCheckers_[ icol ]
+                        .add( acc2.cardCheckers_[ icol ] );
+                }
+                if ( acc1.quantCalcs_[ icol ] != null ) {
+                    acc1.quantCalcs_[ icol ].add( acc2.quantCalcs_[ icol ] );
+                }
+            }
+            acc1.nrow_ += acc2.nrow_;
+            return acc1;
+        }
+    }
+
+    /**
+     * Accumulator for use with StatsCollector.
+     */
+    private static class StatsAccumulator {
+        final UnivariateStats[] colStats_;
+        final CardinalityChecker[] cardCheckers_;
+        final QuantCalc[] quantCalcs_;
+        long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  ncol  column count
+         * @param  doCard  whether cardinality checkers are required
+         */
+        StatsAccumulator( int ncol, boolean doCard ) {
+            colStats_ = new UnivariateStats[ ncol ];
+            cardCheckers_ = doCard ? new CardinalityChecker[ ncol ] : null;
+            quantCalcs_ = new QuantCalc[ ncol ];
+        }
+    }
+
     /**
      * Counts distinct values which appear in a column.
      * The cardinality is the number of distinct values. 
@@ -525,6 +700,25 @@ public class StatsFilter extends BasicFilter {
             }
         }
 
+        /**
+         * Merges the contents of another checker into this one.
+         *
+         * @param  other  checker with the same maximum cardinality
+         */
+        void add( CardinalityChecker other ) {
+            if ( items_ != null ) {
+                if ( other.items_ == null ) {
+                    items_ = null;
+                }
+                else {
+                    items_.addAll( other.items_ );
+                    if ( items_.size() >= maxCard_ ) {
+                        items_ = null;
+                    }
+                }
+            }
+        }
+
         /**
          * Returns the cardinality of the data items submitted.
          * If the cardinality is greater than <code>maxCard</code>,
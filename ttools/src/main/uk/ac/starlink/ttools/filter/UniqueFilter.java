@@ -25,7 +25,7 @@ public class UniqueFilter extends BasicFilter {
                               "Number of duplicate rows" );
 
     public UniqueFilter() {
-        super( "uniq", "[-count] [<colid-list>]" );
+        super( "uniq", "[-count] [-global] [<colid-list>]" );
     }
 
     protected String[] getDescriptionLines() {
@@ -44,29 +44,49 @@ public class UniqueFilter extends BasicFilter {
             "input rows represented by each output row.  A unique row",
             "has a " + COUNT_INFO.getName() + " value of 1.",
             "</p>",
+            "<p>If the <code>-global</code> flag is given, then all rows",
+            "which duplicate an earlier row are removed,",
+            "not just adjacent ones, so that the output contains",
+            "the first occurrence of each distinct row in the input order.",
+            "Rows are compared using 128-bit hashes of their values.",
+            "These are held in memory where possible,",
+            "but for very large tables they are spilled to",
+            "temporary files and the input table is read twice.",
+            "The <code>-count</code> flag may not be used in this case.",
+            "</p>",
             explainSyntax( new String[] { "colid-list", } ),
         };
     }
 
-    public ProcessingStep createStep( Iterator<String> argIt ) {
+    public ProcessingStep createStep( Iterator<String> argIt )
+            throws ArgException {
         String testIds = null;
         boolean count = false;
+        boolean global = false;
         while ( argIt.hasNext() && testIds == null ) {
             String arg = argIt.next();
             if ( arg.equals( "-count" ) ) {
                 argIt.remove();
                 count = true;
             }
+            else if ( arg.equals( "-global" ) ) {
+                argIt.remove();
+                global = true;
+            }
             else {
                 argIt.remove();
                 testIds = arg;
             }
         }
+        if ( count && global ) {
+            throw new ArgException( "Can't use -count with -global" );
+        }
         final String tids = testIds;
         final boolean doCount = count;
+        final boolean isGlobal = global;
         return new ProcessingStep() {
             public StarTable wrap( StarTable base ) throws IOException {
-                return new UniqueTable( base, tids, doCount );
+                return new UniqueTable( base, tids, doCount, isGlobal );
             }
         };
     }
@@ -75,8 +95,10 @@ public class UniqueFilter extends BasicFilter {
 
         final boolean[] testFlags_;
         final boolean doCount_;
+        final boolean global_;
 
-        UniqueTable( StarTable base, String testIds, boolean doCount )
+        UniqueTable( StarTable base, String testIds, boolean doCount,
+                     boolean global )
                 throws IOException {
             super( base );
             if ( testIds == null ) {
@@ -88,6 +110,7 @@ public class UniqueFilter extends BasicFilter {
                             .getColumnFlags( testIds );
             }
             doCount_ = doCount;
+            global_ = global;
         }
 
         public boolean isRandom() {
@@ -109,6 +132,24 @@ public class UniqueFilter extends BasicFilter {
         }
 
         public RowSequence getRowSequence() throws IOException {
+            if ( global_ ) {
+                int ntest = 0;
+                for ( boolean flag : testFlags_ ) {
+                    if ( flag ) {
+                        ntest++;
+                    }
+                }
+                int[] icols = new int[ ntest ];
+                int itest = 0;
+                for ( int icol = 0; icol < testFlags_.length; icol++ ) {
+                    if ( testFlags_[ icol ] ) {
+                        icols[ itest++ ] = icol;
+                    }
+                }
+                return new DistinctRowSequence(
+                           getBaseTable(), icols,
+                           DistinctRowSequence.DEFAULT_MAX_ENTRIES );
+            }
             final RowSequence rseq = super.getRowSequence();
             final int ncol = super.getColumnCount();
             return new RowSequence() {
@@ -1,5 +1,8 @@
 package uk.ac.starlink.ttools.filter;
 
+import java.io.IOException;
+import uk.ac.starlink.table.BatchRowSequence;
+import uk.ac.starlink.table.RowSequence;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.Tables;
 
@@ -8,6 +11,9 @@ import uk.ac.starlink.table.Tables;
  * Feed data to an instance of this object by repeatedly calling 
  * {@link #acceptDatum} and then call the various accessor methods to 
  * get accumulated values.
+ * Instances accumulated separately, for instance from different
+ * parts of the same table in different threads,
+ * may be merged using the {@link #add} method.
  *
  * @author   Mark Taylor
  * @since    27 Apr 2006
@@ -18,10 +24,91 @@ public abstract class UnivariateStats {
      * Submits a single value to the statistics accumulator.
      * The submitted value should be of a type compatible with the 
      * class type of this Stats object.
+     * The index of the row it comes from is not known,
+     * so it does not contribute to any extremum position.
+     * This is equivalent to calling
+     * {@link #acceptDatum(java.lang.Object,long) acceptDatum(value,-1)}.
      *
      * @param   value   value object
      */
-    public abstract void acceptDatum( Object value );
+    public void acceptDatum( Object value ) {
+        acceptDatum( value, -1L );
+    }
+
+    /**
+     * Submits a single value from a known row to the statistics accumulator.
+     * The submitted value should be of a type compatible with the 
+     * class type of this Stats object.
+     *
+     * @param   value   value object
+     * @param   irow   index of the row from which the value is taken,
+     *                 or -1 if not known
+     */
+    public abstract void acceptDatum( Object value, long irow );
+
+    /**
+     * Submits the value from a cell of the current row of a row sequence
+     * to the statistics accumulator.
+     * The effect is the same as calling {@link #acceptDatum} with
+     * the cell value, but implementations may be able to avoid
+     * object creation if the sequence is a
+     * {@link uk.ac.starlink.table.TypedRowSequence}.
+     * The default implementation just calls <code>acceptDatum</code>.
+     *
+     * @param   rseq  row sequence with a current row
+     * @param   icol  index of column whose value is to be submitted
+     * @param   irow   index of the row from which the value is taken
+     */
+    public void acceptCell( RowSequence rseq, int icol, long irow )
+            throws IOException {
+        acceptDatum( rseq.getCell( icol ), irow );
+    }
+
+    /**
+     * Indicates whether this object can accept values a batch at a time
+     * using the {@link #acceptBatch acceptBatch} method.
+     * The default implementation returns false.
+     *
+     * @return  true iff <code>acceptBatch</code> may be called
+     */
+    public boolean isBatchable() {
+        return false;
+    }
+
+    /**
+     * Submits the values from a column in the current batch of a
+     * batch row sequence to the statistics accumulator.
+     * The effect is the same as calling {@link #acceptDatum} with
+     * each of the cell values in turn.
+     * This method may only be called if {@link #isBatchable} returns true;
+     * the default implementation throws an UnsupportedOperationException.
+     *
+     * @param   bseq  batch row sequence with a current batch
+     * @param   icol  index of column whose values are to be submitted
+     * @param   nrow  number of rows in the current batch
+     * @param   irow0  index of the first row in the batch,
+     *                 or -1 if not known
+     * @param   dbuf  workspace array with at least <code>nrow</code>
+     *                elements
+     * @param   lbuf  workspace array with at least <code>nrow</code>
+     *                elements
+     */
+    public void acceptBatch( BatchRowSequence bseq, int icol, int nrow,
+                             long irow0, double[] dbuf, long[] lbuf )
+            throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Merges the contents of another instance into this one.
+     * The other instance must have been created by a call to
+     * {@link #createStats} with the same argument as this one.
+     * The effect is as if all the data submitted to <code>other</code>
+     * had been submitted to this object.
+     *
+     * @param  other  compatible statistics accumulator
+     */
+    public abstract void add( UnivariateStats other );
 
     /**
      * Returns the number of good (non-null) values accumulated.
@@ -97,7 +184,7 @@ public abstract class UnivariateStats {
      */
     public static UnivariateStats createStats( Class<?> clazz ) {
         if ( Number.class.isAssignableFrom( clazz ) ) {
-            return new NumberStats();
+            return new NumberStats( clazz );
         }
         else if ( clazz == Boolean.class ) {
             return new BooleanStats();
@@ -113,12 +200,16 @@ public abstract class UnivariateStats {
     private static class ObjectStats extends UnivariateStats {
         private long nGood_;
 
-        public void acceptDatum( Object obj ) {
+        public void acceptDatum( Object obj, long irow ) {
             if ( ! Tables.isBlank( obj ) ) {
                 nGood_++;
             }
         }
 
+        public void add( UnivariateStats other ) {
+            nGood_ += ((ObjectStats) other).nGood_;
+        }
+
         public long getCount() {
             return nGood_;
         }
@@ -163,7 +254,7 @@ public abstract class UnivariateStats {
         private long nGood_;
         private long nTrue_;
 
-        public void acceptDatum( Object obj ) {
+        public void acceptDatum( Object obj, long irow ) {
             if ( obj instanceof Boolean ) {
                 nGood_++;
                 if ( ((Boolean) obj).booleanValue() ) {
@@ -172,6 +263,12 @@ public abstract class UnivariateStats {
             }
         }
 
+        public void add( UnivariateStats other ) {
+            BooleanStats o = (BooleanStats) other;
+            nGood_ += o.nGood_;
+            nTrue_ += o.nTrue_;
+        }
+
         public long getCount() {
             return nGood_;
         }
@@ -213,7 +310,8 @@ public abstract class UnivariateStats {
      * Stats implementation for Number objects.
      */
     private static class NumberStats extends UnivariateStats {
-        private long iDatum_;
+        private final Class<?> clazz_;
+        private final boolean isBatchable_;
         private long nGood_;
         private double sum1_;
         private double sum2_;
@@ -225,34 +323,179 @@ public abstract class UnivariateStats {
         private Number max_;
         private long minPos_ = -1L;
         private long maxPos_ = -1L;
-        
-        public void acceptDatum( Object obj ) {
+
+        /**
+         * Constructor.
+         *
+         * @param  clazz  class of submitted values
+         */
+        NumberStats( Class<?> clazz ) {
+            clazz_ = clazz;
+            isBatchable_ = clazz == Double.class
+                        || clazz == Float.class
+                        || clazz == Long.class
+                        || clazz == Integer.class
+                        || clazz == Short.class
+                        || clazz == Byte.class;
+        }
+
+        public void acceptDatum( Object obj, long irow ) {
             if ( obj instanceof Number ) {
                 Number val = (Number) obj;
                 double dval = val.doubleValue();
                 if ( ! Double.isNaN( dval ) ) {
-                    nGood_++;
-                    double s1 = dval;
-                    double s2 = dval * s1;
-                    double s3 = dval * s2;
-                    double s4 = dval * s3;
-                    sum1_ += s1;
-                    sum2_ += s2;
-                    sum3_ += s3;
-                    sum4_ += s4;
+                    accumulate( dval );
                     if ( ! ( dval >= dmin_ ) ) {  // note NaN handling
                         dmin_ = dval;
                         min_ = val;
-                        minPos_ = iDatum_;
+                        minPos_ = irow;
                     }
                     if ( ! ( dval <= dmax_ ) ) {  // note NaN handling
                         dmax_ = dval;
                         max_ = val;
-                        maxPos_ = iDatum_;
+                        maxPos_ = irow;
                     }
                 }
             }
-            iDatum_++;
+        }
+
+        @Override
+        public void acceptCell( RowSequence rseq, int icol, long irow )
+                throws IOException {
+
+            /* Read the value as a primitive; null and non-numeric values
+             * come out as NaN, and are ignored as by acceptDatum.
+             * The value object is only required for a new extremum. */
+            double dval = Tables.getDouble( rseq, icol );
+            if ( ! Double.isNaN( dval ) ) {
+                accumulate( dval );
+                boolean isMin = ! ( dval >= dmin_ );  // note NaN handling
+                boolean isMax = ! ( dval <= dmax_ );  // note NaN handling
+                if ( isMin || isMax ) {
+                    Number val = (Number) rseq.getCell( icol );
+                    if ( isMin ) {
+                        dmin_ = dval;
+                        min_ = val;
+                        minPos_ = irow;
+                    }
+                    if ( isMax ) {
+                        dmax_ = dval;
+                        max_ = val;
+                        maxPos_ = irow;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean isBatchable() {
+            return isBatchable_;
+        }
+
+        @Override
+        public void acceptBatch( BatchRowSequence bseq, int icol, int nrow,
+                                 long irow0, double[] dbuf, long[] lbuf )
+                throws IOException {
+            bseq.getDoubles( icol, dbuf );
+
+            /* Long values may not be exactly representable as doubles,
+             * so get them separately for creating extremum objects. */
+            boolean isLong = clazz_ == Long.class;
+            if ( isLong ) {
+                bseq.getLongs( icol, lbuf );
+            }
+            for ( int i = 0; i < nrow; i++ ) {
+                double dval = dbuf[ i ];
+                if ( ! Double.isNaN( dval ) ) {
+                    accumulate( dval );
+                    boolean isMin = ! ( dval >= dmin_ );  // note NaN handling
+                    boolean isMax = ! ( dval <= dmax_ );  // note NaN handling
+                    if ( isMin || isMax ) {
+                        Number val = isLong ? new Long( lbuf[ i ] )
+                                            : toNumber( dval );
+                        long irow = irow0 < 0 ? -1 : irow0 + i;
+                        if ( isMin ) {
+                            dmin_ = dval;
+                            min_ = val;
+                            minPos_ = irow;
+                        }
+                        if ( isMax ) {
+                            dmax_ = dval;
+                            max_ = val;
+                            maxPos_ = irow;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Converts a double value to an object of this accumulator's
+         * value class.  Only works for classes which can be represented
+         * exactly as a double.
+         *
+         * @param  dval  value
+         * @return  number object
+         */
+        private Number toNumber( double dval ) {
+            if ( clazz_ == Float.class ) {
+                return new Float( (float) dval );
+            }
+            else if ( clazz_ == Integer.class ) {
+                return new Integer( (int) dval );
+            }
+            else if ( clazz_ == Short.class ) {
+                return new Short( (short) dval );
+            }
+            else if ( clazz_ == Byte.class ) {
+                return new Byte( (byte) dval );
+            }
+            else {
+                return new Double( dval );
+            }
+        }
+
+        /**
+         * Accumulates the sums for a non-NaN value.
+         *
+         * @param  dval  value
+         */
+        private void accumulate( double dval ) {
+            nGood_++;
+            double s1 = dval;
+            double s2 = dval * s1;
+            double s3 = dval * s2;
+            double s4 = dval * s3;
+            sum1_ += s1;
+            sum2_ += s2;
+            sum3_ += s3;
+            sum4_ += s4;
+        }
+
+        public void add( UnivariateStats other ) {
+            NumberStats o = (NumberStats) other;
+            nGood_ += o.nGood_;
+            sum1_ += o.sum1_;
+            sum2_ += o.sum2_;
+            sum3_ += o.sum3_;
+            sum4_ += o.sum4_;
+
+            /* In case of ties, prefer the earlier row, which is what
+             * sequential accumulation would have given. */
+            if ( o.min_ != null &&
+                 ( min_ == null || o.dmin_ < dmin_ ||
+                   ( o.dmin_ == dmin_ && o.minPos_ < minPos_ ) ) ) {
+                dmin_ = o.dmin_;
+                min_ = o.min_;
+                minPos_ = o.minPos_;
+            }
+            if ( o.max_ != null &&
+                 ( max_ == null || o.dmax_ > dmax_ ||
+                   ( o.dmax_ == dmax_ && o.maxPos_ < maxPos_ ) ) ) {
+                dmax_ = o.dmax_;
+                max_ = o.max_;
+                maxPos_ = o.maxPos_;
+            }
         }
 
         public long getCount() {
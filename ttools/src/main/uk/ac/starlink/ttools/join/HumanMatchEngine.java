@@ -85,6 +85,29 @@ public class HumanMatchEngine implements MatchEngine {
         }
     }
 
+    /**
+     * Returns the engine on which this one is based.
+     *
+     * @return  base engine
+     */
+    public MatchEngine getBaseEngine() {
+        return baseEngine_;
+    }
+
+    /**
+     * Returns the factor by which a numeric tuple element presented
+     * by this engine is multiplied to give the value used by the
+     * base engine.  For instance, if this engine presents an angle
+     * in degrees that the base engine uses in radians,
+     * the result is PI/180.
+     *
+     * @param  i  tuple element index
+     * @return  unit conversion factor; 1 for unconverted elements
+     */
+    public double getTupleUnitFactor( int i ) {
+        return tupleWrappers_[ i ].getUnwrapFactor();
+    }
+
     public DescribedValue[] getMatchParameters() {
         return matchParams_;
     }
@@ -310,6 +333,14 @@ public class HumanMatchEngine implements MatchEngine {
          * @return  wrapped described value
          */
         public abstract DescribedValue wrapDescribedValue( DescribedValue dv );
+
+        /**
+         * Returns the factor by which numeric values are multiplied
+         * when unwrapping.
+         *
+         * @return  unwrapping factor
+         */
+        public abstract double getUnwrapFactor();
     }
 
     /**
@@ -331,6 +362,9 @@ public class HumanMatchEngine implements MatchEngine {
         public DescribedValue wrapDescribedValue( DescribedValue dval ) {
             return dval;
         }
+        public double getUnwrapFactor() {
+            return 1.0;
+        }
     };
 
     /**
@@ -366,6 +400,9 @@ public class HumanMatchEngine implements MatchEngine {
         public double wrapDouble( double value ) {
             return value / factor_;
         }
+        public double getUnwrapFactor() {
+            return factor_;
+        }
         public ValueInfo wrapValueInfo( ValueInfo info ) {
             DefaultValueInfo vinfo = new DefaultValueInfo( info );
             vinfo.setUnitString( units_ );
@@ -3,13 +3,16 @@ package uk.ac.starlink.ttools.join;
 import gnu.jel.CompilationException;
 import uk.ac.starlink.table.JoinFixAction;
 import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.table.join.FixedSkyMatchEngine;
 import uk.ac.starlink.table.join.JoinType;
 import uk.ac.starlink.table.join.MatchEngine;
 import uk.ac.starlink.table.join.PairMode;
 import uk.ac.starlink.table.join.ProgressIndicator;
+import uk.ac.starlink.task.BooleanParameter;
 import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.ExecutionException;
 import uk.ac.starlink.task.Parameter;
+import uk.ac.starlink.task.ParameterValueException;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.task.UsageException;
 import uk.ac.starlink.ttools.task.InputTableSpec;
@@ -32,6 +35,7 @@ public class Match2Mapper implements TableMapper {
     private final FindModeParameter modeParam_;
     private final JoinFixActionParameter fixcolParam_;
     private final ProgressIndicatorParameter progressParam_;
+    private final BooleanParameter partitionParam_;
 
     /**
      * Constructor.
@@ -46,6 +50,29 @@ public class Match2Mapper implements TableMapper {
         joinParam_ = new JoinTypeParameter( "join" );
         modeParam_ = new FindModeParameter( "find" );
         progressParam_ = new ProgressIndicatorParameter( "progress" );
+        partitionParam_ = new BooleanParameter( "partition" );
+        partitionParam_.setPrompt( "Match in sky partitions?" );
+        partitionParam_.setDescription( new String[] {
+            "<p>If true, the match is performed by first splitting",
+            "both input tables into HEALPix sky tiles",
+            "(with a margin of the match radius)",
+            "in temporary storage, and then matching tile by tile,",
+            "rather than by holding the matching indexes for the whole",
+            "of both tables in memory.",
+            "This allows matching of tables too large for the",
+            "normal algorithm, at the cost of additional I/O;",
+            "the input tables are read sequentially",
+            "and are not required to be random-access.",
+            "The output table is also sequential-only.",
+            "</p>",
+            "<p>This option can currently only be used with the",
+            "<code>sky</code> matcher",
+            "and the <code>" + JoinType._1AND2 + "</code> join type.",
+            "Match group columns are not added to the output",
+            "in this case.",
+            "</p>",
+        } );
+        partitionParam_.setBooleanDefault( false );
     }
 
     public Parameter<?>[] getParameters() {
@@ -62,6 +89,7 @@ public class Match2Mapper implements TableMapper {
             fixcolParam_.createSuffixParameter( "2" ),
             matcherParam_.getScoreParameter(),
             progressParam_,
+            partitionParam_,
         };
     }
 
@@ -87,10 +115,27 @@ public class Match2Mapper implements TableMapper {
         ValueInfo scoreInfo = matcherParam_.getScoreInfo( env );
         ProgressIndicator progger =
             progressParam_.progressIndicatorValue( env );
+        boolean partition = partitionParam_.booleanValue( env );
+        if ( partition ) {
+            if ( ! ( matcher instanceof HumanMatchEngine &&
+                     ((HumanMatchEngine) matcher).getBaseEngine()
+                     instanceof FixedSkyMatchEngine ) ) {
+                throw new ParameterValueException( partitionParam_,
+                                                   "Partitioned matching "
+                                                 + "only works with sky "
+                                                 + "matcher" );
+            }
+            if ( join != JoinType._1AND2 ) {
+                throw new ParameterValueException( partitionParam_,
+                                                   "Partitioned matching "
+                                                 + "only works with join="
+                                                 + JoinType._1AND2 );
+            }
+        }
 
         /* Construct and return a mapping based on this lot. */
         return new Match2Mapping( matcher, tupleExprs[ 0 ], tupleExprs[ 1 ],
                                   join, pairMode, fixacts[ 0 ], fixacts[ 1 ],
-                                  scoreInfo, progger );
+                                  scoreInfo, progger, partition );
     }
 }
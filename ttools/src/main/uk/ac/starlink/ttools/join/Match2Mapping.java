@@ -3,19 +3,25 @@ package uk.ac.starlink.ttools.join;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.logging.Logger;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnPermutedStarTable;
 import uk.ac.starlink.table.JoinFixAction;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
+import uk.ac.starlink.table.join.FixedSkyMatchEngine;
 import uk.ac.starlink.table.join.JoinType;
 import uk.ac.starlink.table.join.LinkSet;
 import uk.ac.starlink.table.join.MatchEngine;
 import uk.ac.starlink.table.join.MatchStarTables;
 import uk.ac.starlink.table.join.PairMode;
+import uk.ac.starlink.table.join.PartitionedSkyMatcher;
 import uk.ac.starlink.table.join.ProgressIndicator;
 import uk.ac.starlink.table.join.RowMatcher;
 import uk.ac.starlink.task.ExecutionException;
 import uk.ac.starlink.task.TaskException;
+import uk.ac.starlink.ttools.filter.AddColumnsTable;
+import uk.ac.starlink.ttools.filter.JELColumnSupplement;
 import uk.ac.starlink.ttools.jel.JELTable;
 import uk.ac.starlink.ttools.task.InputTableSpec;
 import uk.ac.starlink.ttools.task.TableMapping;
@@ -36,6 +42,7 @@ public class Match2Mapping implements TableMapping {
     final JoinType join_;
     final ValueInfo scoreInfo_;
     final ProgressIndicator progger_;
+    final boolean partition_;
 
     private static final Logger logger =
         Logger.getLogger( "uk.ac.starlink.ttools.task" );
@@ -64,6 +71,38 @@ public class Match2Mapping implements TableMapping {
                    String[] exprTuple2, JoinType join, PairMode pairMode,
                    JoinFixAction fixact1, JoinFixAction fixact2,
                    ValueInfo scoreInfo, ProgressIndicator progger ) {
+        this( matchEngine, exprTuple1, exprTuple2, join, pairMode,
+              fixact1, fixact2, scoreInfo, progger, false );
+    }
+
+    /**
+     * Constructor with optional sky partitioning.
+     * If partitioning is requested, the match engine must be a
+     * HumanMatchEngine based on a FixedSkyMatchEngine,
+     * and the join type must be 1and2.
+     *
+     * @param   matchEngine  engine defining the match characteristics
+     * @param   exprTuple1  array of strings defining the values from
+     *          the first input table which are used for input into the
+     *          match
+     * @param   exprTuple2  array of strings defining the values from
+     *          the second input table which are used for input into the
+     *          match
+     * @param   join  output row selection type
+     * @param   pairMode   pair matching mode
+     * @param   fixact1    deduplication fix action for first input table
+     * @param   fixact2    deduplication fix action for second input table
+     * @param   scoreInfo  column description for inter-table match score
+     *                     values, or null for no score column
+     * @param   progger    progress indicator for matching
+     * @param   partition  true to match sequentially in sky partitions
+     *                     using a {@link PartitionedSkyMatcher}
+     */
+    Match2Mapping( MatchEngine matchEngine, String[] exprTuple1,
+                   String[] exprTuple2, JoinType join, PairMode pairMode,
+                   JoinFixAction fixact1, JoinFixAction fixact2,
+                   ValueInfo scoreInfo, ProgressIndicator progger,
+                   boolean partition ) {
         matchEngine_ = matchEngine;
         exprTuple1_ = exprTuple1;
         exprTuple2_ = exprTuple2;
@@ -72,6 +111,7 @@ public class Match2Mapping implements TableMapping {
         fixacts_ = new JoinFixAction[] { fixact1, fixact2, };
         scoreInfo_ = scoreInfo;
         progger_ = progger;
+        partition_ = partition;
     }
 
     public StarTable mapTables( InputTableSpec[] inSpecs )
@@ -86,6 +126,11 @@ public class Match2Mapping implements TableMapping {
         makeSubTable( inTable1, exprTuple1_ );
         makeSubTable( inTable2, exprTuple2_ );
 
+        /* Partitioned matching works from sequential input. */
+        if ( partition_ ) {
+            return partitionMatch( inTable1, inTable2 );
+        }
+
         /* Now randomise the tables (currently required for the rest
          * of the matching) and create the subtables for real. */
         inTable1 = Tables.randomTable( inTable1 );
@@ -117,6 +162,75 @@ public class Match2Mapping implements TableMapping {
                                               scoreInfo_ );
     }
 
+    /**
+     * Performs the match using a PartitionedSkyMatcher.
+     *
+     * @param  inTable1  first input table
+     * @param  inTable2  second input table
+     * @return  sequential output table
+     */
+    private StarTable partitionMatch( StarTable inTable1, StarTable inTable2 )
+            throws IOException, TaskException {
+        if ( join_ != JoinType._1AND2 ) {
+            throw new ExecutionException( "Partitioned match only works "
+                                        + "with join " + JoinType._1AND2 );
+        }
+        MatchEngine baseEngine =
+              matchEngine_ instanceof HumanMatchEngine
+            ? ((HumanMatchEngine) matchEngine_).getBaseEngine()
+            : null;
+        if ( ! ( baseEngine instanceof FixedSkyMatchEngine ) ) {
+            throw new ExecutionException( "Partitioned match only works "
+                                        + "with sky matcher" );
+        }
+        double margin = ((FixedSkyMatchEngine) baseEngine).getSeparation();
+        double unit = ((HumanMatchEngine) matchEngine_).getTupleUnitFactor( 0 );
+
+        /* Append the tuple columns to each input table, and present the
+         * tuple columns and the original columns as views of the
+         * combined table.  The matcher recognises this arrangement and
+         * reads each input only once, which is required for
+         * one-shot inputs such as standard input. */
+        StarTable[] inTables = new StarTable[] { inTable1, inTable2 };
+        String[][] exprTuples = new String[][] { exprTuple1_, exprTuple2_ };
+        ValueInfo[] tupleInfos = matchEngine_.getTupleInfos();
+        ColumnInfo[] tupleColInfos = new ColumnInfo[ tupleInfos.length ];
+        for ( int ic = 0; ic < tupleInfos.length; ic++ ) {
+            tupleColInfos[ ic ] = new ColumnInfo( tupleInfos[ ic ] );
+        }
+        StarTable[] subTables = new StarTable[ 2 ];
+        StarTable[] outTables = new StarTable[ 2 ];
+        for ( int i = 0; i < 2; i++ ) {
+            StarTable inTable = inTables[ i ];
+            StarTable combined =
+                new AddColumnsTable( inTable,
+                                     new JELColumnSupplement( inTable,
+                                                              exprTuples[ i ],
+                                                              tupleColInfos ) );
+            int nin = inTable.getColumnCount();
+            int[] outMap = new int[ nin ];
+            for ( int ic = 0; ic < nin; ic++ ) {
+                outMap[ ic ] = ic;
+            }
+            int[] tupleMap = new int[ tupleInfos.length ];
+            for ( int ic = 0; ic < tupleMap.length; ic++ ) {
+                tupleMap[ ic ] = nin + ic;
+            }
+            subTables[ i ] = new ColumnPermutedStarTable( combined, tupleMap );
+            outTables[ i ] = new ColumnPermutedStarTable( combined, outMap );
+        }
+        PartitionedSkyMatcher matcher =
+            new PartitionedSkyMatcher( matchEngine_, subTables, margin, unit );
+        matcher.setIndicator( progger_ );
+        try {
+            return matcher.makeJoinTable( outTables, pairMode_, fixacts_,
+                                          scoreInfo_ );
+        }
+        catch ( InterruptedException e ) {
+            throw new ExecutionException( e.getMessage(), e );
+        }
+    }
+
     /**
      * Creates a table containing the values which are required by the
      * matcher.  This typically consists of a few of the columns from
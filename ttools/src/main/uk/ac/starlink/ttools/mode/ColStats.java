@@ -119,6 +119,15 @@ public abstract class ColStats {
      */
     protected abstract void acceptDatum( Object value );
 
+    /**
+     * Merges the data accumulated by another compatible stats object
+     * into this one.  The other object must have been created by
+     * {@link #makeColStats} using the same column metadata as this one.
+     *
+     * @param  other  stats object to merge into this one
+     */
+    protected abstract void add( ColStats other );
+
     /**
      * Returns the mean of the accumulated data.
      *
@@ -187,6 +196,9 @@ public abstract class ColStats {
                 ngood_++;
             }
         }
+        protected void add( ColStats other ) {
+            ngood_ += ((BasicColStats) other).ngood_;
+        }
         protected double getMeanValue() {
             return Double.NaN;
         }
@@ -221,6 +233,11 @@ public abstract class ColStats {
                 }
             }
         }
+        protected void add( ColStats other ) {
+            BooleanColStats o = (BooleanColStats) other;
+            ntrue_ += o.ntrue_;
+            ngood_ += o.ngood_;
+        }
         protected double getMeanValue() {
             return (double) ntrue_ / (double) ngood_;
         }
@@ -264,6 +281,21 @@ public abstract class ColStats {
             }
         }
 
+        protected void add( ColStats other ) {
+            NumberColStats o = (NumberColStats) other;
+            ngood_ += o.ngood_;
+            sum_ += o.sum_;
+            sum2_ += o.sum2_;
+            if ( o.dmin_ < dmin_ ) {
+                dmin_ = o.dmin_;
+                min_ = o.min_;
+            }
+            if ( o.dmax_ > dmax_ ) {
+                dmax_ = o.dmax_;
+                max_ = o.max_;
+            }
+        }
+
         protected double getMeanValue() {
             return ngood_ > 0 ? sum_ / ngood_
                               : Double.NaN;
@@ -2,7 +2,9 @@ package uk.ac.starlink.ttools.mode;
 
 import java.io.IOException;
 import java.io.PrintStream;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.task.Environment;
 import uk.ac.starlink.task.ExecutionException;
@@ -51,17 +53,30 @@ public class CountMode implements ProcessingMode {
         int ncol = table.getColumnCount();
         long nrow = table.getRowCount();
         if ( nrow < 0L ) {
-            nrow = 0L;
-            RowSequence rseq = table.getRowSequence();
-            try {
-                while ( rseq.next() ) {
-                    nrow++;
-                }
-            }
-            finally {
-                rseq.close();
-            }
+            nrow = RowRunner.DEFAULT.collect( new CountCollector(), table )[ 0 ];
         }
         return "columns: " + ncol + "   rows: " + nrow;
     }
+
+    /**
+     * RowCollector that counts rows.
+     * The accumulator is a single-element array containing the count.
+     */
+    private static class CountCollector extends RowCollector<long[]> {
+        public long[] createAccumulator() {
+            return new long[ 1 ];
+        }
+        public void accumulateRows( RowSplittable rseq, long[] acc )
+                throws IOException {
+            long n = 0;
+            while ( rseq.next() ) {
+                n++;
+            }
+            acc[ 0 ] += n;
+        }
+        public long[] combine( long[] acc1, long[] acc2 ) {
+            acc1[ 0 ] += acc2[ 0 ];
+            return acc1;
+        }
+    }
 }
@@ -7,8 +7,11 @@ import uk.ac.starlink.table.BeanStarTable;
 import uk.ac.starlink.table.ColumnInfo;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
-import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowCollector;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.formats.TextTableWriter;
 import uk.ac.starlink.task.Environment;
@@ -78,30 +81,11 @@ public class StatsMode implements ProcessingMode {
     private static StarTable makeStatsTable( StarTable table )
             throws IOException {
 
-        /* Get an array of objects each of which can accumulate the
-         * statistics for one column of the base table. */
-        int ncol = table.getColumnCount();
-        ColStats[] stats = new ColStats[ ncol ];
-        for ( int icol = 0; icol < ncol; icol++ ) {
-            stats[ icol ] =
-                ColStats.makeColStats( table.getColumnInfo( icol ) );
-        }
-
-        /* Accumulate the statistics. */
-        RowSequence rseq = table.getRowSequence();
-        long nrow = 0;
-        try {
-            while ( rseq.next() ) {
-                nrow++;
-                Object[] row = rseq.getRow();
-                for ( int icol = 0; icol < ncol; icol++ ) {
-                    stats[ icol ].acceptDatum( row[ icol ] );
-                }
-            }
-        }
-        finally {
-            rseq.close();
-        }
+        /* Accumulate the statistics, in parallel if possible. */
+        StatsAccumulator acc =
+            RowRunner.DEFAULT.collect( new StatsCollector( table ), table );
+        ColStats[] stats = acc.stats_;
+        long nrow = acc.nrow_;
 
         /* Turn the array of ColStats objects into a StarTable. */
         StarTable statsTable;
@@ -134,4 +118,73 @@ public class StatsMode implements ProcessingMode {
         return statsTable;
     }
 
+    /**
+     * RowCollector that accumulates ColStats objects for each column.
+     */
+    private static class StatsCollector
+            extends RowCollector<StatsAccumulator> {
+
+        private final ColumnInfo[] colInfos_;
+
+        /**
+         * Constructor.
+         *
+         * @param  table  table whose rows will be collected
+         */
+        StatsCollector( StarTable table ) {
+            colInfos_ = Tables.getColumnInfos( table );
+        }
+
+        public StatsAccumulator createAccumulator() {
+            int ncol = colInfos_.length;
+            ColStats[] stats = new ColStats[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                stats[ icol ] = ColStats.makeColStats( colInfos_[ icol ] );
+            }
+            return new StatsAccumulator( stats );
+        }
+
+        public void accumulateRows( RowSplittable rseq, StatsAccumulator acc )
+                throws IOException {
+            ColStats[] stats = acc.stats_;
+            int ncol = stats.length;
+            long nrow = 0;
+            while ( rseq.next() ) {
+                nrow++;
+                Object[] row = rseq.getRow();
+                for ( int icol = 0; icol < ncol; icol++ ) {
+                    stats[ icol ].acceptDatum( row[ icol ] );
+                }
+            }
+            acc.nrow_ += nrow;
+        }
+
+        public StatsAccumulator combine( StatsAccumulator acc1,
+                                         StatsAccumulator acc2 ) {
+            int ncol = acc1.stats_.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                acc1.stats_[ icol ].add( acc2.stats_[ icol ] );
+            }
+            acc1.nrow_ += acc2.nrow_;
+            return acc1;
+        }
+    }
+
+    /**
+     * Accumulator for use with StatsCollector.
+     */
+    private static class StatsAccumulator {
+        final ColStats[] stats_;
+        long nrow_;
+
+        /**
+         * Constructor.
+         *
+         * @param  stats  per-column stats objects
+         */
+        StatsAccumulator( ColStats[] stats ) {
+            stats_ = stats;
+        }
+    }
+
 }
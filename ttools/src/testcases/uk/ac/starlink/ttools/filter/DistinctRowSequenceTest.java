@@ -0,0 +1,161 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+
+public class DistinctRowSequenceTest extends TestCase {
+
+    public DistinctRowSequenceTest( String name ) {
+        super( name );
+    }
+
+    public void testDistinct() throws IOException {
+        StarTable table = createTable( 20000 );
+        int[][] colLists = new int[][] {
+            { 0 },
+            { 1 },
+            { 2 },
+            { 3 },
+            { 1, 2 },
+            { 0, 1, 2, 3 },
+        };
+        for ( int[] icols : colLists ) {
+            List<Long> expected = getReferenceRows( table, icols );
+            for ( int maxEntries : new int[] { 40, 1000, 1 << 20 } ) {
+                assertEquals( Arrays.toString( icols ) + ", " + maxEntries,
+                              expected,
+                              getDistinctRows( table, icols, maxEntries ) );
+            }
+        }
+    }
+
+    public void testSmall() throws IOException {
+        for ( int nrow : new int[] { 0, 1, 2, 7 } ) {
+            StarTable table = createTable( nrow );
+            int[] icols = new int[] { 1 };
+            for ( int maxEntries : new int[] { 1, 1000 } ) {
+                assertEquals( getReferenceRows( table, icols ),
+                              getDistinctRows( table, icols, maxEntries ) );
+            }
+        }
+    }
+
+    public void testFingerprintSet() {
+        FingerprintSet set = new FingerprintSet();
+        Random rnd = new Random( 99L );
+        int n = 5000;
+        long[] his = new long[ n ];
+        long[] los = new long[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            his[ i ] = rnd.nextLong();
+            los[ i ] = rnd.nextInt( 3 ) == 0 ? 0 : rnd.nextLong();
+            assertTrue( set.add( his[ i ], los[ i ] ) );
+            assertFalse( set.add( his[ i ], los[ i ] ) );
+        }
+        assertEquals( n, set.size() );
+        for ( int i = 0; i < n; i++ ) {
+            assertTrue( set.contains( his[ i ], los[ i ] ) );
+            assertFalse( set.contains( his[ i ], los[ i ] + 1 ) );
+        }
+        int count = 0;
+        for ( int is = set.nextSlot( 0 ); is >= 0;
+              is = set.nextSlot( is + 1 ) ) {
+            assertTrue( set.contains( set.getHigh( is ), set.getLow( is ) ) );
+            count++;
+        }
+        assertEquals( n, count );
+    }
+
+    /**
+     * Returns the row indices output by a DistinctRowSequence.
+     * The table's first column contains the row index.
+     */
+    private static List<Long> getDistinctRows( StarTable table, int[] icols,
+                                               int maxEntries )
+            throws IOException {
+        List<Long> irows = new ArrayList<Long>();
+        RowSequence rseq =
+            new DistinctRowSequence( table, shift( icols ), maxEntries );
+        try {
+            while ( rseq.next() ) {
+                irows.add( (Long) rseq.getCell( 0 ) );
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        return irows;
+    }
+
+    /**
+     * Returns the indices of first occurrences of distinct rows
+     * using a simple hash set of value lists, as a reference.
+     */
+    private static List<Long> getReferenceRows( StarTable table, int[] icols )
+            throws IOException {
+        Set<List<Object>> seen = new HashSet<List<Object>>();
+        List<Long> irows = new ArrayList<Long>();
+        int[] jcols = shift( icols );
+        for ( long ir = 0; ir < table.getRowCount(); ir++ ) {
+            List<Object> key = new ArrayList<Object>();
+            for ( int jcol : jcols ) {
+                Object val = table.getCell( ir, jcol );
+                key.add( Tables.isBlank( val ) ? null : val );
+            }
+            if ( seen.add( key ) ) {
+                irows.add( new Long( ir ) );
+            }
+        }
+        return irows;
+    }
+
+    /**
+     * Adjusts column indices to skip the index column.
+     */
+    private static int[] shift( int[] icols ) {
+        int[] jcols = new int[ icols.length ];
+        for ( int i = 0; i < icols.length; i++ ) {
+            jcols[ i ] = icols[ i ] + 1;
+        }
+        return jcols;
+    }
+
+    private static StarTable createTable( int nrow ) {
+        Random rnd = new Random( 41L + nrow );
+        long[] index = new long[ nrow ];
+        double[] dvals = new double[ nrow ];
+        int[] ivals = new int[ nrow ];
+        String[] svals = new String[ nrow ];
+        Short[] hvals = new Short[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            index[ i ] = i;
+            dvals[ i ] = rnd.nextInt( 20 ) == 0 ? Double.NaN
+                                                : rnd.nextInt( 8000 ) * 0.25;
+            ivals[ i ] = rnd.nextInt( 50 );
+            svals[ i ] = rnd.nextInt( 20 ) == 0
+                       ? ( rnd.nextBoolean() ? null : "" )
+                       : Integer.toString( rnd.nextInt( 300 ), 36 );
+            hvals[ i ] = rnd.nextInt( 10 ) == 0
+                       ? null
+                       : new Short( (short) rnd.nextInt( 5 ) );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "index", index ) );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        table.addColumn( ArrayColumn.makeColumn( "h", hvals ) );
+        return table;
+    }
+}
@@ -0,0 +1,189 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+
+public class ExternalSorterTest extends TestCase {
+
+    public ExternalSorterTest( String name ) {
+        super( name );
+    }
+
+    public void testSort() throws Exception {
+        StarTable table = createTable( 20000 );
+        String[][] keyLists = new String[][] {
+            { "d" },
+            { "l" },
+            { "s" },
+            { "i", "d" },
+            { "s", "l" },
+            { "i*2+1" },
+        };
+        for ( String[] keys : keyLists ) {
+            for ( boolean up : new boolean[] { true, false } ) {
+                for ( boolean nullsLast : new boolean[] { true, false } ) {
+                    long[] order =
+                        new RowSorter( table, keys, up, nullsLast )
+                       .getSortedOrder( RowRunner.SEQUENTIAL ).toArray();
+
+                    /* Run sizes cover a multi-pass merge, a single-pass
+                     * merge, and a single in-memory run. */
+                    for ( int runRows : new int[] { 100, 1000, 100000 } ) {
+                        StarTable sorted =
+                            new ExternalSorter( table, keys, up, nullsLast,
+                                                runRows )
+                           .sort();
+                        assertEquals( runRows > 20000, sorted.isRandom() );
+                        assertEquals( table.getRowCount(),
+                                      sorted.getRowCount() );
+                        RowSequence rseq = sorted.getRowSequence();
+                        for ( long ir = 0; ir < order.length; ir++ ) {
+                            assertTrue( rseq.next() );
+                            assertEquals( Arrays.asList( table.getRow(
+                                              order[ (int) ir ] ) ),
+                                          Arrays.asList( rseq.getRow() ) );
+                        }
+                        assertFalse( rseq.next() );
+                        rseq.close();
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSmall() throws Exception {
+        for ( int nrow : new int[] { 0, 1, 2, 7 } ) {
+            StarTable table = createTable( nrow );
+            for ( int runRows : new int[] { 1, 3, 100 } ) {
+                StarTable sorted =
+                    new ExternalSorter( table, new String[] { "s" },
+                                        true, true, runRows )
+                   .sort();
+                long[] order =
+                    new RowSorter( table, new String[] { "s" }, true, true )
+                   .getSortedOrder( RowRunner.SEQUENTIAL ).toArray();
+                RowSequence rseq = sorted.getRowSequence();
+                for ( int ir = 0; ir < nrow; ir++ ) {
+                    assertTrue( rseq.next() );
+                    assertEquals( Arrays.asList( table.getRow( order[ ir ] ) ),
+                                  Arrays.asList( rseq.getRow() ) );
+                }
+                assertFalse( rseq.next() );
+                rseq.close();
+            }
+        }
+    }
+
+    public void testReread() throws Exception {
+        StarTable table = createTable( 2000 );
+        long[] order =
+            new RowSorter( table, new String[] { "f" }, true, true )
+           .getSortedOrder( RowRunner.SEQUENTIAL ).toArray();
+        StarTable sorted =
+            new ExternalSorter( table, new String[] { "f" }, true, true, 300 )
+           .sort();
+        assertFalse( sorted.isRandom() );
+
+        /* Abandon one sequence part way through, then read to the end
+         * twice; later reads repeat the sort. */
+        RowSequence rseq = sorted.getRowSequence();
+        assertTrue( rseq.next() );
+        rseq.close();
+        for ( int iread = 0; iread < 2; iread++ ) {
+            rseq = sorted.getRowSequence();
+            for ( int ir = 0; ir < order.length; ir++ ) {
+                assertTrue( rseq.next() );
+                assertEquals( Arrays.asList( table.getRow( order[ ir ] ) ),
+                              Arrays.asList( rseq.getRow() ) );
+            }
+            assertFalse( rseq.next() );
+            assertFalse( rseq.next() );
+            rseq.close();
+        }
+    }
+
+    public void testConcurrent() throws Exception {
+        final StarTable table = createTable( 5000 );
+        final long[] order =
+            new RowSorter( table, new String[] { "f" }, true, true )
+           .getSortedOrder( RowRunner.SEQUENTIAL ).toArray();
+        final StarTable sorted =
+            new ExternalSorter( table, new String[] { "f" }, true, true, 200 )
+           .sort();
+        assertFalse( sorted.isRandom() );
+        int nthread = 4;
+        ExecutorService pool = Executors.newFixedThreadPool( nthread );
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for ( int it = 0; it < nthread * 2; it++ ) {
+                results.add( pool.submit( new Callable<Object>() {
+                    public Object call() throws Exception {
+                        RowSequence rseq = sorted.getRowSequence();
+                        for ( int ir = 0; ir < order.length; ir++ ) {
+                            assertTrue( rseq.next() );
+                            assertEquals( Arrays.asList( table.getRow(
+                                              order[ ir ] ) ),
+                                          Arrays.asList( rseq.getRow() ) );
+                        }
+                        assertFalse( rseq.next() );
+                        rseq.close();
+                        assertFalse( rseq.next() );
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Object> result : results ) {
+                result.get();
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static StarTable createTable( int nrow ) {
+        Random rnd = new Random( 99L + nrow );
+        double[] dvals = new double[ nrow ];
+        Long[] lvals = new Long[ nrow ];
+        int[] ivals = new int[ nrow ];
+        String[] svals = new String[ nrow ];
+        String[] fvals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            dvals[ i ] = rnd.nextInt( 20 ) == 0 ? Double.NaN
+                                                : rnd.nextGaussian() * 1e6;
+            lvals[ i ] = rnd.nextInt( 20 ) == 0
+                       ? null
+                       : new Long( rnd.nextInt( 500 ) );
+            ivals[ i ] = rnd.nextInt( 100 ) - 50;
+            svals[ i ] = rnd.nextInt( 20 ) == 0
+                       ? null
+                       : Integer.toString( rnd.nextInt( 1000 ), 36 );
+            fvals[ i ] = Long.toString( rnd.nextLong() & 0xffffffffL, 36 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", lvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+
+        /* Fixed-length strings use a codec with internal state. */
+        ArrayColumn fcol = ArrayColumn.makeColumn( "f", fvals );
+        ColumnInfo finfo = fcol.getColumnInfo();
+        finfo.setElementSize( 8 );
+        table.addColumn( fcol );
+        return table;
+    }
+}
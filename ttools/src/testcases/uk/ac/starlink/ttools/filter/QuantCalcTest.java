@@ -85,6 +85,60 @@ public class QuantCalcTest extends TestCase {
         assertEquals( Integer.class, c5.getQuantile( 0.5 ).getClass() );
     }
 
+    public void testAdd() throws IOException {
+        int max = 100;
+        int[] values = shuffle( triangle( max ) );
+        int nv = values.length;
+        int nsplit = nv / 3;
+        QuantCalc[][] calcPairs = new QuantCalc[][] {
+            { new QuantCalc.DoubleListQuantCalc( Double.class ),
+              new QuantCalc.DoubleListQuantCalc( Double.class ) },
+            { new QuantCalc.FloatArrayQuantCalc( Long.class, nsplit ),
+              new QuantCalc.FloatArrayQuantCalc( Long.class, nv - nsplit ) },
+            { new QuantCalc.ByteSlotQuantCalc(),
+              new QuantCalc.ByteSlotQuantCalc() },
+            { new QuantCalc.ShortSlotQuantCalc(),
+              new QuantCalc.ShortSlotQuantCalc() },
+            { new QuantCalc.CountMapQuantCalc( Integer.class ),
+              new QuantCalc.CountMapQuantCalc( Integer.class ) },
+        };
+        for ( QuantCalc[] pair : calcPairs ) {
+            for ( int i = 0; i < nv; i++ ) {
+                int ival = values[ i ];
+                Number num;
+                if ( pair[ 0 ] instanceof QuantCalc.DoubleListQuantCalc ) {
+                    num = new Double( ival );
+                }
+                else if ( pair[ 0 ]
+                          instanceof QuantCalc.FloatArrayQuantCalc ) {
+                    num = new Long( ival );
+                }
+                else if ( pair[ 0 ] instanceof QuantCalc.ByteSlotQuantCalc ) {
+                    num = new Byte( (byte) ival );
+                }
+                else if ( pair[ 0 ]
+                          instanceof QuantCalc.ShortSlotQuantCalc ) {
+                    num = new Short( (short) ival );
+                }
+                else {
+                    num = new Integer( ival );
+                }
+                pair[ i < nsplit ? 0 : 1 ].acceptDatum( num );
+            }
+            QuantCalc qc = pair[ 0 ];
+            qc.add( pair[ 1 ] );
+            qc.ready();
+            assertEquals( nv, qc.getValueCount() );
+            assertEquals( - ( max - 1 ), qc.getQuantile( 0.0 ).intValue() );
+            assertEquals( + ( max - 1 ), qc.getQuantile( 1.0 ).intValue() );
+            assertEquals( 0, qc.getQuantile( 0.5 ).intValue() );
+            assertEquals( -89, qc.getQuantile( 0.1 ).intValue() );
+            assertEquals( +89, qc.getQuantile( 0.9 ).intValue() );
+            assertEquals( 70.0,
+                          QuantCalc.calculateMedianAbsoluteDeviation( qc ) );
+        }
+    }
+
     public void testMad() throws IOException {
         int[] values = new int[] { 40, 5, 10, 20, 1, 40, -19, -10, 1, };
         QuantCalc qc = QuantCalc.createInstance( Integer.class, values.length );
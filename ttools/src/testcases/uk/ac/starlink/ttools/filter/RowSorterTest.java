@@ -0,0 +1,152 @@
+package uk.ac.starlink.ttools.filter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import junit.framework.TestCase;
+import uk.ac.starlink.table.ArrayColumn;
+import uk.ac.starlink.table.ColumnStarTable;
+import uk.ac.starlink.table.RowRunner;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.Tables;
+
+public class RowSorterTest extends TestCase {
+
+    public RowSorterTest( String name ) {
+        super( name );
+    }
+
+    public void testSort() throws Exception {
+        StarTable table = createTable( 40000 );
+        String[][] keyLists = new String[][] {
+            { "d" },
+            { "l" },
+            { "i" },
+            { "f" },
+            { "s" },
+            { "i", "d" },
+            { "s", "l" },
+            { "i*2+1" },
+        };
+        for ( String[] keys : keyLists ) {
+            for ( boolean up : new boolean[] { true, false } ) {
+                for ( boolean nullsLast : new boolean[] { true, false } ) {
+                    long[] expected =
+                        getReferenceOrder( table, keys, up, nullsLast );
+                    for ( RowRunner runner :
+                          new RowRunner[] { RowRunner.SEQUENTIAL,
+                                            RowRunner.DEFAULT } ) {
+                        long[] order =
+                            new RowSorter( table, keys, up, nullsLast )
+                           .getSortedOrder( runner ).toArray();
+                        assertTrue( Arrays.toString( keys ),
+                                    Arrays.equals( expected, order ) );
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSmall() throws Exception {
+        for ( int nrow : new int[] { 0, 1, 2, 7 } ) {
+            StarTable table = createTable( nrow );
+            for ( String key : new String[] { "d", "s" } ) {
+                long[] order =
+                    new RowSorter( table, new String[] { key }, true, true )
+                   .getSortedOrder( RowRunner.DEFAULT ).toArray();
+                assertTrue( Arrays.equals( getReferenceOrder(
+                                               table, new String[] { key },
+                                               true, true ),
+                                           order ) );
+            }
+        }
+    }
+
+    private static StarTable createTable( int nrow ) {
+        Random rnd = new Random( 23L + nrow );
+        double[] dvals = new double[ nrow ];
+        float[] fvals = new float[ nrow ];
+        Long[] lvals = new Long[ nrow ];
+        int[] ivals = new int[ nrow ];
+        String[] svals = new String[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            dvals[ i ] = rnd.nextInt( 20 ) == 0 ? Double.NaN
+                                                : rnd.nextGaussian() * 1e6;
+            fvals[ i ] = rnd.nextInt( 20 ) == 0 ? -0f
+                                                : (float) rnd.nextGaussian();
+            lvals[ i ] = rnd.nextInt( 20 ) == 0
+                       ? null
+                       : new Long( rnd.nextLong() >> rnd.nextInt( 64 ) );
+            ivals[ i ] = rnd.nextInt( 100 ) - 50;
+            svals[ i ] = rnd.nextInt( 20 ) == 0
+                       ? null
+                       : Integer.toString( rnd.nextInt( 1000 ), 36 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "f", fvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", lvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        return table;
+    }
+
+    /**
+     * Sorts using a simple stable comparator sort, as a reference.
+     * Key expressions here are either column names or "i*2+1".
+     */
+    private static long[] getReferenceOrder( final StarTable table,
+                                             String[] keys, final boolean up,
+                                             final boolean nullsLast )
+            throws IOException {
+        int nrow = (int) table.getRowCount();
+        final Object[][] keyVals = new Object[ keys.length ][ nrow ];
+        for ( int ik = 0; ik < keys.length; ik++ ) {
+            String key = keys[ ik ];
+            boolean isExpr = key.equals( "i*2+1" );
+            int icol = Arrays.asList( "d", "f", "l", "i", "s" )
+                             .indexOf( isExpr ? "i" : key );
+            for ( int ir = 0; ir < nrow; ir++ ) {
+                Object val = table.getCell( ir, icol );
+                keyVals[ ik ][ ir ] =
+                    isExpr ? new Integer( ((Integer) val).intValue() * 2 + 1 )
+                           : val;
+            }
+        }
+        Integer[] rows = new Integer[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            rows[ i ] = new Integer( i );
+        }
+        Arrays.sort( rows, new Comparator<Integer>() {
+            @SuppressWarnings("unchecked")
+            public int compare( Integer r1, Integer r2 ) {
+                int c = 0;
+                for ( int ik = 0; ik < keyVals.length && c == 0; ik++ ) {
+                    Object v1 = keyVals[ ik ][ r1.intValue() ];
+                    Object v2 = keyVals[ ik ][ r2.intValue() ];
+                    boolean null1 = Tables.isBlank( v1 );
+                    boolean null2 = Tables.isBlank( v2 );
+                    if ( null1 && null2 ) {
+                        c = 0;
+                    }
+                    else if ( null1 ) {
+                        c = nullsLast ? +1 : -1;
+                    }
+                    else if ( null2 ) {
+                        c = nullsLast ? -1 : +1;
+                    }
+                    else {
+                        c = ((Comparable<Object>) v1).compareTo( v2 );
+                    }
+                }
+                return up ? c : -c;
+            }
+        } );
+        long[] order = new long[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            order[ i ] = rows[ i ].longValue();
+        }
+        return order;
+    }
+}
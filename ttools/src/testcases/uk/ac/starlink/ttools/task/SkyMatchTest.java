@@ -1,6 +1,10 @@
 package uk.ac.starlink.ttools.task;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import uk.ac.starlink.table.ColumnData;
@@ -14,6 +18,7 @@ import uk.ac.starlink.table.StarTableOutput;
 import uk.ac.starlink.table.Tables;
 import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.task.ExecutionException;
+import uk.ac.starlink.task.ParameterValueException;
 import uk.ac.starlink.ttools.QuickTable;
 import uk.ac.starlink.ttools.TableTestCase;
 import uk.ac.starlink.ttools.func.CoordsDegrees;
@@ -153,6 +158,102 @@ public class SkyMatchTest extends TableTestCase {
         }
     }
 
+    public void testPartition() throws Exception {
+        String[] modes = new String[] { "best", "best1", "best2", "all" };
+        for ( double tol : new double[] { 1., 5., 20. } ) {
+            for ( String mode : modes ) {
+                MapEnvironment env = new MapEnvironment()
+                    .setValue( "in1", t1 )
+                    .setValue( "in2", t2 )
+                    .setValue( "values1", "ra1 dec1" )
+                    .setValue( "values2", "ra2 dec2" )
+                    .setValue( "params", Double.toString( tol ) )
+                    .setValue( "matcher", "sky" )
+                    .setValue( "find", mode );
+                new TableMatch2().createExecutable( env ).execute();
+                List<String> rows =
+                    getSortedRows( env.getOutputTable( "omode" ) );
+                MapEnvironment penv = new MapEnvironment( env )
+                    .setValue( "partition", "true" );
+                new TableMatch2().createExecutable( penv ).execute();
+                StarTable presult = penv.getOutputTable( "omode" );
+                assertEquals( tol + " " + mode,
+                              rows, getSortedRows( presult ) );
+
+                /* Check the output can be read more than once. */
+                assertEquals( rows, getSortedRows( presult ) );
+            }
+        }
+        assertEquals( 550, getSortedRows( partitionMatch( 5. ) ).size() );
+
+        MapEnvironment badEnv = new MapEnvironment()
+            .setValue( "in1", t1 )
+            .setValue( "in2", t2 )
+            .setValue( "values1", "ra1 dec1" )
+            .setValue( "values2", "ra2 dec2" )
+            .setValue( "params", "5" )
+            .setValue( "matcher", "sky" )
+            .setValue( "join", "1or2" )
+            .setValue( "partition", "true" );
+        try {
+            new TableMatch2().createExecutable( badEnv ).execute();
+            fail();
+        }
+        catch ( ParameterValueException e ) {
+        }
+        badEnv.setValue( "join", "1and2" )
+              .setValue( "matcher", "sky3d" )
+              .setValue( "values1", "ra1 dec1 1" )
+              .setValue( "values2", "ra2 dec2 1" );
+        try {
+            new TableMatch2().createExecutable( badEnv ).execute();
+            fail();
+        }
+        catch ( ParameterValueException e ) {
+        }
+    }
+
+    private StarTable partitionMatch( double tol ) throws Exception {
+        MapEnvironment env = new MapEnvironment()
+            .setValue( "in1", t1 )
+            .setValue( "in2", t2 )
+            .setValue( "values1", "ra1 dec1" )
+            .setValue( "values2", "ra2 dec2" )
+            .setValue( "params", Double.toString( tol ) )
+            .setValue( "matcher", "sky" )
+            .setValue( "partition", "true" );
+        new TableMatch2().createExecutable( env ).execute();
+        return env.getOutputTable( "omode" );
+    }
+
+    /**
+     * Returns a sorted list of stringified rows.  Double values are
+     * reduced to single precision, since the score may differ in the
+     * last bit according to the order in which positions are compared.
+     */
+    private static List<String> getSortedRows( StarTable table )
+            throws IOException {
+        List<String> rows = new ArrayList<String>();
+        RowSequence rseq = table.getRowSequence();
+        try {
+            while ( rseq.next() ) {
+                Object[] row = rseq.getRow().clone();
+                for ( int i = 0; i < row.length; i++ ) {
+                    if ( row[ i ] instanceof Double ) {
+                        row[ i ] =
+                            new Float( ((Double) row[ i ]).floatValue() );
+                    }
+                }
+                rows.add( Arrays.asList( row ).toString() );
+            }
+        }
+        finally {
+            rseq.close();
+        }
+        Collections.sort( rows );
+        return rows;
+    }
+
     private int skyCount( StarTable table1, String ra1, String dec1,
                           StarTable table2, String ra2, String dec2,
                           double error )
@@ -4,6 +4,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Random;
+import java.util.function.LongSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nom.tam.util.BufferedDataInputStream;
@@ -14,12 +16,16 @@ import uk.ac.starlink.fits.FitsConstants;
 import uk.ac.starlink.fits.FitsTableWriter;
 import uk.ac.starlink.fits.HeaderCards;
 import uk.ac.starlink.fits.HealpixFitsTableWriter;
+import uk.ac.starlink.table.ArrayColumn;
 import uk.ac.starlink.table.ColumnData;
 import uk.ac.starlink.table.ColumnInfo;
+import uk.ac.starlink.table.ColumnStarTable;
 import uk.ac.starlink.table.DefaultValueInfo;
 import uk.ac.starlink.table.DescribedValue;
+import uk.ac.starlink.table.RowSplittable;
 import uk.ac.starlink.table.StarTable;
 import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.task.TaskException;
 import uk.ac.starlink.ttools.TableTestCase;
 import uk.ac.starlink.ttools.QuickTable;
@@ -735,6 +741,17 @@ public class TablePipeTest extends TableTestCase {
         assertSameData( inTable_, apply( "sort $0" ) );
         assertSameData( inTable_, apply( "sort $1" ) );
         assertSameData( inTable_, apply( "sort '$0 $1'" ) );
+
+        assertSameData( inTable_, apply( "sort -external a" ) );
+        assertArrayEquals(
+            box( new int[] { 3, 2, 1, 4 } ),
+            getColData( apply( "sort -external -nullsfirst -down b" ), 0 ) );
+        assertArrayEquals(
+            box( new int[] { 2, 1, 3, 4 } ),
+            getColData( apply( "sort -external '($0+1)/2 d'" ), 0 ) );
+        assertArrayEquals(
+            new Object[] { "Beauchamp", "Mark", "Taylor", null },
+            getColData( apply( "sort -external d.charAt(2)" ), 3 ) );
     }
 
     public void testSortHead() throws Exception {
@@ -827,6 +844,57 @@ public class TablePipeTest extends TableTestCase {
             getColNames( apply( "stats" ) ) );
     }
 
+    public void testBatchStats() throws Exception {
+
+        /* Basic stats for a numeric ColumnStarTable are accumulated
+         * in batches; requesting cardinality as well forces the
+         * row-by-row route, so the results can be compared. */
+        int nrow = 10000;
+        Random rnd = new Random( 2112L );
+        double[] dvals = new double[ nrow ];
+        float[] fvals = new float[ nrow ];
+        long[] lvals = new long[ nrow ];
+        int[] ivals = new int[ nrow ];
+        short[] svals = new short[ nrow ];
+        for ( int i = 0; i < nrow; i++ ) {
+            dvals[ i ] = i % 7 == 0 ? Double.NaN : rnd.nextGaussian();
+            fvals[ i ] = i % 11 == 0 ? Float.NaN : (float) rnd.nextDouble();
+            lvals[ i ] = rnd.nextLong();
+            ivals[ i ] = rnd.nextInt( 1000 );
+            svals[ i ] = (short) rnd.nextInt( 100 );
+        }
+        ColumnStarTable table = ColumnStarTable.makeTableWithRows( nrow );
+        table.addColumn( ArrayColumn.makeColumn( "d", dvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "f", fvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "l", lvals ) );
+        table.addColumn( ArrayColumn.makeColumn( "i", ivals ) );
+        table.addColumn( ArrayColumn.makeColumn( "s", svals ) );
+        String quantities = "name ngood sum mean minimum maximum minpos maxpos";
+        StarTable batchStats = process( table, "stats " + quantities );
+        StarTable rowStats =
+            process( table, "stats " + quantities + " cardinality" );
+        int nq = batchStats.getColumnCount();
+        for ( int iq = 0; iq < nq; iq++ ) {
+            assertArrayEquals( getColData( rowStats, iq ),
+                               getColData( batchStats, iq ) );
+        }
+        assertArrayEquals(
+            new Object[] { new Long( nrow - 1 - ( nrow - 1 ) / 7 ),
+                           new Long( nrow - 1 - ( nrow - 1 ) / 11 ),
+                           new Long( nrow ), new Long( nrow ),
+                           new Long( nrow ) },
+            getColData( batchStats, 1 ) );
+
+        /* Extremum positions must still be reported if the table
+         * cannot supply row indices. */
+        StarTable noIndexStats =
+            process( new NoIndexTable( table ), "stats " + quantities );
+        for ( int iq = 0; iq < nq; iq++ ) {
+            assertArrayEquals( getColData( batchStats, iq ),
+                               getColData( noIndexStats, iq ) );
+        }
+    }
+
     public void testTail() throws Exception {
         assertSameData( inTable_, apply( "tail 4" ) );
         assertSameData( inTable_, apply( "tail 10000000" ) );
@@ -851,6 +919,56 @@ public class TablePipeTest extends TableTestCase {
         assertArrayEquals(
             new String[] { "DupCount", "a", "b", "c", "d" },
             getColNames( apply( "uniq -count" ) ) );
+        assertSameData( inTable_, apply( "uniq -global" ) );
+        assertArrayEquals(
+            new int[] { 1, 3 },
+            unbox( getColData( apply( "uniq -global c" ), 0 ) ) );
+        assertArrayEquals(
+            new int[] { 1, 2 },
+            unbox( getColData( apply( "addcol e a%2; uniq -global e" ),
+                               0 ) ) );
+        try {
+            apply( "uniq -count -global" );
+            fail();
+        }
+        catch ( TaskException e ) {
+            assertTrue( e.getCause() instanceof ArgException );
+        }
     }
 
+
+    /**
+     * Table wrapper whose row splittable does not report row indices.
+     */
+    private static class NoIndexTable extends WrapperStarTable {
+        NoIndexTable( StarTable base ) {
+            super( base );
+        }
+        public RowSplittable getRowSplittable() throws IOException {
+            final RowSplittable base = super.getRowSplittable();
+            return new RowSplittable() {
+                public RowSplittable split() {
+                    return null;
+                }
+                public long splittableSize() {
+                    return base.splittableSize();
+                }
+                public LongSupplier rowIndex() {
+                    return null;
+                }
+                public boolean next() throws IOException {
+                    return base.next();
+                }
+                public Object getCell( int icol ) throws IOException {
+                    return base.getCell( icol );
+                }
+                public Object[] getRow() throws IOException {
+                    return base.getRow();
+                }
+                public void close() throws IOException {
+                    base.close();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package uk.ac.starlink.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Provides static methods for use by classes that perform
+ * I/O-related work concurrently using a fixed pool of worker threads.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+public class ThreadUtils {
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.util" );
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private ThreadUtils() {
+    }
+
+    /**
+     * Returns an executor service with a fixed number of daemon threads.
+     * Since the threads are daemons, an executor that is not shut down
+     * will not prevent the JVM from exiting, though callers should
+     * still shut it down when it is no longer required.
+     *
+     * @param  nthread  number of worker threads
+     * @param  name   name for worker threads
+     * @return  new executor service
+     */
+    public static ExecutorService createDaemonPool( int nthread,
+                                                    final String name ) {
+        return Executors.newFixedThreadPool( nthread, new ThreadFactory() {
+            public Thread newThread( Runnable r ) {
+                Thread thread = new Thread( r, name );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Waits for and returns the result of a task which may throw
+     * an IOException.
+     * If the task failed with an IOException, RuntimeException or Error,
+     * that is rethrown; any other failure is wrapped in an IOException.
+     * Interruption of the waiting thread results in an
+     * InterruptedIOException.
+     *
+     * @param  future  task result
+     * @param  failMsg  message for the IOException thrown if the task
+     *                  failed with some other checked exception
+     * @return  task result
+     */
+    public static <T> T getResult( Future<T> future, String failMsg )
+            throws IOException {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            throw (IOException) new InterruptedIOException( "Interrupted" )
+                               .initCause( e );
+        }
+        catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw (IOException) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw (Error) cause;
+            }
+            else {
+                throw (IOException) new IOException( failMsg )
+                                   .initCause( cause );
+            }
+        }
+    }
+
+    /**
+     * Returns a thread count given by the value of a system property.
+     * If the property is unset, blank or unusable the result is 1,
+     * otherwise its value is interpreted as by {@link #getThreadCount(int)}.
+     *
+     * @param  propName  system property name
+     * @return  thread count; 1 means no parallelism
+     */
+    public static int getThreadCount( String propName ) {
+        String sval;
+        try {
+            sval = System.getProperty( propName );
+        }
+        catch ( SecurityException e ) {
+            sval = null;
+        }
+        if ( sval == null || sval.trim().length() == 0 ) {
+            return 1;
+        }
+        int nthread;
+        try {
+            nthread = Integer.parseInt( sval.trim() );
+        }
+        catch ( NumberFormatException e ) {
+            logger_.warning( "Bad value for " + propName
+                           + ": \"" + sval + "\"" );
+            return 1;
+        }
+        return getThreadCount( nthread );
+    }
+
+    /**
+     * Interprets a requested thread count.
+     * A value of zero means the number of available processors,
+     * and negative values are treated as 1.
+     *
+     * @param  nthread  requested thread count
+     * @return  actual thread count, at least 1
+     */
+    public static int getThreadCount( int nthread ) {
+        return nthread == 0 ? Runtime.getRuntime().availableProcessors()
+                            : Math.max( 1, nthread );
+    }
+}
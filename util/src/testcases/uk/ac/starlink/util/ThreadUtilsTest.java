@@ -0,0 +1,111 @@
+package uk.ac.starlink.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+public class ThreadUtilsTest extends TestCase {
+
+    public ThreadUtilsTest( String name ) {
+        super( name );
+    }
+
+    public void testResult() throws Exception {
+        ExecutorService pool = ThreadUtils.createDaemonPool( 2, "test" );
+        try {
+            Future<String> ok = pool.submit( new Callable<String>() {
+                public String call() {
+                    assertTrue( Thread.currentThread().isDaemon() );
+                    assertEquals( "test", Thread.currentThread().getName() );
+                    return "ok";
+                }
+            } );
+            assertEquals( "ok", ThreadUtils.getResult( ok, "msg" ) );
+
+            final IOException ioerr = new IOException( "io" );
+            try {
+                ThreadUtils.getResult( pool.submit( new Callable<Object>() {
+                    public Object call() throws IOException {
+                        throw ioerr;
+                    }
+                } ), "msg" );
+                fail();
+            }
+            catch ( IOException e ) {
+                assertSame( ioerr, e );
+            }
+
+            final IllegalStateException rterr =
+                new IllegalStateException( "rt" );
+            try {
+                ThreadUtils.getResult( pool.submit( new Callable<Object>() {
+                    public Object call() {
+                        throw rterr;
+                    }
+                } ), "msg" );
+                fail();
+            }
+            catch ( IllegalStateException e ) {
+                assertSame( rterr, e );
+            }
+
+            final Exception err = new Exception( "other" );
+            try {
+                ThreadUtils.getResult( pool.submit( new Callable<Object>() {
+                    public Object call() throws Exception {
+                        throw err;
+                    }
+                } ), "msg" );
+                fail();
+            }
+            catch ( IOException e ) {
+                assertEquals( "msg", e.getMessage() );
+                assertSame( err, e.getCause() );
+            }
+
+            Future<Object> slow = pool.submit( new Callable<Object>() {
+                public Object call() throws InterruptedException {
+                    Thread.sleep( 10000 );
+                    return null;
+                }
+            } );
+            Thread.currentThread().interrupt();
+            try {
+                ThreadUtils.getResult( slow, "msg" );
+                fail();
+            }
+            catch ( InterruptedIOException e ) {
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public void testThreadCount() {
+        String prop = "uk.ac.starlink.util.test.threads";
+        int nproc = Runtime.getRuntime().availableProcessors();
+        assertEquals( 1, ThreadUtils.getThreadCount( prop ) );
+        try {
+            System.setProperty( prop, " 3 " );
+            assertEquals( 3, ThreadUtils.getThreadCount( prop ) );
+            System.setProperty( prop, "0" );
+            assertEquals( nproc, ThreadUtils.getThreadCount( prop ) );
+            System.setProperty( prop, "-2" );
+            assertEquals( 1, ThreadUtils.getThreadCount( prop ) );
+            System.setProperty( prop, "many" );
+            assertEquals( 1, ThreadUtils.getThreadCount( prop ) );
+            System.setProperty( prop, "" );
+            assertEquals( 1, ThreadUtils.getThreadCount( prop ) );
+        }
+        finally {
+            System.clearProperty( prop );
+        }
+        assertEquals( nproc, ThreadUtils.getThreadCount( 0 ) );
+        assertEquals( 5, ThreadUtils.getThreadCount( 5 ) );
+        assertEquals( 1, ThreadUtils.getThreadCount( -1 ) );
+    }
+}
@@ -76,6 +76,33 @@ class BinaryRowSequence implements RowSequence {
               };
     }
 
+    /**
+     * Returns a row sequence for reading streamed data in VOTable BINARY
+     * or BINARY2 format.
+     * If so configured by the
+     * {@link VOElementFactory#BINARY_THREADS_PROPERTY} system property,
+     * the returned sequence decodes the data using multiple threads.
+     *
+     * @param  decoders  n-element array of decoders for decoding
+     *                   n-column data
+     * @param  in  input stream containing binary data
+     * @param  encoding  encoding string as per <tt>encoding</tt> attribute
+     *         of STREAM element ("gzip" or "base64", else assumed none)
+     * @param  isBinary2 true for BINARY2 format, false for BINARY
+     * @return  row sequence
+     */
+    public static RowSequence createRowSequence( Decoder[] decoders,
+                                                 InputStream in,
+                                                 String encoding,
+                                                 boolean isBinary2 )
+            throws IOException {
+        int nthread = VOElementFactory.getBinaryThreads();
+        return nthread > 1
+             ? new ParallelBinaryRowSequence( decoders, in, encoding,
+                                              isBinary2, nthread )
+             : new BinaryRowSequence( decoders, in, encoding, isBinary2 );
+    }
+
     public boolean next() throws IOException {
         final int b;
         try {
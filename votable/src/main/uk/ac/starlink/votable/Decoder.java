@@ -28,6 +28,12 @@ abstract class Decoder {
     static Logger logger = Logger.getLogger( "uk.ac.starlink.votable" );
     static final long[] SCALAR_SIZE = new long[ 0 ];
 
+    /**
+     * Marker object returned by {@link #decodeAscii} to indicate that
+     * the cell must be decoded from its string form instead.
+     */
+    static final Object UNDECODED = new Object();
+
     protected String blankString;
     protected boolean isVariable;
     protected int sliceSize;
@@ -51,6 +57,26 @@ abstract class Decoder {
      */
     abstract public Object decodeString( String txt );
 
+    /**
+     * Attempts to decode a value directly from a run of bytes containing
+     * the text of a TABLEDATA cell in an ASCII-compatible encoding,
+     * without constructing a String.
+     * If the result can be determined, it is the same as the result of
+     * {@link #decodeString} on the corresponding text.
+     * Otherwise the {@link #UNDECODED} marker is returned,
+     * and the caller must use <code>decodeString</code>.
+     *
+     * <p>The default implementation always returns <code>UNDECODED</code>.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of cell text
+     * @param  leng  number of bytes of cell text
+     * @return  decoded value, or <code>UNDECODED</code>
+     */
+    Object decodeAscii( byte[] buf, int off, int leng ) {
+        return UNDECODED;
+    }
+
     /**
      * Returns an object array read from the next bit of a given input
      * stream as raw bytes.  The VOTable BINARY/BINARY2 format is used.
@@ -0,0 +1,256 @@
+package uk.ac.starlink.votable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import uk.ac.starlink.fits.BasicInput;
+
+/**
+ * InputStream giving random access to the decoded content of
+ * base64-encoded text.
+ *
+ * <p>The encoded text is read from a random-access {@link BasicInput},
+ * typically a mapped file.  The decoded byte sequence is considered
+ * as a sequence of fixed-size chunks, and an array of checkpoints
+ * supplied at construction time gives the offset into the encoded
+ * text at which each chunk starts.  Since the chunk size is a multiple
+ * of 3, each chunk starts at a 4-character base64 boundary, so that
+ * decoding can begin at any chunk.
+ * Characters outside of the base64 alphabet (for instance whitespace)
+ * are ignored.
+ *
+ * <p>The {@link #seek} method moves the current position;
+ * reads are then satisfied by decoding the appropriate chunk.
+ * Instances are not safe for use from multiple threads.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class IndexedBase64Stream extends InputStream {
+
+    private final BasicInput rawIn_;
+    private final long rawLength_;
+    private final long[] chunkOffsets_;
+    private final int chunkBytes_;
+    private final long decodedLength_;
+    private final byte[] chunk_;
+    private byte[] rawBuf_;
+    private long rawPos_;
+    private int rawBufPos_;
+    private long chunkStart_;
+    private int chunkLeng_;
+    private long pos_;
+
+    /** Number of raw bytes read at a time. */
+    private static final int RAW_BUFSIZ = 16 * 1024;
+
+    /** Base64 character values; -1 for characters to ignore. */
+    private static final int[] DECODE = createDecodeTable();
+
+    /**
+     * Constructor.
+     *
+     * @param  rawIn  random-access input supplying the encoded text
+     * @param  rawLength  number of bytes of encoded text
+     * @param  chunkOffsets  offsets into the encoded text at which
+     *                       each chunk of decoded bytes starts
+     * @param  chunkBytes  number of decoded bytes per chunk;
+     *                     must be a multiple of 3
+     * @param  decodedLength  total number of decoded bytes
+     */
+    public IndexedBase64Stream( BasicInput rawIn, long rawLength,
+                                long[] chunkOffsets, int chunkBytes,
+                                long decodedLength ) {
+        if ( chunkBytes % 3 != 0 ) {
+            throw new IllegalArgumentException( "Chunk size " + chunkBytes
+                                              + " not a multiple of 3" );
+        }
+        rawIn_ = rawIn;
+        rawLength_ = rawLength;
+        chunkOffsets_ = chunkOffsets;
+        chunkBytes_ = chunkBytes;
+        decodedLength_ = decodedLength;
+        chunk_ = new byte[ chunkBytes ];
+        rawBuf_ = new byte[ 0 ];
+        chunkStart_ = -1;
+    }
+
+    /**
+     * Returns the total number of decoded bytes.
+     *
+     * @return  decoded length
+     */
+    public long getLength() {
+        return decodedLength_;
+    }
+
+    /**
+     * Returns the current position in the decoded byte sequence.
+     *
+     * @return  offset of the next byte to be read
+     */
+    public long getPosition() {
+        return pos_;
+    }
+
+    /**
+     * Sets the current position in the decoded byte sequence.
+     *
+     * @param  pos  offset of the next byte to be read
+     */
+    public void seek( long pos ) throws IOException {
+        if ( pos < 0 || pos > decodedLength_ ) {
+            throw new EOFException( "Seek to " + pos + " outside stream of "
+                                  + decodedLength_ + " bytes" );
+        }
+        pos_ = pos;
+    }
+
+    public int read() throws IOException {
+        if ( pos_ >= decodedLength_ ) {
+            return -1;
+        }
+        ensureChunk();
+        return chunk_[ (int) ( pos_++ - chunkStart_ ) ] & 0xff;
+    }
+
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if ( len == 0 ) {
+            return 0;
+        }
+        if ( pos_ >= decodedLength_ ) {
+            return -1;
+        }
+        ensureChunk();
+        int ic = (int) ( pos_ - chunkStart_ );
+        int n = Math.min( len, chunkLeng_ - ic );
+        System.arraycopy( chunk_, ic, b, off, n );
+        pos_ += n;
+        return n;
+    }
+
+    public long skip( long n ) {
+        long k = Math.max( 0, Math.min( n, decodedLength_ - pos_ ) );
+        pos_ += k;
+        return k;
+    }
+
+    public int available() {
+        return chunkStart_ >= 0 && pos_ >= chunkStart_
+                                && pos_ < chunkStart_ + chunkLeng_
+             ? (int) ( chunkStart_ + chunkLeng_ - pos_ )
+             : 0;
+    }
+
+    public void close() throws IOException {
+        rawIn_.close();
+    }
+
+    /**
+     * Ensures that the chunk containing the current position is loaded.
+     */
+    private void ensureChunk() throws IOException {
+        if ( chunkStart_ < 0 || pos_ < chunkStart_ ||
+             pos_ >= chunkStart_ + chunkLeng_ ) {
+            long ichunk = pos_ / chunkBytes_;
+
+            /* If the required chunk directly follows the loaded one,
+             * the encoded text can be read on from where it left off. */
+            boolean isNext = chunkStart_ >= 0
+                          && ichunk * chunkBytes_ == chunkStart_ + chunkLeng_;
+            loadChunk( ichunk, isNext );
+        }
+    }
+
+    /**
+     * Decodes a chunk of data into the chunk buffer.
+     *
+     * @param  ichunk  chunk index
+     * @param  isNext  true if the encoded text is already positioned
+     *                 at the start of the chunk
+     */
+    private void loadChunk( long ichunk, boolean isNext ) throws IOException {
+        if ( ! isNext ) {
+            rawPos_ = chunkOffsets_[ (int) ichunk ];
+            rawBuf_ = new byte[ 0 ];
+            rawBufPos_ = 0;
+        }
+        long start = ichunk * chunkBytes_;
+        int n = (int) Math.min( chunkBytes_, decodedLength_ - start );
+        int ib = 0;
+        while ( ib < n ) {
+            int acc = 0;
+            for ( int nq = 0; nq < 4; ) {
+                int v = DECODE[ nextRaw() ];
+                if ( v >= 0 ) {
+                    acc = ( acc << 6 ) | v;
+                    nq++;
+                }
+            }
+            chunk_[ ib++ ] = (byte) ( acc >> 16 );
+            if ( ib < n ) {
+                chunk_[ ib++ ] = (byte) ( acc >> 8 );
+            }
+            if ( ib < n ) {
+                chunk_[ ib++ ] = (byte) acc;
+            }
+        }
+        chunkStart_ = start;
+        chunkLeng_ = n;
+    }
+
+    /**
+     * Returns the next byte of encoded text.
+     *
+     * @return  byte value in the range 0-255
+     * @throws  EOFException  if the encoded text is exhausted
+     */
+    private int nextRaw() throws IOException {
+        if ( rawBufPos_ >= rawBuf_.length ) {
+            int n = (int) Math.min( RAW_BUFSIZ, rawLength_ - rawPos_ );
+            if ( n <= 0 ) {
+                throw new EOFException( "Base64 text truncated" );
+            }
+            if ( rawBuf_.length != n ) {
+                rawBuf_ = new byte[ n ];
+            }
+            rawIn_.seek( rawPos_ );
+            rawIn_.readBytes( rawBuf_ );
+            rawPos_ += n;
+            rawBufPos_ = 0;
+        }
+        return rawBuf_[ rawBufPos_++ ] & 0xff;
+    }
+
+    /**
+     * Returns the value of a base64 character, or -1 for characters that
+     * are not part of the base64 alphabet.  The padding character '='
+     * has the value zero.
+     *
+     * @param  c  character
+     * @return  value in the range 0-63, or -1
+     */
+    static int decodeChar( int c ) {
+        return c >= 0 && c < 256 ? DECODE[ c ] : -1;
+    }
+
+    /**
+     * Creates the lookup table for base64 character values.
+     *
+     * @return  256-element array of values or -1
+     */
+    private static int[] createDecodeTable() {
+        int[] table = new int[ 256 ];
+        for ( int i = 0; i < 256; i++ ) {
+            table[ i ] = -1;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                        + "abcdefghijklmnopqrstuvwxyz"
+                        + "0123456789+/";
+        for ( int i = 0; i < 64; i++ ) {
+            table[ alphabet.charAt( i ) ] = i;
+        }
+        table[ '=' ] = 0;
+        return table;
+    }
+}
@@ -0,0 +1,518 @@
+package uk.ac.starlink.votable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Logger;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.util.BufferedDataInputStream;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import uk.ac.starlink.fits.BasicInput;
+import uk.ac.starlink.fits.BintableStarTable;
+import uk.ac.starlink.fits.FitsConstants;
+import uk.ac.starlink.fits.InputFactory;
+import uk.ac.starlink.fits.WideFits;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.util.Compression;
+import uk.ac.starlink.util.DataSource;
+import uk.ac.starlink.util.FileDataSource;
+
+/**
+ * Reads a table from a VOTable file using a sidecar {@link StreamIndex}
+ * to provide random access to its data.
+ *
+ * <p>The first time a table is read from a given file, it is read
+ * in the usual way, and an index of its data is then built and saved
+ * if the data is suitable.  On subsequent reads, only the metadata is
+ * parsed from the XML, and the data is accessed directly from the
+ * file using the index, so that no copy of the data is required
+ * and random access is available.
+ * If the index turns out to be unusable, for instance because the file
+ * has been modified, the table is read in the usual way and the index
+ * is rebuilt.
+ *
+ * <p>This behaviour is only enabled if the
+ * {@link VOElementFactory#INDEX_PROPERTY} system property is set.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class IndexedTableReader {
+
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.votable" );
+
+    /**
+     * Private constructor prevents instantiation.
+     */
+    private IndexedTableReader() {
+    }
+
+    /**
+     * Returns the file which may be indexed for reading a given data source,
+     * if indexed reading is appropriate.
+     *
+     * @param  datsrc  data source
+     * @return   uncompressed local file to index, or null
+     */
+    public static File getIndexableFile( DataSource datsrc )
+            throws IOException {
+        return VOElementFactory.isIndexing()
+            && datsrc instanceof FileDataSource
+            && datsrc.getCompression() == Compression.NONE
+             ? ((FileDataSource) datsrc).getFile()
+             : null;
+    }
+
+    /**
+     * Reads a table from a VOTable file, using or creating an index
+     * as appropriate.
+     *
+     * @param  datsrc  data source for the file
+     * @param  file    uncompressed file corresponding to
+     *                 <code>datsrc</code>
+     * @param  itable  index of the TABLE element in the document
+     * @param  storage  storage policy used if the table is read
+     *                  without an index
+     * @param  strict  whether to effect strict interpretation of the
+     *                 VOTable standard
+     * @return  table
+     */
+    public static StarTable readStarTable( DataSource datsrc, File file,
+                                           int itable, StoragePolicy storage,
+                                           boolean strict )
+            throws IOException, SAXException {
+
+        /* Try to use an existing index. */
+        File idxFile = StreamIndex.getIndexFile( file, itable );
+        if ( idxFile.isFile() ) {
+            try {
+                StarTable table =
+                    readIndexedTable( datsrc, file, itable, idxFile, strict );
+                if ( table != null ) {
+                    return table;
+                }
+            }
+            catch ( IOException e ) {
+                logger_.info( "Failed to use index " + idxFile + ": " + e );
+            }
+            catch ( SAXException e ) {
+                logger_.info( "Failed to use index " + idxFile + ": " + e );
+            }
+        }
+
+        /* Otherwise read the table in the usual way. */
+        InputSource saxsrc = new InputSource( datsrc.getInputStream() );
+        saxsrc.setSystemId( datsrc.getSystemId() );
+        SingleTableReader reader =
+            new SingleTableReader( storage, itable, strict );
+        reader.parse( saxsrc );
+        StarTable table = reader.getStarTable();
+
+        /* Then try to index it for next time. */
+        try {
+            StreamIndex index = StreamIndex.createIndex( file, itable, reader );
+            if ( index != null ) {
+                index.writeIndex( idxFile );
+                logger_.info( "Wrote VOTable index " + idxFile );
+            }
+        }
+        catch ( IOException e ) {
+            logger_.info( "Failed to write index " + idxFile + ": " + e );
+        }
+        return table;
+    }
+
+    /**
+     * Reads a table using an existing index file.
+     *
+     * @param  datsrc  data source for the file
+     * @param  file    uncompressed VOTable file
+     * @param  itable  index of the TABLE element in the document
+     * @param  idxFile  index file
+     * @param  strict  whether to effect strict interpretation of the
+     *                 VOTable standard
+     * @return  table, or null if the index is not current
+     */
+    private static StarTable readIndexedTable( DataSource datsrc, File file,
+                                               int itable, File idxFile,
+                                               boolean strict )
+            throws IOException, SAXException {
+        StreamIndex index = StreamIndex.readIndex( idxFile );
+        if ( ! index.isCurrent( file, itable ) ) {
+            logger_.info( "VOTable index " + idxFile + " is out of date" );
+            return null;
+        }
+
+        /* Parse the metadata, omitting the indexed base64 text. */
+        InputStream in =
+            new RangeSkipInputStream( new FileInputStream( file ),
+                                      index.getStreamStart(),
+                                      index.getStreamEnd() );
+        InputSource saxsrc = new InputSource( new BufferedInputStream( in ) );
+        saxsrc.setSystemId( datsrc.getSystemId() );
+        SingleTableReader reader =
+            new SingleTableReader( StoragePolicy.PREFER_MEMORY, itable,
+                                   strict );
+        reader.setMetadataOnly( true );
+        try {
+            reader.parse( saxsrc );
+        }
+        finally {
+            in.close();
+        }
+        if ( ! index.matches( reader ) ) {
+            logger_.info( "VOTable index " + idxFile
+                        + " does not match table" );
+            return null;
+        }
+
+        /* Attach indexed data to the table element. */
+        TableElement tableEl = reader.getTargetTableElement();
+        FieldElement[] fields = tableEl.getFields();
+        Decoder[] decoders = new Decoder[ fields.length ];
+        for ( int icol = 0; icol < fields.length; icol++ ) {
+            decoders[ icol ] = fields[ icol ].getDecoder();
+        }
+        InputFactory rawFact = index.createRawFactory( file );
+        TabularData tdata = index.getFormat() == DataFormat.FITS
+                          ? createFitsData( index, rawFact )
+                          : new IndexedBinaryTabularData( decoders, index,
+                                                          rawFact );
+        tableEl.setData( tdata );
+        logger_.info( "Using VOTable index " + idxFile );
+        return new VOStarTable( tableEl );
+    }
+
+    /**
+     * Returns a TabularData for indexed FITS data.
+     *
+     * @param  index  index
+     * @param  rawFact  factory for the base64 text
+     * @return  random-access tabular data
+     */
+    private static TabularData createFitsData( final StreamIndex index,
+                                               final InputFactory rawFact )
+            throws IOException {
+        IndexedBase64Stream strm = index.createStream( rawFact );
+        Header hdr = new Header();
+        final long dataOffset;
+        try {
+            strm.seek( index.getHduOffset() );
+            int headsize =
+                FitsConstants
+               .readHeader( hdr, new BufferedDataInputStream( strm ) );
+            dataOffset = index.getHduOffset() + headsize;
+        }
+        catch ( FitsException e ) {
+            throw (IOException) new IOException( "Bad FITS header" )
+                               .initCause( e );
+        }
+        finally {
+            strm.close();
+        }
+        InputFactory dataFact = new InputFactory() {
+            public boolean isRandom() {
+                return true;
+            }
+            public BasicInput createInput( boolean isSeq )
+                    throws IOException {
+                return new StreamBasicInput( index.createStream( rawFact ),
+                                             dataOffset );
+            }
+            public void close() throws IOException {
+                rawFact.close();
+            }
+        };
+        try {
+            return new TableBodies.StarTableTabularData(
+                BintableStarTable.createTable( hdr, dataFact,
+                                               WideFits.DEFAULT ) );
+        }
+        catch ( FitsException e ) {
+            throw (IOException) new IOException( "Bad FITS table" )
+                               .initCause( e );
+        }
+    }
+
+    /**
+     * TabularData implementation for indexed BINARY or BINARY2 data.
+     */
+    private static class IndexedBinaryTabularData implements TabularData {
+        private final Decoder[] decoders_;
+        private final StreamIndex index_;
+        private final InputFactory rawFact_;
+        private final boolean isBinary2_;
+        private final Class<?>[] classes_;
+        private final boolean[] nullFlags_;
+        private IndexedBase64Stream strm_;
+        private DataInputStream in_;
+        private long nextRow_;
+        private long lastRow_;
+        private Object[] lastData_;
+
+        /**
+         * Constructor.
+         *
+         * @param  decoders  column decoders
+         * @param  index   index
+         * @param  rawFact  factory for the base64 text
+         */
+        IndexedBinaryTabularData( Decoder[] decoders, StreamIndex index,
+                                  InputFactory rawFact ) {
+            decoders_ = decoders;
+            index_ = index;
+            rawFact_ = rawFact;
+            isBinary2_ = index.getFormat() == DataFormat.BINARY2;
+            int ncol = decoders.length;
+            classes_ = new Class<?>[ ncol ];
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                classes_[ icol ] = decoders[ icol ].getContentClass();
+            }
+            nullFlags_ = new boolean[ ncol ];
+            lastRow_ = -1;
+        }
+
+        public int getColumnCount() {
+            return decoders_.length;
+        }
+
+        public long getRowCount() {
+            return index_.getRowCount();
+        }
+
+        public Class<?> getContentClass( int icol ) {
+            return classes_[ icol ];
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public RowSequence getRowSequence() throws IOException {
+            return BinaryRowSequence
+                  .createRowSequence( decoders_,
+                                      index_.createStream( rawFact_ ),
+                                      null, isBinary2_ );
+        }
+
+        public synchronized Object getCell( long irow, int icol )
+                throws IOException {
+            return readRow( irow )[ icol ];
+        }
+
+        public synchronized Object[] getRow( long irow ) throws IOException {
+            return readRow( irow ).clone();
+        }
+
+        /**
+         * Returns the data for a given row.  The returned array is
+         * cached, and must not be modified.
+         *
+         * @param  irow  row index
+         * @return  row data
+         */
+        private Object[] readRow( long irow ) throws IOException {
+            if ( irow == lastRow_ ) {
+                return lastData_;
+            }
+            if ( irow < 0 || irow >= index_.getRowCount() ) {
+                throw new IllegalArgumentException( "No such row " + irow );
+            }
+            if ( strm_ == null ) {
+                strm_ = index_.createStream( rawFact_ );
+                in_ = new DataInputStream( strm_ );
+                nextRow_ = 0;
+            }
+
+            /* Position at the start of the row, continuing from the
+             * current position if that's not too far behind. */
+            long istep = irow / StreamIndex.ROW_STEP;
+            if ( irow < nextRow_ || istep > nextRow_ / StreamIndex.ROW_STEP ) {
+                strm_.seek( index_.getRowOffset( istep ) );
+                nextRow_ = istep * StreamIndex.ROW_STEP;
+            }
+            int ncol = decoders_.length;
+            for ( ; nextRow_ < irow; nextRow_++ ) {
+                if ( isBinary2_ ) {
+                    FlagIO.readFlags( in_, nullFlags_ );
+                }
+                for ( int icol = 0; icol < ncol; icol++ ) {
+                    decoders_[ icol ].skipStream( in_ );
+                }
+            }
+
+            /* Read the row. */
+            Object[] row = new Object[ ncol ];
+            if ( isBinary2_ ) {
+                FlagIO.readFlags( in_, nullFlags_ );
+            }
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Decoder decoder = decoders_[ icol ];
+                if ( isBinary2_ && nullFlags_[ icol ] ) {
+                    decoder.skipStream( in_ );
+                }
+                else {
+                    row[ icol ] = decoder.decodeStream( in_ );
+                }
+            }
+            nextRow_ = irow + 1;
+            lastRow_ = irow;
+            lastData_ = row;
+            return row;
+        }
+    }
+
+    /**
+     * BasicInput implementation reading from an IndexedBase64Stream,
+     * with offsets relative to a given position in the decoded data.
+     */
+    private static class StreamBasicInput implements BasicInput {
+        private final IndexedBase64Stream strm_;
+        private final DataInputStream in_;
+        private final long offset0_;
+
+        /**
+         * Constructor.
+         *
+         * @param  strm  decoded stream
+         * @param  offset0  position in the stream corresponding to
+         *                  offset zero of this input
+         */
+        StreamBasicInput( IndexedBase64Stream strm, long offset0 )
+                throws IOException {
+            strm_ = strm;
+            in_ = new DataInputStream( strm );
+            offset0_ = offset0;
+            strm.seek( offset0 );
+        }
+
+        public byte readByte() throws IOException {
+            return in_.readByte();
+        }
+
+        public short readShort() throws IOException {
+            return in_.readShort();
+        }
+
+        public int readInt() throws IOException {
+            return in_.readInt();
+        }
+
+        public long readLong() throws IOException {
+            return in_.readLong();
+        }
+
+        public float readFloat() throws IOException {
+            return in_.readFloat();
+        }
+
+        public double readDouble() throws IOException {
+            return in_.readDouble();
+        }
+
+        public void readBytes( byte[] buf ) throws IOException {
+            in_.readFully( buf );
+        }
+
+        public void skip( long nbyte ) throws IOException {
+            strm_.seek( strm_.getPosition() + nbyte );
+        }
+
+        public boolean isRandom() {
+            return true;
+        }
+
+        public void seek( long offset ) throws IOException {
+            strm_.seek( offset0_ + offset );
+        }
+
+        public long getOffset() {
+            return strm_.getPosition() - offset0_;
+        }
+
+        public void close() throws IOException {
+            strm_.close();
+        }
+    }
+
+    /**
+     * InputStream wrapper which omits a given range of bytes.
+     */
+    private static class RangeSkipInputStream extends FilterInputStream {
+        private final long skipStart_;
+        private final long skipEnd_;
+        private long pos_;
+
+        /**
+         * Constructor.
+         *
+         * @param  in  base input stream
+         * @param  skipStart  offset of the first byte to omit
+         * @param  skipEnd  offset of the first byte following the
+         *                  omitted range
+         */
+        RangeSkipInputStream( InputStream in, long skipStart, long skipEnd ) {
+            super( in );
+            skipStart_ = skipStart;
+            skipEnd_ = skipEnd;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[ 1 ];
+            return read( b, 0, 1 ) == 1 ? b[ 0 ] & 0xff : -1;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException {
+            if ( pos_ >= skipStart_ && pos_ < skipEnd_ ) {
+                long nskip = skipEnd_ - pos_;
+                while ( nskip > 0 ) {
+                    long ns = in.skip( nskip );
+                    if ( ns <= 0 ) {
+                        if ( in.read() < 0 ) {
+                            return -1;
+                        }
+                        ns = 1;
+                    }
+                    nskip -= ns;
+                }
+                pos_ = skipEnd_;
+            }
+            if ( pos_ < skipStart_ ) {
+                len = (int) Math.min( len, skipStart_ - pos_ );
+            }
+            int n = in.read( b, off, len );
+            if ( n > 0 ) {
+                pos_ += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip( long n ) throws IOException {
+            return n > 0 ? Math.max( 0, read( new byte[ (int) Math.min( n,
+                                                           4096 ) ] ) )
+                         : 0;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
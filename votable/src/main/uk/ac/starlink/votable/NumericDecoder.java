@@ -8,6 +8,21 @@ abstract class NumericDecoder extends Decoder {
 
     private final int size1_;
 
+    /** Return value of {@link #parseAsciiLong} for unrecognised input. */
+    static final long NO_LONG = Long.MIN_VALUE;
+
+    /** Exactly representable powers of ten as doubles. */
+    private static final double[] DOUBLE_POW10 = new double[] {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22,
+    };
+
+    /** Exactly representable powers of ten as floats. */
+    private static final float[] FLOAT_POW10 = new float[] {
+        1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f,
+    };
+
     /**
      * Does required setup for a NumericDecoder.
      *
@@ -52,6 +67,24 @@ abstract class NumericDecoder extends Decoder {
      */
     abstract void decodeString1( Object array, int index, String txt );
 
+    /**
+     * Attempts to read a single value from a run of ASCII bytes and
+     * place it in a storage array.  If the value cannot be determined
+     * in a way guaranteed to match {@link #decodeString1}, false is
+     * returned.  The default implementation returns false.
+     *
+     * @param  array  array returned by a previous call to getEmptyArray
+     * @param  index  the element of this array to store the result in
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @return  true iff the value was stored
+     */
+    boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                          int leng ) {
+        return false;
+    }
+
     /**
      * Reads a single value from a stream and places it in a storage array.
      *
@@ -143,6 +176,229 @@ abstract class NumericDecoder extends Decoder {
         }
     }
 
+    /**
+     * Attempts to decode a run of ASCII bytes as a single scalar.
+     * This method is used by the scalar decoders
+     * in the same way as {@link #scalarDecodeString}.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @return  decoded value, or {@link Decoder#UNDECODED}
+     */
+    Object scalarDecodeAscii( byte[] buf, int off, int leng ) {
+        Object array = getEmptyArray( 1 );
+        return decodeAscii1( array, 0, buf, off, leng )
+             ? packageArray( array )
+             : UNDECODED;
+    }
+
+    /**
+     * Parses a plain decimal integer from a run of ASCII bytes.
+     * Surrounding whitespace is ignored.  Only an optional minus sign
+     * followed by between 1 and 18 decimal digits is recognised;
+     * for anything else, including forms that the string parsing
+     * methods may accept such as hexadecimal, the value
+     * {@link #NO_LONG} is returned.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @return  parsed value, or <code>NO_LONG</code>
+     */
+    static long parseAsciiLong( byte[] buf, int off, int leng ) {
+        int i = off;
+        int iend = off + leng;
+        while ( i < iend && buf[ i ] >= 0 && buf[ i ] <= ' ' ) {
+            i++;
+        }
+        while ( iend > i && buf[ iend - 1 ] >= 0 && buf[ iend - 1 ] <= ' ' ) {
+            iend--;
+        }
+        boolean isNeg = i < iend && buf[ i ] == '-';
+        if ( isNeg ) {
+            i++;
+        }
+        int ndigit = iend - i;
+        if ( ndigit < 1 || ndigit > 18 ) {
+            return NO_LONG;
+        }
+        long val = 0;
+        for ( ; i < iend; i++ ) {
+            int digit = buf[ i ] - '0';
+            if ( digit < 0 || digit > 9 ) {
+                return NO_LONG;
+            }
+            val = val * 10 + digit;
+        }
+        return isNeg ? -val : val;
+    }
+
+    /**
+     * Parses a plain decimal floating point number from a run of
+     * ASCII bytes, if the result can be guaranteed to be the same as
+     * that of <code>Double.parseDouble</code>.
+     * That is the case for forms like "-12.345e-6" with up to
+     * 15 significant digits and a small overall decimal exponent,
+     * since the value is then given by a single correctly rounded
+     * multiplication or division of two exactly represented doubles.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @return  parsed value, or NaN if the form is not recognised
+     */
+    static double parseAsciiDouble( byte[] buf, int off, int leng ) {
+        long packed = scanAsciiDecimal( buf, off, leng, 15 );
+        if ( packed == 0 ) {
+            return Double.NaN;
+        }
+        long apacked = Math.abs( packed );
+        long mant = apacked >> 8;
+        int exp = (int) ( apacked & 0xff ) - 128;
+        double val;
+        if ( mant == 0 || exp == 0 ) {
+            val = mant;
+        }
+        else if ( exp > 0 && exp < DOUBLE_POW10.length ) {
+            val = mant * DOUBLE_POW10[ exp ];
+        }
+        else if ( exp < 0 && -exp < DOUBLE_POW10.length ) {
+            val = mant / DOUBLE_POW10[ -exp ];
+        }
+        else {
+            return Double.NaN;
+        }
+        return packed < 0 ? -val : val;
+    }
+
+    /**
+     * Parses a plain decimal floating point number from a run of
+     * ASCII bytes, if the result can be guaranteed to be the same as
+     * that of <code>Float.parseFloat</code>.
+     * This works like {@link #parseAsciiDouble}, but using single
+     * precision arithmetic with up to 7 significant digits.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @return  parsed value, or NaN if the form is not recognised
+     */
+    static float parseAsciiFloat( byte[] buf, int off, int leng ) {
+        long packed = scanAsciiDecimal( buf, off, leng, 7 );
+        if ( packed == 0 ) {
+            return Float.NaN;
+        }
+        long apacked = Math.abs( packed );
+        float mant = (float) ( apacked >> 8 );
+        int exp = (int) ( apacked & 0xff ) - 128;
+        float val;
+        if ( mant == 0 || exp == 0 ) {
+            val = mant;
+        }
+        else if ( exp > 0 && exp < FLOAT_POW10.length ) {
+            val = mant * FLOAT_POW10[ exp ];
+        }
+        else if ( exp < 0 && -exp < FLOAT_POW10.length ) {
+            val = mant / FLOAT_POW10[ -exp ];
+        }
+        else {
+            return Float.NaN;
+        }
+        return packed < 0 ? -val : val;
+    }
+
+    /**
+     * Scans a plain decimal number from a run of ASCII bytes.
+     * Surrounding whitespace is ignored.  The recognised form is an
+     * optional sign, digits with an optional decimal point, and an
+     * optional exponent of up to three digits.
+     * The result is packed into a long: the decimal mantissa
+     * (without leading zeros) multiplied by 256, plus the decimal exponent
+     * offset by 128, negated if there was a minus sign.
+     * Zero is returned if the form is not recognised, if the mantissa
+     * has more than the given number of significant digits,
+     * or if the exponent is not in the range -127..127.
+     *
+     * @param  buf  byte buffer
+     * @param  off  offset into <code>buf</code> of text
+     * @param  leng  number of bytes of text
+     * @param  maxDigits  maximum number of significant digits (&lt;=15)
+     * @return  packed mantissa and exponent, or zero
+     */
+    private static long scanAsciiDecimal( byte[] buf, int off, int leng,
+                                          int maxDigits ) {
+        int i = off;
+        int iend = off + leng;
+        while ( i < iend && buf[ i ] >= 0 && buf[ i ] <= ' ' ) {
+            i++;
+        }
+        while ( iend > i && buf[ iend - 1 ] >= 0 && buf[ iend - 1 ] <= ' ' ) {
+            iend--;
+        }
+        boolean isNeg = false;
+        if ( i < iend && ( buf[ i ] == '-' || buf[ i ] == '+' ) ) {
+            isNeg = buf[ i ] == '-';
+            i++;
+        }
+        long mant = 0;
+        int ndigit = 0;
+        int exp = 0;
+        boolean hasDigits = false;
+        boolean isFraction = false;
+        for ( ; i < iend; i++ ) {
+            byte b = buf[ i ];
+            int digit = b - '0';
+            if ( digit >= 0 && digit <= 9 ) {
+                hasDigits = true;
+                if ( mant != 0 || digit != 0 ) {
+                    if ( ++ndigit > maxDigits ) {
+                        return 0;
+                    }
+                    mant = mant * 10 + digit;
+                }
+                if ( isFraction ) {
+                    exp--;
+                }
+            }
+            else if ( b == '.' && ! isFraction ) {
+                isFraction = true;
+            }
+            else {
+                break;
+            }
+        }
+        if ( ! hasDigits ) {
+            return 0;
+        }
+        if ( i < iend && ( buf[ i ] == 'e' || buf[ i ] == 'E' ) ) {
+            i++;
+            boolean isExpNeg = false;
+            if ( i < iend && ( buf[ i ] == '-' || buf[ i ] == '+' ) ) {
+                isExpNeg = buf[ i ] == '-';
+                i++;
+            }
+            int nexp = iend - i;
+            if ( nexp < 1 || nexp > 3 ) {
+                return 0;
+            }
+            int e = 0;
+            for ( ; i < iend; i++ ) {
+                int digit = buf[ i ] - '0';
+                if ( digit < 0 || digit > 9 ) {
+                    return 0;
+                }
+                e = e * 10 + digit;
+            }
+            exp += isExpNeg ? -e : e;
+        }
+        if ( i != iend || exp < -127 || exp > 127 ) {
+            return 0;
+        }
+        long packed = ( mant << 8 ) | ( exp + 128 );
+        return isNeg ? -packed : packed;
+    }
+
     /**
      * Interprets a string as a <tt>short</tt>.
      *
@@ -280,6 +536,17 @@ abstract class NumericDecoder extends Decoder {
         void decodeString1( Object array, int index, String txt ) {
             ((short[]) array)[ index ] = parseShort( txt );
         }
+        boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                              int leng ) {
+            long val = parseAsciiLong( buf, off, leng );
+            if ( val >= Short.MIN_VALUE && val <= Short.MAX_VALUE ) {
+                ((short[]) array)[ index ] = (short) val;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
         void decodeStream1( Object array, int index, DataInput strm )
                 throws IOException {
             ((short[]) array)[ index ] = strm.readShort();
@@ -303,6 +570,9 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 
     static class UnsignedByteDecoder extends ShortDecoder {
@@ -330,6 +600,9 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 
     static class IntDecoder extends NumericDecoder {
@@ -351,6 +624,17 @@ abstract class NumericDecoder extends Decoder {
         void decodeString1( Object array, int index, String txt ) {
             ((int[]) array)[ index ] = parseInt( txt );
         }
+        boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                              int leng ) {
+            long val = parseAsciiLong( buf, off, leng );
+            if ( val >= Integer.MIN_VALUE && val <= Integer.MAX_VALUE ) {
+                ((int[]) array)[ index ] = (int) val;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
         void decodeStream1( Object array, int index, DataInput strm )
                 throws IOException {
             ((int[]) array)[ index ] = strm.readInt();
@@ -374,6 +658,9 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 
     static class LongDecoder extends NumericDecoder {
@@ -395,6 +682,17 @@ abstract class NumericDecoder extends Decoder {
         void decodeString1( Object array, int index, String txt ) {
             ((long[]) array)[ index ] = parseLong( txt );
         }
+        boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                              int leng ) {
+            long val = parseAsciiLong( buf, off, leng );
+            if ( val != NO_LONG ) {
+                ((long[]) array)[ index ] = val;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
         void decodeStream1( Object array, int index, DataInput strm )
                 throws IOException {
             ((long[]) array)[ index ] = strm.readLong();
@@ -418,6 +716,9 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 
     static class FloatDecoder extends NumericDecoder {
@@ -436,6 +737,17 @@ abstract class NumericDecoder extends Decoder {
         void decodeString1( Object array, int index, String txt ) {
             ((float[]) array)[ index ] = parseFloat( txt );
         }
+        boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                              int leng ) {
+            float val = parseAsciiFloat( buf, off, leng );
+            if ( ! Float.isNaN( val ) ) {
+                ((float[]) array)[ index ] = val;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
         void decodeStream1( Object array, int index, DataInput strm )
                 throws IOException {
             ((float[]) array)[ index ] = strm.readFloat();
@@ -459,6 +771,9 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 
     static class DoubleDecoder extends NumericDecoder {
@@ -477,6 +792,17 @@ abstract class NumericDecoder extends Decoder {
         void decodeString1( Object array, int index, String txt ) {
             ((double[]) array)[ index ] = parseDouble( txt );
         }
+        boolean decodeAscii1( Object array, int index, byte[] buf, int off,
+                              int leng ) {
+            double val = parseAsciiDouble( buf, off, leng );
+            if ( ! Double.isNaN( val ) ) {
+                ((double[]) array)[ index ] = val;
+                return true;
+            }
+            else {
+                return false;
+            }
+        }
         void decodeStream1( Object array, int index, DataInput strm )
                 throws IOException {
             ((double[]) array)[ index ] = strm.readDouble();
@@ -500,5 +826,8 @@ abstract class NumericDecoder extends Decoder {
         public Object decodeString( String txt ) {
             return scalarDecodeString( txt );
         }
+        Object decodeAscii( byte[] buf, int off, int leng ) {
+            return scalarDecodeAscii( buf, off, leng );
+        }
     }
 }
@@ -0,0 +1,515 @@
+package uk.ac.starlink.votable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.util.ThreadUtils;
+
+/**
+ * RowSequence implementation which reads streamed data in VOTable
+ * BINARY or BINARY2 format using a pipeline of threads.
+ *
+ * <p>A reader thread decodes the base64 (or gzip) encoding of the
+ * input stream in bulk, and cuts the resulting byte stream into
+ * blocks of whole rows.  Finding the row boundaries only requires
+ * skipping over the cell data, which is much cheaper than decoding it.
+ * Each block is then decoded into row objects by one of a pool of
+ * worker threads, and the rows are delivered to the caller in order.
+ * The number of blocks in flight is bounded, so memory usage does
+ * not depend on the size of the table.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class ParallelBinaryRowSequence implements RowSequence {
+
+    private final Decoder[] decoders_;
+    private final boolean isBinary2_;
+    private final int ncol_;
+    private final InputStream in_;
+    private final ExecutorService workers_;
+    private final BlockingQueue<Block> queue_;
+    private final Thread readerThread_;
+    private Object[][] rows_;
+    private int irow_;
+    private boolean isEnded_;
+
+    /** Target number of bytes in each block decoded by a worker. */
+    private static final int BLOCK_BYTES = 1 << 20;
+
+    /** Marker block indicating the end of the data. */
+    private static final Block END_BLOCK = new Block( null, null );
+
+    /**
+     * Constructor.
+     *
+     * @param  decoders  n-element array of decoders for decoding n-column data
+     * @param  in  input stream containing binary data
+     * @param  encoding  encoding string as per <tt>encoding</tt> attribute
+     *         of STREAM element ("gzip" or "base64", else assumed none)
+     * @param  isBinary2 true for BINARY2 format, false for BINARY
+     * @param  nthread  number of worker threads for decoding rows
+     */
+    public ParallelBinaryRowSequence( Decoder[] decoders, InputStream in,
+                                      String encoding, boolean isBinary2,
+                                      int nthread )
+            throws IOException {
+        decoders_ = decoders;
+        isBinary2_ = isBinary2;
+        ncol_ = decoders.length;
+        in_ = in;
+        final InputStream dataIn;
+        if ( "gzip".equals( encoding ) ) {
+            dataIn = new BufferedInputStream( new GZIPInputStream( in ) );
+        }
+        else if ( "base64".equals( encoding ) ) {
+            dataIn = new BulkBase64InputStream( in );
+        }
+        else {
+            dataIn = new BufferedInputStream( in );
+        }
+        workers_ =
+            ThreadUtils.createDaemonPool( nthread, "VOTable binary decoder" );
+        queue_ = new ArrayBlockingQueue<Block>( 2 * nthread );
+        readerThread_ = new Thread( "VOTable binary reader" ) {
+            public void run() {
+                Block lastBlock;
+                try {
+                    readBlocks( dataIn );
+                    lastBlock = END_BLOCK;
+                }
+                catch ( IOException e ) {
+                    lastBlock = new Block( null, e );
+                }
+                catch ( InterruptedException e ) {
+                    return;
+                }
+
+                /* Make sure the consumer gets to hear about any other
+                 * error, otherwise it would wait for ever. */
+                catch ( RuntimeException e ) {
+                    lastBlock = new Block( null, toIOException( e ) );
+                }
+                catch ( Error e ) {
+                    lastBlock = new Block( null, toIOException( e ) );
+                }
+                try {
+                    queue_.put( lastBlock );
+                }
+                catch ( InterruptedException e ) {
+                    // closed
+                }
+            }
+        };
+        readerThread_.setDaemon( true );
+        readerThread_.start();
+        rows_ = new Object[ 0 ][];
+    }
+
+    public boolean next() throws IOException {
+        if ( irow_ < rows_.length - 1 ) {
+            irow_++;
+            return true;
+        }
+        while ( ! isEnded_ ) {
+            Block block;
+            try {
+                block = queue_.take();
+            }
+            catch ( InterruptedException e ) {
+                throw (IOException) new InterruptedIOException( "Interrupted" )
+                                   .initCause( e );
+            }
+            if ( block == END_BLOCK ) {
+                isEnded_ = true;
+            }
+            else if ( block.error_ != null ) {
+                isEnded_ = true;
+                throw block.error_;
+            }
+            else {
+                Object[][] rows = getRows( block.future_ );
+                if ( rows.length > 0 ) {
+                    rows_ = rows;
+                    irow_ = 0;
+                    return true;
+                }
+            }
+        }
+        rows_ = new Object[ 0 ][];
+        return false;
+    }
+
+    public Object[] getRow() {
+        if ( irow_ < rows_.length ) {
+            return rows_[ irow_ ];
+        }
+        else {
+            throw new IllegalStateException( "No current row" );
+        }
+    }
+
+    public Object getCell( int icol ) {
+        return getRow()[ icol ];
+    }
+
+    public void close() throws IOException {
+        isEnded_ = true;
+        readerThread_.interrupt();
+        workers_.shutdownNow();
+        queue_.clear();
+        in_.close();
+    }
+
+    /**
+     * Reads the data stream, cutting it into blocks of whole rows
+     * and submitting each one for decoding.
+     * Called from the reader thread.
+     *
+     * @param  dataIn  stream containing unencoded binary data
+     */
+    private void readBlocks( InputStream dataIn )
+            throws IOException, InterruptedException {
+        PushbackInputStream pIn = new PushbackInputStream( dataIn );
+        RecordingInputStream recIn = new RecordingInputStream( pIn );
+        DataInputStream strm = new DataInputStream( recIn );
+        boolean[] nullFlags = new boolean[ ncol_ ];
+        int nrow = 0;
+        while ( true ) {
+            int b;
+            try {
+                b = pIn.read();
+            }
+            catch ( EOFException e ) {
+                b = -1;
+            }
+            if ( b >= 0 ) {
+                pIn.unread( b );
+                if ( isBinary2_ ) {
+                    FlagIO.readFlags( strm, nullFlags );
+                }
+                for ( int icol = 0; icol < ncol_; icol++ ) {
+                    decoders_[ icol ].skipStream( strm );
+                }
+                nrow++;
+            }
+            if ( nrow > 0 && ( b < 0 || recIn.count_ >= BLOCK_BYTES ) ) {
+                submitBlock( recIn.buf_, recIn.count_, nrow );
+                recIn.buf_ = new byte[ recIn.buf_.length ];
+                recIn.count_ = 0;
+                nrow = 0;
+            }
+            if ( b < 0 ) {
+                return;
+            }
+            if ( Thread.interrupted() ) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Queues a block of row data for decoding by a worker thread.
+     *
+     * @param  buf  buffer containing row data
+     * @param  nbyte  number of bytes of data in buffer
+     * @param  nrow  number of rows in buffer
+     */
+    private void submitBlock( final byte[] buf, final int nbyte,
+                              final int nrow )
+            throws InterruptedException {
+        Future<Object[][]> future =
+                workers_.submit( new Callable<Object[][]>() {
+            public Object[][] call() throws IOException {
+                return decodeRows( buf, nbyte, nrow );
+            }
+        } );
+        queue_.put( new Block( future, null ) );
+    }
+
+    /**
+     * Decodes a block of rows.  Called from a worker thread.
+     *
+     * @param  buf  buffer containing row data
+     * @param  nbyte  number of bytes of data in buffer
+     * @param  nrow  number of rows in buffer
+     * @return   nrow-element array of rows
+     */
+    private Object[][] decodeRows( byte[] buf, int nbyte, int nrow )
+            throws IOException {
+        DataInput strm =
+            new DataInputStream( new ByteArrayInputStream( buf, 0, nbyte ) );
+        boolean[] nullFlags = new boolean[ ncol_ ];
+        Object[][] rows = new Object[ nrow ][];
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            Object[] row = new Object[ ncol_ ];
+            if ( isBinary2_ ) {
+                FlagIO.readFlags( strm, nullFlags );
+            }
+            for ( int icol = 0; icol < ncol_; icol++ ) {
+                Decoder decoder = decoders_[ icol ];
+                if ( isBinary2_ && nullFlags[ icol ] ) {
+                    decoder.skipStream( strm );
+                }
+                else {
+                    row[ icol ] = decoder.decodeStream( strm );
+                }
+            }
+            rows[ ir ] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * Waits for the result of a decoding task.
+     *
+     * @param  future  task result
+     * @return  decoded rows
+     */
+    private Object[][] getRows( Future<Object[][]> future )
+            throws IOException {
+        boolean ok = false;
+        try {
+            Object[][] rows = ThreadUtils.getResult( future, "Decode failed" );
+            ok = true;
+            return rows;
+        }
+        finally {
+            if ( ! ok ) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Wraps an unexpected throwable in an IOException.
+     *
+     * @param  e  throwable
+     * @return  IOException with <code>e</code> as its cause
+     */
+    private static IOException toIOException( Throwable e ) {
+        return (IOException) new IOException( "Read failed: " + e )
+                            .initCause( e );
+    }
+
+    /**
+     * Item passed from the reader thread to the consumer.
+     */
+    private static class Block {
+        final Future<Object[][]> future_;
+        final IOException error_;
+
+        /**
+         * Constructor.
+         *
+         * @param  future  decoding task result, or null
+         * @param  error   read error, or null
+         */
+        Block( Future<Object[][]> future, IOException error ) {
+            future_ = future;
+            error_ = error;
+        }
+    }
+
+    /**
+     * InputStream wrapper which keeps a copy of all the bytes read
+     * or skipped.
+     */
+    private static class RecordingInputStream extends InputStream {
+        private final InputStream in_;
+        byte[] buf_;
+        int count_;
+
+        /**
+         * Constructor.
+         *
+         * @param  in  base input stream
+         */
+        RecordingInputStream( InputStream in ) {
+            in_ = in;
+            buf_ = new byte[ BLOCK_BYTES + 8192 ];
+        }
+
+        public int read() throws IOException {
+            int b = in_.read();
+            if ( b >= 0 ) {
+                ensureSpace( 1 );
+                buf_[ count_++ ] = (byte) b;
+            }
+            return b;
+        }
+
+        public int read( byte[] b, int off, int len ) throws IOException {
+            int n = in_.read( b, off, len );
+            if ( n > 0 ) {
+                ensureSpace( n );
+                System.arraycopy( b, off, buf_, count_, n );
+                count_ += n;
+            }
+            return n;
+        }
+
+        public long skip( long n ) throws IOException {
+            int len = (int) Math.min( n, 64 * 1024 );
+            ensureSpace( len );
+            int nr = in_.read( buf_, count_, len );
+            if ( nr > 0 ) {
+                count_ += nr;
+                return nr;
+            }
+            else {
+                return 0;
+            }
+        }
+
+        /**
+         * Ensures that the recording buffer has room for a given number
+         * of additional bytes.
+         *
+         * @param  n  number of bytes required
+         */
+        private void ensureSpace( int n ) {
+            if ( count_ + n > buf_.length ) {
+                byte[] buf = new byte[ Math.max( buf_.length * 2,
+                                                 count_ + n ) ];
+                System.arraycopy( buf_, 0, buf, 0, count_ );
+                buf_ = buf;
+            }
+        }
+    }
+
+    /**
+     * InputStream which decodes base64 data in bulk.
+     * Characters outside the base64 alphabet are ignored,
+     * and a padding character terminates the data.
+     */
+    private static class BulkBase64InputStream extends InputStream {
+        private final InputStream in_;
+        private final byte[] inBuf_;
+        private final byte[] outBuf_;
+        private int outPos_;
+        private int outEnd_;
+        private int quad_;
+        private int nq_;
+        private boolean done_;
+        private static final int[] TABLE = createTable();
+
+        /**
+         * Constructor.
+         *
+         * @param  in  stream containing base64 characters
+         */
+        BulkBase64InputStream( InputStream in ) {
+            in_ = in;
+            inBuf_ = new byte[ 64 * 1024 ];
+            outBuf_ = new byte[ inBuf_.length / 4 * 3 + 3 ];
+        }
+
+        public int read() throws IOException {
+            return fill() ? outBuf_[ outPos_++ ] & 0xff : -1;
+        }
+
+        public int read( byte[] b, int off, int len ) throws IOException {
+            if ( len == 0 ) {
+                return 0;
+            }
+            if ( ! fill() ) {
+                return -1;
+            }
+            int n = Math.min( len, outEnd_ - outPos_ );
+            System.arraycopy( outBuf_, outPos_, b, off, n );
+            outPos_ += n;
+            return n;
+        }
+
+        public void close() throws IOException {
+            in_.close();
+        }
+
+        /**
+         * Ensures that there are decoded bytes ready in the output buffer,
+         * if any remain.
+         *
+         * @return  true iff decoded bytes are available
+         */
+        private boolean fill() throws IOException {
+            while ( outPos_ == outEnd_ && ! done_ ) {
+                outPos_ = 0;
+                outEnd_ = 0;
+                int nin = in_.read( inBuf_ );
+                if ( nin < 0 ) {
+                    done_ = true;
+                    flushQuad();
+                }
+                for ( int i = 0; i < nin; i++ ) {
+                    int c = inBuf_[ i ] & 0xff;
+                    int v = TABLE[ c ];
+                    if ( v >= 0 ) {
+                        quad_ = ( quad_ << 6 ) | v;
+                        if ( ++nq_ == 4 ) {
+                            outBuf_[ outEnd_++ ] = (byte) ( quad_ >> 16 );
+                            outBuf_[ outEnd_++ ] = (byte) ( quad_ >> 8 );
+                            outBuf_[ outEnd_++ ] = (byte) quad_;
+                            quad_ = 0;
+                            nq_ = 0;
+                        }
+                    }
+                    else if ( c == '=' ) {
+                        done_ = true;
+                        flushQuad();
+                        break;
+                    }
+                }
+            }
+            return outPos_ < outEnd_;
+        }
+
+        /**
+         * Writes any bytes represented by an incomplete final quad
+         * to the output buffer.
+         */
+        private void flushQuad() {
+            if ( nq_ == 2 ) {
+                outBuf_[ outEnd_++ ] = (byte) ( quad_ >> 4 );
+            }
+            else if ( nq_ == 3 ) {
+                outBuf_[ outEnd_++ ] = (byte) ( quad_ >> 10 );
+                outBuf_[ outEnd_++ ] = (byte) ( quad_ >> 2 );
+            }
+            quad_ = 0;
+            nq_ = 0;
+        }
+
+        /**
+         * Returns a table mapping byte values to base64 sextet values,
+         * or -1 for characters outside the alphabet.
+         *
+         * @return  256-element lookup table
+         */
+        private static int[] createTable() {
+            int[] table = new int[ 256 ];
+            Arrays.fill( table, -1 );
+            String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                            + "abcdefghijklmnopqrstuvwxyz"
+                            + "0123456789+/";
+            for ( int i = 0; i < alphabet.length(); i++ ) {
+                table[ alphabet.charAt( i ) ] = i;
+            }
+            return table;
+        }
+    }
+}
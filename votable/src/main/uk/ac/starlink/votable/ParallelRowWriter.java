@@ -0,0 +1,124 @@
+package uk.ac.starlink.votable;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.util.ThreadUtils;
+
+/**
+ * Writes the rows of a table by formatting blocks of rows concurrently.
+ *
+ * <p>The calling thread reads rows from the input sequence, gathers
+ * them into blocks, and hands each block to one of a pool of worker
+ * threads which formats it into an output buffer of some kind.
+ * The calling thread then writes the formatted buffers to the output
+ * in their original order, so the result is exactly the same as if
+ * the rows had been formatted sequentially.
+ * The number of blocks in flight is bounded, so memory usage does
+ * not depend on the size of the table.
+ *
+ * <p>Subclasses must implement {@link #formatRows}, which is called
+ * from worker threads, and {@link #writeBlock}, which is called
+ * only from the thread invoking {@link #writeRows}.
+ *
+ * @param  <B>  type of formatted output block
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+abstract class ParallelRowWriter<B> {
+
+    private final int nthread_;
+    private final int blockRows_;
+
+    /** Approximate number of cells formatted in a single block. */
+    private static final int BLOCK_CELLS = 64 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param  nthread  number of formatting threads
+     * @param  ncol   number of columns per row, used to size blocks
+     */
+    protected ParallelRowWriter( int nthread, int ncol ) {
+        nthread_ = nthread;
+        blockRows_ = Math.max( 16, BLOCK_CELLS / Math.max( 1, ncol ) );
+    }
+
+    /**
+     * Formats a block of rows.  This method is called from worker
+     * threads, so it must be safe for concurrent use.
+     *
+     * @param  rows  array of rows, of which the first <code>nrow</code>
+     *               elements are to be formatted
+     * @param  nrow  number of rows to format
+     * @return  formatted block
+     */
+    protected abstract B formatRows( Object[][] rows, int nrow )
+            throws IOException;
+
+    /**
+     * Writes a formatted block to the output.
+     * This method is called from the thread that invoked
+     * {@link #writeRows}, once for each block, in order.
+     *
+     * @param  block  block previously returned by <code>formatRows</code>
+     */
+    protected abstract void writeBlock( B block ) throws IOException;
+
+    /**
+     * Formats and writes all the rows in a row sequence.
+     * The sequence is not closed by this method.
+     *
+     * @param  rseq  row sequence
+     */
+    public void writeRows( RowSequence rseq ) throws IOException {
+        ExecutorService workers =
+            ThreadUtils.createDaemonPool( nthread_, "VOTable row formatter" );
+        int maxPending = 2 * nthread_;
+        LinkedList<Future<B>> pending = new LinkedList<Future<B>>();
+        try {
+            for ( boolean more = true; more; ) {
+                final Object[][] rows = new Object[ blockRows_ ][];
+                int nr = 0;
+                while ( nr < blockRows_ && ( more = rseq.next() ) ) {
+                    rows[ nr++ ] = rseq.getRow().clone();
+                }
+                if ( nr > 0 ) {
+                    final int nrow = nr;
+                    pending.add( workers.submit( new Callable<B>() {
+                        public B call() throws IOException {
+                            return formatRows( rows, nrow );
+                        }
+                    } ) );
+                }
+
+                /* Write any blocks that are ready, and wait for the
+                 * oldest one if too many are outstanding. */
+                while ( ! pending.isEmpty() &&
+                        ( pending.size() >= maxPending ||
+                          pending.getFirst().isDone() ) ) {
+                    writeBlock( getBlock( pending.removeFirst() ) );
+                }
+            }
+            while ( ! pending.isEmpty() ) {
+                writeBlock( getBlock( pending.removeFirst() ) );
+            }
+        }
+        finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for the result of a formatting task.
+     *
+     * @param  future  task result
+     * @return  formatted block
+     */
+    private B getBlock( Future<B> future ) throws IOException {
+        return ThreadUtils.getResult( future, "Format failed" );
+    }
+}
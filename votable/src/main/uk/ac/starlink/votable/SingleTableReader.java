@@ -38,6 +38,12 @@ class SingleTableReader extends VOTableParser implements TableHandler {
     private boolean isVotable_;
     private TableElement tableEl_;
     private int skipTables_;
+    private boolean isMetadataOnly_;
+    private boolean isInTarget_;
+    private DataFormat targetFormat_;
+    private String targetExtnum_;
+    private TargetStream targetStream_;
+    private int nstream_;
     private static final Logger logger_ =
         Logger.getLogger( "uk.ac.starlink.votable" );
 
@@ -68,6 +74,39 @@ class SingleTableReader extends VOTableParser implements TableHandler {
         return tableEl_;
     }
 
+    /**
+     * Sets whether only the metadata of the target table is to be read.
+     * If true, the content of its DATA element is ignored, and the
+     * TABLE element returned by {@link #getTargetTableElement}
+     * has no TabularData assigned.
+     * This method must be called before the parse begins.
+     *
+     * @param  isMetadataOnly  true to ignore the target table's data
+     */
+    public void setMetadataOnly( boolean isMetadataOnly ) {
+        isMetadataOnly_ = isMetadataOnly;
+    }
+
+    /**
+     * Returns a description of the STREAM element holding the data of
+     * the target table, if there is one.
+     *
+     * @return  target stream description, or null
+     */
+    public TargetStream getTargetStream() {
+        return targetStream_;
+    }
+
+    /**
+     * Returns the number of STREAM elements encountered in the parse
+     * so far.
+     *
+     * @return  STREAM element count
+     */
+    public int getStreamCount() {
+        return nstream_;
+    }
+
     /**
      * Indicates whether the parse so far appears to be of a VOTABLE XML
      * document.
@@ -93,10 +132,51 @@ class SingleTableReader extends VOTableParser implements TableHandler {
             /* Prepare to process table data only if we have reached the
              * start of the target table. */
             if ( skipTables_-- == 0 ) {
-                setReadHrefTables( true );
-                setTableHandler( this );
+                isInTarget_ = true;
+                if ( isMetadataOnly_ ) {
+                    tableEl_ = (TableElement) getNewestNode();
+                }
+                else {
+                    setReadHrefTables( true );
+                    setTableHandler( this );
+                }
             }
         }
+
+        /* Keep track of STREAM elements, recording the details of the
+         * one belonging to the target table. */
+        else if ( isInTarget_ && "BINARY".equals( tagName ) ) {
+            targetFormat_ = DataFormat.BINARY;
+        }
+        else if ( isInTarget_ && "BINARY2".equals( tagName ) ) {
+            targetFormat_ = DataFormat.BINARY2;
+        }
+        else if ( isInTarget_ && "FITS".equals( tagName ) ) {
+            targetFormat_ = DataFormat.FITS;
+            targetExtnum_ = atts.getValue( "extnum" );
+        }
+        else if ( "STREAM".equals( tagName ) ) {
+            if ( isInTarget_ && targetFormat_ != null &&
+                 targetStream_ == null ) {
+                targetStream_ =
+                    new TargetStream( nstream_, targetFormat_,
+                                      atts.getValue( "encoding" ),
+                                      atts.getValue( "href" ),
+                                      targetExtnum_ );
+            }
+            nstream_++;
+        }
+    }
+
+    @Override
+    public void endElement( String namespaceURI, String localName,
+                            String qName )
+            throws SAXException {
+        super.endElement( namespaceURI, localName, qName );
+        if ( "TABLE".equals( namespacing_.getVOTagName( namespaceURI,
+                                                        localName, qName ) ) ) {
+            isInTarget_ = false;
+        }
     }
 
     public void startTable( StarTable meta ) throws SAXException {
@@ -150,17 +230,26 @@ class SingleTableReader extends VOTableParser implements TableHandler {
                                              int itable, StoragePolicy storage,
                                              boolean strict )
             throws IOException, SAXException {
-
-        /* Construct a reader instance for the requested table. */
         SingleTableReader reader =
             new SingleTableReader( storage, itable, strict );
+        reader.parse( saxsrc );
+        return reader.getStarTable();
+    }
+
+    /**
+     * Parses a VOTable document using this reader as the content handler.
+     *
+     * @param  saxsrc   SAX source from which the VOTable document
+     *                  will be supplied
+     */
+    public void parse( InputSource saxsrc ) throws IOException, SAXException {
 
         /* Get a SAX parser. */
         final XMLReader parser;
         try {
             SAXParserFactory spfact = SAXParserFactory.newInstance();
             spfact.setValidating( false );
-            reader.namespacing_.configureSAXParserFactory( spfact );
+            namespacing_.configureSAXParserFactory( spfact );
             parser = spfact.newSAXParser().getXMLReader();
         }
         catch ( ParserConfigurationException e ) {
@@ -169,7 +258,7 @@ class SingleTableReader extends VOTableParser implements TableHandler {
         }
 
         /* Install the content handler. */
-        parser.setContentHandler( reader );
+        parser.setContentHandler( this );
 
         /* Install a custom entity resolver. */
         parser.setEntityResolver( StarEntityResolver.getInstance() );
@@ -189,10 +278,10 @@ class SingleTableReader extends VOTableParser implements TableHandler {
 
         /* Do the parse. */
         try {
-            parser.parse( saxsrc );
+            parser.parse( prepareInputSource( saxsrc ) );
         }
         catch ( CharConversionException e ) {
-            if ( reader.isVotable_ ) {
+            if ( isVotable_ ) {
                 throw e;
             }
             else {
@@ -201,17 +290,24 @@ class SingleTableReader extends VOTableParser implements TableHandler {
         }
         catch ( SAXException e ) {
             e = VOElementFactory.fixStackTrace( e );
-            if ( reader.isVotable_ ) {
+            if ( isVotable_ ) {
                 throw e;
             }
             else {
                 throw new TableFormatException( e );
             }
         }
+    }
 
-        /* Return the result or signal an error. */
-        if ( reader.isVotable_ ) {
-            TableElement tableEl = reader.getTargetTableElement();
+    /**
+     * Returns the table read by a previous call to {@link #parse}.
+     *
+     * @return  table
+     * @throws  IOException  if no table was found
+     */
+    public VOStarTable getStarTable() throws IOException {
+        if ( isVotable_ ) {
+            TableElement tableEl = getTargetTableElement();
             if ( tableEl != null ) {
                 return new VOStarTable( tableEl );
             }
@@ -223,4 +319,35 @@ class SingleTableReader extends VOTableParser implements TableHandler {
             throw new TableFormatException( "No VOTABLE element" );
         }
     }
+
+    /**
+     * Describes the STREAM element containing the data of the target table.
+     */
+    static class TargetStream {
+        final int index_;
+        final DataFormat format_;
+        final String encoding_;
+        final String href_;
+        final String extnum_;
+
+        /**
+         * Constructor.
+         *
+         * @param  index  index of the STREAM element among all the STREAM
+         *                elements in the document
+         * @param  format  data format, determined by the parent element
+         * @param  encoding  value of the encoding attribute, or null
+         * @param  href  value of the href attribute, or null
+         * @param  extnum  value of the parent FITS element's extnum
+         *                 attribute, or null
+         */
+        TargetStream( int index, DataFormat format, String encoding,
+                      String href, String extnum ) {
+            index_ = index;
+            format_ = format;
+            encoding_ = encoding;
+            href_ = href;
+            extnum_ = extnum;
+        }
+    }
 }
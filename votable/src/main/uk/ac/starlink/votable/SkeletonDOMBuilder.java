@@ -10,6 +10,7 @@ import java.io.Writer;
 import java.net.URL;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.w3c.dom.Element;
@@ -44,6 +45,8 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
     private TableHandler tableHandler_;
     private String systemId_;
     private TableElement tableEl_;
+    private TabledataScanner scanner_;
+    private int ntabledata_;
 
     /**
      * Constructor.
@@ -77,6 +80,58 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
         return tableHandler_;
     }
 
+    /**
+     * Returns an input source which is equivalent to a given one,
+     * but which if possible arranges for the content of TABLEDATA
+     * elements to be read directly from the byte stream by a
+     * {@link TabledataScanner} rather than by the SAX parser.
+     * This builder must be the content handler for a subsequent parse
+     * of the returned source.
+     * If the input source is not byte stream-based or if direct scanning
+     * is disabled by the {@link VOElementFactory#TABLEDATA_SCAN_PROPERTY}
+     * system property, the input source is returned unchanged.
+     *
+     * @param  insrc  input source
+     * @return  input source to parse
+     */
+    public InputSource prepareInputSource( InputSource insrc ) {
+        InputStream in = insrc.getByteStream();
+        if ( in == null || insrc.getCharacterStream() != null ||
+             ! VOElementFactory.isTabledataScan() ) {
+            return insrc;
+        }
+        scanner_ = new TabledataScanner( in, insrc.getEncoding() );
+        ntabledata_ = 0;
+        InputSource scanSrc = new InputSource( scanner_ );
+        scanSrc.setSystemId( insrc.getSystemId() );
+        scanSrc.setPublicId( insrc.getPublicId() );
+        scanSrc.setEncoding( insrc.getEncoding() );
+        return scanSrc;
+    }
+
+    /**
+     * Returns the TABLEDATA scanner installed by the most recent call
+     * of {@link #prepareInputSource}, if any.
+     *
+     * @return  scanner, or null
+     */
+    TabledataScanner getTabledataScanner() {
+        return scanner_;
+    }
+
+    @Override
+    public void startElement( String namespaceURI, String localName,
+                              String qName, Attributes atts )
+            throws SAXException {
+        if ( scanner_ != null &&
+             TabledataScanner
+            .isTabledataName( qName != null && qName.length() > 0
+                                  ? qName : localName ) ) {
+            ntabledata_++;
+        }
+        super.startElement( namespaceURI, localName, qName, atts );
+    }
+
     /**
      * Invoked if a FITS/STREAM element with a non-empty href attribute
      * is encountered.  In this case the TableHandler is not notified.
@@ -278,6 +333,14 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
             if ( tableHandler_ != null ) {
                 tableHandler_.startTable( tableEl_.getMetadataTable() );
             }
+
+            /* If possible, have the rows read directly from the input
+             * stream; in that case this handler will see no TR or TD
+             * elements. */
+            if ( scanner_ != null ) {
+                scanner_.startTabledata( ntabledata_, decoders_,
+                                         tableHandler_ );
+            }
         }
 
         public void startElement( String namespaceURI, String localName,
@@ -360,8 +423,9 @@ abstract class SkeletonDOMBuilder extends CustomDOMBuilder {
                         throws IOException {
                     InputStream in = new BufferedInputStream( datain );
                     RowSequence rseq =
-                        new BinaryRowSequence( decoders, in, "base64",
-                                               isBinary2 );
+                        BinaryRowSequence
+                       .createRowSequence( decoders, in, "base64",
+                                           isBinary2 );
                     try {
                         while ( rseq.next() ) {
                             tableHandler_.rowData( rseq.getRow() );
@@ -0,0 +1,804 @@
+package uk.ac.starlink.votable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import nom.tam.fits.FitsException;
+import nom.tam.fits.Header;
+import nom.tam.util.ArrayDataInput;
+import nom.tam.util.BufferedDataInputStream;
+import uk.ac.starlink.fits.FitsConstants;
+import uk.ac.starlink.fits.InputFactory;
+import uk.ac.starlink.util.IOUtils;
+import uk.ac.starlink.util.LongList;
+
+/**
+ * Index giving random access to the data of a table stored as
+ * inline base64-encoded BINARY, BINARY2 or FITS data in a VOTable file.
+ *
+ * <p>The index records the position in the file of the base64 text
+ * within the table's STREAM element, the offsets into that text
+ * at which regularly spaced blocks of the decoded byte stream begin,
+ * and for BINARY and BINARY2 data the position in the decoded stream
+ * of every {@link #ROW_STEP}'th row.
+ * For FITS data, rows are of fixed length, so only the position of
+ * the BINTABLE HDU is required.
+ * Together these allow any row to be read directly from a mapped file.
+ *
+ * <p>An index is built by scanning the file once, and may be saved
+ * to and restored from an index file.  It records the length and
+ * modification time of the VOTable file, so that a stale index
+ * can be recognised.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class StreamIndex {
+
+    private final long fileLength_;
+    private final long fileModified_;
+    private final int itable_;
+    private final int istream_;
+    private final DataFormat format_;
+    private final String signature_;
+    private final long streamStart_;
+    private final long streamEnd_;
+    private final long decodedLength_;
+    private final long[] chunkOffsets_;
+    private final long nrow_;
+    private final long[] rowOffsets_;
+    private final long hduOffset_;
+
+    /** Number of decoded bytes between base64 checkpoints. */
+    public static final int CHUNK_BYTES = 3 * 4096;
+
+    /** Number of rows between row offset checkpoints. */
+    public static final int ROW_STEP = 64;
+
+    /** Number of base64 characters between base64 checkpoints. */
+    private static final int CHUNK_CHARS = CHUNK_BYTES / 3 * 4;
+
+    private static final String MAGIC = "STIL VOTable stream index 1";
+    private static final DataFormat[] FORMATS = new DataFormat[] {
+        DataFormat.BINARY, DataFormat.BINARY2, DataFormat.FITS,
+    };
+    private static final Logger logger_ =
+        Logger.getLogger( "uk.ac.starlink.votable" );
+
+    /**
+     * Constructor.
+     *
+     * @param  fileLength  length of the indexed file
+     * @param  fileModified  modification time of the indexed file
+     * @param  itable  index of the indexed table in the document
+     * @param  istream  index of its STREAM element in the document
+     * @param  format  data format
+     * @param  signature  string characterising the table's FIELDs
+     * @param  streamStart  file offset of the start of the base64 text
+     * @param  streamEnd  file offset of the end of the base64 text
+     * @param  decodedLength  number of decoded bytes
+     * @param  chunkOffsets  offsets relative to <code>streamStart</code>
+     *                       of each {@link #CHUNK_BYTES}-byte block
+     *                       of decoded data
+     * @param  nrow  number of rows, or -1 for FITS
+     * @param  rowOffsets  decoded offsets of every {@link #ROW_STEP}'th row,
+     *                     empty for FITS
+     * @param  hduOffset  decoded offset of the BINTABLE HDU for FITS,
+     *                    or -1
+     */
+    StreamIndex( long fileLength, long fileModified, int itable, int istream,
+                 DataFormat format, String signature, long streamStart,
+                 long streamEnd, long decodedLength, long[] chunkOffsets,
+                 long nrow, long[] rowOffsets, long hduOffset ) {
+        fileLength_ = fileLength;
+        fileModified_ = fileModified;
+        itable_ = itable;
+        istream_ = istream;
+        format_ = format;
+        signature_ = signature;
+        streamStart_ = streamStart;
+        streamEnd_ = streamEnd;
+        decodedLength_ = decodedLength;
+        chunkOffsets_ = chunkOffsets;
+        nrow_ = nrow;
+        rowOffsets_ = rowOffsets;
+        hduOffset_ = hduOffset;
+    }
+
+    /**
+     * Returns the data format of the indexed table.
+     *
+     * @return  BINARY, BINARY2 or FITS
+     */
+    public DataFormat getFormat() {
+        return format_;
+    }
+
+    /**
+     * Returns the file offset at which the indexed base64 text starts.
+     *
+     * @return  offset of first byte following the STREAM start tag
+     */
+    public long getStreamStart() {
+        return streamStart_;
+    }
+
+    /**
+     * Returns the file offset at which the indexed base64 text ends.
+     *
+     * @return  offset of the STREAM end tag
+     */
+    public long getStreamEnd() {
+        return streamEnd_;
+    }
+
+    /**
+     * Returns the number of rows for BINARY or BINARY2 data.
+     *
+     * @return  row count, or -1 for FITS
+     */
+    public long getRowCount() {
+        return nrow_;
+    }
+
+    /**
+     * Returns the offset into the decoded data of a checkpointed row.
+     *
+     * @param  istep  checkpoint index; the row index is
+     *                <code>istep*ROW_STEP</code>
+     * @return  decoded offset of row start
+     */
+    public long getRowOffset( long istep ) {
+        return rowOffsets_[ (int) istep ];
+    }
+
+    /**
+     * Returns the offset into the decoded data of the BINTABLE HDU
+     * for FITS data.
+     *
+     * @return  HDU offset, or -1 for BINARY/BINARY2
+     */
+    public long getHduOffset() {
+        return hduOffset_;
+    }
+
+    /**
+     * Indicates whether this index applies to a given table in the
+     * current state of a given file.
+     *
+     * @param  file  VOTable file
+     * @param  itable  index of the table in the document
+     * @return  true iff this index appears to be valid for the file
+     */
+    public boolean isCurrent( File file, int itable ) throws IOException {
+        if ( itable != itable_ ||
+             file.length() != fileLength_ ||
+             file.lastModified() != fileModified_ ) {
+            return false;
+        }
+        RandomAccessFile raf = new RandomAccessFile( file, "r" );
+        try {
+            raf.seek( streamStart_ - 1 );
+            int c0 = raf.read();
+            raf.seek( streamEnd_ );
+            int c1 = raf.read();
+            return c0 == '>' && c1 == '<';
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Indicates whether this index describes the data of the target
+     * table found by a given reader.
+     *
+     * @param  reader  reader which has parsed the indexed file
+     * @return  true iff the reader's target table matches this index
+     */
+    public boolean matches( SingleTableReader reader ) {
+        SingleTableReader.TargetStream target = reader.getTargetStream();
+        TableElement tableEl = reader.getTargetTableElement();
+        return target != null
+            && tableEl != null
+            && target.index_ == istream_
+            && target.format_ == format_
+            && signature_.equals( getSignature( tableEl ) );
+    }
+
+    /**
+     * Returns an input factory providing random access to the base64 text
+     * described by this index.
+     *
+     * @param  file  VOTable file
+     * @return  new input factory; it should be closed after use
+     */
+    public InputFactory createRawFactory( File file ) throws IOException {
+        return InputFactory
+              .createFileFactory( file, streamStart_,
+                                  streamEnd_ - streamStart_ );
+    }
+
+    /**
+     * Returns a stream giving random access to the decoded data
+     * described by this index.
+     *
+     * @param  rawFact  input factory returned by {@link #createRawFactory}
+     * @return  new stream positioned at the start of the data
+     */
+    public IndexedBase64Stream createStream( InputFactory rawFact )
+            throws IOException {
+        return new IndexedBase64Stream( rawFact.createInput( false ),
+                                        streamEnd_ - streamStart_,
+                                        chunkOffsets_, CHUNK_BYTES,
+                                        decodedLength_ );
+    }
+
+    /**
+     * Writes this index to a file.
+     * The file is written under a temporary name and then renamed,
+     * so that a partially written index is never visible.
+     *
+     * @param  idxFile  destination file
+     */
+    public void writeIndex( File idxFile ) throws IOException {
+        File dir = idxFile.getAbsoluteFile().getParentFile();
+        File tmpFile = File.createTempFile( "vix", ".tmp", dir );
+        boolean done = false;
+        try {
+            OutputStream out = new FileOutputStream( tmpFile );
+            try {
+                DataOutputStream dout =
+                    new DataOutputStream( new BufferedOutputStream( out ) );
+                dout.writeUTF( MAGIC );
+                dout.writeLong( fileLength_ );
+                dout.writeLong( fileModified_ );
+                dout.writeInt( itable_ );
+                dout.writeInt( istream_ );
+                dout.writeInt( Arrays.asList( FORMATS ).indexOf( format_ ) );
+                dout.writeInt( signature_.length() );
+                dout.writeChars( signature_ );
+                dout.writeLong( streamStart_ );
+                dout.writeLong( streamEnd_ );
+                dout.writeLong( decodedLength_ );
+                writeLongs( dout, chunkOffsets_ );
+                dout.writeLong( nrow_ );
+                writeLongs( dout, rowOffsets_ );
+                dout.writeLong( hduOffset_ );
+                dout.flush();
+            }
+            finally {
+                out.close();
+            }
+            idxFile.delete();
+            done = tmpFile.renameTo( idxFile );
+            if ( ! done ) {
+                throw new IOException( "Failed to rename " + tmpFile
+                                     + " to " + idxFile );
+            }
+        }
+        finally {
+            if ( ! done ) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Reads an index from a file.
+     *
+     * @param  idxFile  file written by {@link #writeIndex}
+     * @return  index
+     */
+    public static StreamIndex readIndex( File idxFile ) throws IOException {
+        DataInputStream in =
+            new DataInputStream(
+                new BufferedInputStream( new FileInputStream( idxFile ) ) );
+        try {
+            if ( ! MAGIC.equals( in.readUTF() ) ) {
+                throw new IOException( "Not a VOTable index file" );
+            }
+            long fileLength = in.readLong();
+            long fileModified = in.readLong();
+            int itable = in.readInt();
+            int istream = in.readInt();
+            int iformat = in.readInt();
+            if ( iformat < 0 || iformat >= FORMATS.length ) {
+                throw new IOException( "Bad format code " + iformat );
+            }
+            DataFormat format = FORMATS[ iformat ];
+            char[] sigChars = new char[ readCount( in ) ];
+            for ( int i = 0; i < sigChars.length; i++ ) {
+                sigChars[ i ] = in.readChar();
+            }
+            String signature = new String( sigChars );
+            long streamStart = in.readLong();
+            long streamEnd = in.readLong();
+            long decodedLength = in.readLong();
+            long[] chunkOffsets = readLongs( in );
+            long nrow = in.readLong();
+            long[] rowOffsets = readLongs( in );
+            long hduOffset = in.readLong();
+            return new StreamIndex( fileLength, fileModified, itable, istream,
+                                    format, signature, streamStart,
+                                    streamEnd, decodedLength, chunkOffsets,
+                                    nrow, rowOffsets, hduOffset );
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the file in which the index for a given table in a given
+     * VOTable file is stored.
+     *
+     * @param  file  VOTable file
+     * @param  itable  index of table within document
+     * @return  index file
+     * @see   VOElementFactory#INDEX_DIR_PROPERTY
+     */
+    public static File getIndexFile( File file, int itable ) {
+        File dir = VOElementFactory.getIndexDir();
+        String suffix = ".t" + itable + ".vix";
+        if ( dir == null ) {
+            return new File( file.getAbsoluteFile().getParentFile(),
+                             file.getName() + suffix );
+        }
+        else {
+            String path = file.getAbsolutePath();
+            String hash = Integer.toHexString( path.hashCode() );
+            return new File( dir, file.getName() + "-" + hash + suffix );
+        }
+    }
+
+    /**
+     * Attempts to create an index for the data of the target table
+     * of a reader which has just parsed a given file.
+     * Only tables whose data is in an inline base64-encoded STREAM
+     * element can be indexed.
+     *
+     * @param  file  uncompressed VOTable file
+     * @param  itable  index of the target table in the document
+     * @param  reader  reader which has parsed <code>file</code>
+     * @return   new index, or null if the data cannot be indexed
+     */
+    public static StreamIndex createIndex( File file, int itable,
+                                           SingleTableReader reader )
+            throws IOException {
+        SingleTableReader.TargetStream target = reader.getTargetStream();
+        TableElement tableEl = reader.getTargetTableElement();
+        if ( target == null || tableEl == null ||
+             ( target.href_ != null && target.href_.trim().length() > 0 ) ||
+             ! "base64".equals( target.encoding_ ) ) {
+            return null;
+        }
+        DataFormat format = target.format_;
+        long fileLength = file.length();
+        long fileModified = file.lastModified();
+
+        /* Locate the STREAM content in the file. */
+        long[][] streams = locateStreams( file );
+        if ( streams.length != reader.getStreamCount() ) {
+            logger_.info( "Can't match STREAM elements in " + file
+                        + " - not indexed" );
+            return null;
+        }
+        long[] range = streams[ target.index_ ];
+        if ( range == null ) {
+            return null;
+        }
+        long start = range[ 0 ];
+        long end = range[ 1 ];
+
+        /* Find the base64 checkpoints. */
+        long[] decodedLength = new long[ 1 ];
+        long[] chunkOffsets = scanBase64( file, start, end, decodedLength );
+        if ( chunkOffsets == null ) {
+            return null;
+        }
+
+        /* Find the row or HDU offsets. */
+        StreamIndex index0 =
+            new StreamIndex( fileLength, fileModified, itable, target.index_,
+                             format, getSignature( tableEl ), start, end,
+                             decodedLength[ 0 ], chunkOffsets, -1,
+                             new long[ 0 ], -1 );
+        InputFactory rawFact = index0.createRawFactory( file );
+        IndexedBase64Stream strm = index0.createStream( rawFact );
+        long nrow = -1;
+        long[] rowOffsets = new long[ 0 ];
+        long hduOffset = -1;
+        try {
+            if ( format == DataFormat.FITS ) {
+                hduOffset = findBintable( strm, target.extnum_ );
+                if ( hduOffset < 0 ) {
+                    return null;
+                }
+            }
+            else {
+                FieldElement[] fields = tableEl.getFields();
+                Decoder[] decoders = new Decoder[ fields.length ];
+                for ( int icol = 0; icol < fields.length; icol++ ) {
+                    decoders[ icol ] = fields[ icol ].getDecoder();
+                }
+                LongList offList = new LongList();
+                nrow = scanRows( strm, decoders,
+                                 format == DataFormat.BINARY2, offList );
+                rowOffsets = offList.toLongArray();
+            }
+        }
+        finally {
+            strm.close();
+            rawFact.close();
+        }
+
+        /* Make sure the file has not changed while we were looking. */
+        if ( file.length() != fileLength ||
+             file.lastModified() != fileModified ) {
+            return null;
+        }
+        return new StreamIndex( fileLength, fileModified, itable,
+                                target.index_, format, index0.signature_,
+                                start, end, decodedLength[ 0 ], chunkOffsets,
+                                nrow, rowOffsets, hduOffset );
+    }
+
+    /**
+     * Returns a string characterising the FIELD elements of a table
+     * that determine the layout of its binary serialization.
+     *
+     * @param  tableEl  table element
+     * @return  signature string
+     */
+    static String getSignature( TableElement tableEl ) {
+        StringBuffer sbuf = new StringBuffer();
+        for ( FieldElement field : tableEl.getFields() ) {
+            sbuf.append( field.getDatatype() )
+                .append( Arrays.toString( field.getArraysize() ) )
+                .append( ';' );
+        }
+        return sbuf.toString();
+    }
+
+    /**
+     * Scans the rows of a BINARY or BINARY2 stream,
+     * recording the offset of every {@link #ROW_STEP}'th row.
+     *
+     * @param  strm  decoded stream positioned at the start
+     * @param  decoders  column decoders
+     * @param  isBinary2  true for BINARY2, false for BINARY
+     * @param  offList  list to which row offsets are appended
+     * @return  number of rows
+     */
+    private static long scanRows( IndexedBase64Stream strm,
+                                  Decoder[] decoders, boolean isBinary2,
+                                  LongList offList )
+            throws IOException {
+        DataInputStream in = new DataInputStream( strm );
+        int ncol = decoders.length;
+        boolean[] nullFlags = new boolean[ ncol ];
+        long leng = strm.getLength();
+        long irow = 0;
+        for ( ; strm.getPosition() < leng; irow++ ) {
+            if ( irow % ROW_STEP == 0 ) {
+                offList.add( strm.getPosition() );
+            }
+            if ( isBinary2 ) {
+                FlagIO.readFlags( in, nullFlags );
+            }
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                decoders[ icol ].skipStream( in );
+            }
+        }
+        return irow;
+    }
+
+    /**
+     * Locates the BINTABLE HDU in a FITS stream.
+     *
+     * @param  strm  decoded stream positioned at the start
+     * @param  extnum  HDU index as given by the FITS element's extnum
+     *                 attribute, or null for the first table HDU
+     * @return  decoded offset of the BINTABLE header, or -1 if it
+     *          can't be found
+     */
+    private static long findBintable( InputStream strm, String extnum )
+            throws IOException {
+        if ( extnum != null && extnum.trim().length() == 0 ) {
+            extnum = null;
+        }
+        ArrayDataInput in = new BufferedDataInputStream( strm );
+        try {
+            long pos = 0;
+            if ( extnum != null ) {
+                int ihdu;
+                try {
+                    ihdu = Integer.parseInt( extnum.trim() );
+                }
+                catch ( NumberFormatException e ) {
+                    return -1;
+                }
+                pos += FitsConstants.skipHDUs( in, ihdu );
+            }
+            while ( true ) {
+                Header hdr = new Header();
+                int headsize = FitsConstants.readHeader( hdr, in );
+                String xtension = hdr.getStringValue( "XTENSION" );
+                if ( "BINTABLE".equals( xtension ) &&
+                     hdr.getStringValue( "ZIMAGE" ) == null &&
+                     ! hdr.getBooleanValue( "ZTABLE", false ) ) {
+                    return pos;
+                }
+                else if ( "TABLE".equals( xtension ) ||
+                          extnum != null ) {
+                    return -1;
+                }
+                long datasize = FitsConstants.getDataSize( hdr );
+                IOUtils.skipBytes( in, datasize );
+                pos += headsize + datasize;
+            }
+        }
+        catch ( FitsException e ) {
+            return -1;
+        }
+        catch ( EOFException e ) {
+            return -1;
+        }
+    }
+
+    /**
+     * Scans base64 text in a file, recording the positions at which
+     * each {@link #CHUNK_BYTES}-byte block of decoded data starts.
+     * If the text contains anything other than base64 characters and
+     * whitespace, it is not considered suitable and null is returned.
+     *
+     * @param  file  file
+     * @param  start  offset of start of base64 text
+     * @param  end   offset of end of base64 text
+     * @param  decodedLength  1-element array into which the number of
+     *                        decoded bytes is written
+     * @return  checkpoint offsets relative to <code>start</code>,
+     *          or null
+     */
+    private static long[] scanBase64( File file, long start, long end,
+                                      long[] decodedLength )
+            throws IOException {
+        LongList offList = new LongList();
+        long nchar = 0;
+        int npad = 0;
+        InputStream in = new FileInputStream( file );
+        try {
+            IOUtils.skip( in, start );
+            byte[] buf = new byte[ 64 * 1024 ];
+            long pos = 0;
+            long leng = end - start;
+            while ( pos < leng ) {
+                int nr = in.read( buf, 0,
+                                  (int) Math.min( buf.length, leng - pos ) );
+                if ( nr < 0 ) {
+                    throw new EOFException();
+                }
+                for ( int i = 0; i < nr; i++ ) {
+                    int c = buf[ i ] & 0xff;
+                    if ( IndexedBase64Stream.decodeChar( c ) >= 0 ) {
+                        if ( c == '=' ) {
+                            npad++;
+                        }
+                        else if ( npad > 0 ) {
+                            return null;
+                        }
+                        if ( nchar % CHUNK_CHARS == 0 ) {
+                            offList.add( pos + i );
+                        }
+                        nchar++;
+                    }
+                    else if ( c != ' ' && c != '\n' && c != '\r' &&
+                              c != '\t' ) {
+                        return null;
+                    }
+                }
+                pos += nr;
+            }
+        }
+        finally {
+            in.close();
+        }
+        if ( nchar % 4 != 0 || npad > 2 ) {
+            return null;
+        }
+        decodedLength[ 0 ] = nchar / 4 * 3 - npad;
+        return offList.toLongArray();
+    }
+
+    /**
+     * Locates the content of all the STREAM elements in an XML file
+     * by scanning its bytes.
+     * For each STREAM start tag found, in document order, the result
+     * contains a 2-element array giving the file offsets of the start
+     * and end of the element's content, or null if the element is empty
+     * or its content contains markup.
+     * Only ASCII-compatible character encodings are understood.
+     * Tags within comments or CDATA sections are not distinguished,
+     * so the caller should check that the number of elements found
+     * matches the number reported by an XML parser.
+     *
+     * @param  file  XML file
+     * @return  array of content ranges, one for each STREAM element
+     */
+    static long[][] locateStreams( File file ) throws IOException {
+        List<long[]> list = new ArrayList<long[]>();
+        ByteScanner in = new ByteScanner( new FileInputStream( file ) );
+        try {
+            for ( int c; ( c = in.next() ) >= 0; ) {
+                if ( c == '<' ) {
+                    String name = in.readName();
+                    int term = in.last_;
+                    if ( name.equals( "STREAM" ) ||
+                         name.endsWith( ":STREAM" ) ) {
+
+                        /* Find the end of the start tag. */
+                        int prev = term;
+                        for ( int q = 0; term != '>' && term >= 0; ) {
+                            term = in.next();
+                            if ( q != 0 ) {
+                                if ( term == q ) {
+                                    q = 0;
+                                }
+                            }
+                            else if ( term == '"' || term == '\'' ) {
+                                q = term;
+                            }
+                            else if ( term != '>' && term > ' ' ) {
+                                prev = term;
+                            }
+                        }
+                        if ( term < 0 ) {
+                            break;
+                        }
+
+                        /* Find the content and check the end tag. */
+                        long[] range = null;
+                        if ( prev != '/' ) {
+                            long start = in.pos_;
+                            while ( ( c = in.next() ) >= 0 && c != '<' ) {
+                            }
+                            long end = in.pos_ - 1;
+                            if ( in.next() == '/' &&
+                                 in.readName().equals( name ) ) {
+                                range = new long[] { start, end };
+                            }
+                        }
+                        list.add( range );
+                    }
+                }
+            }
+        }
+        finally {
+            in.close();
+        }
+        return list.toArray( new long[ 0 ][] );
+    }
+
+    /**
+     * Writes an array of longs preceded by its length.
+     *
+     * @param  out  destination
+     * @param  values  array
+     */
+    private static void writeLongs( DataOutputStream out, long[] values )
+            throws IOException {
+        out.writeInt( values.length );
+        for ( long v : values ) {
+            out.writeLong( v );
+        }
+    }
+
+    /**
+     * Reads an array of longs written by {@link #writeLongs}.
+     *
+     * @param  in  source
+     * @return  array
+     */
+    private static long[] readLongs( DataInputStream in ) throws IOException {
+        long[] values = new long[ readCount( in ) ];
+        for ( int i = 0; i < values.length; i++ ) {
+            values[ i ] = in.readLong();
+        }
+        return values;
+    }
+
+    /**
+     * Reads a non-negative array length.
+     *
+     * @param  in  source
+     * @return  count
+     */
+    private static int readCount( DataInputStream in ) throws IOException {
+        int n = in.readInt();
+        if ( n < 0 ) {
+            throw new IOException( "Bad count " + n );
+        }
+        return n;
+    }
+
+    /**
+     * Reads bytes from a stream keeping track of the position.
+     */
+    private static class ByteScanner {
+        private final InputStream in_;
+        private final byte[] buf_;
+        private int ibuf_;
+        private int nbuf_;
+        long pos_;
+        int last_;
+
+        /**
+         * Constructor.
+         *
+         * @param  in  input stream
+         */
+        ByteScanner( InputStream in ) {
+            in_ = in;
+            buf_ = new byte[ 64 * 1024 ];
+        }
+
+        /**
+         * Returns the next byte.
+         *
+         * @return  byte value, or -1 at end of stream
+         */
+        int next() throws IOException {
+            if ( ibuf_ >= nbuf_ ) {
+                nbuf_ = in_.read( buf_ );
+                ibuf_ = 0;
+                if ( nbuf_ <= 0 ) {
+                    nbuf_ = 0;
+                    return -1;
+                }
+            }
+            pos_++;
+            return buf_[ ibuf_++ ] & 0xff;
+        }
+
+        /**
+         * Reads an XML name, stopping at whitespace, '&gt;', '/', or
+         * end of stream.  The terminating byte is consumed, and
+         * recorded in the <code>last_</code> field.
+         * Overlong names are truncated.
+         *
+         * @return  name
+         */
+        String readName() throws IOException {
+            StringBuffer sbuf = new StringBuffer();
+            int c;
+            while ( ( c = next() ) > ' ' && c != '>' && c != '/' ) {
+                if ( sbuf.length() < 256 ) {
+                    sbuf.append( (char) c );
+                }
+            }
+            last_ = c;
+            return sbuf.toString();
+        }
+
+        /**
+         * Closes the underlying stream.
+         */
+        void close() throws IOException {
+            in_.close();
+        }
+    }
+}
@@ -141,8 +141,8 @@ class TableBodies {
 
         public RowSequence getRowSequence() throws IOException {
             InputStream istrm = new BufferedInputStream( url.openStream() );
-            return new BinaryRowSequence( decoders, istrm, encoding,
-                                          isBinary2 );
+            return BinaryRowSequence.createRowSequence( decoders, istrm,
+                                                        encoding, isBinary2 );
         }
     }
 
@@ -2,6 +2,7 @@ package uk.ac.starlink.votable;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 
@@ -86,6 +87,18 @@ public class TableContentHandler implements ContentHandler {
         return votParser_.getLocator();
     }
 
+    /**
+     * Returns an input source equivalent to a given one which may
+     * allow faster parsing of TABLEDATA content by this handler.
+     *
+     * @param  insrc  input source
+     * @return  input source to parse with this handler
+     * @see   SkeletonDOMBuilder#prepareInputSource
+     */
+    InputSource prepareInputSource( InputSource insrc ) {
+        return votParser_.prepareInputSource( insrc );
+    }
+
     public void setDocumentLocator( Locator locator ) {
         votParser_.setDocumentLocator( locator );
     }
@@ -353,8 +353,9 @@ public class TableElement extends VOElement {
             return new TableBodies.SequentialTabularData( clazzes ) {
                 public RowSequence getRowSequence() throws IOException {
                     InputStream istrm = getTextChildrenStream( streamEl );
-                    return new BinaryRowSequence( decoders, istrm, "base64",
-                                                  isBinary2 );
+                    return BinaryRowSequence
+                          .createRowSequence( decoders, istrm, "base64",
+                                              isBinary2 );
                 }
             };
         }
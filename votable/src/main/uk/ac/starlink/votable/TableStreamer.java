@@ -167,7 +167,7 @@ class TableStreamer extends TableContentHandler implements TableHandler {
          * SuccessfulCompletionException if the table gets copied.
          * Otherwise, it hasn't happened. */
         try {
-            parser.parse( saxsrc );
+            parser.parse( streamer.prepareInputSource( saxsrc ) );
         }
         catch ( SuccessfulCompletionException e ) {
             return;
@@ -0,0 +1,898 @@
+package uk.ac.starlink.votable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.xml.sax.SAXException;
+
+/**
+ * Input stream which can read the content of TABLEDATA elements directly
+ * from the bytes of a VOTable document, bypassing the SAX parser.
+ *
+ * <p>An instance of this class wraps the byte stream of a document
+ * and is supplied to the SAX parser as its input in place of it.
+ * Most of the document is passed through unchanged, but whenever a
+ * TABLEDATA start tag is encountered the stream stops short just after it,
+ * so that the parser reports the start tag before asking for more input.
+ * If the SAX handler responds to that by calling {@link #startTabledata},
+ * the next read scans the TR and TD elements itself,
+ * decoding numeric cells directly from the byte buffer where possible,
+ * and passing rows to a {@link TableHandler}.
+ * The parser then sees an empty TABLEDATA element and continues
+ * with the rest of the document as usual.
+ * If the handshake does not take place, the TABLEDATA content is just
+ * passed to the parser and handled in the normal way.
+ *
+ * <p>Since it has no access to the parser's state, this class has to
+ * guess which parts of the document are TABLEDATA start tags.
+ * To guard against mistakes, for instance from a TABLEDATA tag inside
+ * a comment, the caller counts the TABLEDATA start tags reported by
+ * the parser, and direct scanning only takes place if that count
+ * matches the one made here.
+ *
+ * <p>The scanner understands TR and TD elements, comments, CDATA sections,
+ * character references and the predefined entity references.
+ * It cannot resolve other entity references, so if the document
+ * declares any entities in its internal DTD subset,
+ * or refers to an external DTD other than a VOTable DTD,
+ * direct scanning is not attempted and the whole document is left
+ * to the parser.
+ * Direct scanning is only attempted for documents in the UTF-8,
+ * US-ASCII or ISO-8859-1 encodings.
+ *
+ * @author   agent
+ * @since    17 Oct 2026
+ */
+class TabledataScanner extends InputStream {
+
+    private final InputStream in_;
+    private final String encoding_;
+    private byte[] buf_;
+    private int pos_;
+    private int end_;
+    private int limit_;
+    private boolean isEof_;
+    private boolean isStarted_;
+    private Charset charset_;
+    private int ntag_;
+    private boolean isCut_;
+    private boolean isPending_;
+    private Decoder[] decoders_;
+    private TableHandler handler_;
+    private boolean isScanning_;
+    private int lineStart_;
+    private int nline_;
+    private int nscan_;
+
+    private static final int BUFSIZ = 64 * 1024;
+    private static final int MAX_NAME = 1024;
+    private static final byte[] TABLEDATA_NAME = toBytes( "TABLEDATA" );
+    private static final byte[] TR_NAME = toBytes( "TR" );
+    private static final byte[] TD_NAME = toBytes( "TD" );
+    private static final byte[] DOCTYPE_NAME = toBytes( "!DOCTYPE" );
+    private static final byte[] ENTITY_NAME = toBytes( "!ENTITY" );
+    private static final Charset LATIN1 = Charset.forName( "ISO-8859-1" );
+    private static final Pattern ENCODING_REGEX =
+        Pattern.compile( "encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']" );
+    private static final Pattern SYSTEMID_REGEX =
+        Pattern.compile( "\\b(?:SYSTEM|PUBLIC\\s+(?:\"[^\"]*\"|'[^']*'))"
+                       + "\\s+(?:\"([^\"]*)\"|'([^']*)')" );
+    private static final Pattern VOTABLE_DTD_REGEX =
+        Pattern.compile( "(?i)(?:.*[/\\\\])?votable[-_.v0-9]*\\.dtd" );
+
+    /**
+     * Constructor.
+     *
+     * @param  in  input stream containing an XML document
+     * @param  encoding  character encoding specified for the document
+     *                   externally to the stream, or null
+     */
+    public TabledataScanner( InputStream in, String encoding ) {
+        in_ = in;
+        encoding_ = encoding;
+        buf_ = new byte[ BUFSIZ ];
+    }
+
+    /**
+     * Requests direct scanning of the content of a TABLEDATA element
+     * whose start tag has just been reported by the parser.
+     * This should be called from the SAX handler's
+     * <code>startElement</code> method.
+     * If it returns true, the rows of the element will be passed to
+     * the given table handler during the next read from this stream,
+     * and the parser will see the TABLEDATA element as empty.
+     *
+     * @param  itag  number of TABLEDATA start tags (including this one)
+     *               reported by the parser so far
+     * @param  decoders  decoders for the table columns
+     * @param  handler   destination for rows, or null to discard them
+     * @return  true iff the content will be scanned directly
+     */
+    public boolean startTabledata( int itag, Decoder[] decoders,
+                                   TableHandler handler ) {
+        if ( isPending_ && itag == ntag_ ) {
+            decoders_ = decoders;
+            handler_ = handler;
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of TABLEDATA elements whose content has been
+     * scanned directly by this stream.
+     *
+     * @return  count of directly scanned elements
+     */
+    public int getScanCount() {
+        return nscan_;
+    }
+
+    /**
+     * Indicates whether an XML element name as reported by the parser
+     * is one which this stream would recognise as a TABLEDATA element.
+     *
+     * @param  qName  element qualified name
+     * @return  true iff the local part of the name is TABLEDATA
+     */
+    public static boolean isTabledataName( String qName ) {
+        return "TABLEDATA".equals( qName )
+            || ( qName != null && qName.endsWith( ":TABLEDATA" ) );
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b1 = new byte[ 1 ];
+        return read( b1, 0, 1 ) < 0 ? -1 : b1[ 0 ] & 0xff;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if ( len <= 0 ) {
+            return 0;
+        }
+        if ( ! isStarted_ ) {
+            isStarted_ = true;
+            charset_ = detectCharset();
+        }
+
+        /* If direct scanning has been requested, do it now. */
+        if ( decoders_ != null ) {
+            Decoder[] decoders = decoders_;
+            TableHandler handler = handler_;
+            decoders_ = null;
+            handler_ = null;
+            isScanning_ = true;
+            lineStart_ = pos_;
+            try {
+                scanTabledata( decoders, handler );
+            }
+            finally {
+                isScanning_ = false;
+            }
+            countLines( lineStart_, pos_ );
+            limit_ = pos_;
+            nscan_++;
+        }
+        isPending_ = false;
+
+        /* Supply the parser with one newline for each line of scanned
+         * content, so that its reported line numbers remain correct. */
+        if ( nline_ > 0 ) {
+            int n = Math.min( len, nline_ );
+            Arrays.fill( b, off, off + n, (byte) '\n' );
+            nline_ -= n;
+            return n;
+        }
+
+        /* Otherwise pass through bytes up to the next point of interest. */
+        if ( pos_ >= limit_ && ! advance() ) {
+            return -1;
+        }
+        int n = Math.min( len, limit_ - pos_ );
+        System.arraycopy( buf_, pos_, b, off, n );
+        pos_ += n;
+        if ( isCut_ && pos_ == limit_ ) {
+            isCut_ = false;
+            isPending_ = true;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in_.close();
+    }
+
+    /**
+     * Determines the character encoding of the document from its
+     * first few bytes.
+     *
+     * @return  charset for decoding text, or null if direct scanning
+     *          is not possible
+     */
+    private Charset detectCharset() throws IOException {
+        int n = ensure( 4 );
+        int ioff = 0;
+        if ( n >= 3 && buf_[ 0 ] == (byte) 0xef && buf_[ 1 ] == (byte) 0xbb
+                    && buf_[ 2 ] == (byte) 0xbf ) {
+            ioff = 3;
+        }
+        if ( n <= ioff ||
+             ! ( buf_[ ioff ] == '<' ||
+                 ( buf_[ ioff ] >= 0 && buf_[ ioff ] <= ' ' ) ) ||
+             ( n > ioff + 1 && buf_[ ioff + 1 ] == 0 ) ) {
+            return null;
+        }
+        String enc = encoding_;
+        if ( enc == null && startsWith( ioff, "<?xml" ) ) {
+            int nd = ensure( MAX_NAME );
+            int iend = -1;
+            for ( int i = ioff; i < nd - 1 && iend < 0; i++ ) {
+                if ( buf_[ i ] == '?' && buf_[ i + 1 ] == '>' ) {
+                    iend = i;
+                }
+            }
+            if ( iend < 0 ) {
+                return null;
+            }
+            Matcher matcher =
+                ENCODING_REGEX.matcher( new String( buf_, ioff, iend - ioff,
+                                                    LATIN1 ) );
+            if ( matcher.find() ) {
+                enc = matcher.group( 1 );
+            }
+        }
+        if ( enc == null ) {
+            return Charset.forName( "UTF-8" );
+        }
+        String uenc = enc.trim().toUpperCase();
+        if ( uenc.equals( "UTF-8" ) || uenc.equals( "UTF8" ) ) {
+            return Charset.forName( "UTF-8" );
+        }
+        else if ( uenc.equals( "US-ASCII" ) || uenc.equals( "ASCII" ) ) {
+            return Charset.forName( "US-ASCII" );
+        }
+        else if ( uenc.equals( "ISO-8859-1" ) || uenc.equals( "LATIN1" ) ) {
+            return LATIN1;
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * Prepares the next run of bytes to be passed to the parser,
+     * by setting the limit up to which they can be passed.
+     *
+     * @return  false at end of stream
+     */
+    private boolean advance() throws IOException {
+        if ( pos_ >= end_ && ! fill() ) {
+            return false;
+        }
+        limit_ = end_;
+        if ( charset_ != null ) {
+            for ( int i = pos_; i < end_; i++ ) {
+                if ( buf_[ i ] == '<' ) {
+                    if ( i > pos_ ) {
+                        limit_ = i;
+                    }
+                    else {
+                        int leng = examineTag();
+                        limit_ = pos_ + leng;
+                    }
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Examines markup starting at the current position,
+     * and returns the number of bytes that can be passed through.
+     * If it is a TABLEDATA start tag, the tag is counted,
+     * and if it is not an empty-element tag, the returned length
+     * stops at the end of it.
+     * If it is a declaration that might introduce entities which this
+     * class cannot resolve, direct scanning is disabled for the rest
+     * of the document.
+     *
+     * @return   number of bytes that can be passed through (&gt;0)
+     */
+    private int examineTag() throws IOException {
+        int nleng = nameLength( 1 );
+        if ( isName( 1, nleng, TABLEDATA_NAME ) ) {
+            ntag_++;
+            int leng = tagLength( 1 + nleng );
+            if ( leng < 0 ) {
+                return end_ - pos_;
+            }
+            if ( buf_[ pos_ + leng - 2 ] != '/' ) {
+                isCut_ = true;
+            }
+            return leng;
+        }
+        else {
+            if ( isName( 1, nleng, ENTITY_NAME ) ||
+                 ( isName( 1, nleng, DOCTYPE_NAME ) &&
+                   ! isKnownDoctype( 1 + nleng ) ) ) {
+                charset_ = null;
+            }
+            return 1 + nleng;
+        }
+    }
+
+    /**
+     * Indicates whether the external DTD subset named by a document type
+     * declaration is known not to declare any entities.
+     * That is the case if there is no external subset, or if it is
+     * a VOTable DTD.
+     *
+     * @param  ioff  offset from the current position of the text
+     *               following the DOCTYPE keyword
+     * @return  true iff the external subset is known to be harmless
+     */
+    private boolean isKnownDoctype( int ioff ) throws IOException {
+        int n = ensure( ioff + MAX_NAME );
+        byte quote = 0;
+        for ( int i = ioff; i < n; i++ ) {
+            byte b = buf_[ pos_ + i ];
+            if ( quote != 0 ) {
+                if ( b == quote ) {
+                    quote = 0;
+                }
+            }
+            else if ( b == '"' || b == '\'' ) {
+                quote = b;
+            }
+            else if ( b == '[' || b == '>' ) {
+                Matcher matcher =
+                    SYSTEMID_REGEX.matcher( new String( buf_, pos_ + ioff,
+                                                        i - ioff, LATIN1 ) );
+                if ( ! matcher.find() ) {
+                    return true;
+                }
+                String sysId = matcher.group( 1 ) != null ? matcher.group( 1 )
+                                                          : matcher.group( 2 );
+                return VOTABLE_DTD_REGEX.matcher( sysId.trim() ).matches();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Scans the content of a TABLEDATA element, passing rows to a handler.
+     * On exit, the current position is at the start of the TABLEDATA
+     * end tag.
+     *
+     * @param  decoders  column decoders
+     * @param  handler  row destination, or null
+     */
+    private void scanTabledata( Decoder[] decoders, TableHandler handler )
+            throws IOException {
+        int ncol = decoders.length;
+        Object[] row = null;
+        int icol = 0;
+        int depth = 0;
+        while ( true ) {
+
+            /* Skip to the next markup. */
+            while ( pos_ < end_ || fill() ) {
+                if ( buf_[ pos_ ] == '<' ) {
+                    break;
+                }
+                pos_++;
+            }
+            int b1 = byteAt( 1 );
+            if ( b1 < 0 ) {
+                throw new EOFException( "Unexpected end of TABLEDATA" );
+            }
+
+            /* Ignore comments and processing instructions. */
+            else if ( b1 == '!' || b1 == '?' ) {
+                skipSpecial();
+            }
+
+            /* End tags. */
+            else if ( b1 == '/' ) {
+                int nleng = nameLength( 2 );
+                int tleng = requireTagLength( 2 + nleng );
+                if ( isName( 2, nleng, TR_NAME ) ) {
+                    if ( row != null ) {
+                        deliver( handler, row );
+                        row = null;
+                    }
+                }
+                else if ( isName( 2, nleng, TD_NAME ) ) {
+                    // stray TD end - ignore
+                }
+                else if ( depth > 0 ) {
+                    depth--;
+                }
+                else {
+                    return;
+                }
+                pos_ += tleng;
+            }
+
+            /* Start tags. */
+            else {
+                int nleng = nameLength( 1 );
+                int tleng = requireTagLength( 1 + nleng );
+                boolean isEmpty = buf_[ pos_ + tleng - 2 ] == '/';
+                if ( isName( 1, nleng, TR_NAME ) ) {
+                    pos_ += tleng;
+                    row = new Object[ ncol ];
+                    icol = 0;
+                    if ( isEmpty ) {
+                        deliver( handler, row );
+                        row = null;
+                    }
+                }
+                else if ( isName( 1, nleng, TD_NAME ) ) {
+                    pos_ += tleng;
+                    boolean isUsed = row != null && icol < ncol;
+                    Decoder decoder = isUsed && handler != null
+                                    ? decoders[ icol ]
+                                    : null;
+                    Object value = isEmpty ? null : scanCell( decoder );
+                    if ( isUsed ) {
+                        row[ icol++ ] = value;
+                    }
+                }
+                else {
+                    pos_ += tleng;
+                    if ( ! isEmpty ) {
+                        depth++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the content of a TD element.
+     * On entry the current position is just after the TD start tag,
+     * and on exit it is just after the TD end tag.
+     *
+     * @param  decoder  decoder for the cell, or null if the value is
+     *                  not required
+     * @return  cell value
+     */
+    private Object scanCell( Decoder decoder ) throws IOException {
+
+        /* Look for the end tag.  If there is no other markup on the way,
+         * the cell can be decoded straight from the buffer. */
+        for ( int i = 0; pos_ + i < end_ || fill(); i++ ) {
+            byte b = buf_[ pos_ + i ];
+            if ( b == '<' ) {
+                int tleng = tdEndLength( i );
+                if ( tleng > 0 ) {
+                    Object value = decoder != null && i > 0
+                                 ? decodeCell( decoder, pos_, i )
+                                 : null;
+                    pos_ += i + tleng;
+                    return value;
+                }
+                break;
+            }
+            else if ( b == '&' ) {
+                break;
+            }
+        }
+
+        /* Otherwise, assemble the text piece by piece. */
+        StringBuilder sbuf = new StringBuilder();
+        int depth = 0;
+        while ( true ) {
+            int i = 0;
+            while ( true ) {
+                if ( pos_ + i >= end_ && ! fill() ) {
+                    throw new EOFException( "Unexpected end of TABLEDATA" );
+                }
+                byte b = buf_[ pos_ + i ];
+                if ( b == '<' || b == '&' ) {
+                    break;
+                }
+                i++;
+            }
+            if ( i > 0 ) {
+                sbuf.append( toText( pos_, i ) );
+                pos_ += i;
+            }
+            if ( buf_[ pos_ ] == '&' ) {
+                sbuf.append( readReference() );
+            }
+            else if ( startsWith( 0, "<![CDATA[" ) ) {
+                int leng = skipLength( 9, "]]>" );
+                sbuf.append( toText( pos_ + 9, leng - 12 ) );
+                pos_ += leng;
+            }
+            else if ( byteAt( 1 ) == '!' || byteAt( 1 ) == '?' ) {
+                skipSpecial();
+            }
+            else if ( byteAt( 1 ) == '/' ) {
+                int nleng = nameLength( 2 );
+                int tleng = requireTagLength( 2 + nleng );
+                boolean isTd = isName( 2, nleng, TD_NAME );
+                pos_ += tleng;
+                if ( depth > 0 ) {
+                    depth--;
+                }
+                else if ( isTd ) {
+                    break;
+                }
+                else {
+                    throw new IOException( "Mismatched end tag in TD" );
+                }
+            }
+            else {
+                int nleng = nameLength( 1 );
+                int tleng = requireTagLength( 1 + nleng );
+                if ( buf_[ pos_ + tleng - 2 ] != '/' ) {
+                    depth++;
+                }
+                pos_ += tleng;
+            }
+        }
+        return decoder != null && sbuf.length() > 0
+             ? decoder.decodeString( sbuf.toString() )
+             : null;
+    }
+
+    /**
+     * Decodes the text of a cell held in the buffer.
+     *
+     * @param  decoder  decoder
+     * @param  off   offset into buffer of text
+     * @param  leng  number of bytes of text
+     * @return  decoded value
+     */
+    private Object decodeCell( Decoder decoder, int off, int leng ) {
+        Object value = decoder.decodeAscii( buf_, off, leng );
+        return value == Decoder.UNDECODED
+             ? decoder.decodeString( toText( off, leng ) )
+             : value;
+    }
+
+    /**
+     * Decodes bytes from the buffer as text, applying XML
+     * line end normalisation.
+     *
+     * @param  off   offset into buffer of text
+     * @param  leng  number of bytes of text
+     * @return  text
+     */
+    private String toText( int off, int leng ) {
+        String txt = new String( buf_, off, leng, charset_ );
+        return txt.indexOf( '\r' ) >= 0
+             ? txt.replace( "\r\n", "\n" ).replace( '\r', '\n' )
+             : txt;
+    }
+
+    /**
+     * Reads an entity or character reference at the current position,
+     * and moves the current position past it.
+     *
+     * @return  text represented by the reference
+     */
+    private String readReference() throws IOException {
+        int i = 1;
+        for ( int b; ( b = byteAt( i ) ) != ';'; i++ ) {
+            if ( b < 0 || i > 32 ) {
+                throw new IOException( "Bad reference in TABLEDATA" );
+            }
+        }
+        String name = new String( buf_, pos_ + 1, i - 1, LATIN1 );
+        pos_ += i + 1;
+        if ( name.equals( "lt" ) ) {
+            return "<";
+        }
+        else if ( name.equals( "gt" ) ) {
+            return ">";
+        }
+        else if ( name.equals( "amp" ) ) {
+            return "&";
+        }
+        else if ( name.equals( "quot" ) ) {
+            return "\"";
+        }
+        else if ( name.equals( "apos" ) ) {
+            return "'";
+        }
+        else if ( name.startsWith( "#" ) ) {
+            try {
+                int cp = name.startsWith( "#x" )
+                       ? Integer.parseInt( name.substring( 2 ), 16 )
+                       : Integer.parseInt( name.substring( 1 ) );
+                return new String( Character.toChars( cp ) );
+            }
+            catch ( IllegalArgumentException e ) {
+                throw (IOException)
+                      new IOException( "Bad character reference &" + name
+                                     + ";" )
+                     .initCause( e );
+            }
+        }
+        else {
+            throw new IOException( "Unsupported entity reference &" + name
+                                 + "; in TABLEDATA" );
+        }
+    }
+
+    /**
+     * Skips over a comment, CDATA section, processing instruction or
+     * other markup beginning "&lt;!" at the current position.
+     */
+    private void skipSpecial() throws IOException {
+        if ( startsWith( 0, "<!--" ) ) {
+            pos_ += skipLength( 4, "-->" );
+        }
+        else if ( startsWith( 0, "<![CDATA[" ) ) {
+            pos_ += skipLength( 9, "]]>" );
+        }
+        else if ( startsWith( 0, "<?" ) ) {
+            pos_ += skipLength( 2, "?>" );
+        }
+        else {
+            pos_ += requireTagLength( 2 );
+        }
+    }
+
+    /**
+     * Passes a row to a table handler.
+     *
+     * @param  handler  handler, or null
+     * @param  row   row data
+     */
+    private void deliver( TableHandler handler, Object[] row )
+            throws IOException {
+        if ( handler != null ) {
+            try {
+                handler.rowData( row );
+            }
+            catch ( SAXException e ) {
+                throw (IOException) new IOException( e.getMessage() )
+                                   .initCause( e );
+            }
+        }
+    }
+
+    /**
+     * Returns the length of a TD end tag starting at a given offset
+     * from the current position.
+     *
+     * @param  ioff  offset of '&lt;' character
+     * @return  length of end tag, or 0 if it is not a TD end tag
+     */
+    private int tdEndLength( int ioff ) throws IOException {
+        if ( byteAt( ioff + 1 ) == '/' ) {
+            int nleng = nameLength( ioff + 2 );
+            if ( isName( ioff + 2, nleng, TD_NAME ) ) {
+                return requireTagLength( ioff + 2 + nleng ) - ioff;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the length of an XML name starting at a given offset
+     * from the current position.
+     *
+     * @param  ioff  offset of name start
+     * @return  name length in bytes
+     */
+    private int nameLength( int ioff ) throws IOException {
+        int i = ioff;
+        while ( i < MAX_NAME && ( pos_ + i < end_ || fill() ) ) {
+            byte b = buf_[ pos_ + i ];
+            if ( b == '>' || b == '/' || ( b >= 0 && b <= ' ' ) ) {
+                break;
+            }
+            i++;
+        }
+        return i - ioff;
+    }
+
+    /**
+     * Indicates whether the name at a given offset from the current
+     * position has a given local part.
+     *
+     * @param  ioff  offset of name start
+     * @param  nleng  name length
+     * @param  name   required local name
+     * @return  true iff the name matches, with or without a prefix
+     */
+    private boolean isName( int ioff, int nleng, byte[] name ) {
+        int nl = name.length;
+        if ( nleng < nl ) {
+            return false;
+        }
+        int start = pos_ + ioff + nleng - nl;
+        for ( int i = 0; i < nl; i++ ) {
+            if ( buf_[ start + i ] != name[ i ] ) {
+                return false;
+            }
+        }
+        return nleng == nl || buf_[ start - 1 ] == ':';
+    }
+
+    /**
+     * Returns the offset from the current position of the byte
+     * following the end of a tag, ignoring any '&gt;' characters
+     * in quoted attribute values.
+     *
+     * @param  ioff  offset at which to start looking
+     * @return  offset following the closing '&gt;', or -1 at end of stream
+     */
+    private int tagLength( int ioff ) throws IOException {
+        byte quote = 0;
+        for ( int i = ioff; pos_ + i < end_ || fill(); i++ ) {
+            byte b = buf_[ pos_ + i ];
+            if ( quote != 0 ) {
+                if ( b == quote ) {
+                    quote = 0;
+                }
+            }
+            else if ( b == '"' || b == '\'' ) {
+                quote = b;
+            }
+            else if ( b == '>' ) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Like {@link #tagLength}, but throws an exception at end of stream.
+     *
+     * @param  ioff  offset at which to start looking
+     * @return  offset following the closing '&gt;'
+     */
+    private int requireTagLength( int ioff ) throws IOException {
+        int leng = tagLength( ioff );
+        if ( leng < 0 ) {
+            throw new EOFException( "Unexpected end of TABLEDATA" );
+        }
+        return leng;
+    }
+
+    /**
+     * Returns the offset from the current position of the byte
+     * following a given terminating string.
+     *
+     * @param  ioff  offset at which to start looking
+     * @param  term  ASCII terminator string
+     * @return  offset following <code>term</code>
+     */
+    private int skipLength( int ioff, String term ) throws IOException {
+        for ( int i = ioff; ensure( i + term.length() ) >= i + term.length();
+              i++ ) {
+            if ( startsWith( i, term ) ) {
+                return i + term.length();
+            }
+        }
+        throw new EOFException( "Unexpected end of TABLEDATA" );
+    }
+
+    /**
+     * Indicates whether the bytes at a given offset from the current
+     * position match a given ASCII string.
+     *
+     * @param  ioff  offset
+     * @param  txt   ASCII string
+     * @return  true iff the bytes match
+     */
+    private boolean startsWith( int ioff, String txt ) throws IOException {
+        int n = txt.length();
+        if ( ensure( ioff + n ) < ioff + n ) {
+            return false;
+        }
+        for ( int i = 0; i < n; i++ ) {
+            if ( buf_[ pos_ + ioff + i ] != txt.charAt( i ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the byte at a given offset from the current position.
+     *
+     * @param  ioff  offset
+     * @return  byte value, or -1 at end of stream
+     */
+    private int byteAt( int ioff ) throws IOException {
+        return ensure( ioff + 1 ) > ioff ? buf_[ pos_ + ioff ] : -1;
+    }
+
+    /**
+     * Tries to ensure that a given number of bytes following the
+     * current position are available in the buffer.
+     *
+     * @param  n  required number of bytes
+     * @return  number of bytes available, which is less than
+     *          <code>n</code> only at end of stream
+     */
+    private int ensure( int n ) throws IOException {
+        while ( end_ - pos_ < n && fill() ) {
+        }
+        return end_ - pos_;
+    }
+
+    /**
+     * Reads more bytes into the buffer.  Bytes before the current
+     * position are discarded, and the others are moved to the start
+     * of the buffer.  If the buffer is full, it is enlarged.
+     *
+     * @return  false at end of stream
+     */
+    private boolean fill() throws IOException {
+        if ( isEof_ ) {
+            return false;
+        }
+        if ( pos_ > 0 ) {
+            if ( isScanning_ ) {
+                countLines( lineStart_, pos_ );
+                lineStart_ = 0;
+            }
+            int nkeep = end_ - pos_;
+            System.arraycopy( buf_, pos_, buf_, 0, nkeep );
+            limit_ = Math.max( 0, limit_ - pos_ );
+            end_ = nkeep;
+            pos_ = 0;
+        }
+        if ( end_ == buf_.length ) {
+            buf_ = Arrays.copyOf( buf_, buf_.length * 2 );
+        }
+        int nr;
+        do {
+            nr = in_.read( buf_, end_, buf_.length - end_ );
+        } while ( nr == 0 );
+        if ( nr < 0 ) {
+            isEof_ = true;
+            return false;
+        }
+        end_ += nr;
+        return true;
+    }
+
+    /**
+     * Counts newline characters in a region of the buffer which has
+     * been scanned without being passed to the parser.
+     *
+     * @param  ifrom  start index
+     * @param  ito    end index
+     */
+    private void countLines( int ifrom, int ito ) {
+        for ( int i = ifrom; i < ito; i++ ) {
+            if ( buf_[ i ] == '\n' ) {
+                nline_++;
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes of an ASCII string.
+     *
+     * @param  txt  ASCII string
+     * @return  byte array
+     */
+    private static byte[] toBytes( String txt ) {
+        int n = txt.length();
+        byte[] buf = new byte[ n ];
+        for ( int i = 0; i < n; i++ ) {
+            buf[ i ] = (byte) txt.charAt( i );
+        }
+        return buf;
+    }
+}
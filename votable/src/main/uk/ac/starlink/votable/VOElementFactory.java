@@ -25,6 +25,7 @@ import uk.ac.starlink.table.StoragePolicy;
 import uk.ac.starlink.util.DataSource;
 import uk.ac.starlink.util.SourceReader;
 import uk.ac.starlink.util.StarEntityResolver;
+import uk.ac.starlink.util.ThreadUtils;
 
 /**
  * Provides methods for constructing VOElements from a variety
@@ -82,6 +83,49 @@ public class VOElementFactory {
      */
     public static boolean STRICT_DEFAULT = true;
 
+    /**
+     * Property which determines the number of threads used for decoding
+     * streamed BINARY and BINARY2 data.
+     * If unset or 1, rows are decoded sequentially.
+     * If set to a larger integer, one thread decodes the stream encoding
+     * and divides it into blocks of rows, and that number of worker
+     * threads decode the blocks concurrently.
+     * A value of 0 means use the number of available processors.
+     */
+    public static final String BINARY_THREADS_PROPERTY =
+        "votable.binary.threads";
+
+    /**
+     * Property which determines whether the content of TABLEDATA elements
+     * is read directly from the input bytes where possible,
+     * rather than by the SAX parser, when parsing from a byte stream.
+     * Its value may be set to "true" or "false" case-insensitively;
+     * the default is true.
+     */
+    public static final String TABLEDATA_SCAN_PROPERTY =
+        "votable.tabledata.scan";
+
+    /**
+     * Property which determines whether row indexes are used for
+     * random access to inline BINARY, BINARY2 and FITS data in
+     * uncompressed VOTable files.
+     * If set to "true" (case-insensitively), the first time a table
+     * is read from such a file by {@link VOTableBuilder} an index is
+     * written alongside it, and subsequent reads of the same table
+     * from the unchanged file use the index to provide random access
+     * to the data in place, rather than copying it into storage.
+     * The default is false.
+     */
+    public static final String INDEX_PROPERTY = "votable.index";
+
+    /**
+     * Property which gives the directory in which row index files are
+     * stored when the {@link #INDEX_PROPERTY} property is set.
+     * If unset, index files are written in the same directory as the
+     * VOTable file they refer to.
+     */
+    public static final String INDEX_DIR_PROPERTY = "votable.index.dir";
+
     /**
      * Constructs a new VOElementFactory with a given storage policy.
      * The StoragePolicy object is used to determine how row data which
@@ -453,6 +497,72 @@ public class VOElementFactory {
         }
     }
 
+    /**
+     * Returns the number of threads to use for decoding BINARY and
+     * BINARY2 data, as determined by the
+     * {@link #BINARY_THREADS_PROPERTY} system property.
+     *
+     * @return  decoding thread count; 1 means no parallelism
+     */
+    static int getBinaryThreads() {
+        return ThreadUtils.getThreadCount( BINARY_THREADS_PROPERTY );
+    }
+
+    /**
+     * Indicates whether TABLEDATA content should be read directly from
+     * the input bytes where possible, as determined by the
+     * {@link #TABLEDATA_SCAN_PROPERTY} system property.
+     *
+     * @return  true iff direct TABLEDATA scanning is enabled
+     */
+    static boolean isTabledataScan() {
+        try {
+            String sval = System.getProperty( TABLEDATA_SCAN_PROPERTY );
+            return sval == null || sval.trim().length() == 0
+                || Boolean.valueOf( sval.trim() ).booleanValue();
+        }
+        catch ( SecurityException e ) {
+            return true;
+        }
+    }
+
+    /**
+     * Indicates whether row indexes should be used for reading VOTable
+     * files, as determined by the {@link #INDEX_PROPERTY} system property.
+     *
+     * @return  true iff indexing is enabled
+     */
+    static boolean isIndexing() {
+        try {
+            String sval = System.getProperty( INDEX_PROPERTY );
+            return sval != null
+                && Boolean.valueOf( sval.trim() ).booleanValue();
+        }
+        catch ( SecurityException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the directory in which row index files should be stored,
+     * as determined by the {@link #INDEX_DIR_PROPERTY} system property.
+     *
+     * @return  index directory, or null to store them alongside
+     *          the indexed files
+     */
+    static File getIndexDir() {
+        String sval;
+        try {
+            sval = System.getProperty( INDEX_DIR_PROPERTY );
+        }
+        catch ( SecurityException e ) {
+            sval = null;
+        }
+        return sval == null || sval.trim().length() == 0
+             ? null
+             : new File( sval.trim() );
+    }
+
     /**
      * Constructs a new default SAX parser suitable for reading VOTables.
      * You can choose whether you'd like a validating one.
@@ -533,7 +643,7 @@ public class VOElementFactory {
                                                       isStrict() );
         parser.setContentHandler( db );
         try {
-            parser.parse( insource );
+            parser.parse( db.prepareInputSource( insource ) );
         }
         catch ( SAXException e ) {
             throw fixStackTrace( e );
@@ -1,6 +1,7 @@
 package uk.ac.starlink.votable;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -31,6 +32,7 @@ import uk.ac.starlink.table.ValueInfo;
 import uk.ac.starlink.table.WrapperStarTable;
 import uk.ac.starlink.util.Base64OutputStream;
 import uk.ac.starlink.util.IntList;
+import uk.ac.starlink.util.ThreadUtils;
 import uk.ac.starlink.votable.datalink.ServiceDescriptor;
 import uk.ac.starlink.votable.datalink.ServiceParam;
 
@@ -62,6 +64,18 @@ public abstract class VOSerializer {
     final static Logger logger = Logger.getLogger( "uk.ac.starlink.votable" );
     private static final AtomicLong idSeq_ = new AtomicLong();
 
+    /**
+     * Property which determines the number of threads used for formatting
+     * table data when writing TABLEDATA, BINARY and BINARY2 output.
+     * If unset or 1, rows are formatted sequentially by the writing thread.
+     * If set to a larger integer, blocks of rows are formatted concurrently
+     * by that number of worker threads, and written out in order;
+     * the output is the same either way.
+     * A value of 0 means use the number of available processors.
+     */
+    public static final String WRITE_THREADS_PROPERTY =
+        "votable.write.threads";
+
     /**
      * Constructs a new serializer which can write a given StarTable.
      *
@@ -985,6 +999,16 @@ public abstract class VOSerializer {
         return encoders;
     }
 
+    /**
+     * Returns the number of threads to use for formatting table data,
+     * as determined by the {@link #WRITE_THREADS_PROPERTY} system property.
+     *
+     * @return  formatting thread count; 1 means no parallelism
+     */
+    static int getWriteThreads() {
+        return ThreadUtils.getThreadCount( WRITE_THREADS_PROPERTY );
+    }
+
     /**
      * Writes the FIELD elements corresponding to a set of Encoders.
      *
@@ -1018,6 +1042,73 @@ public abstract class VOSerializer {
         }
     }
 
+    /**
+     * Writes rows from a sequence in a binary serialization format,
+     * encoding blocks of rows in multiple threads.
+     *
+     * @param  rseq  row sequence
+     * @param  out   destination stream
+     * @param  nthread  number of encoding threads
+     * @param  ncol  number of columns written per row
+     * @param  rowWriter  encodes single rows
+     */
+    private static void streamRowsParallel( RowSequence rseq,
+                                            final DataOutput out, int nthread,
+                                            int ncol,
+                                            final BinaryRowWriter rowWriter )
+            throws IOException {
+        new ParallelRowWriter<byte[]>( nthread, ncol ) {
+            protected byte[] formatRows( Object[][] rows, int nrow )
+                    throws IOException {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                DataOutputStream dout = new DataOutputStream( bout );
+                boolean[] work = rowWriter.createWorkspace();
+                for ( int ir = 0; ir < nrow; ir++ ) {
+                    rowWriter.writeRow( rows[ ir ], dout, work );
+                }
+                dout.flush();
+                return bout.toByteArray();
+            }
+            protected void writeBlock( byte[] block ) throws IOException {
+                out.write( block );
+            }
+        }.writeRows( rseq );
+    }
+
+    /**
+     * Returns the line separator string used by BufferedWriter.newLine().
+     *
+     * @return  line separator
+     */
+    private static String getLineSeparator() {
+        String sep = System.getProperty( "line.separator" );
+        return sep == null ? "\n" : sep;
+    }
+
+    /**
+     * Encodes single table rows in a binary serialization format.
+     */
+    private interface BinaryRowWriter {
+
+        /**
+         * Returns a workspace array suitable for passing to
+         * <code>writeRow</code>.  Each thread needs its own.
+         *
+         * @return  new workspace, may be null
+         */
+        boolean[] createWorkspace();
+
+        /**
+         * Writes the serialization of a row.
+         *
+         * @param  row  row data
+         * @param  out  destination stream
+         * @param  work  workspace obtained from <code>createWorkspace</code>
+         */
+        void writeRow( Object[] row, DataOutput out, boolean[] work )
+                throws IOException;
+    }
+
     /**
      * TABLEDATA implementation of VOSerializer.
      */
@@ -1041,26 +1132,17 @@ public abstract class VOSerializer {
             writer.newLine();
             writer.write( "<TABLEDATA>" );
             writer.newLine();
-            int ncol = encoders.length;
+            int nthread = getWriteThreads();
             RowSequence rseq = getTable().getRowSequence();
             try {
-                while ( rseq.next() ) {
-                    writer.write( "  <TR>" );
-                    writer.newLine();
-                    Object[] rowdata = rseq.getRow();
-                    for ( int icol = 0; icol < ncol; icol++ ) {
-                        Encoder encoder = encoders[ icol ];
-                        if ( encoder != null ) {
-                            String text =
-                                encoder.encodeAsText( rowdata[ icol ] );
-                            writer.write( "    <TD>" );
-                            writer.write( formatText( text ) );
-                            writer.write( "</TD>" );
-                            writer.newLine();
-                        }
+                if ( nthread > 1 ) {
+                    writeRowsParallel( rseq, writer, nthread );
+                }
+                else {
+                    String newline = getLineSeparator();
+                    while ( rseq.next() ) {
+                        appendRow( rseq.getRow(), writer, newline );
                     }
-                    writer.write( "  </TR>" );
-                    writer.newLine();
                 }
             }
             finally {
@@ -1078,6 +1160,60 @@ public abstract class VOSerializer {
             throw new UnsupportedOperationException( 
                 "TABLEDATA only supports inline output" );
         }
+
+        /**
+         * Appends the TR element representing a single row.
+         *
+         * @param  row  row data
+         * @param  out  destination
+         * @param  newline  line separator string
+         */
+        private void appendRow( Object[] row, Appendable out, String newline )
+                throws IOException {
+            out.append( "  <TR>" )
+               .append( newline );
+            int ncol = encoders.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Encoder encoder = encoders[ icol ];
+                if ( encoder != null ) {
+                    String text = encoder.encodeAsText( row[ icol ] );
+                    out.append( "    <TD>" )
+                       .append( formatText( text ) )
+                       .append( "</TD>" )
+                       .append( newline );
+                }
+            }
+            out.append( "  </TR>" )
+               .append( newline );
+        }
+
+        /**
+         * Writes TR elements for all the rows in a sequence,
+         * formatting blocks of rows in multiple threads.
+         *
+         * @param  rseq  row sequence
+         * @param  writer  destination
+         * @param  nthread  number of formatting threads
+         */
+        private void writeRowsParallel( RowSequence rseq,
+                                        final BufferedWriter writer,
+                                        int nthread )
+                throws IOException {
+            final String newline = getLineSeparator();
+            new ParallelRowWriter<String>( nthread, encoders.length ) {
+                protected String formatRows( Object[][] rows, int nrow )
+                        throws IOException {
+                    StringBuilder sbuf = new StringBuilder();
+                    for ( int ir = 0; ir < nrow; ir++ ) {
+                        appendRow( rows[ ir ], sbuf, newline );
+                    }
+                    return sbuf.toString();
+                }
+                protected void writeBlock( String block ) throws IOException {
+                    writer.write( block );
+                }
+            }.writeRows( rseq );
+        }
     }
 
     /**
@@ -1170,7 +1306,8 @@ public abstract class VOSerializer {
     /**
      * BINARY format implementation of VOSerializer.
      */
-    private static class BinaryVOSerializer extends StreamableVOSerializer {
+    private static class BinaryVOSerializer extends StreamableVOSerializer
+                                            implements BinaryRowWriter {
         private final Encoder[] encoders;
 
         BinaryVOSerializer( StarTable table, VOTableVersion version,
@@ -1185,16 +1322,16 @@ public abstract class VOSerializer {
         }
 
         public void streamData( DataOutput out ) throws IOException {
-            int ncol = encoders.length;
+            int nthread = getWriteThreads();
             RowSequence rseq = getTable().getRowSequence();
             try {
-                while ( rseq.next() ) {
-                    Object[] row = rseq.getRow();
-                    for ( int icol = 0; icol < ncol; icol++ ) {
-                        Encoder encoder = encoders[ icol ];
-                        if ( encoder != null ) {
-                            encoder.encodeToStream( row[ icol ], out );
-                        }
+                if ( nthread > 1 ) {
+                    streamRowsParallel( rseq, out, nthread, encoders.length,
+                                        this );
+                }
+                else {
+                    while ( rseq.next() ) {
+                        writeRow( rseq.getRow(), out, null );
                     }
                 }
             }
@@ -1202,26 +1339,35 @@ public abstract class VOSerializer {
                 rseq.close();
             }
         }
+
+        public void writeRow( Object[] row, DataOutput out, boolean[] work )
+                throws IOException {
+            int ncol = encoders.length;
+            for ( int icol = 0; icol < ncol; icol++ ) {
+                Encoder encoder = encoders[ icol ];
+                if ( encoder != null ) {
+                    encoder.encodeToStream( row[ icol ], out );
+                }
+            }
+        }
+
+        public boolean[] createWorkspace() {
+            return null;
+        }
     }
 
     /**
      * BINARY2 format implementation of VOSerializer.
      */
-    private static class Binary2VOSerializer extends StreamableVOSerializer {
+    private static class Binary2VOSerializer extends StreamableVOSerializer
+                                             implements BinaryRowWriter {
         private final Encoder[] encoders;
+        private final int[] icols_;
 
         Binary2VOSerializer( StarTable table, VOTableVersion version,
                              boolean magicNulls ) {
             super( table, DataFormat.BINARY2, version, "BINARY2" );
             encoders = getEncoders( table, magicNulls );
-        }
-
-        public void writeFields( BufferedWriter writer ) throws IOException {
-            outputFields( encoders, getTable(), coosysMap_, timesysMap_,
-                          writer );
-        }
-
-        public void streamData( DataOutput out ) throws IOException {
 
             /* Restrict attention to columns with non-null encoders,
              * that is those which we will actually be writing out. */
@@ -1231,29 +1377,26 @@ public abstract class VOSerializer {
                     icolList.add( icol );
                 }
             }
-            int[] icols = icolList.toIntArray();
-            int ncol = icols.length;
-            boolean[] nullFlags = new boolean[ ncol ];
+            icols_ = icolList.toIntArray();
+        }
 
-            /* Read data from table. */
+        public void writeFields( BufferedWriter writer ) throws IOException {
+            outputFields( encoders, getTable(), coosysMap_, timesysMap_,
+                          writer );
+        }
+
+        public void streamData( DataOutput out ) throws IOException {
+            int nthread = getWriteThreads();
             RowSequence rseq = getTable().getRowSequence();
             try {
-                while ( rseq.next() ) {
- 
-                    /* Prepare and write the null-flag array. */
-                    Object[] row = rseq.getRow();
-                    for ( int jcol = 0; jcol < ncol; jcol++ ) {
-                        int icol = icols[ jcol ];
-                        Object cell = row[ icol ];
-                        nullFlags[ jcol ] = cell == null;
-                    }
-                    FlagIO.writeFlags( out, nullFlags );
-
-                    /* Write the data cells. */
-                    for ( int jcol = 0; jcol < ncol; jcol++ ) {
-                        int icol = icols[ jcol ];
-                        Object cell = row[ icol ];
-                        encoders[ icol ].encodeToStream( cell, out );
+                if ( nthread > 1 ) {
+                    streamRowsParallel( rseq, out, nthread, icols_.length,
+                                        this );
+                }
+                else {
+                    boolean[] nullFlags = createWorkspace();
+                    while ( rseq.next() ) {
+                        writeRow( rseq.getRow(), out, nullFlags );
                     }
                 }
             }
@@ -1261,6 +1404,31 @@ public abstract class VOSerializer {
                 rseq.close();
             }
         }
+
+        public void writeRow( Object[] row, DataOutput out,
+                              boolean[] nullFlags )
+                throws IOException {
+            int ncol = icols_.length;
+
+            /* Prepare and write the null-flag array. */
+            for ( int jcol = 0; jcol < ncol; jcol++ ) {
+                int icol = icols_[ jcol ];
+                Object cell = row[ icol ];
+                nullFlags[ jcol ] = cell == null;
+            }
+            FlagIO.writeFlags( out, nullFlags );
+
+            /* Write the data cells. */
+            for ( int jcol = 0; jcol < ncol; jcol++ ) {
+                int icol = icols_[ jcol ];
+                Object cell = row[ icol ];
+                encoders[ icol ].encodeToStream( cell, out );
+            }
+        }
+
+        public boolean[] createWorkspace() {
+            return new boolean[ icols_.length ];
+        }
     }
 
     /**
@@ -1,6 +1,7 @@
 package uk.ac.starlink.votable;
 
 import java.awt.datatransfer.DataFlavor;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.regex.Pattern;
@@ -104,7 +105,21 @@ public class VOTableBuilder implements TableBuilder, MultiTableBuilder {
             }
         }
 
-        /* Stream the result to a new table store. */
+        /* If we have an uncompressed local file and indexing is enabled,
+         * use or create an index for random access. */
+        File file = IndexedTableReader.getIndexableFile( datsrc );
+        if ( file != null ) {
+            try {
+                return IndexedTableReader
+                      .readStarTable( datsrc, file, itab, storagePolicy,
+                                      strict_ );
+            }
+            catch ( SAXException e ) {
+                throw new TableFormatException( e.getMessage(), e );
+            }
+        }
+
+        /* Otherwise stream the result to a new table store. */
         InputSource saxSrc = new InputSource( datsrc.getInputStream() );
         saxSrc.setSystemId( datsrc.getSystemId() );
         try {
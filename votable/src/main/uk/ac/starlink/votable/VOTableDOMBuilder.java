@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.net.URL;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -53,6 +54,18 @@ public class VOTableDOMBuilder implements ContentHandler {
         return (VODocument) worker_.getDocument();
     }
 
+    /**
+     * Returns an input source equivalent to a given one which may
+     * allow faster parsing of TABLEDATA content by this handler.
+     *
+     * @param  insrc  input source
+     * @return  input source to parse with this handler
+     * @see   SkeletonDOMBuilder#prepareInputSource
+     */
+    InputSource prepareInputSource( InputSource insrc ) {
+        return worker_.prepareInputSource( insrc );
+    }
+
     public void setDocumentLocator( Locator locator ) {
         worker_.setDocumentLocator( locator );
     }
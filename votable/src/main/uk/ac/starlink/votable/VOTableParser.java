@@ -65,7 +65,8 @@ class VOTableParser extends SkeletonDOMBuilder {
                 Decoder[] decoders = getDecoders( tableEl.getFields() );
                 String encoding = getAttribute( atts, "encoding" );
                 RowSequence rseq =
-                    new BinaryRowSequence( decoders, in, encoding, isBinary2 );
+                    BinaryRowSequence.createRowSequence( decoders, in,
+                                                         encoding, isBinary2 );
                 try {
                     while ( rseq.next() ) {
                         tableHandler.rowData( rseq.getRow() );
@@ -0,0 +1,175 @@
+package uk.ac.starlink.votable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.util.Base64OutputStream;
+import uk.ac.starlink.util.ByteArrayDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class ParallelBinaryTest extends TestCase {
+
+    public ParallelBinaryTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.votable" ).setLevel( Level.SEVERE );
+    }
+
+    public void testParse() throws IOException {
+        StarTable t0 = AutoStarTable.getDemoTable( 3000 );
+        String prop = VOElementFactory.BINARY_THREADS_PROPERTY;
+        for ( DataFormat format :
+              new DataFormat[] { DataFormat.BINARY, DataFormat.BINARY2 } ) {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            new VOTableWriter( format, true ).writeStarTable( t0, bout );
+            byte[] vot = bout.toByteArray();
+            StarTable serialTable = readTable( vot );
+            assertEquals( 3000, countRows( serialTable ) );
+            for ( String nthread : new String[] { "2", "3" } ) {
+                System.setProperty( prop, nthread );
+                try {
+                    assertSameData( serialTable, readTable( vot ) );
+                    RowStore store =
+                        StoragePolicy.PREFER_MEMORY.makeRowStore();
+                    new VOTableBuilder()
+                       .streamStarTable( new ByteArrayInputStream( vot ),
+                                         store, null );
+                    assertSameData( serialTable, store.getStarTable() );
+                }
+                finally {
+                    System.clearProperty( prop );
+                }
+            }
+        }
+    }
+
+    public void testEncodings() throws IOException {
+        Decoder[] decoders = new Decoder[] {
+            Decoder.makeDecoder( "int", new long[ 0 ], null ),
+            Decoder.makeDecoder( "char", new long[] { -1 }, null ),
+            Decoder.makeDecoder( "double", new long[] { -1 }, null ),
+        };
+        for ( int nrow : new int[] { 0, 1, 2, 3, 50000 } ) {
+            byte[] raw = createBinary2( nrow );
+            byte[][] encoded = new byte[][] {
+                raw, gzip( raw ), base64( raw ),
+            };
+            String[] encodings = new String[] { null, "gzip", "base64" };
+            for ( int ie = 0; ie < encodings.length; ie++ ) {
+                String enc = encodings[ ie ];
+                List<Object[]> rows0 =
+                    readRows( new BinaryRowSequence( decoders,
+                                                     asStream( encoded[ ie ] ),
+                                                     enc, true ) );
+                assertEquals( nrow, rows0.size() );
+                List<Object[]> rows1 =
+                    readRows( new ParallelBinaryRowSequence(
+                                      decoders, asStream( encoded[ ie ] ),
+                                      enc, true, 2 ) );
+                assertEquals( nrow, rows1.size() );
+                for ( int ir = 0; ir < nrow; ir++ ) {
+                    assertArrayEquals( rows0.get( ir ), rows1.get( ir ) );
+                }
+            }
+        }
+
+        /* Abandon a sequence part way through. */
+        RowSequence rseq =
+            new ParallelBinaryRowSequence( decoders,
+                                           asStream( createBinary2( 50000 ) ),
+                                           null, true, 2 );
+        assertTrue( rseq.next() );
+        rseq.close();
+    }
+
+    private static byte[] createBinary2( int nrow ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream( bout );
+        for ( int ir = 0; ir < nrow; ir++ ) {
+            out.writeByte( ir % 7 == 0 ? 0x80 : 0x00 );
+            out.writeInt( ir );
+            String s = "row" + ir;
+            out.writeInt( s.length() );
+            out.writeBytes( s );
+            int nd = ir % 4;
+            out.writeInt( nd );
+            for ( int id = 0; id < nd; id++ ) {
+                out.writeDouble( ir + 0.25 * id );
+            }
+        }
+        out.flush();
+        return bout.toByteArray();
+    }
+
+    private static byte[] gzip( byte[] raw ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream out = new GZIPOutputStream( bout );
+        out.write( raw );
+        out.close();
+        return bout.toByteArray();
+    }
+
+    private static byte[] base64( byte[] raw ) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream out = new Base64OutputStream( bout, 16 );
+        out.write( raw );
+        out.close();
+        return bout.toByteArray();
+    }
+
+    private static InputStream asStream( byte[] buf ) {
+        return new ByteArrayInputStream( buf );
+    }
+
+    private static List<Object[]> readRows( RowSequence rseq )
+            throws IOException {
+        List<Object[]> rows = new ArrayList<Object[]>();
+        while ( rseq.next() ) {
+            rows.add( rseq.getRow() );
+        }
+        rseq.close();
+        return rows;
+    }
+
+    private static StarTable readTable( byte[] vot ) throws IOException {
+        return new VOTableBuilder()
+              .makeStarTable( new ByteArrayDataSource( "t", vot ), false,
+                              StoragePolicy.PREFER_MEMORY );
+    }
+
+    private static long countRows( StarTable table ) throws IOException {
+        RowSequence rseq = table.getRowSequence();
+        long n = 0;
+        while ( rseq.next() ) {
+            n++;
+        }
+        rseq.close();
+        return n;
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            assertArrayEquals( rseq0.getRow(), rseq1.getRow() );
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+}
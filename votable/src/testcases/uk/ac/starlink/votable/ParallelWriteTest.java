@@ -0,0 +1,91 @@
+package uk.ac.starlink.votable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.WrapperRowSequence;
+import uk.ac.starlink.table.WrapperStarTable;
+import uk.ac.starlink.util.TestCase;
+
+public class ParallelWriteTest extends TestCase {
+
+    private static final String PROP = VOSerializer.WRITE_THREADS_PROPERTY;
+
+    public ParallelWriteTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.votable" ).setLevel( Level.SEVERE );
+    }
+
+    public void testWrite() throws IOException {
+        DataFormat[] formats = new DataFormat[] {
+            DataFormat.TABLEDATA, DataFormat.BINARY, DataFormat.BINARY2,
+        };
+        for ( int nrow : new int[] { 0, 1, 5000 } ) {
+            StarTable table = AutoStarTable.getDemoTable( nrow );
+            for ( DataFormat format : formats ) {
+                String serial = getData( write( table, format, null ) );
+                for ( String nthread : new String[] { "1", "2", "3" } ) {
+                    assertEquals( serial,
+                                  getData( write( table, format, nthread ) ) );
+                }
+            }
+        }
+    }
+
+    public void testError() throws IOException {
+        StarTable table = new WrapperStarTable( AutoStarTable
+                                               .getDemoTable( 5000 ) ) {
+            public RowSequence getRowSequence() throws IOException {
+                return new WrapperRowSequence( super.getRowSequence() ) {
+                    int irow;
+                    public boolean next() throws IOException {
+                        if ( ++irow > 3000 ) {
+                            throw new IOException( "Broken" );
+                        }
+                        return super.next();
+                    }
+                };
+            }
+        };
+        for ( DataFormat format :
+              new DataFormat[] { DataFormat.TABLEDATA, DataFormat.BINARY2 } ) {
+            try {
+                write( table, format, "2" );
+                fail();
+            }
+            catch ( IOException e ) {
+                assertEquals( "Broken", e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Returns the DATA part of a serialized document; the metadata part
+     * may differ between runs since it contains generated IDs.
+     */
+    private static String getData( byte[] vot ) throws IOException {
+        String txt = new String( vot, "UTF-8" );
+        int idata = txt.indexOf( "<DATA>" );
+        assertTrue( idata > 0 );
+        return txt.substring( idata );
+    }
+
+    private static byte[] write( StarTable table, DataFormat format,
+                                 String nthread )
+            throws IOException {
+        if ( nthread != null ) {
+            System.setProperty( PROP, nthread );
+        }
+        try {
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            new VOTableWriter( format, true ).writeStarTable( table, bout );
+            return bout.toByteArray();
+        }
+        finally {
+            System.clearProperty( PROP );
+        }
+    }
+}
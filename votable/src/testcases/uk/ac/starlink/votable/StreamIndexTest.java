@@ -0,0 +1,135 @@
+package uk.ac.starlink.votable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.Tables;
+import uk.ac.starlink.util.FileDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class StreamIndexTest extends TestCase {
+
+    private static final String PROP = VOElementFactory.INDEX_PROPERTY;
+    private static final String DIR_PROP = VOElementFactory.INDEX_DIR_PROPERTY;
+
+    public StreamIndexTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.votable" ).setLevel( Level.SEVERE );
+        Logger.getLogger( "uk.ac.starlink.fits" ).setLevel( Level.SEVERE );
+    }
+
+    public void testIndex() throws IOException {
+        StarTable t0 = AutoStarTable.getDemoTable( 1000 );
+        DataFormat[] formats = new DataFormat[] {
+            DataFormat.BINARY, DataFormat.BINARY2, DataFormat.FITS,
+        };
+        File dir = File.createTempFile( "vix", ".d" );
+        assertTrue( dir.delete() );
+        assertTrue( dir.mkdir() );
+        System.setProperty( PROP, "true" );
+        System.setProperty( DIR_PROP, dir.toString() );
+        try {
+            for ( DataFormat format : formats ) {
+                File file = File.createTempFile( "vix", ".vot" );
+                file.deleteOnExit();
+                OutputStream out = new FileOutputStream( file );
+                new VOTableWriter( format, true ).writeStarTable( t0, out );
+                out.close();
+                File idxFile = StreamIndex.getIndexFile( file, 0 );
+                assertFalse( idxFile.exists() );
+
+                /* First read is normal and creates the index. */
+                StarTable t1 = read( file );
+                assertTrue( idxFile.exists() );
+
+                /* Second read uses the index. */
+                StarTable t2 = read( file );
+                assertTrue( t2.isRandom() );
+                assertEquals( t0.getRowCount(), t2.getRowCount() );
+                assertSameData( t1, t2 );
+                for ( long irow : new long[] { 999, 0, 500, 63, 64, 65, 3 } ) {
+                    assertArrayEquals( t1.getRow( irow ), t2.getRow( irow ) );
+                    assertArrayEquals( new Object[] { t1.getCell( irow, 1 ) },
+                                       new Object[] { t2.getCell( irow, 1 ) } );
+                }
+
+                /* A modified file is not read using the old index. */
+                RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+                raf.setLength( raf.length() + 1 );
+                raf.seek( raf.length() - 1 );
+                raf.write( '\n' );
+                raf.close();
+                assertFalse( StreamIndex.readIndex( idxFile )
+                                        .isCurrent( file, 0 ) );
+                assertSameData( t1, read( file ) );
+                assertTrue( StreamIndex.readIndex( idxFile )
+                                       .isCurrent( file, 0 ) );
+
+                assertTrue( idxFile.delete() );
+                assertTrue( file.delete() );
+            }
+        }
+        finally {
+            System.clearProperty( PROP );
+            System.clearProperty( DIR_PROP );
+            for ( File f : dir.listFiles() ) {
+                f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    public void testNoIndex() throws IOException {
+        StarTable t0 = AutoStarTable.getDemoTable( 100 );
+        File dir = File.createTempFile( "vix", ".d" );
+        assertTrue( dir.delete() );
+        assertTrue( dir.mkdir() );
+        System.setProperty( PROP, "true" );
+        System.setProperty( DIR_PROP, dir.toString() );
+        try {
+            File file = File.createTempFile( "vix", ".vot" );
+            file.deleteOnExit();
+            OutputStream out = new FileOutputStream( file );
+            new VOTableWriter( DataFormat.TABLEDATA, true )
+               .writeStarTable( t0, out );
+            out.close();
+            StarTable t1 = read( file );
+            assertEquals( 100, Tables.randomTable( t1 ).getRowCount() );
+            assertEquals( 0, dir.listFiles().length );
+            assertTrue( file.delete() );
+        }
+        finally {
+            System.clearProperty( PROP );
+            System.clearProperty( DIR_PROP );
+            dir.delete();
+        }
+    }
+
+    private static StarTable read( File file ) throws IOException {
+        return new VOTableBuilder()
+              .makeStarTable( new FileDataSource( file ), false,
+                              StoragePolicy.PREFER_MEMORY );
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            assertArrayEquals( rseq0.getRow(), rseq1.getRow() );
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+}
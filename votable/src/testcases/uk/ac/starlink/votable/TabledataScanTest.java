@@ -0,0 +1,274 @@
+package uk.ac.starlink.votable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import uk.ac.starlink.table.RowSequence;
+import uk.ac.starlink.table.RowStore;
+import uk.ac.starlink.table.StarTable;
+import uk.ac.starlink.table.StoragePolicy;
+import uk.ac.starlink.table.TableSequence;
+import uk.ac.starlink.util.ByteArrayDataSource;
+import uk.ac.starlink.util.TestCase;
+
+public class TabledataScanTest extends TestCase {
+
+    private static final String PROP =
+        VOElementFactory.TABLEDATA_SCAN_PROPERTY;
+
+    public TabledataScanTest( String name ) {
+        super( name );
+        Logger.getLogger( "uk.ac.starlink.votable" ).setLevel( Level.SEVERE );
+    }
+
+    public void testNumbers() {
+        Random rnd = new Random( 230199 );
+        String[] fixed = new String[] {
+            "0", "-0", "0.0", "-0.0", "1", "+1", "1.", ".5", "-.5", "1e3",
+            "1E-3", "1.5e+2", "007", "0.000123", "123456789012345",
+            "1234567890123456", "9007199254740993", "1e22", "1e23",
+            "1e-22", "1e-23", "3.4028235e38", "1.4e-45", " 12 ", "\n2.5\t",
+            "", " ", ".", "-", "e5", "1e", "1e1000", "0x10", "NaN",
+            "Infinity", "-Inf", "1d", "1.5f", "1 2", "1..2", "--1",
+            "99999999999999999999", "-9223372036854775808",
+        };
+        for ( String txt : fixed ) {
+            checkNumber( txt );
+        }
+        for ( int i = 0; i < 20000; i++ ) {
+            int ndigit = 1 + rnd.nextInt( 17 );
+            StringBuffer sbuf = new StringBuffer();
+            if ( rnd.nextBoolean() ) {
+                sbuf.append( '-' );
+            }
+            int ipoint = rnd.nextInt( ndigit + 1 );
+            for ( int id = 0; id < ndigit; id++ ) {
+                if ( id == ipoint ) {
+                    sbuf.append( '.' );
+                }
+                sbuf.append( (char) ( '0' + rnd.nextInt( 10 ) ) );
+            }
+            if ( rnd.nextBoolean() ) {
+                sbuf.append( 'e' )
+                    .append( rnd.nextInt( 60 ) - 30 );
+            }
+            checkNumber( sbuf.toString() );
+        }
+    }
+
+    public void testTables() throws Exception {
+        StarTable t0 = AutoStarTable.getDemoTable( 400 );
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        new VOTableWriter( DataFormat.TABLEDATA, true )
+           .writeStarTable( t0, bout );
+        byte[] vot = bout.toByteArray();
+        StarTable[] saxTables;
+        System.setProperty( PROP, "false" );
+        try {
+            saxTables = readTables( vot );
+        }
+        finally {
+            System.clearProperty( PROP );
+        }
+        StarTable[] scanTables = readTables( vot );
+        assertEquals( saxTables.length, scanTables.length );
+        for ( int i = 0; i < saxTables.length; i++ ) {
+            assertSameData( saxTables[ i ], scanTables[ i ] );
+        }
+        assertEquals( 400, parseRows( vot, true, 1 ).size() );
+    }
+
+    public void testMarkup() throws Exception {
+        String fields =
+              "<FIELD name='i' datatype='int'>"
+            +   "<VALUES null='-99'/>"
+            + "</FIELD>\n"
+            + "<FIELD name='d' datatype='double'/>\n"
+            + "<FIELD name='f' datatype='float'/>\n"
+            + "<FIELD name='s' datatype='char' arraysize='*'/>\n"
+            + "<FIELD name='a' datatype='short' arraysize='*'/>\n";
+        String data =
+              "<TR><TD>1</TD><TD>2.5</TD><TD>0.1</TD><TD>abc</TD>"
+            +   "<TD>1 2 3</TD></TR>\n"
+            + "<TR>\n <TD> -99 </TD>\n <TD/>\n <TD></TD>\n"
+            +   " <TD>a&lt;b&amp;c&#x263A;&#65;</TD><TD/></TR>\n"
+            + "<!-- a comment <TR><TD>9</TD></TR> -->\n"
+            + "<TR><TD>0x1F</TD><TD>1e400</TD><TD>NaN</TD>"
+            +   "<TD><![CDATA[<x>]]> &quot;é€é&quot;</TD>"
+            +   "<TD>7</TD></TR>\r\n"
+            + "<TR><TD>3<!-- c --></TD><TD>12345678901234567</TD>"
+            +   "<TD>1.23456789</TD><TD>line1\r\nline2\rline3</TD>"
+            +   "<TD>x</TD></TR>\n"
+            + "<TR/>\n"
+            + "<TR><TD>4</TD></TR>\n";
+        String doc =
+              "<?xml version='1.0' encoding='UTF-8'?>\n"
+            + "<VOTABLE>\n<RESOURCE>\n"
+            + "<TABLE>\n" + fields + "<DATA><TABLEDATA>\n" + data
+            + "</TABLEDATA></DATA></TABLE>\n"
+            + "<TABLE>\n" + fields + "<DATA><TABLEDATA/></DATA></TABLE>\n"
+            + "<TABLE>\n" + fields + "<DATA>\n<TABLEDATA >" + data
+            + "</TABLEDATA>\n</DATA></TABLE>\n"
+            + "</RESOURCE>\n</VOTABLE>\n";
+        byte[] utf8 = doc.getBytes( "UTF-8" );
+        List<Object[]> saxRows = parseRows( utf8, false, 0 );
+        assertEquals( 12, saxRows.size() );
+        assertSameRows( saxRows, parseRows( utf8, true, 2 ) );
+        Object[] row1 = saxRows.get( 1 );
+        assertNull( row1[ 0 ] );
+        assertNull( row1[ 1 ] );
+        assertEquals( "a<b&c☺A", row1[ 3 ] );
+        assertEquals( "line1\nline2\nline3", saxRows.get( 3 )[ 3 ] );
+
+        /* A commented-out TABLEDATA tag defeats direct scanning,
+         * but does not change the result. */
+        byte[] commented =
+            doc.replace( "<RESOURCE>", "<!-- <TABLEDATA> --><RESOURCE>" )
+               .getBytes( "UTF-8" );
+        assertSameRows( saxRows, parseRows( commented, true, 0 ) );
+
+        /* Namespaced and ISO-8859-1 documents can be scanned;
+         * UTF-16 documents are left to the parser. */
+        String nsdoc =
+            doc.replaceAll( "<(/?)([A-Z])", "<$1v:$2" )
+               .replace( "<v:VOTABLE>",
+                         "<v:VOTABLE xmlns:v="
+                       + "'http://www.ivoa.net/xml/VOTable/v1.3'>" );
+        assertSameRows( saxRows,
+                        parseRows( nsdoc.getBytes( "UTF-8" ), true, 2 ) );
+        String latin = doc.replace( "€", "" )
+                          .replace( "UTF-8", "ISO-8859-1" );
+        byte[] latinBytes = latin.getBytes( "ISO-8859-1" );
+        assertSameRows( parseRows( latinBytes, false, 0 ),
+                        parseRows( latinBytes, true, 2 ) );
+        String utf16 = doc.replace( "UTF-8", "UTF-16" );
+        assertSameRows( saxRows,
+                        parseRows( utf16.getBytes( "UTF-16" ), true, 0 ) );
+
+        /* Entities declared in the DTD are left to the parser,
+         * but a DTD without entity declarations does not prevent
+         * direct scanning. */
+        String entdoc =
+            doc.replace( "<VOTABLE>",
+                         "<!DOCTYPE VOTABLE [\n"
+                       + "  <!ENTITY minus99 \"-99\">\n"
+                       + "]>\n<VOTABLE>" )
+               .replace( "<TD> -99 </TD>", "<TD> &minus99; </TD>" );
+        assertSameRows( saxRows,
+                        parseRows( entdoc.getBytes( "UTF-8" ), true, 0 ) );
+        String dtddoc =
+            doc.replace( "<VOTABLE>",
+                         "<!DOCTYPE VOTABLE [\n"
+                       + "  <!ELEMENT VOTABLE ANY>\n"
+                       + "]>\n<VOTABLE>" );
+        assertSameRows( saxRows,
+                        parseRows( dtddoc.getBytes( "UTF-8" ), true, 2 ) );
+    }
+
+    private static void checkNumber( String txt ) {
+        byte[] buf = ( "<" + txt + ">" ).getBytes();
+        int off = 1;
+        int leng = buf.length - 2;
+        double dval = NumericDecoder.parseAsciiDouble( buf, off, leng );
+        if ( ! Double.isNaN( dval ) ) {
+            assertEquals( txt, Double.doubleToLongBits( dval ),
+                          Double.doubleToLongBits(
+                              Double.parseDouble( txt.trim() ) ) );
+        }
+        float fval = NumericDecoder.parseAsciiFloat( buf, off, leng );
+        if ( ! Float.isNaN( fval ) ) {
+            assertEquals( txt, Float.floatToIntBits( fval ),
+                          Float.floatToIntBits(
+                              Float.parseFloat( txt.trim() ) ) );
+        }
+        long lval = NumericDecoder.parseAsciiLong( buf, off, leng );
+        if ( lval != NumericDecoder.NO_LONG ) {
+            assertEquals( txt, Long.parseLong( txt.trim() ), lval );
+        }
+    }
+
+    private List<Object[]> parseRows( byte[] doc, boolean isScan,
+                                      int nscan )
+            throws Exception {
+        VOTableParser vparser = new VOTableParser( false );
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        vparser.setTableHandler( new TableHandler() {
+            public void startTable( StarTable meta ) {
+            }
+            public void rowData( Object[] row ) {
+                rows.add( row );
+            }
+            public void endTable() {
+            }
+        } );
+        SAXParserFactory spfact = SAXParserFactory.newInstance();
+        Namespacing.getInstance().configureSAXParserFactory( spfact );
+        XMLReader parser = spfact.newSAXParser().getXMLReader();
+        parser.setContentHandler( vparser );
+        InputSource insrc = new InputSource( new ByteArrayInputStream( doc ) );
+        if ( isScan ) {
+            insrc = vparser.prepareInputSource( insrc );
+        }
+        parser.parse( insrc );
+        if ( isScan ) {
+            assertEquals( nscan,
+                          vparser.getTabledataScanner().getScanCount() );
+        }
+        return rows;
+    }
+
+    private static StarTable[] readTables( byte[] vot ) throws Exception {
+        VOTableBuilder builder = new VOTableBuilder();
+        StoragePolicy policy = StoragePolicy.PREFER_MEMORY;
+        List<StarTable> tables = new ArrayList<StarTable>();
+        tables.add( builder.makeStarTable( new ByteArrayDataSource( "t", vot ),
+                                           false, policy ) );
+        TableSequence tseq =
+            builder.makeStarTables( new ByteArrayDataSource( "t", vot ),
+                                    policy );
+        for ( StarTable t; ( t = tseq.nextTable() ) != null; ) {
+            tables.add( t );
+        }
+        RowStore store = policy.makeRowStore();
+        builder.streamStarTable( new ByteArrayInputStream( vot ), store,
+                                 null );
+        tables.add( store.getStarTable() );
+        VOElement top = new VOElementFactory( policy )
+                       .makeVOElement( new ByteArrayInputStream( vot ), null );
+        tables.add( new VOStarTable( (TableElement)
+                                     top.getElementsByVOTagName( "TABLE" )
+                                        .item( 0 ) ) );
+        return tables.toArray( new StarTable[ 0 ] );
+    }
+
+    private void assertSameRows( List<Object[]> rows0,
+                                 List<Object[]> rows1 ) {
+        assertEquals( rows0.size(), rows1.size() );
+        for ( int ir = 0; ir < rows0.size(); ir++ ) {
+            assertArrayEquals( rows0.get( ir ), rows1.get( ir ) );
+        }
+    }
+
+    private void assertSameData( StarTable t0, StarTable t1 )
+            throws IOException {
+        int ncol = t0.getColumnCount();
+        assertEquals( ncol, t1.getColumnCount() );
+        RowSequence rseq0 = t0.getRowSequence();
+        RowSequence rseq1 = t1.getRowSequence();
+        while ( rseq0.next() ) {
+            assertTrue( rseq1.next() );
+            assertArrayEquals( rseq0.getRow(), rseq1.getRow() );
+        }
+        assertFalse( rseq1.next() );
+        rseq0.close();
+        rseq1.close();
+    }
+}